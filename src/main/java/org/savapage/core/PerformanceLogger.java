@@ -24,14 +24,27 @@
  */
 package org.savapage.core;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A dedicated logger for simple performance statistics.
+ * <p>
+ * Every logged duration is recorded in the {@link MetricsRegistry} as
+ * {@code savapage_operation_seconds} with the {@code Class.method} as label.
+ * The histogram is looked up per caller class and method, without string
+ * concatenation. The tab-separated TRACE line is only written when trace
+ * logging is enabled.
+ * </p>
  *
  * @author Rijk Ravestein
  *
@@ -44,54 +57,96 @@ public final class PerformanceLogger {
     private static final Logger LOGGER =
             LoggerFactory.getLogger(PerformanceLogger.class);
 
-    private static final String DATEFORMAT_PATTERN = "yyyy-MM-dd'\t'HH:mm:ss.S";
+    /** */
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'\t'HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    /** */
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter
+            .ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
 
-    private static final String TIMEFORMAT_PATTERN = "HH:mm:ss.S";
+    /**
+     * Operation histograms by method name, per caller class.
+     */
+    private static final ClassValue<ConcurrentMap<String, LatencyHistogram>> //
+    HISTOGRAMS = new ClassValue<ConcurrentMap<String, LatencyHistogram>>() {
+        @Override
+        protected ConcurrentMap<String, LatencyHistogram>
+                computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
 
     private PerformanceLogger() {
     }
 
     /**
      * Gets the start time for a
-     * {@link PerformanceLogger#log(Class, String, Long, String)}.
+     * {@link PerformanceLogger#log(Class, String, long, String)}.
      *
-     * @return {@code null} when NOT enabled.
+     * @return The start time ({@link System#nanoTime()}).
      */
-    public static Date startTime() {
+    public static long startTime() {
+        return System.nanoTime();
+    }
 
-        if (isEnabled()) {
-            return new Date();
+    /**
+     * @param caller
+     *            The caller class.
+     * @param method
+     *            The method name.
+     * @return The histogram of the operation.
+     */
+    private static LatencyHistogram histogram(final Class<?> caller,
+            final String method) {
+
+        final ConcurrentMap<String, LatencyHistogram> histograms =
+                HISTOGRAMS.get(caller);
+
+        final LatencyHistogram histogram = histograms.get(method);
+
+        if (histogram != null) {
+            return histogram;
         }
-        return null;
+        return histograms.computeIfAbsent(method,
+                k -> MetricsRegistry.instance().histogram("operation_seconds",
+                        "Duration of operations logged by the "
+                                + "performance logger.",
+                        "operation", caller.getSimpleName() + "." + k));
     }
 
     /**
      *
      * @param caller
+     *            The caller class.
      * @param method
+     *            The method name.
      * @param timeStart
+     *            The start time from {@link #startTime()}.
      * @param msg
+     *            The message.
      */
     public static <T extends Object> void log(final Class<T> caller,
-            final String method, final Date timeStart, final String msg) {
+            final String method, final long timeStart, final String msg) {
 
-        if (timeStart != null && isEnabled()) {
+        final long nanosDuration = System.nanoTime() - timeStart;
 
-            final Date now = new Date();
+        histogram(caller, method).record(nanosDuration);
 
-            final SimpleDateFormat dateFormat =
-                    new SimpleDateFormat(DATEFORMAT_PATTERN);
+        if (isEnabled()) {
 
-            LOGGER.info(
-                    String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s",
-                            dateFormat.format(now),
-                            new SimpleDateFormat(TIMEFORMAT_PATTERN)
-                                    .format(timeStart),
-                            String.format("%.4f",
-                                    (float) (now.getTime()
-                                            - timeStart.getTime()) / 10000),
-                            caller.getSimpleName(), method, msg,
-                            Thread.currentThread().getName()));
+            final long now = System.currentTimeMillis();
+            final long msecDuration =
+                    TimeUnit.NANOSECONDS.toMillis(nanosDuration);
+
+            LOGGER.info(String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s",
+                    DATE_FORMATTER.format(Instant.ofEpochMilli(now)),
+                    TIME_FORMATTER.format(
+                            Instant.ofEpochMilli(now - msecDuration)),
+                    String.format("%.4f", (float) msecDuration / 1000),
+                    caller.getSimpleName(), method, msg,
+                    Thread.currentThread().getName()));
         }
     }
 
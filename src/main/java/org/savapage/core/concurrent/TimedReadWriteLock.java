@@ -24,12 +24,15 @@
  */
 package org.savapage.core.concurrent;
 
-import java.util.Stack;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +42,14 @@ import org.slf4j.LoggerFactory;
  * write lock. <i>The lock will not release the lock, just report the problem
  * using the logging system.</i>
  * <p>
+ * Acquisition only records a {@link System#nanoTime()} timestamp in a
+ * non-blocking per-lock registry. One shared watchdog thread scans the
+ * registries of all locks and captures the stack of a holder only when its
+ * hold time really exceeds the threshold. Hold times are recorded in a
+ * {@link LatencyHistogram} per lock mode, labeled with the lock name, in the
+ * {@link MetricsRegistry}.
+ * </p>
+ * <p>
  * See <a href=
  * "https://today.java.net/pub/a/today/2007/06/28/extending-reentrantreadwritelock.html"
  * >this link</a>.
@@ -66,6 +77,16 @@ public final class TimedReadWriteLock {
      */
     private static final String STACK_TRACE_CLASSNAME_FILTER = "org.savapage.";
 
+    /**
+     * Label name of the hold time histograms.
+     */
+    private static final String METRIC_LABEL = "lock";
+
+    /**
+     * Milliseconds between two scans of the watchdog.
+     */
+    private static final long WATCHDOG_INTERVAL_MSEC = 1000L;
+
     /**
      * The logger.
      */
@@ -83,113 +104,136 @@ public final class TimedReadWriteLock {
      */
     private final long maxWait;
 
+    /**
+     * {@link #maxWait} in nanoseconds.
+     */
+    private final long maxWaitNanos;
+
     /**
      * A name for the lock.
      */
     private final String name;
 
     /**
-     * A static {@link Timer} so all the locks will use the same thread for the
-     * wait timer.
+     * The holds currently active on this lock.
+     */
+    private final Set<Hold> activeHolds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Hold times of read locks.
+     */
+    private final LatencyHistogram readHoldHistogram;
+
+    /**
+     * Hold times of write locks.
      */
-    private static Timer waitTimer = new Timer(true);
+    private final LatencyHistogram writeHoldHistogram;
 
     /**
-     * Timer task for reporting lock timeout error.
+     * A single lock hold by a thread.
      */
-    private class WaitTimerTask extends TimerTask {
+    private static final class Hold {
 
+        /** */
         private final Thread locker;
+        /** */
         private final boolean readLock;
+        /** */
         private final String contextId;
-        private final StackTraceElement[] stackElements;
+        /** */
+        private final long acquiredNanos;
+        /**
+         * The hold of the same thread that was on top before this one.
+         */
+        private final Hold previous;
+        /**
+         * {@code true} when the watchdog reported this hold.
+         */
+        private volatile boolean reported;
 
         /**
-         *
          * @param locker
+         *            The locking thread.
          * @param readLock
+         *            {@code true} when read lock.
+         * @param contextId
+         *            ID used for logging.
+         * @param previous
+         *            The previous hold of the same thread.
          */
-        WaitTimerTask(final Thread locker, final boolean readLock,
-                final String contextId) {
+        Hold(final Thread locker, final boolean readLock,
+                final String contextId, final Hold previous) {
             this.locker = locker;
             this.readLock = readLock;
-            this.stackElements = locker.getStackTrace();
             this.contextId = contextId;
+            this.previous = previous;
+            this.acquiredNanos = System.nanoTime();
         }
+    }
 
-        @Override
-        public void run() {
-
-            if (!LOGGER.isWarnEnabled()) {
-                return;
-            }
-
-            final String lockType;
-
-            if (this.readLock) {
-                lockType = "read";
-            } else {
-                lockType = "write";
-            }
-
-            final String thisPackageName =
-                    this.getClass().getPackage().getName();
-
-            final StringBuilder msg = new StringBuilder();
-
-            msg.append(this.locker).append(" holds [").append(lockType)
-                    .append("] lock [").append(name).append("]");
-
-            if (this.contextId != null) {
-                msg.append(" [").append(this.contextId).append("]");
-            }
-
-            msg.append(" for more than ").append(maxWait)
-                    .append(" ms. Stack trace snippet:\n");
+    /**
+     * The top of the hold stack of the current thread.
+     */
+    private final ThreadLocal<Hold> topHold = new ThreadLocal<>();
 
-            int nElement = 0;
+    /**
+     * The one watchdog thread for all locks.
+     */
+    private static final class Watchdog implements Runnable {
 
-            for (StackTraceElement element : this.stackElements) {
-                if (element.getClassName().startsWith(thisPackageName)) {
-                    continue;
-                }
-                if (element.getClassName()
-                        .startsWith(STACK_TRACE_CLASSNAME_FILTER)) {
-                    msg.append("\t").append(element).append("\n");
-                    nElement++;
-                } else if (nElement > 0) {
-                    break;
-                }
-            }
-            LOGGER.warn(msg.toString());
+        /**
+         * The locks to scan.
+         */
+        private static final CopyOnWriteArrayList<TimedReadWriteLock> LOCKS =
+                new CopyOnWriteArrayList<>();
+
+        static {
+            final Thread thread = new Thread(new Watchdog(),
+                    TimedReadWriteLock.class.getSimpleName() + "-watchdog");
+            thread.setDaemon(true);
+            thread.start();
         }
 
         /**
-         *
-         * @return {@code true} when a read lock.
+         * @param lock
+         *            The lock to scan.
          */
-        public boolean isReadLock() {
-            return readLock;
+        static void register(final TimedReadWriteLock lock) {
+            LOCKS.add(lock);
         }
 
-    }
-
-    /**
-     * .
-     */
-    private class LockTaskStack extends ThreadLocal<Stack<WaitTimerTask>> {
-
         @Override
-        protected Stack<WaitTimerTask> initialValue() {
-            return new Stack<WaitTimerTask>();
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(WATCHDOG_INTERVAL_MSEC);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                final long now = System.nanoTime();
+                for (final TimedReadWriteLock lock : LOCKS) {
+                    try {
+                        lock.scanHolds(now);
+                    } catch (RuntimeException e) {
+                        LOGGER.error(e.getMessage(), e);
+                    }
+                }
+            }
         }
-
     }
 
     /**
+     * Constructor.
      *
+     * @param name
+     *            The unique name for the lock (used for reporting).
+     * @param maxWait
+     *            Max wait milliseconds after which an error is reported if a
+     *            thread is still locked.
      */
-    private final LockTaskStack lockTaskStack = new LockTaskStack();
+    public TimedReadWriteLock(final String name, final long maxWait) {
+        this(name, maxWait, true);
+    }
 
     /**
      * Constructor.
@@ -199,10 +243,117 @@ public final class TimedReadWriteLock {
      * @param maxWait
      *            Max wait milliseconds after which an error is reported if a
      *            thread is still locked.
+     * @param watch
+     *            If {@code true}, the lock is scanned by the shared watchdog.
      */
-    public TimedReadWriteLock(final String name, final long maxWait) {
+    TimedReadWriteLock(final String name, final long maxWait,
+            final boolean watch) {
         this.maxWait = maxWait;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
         this.name = name;
+        this.readHoldHistogram = MetricsRegistry.instance().histogram(
+                "lock_read_hold_seconds", "Hold time of read locks.",
+                METRIC_LABEL, name);
+        this.writeHoldHistogram = MetricsRegistry.instance().histogram(
+                "lock_write_hold_seconds", "Hold time of write locks.",
+                METRIC_LABEL, name);
+        if (watch) {
+            Watchdog.register(this);
+        }
+    }
+
+    /**
+     * @return Hold times of read locks.
+     */
+    LatencyHistogram getReadHoldHistogram() {
+        return this.readHoldHistogram;
+    }
+
+    /**
+     * @return Hold times of write locks.
+     */
+    LatencyHistogram getWriteHoldHistogram() {
+        return this.writeHoldHistogram;
+    }
+
+    /**
+     * Reports the holds that exceed the threshold and were not reported yet.
+     *
+     * @param nowNanos
+     *            The current {@link System#nanoTime()}.
+     * @return The number of holds reported.
+     */
+    int scanHolds(final long nowNanos) {
+
+        int nReported = 0;
+
+        for (final Hold hold : this.activeHolds) {
+
+            if (hold.reported
+                    || nowNanos - hold.acquiredNanos < this.maxWaitNanos) {
+                continue;
+            }
+
+            hold.reported = true;
+            nReported++;
+
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(this.createReport(hold,
+                        hold.locker.getStackTrace()));
+            }
+        }
+        return nReported;
+    }
+
+    /**
+     * Creates the report of a hold that exceeded the threshold.
+     *
+     * @param hold
+     *            The hold.
+     * @param stackElements
+     *            The current stack of the holder.
+     * @return The message.
+     */
+    private String createReport(final Hold hold,
+            final StackTraceElement[] stackElements) {
+
+        final String lockType;
+
+        if (hold.readLock) {
+            lockType = "read";
+        } else {
+            lockType = "write";
+        }
+
+        final String thisPackageName = this.getClass().getPackage().getName();
+
+        final StringBuilder msg = new StringBuilder();
+
+        msg.append(hold.locker).append(" holds [").append(lockType)
+                .append("] lock [").append(name).append("]");
+
+        if (hold.contextId != null) {
+            msg.append(" [").append(hold.contextId).append("]");
+        }
+
+        msg.append(" for more than ").append(maxWait)
+                .append(" ms. Stack trace snippet:\n");
+
+        int nElement = 0;
+
+        for (StackTraceElement element : stackElements) {
+            if (element.getClassName().startsWith(thisPackageName)) {
+                continue;
+            }
+            if (element.getClassName()
+                    .startsWith(STACK_TRACE_CLASSNAME_FILTER)) {
+                msg.append("\t").append(element).append("\n");
+                nElement++;
+            } else if (nElement > 0) {
+                break;
+            }
+        }
+        return msg.toString();
     }
 
     /**
@@ -227,21 +378,57 @@ public final class TimedReadWriteLock {
         if (!rwLock.readLock().tryLock()) {
             return false;
         }
-        this.pushTimerTask(true, contextId);
+        this.pushHold(true, contextId);
         return true;
     }
 
     /**
+     * Registers a hold of the current thread.
      *
      * @param readLock
+     *            {@code true} when read lock.
      * @param contextId
      *            ID used for logging.
      */
-    private void pushTimerTask(final boolean readLock, final String contextId) {
-        final WaitTimerTask job =
-                new WaitTimerTask(Thread.currentThread(), readLock, contextId);
-        lockTaskStack.get().push(job);
-        waitTimer.schedule(job, maxWait);
+    private void pushHold(final boolean readLock, final String contextId) {
+        final Hold hold = new Hold(Thread.currentThread(), readLock,
+                contextId, this.topHold.get());
+        this.topHold.set(hold);
+        this.activeHolds.add(hold);
+    }
+
+    /**
+     * Unregisters the last hold of the current thread and records its hold
+     * time.
+     */
+    private void popHold() {
+
+        final Hold hold = this.topHold.get();
+
+        if (hold == null) {
+            return;
+        }
+
+        if (hold.previous == null) {
+            this.topHold.remove();
+        } else {
+            this.topHold.set(hold.previous);
+        }
+
+        this.activeHolds.remove(hold);
+
+        final long nanos = System.nanoTime() - hold.acquiredNanos;
+
+        if (hold.readLock) {
+            this.readHoldHistogram.record(nanos);
+        } else {
+            this.writeHoldHistogram.record(nanos);
+        }
+
+        if (hold.reported && LOGGER.isWarnEnabled()) {
+            LOGGER.warn("{} released lock [{}] after {} ms.", hold.locker,
+                    this.name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
     }
 
     /**
@@ -262,7 +449,7 @@ public final class TimedReadWriteLock {
             }
 
             rwLock.readLock().lock();
-            this.pushTimerTask(true, contextId);
+            this.pushHold(true, contextId);
 
         } else {
 
@@ -272,10 +459,7 @@ public final class TimedReadWriteLock {
             }
 
             rwLock.readLock().unlock();
-
-            final WaitTimerTask job = lockTaskStack.get().pop();
-
-            job.cancel();
+            this.popHold();
         }
     }
 
@@ -298,35 +482,26 @@ public final class TimedReadWriteLock {
              * @see java.util.concurrent.ReentrantReadWriteLock javadocs for
              * details
              */
-            final Stack<WaitTimerTask> taskStack = lockTaskStack.get();
-
-            if (!taskStack.isEmpty()) {
-
-                final WaitTimerTask job = taskStack.peek();
+            final Hold hold = this.topHold.get();
 
-                if (job != null && job.isReadLock()) {
+            if (hold != null && hold.readLock) {
 
-                    LOGGER.error("The same thread [" + Thread.currentThread()
-                            + "] is already holding a read lock '" + name
-                            + "'. Cannot lock for write!");
+                LOGGER.error("The same thread [" + Thread.currentThread()
+                        + "] is already holding a read lock '" + name
+                        + "'. Cannot lock for write!");
 
-                    if (LOGGER.isDebugEnabled()) {
-
-                        final StringBuilder msg = new StringBuilder();
-                        msg.append(Thread.currentThread())
-                                .append(" stack trace:\n");
-                        for (StackTraceElement element : Thread.currentThread()
-                                .getStackTrace()) {
-                            msg.append("\t").append(element).append("\n");
-                        }
-
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug(msg.toString());
-                        }
+                if (LOGGER.isDebugEnabled()) {
 
+                    final StringBuilder msg = new StringBuilder();
+                    msg.append(Thread.currentThread())
+                            .append(" stack trace:\n");
+                    for (StackTraceElement element : Thread.currentThread()
+                            .getStackTrace()) {
+                        msg.append("\t").append(element).append("\n");
                     }
-                    return;
+                    LOGGER.debug(msg.toString());
                 }
+                return;
             }
 
             if (LOGGER.isTraceEnabled()) {
@@ -335,7 +510,7 @@ public final class TimedReadWriteLock {
             }
 
             rwLock.writeLock().lock();
-            this.pushTimerTask(false, contextId);
+            this.pushHold(false, contextId);
 
         } else {
 
@@ -345,9 +520,7 @@ public final class TimedReadWriteLock {
             }
 
             rwLock.writeLock().unlock();
-
-            final WaitTimerTask job = lockTaskStack.get().pop();
-            job.cancel();
+            this.popHold();
         }
     }
 
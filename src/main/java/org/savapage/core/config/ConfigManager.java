@@ -104,7 +104,9 @@ import org.savapage.core.doc.store.DocStoreTypeEnum;
 import org.savapage.core.fonts.InternalFontFamilyEnum;
 import org.savapage.core.i18n.SystemModeEnum;
 import org.savapage.core.ipp.client.IppClient;
+import org.savapage.core.ipp.operation.IppGetPrinterAttrRspCache;
 import org.savapage.core.jmx.CoreConfig;
+import org.savapage.core.jmx.CoreMetrics;
 import org.savapage.core.job.SpJobScheduler;
 import org.savapage.core.jpa.ConfigProperty;
 import org.savapage.core.jpa.Device;
@@ -117,6 +119,8 @@ import org.savapage.core.jpa.tools.DbConnectionPoolEnum;
 import org.savapage.core.jpa.tools.DbTools;
 import org.savapage.core.jpa.tools.DbUpgManager;
 import org.savapage.core.jpa.tools.DbVersionInfo;
+import org.savapage.core.metrics.MetricsRegistry;
+import org.savapage.core.outbox.OutboxHoldIndex;
 import org.savapage.core.pdf.PdfDocumentFonts;
 import org.savapage.core.print.proxy.ProxyPrintJobStatusMonitor;
 import org.savapage.core.services.PrinterService;
@@ -173,6 +177,13 @@ public final class ConfigManager {
      */
     private static final String REL_PATH_SAVAPAGE_PPD_FILE = "SAVAPAGE.ppd";
 
+    /**
+     * Name prefix of {@link Key} enum values that feed IPP printer
+     * attributes.
+     */
+    private static final String KEY_PREFIX_IPP_PRINTER_ATTR =
+            "IPP_PRINTER_ATTR_";
+
     private static final String INTERNAL_ADMIN_PASSWORD_DEFAULT = "admin";
 
     private static final String PROP_INTERNAL_ADMIN_PASSWORD = "admin.password";
@@ -437,6 +448,28 @@ public final class ConfigManager {
                 Integer.valueOf(IConfigProp.DEFAULT_BATCH_COMMIT_CHUNK_SIZE));
     }
 
+    /**
+     * Gets the max number of directory shards visited in parallel when
+     * cleaning SafePages and Document Store.
+     *
+     * @return The parallelism ({@code 1} or more).
+     */
+    public static int getDeleteFilesParallelism() {
+        return Math.max(1, instance().getConfigInt(
+                Key.DELETE_FILES_PARALLELISM, Integer.valueOf(1)));
+    }
+
+    /**
+     * Gets the max number of file deletes per second when cleaning SafePages
+     * and Document Store.
+     *
+     * @return The max deletes per second ({@code 0} is unlimited).
+     */
+    public static int getDeleteFilesMaxPerSec() {
+        return Math.max(0, instance().getConfigInt(
+                Key.DELETE_FILES_MAX_PER_SEC, Integer.valueOf(0)));
+    }
+
     /**
      * Gets the singleton instance.
      *
@@ -1649,6 +1682,9 @@ public final class ConfigManager {
         final ObjectName name = new ObjectName("org.savapage:type=Core");
 
         mbs.registerMBean(mBean, name);
+
+        mbs.registerMBean(new CoreMetrics(MetricsRegistry.instance()),
+                new ObjectName("org.savapage:type=Metrics"));
     }
 
     /**
@@ -2005,6 +2041,7 @@ public final class ConfigManager {
         }
 
         myConfigProp.updateValue(key, valUpdate, actor);
+        invalidateIppPrinterAttr(key);
     }
 
     /**
@@ -2025,6 +2062,19 @@ public final class ConfigManager {
         updateConfigKey(key, value.toString(), actor);
     }
 
+    /**
+     * Invalidates the cached IPP Get-Printer-Attributes responses when a
+     * configuration key feeds printer attributes.
+     *
+     * @param key
+     *            The changed key.
+     */
+    private static void invalidateIppPrinterAttr(final Key key) {
+        if (key.name().startsWith(KEY_PREFIX_IPP_PRINTER_ATTR)) {
+            IppGetPrinterAttrRspCache.instance().invalidateAll();
+        }
+    }
+
     /**
      * Saves (updates or lazy inserts) the string value of a configuration key
      * in the <b>database</b> and updates the internal cache. When key
@@ -2050,6 +2100,7 @@ public final class ConfigManager {
         }
 
         myConfigProp.saveDbValue(key, val, actor);
+        invalidateIppPrinterAttr(key);
 
     }
 
@@ -2758,7 +2809,8 @@ public final class ConfigManager {
     }
 
     /**
-     * Removes the user's home directory (if it exists).
+     * Removes the user's home directory (if it exists), and the index of the
+     * jobs held in the user's outbox.
      *
      * @param user
      * @throws IOException
@@ -2766,8 +2818,12 @@ public final class ConfigManager {
     public static void removeUserHomeDir(final String user) throws IOException {
         final Path path =
                 FileSystems.getDefault().getPath(getUserHomeDir(user));
-        if (path.toFile().exists()) {
-            FileSystemHelper.removeDir(path);
+        final OutboxHoldIndex holdIndex = OutboxHoldIndex.instance();
+        synchronized (holdIndex.getUserLock(user)) {
+            if (path.toFile().exists()) {
+                FileSystemHelper.removeDir(path);
+            }
+            holdIndex.remove(user);
         }
     }
 
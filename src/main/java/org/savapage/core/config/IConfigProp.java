@@ -290,6 +290,29 @@ public interface IConfigProp {
         FINANCIAL_GLOBAL_CREDIT_LIMIT(//
                 "financial.global.credit-limit", KeyType.BIG_DECIMAL, "0.00"),
 
+        /**
+         * If {@code true}, balance updates of shared and group accounts are
+         * posted to a journaled in-memory ledger, and rolled up into the
+         * account balance in periodic batches.
+         */
+        FINANCIAL_LEDGER_DEFERRED_ENABLE(//
+                "financial.ledger.deferred.enable", BOOLEAN_VALIDATOR, V_YES),
+
+        /**
+         * Interval in milliseconds between roll-ups of deferred account
+         * balance updates.
+         */
+        FINANCIAL_LEDGER_ROLLUP_MSEC(//
+                "financial.ledger.rollup-msec", NUMBER_VALIDATOR, "2000"),
+
+        /**
+         * Sequence number of the last account ledger journal segment that is
+         * committed to the database.
+         */
+        FINANCIAL_LEDGER_JOURNAL_SEQ(//
+                "financial.ledger.journal-seq", NUMBER_VALIDATOR, V_ZERO,
+                API_UPDATABLE_OFF),
+
         /**
          * ISO 4217 codes, like EUR, USD, JPY, etc. A <i>blank</i> Currency Code
          * is API updatable with {@link JsonRpcMethodName#SET_CONFIG_PROPERTY}
@@ -568,6 +591,15 @@ public interface IConfigProp {
                 "financial.bitcoin.user-page.url-pattern.address",
                 URL_VALIDATOR_OPT, "https://blockchain.info/address/{0}"),
 
+        /**
+         * Max number of seconds a compiled effective ACL of a user is used
+         * before it is resolved again from the database. A value of
+         * {@code 0} disables the cache.
+         */
+        ACL_CACHE_TTL_SECS(//
+                "acl.cache.ttl-secs", NUMBER_VALIDATOR, "300",
+                API_UPDATABLE_ON),
+
         /**
          *
          */
@@ -824,6 +856,32 @@ public interface IConfigProp {
                 "cups.ipp.job-state.cancel-if-stopped.enable",
                 BOOLEAN_VALIDATOR, V_YES, API_UPDATABLE_ON),
 
+        /**
+         * Max number of jobs per Get-Jobs request when synchronizing print
+         * job state with CUPS. When zero, job state is read with a
+         * Get-Job-Attributes request per job.
+         */
+        CUPS_IPP_JOB_SYNC_WINDOW(//
+                "cups.ipp.job-sync.window", NUMBER_VALIDATOR, "500",
+                API_UPDATABLE_ON),
+
+        /**
+         * If {@code true}, print job state synchronization skips local
+         * printers without job events since the previous synchronization.
+         * Events are pulled from a CUPS printer subscription.
+         */
+        CUPS_IPP_JOB_SYNC_NOTIFICATION_ENABLE(//
+                "cups.ipp.job-sync.notification.enable", BOOLEAN_VALIDATOR,
+                V_YES, API_UPDATABLE_ON),
+
+        /**
+         * Lease duration (seconds) of the CUPS printer subscription for
+         * print job state synchronization.
+         */
+        CUPS_IPP_JOB_SYNC_NOTIFICATION_LEASE_SECS(//
+                "cups.ipp.job-sync.notification.lease-secs", NUMBER_VALIDATOR,
+                "86400", API_UPDATABLE_ON),
+
         /** */
         CUPS_IPP_NOTIFICATION_METHOD(//
                 "cups.ipp.notification.method", PULL_PUSH_ENUM_VALIDATOR,
@@ -894,6 +952,23 @@ public interface IConfigProp {
          */
         DELETE_DOC_LOG_DAYS("delete.doc-log.days", NUMBER_VALIDATOR, "365"),
 
+        /**
+         * Max number of directory shards visited in parallel when cleaning
+         * SafePages and Document Store. A value of {@code 1} visits
+         * sequentially.
+         */
+        DELETE_FILES_PARALLELISM(//
+                "delete.files.parallelism", NUMBER_VALIDATOR, "4",
+                API_UPDATABLE_ON),
+
+        /**
+         * Max number of file deletes per second when cleaning SafePages and
+         * Document Store. A value of {@code 0} means unlimited.
+         */
+        DELETE_FILES_MAX_PER_SEC(//
+                "delete.files.max-per-sec", NUMBER_VALIDATOR, "0",
+                API_UPDATABLE_ON),
+
         /**
          * The default port for {@link DeviceTypeEnum#CARD_READER}.
          */
@@ -1635,6 +1710,13 @@ public interface IConfigProp {
                 "printer.snmp.read.timeout-msec", NUMBER_VALIDATOR, "1500",
                 API_UPDATABLE_ON),
 
+        /**
+         * Max number of printer hosts read concurrently in an SNMP sweep.
+         */
+        PRINTER_SNMP_READ_PARALLEL(//
+                "printer.snmp.read.parallel", NUMBER_VALIDATOR, "16",
+                API_UPDATABLE_ON),
+
         /**
          *
          */
@@ -1677,6 +1759,23 @@ public interface IConfigProp {
         SOFFICE_CONNECTION_PORTS(//
                 "soffice.connection.ports", "2002,2003", API_UPDATABLE_OFF),
 
+        /**
+         * The minimum number of running UNO connection instances. Instances
+         * are started (up to the number of ports) when conversion tasks queue
+         * up, and stopped again when idle.
+         */
+        SOFFICE_CONNECTION_MIN(//
+                "soffice.connection.min", NUMBER_VALIDATOR, "1",
+                API_UPDATABLE_OFF),
+
+        /**
+         * Max size (MB) of the cache with conversion results, keyed by
+         * document content. When {@code 0} (zero) results are not cached.
+         */
+        SOFFICE_CACHE_MAX_MB(//
+                "soffice.cache.max-mb", NUMBER_VALIDATOR, "256",
+                API_UPDATABLE_OFF),
+
         /**
          * The number of executed tasks after which the UNO connection is
          * restarted. When {@code 0} (zero) the process is <i>never</i>
@@ -1815,17 +1914,49 @@ public interface IConfigProp {
         MAIL_SMTP_TIMEOUT("mail.smtp.timeout", NUMBER_VALIDATOR, "5000"),
 
         /**
-         * Heartbeat (milliseconds) to poll the store-and-forward mail outbox
-         * for new messages.
+         * Heartbeat (milliseconds) to rescan the store-and-forward mail outbox
+         * for new messages, as fallback of file system notification.
          */
         MAIL_OUTBOX_POLL_HEARTBEAT_MSEC("mail.outbox.poll.heartbeat-msec",
                 NUMBER_VALIDATOR, "10000"),
 
         /**
-         * Interval (milliseconds) between sending each message.
+         * Interval (milliseconds) between sending messages to the same
+         * recipient domain. This is the floor of the adaptive interval, which
+         * backs off on transient SMTP failures.
          */
         MAIL_OUTBOX_SEND_INTERVAL_MSEC("mail.outbox.send.interval-msec",
-                NUMBER_VALIDATOR, "1000"),
+                NUMBER_VALIDATOR, "100"),
+
+        /**
+         * Max number of persistent SMTP connections to send outbox messages.
+         */
+        MAIL_OUTBOX_SEND_CONNECTIONS(//
+                "mail.outbox.send.connections", NUMBER_VALIDATOR, "4"),
+
+        /**
+         * Max number of concurrent outbox message sends to the same recipient
+         * domain.
+         */
+        MAIL_OUTBOX_SEND_DOMAIN_CONNECTIONS(//
+                "mail.outbox.send.domain-connections", NUMBER_VALIDATOR, "2"),
+
+        /**
+         * Max interval (milliseconds) between sending messages to the same
+         * recipient domain, after backing off on transient SMTP failures.
+         */
+        MAIL_OUTBOX_SEND_BACKOFF_MAX_MSEC(//
+                "mail.outbox.send.backoff-max-msec", NUMBER_VALIDATOR,
+                "300000"),
+
+        /**
+         * Period (milliseconds) after the first transient SMTP failure of an
+         * outbox message when it is given up. Should well exceed the retry
+         * window of greylisting servers (5 to 15 minutes).
+         */
+        MAIL_OUTBOX_SEND_RETRY_PERIOD_MSEC(//
+                "mail.outbox.send.retry-period-msec", NUMBER_VALIDATOR,
+                "3600000"),
 
         /**
          *
@@ -1979,6 +2110,14 @@ public interface IConfigProp {
                 "print-in.job-expiry-ignored.mins", NUMBER_VALIDATOR, "10",
                 API_UPDATABLE_ON),
 
+        /**
+         * Max size (MB) of print-in content. A job is rejected as soon as the
+         * spooled content exceeds this size. When zero (0) there is NO limit.
+         */
+        PRINT_IN_JOB_MAX_MB(//
+                "print-in.job.max-mb", NUMBER_VALIDATOR, V_ZERO,
+                API_UPDATABLE_ON),
+
         /**
          * Enable Copy Job option for Job Ticket (boolean). When {@code true} a
          * job ticket for a copy job can be created.
@@ -2814,6 +2953,29 @@ public interface IConfigProp {
         STATS_USERHOME(//
                 "stats.userhome", API_UPDATABLE_OFF),
 
+        /**
+         * If {@code true}, print-in and print-out usage counters of queues
+         * and printers are aggregated in memory, journaled to disk, and
+         * flushed to the database in periodic batches.
+         */
+        STATS_WRITE_BEHIND_ENABLE(//
+                "stats.write-behind.enable", BOOLEAN_VALIDATOR, V_YES),
+
+        /**
+         * Interval in milliseconds between write-behind flushes of usage
+         * counters.
+         */
+        STATS_WRITE_BEHIND_FLUSH_MSEC(//
+                "stats.write-behind.flush-msec", NUMBER_VALIDATOR, "5000"),
+
+        /**
+         * Sequence number of the last usage counter journal segment that is
+         * committed to the database.
+         */
+        STATS_WRITE_BEHIND_JOURNAL_SEQ(//
+                "stats.write-behind.journal-seq", NUMBER_VALIDATOR, V_ZERO,
+                API_UPDATABLE_OFF),
+
         /**
          * Make a backup before a database schema upgrade.
          */
@@ -2907,6 +3069,23 @@ public interface IConfigProp {
                 new EnumValidator<>(Pdf2ImgCairoCmd.Strategy.class),
                 Pdf2ImgCairoCmd.Strategy.AUTO.toString(), API_UPDATABLE_ON),
 
+        /**
+         * Max size (MB) of the shared page image cache. A value of {@code 0}
+         * disables the cache.
+         */
+        SYS_HOST_CMD_PDFTOCAIRO_IMG_CACHE_MB(//
+                "system.host.cmd.pdftocairo.img.cache-mb", NUMBER_VALIDATOR,
+                "256", API_UPDATABLE_ON),
+
+        /**
+         * Number of pages, starting at the requested page, that are rendered
+         * into the page image cache by one command when a thumbnail is
+         * requested.
+         */
+        SYS_HOST_CMD_PDFTOCAIRO_IMG_PREFETCH_PAGES(//
+                "system.host.cmd.pdftocairo.img.prefetch-pages",
+                NUMBER_VALIDATOR, "8", API_UPDATABLE_ON),
+
         /**
          * Enable {@link SystemInfo.Command#WKHTMLTOPDF}.
          */
@@ -3001,6 +3180,15 @@ public interface IConfigProp {
          */
         USER_TOTP_ISSUER("user.totp.issuer", "", API_UPDATABLE_ON),
 
+        /**
+         * Write user message indicator files to the SafePages directory, next
+         * to the in-memory user message bus. Needed when readers do not share
+         * the memory of the writer, e.g. in cluster setups, or when readers
+         * watch the file.
+         */
+        USER_MSG_INDICATOR_FILE_ENABLE("user.msg-indicator.file.enable",
+                BOOLEAN_VALIDATOR, V_NO, API_UPDATABLE_ON),
+
         /**
          * Client IP addresses (CIDR) that are allowed to use the User Client
          * App (when void, all client addresses are allowed).
@@ -117,6 +117,16 @@ public enum ServerPathEnum {
      */
     LETTERHEADS("data/internal/letterheads"),
 
+    /**
+     * The relative path of the usage counter journal folder.
+     */
+    USAGE_JOURNAL("data/internal/usage-journal"),
+
+    /**
+     * The relative path of the account ledger journal folder.
+     */
+    LEDGER_JOURNAL("data/internal/ledger-journal"),
+
     /**
      * LibreJS license info injector.
      */
@@ -242,4 +242,14 @@ public interface AccountDao extends GenericDao<Account> {
      * @param deletedBy
      */
     void setLogicalDelete(Account account, Date deletedDate, String deletedBy);
+
+    /**
+     * Reads the balance of an {@link Account} from the database, without
+     * using the persistence context.
+     *
+     * @param id
+     *            The primary key of the {@link Account}.
+     * @return The balance, or {@code null} when not found.
+     */
+    BigDecimal findBalance(Long id);
 }
@@ -24,14 +24,17 @@
  */
 package org.savapage.core.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.persistence.TypedQuery;
 
 import org.savapage.core.dao.enums.AccountTrxTypeEnum;
 import org.savapage.core.dao.helpers.DaoBatchCommitter;
 import org.savapage.core.dao.helpers.UserPrintOutTotalsReq;
+import org.savapage.core.dto.AccountTrxReportDto;
 import org.savapage.core.dto.UserPrintOutTotalDto;
 import org.savapage.core.jpa.Account.AccountTypeEnum;
 import org.savapage.core.jpa.AccountTrx;
@@ -161,6 +164,15 @@ public interface AccountTrxDao extends UserErasableDao<AccountTrx> {
      */
     List<AccountTrx> findByExtMethodAddress(String address);
 
+    /**
+     * Finds which {@link AccountTrx} primary keys exist.
+     *
+     * @param ids
+     *            The primary keys.
+     * @return The primary keys that exist.
+     */
+    List<Long> findExistingIds(Collection<Long> ids);
+
     /**
      *
      * @param filter
@@ -189,6 +201,28 @@ public interface AccountTrxDao extends UserErasableDao<AccountTrx> {
     List<AccountTrx> getListChunk(ListFilter filter, Integer startPosition,
             Integer maxResults, Field orderBy, boolean sortAscending);
 
+    /**
+     * Streams the report rows of the filtered transactions, in the order of
+     * {@link #getListChunk(ListFilter, Integer, Integer, Field, boolean)}.
+     * <p>
+     * Rows are selected with one projection query (no entities are loaded)
+     * and read from a forward-only database cursor: the stream must be
+     * consumed and closed within the same transaction.
+     * </p>
+     *
+     * @param filter
+     *            List filter.
+     * @param orderBy
+     *            Order by field.
+     * @param sortAscending
+     *            Sort indicator.
+     * @param fetchSize
+     *            The number of rows fetched from the cursor at a time.
+     * @return The row stream, to be closed by the caller.
+     */
+    Stream<AccountTrxReportDto> streamReportRows(ListFilter filter,
+            Field orderBy, boolean sortAscending, int fetchSize);
+
     /**
      * Removes {@link AccountTrx} instances dating from daysBackInTime and
      * older.
@@ -245,4 +279,17 @@ public interface AccountTrxDao extends UserErasableDao<AccountTrx> {
     List<UserPrintOutTotalDto> getUserPrintOutTotalsChunk(
             UserPrintOutTotalsReq req, Integer startPosition,
             Integer maxResults);
+
+    /**
+     * Streams the user print-out totals from a forward-only database cursor.
+     * The stream must be consumed and closed within the same transaction.
+     *
+     * @param req
+     *            Request
+     * @param fetchSize
+     *            The number of rows fetched from the cursor at a time.
+     * @return The row stream, to be closed by the caller.
+     */
+    Stream<UserPrintOutTotalDto> streamUserPrintOutTotals(
+            UserPrintOutTotalsReq req, int fetchSize);
 }
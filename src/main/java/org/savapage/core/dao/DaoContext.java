@@ -73,6 +73,16 @@ public interface DaoContext {
      */
     void rollback();
 
+    /**
+     * Registers an action that runs when the current transaction ends without
+     * commit: on {@link #rollback()}, on a failed {@link #commit()}, or on
+     * {@link #close()} without commit. The action is discarded on commit.
+     *
+     * @param action
+     *            The action.
+     */
+    void onRollback(Runnable action);
+
     /**
      * Wrapper for {@link EntityManager#clear()}.
      */
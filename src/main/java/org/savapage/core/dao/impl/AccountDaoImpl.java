@@ -30,6 +30,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 import org.savapage.core.dao.AccountDao;
 import org.savapage.core.dao.helpers.AggregateResult;
@@ -438,4 +439,22 @@ public final class AccountDaoImpl extends GenericDaoImpl<Account>
         return query.executeUpdate();
     }
 
+    @Override
+    public BigDecimal findBalance(final Long id) {
+
+        final String jpql = "SELECT A.balance FROM Account A WHERE A.id = :id";
+
+        final TypedQuery<BigDecimal> query =
+                getEntityManager().createQuery(jpql, BigDecimal.class);
+
+        query.setParameter("id", id);
+
+        final List<BigDecimal> result = query.getResultList();
+
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result.get(0);
+    }
+
 }
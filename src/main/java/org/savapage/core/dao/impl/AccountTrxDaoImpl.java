@@ -27,8 +27,10 @@ package org.savapage.core.dao.impl;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
@@ -47,6 +49,7 @@ import org.savapage.core.dao.AccountTrxDao;
 import org.savapage.core.dao.helpers.DaoBatchCommitter;
 import org.savapage.core.dao.helpers.SQLHelper;
 import org.savapage.core.dao.helpers.UserPrintOutTotalsReq;
+import org.savapage.core.dto.AccountTrxReportDto;
 import org.savapage.core.dto.UserPrintOutTotalDto;
 import org.savapage.core.ipp.IppJobStateEnum;
 import org.savapage.core.jpa.Account;
@@ -70,6 +73,16 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
     private static final Logger LOGGER =
             LoggerFactory.getLogger(AccountTrxDaoImpl.class);
 
+    /**
+     * Query hint for the JDBC fetch size.
+     */
+    private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+
+    /**
+     * Query hint for loading query results as read-only.
+     */
+    private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+
     @Override
     protected String getCountQuery() {
         return "SELECT COUNT(T.id) FROM AccountTrx T";
@@ -118,8 +131,131 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
         jpql.append("SELECT TRX FROM AccountTrx TRX");
 
         applyListFilter(jpql, filter);
+        applyListOrderBy(jpql, orderBy, sortAscending);
 
         //
+        final Query query = createListQuery(jpql, filter);
+
+        if (startPosition != null) {
+            query.setFirstResult(startPosition);
+        }
+        if (maxResults != null) {
+            query.setMaxResults(maxResults);
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    public Stream<AccountTrxReportDto> streamReportRows(
+            final ListFilter filter, final Field orderBy,
+            final boolean sortAscending, final int fetchSize) {
+
+        final StringBuilder jpql =
+                new StringBuilder(JPSQL_STRINGBUILDER_CAPACITY);
+
+        jpql.append("SELECT TRX.transactionDate, TRX.trxType,"
+                + " TRX.currencyCode, TRX.amount, TRX.balance, TRX.comment,"
+                + " TRX.extMethod, TRX.extAmount, TRX.extFee,"
+                + " TRX.extCurrencyCode, TRX.extMethodAddress,"
+                + " TRX.extDetails, POS.receiptNumber, POS.paymentType,"
+                + " DL.id, DL.numberOfPages, DL.title, DL.costOriginal,"
+                + " DL.externalId, PO.id, PO.numberOfCopies,"
+                + " PO.numberOfSheets, PO.paperSize, PO.duplex,"
+                + " PO.grayscale, PO.ippOptions, PO.printMode"
+                + " FROM AccountTrx TRX" //
+                + " LEFT JOIN TRX.posPurchase POS" //
+                + " LEFT JOIN TRX.docLog DL" //
+                + " LEFT JOIN DL.docOut DOUT" //
+                + " LEFT JOIN DOUT.printOut PO");
+
+        applyListFilter(jpql, filter);
+        applyListOrderBy(jpql, orderBy, sortAscending);
+
+        final Query query = createListQuery(jpql, filter);
+        setStreamHints(query, fetchSize);
+
+        @SuppressWarnings("unchecked")
+        final Stream<Object[]> rows = query.getResultStream();
+
+        return rows.map(AccountTrxDaoImpl::createReportDto);
+    }
+
+    /**
+     * Sets the query hints for reading a result stream.
+     *
+     * @param query
+     *            The query.
+     * @param fetchSize
+     *            The number of rows fetched from the cursor at a time.
+     */
+    private static void setStreamHints(final Query query,
+            final int fetchSize) {
+        query.setHint(HINT_FETCH_SIZE, Integer.valueOf(fetchSize));
+        query.setHint(HINT_READ_ONLY, Boolean.TRUE);
+    }
+
+    /**
+     * Creates a report row from a projection row of
+     * {@link #streamReportRows(ListFilter, Field, boolean, int)}.
+     *
+     * @param row
+     *            The projection row.
+     * @return The report row.
+     */
+    private static AccountTrxReportDto createReportDto(final Object[] row) {
+
+        final AccountTrxReportDto dto = new AccountTrxReportDto();
+
+        int i = 0;
+
+        dto.setTransactionDate((Date) row[i++]);
+        dto.setTrxType((String) row[i++]);
+        dto.setCurrencyCode((String) row[i++]);
+        dto.setAmount((BigDecimal) row[i++]);
+        dto.setBalance((BigDecimal) row[i++]);
+        dto.setComment((String) row[i++]);
+        dto.setExtMethod((String) row[i++]);
+        dto.setExtAmount((BigDecimal) row[i++]);
+        dto.setExtFee((BigDecimal) row[i++]);
+        dto.setExtCurrencyCode((String) row[i++]);
+        dto.setExtMethodAddress((String) row[i++]);
+        dto.setExtDetails((String) row[i++]);
+
+        dto.setPosReceiptNumber((String) row[i++]);
+        dto.setPosPaymentType((String) row[i++]);
+
+        dto.setDocLogId((Long) row[i++]);
+        dto.setDocNumberOfPages((Integer) row[i++]);
+        dto.setDocTitle((String) row[i++]);
+        dto.setDocCostOriginal((BigDecimal) row[i++]);
+        dto.setDocExternalId((String) row[i++]);
+
+        dto.setPrintOutId((Long) row[i++]);
+        dto.setPrintNumberOfCopies((Integer) row[i++]);
+        dto.setPrintNumberOfSheets((Integer) row[i++]);
+        dto.setPrintPaperSize((String) row[i++]);
+        dto.setPrintDuplex((Boolean) row[i++]);
+        dto.setPrintGrayscale((Boolean) row[i++]);
+        dto.setPrintIppOptions((String) row[i++]);
+        dto.setPrintMode((String) row[i++]);
+
+        return dto;
+    }
+
+    /**
+     * Applies the list order to the JPQL string.
+     *
+     * @param jpql
+     *            The JPA query string.
+     * @param orderBy
+     *            Order by field.
+     * @param sortAscending
+     *            Sort indicator.
+     */
+    private static void applyListOrderBy(final StringBuilder jpql,
+            final Field orderBy, final boolean sortAscending) {
+
         jpql.append(" ORDER BY ");
 
         if (orderBy == Field.TRX_TYPE) {
@@ -133,18 +269,6 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
         }
 
         jpql.append(", TRX.id DESC");
-
-        //
-        final Query query = createListQuery(jpql, filter);
-
-        if (startPosition != null) {
-            query.setFirstResult(startPosition);
-        }
-        if (maxResults != null) {
-            query.setMaxResults(maxResults);
-        }
-
-        return query.getResultList();
     }
 
     /**
@@ -399,6 +523,19 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
         return result;
     }
 
+    @Override
+    public List<Long> findExistingIds(final Collection<Long> ids) {
+
+        final String jpql = "SELECT T.id FROM AccountTrx T WHERE T.id IN :ids";
+
+        final TypedQuery<Long> query =
+                getEntityManager().createQuery(jpql, Long.class);
+
+        query.setParameter("ids", ids);
+
+        return query.getResultList();
+    }
+
     @Override
     public List<AccountTrx> findByExtMethodAddress(final String address) {
 
@@ -449,6 +586,53 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
             final UserPrintOutTotalsReq req, final Integer startPosition,
             final Integer maxResults) {
 
+        final Query query = createUserPrintOutTotalsQuery(req);
+
+        if (startPosition != null) {
+            query.setFirstResult(startPosition);
+        }
+        if (maxResults != null) {
+            query.setMaxResults(maxResults);
+        }
+
+        final boolean isGroupByPrinterUser = req.isGroupedByPrinterUser();
+
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = query.getResultList();
+        final List<UserPrintOutTotalDto> objs = new ArrayList<>();
+
+        for (final Object[] row : rows) {
+            objs.add(createUserPrintOutTotalDto(row, isGroupByPrinterUser));
+        }
+        return objs;
+    }
+
+    @Override
+    public Stream<UserPrintOutTotalDto> streamUserPrintOutTotals(
+            final UserPrintOutTotalsReq req, final int fetchSize) {
+
+        final Query query = createUserPrintOutTotalsQuery(req);
+        setStreamHints(query, fetchSize);
+
+        final boolean isGroupByPrinterUser = req.isGroupedByPrinterUser();
+
+        @SuppressWarnings("unchecked")
+        final Stream<Object[]> rows = query.getResultStream();
+
+        return rows.map(
+                row -> createUserPrintOutTotalDto(row, isGroupByPrinterUser));
+    }
+
+    /**
+     * Creates the user print-out totals query.
+     *
+     * @param req
+     *            Request
+     * @return The query.
+     */
+    private Query createUserPrintOutTotalsQuery(
+            final UserPrintOutTotalsReq req) {
+
         final boolean isGroupByPrinterUser =
                 req.getGroupBy() == UserPrintOutTotalsReq.GroupBy.PRINTER_USER;
 
@@ -686,115 +870,115 @@ public final class AccountTrxDaoImpl extends GenericDaoImpl<AccountTrx>
             query.setParameter("timeTo", timeTo);
         }
 
-        if (startPosition != null) {
-            query.setFirstResult(startPosition);
-        }
-        if (maxResults != null) {
-            query.setMaxResults(maxResults);
+        return query;
+    }
+
+    /**
+     * Creates a DTO from a user print-out totals query row.
+     *
+     * @param row
+     *            The query row.
+     * @param isGroupByPrinterUser
+     *            {@code true} when grouped by printer and user.
+     * @return The DTO.
+     */
+    private static UserPrintOutTotalDto createUserPrintOutTotalDto(
+            final Object[] row, final boolean isGroupByPrinterUser) {
+
+        final UserPrintOutTotalDto dto = new UserPrintOutTotalDto();
+        UserPrintOutTotalDto.Detail detailWlk;
+
+        int i = 0;
+
+        //
+        if (isGroupByPrinterUser) {
+            dto.setPrinterName(row[i++].toString());
         }
+        //
+        dto.setUserId(row[i++].toString());
+        dto.setUserName(row[i++].toString());
+        dto.setAmount((BigDecimal) row[i++]);
+        dto.setTransactions((Long) row[i++]);
 
-        @SuppressWarnings("unchecked")
-        final List<Object[]> rows = query.getResultList();
-        final List<UserPrintOutTotalDto> objs = new ArrayList<>();
+        // Pages (sent)
 
-        for (final Object[] row : rows) {
+        detailWlk = new UserPrintOutTotalDto.Detail();
+        dto.setTotalPagesSent(detailWlk);
 
-            final UserPrintOutTotalDto dto = new UserPrintOutTotalDto();
-            UserPrintOutTotalDto.Detail detailWlk;
+        detailWlk.setTotal((Long) row[i++]);
 
-            int i = 0;
+        detailWlk.setA4((Long) row[i++]);
+        detailWlk.setA3((Long) row[i++]);
+        detailWlk.setSimplex((Long) row[i++]);
+        detailWlk.setDuplex((Long) row[i++]);
+        detailWlk.setGrayscale((Long) row[i++]);
+        detailWlk.setColor((Long) row[i++]);
 
-            //
-            if (isGroupByPrinterUser) {
-                dto.setPrinterName(row[i++].toString());
-            }
-            //
-            dto.setUserId(row[i++].toString());
-            dto.setUserName(row[i++].toString());
-            dto.setAmount((BigDecimal) row[i++]);
-            dto.setTransactions((Long) row[i++]);
-
-            // Pages (sent)
-
-            detailWlk = new UserPrintOutTotalDto.Detail();
-            dto.setTotalPagesSent(detailWlk);
-
-            detailWlk.setTotal((Long) row[i++]);
-
-            detailWlk.setA4((Long) row[i++]);
-            detailWlk.setA3((Long) row[i++]);
-            detailWlk.setSimplex((Long) row[i++]);
-            detailWlk.setDuplex((Long) row[i++]);
-            detailWlk.setGrayscale((Long) row[i++]);
-            detailWlk.setColor((Long) row[i++]);
-
-            // Pages (printed)
-            detailWlk = new UserPrintOutTotalDto.Detail();
-            dto.setTotalPagesPrinted(detailWlk);
-
-            detailWlk.setTotal((Long) row[i++]);
-
-            detailWlk.setA4((Long) row[i++]);
-            detailWlk.setA3((Long) row[i++]);
-            detailWlk.setSimplex((Long) row[i++]);
-            detailWlk.setDuplex((Long) row[i++]);
-            detailWlk.setGrayscale((Long) row[i++]);
-            detailWlk.setColor((Long) row[i++]);
-
-            // ------------------------
-            // Sheets
-            // ------------------------
-            detailWlk = new UserPrintOutTotalDto.Detail();
-            dto.setTotalSheets(detailWlk);
-
-            detailWlk.setTotal((Long) row[i++]);
-
-            detailWlk.setA4((Long) row[i++]);
-            detailWlk.setA3((Long) row[i++]);
-            detailWlk.setSimplex((Long) row[i++]);
-            detailWlk.setDuplex((Long) row[i++]);
-            detailWlk.setGrayscale((Long) row[i++]);
-            detailWlk.setColor((Long) row[i++]);
-
-            // ------------------------
-            // Copies
-            // ------------------------
-            detailWlk = new UserPrintOutTotalDto.Detail();
-            dto.setTotalCopies(detailWlk);
-
-            detailWlk.setTotal((Long) row[i++]);
-
-            detailWlk.setA4((Long) row[i++]);
-            detailWlk.setA3((Long) row[i++]);
-            detailWlk.setSimplex((Long) row[i++]);
-            detailWlk.setDuplex((Long) row[i++]);
-            detailWlk.setGrayscale((Long) row[i++]);
-            detailWlk.setColor((Long) row[i++]);
-
-            // ------------------------
-            // Jobs
-            // ------------------------
-            detailWlk = new UserPrintOutTotalDto.Detail();
-            dto.setTotalJobs(detailWlk);
-
-            detailWlk.setTotal((Long) row[i++]);
-
-            detailWlk.setA4((Long) row[i++]);
-            detailWlk.setA3((Long) row[i++]);
-            detailWlk.setSimplex((Long) row[i++]);
-            detailWlk.setDuplex((Long) row[i++]);
-            detailWlk.setGrayscale((Long) row[i++]);
-            detailWlk.setColor((Long) row[i++]);
-
-            // ------------------------
-            final String klas = StringUtils.defaultString((String) row[i++]);
-            dto.setUserGroup(klas);
-            dto.setDateFrom((Date) row[i++]);
-            dto.setDateTo((Date) row[i++]);
-            //
-            objs.add(dto);
-        }
-        return objs;
+        // Pages (printed)
+        detailWlk = new UserPrintOutTotalDto.Detail();
+        dto.setTotalPagesPrinted(detailWlk);
+
+        detailWlk.setTotal((Long) row[i++]);
+
+        detailWlk.setA4((Long) row[i++]);
+        detailWlk.setA3((Long) row[i++]);
+        detailWlk.setSimplex((Long) row[i++]);
+        detailWlk.setDuplex((Long) row[i++]);
+        detailWlk.setGrayscale((Long) row[i++]);
+        detailWlk.setColor((Long) row[i++]);
+
+        // ------------------------
+        // Sheets
+        // ------------------------
+        detailWlk = new UserPrintOutTotalDto.Detail();
+        dto.setTotalSheets(detailWlk);
+
+        detailWlk.setTotal((Long) row[i++]);
+
+        detailWlk.setA4((Long) row[i++]);
+        detailWlk.setA3((Long) row[i++]);
+        detailWlk.setSimplex((Long) row[i++]);
+        detailWlk.setDuplex((Long) row[i++]);
+        detailWlk.setGrayscale((Long) row[i++]);
+        detailWlk.setColor((Long) row[i++]);
+
+        // ------------------------
+        // Copies
+        // ------------------------
+        detailWlk = new UserPrintOutTotalDto.Detail();
+        dto.setTotalCopies(detailWlk);
+
+        detailWlk.setTotal((Long) row[i++]);
+
+        detailWlk.setA4((Long) row[i++]);
+        detailWlk.setA3((Long) row[i++]);
+        detailWlk.setSimplex((Long) row[i++]);
+        detailWlk.setDuplex((Long) row[i++]);
+        detailWlk.setGrayscale((Long) row[i++]);
+        detailWlk.setColor((Long) row[i++]);
+
+        // ------------------------
+        // Jobs
+        // ------------------------
+        detailWlk = new UserPrintOutTotalDto.Detail();
+        dto.setTotalJobs(detailWlk);
+
+        detailWlk.setTotal((Long) row[i++]);
+
+        detailWlk.setA4((Long) row[i++]);
+        detailWlk.setA3((Long) row[i++]);
+        detailWlk.setSimplex((Long) row[i++]);
+        detailWlk.setDuplex((Long) row[i++]);
+        detailWlk.setGrayscale((Long) row[i++]);
+        detailWlk.setColor((Long) row[i++]);
+
+        // ------------------------
+        final String klas = StringUtils.defaultString((String) row[i++]);
+        dto.setUserGroup(klas);
+        dto.setDateFrom((Date) row[i++]);
+        dto.setDateTo((Date) row[i++]);
+        //
+        return dto;
     }
 
 }
@@ -24,6 +24,8 @@
  */
 package org.savapage.core.dao.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
@@ -64,6 +66,10 @@ import org.savapage.core.dao.UserGroupMemberDao;
 import org.savapage.core.dao.UserNumberDao;
 import org.savapage.core.dao.helpers.DaoBatchCommitter;
 import org.savapage.core.jpa.tools.DbVersionInfo;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
+import org.savapage.core.services.helpers.EffectiveAclCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +96,26 @@ public final class DaoContextImpl implements DaoContext {
      */
     private static final AtomicInteger OPEN_COUNT = new AtomicInteger();
 
+    /**
+     * Duration of database commits.
+     */
+    private static final LatencyHistogram METRIC_COMMIT =
+            MetricsRegistry.instance().histogram("db_commit_seconds",
+                    "Duration of database transaction commits.");
+
+    /**
+     * Number of database rollbacks.
+     */
+    private static final Counter METRIC_ROLLBACK =
+            MetricsRegistry.instance().counter("db_rollbacks_total",
+                    "Number of database transaction rollbacks.");
+
+    static {
+        MetricsRegistry.instance().gauge("db_contexts_open",
+                "Number of open database contexts.",
+                DaoContextImpl::getOpenCount);
+    }
+
     /**
      * @return The number of open {@link DaoContext} objects.
      */
@@ -118,6 +144,11 @@ public final class DaoContextImpl implements DaoContext {
      */
     private EntityManager em;
 
+    /**
+     * Actions to run when the current transaction ends without commit.
+     */
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+
     /**
      *
      */
@@ -461,6 +492,9 @@ public final class DaoContextImpl implements DaoContext {
 
     @Override
     public void close() {
+
+        this.endTransaction(false);
+
         if (em != null && em.isOpen()) {
             em.close();
         }
@@ -486,7 +520,16 @@ public final class DaoContextImpl implements DaoContext {
     public void commit() {
 
         if (isTransactionActive()) {
-            em.getTransaction().commit();
+            final long startNanos = System.nanoTime();
+            boolean committed = false;
+            try {
+                em.getTransaction().commit();
+                committed = true;
+            } finally {
+                METRIC_COMMIT.recordSince(startNanos);
+                EffectiveAclCache.instance().onTransactionEnd();
+                this.endTransaction(committed);
+            }
         }
     }
 
@@ -502,6 +545,36 @@ public final class DaoContextImpl implements DaoContext {
     public void rollback() {
         if (isTransactionActive()) {
             em.getTransaction().rollback();
+            METRIC_ROLLBACK.inc();
+            EffectiveAclCache.instance().onTransactionEnd();
+            this.endTransaction(false);
+        }
+    }
+
+    @Override
+    public void onRollback(final Runnable action) {
+        this.rollbackActions.add(action);
+    }
+
+    /**
+     * Clears the rollback actions, and runs them when not committed.
+     *
+     * @param committed
+     *            {@code true} when the transaction committed.
+     */
+    private void endTransaction(final boolean committed) {
+
+        if (this.rollbackActions.isEmpty()) {
+            return;
+        }
+
+        final List<Runnable> actions = new ArrayList<>(this.rollbackActions);
+        this.rollbackActions.clear();
+
+        if (!committed) {
+            for (final Runnable action : actions) {
+                action.run();
+            }
         }
     }
 
@@ -80,12 +80,15 @@ public abstract class GenericDaoImpl<T extends Entity>
     @Override
     public final T create(final T entity) {
         getEntityManager().persist(entity);
+        this.onWrite(entity);
         return entity;
     }
 
     @Override
     public final T update(final T entity) {
-        return getEntityManager().merge(entity);
+        final T merged = getEntityManager().merge(entity);
+        this.onWrite(entity);
+        return merged;
     }
 
     @Override
@@ -96,9 +99,20 @@ public abstract class GenericDaoImpl<T extends Entity>
     @Override
     public final boolean delete(final T entity) {
         getEntityManager().remove(entity);
+        this.onWrite(entity);
         return true;
     }
 
+    /**
+     * Notifies that an entity is created, updated or deleted. The default
+     * implementation does nothing.
+     *
+     * @param entity
+     *            The entity.
+     */
+    protected void onWrite(final T entity) {
+    }
+
     @Override
     public final T lock(final Long id) {
         return getEntityManager().find(entityClass, id, DAO_LOCK_MODE);
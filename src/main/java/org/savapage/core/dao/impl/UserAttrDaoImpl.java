@@ -32,6 +32,7 @@ import org.savapage.core.dao.IAttrDao;
 import org.savapage.core.dao.UserAttrDao;
 import org.savapage.core.dao.enums.UserAttrEnum;
 import org.savapage.core.jpa.UserAttr;
+import org.savapage.core.services.helpers.EffectiveAclCache;
 
 /**
  *
@@ -46,6 +47,15 @@ public final class UserAttrDaoImpl extends GenericDaoImpl<UserAttr>
         return "SELECT COUNT(T.id) FROM UserAttr T";
     }
 
+    @Override
+    protected void onWrite(final UserAttr entity) {
+        if (entity.getUser() != null
+                && EffectiveAclCache.isAclAttr(entity.getName())) {
+            EffectiveAclCache.instance()
+                    .invalidateUser(entity.getUser().getId());
+        }
+    }
+
     /**
      * This SQL LIKE value is used to select all rolling statistics.
      * <p>
@@ -31,6 +31,7 @@ import org.savapage.core.dao.UserGroupAttrDao;
 import org.savapage.core.dao.enums.UserGroupAttrEnum;
 import org.savapage.core.jpa.UserGroup;
 import org.savapage.core.jpa.UserGroupAttr;
+import org.savapage.core.services.helpers.EffectiveAclCache;
 
 /**
  *
@@ -45,6 +46,13 @@ public final class UserGroupAttrDaoImpl extends GenericDaoImpl<UserGroupAttr>
         return "SELECT COUNT(T.id) FROM UserGroupAttr T";
     }
 
+    @Override
+    protected void onWrite(final UserGroupAttr entity) {
+        if (EffectiveAclCache.isAclAttr(entity.getName())) {
+            EffectiveAclCache.instance().invalidateAll();
+        }
+    }
+
     @Override
     public UserGroupAttr findByName(final UserGroup userGroup,
             final UserGroupAttrEnum name) {
@@ -76,6 +84,7 @@ public final class UserGroupAttrDaoImpl extends GenericDaoImpl<UserGroupAttr>
                 "DELETE UserGroupAttr A WHERE A.userGroup.id = :groupId";
         final Query query = getEntityManager().createQuery(jpql);
         query.setParameter("groupId", groupId);
+        EffectiveAclCache.instance().invalidateAll();
         return query.executeUpdate();
     }
 
@@ -35,6 +35,7 @@ import org.savapage.core.dao.enums.UserAttrEnum;
 import org.savapage.core.jpa.User;
 import org.savapage.core.jpa.UserGroup;
 import org.savapage.core.jpa.UserGroupMember;
+import org.savapage.core.services.helpers.EffectiveAclCache;
 
 /**
  *
@@ -58,6 +59,14 @@ public final class UserGroupMemberDaoImpl
         return "SELECT COUNT(T.id) FROM UserGroupMember T";
     }
 
+    @Override
+    protected void onWrite(final UserGroupMember entity) {
+        if (entity.getUser() != null) {
+            EffectiveAclCache.instance()
+                    .invalidateUser(entity.getUser().getId());
+        }
+    }
+
     @Override
     public int deleteGroup(final Long groupId) {
 
@@ -65,6 +74,7 @@ public final class UserGroupMemberDaoImpl
                 "DELETE UserGroupMember U WHERE U.group.id = :groupId";
         final Query query = getEntityManager().createQuery(jpql);
         query.setParameter("groupId", groupId);
+        EffectiveAclCache.instance().invalidateAll();
         return query.executeUpdate();
     }
 
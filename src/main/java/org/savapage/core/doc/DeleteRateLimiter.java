@@ -0,0 +1,105 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of file deletes shared by parallel {@link IDocVisitor}
+ * workers, so a cleanup does not saturate (network) storage.
+ * <p>
+ * Each {@link #acquire()} reserves the next free time slot: callers wait
+ * until their slot has come. No bursts are allowed.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class DeleteRateLimiter {
+
+    /**
+     * Limiter that never waits.
+     */
+    public static final DeleteRateLimiter UNLIMITED = new DeleteRateLimiter(0);
+
+    /**
+     * Nanoseconds between two deletes, {@code 0} when unlimited.
+     */
+    private final long intervalNanos;
+
+    /**
+     * The {@link System#nanoTime()} of the next free slot.
+     */
+    private long nextSlotNanos;
+
+    /**
+     * @param maxPerSecond
+     *            Max number of deletes per second. A value of {@code 0} or
+     *            less means unlimited.
+     */
+    public DeleteRateLimiter(final int maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            this.intervalNanos = 0;
+        } else {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+        }
+        this.nextSlotNanos = System.nanoTime();
+    }
+
+    /**
+     * @return {@code true} when deletes are not limited.
+     */
+    public boolean isUnlimited() {
+        return this.intervalNanos == 0;
+    }
+
+    /**
+     * Reserves the next slot.
+     *
+     * @return Nanoseconds to wait for the reserved slot.
+     */
+    private synchronized long reserve() {
+        final long now = System.nanoTime();
+        final long slot = Math.max(this.nextSlotNanos, now);
+        this.nextSlotNanos = slot + this.intervalNanos;
+        return slot - now;
+    }
+
+    /**
+     * Waits until the caller may delete a file.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        if (this.isUnlimited()) {
+            return;
+        }
+        final long waitNanos = this.reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
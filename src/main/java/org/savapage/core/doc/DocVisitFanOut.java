@@ -0,0 +1,149 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Fans out the visit of shard directories over a bounded
+ * {@link ForkJoinPool}.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class DocVisitFanOut {
+
+    /**
+     * Visits one shard directory.
+     */
+    @FunctionalInterface
+    public interface ShardVisitor {
+
+        /**
+         * @param shard
+         *            The shard directory.
+         * @throws IOException
+         *             If IO error.
+         */
+        void visit(Path shard) throws IOException;
+    }
+
+    /**
+     * Utility class.
+     */
+    private DocVisitFanOut() {
+    }
+
+    /**
+     * Visits all shards and waits till all visits are done.
+     * <p>
+     * When a visit fails, the remaining visits still run to completion: the
+     * visitor is responsible for stopping its siblings, e.g. by a shared
+     * terminate flag. The first failure is thrown afterwards.
+     * </p>
+     *
+     * @param shards
+     *            The shard directories.
+     * @param parallelism
+     *            Max number of concurrent visits. If {@code 1} or less,
+     *            shards are visited one by one on the calling thread.
+     * @param visitor
+     *            The shard visitor.
+     * @throws IOException
+     *             The first IO error of a visit, or when interrupted.
+     */
+    public static void execute(final List<Path> shards, final int parallelism,
+            final ShardVisitor visitor) throws IOException {
+
+        if (parallelism <= 1 || shards.size() <= 1) {
+            for (final Path shard : shards) {
+                visitor.visit(shard);
+            }
+            return;
+        }
+
+        final ForkJoinPool pool =
+                new ForkJoinPool(Math.min(parallelism, shards.size()));
+
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(shards.size());
+
+            for (final Path shard : shards) {
+                futures.add(pool.submit(() -> {
+                    visitor.visit(shard);
+                    return null;
+                }));
+            }
+
+            Throwable failure = null;
+
+            for (final Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+
+            if (failure != null) {
+                rethrow(failure);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param failure
+     *            Failure of a visit.
+     * @throws IOException
+     *             When failure is an {@link IOException}.
+     */
+    private static void rethrow(final Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+}
@@ -25,13 +25,13 @@
 package org.savapage.core.doc;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import org.savapage.core.json.PdfProperties;
 import org.savapage.core.pdf.ITextHelperV5;
+import org.savapage.core.pdf.ITextPdfCreator;
 import org.savapage.core.pdf.ITextPdfUrlAnnotator;
 
 import com.itextpdf.text.DocumentException;
@@ -104,7 +104,8 @@ public final class PdfToAnnotatedURL extends AbstractPdfConverter
         final File pdfOut = this.getOutputFile(pdfFile);
         final OutputStream ostr = new FileOutputStream(pdfOut);
 
-        final PdfReader reader = new PdfReader(new FileInputStream(pdfFile));
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(pdfFile.getAbsolutePath());
         PdfStamper stamper = null;
 
         try {
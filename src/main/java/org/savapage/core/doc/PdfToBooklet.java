@@ -25,7 +25,6 @@
 package org.savapage.core.doc;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -132,7 +131,8 @@ public final class PdfToBooklet extends AbstractPdfConverter
         }
 
         //
-        final PdfReader reader = new PdfReader(new FileInputStream(pdfFile));
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(pdfFile.getAbsolutePath());
         final int nPagesMax = reader.getNumberOfPages();
         final int nPagesBlank = calcBlankPages(nPagesMax);
 
@@ -169,6 +169,7 @@ public final class PdfToBooklet extends AbstractPdfConverter
                 singleBlankPagePdfReader.close();
             }
             doc.close();
+            reader.close();
             if (exception) {
                 pdfOut.delete();
             }
@@ -25,13 +25,13 @@
 package org.savapage.core.doc;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import org.savapage.core.json.PdfProperties;
 import org.savapage.core.pdf.ITextHelperV5;
+import org.savapage.core.pdf.ITextPdfCreator;
 
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.pdf.PdfReader;
@@ -81,7 +81,8 @@ public final class PdfToEncryptedPdf extends AbstractPdfConverter
         final File pdfOut = this.getOutputFile(pdfFile);
         final OutputStream ostr = new FileOutputStream(pdfOut);
 
-        final PdfReader reader = new PdfReader(new FileInputStream(pdfFile));
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(pdfFile.getAbsolutePath());
         PdfStamper stamper = null;
 
         try {
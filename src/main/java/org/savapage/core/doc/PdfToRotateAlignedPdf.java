@@ -25,12 +25,12 @@
 package org.savapage.core.doc;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Set;
 
+import org.savapage.core.pdf.ITextPdfCreator;
 import org.savapage.core.pdf.PdfPageRotateHelper;
 
 import com.itextpdf.text.DocumentException;
@@ -85,7 +85,8 @@ public final class PdfToRotateAlignedPdf extends AbstractPdfConverter
         final File pdfOut = this.getOutputFile(pdfFile);
         final OutputStream ostr = new FileOutputStream(pdfOut);
 
-        final PdfReader reader = new PdfReader(new FileInputStream(pdfFile));
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(pdfFile.getAbsolutePath());
         PdfStamper stamper = null;
 
         try {
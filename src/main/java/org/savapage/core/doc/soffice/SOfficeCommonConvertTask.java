@@ -86,6 +86,30 @@ public final class SOfficeCommonConvertTask extends SOfficeConvertTask {
         this.inputFormat = format;
     }
 
+    /**
+     * @return The format of the output document.
+     */
+    public SOfficeDocFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * @return The format of the input document, or {@code null} when not set.
+     */
+    public SOfficeDocFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    /**
+     * Checks if the result of this task only depends on the content of the
+     * input file and the input and output format.
+     *
+     * @return {@code true} when result can be cached.
+     */
+    public boolean isResultCacheable() {
+        return defaultLoadProperties == null;
+    }
+
     @Override
     protected void modifyDocument(final XComponent document)
             throws SOfficeException {
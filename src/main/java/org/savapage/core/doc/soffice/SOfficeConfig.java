@@ -43,6 +43,18 @@ public class SOfficeConfig extends SOfficeSettings {
      */
     private int[] portNumbers = new int[] { 2002, 2003 };
 
+    /**
+     * Minimum number of running workers. The port numbers determine the
+     * maximum.
+     */
+    private int minWorkers = 1;
+
+    /**
+     * Max total size (bytes) of the conversion result cache. When {@code 0}
+     * (zero) results are not cached.
+     */
+    private long resultCacheMaxBytes;
+
     /**
      *
      * @return {@code true} when SOffice service is enabled.
@@ -74,6 +86,38 @@ public class SOfficeConfig extends SOfficeSettings {
         this.portNumbers = ports;
     }
 
+    /**
+     * @return Minimum number of running workers.
+     */
+    public final int getMinWorkers() {
+        return minWorkers;
+    }
+
+    /**
+     * @param min
+     *            Minimum number of running workers.
+     */
+    public final void setMinWorkers(final int min) {
+        this.minWorkers = min;
+    }
+
+    /**
+     * @return Max total size (bytes) of the conversion result cache. When
+     *         {@code 0} (zero) results are not cached.
+     */
+    public final long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    /**
+     * @param maxBytes
+     *            Max total size (bytes) of the conversion result cache. When
+     *            {@code 0} (zero) results are not cached.
+     */
+    public final void setResultCacheMaxBytes(final long maxBytes) {
+        this.resultCacheMaxBytes = maxBytes;
+    }
+
     /**
      * @return The UNO urls.
      */
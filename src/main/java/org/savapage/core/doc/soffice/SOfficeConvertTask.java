@@ -76,6 +76,20 @@ public abstract class SOfficeConvertTask implements SOfficeTask {
         this.outputFile = fileOut;
     }
 
+    /**
+     * @return The input file.
+     */
+    public final File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * @return The output file.
+     */
+    public final File getOutputFile() {
+        return outputFile;
+    }
+
     /**
      * Gets the load properties of the input file.
      *
@@ -157,6 +157,14 @@ public final class SOfficeProcessManager {
         }
     }
 
+    /**
+     * Releases the process control thread. The manager can not be used
+     * afterwards.
+     */
+    public void dispose() {
+        this.executor.shutdown();
+    }
+
     /**
      *
      */
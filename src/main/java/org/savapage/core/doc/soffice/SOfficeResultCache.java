@@ -0,0 +1,258 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc.soffice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded, content-hash keyed cache of converted documents.
+ * <p>
+ * The key is the SHA-256 hash of the input file content, combined with the
+ * input and output format. Cached files live in a private directory, and the
+ * least recently used entries are evicted when the total size exceeds the
+ * maximum.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class SOfficeResultCache {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SOfficeResultCache.class);
+
+    /**
+     * The cache directory.
+     */
+    private final Path cacheDir;
+
+    /**
+     * Max total size of cached files in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * File size by key, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total size of cached files in bytes.
+     */
+    private long totalBytes;
+
+    /** */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param dir
+     *            The cache directory. It is created when absent, and emptied
+     *            when present.
+     * @param maxSize
+     *            Max total size of cached files in bytes.
+     * @throws IOException
+     *             When directory can not be created.
+     */
+    public SOfficeResultCache(final Path dir, final long maxSize)
+            throws IOException {
+
+        this.cacheDir = dir;
+        this.maxBytes = maxSize;
+
+        Files.createDirectories(dir);
+
+        for (final File file : dir.toFile().listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Creates the cache key of a convert task.
+     *
+     * @param task
+     *            The task.
+     * @return The key.
+     * @throws IOException
+     *             When input file can not be read.
+     */
+    public String createKey(final SOfficeCommonConvertTask task)
+            throws IOException {
+
+        final String contentHash;
+
+        try (InputStream istr = new FileInputStream(task.getInputFile())) {
+            contentHash = DigestUtils.sha256Hex(istr);
+        }
+
+        final StringBuilder key = new StringBuilder(contentHash);
+
+        if (task.getInputFormat() != null) {
+            key.append('.').append(task.getInputFormat().getExtension());
+        }
+        return key.append('.').append(task.getOutputFormat().getExtension())
+                .toString();
+    }
+
+    /**
+     * Copies a cached result to a file.
+     *
+     * @param key
+     *            The cache key.
+     * @param fileOut
+     *            The file to copy the cached result to.
+     * @return {@code true} when found in cache and copied.
+     * @throws IOException
+     *             When copy fails.
+     */
+    public boolean retrieve(final String key, final File fileOut)
+            throws IOException {
+
+        final boolean present;
+
+        synchronized (this.entries) {
+            present = this.entries.get(key) != null;
+        }
+
+        if (present) {
+            try {
+                Files.copy(this.cacheDir.resolve(key), fileOut.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                this.hits.incrementAndGet();
+                return true;
+            } catch (NoSuchFileException e) {
+                // Evicted concurrently.
+                LOGGER.debug("Evicted: {}", key);
+            }
+        }
+
+        this.misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Stores a result in the cache.
+     *
+     * @param key
+     *            The cache key.
+     * @param result
+     *            The result file to store a copy of.
+     * @throws IOException
+     *             When copy fails.
+     */
+    public void store(final String key, final File result) throws IOException {
+
+        final long size = result.length();
+
+        if (size > this.maxBytes) {
+            return;
+        }
+
+        final Path tmp = this.cacheDir
+                .resolve(String.format(".%s.tmp", UUID.randomUUID()));
+
+        Files.copy(result.toPath(), tmp);
+        Files.move(tmp, this.cacheDir.resolve(key),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this.entries) {
+
+            final Long prev = this.entries.put(key, Long.valueOf(size));
+
+            if (prev != null) {
+                this.totalBytes -= prev.longValue();
+            }
+            this.totalBytes += size;
+
+            final Iterator<Map.Entry<String, Long>> iter =
+                    this.entries.entrySet().iterator();
+
+            while (this.totalBytes > this.maxBytes && iter.hasNext()) {
+
+                final Map.Entry<String, Long> eldest = iter.next();
+
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                iter.remove();
+                this.totalBytes -= eldest.getValue().longValue();
+                Files.deleteIfExists(this.cacheDir.resolve(eldest.getKey()));
+            }
+        }
+    }
+
+    /**
+     * @return Number of cache hits.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return Number of cached entries.
+     */
+    public int getSize() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return Total size of cached files in bytes.
+     */
+    public long getTotalBytes() {
+        synchronized (this.entries) {
+            return this.totalBytes;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc.soffice;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ * Statistics of the SOffice conversion service.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class SOfficeStats {
+
+    /** */
+    private static final LatencyHistogram METRIC_QUEUE_WAIT =
+            MetricsRegistry.instance().histogram("soffice_queue_wait_seconds",
+                    "Wait time of SOffice tasks for a worker.");
+
+    /** */
+    private static final LatencyHistogram METRIC_CONVERSION =
+            MetricsRegistry.instance().histogram("soffice_conversion_seconds",
+                    "Conversion time of SOffice tasks.");
+
+    /** */
+    private final AtomicLong tasks = new AtomicLong();
+
+    /** */
+    private final AtomicLong queueWaitMsecTotal = new AtomicLong();
+
+    /** */
+    private final AtomicLong queueWaitMsecMax = new AtomicLong();
+
+    /** */
+    private final AtomicLong conversionMsecTotal = new AtomicLong();
+
+    /** */
+    private final AtomicLong conversionMsecMax = new AtomicLong();
+
+    /** */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger workersRunning = new AtomicInteger();
+
+    /** */
+    private volatile SOfficeResultCache resultCache;
+
+    /**
+     * @param cache
+     *            The result cache, or {@code null} when not used.
+     */
+    public void setResultCache(final SOfficeResultCache cache) {
+        this.resultCache = cache;
+    }
+
+    /**
+     * Registers the gauges of these statistics in the {@link MetricsRegistry},
+     * so they are exposed over JMX and Prometheus. The first registration of a
+     * gauge name is kept.
+     */
+    public void registerMetrics() {
+        final MetricsRegistry registry = MetricsRegistry.instance();
+        registry.gauge("soffice_queue_depth",
+                "Number of SOffice tasks waiting for a worker.",
+                this::getQueueDepth);
+        registry.gauge("soffice_workers_running",
+                "Number of running SOffice workers.", this::getWorkersRunning);
+        registry.gauge("soffice_tasks", "Number of converted SOffice tasks.",
+                this::getTasks);
+        registry.gauge("soffice_cache_hits",
+                "Number of SOffice result cache hits.", this::getCacheHits);
+        registry.gauge("soffice_cache_misses",
+                "Number of SOffice result cache misses.",
+                this::getCacheMisses);
+    }
+
+    /**
+     * Records the wait time of a task for a worker.
+     *
+     * @param msec
+     *            Wait time in milliseconds.
+     */
+    public void onQueueWait(final long msec) {
+        this.queueWaitMsecTotal.addAndGet(msec);
+        this.queueWaitMsecMax.accumulateAndGet(msec, Math::max);
+        METRIC_QUEUE_WAIT.record(TimeUnit.MILLISECONDS.toNanos(msec));
+    }
+
+    /**
+     * Records the conversion time of a task by a worker.
+     *
+     * @param msec
+     *            Conversion time in milliseconds.
+     */
+    public void onConversion(final long msec) {
+        this.tasks.incrementAndGet();
+        this.conversionMsecTotal.addAndGet(msec);
+        this.conversionMsecMax.accumulateAndGet(msec, Math::max);
+        METRIC_CONVERSION.record(TimeUnit.MILLISECONDS.toNanos(msec));
+    }
+
+    /**
+     * @return The counter of tasks waiting for a worker.
+     */
+    public AtomicInteger getQueueDepthCounter() {
+        return this.queueDepth;
+    }
+
+    /**
+     * @return The counter of running workers.
+     */
+    public AtomicInteger getWorkersRunningCounter() {
+        return this.workersRunning;
+    }
+
+    /**
+     * @return Number of tasks executed by a worker.
+     */
+    public long getTasks() {
+        return this.tasks.get();
+    }
+
+    /**
+     * @return Number of tasks waiting for a worker.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth.get();
+    }
+
+    /**
+     * @return Number of running workers.
+     */
+    public int getWorkersRunning() {
+        return this.workersRunning.get();
+    }
+
+    /**
+     * @return Average queue wait time in milliseconds.
+     */
+    public long getQueueWaitMsecAvg() {
+        final long n = this.tasks.get();
+        if (n == 0) {
+            return 0;
+        }
+        return this.queueWaitMsecTotal.get() / n;
+    }
+
+    /**
+     * @return Max queue wait time in milliseconds.
+     */
+    public long getQueueWaitMsecMax() {
+        return this.queueWaitMsecMax.get();
+    }
+
+    /**
+     * @return Average conversion time in milliseconds.
+     */
+    public long getConversionMsecAvg() {
+        final long n = this.tasks.get();
+        if (n == 0) {
+            return 0;
+        }
+        return this.conversionMsecTotal.get() / n;
+    }
+
+    /**
+     * @return Max conversion time in milliseconds.
+     */
+    public long getConversionMsecMax() {
+        return this.conversionMsecMax.get();
+    }
+
+    /**
+     * @return Number of result cache hits.
+     */
+    public long getCacheHits() {
+        final SOfficeResultCache cache = this.resultCache;
+        if (cache == null) {
+            return 0;
+        }
+        return cache.getHits();
+    }
+
+    /**
+     * @return Number of result cache misses.
+     */
+    public long getCacheMisses() {
+        final SOfficeResultCache cache = this.resultCache;
+        if (cache == null) {
+            return 0;
+        }
+        return cache.getMisses();
+    }
+
+    /**
+     * @return Result cache hit ratio (between 0.0 and 1.0).
+     */
+    public double getCacheHitRatio() {
+        final long hits = this.getCacheHits();
+        final long total = hits + this.getCacheMisses();
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "workers [%d] queue [%d] tasks [%d] "
+                        + "wait avg/max [%d/%d] msec "
+                        + "convert avg/max [%d/%d] msec cache hit [%.2f]",
+                getWorkersRunning(), getQueueDepth(), getTasks(),
+                getQueueWaitMsecAvg(), getQueueWaitMsecMax(),
+                getConversionMsecAvg(), getConversionMsecMax(),
+                getCacheHitRatio());
+    }
+}
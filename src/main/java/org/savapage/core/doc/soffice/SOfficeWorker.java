@@ -215,7 +215,11 @@ public final class SOfficeWorker {
         this.taskExecutor.setAvailable(false);
         this.stopping = true;
         this.taskExecutor.shutdownNow();
-        this.processManager.stopAndWait();
+        try {
+            this.processManager.stopAndWait();
+        } finally {
+            this.processManager.dispose();
+        }
     }
 
     /**
@@ -26,23 +26,36 @@ package org.savapage.core.doc.store;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Objects;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.mutable.MutableLong;
+import org.savapage.core.doc.DeleteRateLimiter;
+import org.savapage.core.doc.DocVisitFanOut;
 import org.savapage.core.doc.IDocVisitor;
 import org.savapage.core.job.RunModeSwitch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Cleans a Document Store branch with year/month/day/hour/uuid directories.
+ * <p>
+ * Month directories are fanned out over parallel workers: each worker is a
+ * separate instance with its own visit state, sharing counters and the
+ * delete rate limiter with its parent.
+ * </p>
  *
  * @author Rijk Ravestein
  *
@@ -81,9 +94,14 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
     private final int refHour;
 
     /** */
-    private final MutableLong totCleanedDoc;
+    private final AtomicLong totCleanedDoc;
     /** */
-    private final MutableLong totCleanedContainers;
+    private final AtomicLong totCleanedContainers;
+
+    /** */
+    private final int parallelism;
+    /** */
+    private final DeleteRateLimiter deleteLimiter;
 
     /** */
     private static final int VISIT_PART_VOID = -1;
@@ -110,6 +128,27 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
      */
     public DocStoreCleaner(final Path pathStore, final Calendar calRef,
             final RunModeSwitch mode) {
+        this(pathStore, calRef, mode, 1, DeleteRateLimiter.UNLIMITED);
+    }
+
+    /**
+     *
+     * @param pathStore
+     *            Home directory of the store.
+     * @param calRef
+     *            The reference calendar date before which stored documents are
+     *            cleaned.
+     * @param mode
+     *            The run mode. If {@code RunModeSwitch#DRY}, processing is done
+     *            without cleaning.
+     * @param maxParallel
+     *            Max number of month directories cleaned in parallel.
+     * @param limiter
+     *            The delete rate limiter.
+     */
+    public DocStoreCleaner(final Path pathStore, final Calendar calRef,
+            final RunModeSwitch mode, final int maxParallel,
+            final DeleteRateLimiter limiter) {
 
         this.store = pathStore;
 
@@ -118,10 +157,35 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
         this.refDay = calRef.get(Calendar.DAY_OF_MONTH);
         this.refHour = calRef.get(Calendar.HOUR_OF_DAY);
 
-        this.totCleanedDoc = new MutableLong();
-        this.totCleanedContainers = new MutableLong();
+        this.totCleanedDoc = new AtomicLong();
+        this.totCleanedContainers = new AtomicLong();
 
         this.runMode = mode;
+        this.parallelism = maxParallel;
+        this.deleteLimiter = limiter;
+    }
+
+    /**
+     * Creates a worker sharing the settings and counters of a parent.
+     *
+     * @param parent
+     *            The parent cleaner.
+     */
+    private DocStoreCleaner(final DocStoreCleaner parent) {
+
+        this.store = parent.store;
+
+        this.refYear = parent.refYear;
+        this.refMonth = parent.refMonth;
+        this.refDay = parent.refDay;
+        this.refHour = parent.refHour;
+
+        this.totCleanedDoc = parent.totCleanedDoc;
+        this.totCleanedContainers = parent.totCleanedContainers;
+
+        this.runMode = parent.runMode;
+        this.parallelism = 1;
+        this.deleteLimiter = parent.deleteLimiter;
     }
 
     /**
@@ -141,15 +205,101 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
 
         final long nCleaned;
 
-        if (this.store.toFile().exists()) {
+        if (this.store.toFile().isDirectory()) {
+            this.cleanParallel();
+            nCleaned = this.totCleanedDoc.get();
+        } else if (this.store.toFile().exists()) {
             Files.walkFileTree(this.store, this);
-            nCleaned = this.totCleanedDoc.longValue();
+            nCleaned = this.totCleanedDoc.get();
         } else {
             nCleaned = 0;
         }
         return nCleaned;
     }
 
+    /**
+     * Visits the store and year directories on the calling thread, and fans
+     * out the month directories to parallel workers. Year directories are
+     * post-visited after their months are done.
+     *
+     * @throws IOException
+     *             If IO error.
+     */
+    private void cleanParallel() throws IOException {
+
+        final List<Path> years = new ArrayList<>();
+        final List<Path> months = new ArrayList<>();
+
+        for (final Path year : this.visitChildren(this.store)) {
+            if (this.preVisitDirectory(year,
+                    null) == FileVisitResult.CONTINUE) {
+                years.add(year);
+                months.addAll(this.visitChildren(year));
+            }
+        }
+
+        final List<Path> shards = new ArrayList<>(months.size());
+
+        for (final Path month : months) {
+            if (this.preVisitDirectory(month,
+                    null) == FileVisitResult.CONTINUE) {
+                shards.add(month);
+            }
+        }
+
+        DocVisitFanOut.execute(shards, this.parallelism,
+                shard -> Files.walkFileTree(shard, new DocStoreCleaner(this)));
+
+        for (final Path year : years) {
+            this.postVisitDirectory(year, null);
+        }
+    }
+
+    /**
+     * Visits the files in a directory, and collects its sub directories.
+     *
+     * @param dir
+     *            The directory.
+     * @return The sub directories.
+     * @throws IOException
+     *             If IO error.
+     */
+    private List<Path> visitChildren(final Path dir) throws IOException {
+
+        final List<Path> dirs = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path path : stream) {
+                final BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    dirs.add(path);
+                } else {
+                    this.visitFile(path, attrs);
+                }
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * Deletes a file or (empty) directory, respecting the delete rate limit.
+     *
+     * @param path
+     *            The path.
+     * @throws IOException
+     *             If IO error, or interrupted while waiting.
+     */
+    private void delete(final Path path) throws IOException {
+        try {
+            this.deleteLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        Files.delete(path);
+    }
+
     /**
      * Strips the store home path from full path, so the relative date path
      * remains.
@@ -262,7 +412,7 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
         Objects.requireNonNull(file);
 
         if (this.runMode.isReal()) {
-            Files.delete(file);
+            this.delete(file);
         }
         return FileVisitResult.CONTINUE;
     }
@@ -329,7 +479,7 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
         if (isDeleteDir(dir)) {
 
             if (this.runMode.isReal()) {
-                Files.delete(dir);
+                this.delete(dir);
             }
 
             if (LOGGER.isDebugEnabled()) {
@@ -337,9 +487,9 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
             }
 
             if (this.visitUuid == null) {
-                this.totCleanedContainers.increment();
+                this.totCleanedContainers.incrementAndGet();
             } else {
-                this.totCleanedDoc.increment();
+                this.totCleanedDoc.incrementAndGet();
             }
 
         } else {
@@ -354,6 +504,6 @@ public final class DocStoreCleaner extends SimpleFileVisitor<Path>
      * @return Number of cleaned documents.
      */
     public long getDocsCleaned() {
-        return this.totCleanedDoc.longValue();
+        return this.totCleanedDoc.get();
     }
 }
@@ -0,0 +1,579 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Flat account transaction report row, with the fields of the associated
+ * DocLog, PrintOut and PosPurchase selected in one projection query.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class AccountTrxReportDto {
+
+    /**
+     * Transaction date.
+     */
+    private Date transactionDate;
+
+    /**
+     * Transaction type.
+     */
+    private String trxType;
+
+    /**
+     * Currency code.
+     */
+    private String currencyCode;
+
+    /**
+     * Transaction amount.
+     */
+    private BigDecimal amount;
+
+    /**
+     * Account balance after the transaction.
+     */
+    private BigDecimal balance;
+
+    /**
+     * Transaction comment.
+     */
+    private String comment;
+
+    /**
+     * External payment method.
+     */
+    private String extMethod;
+
+    /**
+     * External amount.
+     */
+    private BigDecimal extAmount;
+
+    /**
+     * External fee.
+     */
+    private BigDecimal extFee;
+
+    /**
+     * External currency code.
+     */
+    private String extCurrencyCode;
+
+    /**
+     * External payment address.
+     */
+    private String extMethodAddress;
+
+    /**
+     * External details.
+     */
+    private String extDetails;
+
+    /**
+     * POS purchase receipt number, or {@code null}.
+     */
+    private String posReceiptNumber;
+
+    /**
+     * POS purchase payment type, or {@code null}.
+     */
+    private String posPaymentType;
+
+    /**
+     * DocLog primary key, or {@code null} when no document.
+     */
+    private Long docLogId;
+
+    /**
+     * Document pages.
+     */
+    private Integer docNumberOfPages;
+
+    /**
+     * Document title.
+     */
+    private String docTitle;
+
+    /**
+     * Original document cost.
+     */
+    private BigDecimal docCostOriginal;
+
+    /**
+     * Document external ID.
+     */
+    private String docExternalId;
+
+    /**
+     * PrintOut primary key, or {@code null} when not printed.
+     */
+    private Long printOutId;
+
+    /**
+     * Printed copies.
+     */
+    private Integer printNumberOfCopies;
+
+    /**
+     * Printed sheets.
+     */
+    private Integer printNumberOfSheets;
+
+    /**
+     * Paper size.
+     */
+    private String printPaperSize;
+
+    /**
+     * Duplex print.
+     */
+    private Boolean printDuplex;
+
+    /**
+     * Grayscale print.
+     */
+    private Boolean printGrayscale;
+
+    /**
+     * IPP options (JSON).
+     */
+    private String printIppOptions;
+
+    /**
+     * Print mode.
+     */
+    private String printMode;
+
+    /**
+     * @return Transaction date.
+     */
+    public Date getTransactionDate() {
+        return transactionDate;
+    }
+
+    /**
+     * @param transactionDate
+     *            Transaction date.
+     */
+    public void setTransactionDate(final Date transactionDate) {
+        this.transactionDate = transactionDate;
+    }
+
+    /**
+     * @return Transaction type.
+     */
+    public String getTrxType() {
+        return trxType;
+    }
+
+    /**
+     * @param trxType
+     *            Transaction type.
+     */
+    public void setTrxType(final String trxType) {
+        this.trxType = trxType;
+    }
+
+    /**
+     * @return Currency code.
+     */
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    /**
+     * @param currencyCode
+     *            Currency code.
+     */
+    public void setCurrencyCode(final String currencyCode) {
+        this.currencyCode = currencyCode;
+    }
+
+    /**
+     * @return Transaction amount.
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @param amount
+     *            Transaction amount.
+     */
+    public void setAmount(final BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @return Account balance after the transaction.
+     */
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    /**
+     * @param balance
+     *            Account balance after the transaction.
+     */
+    public void setBalance(final BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * @return Transaction comment.
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @param comment
+     *            Transaction comment.
+     */
+    public void setComment(final String comment) {
+        this.comment = comment;
+    }
+
+    /**
+     * @return External payment method.
+     */
+    public String getExtMethod() {
+        return extMethod;
+    }
+
+    /**
+     * @param extMethod
+     *            External payment method.
+     */
+    public void setExtMethod(final String extMethod) {
+        this.extMethod = extMethod;
+    }
+
+    /**
+     * @return External amount.
+     */
+    public BigDecimal getExtAmount() {
+        return extAmount;
+    }
+
+    /**
+     * @param extAmount
+     *            External amount.
+     */
+    public void setExtAmount(final BigDecimal extAmount) {
+        this.extAmount = extAmount;
+    }
+
+    /**
+     * @return External fee.
+     */
+    public BigDecimal getExtFee() {
+        return extFee;
+    }
+
+    /**
+     * @param extFee
+     *            External fee.
+     */
+    public void setExtFee(final BigDecimal extFee) {
+        this.extFee = extFee;
+    }
+
+    /**
+     * @return External currency code.
+     */
+    public String getExtCurrencyCode() {
+        return extCurrencyCode;
+    }
+
+    /**
+     * @param extCurrencyCode
+     *            External currency code.
+     */
+    public void setExtCurrencyCode(final String extCurrencyCode) {
+        this.extCurrencyCode = extCurrencyCode;
+    }
+
+    /**
+     * @return External payment address.
+     */
+    public String getExtMethodAddress() {
+        return extMethodAddress;
+    }
+
+    /**
+     * @param extMethodAddress
+     *            External payment address.
+     */
+    public void setExtMethodAddress(final String extMethodAddress) {
+        this.extMethodAddress = extMethodAddress;
+    }
+
+    /**
+     * @return External details.
+     */
+    public String getExtDetails() {
+        return extDetails;
+    }
+
+    /**
+     * @param extDetails
+     *            External details.
+     */
+    public void setExtDetails(final String extDetails) {
+        this.extDetails = extDetails;
+    }
+
+    /**
+     * @return POS purchase receipt number, or {@code null}.
+     */
+    public String getPosReceiptNumber() {
+        return posReceiptNumber;
+    }
+
+    /**
+     * @param posReceiptNumber
+     *            POS purchase receipt number, or {@code null}.
+     */
+    public void setPosReceiptNumber(final String posReceiptNumber) {
+        this.posReceiptNumber = posReceiptNumber;
+    }
+
+    /**
+     * @return POS purchase payment type, or {@code null}.
+     */
+    public String getPosPaymentType() {
+        return posPaymentType;
+    }
+
+    /**
+     * @param posPaymentType
+     *            POS purchase payment type, or {@code null}.
+     */
+    public void setPosPaymentType(final String posPaymentType) {
+        this.posPaymentType = posPaymentType;
+    }
+
+    /**
+     * @return DocLog primary key, or {@code null} when no document.
+     */
+    public Long getDocLogId() {
+        return docLogId;
+    }
+
+    /**
+     * @param docLogId
+     *            DocLog primary key, or {@code null} when no document.
+     */
+    public void setDocLogId(final Long docLogId) {
+        this.docLogId = docLogId;
+    }
+
+    /**
+     * @return Document pages.
+     */
+    public Integer getDocNumberOfPages() {
+        return docNumberOfPages;
+    }
+
+    /**
+     * @param docNumberOfPages
+     *            Document pages.
+     */
+    public void setDocNumberOfPages(final Integer docNumberOfPages) {
+        this.docNumberOfPages = docNumberOfPages;
+    }
+
+    /**
+     * @return Document title.
+     */
+    public String getDocTitle() {
+        return docTitle;
+    }
+
+    /**
+     * @param docTitle
+     *            Document title.
+     */
+    public void setDocTitle(final String docTitle) {
+        this.docTitle = docTitle;
+    }
+
+    /**
+     * @return Original document cost.
+     */
+    public BigDecimal getDocCostOriginal() {
+        return docCostOriginal;
+    }
+
+    /**
+     * @param docCostOriginal
+     *            Original document cost.
+     */
+    public void setDocCostOriginal(final BigDecimal docCostOriginal) {
+        this.docCostOriginal = docCostOriginal;
+    }
+
+    /**
+     * @return Document external ID.
+     */
+    public String getDocExternalId() {
+        return docExternalId;
+    }
+
+    /**
+     * @param docExternalId
+     *            Document external ID.
+     */
+    public void setDocExternalId(final String docExternalId) {
+        this.docExternalId = docExternalId;
+    }
+
+    /**
+     * @return PrintOut primary key, or {@code null} when not printed.
+     */
+    public Long getPrintOutId() {
+        return printOutId;
+    }
+
+    /**
+     * @param printOutId
+     *            PrintOut primary key, or {@code null} when not printed.
+     */
+    public void setPrintOutId(final Long printOutId) {
+        this.printOutId = printOutId;
+    }
+
+    /**
+     * @return Printed copies.
+     */
+    public Integer getPrintNumberOfCopies() {
+        return printNumberOfCopies;
+    }
+
+    /**
+     * @param printNumberOfCopies
+     *            Printed copies.
+     */
+    public void setPrintNumberOfCopies(final Integer printNumberOfCopies) {
+        this.printNumberOfCopies = printNumberOfCopies;
+    }
+
+    /**
+     * @return Printed sheets.
+     */
+    public Integer getPrintNumberOfSheets() {
+        return printNumberOfSheets;
+    }
+
+    /**
+     * @param printNumberOfSheets
+     *            Printed sheets.
+     */
+    public void setPrintNumberOfSheets(final Integer printNumberOfSheets) {
+        this.printNumberOfSheets = printNumberOfSheets;
+    }
+
+    /**
+     * @return Paper size.
+     */
+    public String getPrintPaperSize() {
+        return printPaperSize;
+    }
+
+    /**
+     * @param printPaperSize
+     *            Paper size.
+     */
+    public void setPrintPaperSize(final String printPaperSize) {
+        this.printPaperSize = printPaperSize;
+    }
+
+    /**
+     * @return Duplex print.
+     */
+    public Boolean getPrintDuplex() {
+        return printDuplex;
+    }
+
+    /**
+     * @param printDuplex
+     *            Duplex print.
+     */
+    public void setPrintDuplex(final Boolean printDuplex) {
+        this.printDuplex = printDuplex;
+    }
+
+    /**
+     * @return Grayscale print.
+     */
+    public Boolean getPrintGrayscale() {
+        return printGrayscale;
+    }
+
+    /**
+     * @param printGrayscale
+     *            Grayscale print.
+     */
+    public void setPrintGrayscale(final Boolean printGrayscale) {
+        this.printGrayscale = printGrayscale;
+    }
+
+    /**
+     * @return IPP options (JSON).
+     */
+    public String getPrintIppOptions() {
+        return printIppOptions;
+    }
+
+    /**
+     * @param printIppOptions
+     *            IPP options (JSON).
+     */
+    public void setPrintIppOptions(final String printIppOptions) {
+        this.printIppOptions = printIppOptions;
+    }
+
+    /**
+     * @return Print mode.
+     */
+    public String getPrintMode() {
+        return printMode;
+    }
+
+    /**
+     * @param printMode
+     *            Print mode.
+     */
+    public void setPrintMode(final String printMode) {
+        this.printMode = printMode;
+    }
+
+}
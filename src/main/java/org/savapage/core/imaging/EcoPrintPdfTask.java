@@ -27,7 +27,6 @@ package org.savapage.core.imaging;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.FileSystems;
@@ -37,6 +36,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 import org.savapage.core.SpException;
 import org.savapage.core.doc.ImageToPdf;
+import org.savapage.core.pdf.PdfPageMeta;
+import org.savapage.core.pdf.PdfPageMetaCache;
 import org.savapage.core.pdf.PdfPageRotateHelper;
 import org.savapage.core.pdf.facade.PdfDocumentAGPL;
 import org.savapage.core.system.CommandExecutor;
@@ -49,10 +50,6 @@ import org.slf4j.LoggerFactory;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.Rectangle;
-import com.itextpdf.text.pdf.PdfDictionary;
-import com.itextpdf.text.pdf.PdfName;
-import com.itextpdf.text.pdf.PdfNumber;
-import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfWriter;
 
 /**
@@ -186,10 +183,10 @@ public final class EcoPrintPdfTask
         double fractionFilteredTot = 0.0;
 
         try {
-            final PdfReader readerWlk = new PdfReader(
-                    new FileInputStream(this.taskInfo.getPdfIn()));
+            final PdfPageMeta pageMeta =
+                    PdfPageMetaCache.instance().get(this.taskInfo.getPdfIn());
 
-            nPagesMax = readerWlk.getNumberOfPages();
+            nPagesMax = pageMeta.getNumberOfPages();
 
             if (LOGGER.isInfoEnabled()) {
 
@@ -213,8 +210,8 @@ public final class EcoPrintPdfTask
 
                 this.checkExecutorTerminating();
 
-                final Rectangle pageSize = readerWlk.getPageSize(nPage);
-                final int pageRotation = readerWlk.getPageRotation(nPage);
+                final Rectangle pageSize = pageMeta.getPageSize(nPage);
+                final int pageRotation = pageMeta.getPageRotation(nPage);
 
                 final boolean pageLandscape =
                         PdfPageRotateHelper.isLandscapePage(pageSize);
@@ -226,12 +223,6 @@ public final class EcoPrintPdfTask
                  * Set page size and margins first.
                  */
                 if (pageLandscape && !seenAsLandscape) {
-
-                    final PdfDictionary pageDict = readerWlk.getPageN(i + 1);
-
-                    pageDict.put(PdfName.ROTATE, new PdfNumber(
-                            PdfPageRotateHelper.PDF_ROTATION_90.intValue()));
-
                     targetDocument.setPageSize(pageSize.rotate());
                 } else {
                     targetDocument.setPageSize(pageSize);
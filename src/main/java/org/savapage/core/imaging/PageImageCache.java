@@ -0,0 +1,526 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.savapage.core.imaging.Pdf2ImgCommand.CreateParms;
+
+/**
+ * Shared, size-bounded disk cache of PDF page images.
+ * <p>
+ * Images are keyed by the identity of the PDF file (path, file key, size and
+ * modification time), the page, the rotation, the resolution and the image
+ * type. The key is hashed into the cache file name. Job files are never
+ * changed in place, so a key identifies the image content.
+ * </p>
+ * <p>
+ * Concurrent requests for the same image share one render. A request for a
+ * page that is not cached renders it together with the next pages that are
+ * neither cached nor being rendered, up to a maximum, in one command: the
+ * next requests, like the thumbnails a browser asks for next, are served from
+ * the cache.
+ * </p>
+ * <p>
+ * Requesters get a private hard link (or copy) of the cached image, which they
+ * own and must delete. Least recently used images are evicted when the cache
+ * exceeds its size.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PageImageCache {
+
+    /**
+     * Renders a range of pages.
+     */
+    public interface Renderer {
+
+        /**
+         * Renders a range of pages.
+         *
+         * @param parms
+         *            The parameters, where {@link CreateParms#getPageOrdinal()}
+         *            is the first page of the range.
+         * @param imgFiles
+         *            The image files to create, one for each page in the
+         *            range.
+         * @throws IOException
+         *             When rendering failed.
+         */
+        void render(CreateParms parms, File[] imgFiles) throws IOException;
+    }
+
+    /**
+     * Max attempts to get an image that is evicted while being linked.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** */
+    private final File cacheDir;
+
+    /** */
+    private final String fileExt;
+
+    /** */
+    private final Renderer renderer;
+
+    /**
+     * Cached image size by key, in access order.
+     */
+    private final LinkedHashMap<String, Long> lru =
+            new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Renders in progress by key.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<File>> //
+    inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Total size of cached images. Guarded by {@link #lru}.
+     */
+    private long totalBytes;
+
+    /** */
+    private long hits;
+
+    /** */
+    private long renders;
+
+    /**
+     * @param dir
+     *            The cache directory.
+     * @param ext
+     *            The image file extension.
+     * @param imgRenderer
+     *            The renderer.
+     */
+    public PageImageCache(final File dir, final String ext,
+            final Renderer imgRenderer) {
+        this.cacheDir = dir;
+        this.fileExt = ext;
+        this.renderer = imgRenderer;
+    }
+
+    /**
+     * Gets a page image.
+     *
+     * @param parms
+     *            The parameters, where {@link CreateParms#getImgFile()} is the
+     *            image file to create for the requester.
+     * @param maxBytes
+     *            Max size of the cache.
+     * @param maxPages
+     *            Max number of pages to render in one command.
+     * @return The image file of the requester.
+     * @throws IOException
+     *             When image could not be created.
+     */
+    public File getPageImage(final CreateParms parms, final long maxBytes,
+            final int maxPages) throws IOException {
+
+        final String fileId = fileIdentity(parms.getPdfFile());
+        final String key =
+                this.createKey(fileId, parms, parms.getPageOrdinal());
+
+        for (int attempt = 1;; attempt++) {
+
+            final File cached = this.getCached(key, parms, fileId, maxBytes,
+                    maxPages);
+            try {
+                linkOrCopy(cached, parms.getImgFile());
+                return parms.getImgFile();
+            } catch (NoSuchFileException e) {
+                // Evicted meanwhile.
+                this.remove(key);
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the cached image of a key, and renders it when absent.
+     *
+     * @param key
+     *            The key.
+     * @param parms
+     *            The parameters.
+     * @param fileId
+     *            PDF file identity.
+     * @param maxBytes
+     *            Max size of the cache.
+     * @param maxPages
+     *            Max number of pages to render in one command.
+     * @return The cached image file.
+     * @throws IOException
+     *             When image could not be rendered.
+     */
+    private File getCached(final String key, final CreateParms parms,
+            final String fileId, final long maxBytes, final int maxPages)
+            throws IOException {
+
+        synchronized (this.lru) {
+            if (this.lru.get(key) != null) {
+                this.hits++;
+                return this.cacheFile(key);
+            }
+        }
+
+        final CompletableFuture<File> own = new CompletableFuture<>();
+        final CompletableFuture<File> other =
+                this.inFlight.putIfAbsent(key, own);
+
+        if (other != null) {
+            return await(other);
+        }
+
+        /*
+         * Claim the next pages that are not cached nor in flight.
+         */
+        final List<String> keys = new ArrayList<>();
+        final List<CompletableFuture<File>> futures = new ArrayList<>();
+
+        keys.add(key);
+        futures.add(own);
+
+        final int lastPage = Math.min(parms.getNumberOfPages(),
+                parms.getPageOrdinal() + Math.max(1, maxPages)) - 1;
+
+        for (int page = parms.getPageOrdinal() + 1; page <= lastPage;
+                page++) {
+
+            final String pageKey = this.createKey(fileId, parms, page);
+
+            synchronized (this.lru) {
+                if (this.lru.containsKey(pageKey)) {
+                    break;
+                }
+            }
+            final CompletableFuture<File> future = new CompletableFuture<>();
+            if (this.inFlight.putIfAbsent(pageKey, future) != null) {
+                break;
+            }
+            keys.add(pageKey);
+            futures.add(future);
+        }
+
+        final File[] files = new File[keys.size()];
+        final File[] tmpFiles = new File[keys.size()];
+
+        for (int i = 0; i < files.length; i++) {
+            files[i] = this.cacheFile(keys.get(i));
+            tmpFiles[i] = new File(this.cacheDir,
+                    String.format("%s.tmp.%s", keys.get(i), this.fileExt));
+        }
+
+        try {
+            Files.createDirectories(this.cacheDir.toPath());
+
+            this.renderer.render(copyRange(parms), tmpFiles);
+
+            for (int i = 0; i < files.length; i++) {
+                Files.move(tmpFiles[i].toPath(), files[i].toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                this.put(keys.get(i), files[i].length(), maxBytes);
+            }
+
+            synchronized (this.lru) {
+                this.renders++;
+            }
+
+            for (int i = 0; i < files.length; i++) {
+                this.inFlight.remove(keys.get(i));
+                futures.get(i).complete(files[i]);
+            }
+            return files[0];
+
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < files.length; i++) {
+                Files.deleteIfExists(tmpFiles[i].toPath());
+                this.inFlight.remove(keys.get(i));
+                futures.get(i).completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param parms
+     *            The request parameters.
+     * @return Copy of parameters without image file.
+     */
+    private static CreateParms copyRange(final CreateParms parms) {
+        final CreateParms copy = new CreateParms();
+        copy.setPdfFile(parms.getPdfFile());
+        copy.setNumberOfPages(parms.getNumberOfPages());
+        copy.setPageOrdinal(parms.getPageOrdinal());
+        copy.setLandscape(parms.isLandscape());
+        copy.setRotation(parms.getRotation());
+        copy.setRotate(parms.getRotate());
+        copy.setResolution(parms.getResolution());
+        return copy;
+    }
+
+    /**
+     * Waits for a render of another request.
+     *
+     * @param future
+     *            The render.
+     * @return The cached image file.
+     * @throws IOException
+     *             When render failed.
+     */
+    private static File await(final CompletableFuture<File> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Adds a cached image, and evicts least recently used images.
+     *
+     * @param key
+     *            The key.
+     * @param size
+     *            Image file size.
+     * @param maxBytes
+     *            Max size of the cache.
+     * @throws IOException
+     *             When evicted file could not be deleted.
+     */
+    private void put(final String key, final long size, final long maxBytes)
+            throws IOException {
+
+        final List<String> evicted = new ArrayList<>();
+
+        synchronized (this.lru) {
+
+            final Long previous = this.lru.put(key, Long.valueOf(size));
+            if (previous != null) {
+                this.totalBytes -= previous.longValue();
+            }
+            this.totalBytes += size;
+
+            final Iterator<Map.Entry<String, Long>> iter =
+                    this.lru.entrySet().iterator();
+
+            // Never evict the image just added.
+            while (this.totalBytes > maxBytes && this.lru.size() > 1
+                    && iter.hasNext()) {
+                final Map.Entry<String, Long> entry = iter.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                this.totalBytes -= entry.getValue().longValue();
+                evicted.add(entry.getKey());
+                iter.remove();
+            }
+        }
+
+        for (final String evictedKey : evicted) {
+            Files.deleteIfExists(this.cacheFile(evictedKey).toPath());
+        }
+    }
+
+    /**
+     * Removes an image from the cache index.
+     *
+     * @param key
+     *            The key.
+     */
+    private void remove(final String key) {
+        synchronized (this.lru) {
+            final Long size = this.lru.remove(key);
+            if (size != null) {
+                this.totalBytes -= size.longValue();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached images.
+     *
+     * @throws IOException
+     *             When a file could not be deleted.
+     */
+    public void clear() throws IOException {
+        final List<String> keys;
+        synchronized (this.lru) {
+            keys = new ArrayList<>(this.lru.keySet());
+            this.lru.clear();
+            this.totalBytes = 0;
+        }
+        for (final String key : keys) {
+            Files.deleteIfExists(this.cacheFile(key).toPath());
+        }
+    }
+
+    /**
+     * @return Total size of cached images.
+     */
+    public long getTotalBytes() {
+        synchronized (this.lru) {
+            return this.totalBytes;
+        }
+    }
+
+    /**
+     * @return Number of cached images.
+     */
+    public int size() {
+        synchronized (this.lru) {
+            return this.lru.size();
+        }
+    }
+
+    /**
+     * @return Number of requests served from cache.
+     */
+    public long getHits() {
+        synchronized (this.lru) {
+            return this.hits;
+        }
+    }
+
+    /**
+     * @return Number of render commands.
+     */
+    public long getRenders() {
+        synchronized (this.lru) {
+            return this.renders;
+        }
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @return The cache file.
+     */
+    private File cacheFile(final String key) {
+        return new File(this.cacheDir,
+                String.format("%s.%s", key, this.fileExt));
+    }
+
+    /**
+     * Creates a private hard link to a cached image, or a copy when linking is
+     * not supported.
+     *
+     * @param cached
+     *            The cached image.
+     * @param target
+     *            The file to create.
+     * @throws IOException
+     *             When link or copy failed.
+     */
+    private static void linkOrCopy(final File cached, final File target)
+            throws IOException {
+        try {
+            Files.createLink(target.toPath(), cached.toPath());
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(cached.toPath(), target.toPath());
+        }
+    }
+
+    /**
+     * @param pdfFile
+     *            The PDF file.
+     * @return The file identity.
+     * @throws IOException
+     *             When file attributes cannot be read.
+     */
+    private static String fileIdentity(final File pdfFile)
+            throws IOException {
+
+        final BasicFileAttributes attrs = Files
+                .readAttributes(pdfFile.toPath(), BasicFileAttributes.class);
+
+        return String.format("%s|%s|%d|%d", pdfFile.getCanonicalPath(),
+                attrs.fileKey(), attrs.size(),
+                attrs.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * @param fileId
+     *            PDF file identity.
+     * @param parms
+     *            The parameters.
+     * @param page
+     *            Zero-based page ordinal.
+     * @return The key (hex SHA-256 hash).
+     */
+    private String createKey(final String fileId, final CreateParms parms,
+            final int page) {
+
+        final String id = String.format("%s|%d|%d|%d|%s", fileId, page,
+                parms.getRotate(), parms.getResolution(), this.fileExt);
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest
+                .digest(id.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+}
@@ -240,4 +240,65 @@ public final class Pdf2ImgCairoCmd implements Pdf2ImgCommand, ICommandStrategy {
         return command;
     }
 
+    /**
+     * Creates a command that renders a range of pages in one run.
+     *
+     * @param parms
+     *            The parameters, where {@link CreateParms#getPageOrdinal()}
+     *            is the first page of the range, and
+     *            {@link CreateParms#getImgFile()} is not used.
+     * @param imgFiles
+     *            The image files of the pages in the range: the first file is
+     *            for the first page.
+     * @return The command.
+     */
+    public String createRangeCommand(final CreateParms parms,
+            final File[] imgFiles) {
+
+        final int firstOneBased = parms.getPageOrdinal() + 1;
+        final int lastOneBased = firstOneBased + imgFiles.length - 1;
+
+        final Integer rotate2Apply = Integer.valueOf(parms.getRotate());
+        final boolean isRotateZero =
+                rotate2Apply.equals(PdfPageRotateHelper.PDF_ROTATION_0);
+
+        final String imageFileOutTemplate =
+                String.format("%s%c_pdftocairo_range_%s",
+                        StringUtils.defaultString(imgFiles[0].getParent()),
+                        File.separatorChar, UUID.randomUUID().toString());
+
+        final StringBuilder cmdBuffer =
+                new StringBuilder(STRINGBUILDER_CAPACITY);
+
+        cmdBuffer.append(String.format("%s %s -r %d -f %d -l %d \"%s\" \"%s\"",
+                SystemInfo.Command.PDFTOCAIRO.cmd(), this.imgType.getCmdOpt(),
+                parms.getResolution(), firstOneBased, lastOneBased,
+                parms.getPdfFile().getAbsolutePath(), imageFileOutTemplate));
+
+        final int digits = String.valueOf(parms.getNumberOfPages()).length();
+
+        for (int i = 0; i < imgFiles.length; i++) {
+
+            final String imageFileOutProduced = String.format("%s-%s.%s",
+                    imageFileOutTemplate,
+                    StringUtils.leftPad(String.valueOf(firstOneBased + i),
+                            digits, '0'),
+                    this.imgType.getFileExt());
+
+            final String imgFile = imgFiles[i].getAbsolutePath();
+
+            if (isRotateZero) {
+                cmdBuffer.append(String.format(" && mv \"%s\" \"%s\"",
+                        imageFileOutProduced, imgFile));
+            } else {
+                cmdBuffer.append(String.format(
+                        " && %s -rotate %d \"%s\" \"%s\" && rm \"%s\"",
+                        SystemInfo.Command.CONVERT.cmd(),
+                        rotate2Apply.intValue(), imageFileOutProduced,
+                        imgFile, imageFileOutProduced));
+            }
+        }
+        return cmdBuffer.toString();
+    }
+
 }
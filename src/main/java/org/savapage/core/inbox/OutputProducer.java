@@ -33,12 +33,14 @@ import org.savapage.core.LetterheadNotFoundException;
 import org.savapage.core.PostScriptDrmException;
 import org.savapage.core.SpException;
 import org.savapage.core.config.ConfigManager;
+import org.savapage.core.config.IConfigProp;
 import org.savapage.core.config.UserHomePathEnum;
 import org.savapage.core.dao.UserDao;
 import org.savapage.core.doc.DocContent;
 import org.savapage.core.imaging.EcoPrintPdfTask;
 import org.savapage.core.imaging.EcoPrintPdfTaskPendingException;
 import org.savapage.core.imaging.ImageUrl;
+import org.savapage.core.imaging.PageImageCache;
 import org.savapage.core.imaging.Pdf2ImgCairoCmd;
 import org.savapage.core.imaging.Pdf2ImgCairoCmd.ImgType;
 import org.savapage.core.imaging.Pdf2ImgCommand;
@@ -84,11 +86,58 @@ public final class OutputProducer {
     private final Pdf2ImgCommand pdf2CairoCommand =
             new Pdf2ImgCairoCmd(ImgType.PNG);
 
+    /** */
+    private static final String PAGE_IMAGE_CACHE_DIR = "page-image-cache";
+
+    /** */
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    /**
+     * Shared cache of rendered page images.
+     */
+    private final PageImageCache pageImageCache;
+
     /**
      *
      */
     private OutputProducer() {
+        this.pageImageCache = new PageImageCache(
+                new File(ConfigManager.getAppTmpDir(), PAGE_IMAGE_CACHE_DIR),
+                ImageUrl.FILENAME_EXT_IMAGE, this::renderPageImages);
+    }
+
+    /**
+     * Renders a range of page images with one command.
+     *
+     * @param parms
+     *            The parameters.
+     * @param imgFiles
+     *            The image files to create.
+     * @throws IOException
+     *             When images could not be created.
+     */
+    private void renderPageImages(final Pdf2ImgCommand.CreateParms parms,
+            final File[] imgFiles) throws IOException {
+
+        final String command = ((Pdf2ImgCairoCmd) this.pdf2CairoCommand)
+                .createRangeCommand(parms, imgFiles);
+
+        LOGGER.trace(command);
+
+        final ICommandExecutor exec = CommandExecutor.createSimple(command);
 
+        try {
+            if (exec.executeCommand() != 0) {
+                LOGGER.error(command);
+                LOGGER.error(exec.getStandardError());
+                throw new IOException(String.format(
+                        "%d page image(s) could not be created.",
+                        imgFiles.length));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e.getMessage(), e);
+        }
     }
 
     /**
@@ -257,8 +306,6 @@ public final class OutputProducer {
 
         final File imgFile = new File(imgFileBuilder.toString());
 
-        final String command;
-
         final int pdf2CairoResolution;
         if (thumbnail) {
             pdf2CairoResolution = Pdf2ImgCairoCmd.RESOLUTION_FOR_THUMNAIL;
@@ -266,9 +313,37 @@ public final class OutputProducer {
             pdf2CairoResolution = Pdf2ImgCairoCmd.RESOLUTION_FOR_BROWSER;
         }
 
-        command = pdf2CairoCommand.createCommand(Pdf2ImgCommand.CreateParms
-                .create(srcFile, imgFile, pageImageInfo,
-                        Integer.parseInt(pageInJobFile), pdf2CairoResolution));
+        final Pdf2ImgCommand.CreateParms createParms =
+                Pdf2ImgCommand.CreateParms.create(srcFile, imgFile,
+                        pageImageInfo, Integer.parseInt(pageInJobFile),
+                        pdf2CairoResolution);
+
+        final ConfigManager cm = ConfigManager.instance();
+
+        final long cacheBytes = BYTES_PER_MB * cm.getConfigLong(
+                IConfigProp.Key.SYS_HOST_CMD_PDFTOCAIRO_IMG_CACHE_MB);
+
+        if (cacheBytes > 0) {
+            /*
+             * Thumbnails are requested page after page: render the next ones
+             * in the same run.
+             */
+            final int maxPages;
+            if (thumbnail) {
+                maxPages = cm.getConfigInt(IConfigProp.Key//
+                        .SYS_HOST_CMD_PDFTOCAIRO_IMG_PREFETCH_PAGES);
+            } else {
+                maxPages = 1;
+            }
+            try {
+                return this.pageImageCache.getPageImage(createParms,
+                        cacheBytes, maxPages);
+            } catch (IOException e) {
+                throw new InboxPageNotFoundException(e.getMessage());
+            }
+        }
+
+        final String command = pdf2CairoCommand.createCommand(createParms);
 
         LOGGER.trace(command);
 
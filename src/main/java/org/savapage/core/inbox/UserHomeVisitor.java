@@ -26,9 +26,12 @@ package org.savapage.core.inbox;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -45,6 +48,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -53,7 +57,9 @@ import org.savapage.core.config.ConfigManager;
 import org.savapage.core.config.IConfigProp;
 import org.savapage.core.config.UserHomePathEnum;
 import org.savapage.core.dao.DaoContext;
+import org.savapage.core.doc.DeleteRateLimiter;
 import org.savapage.core.doc.DocContent;
+import org.savapage.core.doc.DocVisitFanOut;
 import org.savapage.core.doc.IDocVisitor;
 import org.savapage.core.dto.UserHomeStatsDto;
 import org.savapage.core.i18n.AdverbEnum;
@@ -72,6 +78,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Visitor of user homes.
+ * <p>
+ * The top-level directories of the user home root are fanned out over
+ * parallel workers: each worker is a separate instance with its own walk
+ * state, sharing the (thread-safe) {@link ExecStats} and delete rate limiter
+ * with its parent.
+ * </p>
  *
  * @author Rijk Ravestein
  *
@@ -80,7 +92,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         implements IDocVisitor {
 
     /**
-     * File cleanup statistics.
+     * File cleanup statistics. Thread-safe.
      */
     public static class FileStats {
 
@@ -90,30 +102,30 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         /** */
         private BigInteger bytes;
 
-        public void init() {
+        public synchronized void init() {
             this.scanned = 0;
             this.bytes = BigInteger.ZERO;
         }
 
-        public final long getScanned() {
+        public final synchronized long getScanned() {
             return scanned;
         }
 
-        public final BigInteger getBytes() {
+        public final synchronized BigInteger getBytes() {
             return bytes;
         }
 
-        public final void incrementScanned() {
+        public final synchronized void incrementScanned() {
             this.scanned++;
         }
 
-        public final void addBytes(final BigInteger fileSize) {
+        public final synchronized void addBytes(final BigInteger fileSize) {
             this.bytes = this.bytes.add(fileSize);
         }
     }
 
     /**
-     * File cleanup statistics.
+     * File cleanup statistics. Thread-safe.
      */
     public static final class FileCleanupStats extends FileStats {
 
@@ -132,7 +144,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         }
 
         @Override
-        public void init() {
+        public synchronized void init() {
             super.init();
             this.bytesCleanup = BigInteger.ZERO;
             this.cleanup = 0;
@@ -142,26 +154,27 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             return cleanDate;
         }
 
-        public long getCleanup() {
+        public synchronized long getCleanup() {
             return cleanup;
         }
 
-        public BigInteger getBytesCleanup() {
+        public synchronized BigInteger getBytesCleanup() {
             return bytesCleanup;
         }
 
-        public final void incrementCleanup() {
+        public synchronized void incrementCleanup() {
             this.cleanup++;
         }
 
-        public void addBytesCleanup(final BigInteger fileSize) {
+        public synchronized void addBytesCleanup(final BigInteger fileSize) {
             this.bytesCleanup = this.bytesCleanup.add(fileSize);
         }
 
     }
 
     /**
-     * Execution statistics.
+     * Execution statistics. Counters are thread-safe, so parallel workers can
+     * update them, and progress can be read while executing.
      */
     public static final class ExecStats {
 
@@ -178,12 +191,12 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         /**
          * If {@code true} execution is terminated prematurely.
          */
-        private boolean terminated;
+        private volatile boolean terminated;
 
         /**
          * Number of user homes scanned.
          */
-        private long userHomeScanned;
+        private final AtomicLong userHomeScanned = new AtomicLong();
 
         /**
          * User home letterhead files.
@@ -203,7 +216,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         /**
          * Number of user homes (to be) cleaned up.
          */
-        private long userHomeCleanup;
+        private final AtomicLong userHomeCleanup = new AtomicLong();
 
         /**
          *
@@ -223,7 +236,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
          * concurrent user home access after User Web App login or Hold/Fast
          * Print release.
          */
-        private long conflicts;
+        private final AtomicLong conflicts = new AtomicLong();
 
         /**
          * @param run
@@ -242,10 +255,10 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
          * Initialize statistics.
          */
         private void init() {
-            this.userHomeScanned = 0;
-            this.userHomeCleanup = 0;
+            this.userHomeScanned.set(0);
+            this.userHomeCleanup.set(0);
             this.terminated = false;
-            this.conflicts = 0;
+            this.conflicts.set(0);
             this.filesUnknown.init();
             this.filesHomeLetterheads.init();
             this.filesHomePgpPubRing.init();
@@ -264,14 +277,14 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
          * @return Number of user homes scanned.
          */
         public long getUserHomeScanned() {
-            return userHomeScanned;
+            return userHomeScanned.get();
         }
 
         /**
          * @return Number of user homes (to be) cleaned.
          */
         public long getUserHomeCleanup() {
-            return userHomeCleanup;
+            return userHomeCleanup.get();
         }
 
         /**
@@ -299,7 +312,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
          * @return Number of IO errors.
          */
         public long getConflicts() {
-            return conflicts;
+            return conflicts.get();
         }
 
         /**
@@ -369,7 +382,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             scopeWlk = new UserHomeStatsDto.Scope();
             statsWlk.setUsers(scopeWlk);
 
-            scopeWlk.setCount(this.userHomeScanned);
+            scopeWlk.setCount(this.userHomeScanned.get());
 
             // --- Letterheads
             if (this.filesHomeLetterheads.getScanned() > 0) {
@@ -405,7 +418,8 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             scopeWlk.setSize(fileStatsWlk.getBytes());
 
             if (this.mode.isReal()) {
-                scopeWlk.setCount(scopeWlk.getCount() - fileStatsWlk.cleanup);
+                scopeWlk.setCount(
+                        scopeWlk.getCount() - fileStatsWlk.getCleanup());
                 scopeWlk.setSize(scopeWlk.getSize()
                         .subtract(fileStatsWlk.getBytesCleanup()));
             }
@@ -420,7 +434,8 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             scopeWlk.setSize(fileStatsWlk.getBytes());
 
             if (this.mode.isReal()) {
-                scopeWlk.setCount(scopeWlk.getCount() - fileStatsWlk.cleanup);
+                scopeWlk.setCount(
+                        scopeWlk.getCount() - fileStatsWlk.getCleanup());
                 scopeWlk.setSize(scopeWlk.getSize()
                         .subtract(fileStatsWlk.getBytesCleanup()));
             }
@@ -435,14 +450,14 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             scopeWlk = new UserHomeStatsDto.Scope();
             statsWlk.setUsers(scopeWlk);
 
-            scopeWlk.setCount(this.userHomeCleanup);
+            scopeWlk.setCount(this.userHomeCleanup.get());
 
             // --- Inbox
             scopeWlk = new UserHomeStatsDto.Scope();
             statsWlk.setInbox(scopeWlk);
 
             fileStatsWlk = this.pdfInbox;
-            scopeWlk.setCount(fileStatsWlk.cleanup);
+            scopeWlk.setCount(fileStatsWlk.getCleanup());
             scopeWlk.setSize(fileStatsWlk.getBytesCleanup());
 
             // --- Outbox
@@ -450,7 +465,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             statsWlk.setOutbox(scopeWlk);
 
             fileStatsWlk = this.pdfOutbox;
-            scopeWlk.setCount(fileStatsWlk.cleanup);
+            scopeWlk.setCount(fileStatsWlk.getCleanup());
             scopeWlk.setSize(fileStatsWlk.getBytesCleanup());
 
             //
@@ -474,7 +489,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             }
             msg.append(": ");
 
-            final long nUsers = this.userHomeCleanup;
+            final long nUsers = this.userHomeCleanup.get();
 
             msg.append(localeHelper.getNumber(nUsers)).append(" ")
                     .append(NounEnum.USER.uiText(locale, nUsers != 1))
@@ -483,26 +498,28 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             if (nUsers > 0) {
 
                 FileCleanupStats stats = pdfInbox;
-                long nCount = stats.cleanup;
+                long nCount = stats.getCleanup();
                 if (nCount > 0) {
                     msg.append(" ").append(localeHelper.getNumber(nCount));
                     msg.append(" ").append(
                             NounEnum.DOCUMENT.uiText(locale, nCount != 1));
                     msg.append(": ")
                             .append(FileUtils
-                                    .byteCountToDisplaySize(stats.bytesCleanup))
+                                    .byteCountToDisplaySize(
+                                            stats.getBytesCleanup()))
                             .append(".");
                 }
 
                 stats = pdfOutbox;
-                nCount = stats.cleanup;
+                nCount = stats.getCleanup();
                 if (nCount > 0) {
                     msg.append(" ").append(localeHelper.getNumber(nCount));
                     msg.append(" ").append(
                             PrintOutNounEnum.JOB.uiText(locale, nCount != 1));
                     msg.append(": ")
                             .append(FileUtils
-                                    .byteCountToDisplaySize(stats.bytesCleanup))
+                                    .byteCountToDisplaySize(
+                                            stats.getBytesCleanup()))
                             .append(".");
                 }
             }
@@ -528,7 +545,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             msg.append(
                     "+==============================+===========+=========+");
             msg.append(String.format("\n" + "| %-28s | Conflicts | %7d |",
-                    headerMain, this.conflicts));
+                    headerMain, this.conflicts.get()));
 
             msg.append("\n"
                     + "+====================+=========+===========+=========+");
@@ -539,7 +556,8 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
                     + "+------------+--- ---+---------+-----------+---------+");
             msg.append(String.format(
                     "\n" + "| Home       | users | %7d |   %7d | %7s |",
-                    this.userHomeScanned, this.userHomeCleanup, ""));
+                    this.userHomeScanned.get(), this.userHomeCleanup.get(),
+                    ""));
 
             if (this.filesHomeLetterheads.getScanned() > 0) {
                 msg.append(String.format(
@@ -559,8 +577,8 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
 
             msg.append(String.format(
                     "\n" + "| Print-In   | jobs  | %7d |   %7d | %7d |",
-                    this.pdfInbox.getScanned(), this.pdfInbox.cleanup,
-                    this.pdfInbox.getScanned() - this.pdfInbox.cleanup));
+                    this.pdfInbox.getScanned(), this.pdfInbox.getCleanup(),
+                    this.pdfInbox.getScanned() - this.pdfInbox.getCleanup()));
             msg.append(String.format(
                     "\n" + "|            | size  | %7s |   %7s | %7s |",
                     byteCountToDisplaySize(this.pdfInbox.getBytes()),
@@ -570,8 +588,8 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
 
             msg.append(String.format(
                     "\n" + "| Print-Hold | jobs  | %7d |   %7d | %7d |",
-                    this.pdfOutbox.getScanned(), this.pdfOutbox.cleanup,
-                    this.pdfOutbox.getScanned() - this.pdfOutbox.cleanup));
+                    this.pdfOutbox.getScanned(), this.pdfOutbox.getCleanup(),
+                    this.pdfOutbox.getScanned() - this.pdfOutbox.getCleanup()));
             msg.append(String.format(
                     "\n" + "|            | size  | %7s |   %7s | %7s |",
                     byteCountToDisplaySize(this.pdfOutbox.getBytes()),
@@ -663,6 +681,14 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
     /** */
     private final ExecStats stats;
 
+    /**
+     * Max number of top-level directories visited in parallel.
+     */
+    private final int parallelism;
+
+    /** */
+    private final DeleteRateLimiter deleteLimiter;
+
     /** */
     private String wlkUserId;
 
@@ -704,10 +730,36 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
      */
     public UserHomeVisitor(final Path inboxHome, final Date dateCleanInbox,
             final Date dateCleanOutbox, final RunModeSwitch mode) {
+        this(inboxHome, dateCleanInbox, dateCleanOutbox, mode, 1,
+                DeleteRateLimiter.UNLIMITED);
+    }
+
+    /**
+     * @param inboxHome
+     *            SafePages home directory.
+     * @param dateCleanInbox
+     *            Inbox PDF documents with creation date <i>before</i> this date
+     *            are cleaned. If {@code null}, no cleaning is done.
+     * @param dateCleanOutbox
+     *            Outbox jobs with expiration date <i>before</i> this date are
+     *            cleaned. If {@code null}, no cleaning is done.
+     * @param mode
+     *            The run mode. If {@code RunModeSwitch#DRY}, processing is done
+     *            without cleaning.
+     * @param maxParallel
+     *            Max number of top-level directories visited in parallel.
+     * @param limiter
+     *            The delete rate limiter.
+     */
+    public UserHomeVisitor(final Path inboxHome, final Date dateCleanInbox,
+            final Date dateCleanOutbox, final RunModeSwitch mode,
+            final int maxParallel, final DeleteRateLimiter limiter) {
 
         this.userHomeRootPath = inboxHome;
 
         this.runMode = mode;
+        this.parallelism = maxParallel;
+        this.deleteLimiter = limiter;
 
         this.stats = new ExecStats(mode);
         this.stats.pdfInbox.cleanDate = dateCleanInbox;
@@ -717,11 +769,41 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         this.wlkUserInboxEcoFiles = new ArrayList<>();
     }
 
+    /**
+     * Creates a worker with its own walk state, sharing the settings and
+     * statistics of a parent.
+     *
+     * @param parent
+     *            The parent visitor.
+     */
+    private UserHomeVisitor(final UserHomeVisitor parent) {
+
+        this.userHomeRootPath = parent.userHomeRootPath;
+
+        this.runMode = parent.runMode;
+        this.parallelism = 1;
+        this.deleteLimiter = parent.deleteLimiter;
+
+        this.stats = parent.stats;
+
+        this.wlkUserOutboxJobsMap = new HashMap<>();
+        this.wlkUserInboxEcoFiles = new ArrayList<>();
+
+        this.onInitWalk();
+    }
+
     /**
      * Initialize at scan start.
      */
     public void onInit() {
         this.stats.init();
+        this.onInitWalk();
+    }
+
+    /**
+     * Initializes the walk state.
+     */
+    private void onInitWalk() {
         this.wlkUserHomePath = UserHomePathEnum.BASE;
         this.wlkUserHomeCleaned = false;
         this.wlkPdfStats = this.stats.pdfInbox;
@@ -759,18 +841,12 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
 
             this.onInit();
 
-            /*
-             * The file tree traversal is **depth-first** with this FileVisitor
-             * invoked for each file encountered. File tree traversal completes
-             * when all accessible files in the tree have been visited, or a
-             * visit method returns a FileVisitResult#TERMINATE.
-             *
-             * Where a visit method terminates due an IOException, an uncaught
-             * error, or runtime exception, then the traversal is terminated and
-             * the error or exception is propagated to the caller of this
-             * method.
-             */
-            Files.walkFileTree(this.userHomeRootPath, this);
+            if (Files.isDirectory(this.userHomeRootPath,
+                    LinkOption.NOFOLLOW_LINKS)) {
+                this.executeFanOut();
+            } else {
+                Files.walkFileTree(this.userHomeRootPath, this);
+            }
 
             this.stats.duration =
                     Duration.ofMillis(System.currentTimeMillis() - execStart);
@@ -781,6 +857,74 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         return this.stats;
     }
 
+    /**
+     * Visits the files in the user home root on the calling thread, and fans
+     * out each top-level directory to a worker.
+     * <p>
+     * Each worker traversal is <b>depth-first</b>. When a worker terminates
+     * due an IOException, an uncaught error, or runtime exception, all other
+     * workers are terminated and the error or exception is propagated to the
+     * caller of this method.
+     * </p>
+     *
+     * @throws IOException
+     *             If IO error.
+     */
+    private void executeFanOut() throws IOException {
+
+        final List<Path> shards = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(this.userHomeRootPath)) {
+
+            for (final Path path : stream) {
+
+                final BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(path,
+                            BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    this.visitFileFailed(path, e);
+                    continue;
+                }
+
+                if (attrs.isDirectory()) {
+                    shards.add(path);
+                } else {
+                    this.visitFile(path, attrs);
+                }
+            }
+        }
+
+        DocVisitFanOut.execute(shards, this.parallelism, shard -> {
+            try {
+                Files.walkFileTree(shard, new UserHomeVisitor(this));
+            } catch (IOException | RuntimeException e) {
+                this.terminate();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Deletes a file, respecting the delete rate limit.
+     *
+     * @param path
+     *            The file path.
+     * @throws IOException
+     *             If IO error, or interrupted while waiting.
+     */
+    private void delete(final Path path) throws IOException {
+        try {
+            this.deleteLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        Files.delete(path);
+    }
+
     /**
      * Terminates execution.
      */
@@ -850,7 +994,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             this.wlkUserHomePath = UserHomePathEnum.BASE;
             this.wlkUserId = dir.getFileName().toString();
             this.wlkPdfStats = this.stats.pdfInbox;
-            this.stats.userHomeScanned++;
+            this.stats.userHomeScanned.incrementAndGet();
 
             LOGGER.debug("Home [{}]", this.wlkUserId);
 
@@ -975,7 +1119,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
                                 this.wlkPdfStats.cleanDate)) {
 
                     if (this.runMode.isReal()) {
-                        Files.delete(file);
+                        this.delete(file);
                     }
 
                     this.wlkPdfStats.incrementCleanup();
@@ -996,7 +1140,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
             }
 
         } catch (IOException e) {
-            this.stats.conflicts++;
+            this.stats.conflicts.incrementAndGet();
             LOGGER.error("{} {} ", e.getClass().getSimpleName(),
                     e.getMessage());
         }
@@ -1017,7 +1161,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         LOGGER.warn("{} {} {}", file.getFileName(),
                 exc.getClass().getSimpleName(), exc.getMessage());
 
-        this.stats.conflicts++;
+        this.stats.conflicts.incrementAndGet();
 
         return FileVisitResult.CONTINUE;
     }
@@ -1101,7 +1245,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
 
                 try {
                     if (Files.exists(pdfPath)) {
-                        Files.delete(pdfPath);
+                        this.delete(pdfPath);
                     }
                 } catch (IOException e) {
                     LOGGER.warn("{} {}", e.getClass().getSimpleName(),
@@ -1128,7 +1272,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
                     final BigInteger size = getFileSize(path);
 
                     if (this.runMode.isReal()) {
-                        Files.delete(path);
+                        this.delete(path);
                     }
 
                     this.wlkPdfStats.addBytes(size);
@@ -1144,7 +1288,7 @@ public final class UserHomeVisitor extends SimpleFileVisitor<Path>
         this.wlkUserInboxEcoFiles.clear();
 
         if (this.wlkUserHomeCleaned) {
-            this.stats.userHomeCleanup++;
+            this.stats.userHomeCleanup.incrementAndGet();
         }
         this.wlkUserHomeCleaned = false;
     }
@@ -31,9 +31,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.savapage.core.ipp.attribute.syntax.AbstractIppAttrSyntax;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
 
 /**
  * A wrapper for an {@link IppAttr} with a list of values.
+ * <p>
+ * Values decoded from an IPP message buffer are kept as consecutive
+ * {@link IppValueSlots}, and are only materialized into a list of strings
+ * when the list is asked for or changed. Use {@link #size()},
+ * {@link #getValue(int)}, {@link #getIntValue(int)} and
+ * {@link #getBooleanValue(int)} for allocation-free access.
+ * </p>
  *
  * <p>
  * TODO: Each value in an attribute can have a different type.
@@ -46,8 +54,26 @@ public final class IppAttrValue {
 
     private IppAttr attribute;
 
+    /**
+     * String values, or {@code null} when values are backed by slots.
+     */
     private List<String> values = new ArrayList<>();
 
+    /**
+     * Value slots, or {@code null} when values are strings.
+     */
+    private IppValueSlots slots;
+
+    /**
+     * First slot index.
+     */
+    private int slotFirst;
+
+    /**
+     * Number of slots.
+     */
+    private int slotCount;
+
     /**
      *
      * @param keyword
@@ -66,8 +92,25 @@ public final class IppAttrValue {
         this.setAttribute(attribute);
     }
 
+    /**
+     * Converts slot backed values to a list of strings.
+     *
+     * @return The list of values.
+     */
+    private List<String> materialize() {
+        if (this.slots != null) {
+            final List<String> list = new ArrayList<>(this.slotCount);
+            for (int i = 0; i < this.slotCount; i++) {
+                list.add(this.slots.getString(this.slotFirst + i));
+            }
+            this.values = list;
+            this.slots = null;
+        }
+        return this.values;
+    }
+
     public List<String> getValues() {
-        return values;
+        return this.materialize();
     }
 
     /**
@@ -78,18 +121,43 @@ public final class IppAttrValue {
      */
     public String getSingleValue() {
         String value = null;
-        if (values.size() == 1) {
-            value = values.get(0);
+        if (this.size() == 1) {
+            value = this.getValue(0);
         }
         return value;
     }
 
     public void setValues(List<String> values) {
+        this.slots = null;
         this.values = values;
     }
 
     public void addValue(final String value) {
-        values.add(value);
+        this.materialize().add(value);
+    }
+
+    /**
+     * Adds a typed value. Consecutive slots are referenced as-is, any other
+     * addition materializes the values.
+     *
+     * @param valueSlots
+     *            The value slots.
+     * @param slot
+     *            The slot index.
+     */
+    public void addValue(final IppValueSlots valueSlots, final int slot) {
+
+        if (this.slots == null && this.values.isEmpty()) {
+            this.slots = valueSlots;
+            this.slotFirst = slot;
+            this.slotCount = 1;
+            this.values = null;
+        } else if (this.slots == valueSlots
+                && slot == this.slotFirst + this.slotCount) {
+            this.slotCount++;
+        } else {
+            this.addValue(valueSlots.getString(slot));
+        }
     }
 
     /**
@@ -98,16 +166,85 @@ public final class IppAttrValue {
      * @return
      */
     public boolean removeValue(final String value) {
+        final List<String> list = this.materialize();
         /*
          * Just in case, remove all occurrences.
          */
         boolean found = false;
-        while (values.remove(value)) {
+        while (list.remove(value)) {
             found = true;
         }
         return found;
     }
 
+    /**
+     * @return The number of values.
+     */
+    public int size() {
+        if (this.slots == null) {
+            return this.values.size();
+        }
+        return this.slotCount;
+    }
+
+    /**
+     * @return {@code true} when values are backed by typed slots.
+     */
+    public boolean isTyped() {
+        return this.slots != null;
+    }
+
+    /**
+     * @param index
+     *            Zero-based value index.
+     * @return The string value.
+     */
+    public String getValue(final int index) {
+        if (this.slots == null) {
+            return this.values.get(index);
+        }
+        return this.slots.getString(this.slotIndex(index));
+    }
+
+    /**
+     * @param index
+     *            Zero-based value index.
+     * @return The integer value.
+     * @throws NumberFormatException
+     *             When value is not an integer.
+     */
+    public int getIntValue(final int index) {
+        if (this.slots == null) {
+            return Integer.parseInt(this.values.get(index));
+        }
+        return this.slots.getInt(this.slotIndex(index));
+    }
+
+    /**
+     * @param index
+     *            Zero-based value index.
+     * @return The boolean value.
+     */
+    public boolean getBooleanValue(final int index) {
+        if (this.slots == null) {
+            return IppBoolean.TRUE.equals(this.values.get(index));
+        }
+        return this.slots.getInt(this.slotIndex(index)) == 1;
+    }
+
+    /**
+     * @param index
+     *            Zero-based value index.
+     * @return The slot index.
+     */
+    private int slotIndex(final int index) {
+        if (index < 0 || index >= this.slotCount) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + this.slotCount);
+        }
+        return this.slotFirst + index;
+    }
+
     public IppAttr getAttribute() {
         return attribute;
     }
@@ -131,4 +268,33 @@ public final class IppAttrValue {
         getAttribute().getSyntax().write(ostr, value, charset);
     }
 
+    /**
+     * Writes an attribute value to the output stream. A typed value is copied
+     * from its encoded bytes when this produces the same result as the syntax
+     * writer.
+     *
+     * @param ostr
+     *            The output stream.
+     * @param index
+     *            Zero-based value index.
+     * @param charset
+     *            The charset.
+     * @throws IOException
+     *             When write error.
+     */
+    public void write(final OutputStream ostr, final int index,
+            final Charset charset) throws IOException {
+
+        final AbstractIppAttrSyntax syntax = getAttribute().getSyntax();
+
+        if (this.slots != null) {
+            final int slot = this.slotIndex(index);
+            if (this.slots.isCopyable(slot, syntax.getValueTag())) {
+                this.slots.copyTo(slot, ostr);
+                return;
+            }
+        }
+        syntax.write(ostr, this.getValue(index), charset);
+    }
+
 }
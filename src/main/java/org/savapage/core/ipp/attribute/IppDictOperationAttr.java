@@ -104,6 +104,15 @@ public final class IppDictOperationAttr extends AbstractIppDict {
             "notify-subscription-ids";
     public static final String ATTR_NOTIFY_WAIT = "notify-wait";
     public static final String ATTR_NOTIFY_GET_INTERVAL = "notify-get-interval";
+    public static final String ATTR_NOTIFY_SEQUENCE_NUMBERS =
+            "notify-sequence-numbers";
+
+    /** [Get-Jobs] type2 keyword. */
+    public static final String ATTR_WHICH_JOBS = "which-jobs";
+    /** [Get-Jobs] boolean. */
+    public static final String ATTR_MY_JOBS = "my-jobs";
+    /** [Get-Jobs] integer(1:MAX): PWG 5100.11. */
+    public static final String ATTR_FIRST_JOB_ID = "first-job-id";
 
     /**
      * Group 1: Operation Attributes.
@@ -141,6 +150,10 @@ public final class IppDictOperationAttr extends AbstractIppDict {
             new IppAttr(ATTR_NOTIFY_SUBSCRIPTION_IDS, IppInteger.instance()),
             new IppAttr(ATTR_NOTIFY_WAIT, IppBoolean.instance()),
             new IppAttr(ATTR_NOTIFY_GET_INTERVAL, IppInteger.instance()),
+            new IppAttr(ATTR_NOTIFY_SEQUENCE_NUMBERS, IppInteger.instance()),
+            new IppAttr(ATTR_WHICH_JOBS, IppKeyword.instance()),
+            new IppAttr(ATTR_MY_JOBS, IppBoolean.instance()),
+            new IppAttr(ATTR_FIRST_JOB_ID, new IppInteger(1)),
             //
     };
 
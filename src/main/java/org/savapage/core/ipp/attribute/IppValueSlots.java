@@ -0,0 +1,475 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.attribute;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.savapage.core.ipp.attribute.syntax.IppDateTime;
+import org.savapage.core.ipp.attribute.syntax.IppOctetString;
+import org.savapage.core.ipp.attribute.syntax.IppRangeOfInteger;
+import org.savapage.core.ipp.attribute.syntax.IppResolution;
+import org.savapage.core.ipp.encoding.IppEncoder;
+import org.savapage.core.ipp.encoding.IppValueTag;
+
+/**
+ * Typed IPP attribute values backed by the encoded message buffer.
+ * <p>
+ * Each value is a slot in a set of parallel arrays: integers, enums, booleans,
+ * ranges and resolutions are decoded into primitives, text and octet values
+ * are kept as byte ranges into the original buffer. The {@link String}
+ * representation, as produced by the legacy stream decoder, is materialized
+ * (and cached) on demand only.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppValueSlots {
+
+    /**
+     * Minimal initial number of slots.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Estimated number of buffer bytes per value, used to size the initial
+     * number of slots. This is on the low side: over-allocation is cheaper
+     * than growing the slot arrays.
+     */
+    private static final int BYTES_PER_VALUE_ESTIMATE = 16;
+
+    /**
+     * Number of bytes of an encoded resolution.
+     */
+    private static final int RESOLUTION_BYTES = 9;
+
+    /**
+     * The encoded IPP message.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Number of slots in use.
+     */
+    private int size;
+
+    /** Value tag per slot. */
+    private IppValueTag[] tags;
+
+    /** Offset of the value in the buffer. */
+    private int[] offsets;
+
+    /** Number of value bytes consumed from the buffer. */
+    private int[] lengths;
+
+    /**
+     * Integer, enum or boolean value, lower bound of a range, cross-feed
+     * resolution, or index in {@link #charsets} of a text value.
+     */
+    private int[] primary;
+
+    /** Upper bound of a range, or feed resolution. */
+    private int[] secondary;
+
+    /**
+     * Charsets of text values. A message rarely has more than one.
+     */
+    private Charset[] charsets = new Charset[1];
+
+    /** Number of charsets in use. */
+    private int charsetCount;
+
+    /**
+     * Lazily materialized string values, or {@code null} when none is
+     * materialized yet.
+     */
+    private String[] strings;
+
+    /**
+     *
+     * @param buf
+     *            The encoded IPP message the slots refer to.
+     */
+    public IppValueSlots(final byte[] buf) {
+        final int capacity =
+                Math.max(MIN_CAPACITY, buf.length / BYTES_PER_VALUE_ESTIMATE);
+        this.buffer = buf;
+        this.tags = new IppValueTag[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.primary = new int[capacity];
+        this.secondary = new int[capacity];
+    }
+
+    /**
+     * Gets the number of buffer bytes a value with a value tag consumes. This
+     * mirrors the legacy stream decoder, which reads fixed lengths for
+     * numeric types, and nothing for out-of-band and collection delimiters.
+     *
+     * @param tag
+     *            The value tag.
+     * @param valueLength
+     *            The encoded value-length.
+     * @return The number of bytes consumed.
+     */
+    public static int consumedLength(final IppValueTag tag,
+            final int valueLength) {
+
+        switch (tag) {
+        case UNSUPPORTED:
+        case UNKNOWN:
+        case NONE:
+        case BEGCOLLECTION:
+        case ENDCOLLECTION:
+            return 0;
+        case BOOLEAN:
+            return 1;
+        case INTEGER:
+        case ENUM:
+            return 4;
+        case INTRANGE:
+            return 8;
+        default:
+            return valueLength;
+        }
+    }
+
+    /**
+     * Adds a value slot.
+     *
+     * @param tag
+     *            The value tag.
+     * @param offset
+     *            Offset of the value in the buffer.
+     * @param valueLength
+     *            The encoded value-length.
+     * @param charset
+     *            The charset of text values.
+     * @return The slot index.
+     */
+    public int add(final IppValueTag tag, final int offset,
+            final int valueLength, final Charset charset) {
+
+        if (this.size == this.tags.length) {
+            this.grow();
+        }
+
+        final int slot = this.size++;
+
+        this.tags[slot] = tag;
+        this.offsets[slot] = offset;
+        this.lengths[slot] = consumedLength(tag, valueLength);
+
+        switch (tag) {
+        case BOOLEAN:
+            this.primary[slot] = this.buffer[offset] & 0xFF;
+            break;
+        case INTEGER:
+        case ENUM:
+            this.primary[slot] = this.readInt32(offset);
+            break;
+        case INTRANGE:
+        case RESOLUTION:
+            this.primary[slot] = this.readInt32(offset);
+            this.secondary[slot] = this.readInt32(offset + 4);
+            break;
+        default:
+            this.primary[slot] = this.charsetIndex(charset);
+            break;
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the index of a charset, and adds it when absent.
+     *
+     * @param charset
+     *            The charset.
+     * @return The index in {@link #charsets}.
+     */
+    private int charsetIndex(final Charset charset) {
+
+        for (int i = this.charsetCount - 1; i >= 0; i--) {
+            if (this.charsets[i] == charset) {
+                return i;
+            }
+        }
+        if (this.charsetCount == this.charsets.length) {
+            this.charsets =
+                    Arrays.copyOf(this.charsets, 2 * this.charsets.length);
+        }
+        this.charsets[this.charsetCount] = charset;
+        return this.charsetCount++;
+    }
+
+    /**
+     * Doubles the slot capacity.
+     */
+    private void grow() {
+        final int capacity = 2 * this.tags.length;
+        this.tags = Arrays.copyOf(this.tags, capacity);
+        this.offsets = Arrays.copyOf(this.offsets, capacity);
+        this.lengths = Arrays.copyOf(this.lengths, capacity);
+        this.primary = Arrays.copyOf(this.primary, capacity);
+        this.secondary = Arrays.copyOf(this.secondary, capacity);
+        if (this.strings != null) {
+            this.strings = Arrays.copyOf(this.strings, capacity);
+        }
+    }
+
+    /**
+     * @param offset
+     *            Buffer offset.
+     * @return The signed 32-bit big-endian integer.
+     */
+    private int readInt32(final int offset) {
+        return (this.buffer[offset] << 24)
+                | ((this.buffer[offset + 1] & 0xFF) << 16)
+                | ((this.buffer[offset + 2] & 0xFF) << 8)
+                | (this.buffer[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @return The number of slots.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param slot
+     *            The slot index.
+     * @return The value tag.
+     */
+    public IppValueTag getValueTag(final int slot) {
+        return this.tags[slot];
+    }
+
+    /**
+     * @param slot
+     *            The slot index.
+     * @return {@code true} when the value is decoded as primitive integer.
+     */
+    public boolean isNumeric(final int slot) {
+        switch (this.tags[slot]) {
+        case BOOLEAN:
+        case INTEGER:
+        case ENUM:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Gets the integer value of an integer, enum or boolean slot. Other slots
+     * are parsed from their string value.
+     *
+     * @param slot
+     *            The slot index.
+     * @return The value.
+     * @throws NumberFormatException
+     *             When a non-numeric value is not an integer.
+     */
+    public int getInt(final int slot) {
+        if (this.isNumeric(slot)) {
+            return this.primary[slot];
+        }
+        return Integer.parseInt(this.getString(slot));
+    }
+
+    /**
+     * @param slot
+     *            The slot index of a range or resolution.
+     * @return The lower bound of a range, or the cross-feed resolution.
+     */
+    public int getLower(final int slot) {
+        return this.primary[slot];
+    }
+
+    /**
+     * @param slot
+     *            The slot index of a range or resolution.
+     * @return The upper bound of a range, or the feed resolution.
+     */
+    public int getUpper(final int slot) {
+        return this.secondary[slot];
+    }
+
+    /**
+     * @param slot
+     *            The slot index.
+     * @return Offset of the value in the buffer.
+     */
+    public int getOffset(final int slot) {
+        return this.offsets[slot];
+    }
+
+    /**
+     * @param slot
+     *            The slot index.
+     * @return Number of value bytes in the buffer.
+     */
+    public int getLength(final int slot) {
+        return this.lengths[slot];
+    }
+
+    /**
+     * Gets the string value, exactly as the legacy stream decoder produces it.
+     *
+     * @param slot
+     *            The slot index.
+     * @return The string value, or {@code null} when the value tag is not
+     *         handled.
+     */
+    public String getString(final int slot) {
+
+        if (this.strings == null) {
+            this.strings = new String[this.tags.length];
+        }
+
+        String str = this.strings[slot];
+
+        if (str == null) {
+            str = this.materialize(slot);
+            this.strings[slot] = str;
+        }
+        return str;
+    }
+
+    /**
+     * @param slot
+     *            The slot index.
+     * @return The string value, or {@code null} when the value tag is not
+     *         handled.
+     */
+    private String materialize(final int slot) {
+
+        final int offset = this.offsets[slot];
+        final int length = this.lengths[slot];
+
+        switch (this.tags[slot]) {
+        case UNSUPPORTED:
+        case UNKNOWN:
+        case NONE:
+        case BEGCOLLECTION:
+        case ENDCOLLECTION:
+            return "";
+
+        case BOOLEAN:
+        case INTEGER:
+        case ENUM:
+            return String.valueOf(this.primary[slot]);
+
+        case INTRANGE:
+            return IppRangeOfInteger.format(this.primary[slot],
+                    this.secondary[slot]);
+
+        case DATETIME:
+            return IppDateTime.read(this.copyOf(offset, length));
+
+        case RESOLUTION:
+            return IppResolution.read(this.copyOf(offset, length));
+
+        case TEXTWLANG:
+        case NAMEWLANG:
+        case TEXTWOLANG:
+        case NAMEWOLANG:
+        case KEYWORD:
+        case URI:
+        case URISCHEME:
+        case CHARSET:
+        case NATULANG:
+        case MIMETYPE:
+        case MEMBERATTRNAME:
+            return new String(this.buffer, offset, length,
+                    this.charsets[this.primary[slot]]);
+
+        case OCTETSTRING:
+            return IppOctetString.read(this.copyOf(offset, length));
+
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @param offset
+     *            Buffer offset.
+     * @param length
+     *            Number of bytes.
+     * @return Copy of the buffer range.
+     */
+    private byte[] copyOf(final int offset, final int length) {
+        return Arrays.copyOfRange(this.buffer, offset, offset + length);
+    }
+
+    /**
+     * Checks if the encoded value can be copied as-is to an output message
+     * with a value tag, producing the exact bytes the syntax writer would.
+     *
+     * @param slot
+     *            The slot index.
+     * @param tag
+     *            The value tag of the output syntax.
+     * @return {@code true} when the value can be copied.
+     */
+    public boolean isCopyable(final int slot, final IppValueTag tag) {
+
+        if (this.tags[slot] != tag) {
+            return false;
+        }
+
+        switch (tag) {
+        case INTEGER:
+        case ENUM:
+        case INTRANGE:
+            return true;
+        case RESOLUTION:
+            return this.lengths[slot] == RESOLUTION_BYTES;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Writes the value-length and value of a slot as encoded in the buffer.
+     *
+     * @param slot
+     *            The slot index.
+     * @param ostr
+     *            The output stream.
+     * @throws IOException
+     *             When write error.
+     */
+    public void copyTo(final int slot, final OutputStream ostr)
+            throws IOException {
+        IppEncoder.writeInt16(ostr, this.lengths[slot]);
+        ostr.write(this.buffer, this.offsets[slot], this.lengths[slot]);
+    }
+}
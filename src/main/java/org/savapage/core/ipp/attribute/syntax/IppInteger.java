@@ -90,4 +90,17 @@ public final class IppInteger extends AbstractIppAttrSyntax {
         return (int) (ManagementFactory.getRuntimeMXBean().getUptime()
                 / DateUtil.DURATION_MSEC_SECOND);
     }
+
+    /**
+     * @return IPP Printer config change time: integer(1:MAX).
+     */
+    public static int getPrinterConfigChangeTime() {
+        int uptime = getPrinterUpTime();
+        if (uptime == 0) {
+            uptime++;
+        } else if (uptime > MAX) {
+            uptime = MAX;
+        }
+        return uptime;
+    }
 }
@@ -24,12 +24,10 @@
  */
 package org.savapage.core.ipp.client;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -40,7 +38,6 @@ import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.http.HttpEntity;
@@ -51,7 +48,6 @@ import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
@@ -74,6 +70,9 @@ import org.savapage.core.ipp.encoding.IppEncoder;
 import org.savapage.core.ipp.operation.IppOperationContext;
 import org.savapage.core.ipp.operation.IppOperationId;
 import org.savapage.core.ipp.operation.IppStatusCode;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.savapage.core.util.IOHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -92,6 +91,20 @@ public final class IppClient {
     private static final Logger LOGGER =
             LoggerFactory.getLogger(IppClient.class);
 
+    /**
+     * Duration of IPP requests to CUPS, including response parsing.
+     */
+    private static final LatencyHistogram METRIC_SEND =
+            MetricsRegistry.instance().histogram("ipp_client_request_seconds",
+                    "Duration of IPP requests to CUPS.");
+
+    /**
+     * Number of failed IPP requests to CUPS.
+     */
+    private static final Counter METRIC_SEND_ERRORS =
+            MetricsRegistry.instance().counter("ipp_client_errors_total",
+                    "Number of failed IPP requests to CUPS.");
+
     /** */
     private volatile boolean shutdownRequested;
 
@@ -331,46 +344,21 @@ public final class IppClient {
             final List<IppAttrGroup> response)
             throws InterruptedException, CircuitBreakerException {
 
-        ByteArrayOutputStream ostr = null;
-        InputStreamList istr = null;
-        URI uriIppServer = null;
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream(1024);
+        final URI uriIppServer;
 
         try {
             uriIppServer = urlServer.toURI();
-            /*
-             * Prepare the input stream.
-             */
-            ostr = new ByteArrayOutputStream(1024);
-            write(ostr, operationId, request);
-
-            final List<InputStream> istrList = new ArrayList<>();
-
-            istrList.add(new ByteArrayInputStream(ostr.toByteArray()));
-
-            if (file != null) {
-                istrList.add(new FileInputStream(file));
+            if (file != null && !file.isFile()) {
+                throw new FileNotFoundException(file.getAbsolutePath());
             }
-
-            istr = new InputStreamList(istrList);
-
+            write(ostr, operationId, request);
         } catch (IOException | URISyntaxException e) {
             throw new SpException(e);
         }
 
-        /*
-         *
-         */
-        final ContentType contentType =
-                ContentType.create(IppOperationContext.CONTENT_TYPE_IPP);
-
-        long length = ostr.size();
-
-        if (file != null) {
-            length += file.length();
-        }
-
-        final HttpEntity entity =
-                new InputStreamEntity(istr, length, contentType);
+        final HttpEntity entity = new IppRequestEntity(ostr.toByteArray(),
+                file, ContentType.create(IppOperationContext.CONTENT_TYPE_IPP));
 
         /*
          *
@@ -456,6 +444,8 @@ public final class IppClient {
         Exception deferredException = null;
         IppStatusCode statusCode = null;
 
+        final long startNanos = System.nanoTime();
+
         try {
 
             final byte[] responseBytes =
@@ -493,11 +483,13 @@ public final class IppClient {
             } else {
                 deferredException = e;
             }
+            METRIC_SEND_ERRORS.inc();
         } finally {
             /*
              * Mantis #487: release the connection.
              */
             httppost.reset();
+            METRIC_SEND.recordSince(startNanos);
         }
 
         circuitBreaker
@@ -531,51 +523,6 @@ public final class IppClient {
 
     }
 
-    /**
-     * A list of {@link InputStream} object acting as one {@link InputStream}.
-     */
-    private static class InputStreamList extends InputStream {
-
-        private static final int EOF = -1;
-
-        private final List<InputStream> istrList;
-        private final Iterator<InputStream> istrIter;
-        private InputStream istrWlk = null;
-
-        public InputStreamList(List<InputStream> istrList) {
-            super();
-            this.istrList = istrList;
-            this.istrIter = this.istrList.iterator();
-            if (this.istrIter.hasNext()) {
-                this.istrWlk = this.istrIter.next();
-            }
-        }
-
-        @Override
-        public int read() throws IOException {
-
-            int b = EOF;
-
-            if (istrWlk != null) {
-                b = istrWlk.read();
-                while (b == EOF && istrIter.hasNext()) {
-                    istrWlk = istrIter.next();
-                    b = istrWlk.read();
-                }
-            }
-            return b;
-        }
-
-        @Override
-        public void close() throws IOException {
-            if (istrList != null) {
-                for (final InputStream istr : istrList) {
-                    istr.close();
-                }
-            }
-        }
-    }
-
     /**
      * Sends an IPP request to <i>local</i> CUPS.
      *
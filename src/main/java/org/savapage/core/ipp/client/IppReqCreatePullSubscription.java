@@ -0,0 +1,126 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.ipp.attribute.AbstractIppDict;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.IppDictSubscriptionAttr;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+
+/**
+ * Create-Printer-Subscriptions request for events that are pulled with
+ * Get-Notifications ({@code notify-pull-method} "ippget").
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppReqCreatePullSubscription extends IppReqCommon {
+
+    /** Value of "notify-pull-method". */
+    public static final String NOTIFY_PULL_METHOD = "ippget";
+
+    /** */
+    private final String printerURI;
+
+    /** */
+    private final String requestingUser;
+
+    /** */
+    private final String[] events;
+
+    /** */
+    private final int leaseSeconds;
+
+    /**
+     *
+     * @param printerURI
+     *            The URI of the printer, or the server.
+     * @param requestingUser
+     *            The requesting user.
+     * @param events
+     *            The events to subscribe on.
+     * @param leaseSeconds
+     *            The lease seconds.
+     */
+    public IppReqCreatePullSubscription(final String printerURI,
+            final String requestingUser, final String[] events,
+            final int leaseSeconds) {
+        this.printerURI = printerURI;
+        this.requestingUser = requestingUser;
+        this.events = events;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    @Override
+    public List<IppAttrGroup> build() {
+
+        final List<IppAttrGroup> attrGroups = new ArrayList<>();
+
+        /*
+         * Group 1: Operation Attributes
+         */
+        IppAttrGroup group = createOperationGroup();
+        attrGroups.add(group);
+
+        AbstractIppDict dict = IppDictOperationAttr.instance();
+
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_PRINTER_URI),
+                this.printerURI);
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_REQUESTING_USER_NAME),
+                this.requestingUser);
+
+        /*
+         * Group 2: Subscription Attributes
+         */
+        group = new IppAttrGroup(IppDelimiterTag.SUBSCRIPTION_ATTR);
+        attrGroups.add(group);
+
+        dict = IppDictSubscriptionAttr.instance();
+
+        group.add(
+                dict.getAttr(IppDictSubscriptionAttr.ATTR_NOTIFY_PULL_METHOD),
+                NOTIFY_PULL_METHOD);
+        group.add(
+                dict.getAttr(
+                        IppDictSubscriptionAttr.ATTR_NOTIFY_LEASE_DURATION),
+                String.valueOf(this.leaseSeconds));
+
+        final IppAttrValue attrEvents = new IppAttrValue(
+                dict.getAttr(IppDictSubscriptionAttr.ATTR_NOTIFY_EVENTS));
+
+        for (final String event : this.events) {
+            attrEvents.addValue(event);
+        }
+        group.addAttribute(attrEvents);
+
+        return attrGroups;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.ipp.attribute.AbstractIppDict;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictJobDescAttr;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
+
+/**
+ * Get-Jobs request for a window of job ids of one printer: all jobs (active
+ * and completed) from {@code first-job-id} onward, with a limited set of job
+ * attributes.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppReqGetJobs extends IppReqCommon {
+
+    /** Value of "which-jobs" for active and completed jobs. */
+    public static final String WHICH_JOBS_ALL = "all";
+
+    /**
+     * The job attributes requested: just enough to synchronize job state.
+     */
+    private static final String[] REQUESTED_ATTRIBUTES = {
+            IppDictJobDescAttr.ATTR_JOB_ID,
+            IppDictJobDescAttr.ATTR_JOB_STATE,
+            IppDictJobDescAttr.ATTR_TIME_AT_COMPLETED };
+
+    /** */
+    private final String printerURI;
+
+    /** */
+    private final int firstJobId;
+
+    /** */
+    private final int limit;
+
+    /**
+     *
+     * @param printerURI
+     *            The URI of the printer.
+     * @param firstJobId
+     *            The first job id of the window.
+     * @param limit
+     *            The max number of jobs in the window.
+     */
+    public IppReqGetJobs(final String printerURI, final int firstJobId,
+            final int limit) {
+        this.printerURI = printerURI;
+        this.firstJobId = firstJobId;
+        this.limit = limit;
+    }
+
+    @Override
+    public List<IppAttrGroup> build() {
+
+        final List<IppAttrGroup> attrGroups = new ArrayList<>();
+
+        /*
+         * Group 1: Operation Attributes
+         */
+        final IppAttrGroup group = createOperationGroup();
+        attrGroups.add(group);
+
+        final AbstractIppDict dict = IppDictOperationAttr.instance();
+
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_PRINTER_URI),
+                this.printerURI);
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_WHICH_JOBS),
+                WHICH_JOBS_ALL);
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_MY_JOBS),
+                IppBoolean.FALSE);
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_FIRST_JOB_ID),
+                String.valueOf(this.firstJobId));
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_LIMIT),
+                String.valueOf(this.limit));
+
+        final IppAttrValue attrRequested = new IppAttrValue(
+                dict.getAttr(IppDictOperationAttr.ATTR_REQUESTED_ATTRIBUTES));
+
+        for (final String keyword : REQUESTED_ATTRIBUTES) {
+            attrRequested.addValue(keyword);
+        }
+        group.addAttribute(attrRequested);
+
+        return attrGroups;
+    }
+
+}
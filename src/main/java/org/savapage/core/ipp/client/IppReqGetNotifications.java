@@ -0,0 +1,106 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.ipp.attribute.AbstractIppDict;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
+
+/**
+ * Get-Notifications request for the events of one pull subscription, starting
+ * at a sequence number. The request does not wait for new events.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppReqGetNotifications extends IppReqCommon {
+
+    /** */
+    private final String printerURI;
+
+    /** */
+    private final String requestingUser;
+
+    /** */
+    private final int subscriptionId;
+
+    /** */
+    private final int sequenceNumber;
+
+    /**
+     *
+     * @param printerURI
+     *            The URI of the printer, or the server.
+     * @param requestingUser
+     *            The requesting user.
+     * @param subscriptionId
+     *            The subscription id.
+     * @param sequenceNumber
+     *            The lowest sequence number of events to return.
+     */
+    public IppReqGetNotifications(final String printerURI,
+            final String requestingUser, final int subscriptionId,
+            final int sequenceNumber) {
+        this.printerURI = printerURI;
+        this.requestingUser = requestingUser;
+        this.subscriptionId = subscriptionId;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public List<IppAttrGroup> build() {
+
+        final List<IppAttrGroup> attrGroups = new ArrayList<>();
+
+        /*
+         * Group 1: Operation Attributes
+         */
+        final IppAttrGroup group = createOperationGroup();
+        attrGroups.add(group);
+
+        final AbstractIppDict dict = IppDictOperationAttr.instance();
+
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_PRINTER_URI),
+                this.printerURI);
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_REQUESTING_USER_NAME),
+                this.requestingUser);
+        group.add(
+                dict.getAttr(IppDictOperationAttr.ATTR_NOTIFY_SUBSCRIPTION_IDS),
+                String.valueOf(this.subscriptionId));
+        group.add(
+                dict.getAttr(
+                        IppDictOperationAttr.ATTR_NOTIFY_SEQUENCE_NUMBERS),
+                String.valueOf(this.sequenceNumber));
+        group.add(dict.getAttr(IppDictOperationAttr.ATTR_NOTIFY_WAIT),
+                IppBoolean.FALSE);
+
+        return attrGroups;
+    }
+
+}
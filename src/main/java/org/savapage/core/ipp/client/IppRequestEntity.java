@@ -0,0 +1,188 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * HTTP entity of an IPP request: the encoded IPP operation header, optionally
+ * followed by a document file.
+ * <p>
+ * The document is written with bulk reads, or with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * when the target stream has a file channel. The entity is repeatable, so the
+ * request can be retried.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppRequestEntity extends AbstractHttpEntity {
+
+    /**
+     * Size of the buffer for bulk reads of the document.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The encoded IPP operation header.
+     */
+    private final byte[] header;
+
+    /**
+     * The document, or {@code null} when no document.
+     */
+    private final File document;
+
+    /** */
+    private final long contentLength;
+
+    /**
+     * @param ippHeader
+     *            The encoded IPP operation header.
+     * @param file
+     *            The document to send, or {@code null} when no document.
+     * @param contentType
+     *            The content type.
+     */
+    public IppRequestEntity(final byte[] ippHeader, final File file,
+            final ContentType contentType) {
+
+        this.header = ippHeader;
+        this.document = file;
+
+        long length = ippHeader.length;
+        if (file != null) {
+            length += file.length();
+        }
+        this.contentLength = length;
+
+        this.setContentType(contentType.toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+
+        final InputStream istrHeader = new ByteArrayInputStream(this.header);
+
+        if (this.document == null) {
+            return istrHeader;
+        }
+        return new SequenceInputStream(istrHeader,
+                new FileInputStream(this.document));
+    }
+
+    @Override
+    public void writeTo(final OutputStream ostr) throws IOException {
+
+        ostr.write(this.header);
+
+        if (this.document != null) {
+            try (FileChannel channel = FileChannel.open(
+                    this.document.toPath(), StandardOpenOption.READ)) {
+                if (ostr instanceof FileOutputStream) {
+                    ostr.flush();
+                    transfer(channel, ((FileOutputStream) ostr).getChannel());
+                } else {
+                    copy(channel, ostr);
+                }
+            }
+        }
+        ostr.flush();
+    }
+
+    /**
+     * Transfers a file channel to another file channel.
+     *
+     * @param source
+     *            The source channel.
+     * @param target
+     *            The target channel.
+     * @throws IOException
+     *             When IO error.
+     */
+    private static void transfer(final FileChannel source,
+            final FileChannel target) throws IOException {
+
+        final long size = source.size();
+        long position = 0;
+
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+    }
+
+    /**
+     * Copies a file channel to an output stream with bulk reads.
+     *
+     * @param source
+     *            The source channel.
+     * @param ostr
+     *            The output stream.
+     * @throws IOException
+     *             When IO error.
+     */
+    private static void copy(final FileChannel source, final OutputStream ostr)
+            throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            ostr.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
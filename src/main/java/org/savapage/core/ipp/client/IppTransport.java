@@ -0,0 +1,58 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import java.util.List;
+
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.operation.IppOperationId;
+import org.savapage.core.ipp.operation.IppStatusCode;
+
+/**
+ * Sends IPP requests to one IPP server. This decouples IPP conversations
+ * (like windowed job reads and notification polling) from the HTTP client,
+ * so they can be run against a stub server.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public interface IppTransport {
+
+    /**
+     * Sends an IPP request.
+     *
+     * @param operationId
+     *            The {@link IppOperationId}.
+     * @param request
+     *            The IPP request.
+     * @param response
+     *            The IPP response to fill.
+     * @return The IPP status code.
+     * @throws IppConnectException
+     *             When connection errors.
+     */
+    IppStatusCode send(IppOperationId operationId, List<IppAttrGroup> request,
+            List<IppAttrGroup> response) throws IppConnectException;
+}
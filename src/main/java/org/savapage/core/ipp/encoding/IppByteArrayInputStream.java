@@ -0,0 +1,109 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.encoding;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * A {@link ByteArrayInputStream} that exposes its buffer and position, so
+ * {@link IppEncoder#readAttributes(java.io.InputStream, java.io.Writer)} can
+ * reference values in the buffer instead of copying them.
+ * <p>
+ * The stream is read by one decoding thread: unlike its super class, reads
+ * are not synchronized, since the decoder reads most bytes one by one.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppByteArrayInputStream extends ByteArrayInputStream {
+
+    /**
+     *
+     * @param buf
+     *            The encoded IPP message.
+     */
+    public IppByteArrayInputStream(final byte[] buf) {
+        super(buf);
+    }
+
+    @Override
+    public int read() {
+        if (this.pos < this.count) {
+            return this.buf[this.pos++] & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (this.pos >= this.count) {
+            return -1;
+        }
+
+        final int n = Math.min(len, this.count - this.pos);
+
+        System.arraycopy(this.buf, this.pos, b, off, n);
+        this.pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) {
+        final long k = Math.max(0L, Math.min(n, this.count - this.pos));
+        this.pos += (int) k;
+        return k;
+    }
+
+    @Override
+    public int available() {
+        return this.count - this.pos;
+    }
+
+    /**
+     * @return The buffer (not a copy).
+     */
+    public byte[] getBuffer() {
+        return this.buf;
+    }
+
+    /**
+     * @return The index of the next byte to read.
+     */
+    public int getPosition() {
+        return this.pos;
+    }
+
+    /**
+     * @return One greater than the last valid index in the buffer.
+     */
+    public int getCount() {
+        return this.count;
+    }
+}
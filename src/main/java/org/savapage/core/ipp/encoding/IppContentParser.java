@@ -191,7 +191,7 @@ public abstract class IppContentParser {
             traceLog = new StringWriter();
         }
 
-        final InputStream istr = new ByteArrayInputStream(group);
+        final InputStream istr = new IppByteArrayInputStream(group);
         final List<IppAttrGroup> groups =
                 IppEncoder.readAttributes(istr, traceLog);
 
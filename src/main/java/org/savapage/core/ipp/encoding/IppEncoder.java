@@ -28,7 +28,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
-import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -42,6 +41,7 @@ import org.savapage.core.ipp.attribute.IppAttrCollection;
 import org.savapage.core.ipp.attribute.IppAttrCollectionSet;
 import org.savapage.core.ipp.attribute.IppAttrGroup;
 import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppValueSlots;
 import org.savapage.core.ipp.attribute.IppDictEventNotificationAttr;
 import org.savapage.core.ipp.attribute.IppDictJobDescAttr;
 import org.savapage.core.ipp.attribute.IppDictJobTemplateAttr;
@@ -81,6 +81,12 @@ public final class IppEncoder {
      */
     private static final String INDENT_UNIT = "  ";
 
+    /**
+     * Number of entries in the attribute name cache of a decode (power of
+     * two).
+     */
+    private static final int NAME_CACHE_SIZE = 128;
+
     /**
      *
      *
@@ -266,6 +272,99 @@ public final class IppEncoder {
         return str;
     }
 
+    /**
+     * Reads the value of a value tag into a value slot, by referencing the
+     * buffer of the input stream.
+     *
+     * @param valueTag
+     *            The value tag.
+     * @param istr
+     *            The input stream.
+     * @param nBytes
+     *            Length of the value.
+     * @param charset
+     *            The character set of text values.
+     * @param slots
+     *            The value slots to add to.
+     * @return The slot index, or {@code -1} when the buffer does not hold the
+     *         complete value (nothing is read in that case).
+     */
+    private static int readValueTagSlot(final IppValueTag valueTag,
+            final IppByteArrayInputStream istr, final int nBytes,
+            final Charset charset, final IppValueSlots slots) {
+
+        final int offset = istr.getPosition();
+        final int consumed = IppValueSlots.consumedLength(valueTag, nBytes);
+
+        if (consumed < 0 || offset + consumed > istr.getCount()
+                || (valueTag == IppValueTag.RESOLUTION && consumed < 9)) {
+            return -1;
+        }
+
+        final int slot = slots.add(valueTag, offset, nBytes, charset);
+
+        istr.skip(consumed);
+
+        if (LOGGER.isDebugEnabled() && slots.getString(slot) == null) {
+            LOGGER.debug("IPP value tag [" + valueTag.toString()
+                    + "] is NOT implemented");
+        }
+        return slot;
+    }
+
+    /**
+     * Reads an attribute name from the buffer of the input stream. Names
+     * repeat for every printer or job in a response: a name equal to a
+     * cached one is not decoded again.
+     *
+     * @param istr
+     *            The input stream.
+     * @param length
+     *            The name length, within the buffer.
+     * @param charset
+     *            The charset.
+     * @param cache
+     *            The name cache of the decode.
+     * @return The name.
+     */
+    private static String readAttrName(final IppByteArrayInputStream istr,
+            final int length, final Charset charset, final String[] cache) {
+
+        if (length == 0) {
+            return "";
+        }
+
+        final byte[] buf = istr.getBuffer();
+        final int offset = istr.getPosition();
+
+        int hash = length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buf[i];
+        }
+
+        final int index = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+
+        istr.skip(length);
+
+        final String cached = cache[index];
+
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            // Only ASCII bytes map one-to-one on chars.
+            while (i < length && buf[offset + i] >= 0
+                    && buf[offset + i] == cached.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+
+        final String name = new String(buf, offset, length, charset);
+        cache[index] = name;
+        return name;
+    }
+
     /**
      * 16-bit (2 bytes).
      *
@@ -297,8 +396,8 @@ public final class IppEncoder {
      * <p>
      * IMPORTANT: {@link Integer#parseInt(String, int)} with hex string and
      * radix 16 gives a NumberFormatException for IPP 4-byte encoded negative
-     * integers, like 0xFFFFFFFF (-1) and 0xFFFFFFFD (-3). Therefore we use
-     * {@link BigInteger#BigInteger(String, int)}.
+     * integers, like 0xFFFFFFFF (-1) and 0xFFFFFFFD (-3). Therefore the bytes
+     * are shifted into a signed int.
      * </p>
      * <p>
      * See Mantis #394, #609 and #688.
@@ -315,13 +414,13 @@ public final class IppEncoder {
     private static int readInt(final InputStream istr, final int nBytes)
             throws IOException {
 
-        final StringBuilder strHex = new StringBuilder();
+        int value = 0;
 
         for (int i = 0; i < nBytes; i++) {
-            strHex.append(String.format("%02X", istr.read()));
+            value = (value << 8) | (istr.read() & 0xFF);
         }
 
-        return new BigInteger(strHex.toString(), 16).intValue();
+        return value;
     }
 
     /**
@@ -332,7 +431,7 @@ public final class IppEncoder {
      * @throws IOException
      */
     public static int readInt16(byte b1, byte b2) {
-        return Integer.parseInt(String.format("%02X%02X", b1, b2), 16);
+        return ((b1 & 0xFF) << 8) | (b2 & 0xFF);
     }
 
     /**
@@ -343,8 +442,8 @@ public final class IppEncoder {
      * @throws IOException
      */
     public static int readInt32(byte b1, byte b2, byte b3, byte b4) {
-        return Integer.parseInt(
-                String.format("%02X%02X%02X%02X", b1, b2, b3, b4), 16);
+        return (b1 << 24) | ((b2 & 0xFF) << 16) | ((b3 & 0xFF) << 8)
+                | (b4 & 0xFF);
     }
 
     /**
@@ -463,9 +562,9 @@ public final class IppEncoder {
                 /*
                  * Value(s)
                  */
-                int i = 0;
+                final int nValues = attr.size();
 
-                for (final String value : attr.getValues()) {
+                for (int i = 0; i < nValues; i++) {
 
                     // Attribute type
                     ostr.write(valueTag.asInt());
@@ -473,7 +572,7 @@ public final class IppEncoder {
                     if (traceLog != null) {
                         traceLog.append("\n").append(StringUtils
                                 .repeat(INDENT_UNIT, nTraceLogIndent + 2))
-                                .append(value);
+                                .append(attr.getValue(i));
                     }
 
                     if (i == 0) {
@@ -486,9 +585,7 @@ public final class IppEncoder {
                         writeInt16(ostr, 0);
                     }
 
-                    attr.write(ostr, value, charset);
-
-                    i++;
+                    attr.write(ostr, i, charset);
                 }
             }
 
@@ -649,7 +746,9 @@ public final class IppEncoder {
                 final AbstractIppAttrSyntax memberSyntax =
                         member.getAttribute().getSyntax();
 
-                for (final String value : member.getValues()) {
+                final int nValues = member.size();
+
+                for (int i = 0; i < nValues; i++) {
 
                     // Value tag
                     ostr.write(memberSyntax.getValueTag().asInt());
@@ -658,13 +757,13 @@ public final class IppEncoder {
                     writeInt16(ostr, 0);
 
                     // Value
-                    memberSyntax.write(ostr, value, charset);
+                    member.write(ostr, i, charset);
 
                     if (traceLog != null) {
                         traceLog.append("\n")
                                 .append(StringUtils.repeat(INDENT_UNIT,
                                         nIndentWlk + 2))
-                                .append(value).append(" [")
+                                .append(member.getValue(i)).append(" [")
                                 .append(memberSyntax.getValueTag().toString())
                                 .append("]");
                     }
@@ -710,6 +809,11 @@ public final class IppEncoder {
     /**
      * Generic read of attributes from an input stream, returning a dictionary
      * of attribute names with their value, and a list of attribute groups.
+     * <p>
+     * When the input stream is an {@link IppByteArrayInputStream}, values are
+     * decoded into {@link IppValueSlots} referencing the stream buffer, and
+     * strings are only created when needed.
+     * </p>
      *
      * @param istr
      *            The input stream.
@@ -858,6 +962,20 @@ public final class IppEncoder {
 
         Charset myCharset = Charset.forName("US-ASCII");
 
+        final IppByteArrayInputStream bufferStream;
+        final IppValueSlots valueSlots;
+        final String[] nameCache;
+
+        if (istr instanceof IppByteArrayInputStream) {
+            bufferStream = (IppByteArrayInputStream) istr;
+            valueSlots = new IppValueSlots(bufferStream.getBuffer());
+            nameCache = new String[NAME_CACHE_SIZE];
+        } else {
+            bufferStream = null;
+            valueSlots = null;
+            nameCache = null;
+        }
+
         IppAttrValue attrWlk = null;
 
         final Stack<IppAttrCollection> collectionStack = new Stack<>();
@@ -916,8 +1034,16 @@ public final class IppEncoder {
                 // -----------------------------------------------
                 // | name | u bytes
                 // -----------------------------------------------
-                final String name = readValueTagValue(IppValueTag.KEYWORD, istr,
-                        lengthName, myCharset);
+                final String name;
+
+                if (bufferStream != null && bufferStream.getPosition()
+                        + lengthName <= bufferStream.getCount()) {
+                    name = readAttrName(bufferStream, lengthName, myCharset,
+                            nameCache);
+                } else {
+                    name = readValueTagValue(IppValueTag.KEYWORD, istr,
+                            lengthName, myCharset);
+                }
 
                 // -----------------------------------------------
                 // | value-length (value is v) | 2 bytes
@@ -927,8 +1053,34 @@ public final class IppEncoder {
                 // -----------------------------------------------
                 // | value | v bytes
                 // -----------------------------------------------
-                final String value = readValueTagValue(valueTag, istr,
-                        lengthValue, myCharset);
+                final int valueSlot;
+
+                if (bufferStream == null) {
+                    valueSlot = -1;
+                } else {
+                    valueSlot = readValueTagSlot(valueTag, bufferStream,
+                            lengthValue, myCharset, valueSlots);
+                }
+
+                final boolean isCharsetValue =
+                        delimiterTag == IppDelimiterTag.OPERATION_ATTR
+                                && name.equals(IppDictOperationAttr //
+                                        .ATTR_ATTRIBUTES_CHARSET);
+                final String value;
+
+                if (valueSlot < 0) {
+                    value = readValueTagValue(valueTag, istr, lengthValue,
+                            myCharset);
+                } else if (traceLog != null
+                        || valueTag == IppValueTag.BEGCOLLECTION
+                        || valueTag == IppValueTag.ENDCOLLECTION
+                        || valueTag == IppValueTag.MEMBERATTRNAME
+                        || isCharsetValue) {
+                    // String value is needed right away.
+                    value = valueSlots.getString(valueSlot);
+                } else {
+                    value = null;
+                }
 
                 /*
                  * Collection?
@@ -1127,7 +1279,12 @@ public final class IppEncoder {
                         /*
                          * .. and add the value.
                          */
-                        collectionMemberValueWlk.addValue(value);
+                        if (valueSlot < 0) {
+                            collectionMemberValueWlk.addValue(value);
+                        } else {
+                            collectionMemberValueWlk.addValue(valueSlots,
+                                    valueSlot);
+                        }
 
                         if (traceLog != null) {
                             traceLog.append("\n").append(StringUtils
@@ -1229,7 +1386,11 @@ public final class IppEncoder {
                         }
 
                         if (attrWlk != null) {
-                            attrWlk.addValue(value);
+                            if (valueSlot < 0) {
+                                attrWlk.addValue(value);
+                            } else {
+                                attrWlk.addValue(valueSlots, valueSlot);
+                            }
                         }
 
                     }
@@ -27,12 +27,16 @@ package org.savapage.core.ipp.operation;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.savapage.core.ipp.IppProcessingException;
 import org.savapage.core.ipp.IppProcessingException.StateEnum;
 import org.savapage.core.ipp.IppVersionEnum;
 import org.savapage.core.ipp.encoding.IppEncoder;
 import org.savapage.core.jpa.IppQueue;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +50,41 @@ public abstract class AbstractIppOperation {
     private final static Logger LOGGER =
             LoggerFactory.getLogger(AbstractIppOperation.class);
 
+    /**
+     * Duration of handled IPP operations, lazy created per operation ordinal.
+     */
+    private static final AtomicReferenceArray<LatencyHistogram> METRIC_HANDLE =
+            new AtomicReferenceArray<>(IppOperationId.values().length);
+
+    /**
+     * Number of unsupported IPP operations.
+     */
+    private static final Counter METRIC_UNSUPPORTED =
+            MetricsRegistry.instance().counter(
+                    "ipp_operations_unsupported_total",
+                    "Number of unsupported IPP operation requests.");
+
+    /**
+     * @param id
+     *            The IPP operation.
+     * @return The duration histogram of the operation.
+     */
+    private static LatencyHistogram getHandleMetric(final IppOperationId id) {
+
+        LatencyHistogram histogram = METRIC_HANDLE.get(id.ordinal());
+
+        if (histogram == null) {
+            // Concurrent creation is harmless: the registry returns one
+            // instance per key.
+            histogram = MetricsRegistry.instance().histogram(
+                    "ipp_operation_seconds",
+                    "Duration of handled IPP operations.", "operation",
+                    id.name());
+            METRIC_HANDLE.set(id.ordinal(), histogram);
+        }
+        return histogram;
+    }
+
     private int versionMajor;
     private int versionMinor;
     private int requestId;
@@ -170,6 +209,8 @@ public abstract class AbstractIppOperation {
         // -----------------------------------------------
         final int requestId = IppEncoder.readInt32(istr);
 
+        final long startNanos = System.nanoTime();
+
         if (LOGGER.isTraceEnabled()) {
             final String bar = "+---------------------------------"
                     + "-------------------------------------+";
@@ -232,6 +273,8 @@ public abstract class AbstractIppOperation {
                         "operationId [" + operationId + "] is NOT supported");
             }
 
+            METRIC_UNSUPPORTED.inc();
+
             ippOperationId = null;
 
         } else {
@@ -245,6 +288,10 @@ public abstract class AbstractIppOperation {
             operation.process(istr, ostr);
 
             ippOperationId = IppOperationId.asEnum(operationId);
+
+            if (ippOperationId != null) {
+                getHandleMetric(ippOperationId).recordSince(startNanos);
+            }
         }
 
         return ippOperationId;
@@ -49,6 +49,8 @@ import org.savapage.core.ipp.encoding.IppDelimiterTag;
 import org.savapage.core.jpa.DocLog;
 import org.savapage.core.jpa.IppQueue;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.IppJobHistoryCache;
+import org.savapage.core.util.DateUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -150,6 +152,12 @@ public final class IppGetJobsOperation extends AbstractIppOperation {
         private static final Logger LOGGER =
                 LoggerFactory.getLogger(IppGetJobsResponse.class);
 
+        /**
+         * Time to live (milliseconds) of cached completed job history.
+         */
+        private static final long HISTORY_TTL_MSEC =
+                DateUtil.DURATION_MSEC_HOUR;
+
         /**
          * Minimal Job attributes.
          */
@@ -311,13 +319,16 @@ public final class IppGetJobsOperation extends AbstractIppOperation {
             if (StringUtils.isNotBlank(assignedUserId)
                     && whichJobs.equals(WHICH_JOB_COMPLETED)) {
 
-                // Impose limit.
-                final int maxRows = 10; // TODO
+                final IppQueue queue = operation.getQueue();
 
-                for (final DocLog obj : this.getDocLogList(assignedUserId,
-                        operation.getQueue(), Integer.valueOf(maxRows))) {
+                // Limit is imposed by ring size.
+                for (final IppJobHistoryCache.Job job : IppJobHistoryCache
+                        .instance().get(assignedUserId, queue.getId(),
+                                HISTORY_TTL_MSEC,
+                                () -> this.getJobList(assignedUserId, queue,
+                                        IppJobHistoryCache.RING_SIZE))) {
 
-                    attrGroups.add(this.createJobAttrGroup(request, obj,
+                    attrGroups.add(this.createJobAttrGroup(request, job,
                             requestedAttrKeywords));
                 }
             }
@@ -332,13 +343,14 @@ public final class IppGetJobsOperation extends AbstractIppOperation {
          * @param request
          *            IPP request.
          * @param obj
-         *            Document Log.
+         *            Completed job.
          * @param requestedAttrKeywords
          *            IPP Keywords to add.
          * @return IPP group.
          */
         private IppAttrGroup createJobAttrGroup(final IppGetJobsRequest request,
-                final DocLog obj, final String[] requestedAttrKeywords) {
+                final IppJobHistoryCache.Job obj,
+                final String[] requestedAttrKeywords) {
             //
             final String printerUptime =
                     String.valueOf(IppInteger.getPrinterUpTime());
@@ -466,10 +478,11 @@ public final class IppGetJobsOperation extends AbstractIppOperation {
          *            The requested printer queue.
          * @param limit
          *            Max number of entries returned.
-         * @return List.
+         * @return List of completed jobs, newest first.
          */
-        private List<DocLog> getDocLogList(final String assignedUserId,
-                final IppQueue queue, final Integer limit) {
+        private List<IppJobHistoryCache.Job> getJobList(
+                final String assignedUserId, final IppQueue queue,
+                final int limit) {
 
             final DocLogDao.ListFilter filter = new DocLogDao.ListFilter();
 
@@ -481,8 +494,14 @@ public final class IppGetJobsOperation extends AbstractIppOperation {
 
             final DocLogDao dao = ServiceContext.getDaoContext().getDocLogDao();
 
-            return dao.getListChunk(filter, null, limit,
-                    DocLogDao.Field.DATE_CREATED, false);
+            final List<IppJobHistoryCache.Job> list = new ArrayList<>();
+
+            for (final DocLog docLog : dao.getListChunk(filter, null,
+                    Integer.valueOf(limit), DocLogDao.Field.DATE_CREATED,
+                    false)) {
+                list.add(IppJobHistoryCache.Job.create(docLog));
+            }
+            return list;
         }
 
     }
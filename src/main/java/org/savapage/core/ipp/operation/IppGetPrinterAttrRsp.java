@@ -24,6 +24,7 @@
  */
 package org.savapage.core.ipp.operation;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
@@ -60,7 +61,6 @@ import org.savapage.core.ipp.helpers.IppMediaSizeHelper;
 import org.savapage.core.jpa.IppQueue;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.system.SystemInfo;
-import org.savapage.core.util.DateUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -307,6 +307,51 @@ public class IppGetPrinterAttrRsp extends AbstractIppResponse {
             this.ippStatusCode = IppStatusCode.CLI_BADREQ;
         }
 
+        /*
+         * Only successful responses are cached. The cache is bypassed when
+         * tracing, so the encoded attributes are logged.
+         */
+        if (this.ippStatusCode != IppStatusCode.OK
+                || LOGGER.isTraceEnabled()) {
+            this.writeHeaderAndAttributes(operation, this.ippStatusCode,
+                    this.createAttrGroups(operation, request), ostr,
+                    request.getAttributesCharset());
+            return;
+        }
+
+        final IppGetPrinterAttrRspCache cache =
+                IppGetPrinterAttrRspCache.instance();
+
+        final String cacheKey = IppGetPrinterAttrRspCache.createKey(
+                this.printerQueue, operation, request);
+
+        if (cache.write(cacheKey, operation.getRequestId(), ostr)) {
+            return;
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        this.writeHeaderAndAttributes(operation, this.ippStatusCode,
+                this.createAttrGroups(operation, request), bos,
+                request.getAttributesCharset());
+
+        final byte[] encoded = bos.toByteArray();
+        cache.put(cacheKey, this.printerQueue, encoded);
+        ostr.write(encoded);
+    }
+
+    /**
+     * Creates the attribute groups of the response.
+     *
+     * @param operation
+     *            IPP operation.
+     * @param request
+     *            IPP request.
+     * @return The attribute groups.
+     */
+    private List<IppAttrGroup> createAttrGroups(
+            final IppGetPrinterAttrOperation operation,
+            final IppGetPrinterAttrReq request) {
         final List<IppAttrGroup> attrGroups = new ArrayList<>();
 
         /*
@@ -396,8 +441,7 @@ public class IppGetPrinterAttrRsp extends AbstractIppResponse {
             attrGroups.add(groupAttrSupp);
         }
 
-        this.writeHeaderAndAttributes(operation, this.ippStatusCode, attrGroups,
-                ostr, request.getAttributesCharset());
+        return attrGroups;
     }
 
     /**
@@ -1146,15 +1190,8 @@ public class IppGetPrinterAttrRsp extends AbstractIppResponse {
             break;
 
         case IppDictPrinterDescAttr.ATTR_PRINTER_CONFIG_CHANGE_TIME:
-            // integer(1:MAX)
-            int uptime = (int) (SystemInfo.getUptime()
-                    / DateUtil.DURATION_MSEC_SECOND);
-            if (uptime == 0) {
-                uptime++;
-            } else if (uptime > IppInteger.MAX) {
-                uptime = IppInteger.MAX;
-            }
-            value.addValue(String.valueOf(uptime));
+            value.addValue(
+                    String.valueOf(IppInteger.getPrinterConfigChangeTime()));
             break;
 
         case IppDictPrinterDescAttr.ATTR_PRINT_COLOR_MODE_DEFAULT:
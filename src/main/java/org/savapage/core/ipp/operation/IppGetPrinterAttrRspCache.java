@@ -0,0 +1,501 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.operation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.IppDictPrinterDescAttr;
+import org.savapage.core.ipp.attribute.syntax.IppDateTime;
+import org.savapage.core.ipp.attribute.syntax.IppInteger;
+import org.savapage.core.jpa.IppQueue;
+
+/**
+ * Cache of pre-encoded Get-Printer-Attributes responses.
+ * <p>
+ * An entry is keyed by printer queue, IPP version, printer URI, attributes
+ * charset and natural language, and requested attributes. It holds the
+ * complete encoded response of a successful request. On a hit, a copy of the
+ * bytes is written with the volatile fields patched in at fixed offsets: the
+ * request-id in the header, and the values of "printer-up-time",
+ * "printer-config-change-time" and "printer-current-time".
+ * </p>
+ * <p>
+ * Entries of a queue are invalidated when its attributes change. All entries
+ * are invalidated when a configuration value of a printer attribute changes.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppGetPrinterAttrRspCache {
+
+    /**
+     * Max number of cached responses.
+     */
+    private static final int MAX_ENTRIES = 256;
+
+    /**
+     * Offset of request-id in the IPP response header.
+     */
+    private static final int OFFSET_REQUEST_ID = 4;
+
+    /**
+     * Number of bytes of an integer value.
+     */
+    private static final int INT_VALUE_LENGTH = 4;
+
+    /**
+     * Number of bytes of a dateTime value (RFC 2579).
+     */
+    private static final int DATETIME_VALUE_LENGTH = 11;
+
+    /**
+     * Resolution of an IPP dateTime value in milliseconds.
+     */
+    private static final long DATETIME_RESOLUTION_MSEC = 100L;
+
+    /**
+     * Value of key component when no printer queue is present.
+     */
+    private static final String KEY_NO_QUEUE = "-";
+
+    /**
+     * A cached response.
+     */
+    private static final class Entry {
+
+        /** Database key of the printer queue, or {@code null}. */
+        private final Long queueId;
+
+        /** The encoded response. */
+        private final byte[] encoded;
+
+        /** Value offset of "printer-up-time", or -1. */
+        private final int offsetUpTime;
+
+        /** Value offset of "printer-config-change-time", or -1. */
+        private final int offsetConfigChangeTime;
+
+        /** Value offset of "printer-current-time", or -1. */
+        private final int offsetCurrentTime;
+
+        /**
+         * @param id
+         *            Database key of the printer queue, or {@code null}.
+         * @param bytes
+         *            The encoded response.
+         */
+        Entry(final Long id, final byte[] bytes) {
+            this.queueId = id;
+            this.encoded = bytes;
+            this.offsetUpTime = findValueOffset(bytes,
+                    IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME,
+                    INT_VALUE_LENGTH);
+            this.offsetConfigChangeTime = findValueOffset(bytes,
+                    IppDictPrinterDescAttr.ATTR_PRINTER_CONFIG_CHANGE_TIME,
+                    INT_VALUE_LENGTH);
+            this.offsetCurrentTime = findValueOffset(bytes,
+                    IppDictPrinterDescAttr.ATTR_PRINTER_CURRENT_TIME,
+                    DATETIME_VALUE_LENGTH);
+        }
+    }
+
+    /**
+     * An encoded dateTime value.
+     */
+    private static final class DateTimeValue {
+
+        /** Time in units of {@link #DATETIME_RESOLUTION_MSEC}. */
+        private final long tick;
+
+        /** The encoded value. */
+        private final byte[] encoded;
+
+        /**
+         * @param time
+         *            Time in units of {@link #DATETIME_RESOLUTION_MSEC}.
+         * @param bytes
+         *            The encoded value.
+         */
+        DateTimeValue(final long time, final byte[] bytes) {
+            this.tick = time;
+            this.encoded = bytes;
+        }
+    }
+
+    /** */
+    private static class SingletonHolder {
+        /** */
+        public static final IppGetPrinterAttrRspCache INSTANCE =
+                new IppGetPrinterAttrRspCache();
+    }
+
+    /**
+     * LRU map of cached responses. Access is synchronized on the map.
+     */
+    private final Map<String, Entry> entries =
+            new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean
+                        removeEldestEntry(final Map.Entry<String, Entry> e) {
+                    return this.size() > MAX_ENTRIES;
+                }
+            };
+
+    /**
+     * The most recently encoded "printer-current-time" value.
+     */
+    private volatile DateTimeValue currentTime;
+
+    /** */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** */
+    private IppGetPrinterAttrRspCache() {
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static IppGetPrinterAttrRspCache instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Creates the cache key of a Get-Printer-Attributes request.
+     *
+     * @param queue
+     *            The requested printer queue (can be {@code null}).
+     * @param operation
+     *            IPP operation.
+     * @param request
+     *            IPP request.
+     * @return The cache key.
+     */
+    public static String createKey(final IppQueue queue,
+            final IppGetPrinterAttrOperation operation,
+            final IppGetPrinterAttrReq request) {
+
+        final StringBuilder key = new StringBuilder();
+
+        if (queue == null) {
+            key.append(KEY_NO_QUEUE);
+        } else {
+            key.append(queue.getId()).append('/').append(queue.getUrlPath())
+                    .append('/')
+                    .append(BooleanUtils.isTrue(queue.getDisabled()));
+        }
+
+        key.append('|').append(operation.getVersionMajor()).append('.')
+                .append(operation.getVersionMinor()).append('|')
+                .append(request.getPrinterURI()).append('|');
+
+        appendValues(key, request
+                .getAttrValue(IppDictOperationAttr.ATTR_ATTRIBUTES_CHARSET));
+        key.append('|');
+        appendValues(key, request.getAttrValue(
+                IppDictOperationAttr.ATTR_ATTRIBUTES_NATURAL_LANG));
+        key.append('|');
+
+        final IppAttrValue requested = operation.getRequestedAttributes();
+
+        if (requested == null) {
+            key.append(IppGetPrinterAttrOperation.ATTR_GRP_ALL);
+        } else {
+            appendValues(key, requested);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends the values of an attribute to a cache key.
+     *
+     * @param key
+     *            The cache key.
+     * @param value
+     *            The attribute value (can be {@code null}).
+     */
+    private static void appendValues(final StringBuilder key,
+            final IppAttrValue value) {
+        if (value != null) {
+            for (final String keyword : value.getValues()) {
+                key.append(keyword).append(',');
+            }
+        }
+    }
+
+    /**
+     * Writes a cached response, with volatile fields patched in.
+     *
+     * @param key
+     *            The cache key.
+     * @param requestId
+     *            The request-id of the IPP request.
+     * @param ostr
+     *            IPP output stream.
+     * @return {@code false} when key is not present in the cache.
+     * @throws IOException
+     *             If error.
+     */
+    public boolean write(final String key, final int requestId,
+            final OutputStream ostr) throws IOException {
+
+        final Entry entry;
+
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return false;
+        }
+        this.hits.incrementAndGet();
+
+        final byte[] bytes =
+                Arrays.copyOf(entry.encoded, entry.encoded.length);
+
+        putInt32(bytes, OFFSET_REQUEST_ID, requestId);
+
+        if (entry.offsetUpTime >= 0) {
+            putInt32(bytes, entry.offsetUpTime,
+                    IppInteger.getPrinterUpTime());
+        }
+        if (entry.offsetConfigChangeTime >= 0) {
+            putInt32(bytes, entry.offsetConfigChangeTime,
+                    IppInteger.getPrinterConfigChangeTime());
+        }
+        if (entry.offsetCurrentTime >= 0) {
+            System.arraycopy(this.getCurrentTime(), 0, bytes,
+                    entry.offsetCurrentTime, DATETIME_VALUE_LENGTH);
+        }
+
+        ostr.write(bytes);
+        return true;
+    }
+
+    /**
+     * Puts an encoded response in the cache.
+     *
+     * @param key
+     *            The cache key.
+     * @param queue
+     *            The requested printer queue (can be {@code null}).
+     * @param encoded
+     *            The complete encoded response. The array is owned by the
+     *            cache after this call.
+     */
+    public void put(final String key, final IppQueue queue,
+            final byte[] encoded) {
+
+        final Long queueId;
+        if (queue == null) {
+            queueId = null;
+        } else {
+            queueId = queue.getId();
+        }
+
+        final Entry entry = new Entry(queueId, encoded);
+
+        synchronized (this.entries) {
+            this.entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes the cached responses of a printer queue.
+     *
+     * @param queue
+     *            The printer queue.
+     */
+    public void invalidate(final IppQueue queue) {
+
+        final Long queueId = queue.getId();
+
+        synchronized (this.entries) {
+            final Iterator<Entry> iter = this.entries.values().iterator();
+            while (iter.hasNext()) {
+                final Entry entry = iter.next();
+                if (queueId.equals(entry.queueId)) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public void invalidateAll() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * @return Number of cached responses.
+     */
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return Number of cache hits.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Finds the offset of the value of the first occurrence of an attribute
+     * in an encoded IPP message: value-tag (1), name-length (2), name,
+     * value-length (2), value.
+     *
+     * @param bytes
+     *            The encoded IPP message.
+     * @param name
+     *            The attribute name.
+     * @param valueLength
+     *            The expected value length.
+     * @return The value offset, or -1 when not found, or when the value
+     *         length is not as expected.
+     */
+    static int findValueOffset(final byte[] bytes, final String name,
+            final int valueLength) {
+
+        final byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        final int nameLength = nameBytes.length;
+
+        // Skip header (8) and first value-tag (1).
+        for (int i = 2 * INT_VALUE_LENGTH + 1; i + 2 + nameLength
+                + 2 <= bytes.length; i++) {
+
+            if (getInt16(bytes, i) != nameLength) {
+                continue;
+            }
+            boolean match = true;
+            for (int j = 0; j < nameLength && match; j++) {
+                match = bytes[i + 2 + j] == nameBytes[j];
+            }
+            if (!match) {
+                continue;
+            }
+            final int offsetLength = i + 2 + nameLength;
+            if (getInt16(bytes, offsetLength) != valueLength
+                    || offsetLength + 2 + valueLength > bytes.length) {
+                return -1;
+            }
+            return offsetLength + 2;
+        }
+        return -1;
+    }
+
+    /**
+     * @param bytes
+     *            Byte array.
+     * @param offset
+     *            Offset.
+     * @return Unsigned 16-bit integer at offset.
+     */
+    private static int getInt16(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    /**
+     * @param bytes
+     *            Byte array.
+     * @param offset
+     *            Offset.
+     * @param value
+     *            Signed 32-bit integer (big-endian).
+     */
+    private static void putInt32(final byte[] bytes, final int offset,
+            final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Gets the encoded current time. The value is encoded at most once per
+     * {@link #DATETIME_RESOLUTION_MSEC}.
+     *
+     * @return The encoded dateTime value.
+     * @throws IOException
+     *             If error.
+     */
+    private byte[] getCurrentTime() throws IOException {
+
+        final long now = System.currentTimeMillis();
+        final long tick = now / DATETIME_RESOLUTION_MSEC;
+
+        final DateTimeValue value = this.currentTime;
+
+        if (value != null && value.tick == tick) {
+            return value.encoded;
+        }
+
+        final ByteArrayOutputStream bos =
+                new ByteArrayOutputStream(DATETIME_VALUE_LENGTH + 2);
+
+        IppDateTime.instance().write(bos,
+                IppDateTime.formatDate(new Date(now)), StandardCharsets.UTF_8);
+
+        // Skip value-length (2).
+        final byte[] encoded = Arrays.copyOfRange(bos.toByteArray(), 2,
+                DATETIME_VALUE_LENGTH + 2);
+
+        this.currentTime = new DateTimeValue(tick, encoded);
+        return encoded;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.Gauge;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.Metric;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ * Read-only {@link DynamicMBean} exposing the {@link MetricsRegistry}.
+ * <p>
+ * Counters and gauges are exposed as one attribute. Histograms are exposed
+ * as {@code .count}, {@code .mean_ms}, {@code .p50_ms} and {@code .p99_ms}
+ * attributes. The {@link #ATTR_PROMETHEUS_TEXT} attribute holds the full
+ * snapshot.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CoreMetrics implements DynamicMBean {
+
+    /** */
+    public static final String ATTR_PROMETHEUS_TEXT = "PrometheusText";
+
+    /** */
+    private static final String SFX_COUNT = ".count";
+    /** */
+    private static final String SFX_MEAN = ".mean_ms";
+    /** */
+    private static final String SFX_P50 = ".p50_ms";
+    /** */
+    private static final String SFX_P99 = ".p99_ms";
+
+    /** */
+    private static final double NANOS_PER_MSEC =
+            TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** */
+    private final MetricsRegistry registry;
+
+    /**
+     * @param registry
+     *            The registry to expose.
+     */
+    public CoreMetrics(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(final String attribute)
+            throws AttributeNotFoundException {
+
+        if (ATTR_PROMETHEUS_TEXT.equals(attribute)) {
+            return this.registry.toPrometheusText();
+        }
+
+        final Metric metric = this.registry.getMetric(attribute);
+
+        if (metric instanceof Counter) {
+            return Long.valueOf(((Counter) metric).get());
+        }
+        if (metric instanceof Gauge) {
+            return Long.valueOf(((Gauge) metric).get());
+        }
+
+        final int iDot = attribute.lastIndexOf('.');
+
+        if (iDot > 0) {
+
+            final Metric base =
+                    this.registry.getMetric(attribute.substring(0, iDot));
+
+            if (base instanceof LatencyHistogram) {
+
+                final LatencyHistogram histogram = (LatencyHistogram) base;
+                final String suffix = attribute.substring(iDot);
+
+                if (SFX_COUNT.equals(suffix)) {
+                    return Long.valueOf(histogram.getCount());
+                }
+                if (SFX_MEAN.equals(suffix)) {
+                    return Double.valueOf(
+                            histogram.getMeanNanos() / NANOS_PER_MSEC);
+                }
+                if (SFX_P50.equals(suffix)) {
+                    return Double.valueOf(histogram.getValueAtQuantile(0.5)
+                            / NANOS_PER_MSEC);
+                }
+                if (SFX_P99.equals(suffix)) {
+                    return Double.valueOf(histogram.getValueAtQuantile(0.99)
+                            / NANOS_PER_MSEC);
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(
+                attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+
+        final AttributeList list = new AttributeList();
+
+        for (final String name : attributes) {
+            try {
+                list.add(new Attribute(name, this.getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // no code intended
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params,
+            final String[] signature) throws ReflectionException {
+        throw new ReflectionException(
+                new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        final List<MBeanAttributeInfo> attrs = new ArrayList<>();
+
+        attrs.add(createAttrInfo(ATTR_PROMETHEUS_TEXT, String.class,
+                "Prometheus text snapshot"));
+
+        for (final Metric metric : this.registry.getMetrics()) {
+
+            final String key = metric.getKey();
+
+            if (metric instanceof LatencyHistogram) {
+                attrs.add(createAttrInfo(key + SFX_COUNT, Long.class,
+                        metric.getHelp()));
+                attrs.add(createAttrInfo(key + SFX_MEAN, Double.class,
+                        metric.getHelp()));
+                attrs.add(createAttrInfo(key + SFX_P50, Double.class,
+                        metric.getHelp()));
+                attrs.add(createAttrInfo(key + SFX_P99, Double.class,
+                        metric.getHelp()));
+            } else {
+                attrs.add(createAttrInfo(key, Long.class, metric.getHelp()));
+            }
+        }
+
+        return new MBeanInfo(this.getClass().getName(), "SavaPage metrics",
+                attrs.toArray(new MBeanAttributeInfo[attrs.size()]), null,
+                new MBeanOperationInfo[0], null);
+    }
+
+    /**
+     * @param name
+     *            Attribute name.
+     * @param type
+     *            Attribute type.
+     * @param description
+     *            Description.
+     * @return The read-only attribute info.
+     */
+    private static MBeanAttributeInfo createAttrInfo(final String name,
+            final Class<?> type, final String description) {
+        return new MBeanAttributeInfo(name, type.getName(), description, true,
+                false, false);
+    }
+}
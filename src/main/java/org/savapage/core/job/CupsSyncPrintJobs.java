@@ -25,12 +25,18 @@
 package org.savapage.core.job;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
+import org.apache.commons.lang3.BooleanUtils;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.quartz.UnableToInterruptJobException;
@@ -46,6 +52,7 @@ import org.savapage.core.dao.helpers.DaoBatchCommitter;
 import org.savapage.core.ipp.IppJobStateEnum;
 import org.savapage.core.ipp.client.IppConnectException;
 import org.savapage.core.jpa.PrintOut;
+import org.savapage.core.print.proxy.CupsJobStateReader;
 import org.savapage.core.print.proxy.JsonProxyPrintJob;
 import org.savapage.core.services.ProxyPrintService;
 import org.savapage.core.services.ServiceContext;
@@ -132,6 +139,9 @@ public final class CupsSyncPrintJobs extends AbstractJob {
 
             batchCommitter.rollback();
 
+            ServiceContext.getServiceFactory().getProxyPrintService()
+                    .resetPrintJobEvents();
+
             LoggerFactory.getLogger(this.getClass()).error(e.getMessage(), e);
             level = PubLevelEnum.ERROR;
             msg = AppLogHelper.logError(getClass(), "CupsSyncPrintJobs.error",
@@ -179,6 +189,18 @@ public final class CupsSyncPrintJobs extends AbstractJob {
                                 System.currentTimeMillis() - startTime),
                         nActiveCupsJobs));
 
+        /*
+         * Printers with CUPS job events since previous sync.
+         */
+        final Set<String> eventPrinters =
+                proxyPrintService.pollPrintJobEvents();
+
+        if (eventPrinters != null) {
+            SpInfo.instance().log(String.format(
+                    "|   %d printer(s) with CUPS job events.",
+                    eventPrinters.size()));
+        }
+
         int nJobsActive = 0;
         int nJobsStateChange = 0;
         int nJobsForceCancel = 0;
@@ -194,7 +216,8 @@ public final class CupsSyncPrintJobs extends AbstractJob {
                     Integer.valueOf(MAX_RESULT_PRINT_OUT_LIST), false);
 
             final SyncPrintJobsResult result = syncPrintJobs(proxyPrintService,
-                    printOutDAO, cupsJobIdLast, list, batchCommitter);
+                    printOutDAO, cupsJobIdLast, eventPrinters, list,
+                    batchCommitter);
 
             nJobsActive += result.getJobsActive();
             nJobsStateChange += result.getJobsStateChange();
@@ -284,14 +307,104 @@ public final class CupsSyncPrintJobs extends AbstractJob {
         return lookup;
     }
 
+    /**
+     * Retrieves the CUPS jobs of a {@link PrintOut} chunk, with a windowed
+     * Get-Jobs per printer. Job ids that can not be resolved with Get-Jobs are
+     * retrieved one by one.
+     *
+     * @param proxyPrintService
+     *            {@link ProxyPrintService}
+     * @param cupsJobIdLast
+     *            The last CUPS job id handled in previous chunk.
+     * @param eventPrinters
+     *            Names of printers with CUPS job events since previous sync,
+     *            or {@code null} when unknown.
+     * @param lookupPrintOut
+     *            The {@link PrintOut} lookup on CUPS job id.
+     * @param cupsJobs
+     *            The map to put the found CUPS jobs on.
+     * @param cupsJobsUnchanged
+     *            The set to add the CUPS job ids on of local printers without
+     *            job events.
+     * @throws IppConnectException
+     *             When a connection error occurs.
+     */
+    private static void retrieveCupsJobs(
+            final ProxyPrintService proxyPrintService, final int cupsJobIdLast,
+            final Set<String> eventPrinters,
+            final Map<Integer, List<PrintOut>> lookupPrintOut,
+            final Map<Integer, JsonProxyPrintJob> cupsJobs,
+            final Set<Integer> cupsJobsUnchanged) throws IppConnectException {
+
+        final Map<String, SortedSet<Integer>> printerJobIds = new HashMap<>();
+
+        for (final Entry<Integer, List<PrintOut>> entry : lookupPrintOut
+                .entrySet()) {
+
+            final Integer cupsJobId = entry.getKey();
+
+            if (cupsJobIdLast == cupsJobId.intValue()) {
+                continue;
+            }
+
+            final String printerName =
+                    entry.getValue().get(0).getPrinter().getPrinterName();
+
+            SortedSet<Integer> jobIds = printerJobIds.get(printerName);
+
+            if (jobIds == null) {
+                jobIds = new TreeSet<>();
+                printerJobIds.put(printerName, jobIds);
+            }
+            jobIds.add(cupsJobId);
+        }
+
+        for (final Entry<String, SortedSet<Integer>> entry : printerJobIds
+                .entrySet()) {
+
+            final String printerName = entry.getKey();
+            final SortedSet<Integer> jobIds = entry.getValue();
+
+            if (eventPrinters != null && !eventPrinters.contains(printerName)
+                    && BooleanUtils.isTrue(
+                            proxyPrintService.isLocalPrinter(printerName))) {
+                cupsJobsUnchanged.addAll(jobIds);
+                continue;
+            }
+
+            final CupsJobStateReader.Result result = proxyPrintService
+                    .retrievePrintJobStates(printerName, jobIds);
+
+            final Collection<Integer> jobIdsSingle;
+
+            if (result == null) {
+                jobIdsSingle = jobIds;
+            } else {
+                cupsJobs.putAll(result.getFound());
+                jobIdsSingle = result.getUnresolved();
+            }
+
+            for (final Integer cupsJobId : jobIdsSingle) {
+                final JsonProxyPrintJob cupsJob = proxyPrintService
+                        .retrievePrintJob(printerName, cupsJobId);
+                if (cupsJob != null) {
+                    cupsJobs.put(cupsJobId, cupsJob);
+                }
+            }
+        }
+    }
+
     /**
      *
      * @param proxyPrintService
-     *            {@link ProxyPrintservice}
+     *            {@link ProxyPrintService}
      * @param printOutDAO
      *            {@link PrintOutDao}.
      * @param cupsJobIdLast
      *            The last CUPS job id handled in previous chunk.
+     * @param eventPrinters
+     *            Names of printers with CUPS job events since previous sync,
+     *            or {@code null} when unknown.
      * @param printOutList
      *            List of jobs ordered by CUPS printer name and job id.
      * @param batchCommitter
@@ -303,7 +416,7 @@ public final class CupsSyncPrintJobs extends AbstractJob {
     private static SyncPrintJobsResult syncPrintJobs(
             final ProxyPrintService proxyPrintService,
             final PrintOutDao printOutDAO, final int cupsJobIdLast,
-            final List<PrintOut> printOutList,
+            final Set<String> eventPrinters, final List<PrintOut> printOutList,
             final DaoBatchCommitter batchCommitter) throws IppConnectException {
 
         final boolean cancelIfStopped = ConfigManager.instance()
@@ -318,6 +431,12 @@ public final class CupsSyncPrintJobs extends AbstractJob {
         final Map<Integer, List<PrintOut>> lookupPrintOut =
                 createJobIdLookup(printOutList);
 
+        final Map<Integer, JsonProxyPrintJob> cupsJobs = new HashMap<>();
+        final Set<Integer> cupsJobsUnchanged = new HashSet<>();
+
+        retrieveCupsJobs(proxyPrintService, cupsJobIdLast, eventPrinters,
+                lookupPrintOut, cupsJobs, cupsJobsUnchanged);
+
         for (final Entry<Integer, List<PrintOut>> entry : lookupPrintOut
                 .entrySet()) {
 
@@ -331,18 +450,12 @@ public final class CupsSyncPrintJobs extends AbstractJob {
 
                     firstEntry = false;
 
-                    final JsonProxyPrintJob cupsJob;
-
-                    if (cupsJobIdLast == cupsJobId.intValue()) {
-                        cupsJob = null;
-                    } else {
-                        final String printerName =
-                                printOut.getPrinter().getPrinterName();
-
-                        cupsJob = proxyPrintService
-                                .retrievePrintJob(printerName, cupsJobId);
+                    if (cupsJobsUnchanged.contains(cupsJobId)) {
+                        continue;
                     }
 
+                    final JsonProxyPrintJob cupsJob = cupsJobs.get(cupsJobId);
+
                     if (cupsJob != null) {
 
                         if (cancelIfStopped && cupsJob.getIppJobState()
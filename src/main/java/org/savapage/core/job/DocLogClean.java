@@ -59,6 +59,7 @@ import org.savapage.core.jpa.PrintOut;
 import org.savapage.core.jpa.Printer;
 import org.savapage.core.jpa.User;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.IppJobHistoryCache;
 import org.savapage.core.util.AppLogHelper;
 import org.savapage.core.util.DateUtil;
 import org.slf4j.LoggerFactory;
@@ -521,6 +522,10 @@ public final class DocLogClean extends AbstractJob {
             nDeleted = dao.cleanDocInHistory(dateBackInTime, batchCommitter);
             duration = batchCommitter.close();
 
+            if (nDeleted > 0) {
+                IppJobHistoryCache.instance().invalidateAll();
+            }
+
         } else {
             nDeleted = 0;
             duration = null;
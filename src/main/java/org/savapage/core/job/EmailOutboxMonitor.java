@@ -29,14 +29,17 @@ import java.math.BigDecimal;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.Message;
 import javax.mail.MessagingException;
-import javax.mail.Transport;
 import javax.mail.internet.MimeMessage;
 
 import org.quartz.JobExecutionContext;
@@ -53,6 +56,7 @@ import org.savapage.core.config.ConfigManager;
 import org.savapage.core.config.IConfigProp.Key;
 import org.savapage.core.services.EmailService;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.email.EmailOutboxDispatcher;
 import org.savapage.core.util.BigDecimalUtil;
 import org.savapage.core.util.DateUtil;
 import org.savapage.core.util.NumberUtil;
@@ -80,6 +84,18 @@ public final class EmailOutboxMonitor extends AbstractJob {
     /** */
     private static final long MAX_MONITOR_MSEC = DateUtil.DURATION_MSEC_HOUR;
 
+    /**
+     * Max milliseconds to wait for a file system notification, before
+     * checking the state of the dispatcher.
+     */
+    private static final long WATCH_POLL_MSEC = DateUtil.DURATION_MSEC_SECOND;
+
+    /**
+     * Max milliseconds to wait for each sender to finish at shutdown.
+     */
+    private static final long SHUTDOWN_WAIT_MSEC =
+            10 * DateUtil.DURATION_MSEC_SECOND;
+
     /**
      * Milliseconds to wait before starting this job again.
      */
@@ -199,116 +215,91 @@ public final class EmailOutboxMonitor extends AbstractJob {
     }
 
     /**
-     * Sends all MIME messages in the {@link DirectoryStream} as email batch.
-     *
-     * @param emailService
-     *            The {@link EmailService}.
-     * @param dirStream
-     *            The {@link DirectoryStream}.
-     * @param msecSendInterval
-     *            Interval (milliseconds) between message sends.
-     * @throws IOException
-     *             When IO errors occur.
-     * @throws CircuitBreakerException
-     *             When SMTP circuit is broken.
+     * Publishes and logs the outcome of outbox messages.
      */
-    private void sendMimeFileBatch(final EmailService emailService,
-            final DirectoryStream<Path> dirStream)
-            throws IOException, CircuitBreakerException {
+    private final class OutboxListener
+            implements EmailOutboxDispatcher.Listener {
 
-        // Single instance used for all MIME messages (batch).
-        Transport transport = null;
+        @Override
+        public void onSent(final Path file, final MimeMessage msg) {
 
-        long msecSendInterval = DateUtil.DURATION_MSEC_SECOND;
+            final String msgKey = "EmailOutboxMonitor.mailsent";
 
-        try {
-            /*
-             * Iterate over paths in the directory and read/send stored MIME
-             * files.
-             */
-            for (final Path p : dirStream) {
-
-                if (this.isInterrupted()) {
-                    break;
-                }
-
-                final BasicFileAttributes attrs =
-                        Files.readAttributes(p, BasicFileAttributes.class);
-
-                if (!attrs.isRegularFile()) {
-                    continue;
+            try {
+                final String subject = msg.getSubject();
+                final String sendTo =
+                        msg.getRecipients(Message.RecipientType.TO)[0]
+                                .toString();
+                final String mailSize = NumberUtil.humanReadableByteCountSI(
+                        Locale.getDefault(), msg.getSize());
+
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(localizeLogMsg(msgKey, subject, sendTo,
+                            mailSize));
                 }
 
-                try {
-                    Thread.sleep(msecSendInterval);
-
-                    if (transport == null) {
-
-                        // Lazy create session and connect.
-                        final javax.mail.Session session =
-                                emailService.createSendMailSession();
-                        transport = session.getTransport();
-                        transport.connect();
+                AdminPublisher.instance().publish(PubTopicEnum.SMTP,
+                        PubLevelEnum.INFO,
+                        localizeSysMsg(msgKey, subject, sendTo, mailSize));
 
-                        // ... and get send interval for next cycle.
-                        final ConfigManager cm = ConfigManager.instance();
-                        msecSendInterval = cm.getConfigLong(
-                                Key.MAIL_OUTBOX_SEND_INTERVAL_MSEC);
-                    }
+            } catch (MessagingException e) {
+                LOGGER.warn(e.getMessage());
+            }
+        }
 
-                    // Send email.
-                    final MimeMessage mimeMsg =
-                            emailService.sendEmail(transport, p.toFile());
-
-                    // Logging.
-                    final String msgKey = "EmailOutboxMonitor.mailsent";
-                    final String subject = mimeMsg.getSubject();
-                    final String sendTo =
-                            mimeMsg.getRecipients(Message.RecipientType.TO)[0]
-                                    .toString();
-                    final String mailSize = NumberUtil.humanReadableByteCountSI(
-                            Locale.getDefault(), mimeMsg.getSize());
-
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug(localizeLogMsg(msgKey, subject, sendTo,
-                                mailSize));
-                    }
+        @Override
+        public void onDeferred(final Path file, final MessagingException e,
+                final long delayMsec) {
 
-                    AdminPublisher.instance().publish(PubTopicEnum.SMTP,
-                            PubLevelEnum.INFO,
-                            localizeSysMsg(msgKey, subject, sendTo, mailSize));
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(String.format("%s deferred [%d] msec: %s",
+                        file.getFileName(), delayMsec, e.getMessage()));
+            }
+        }
 
-                } catch (MessagingException e) {
+        @Override
+        public void onFailed(final Path file, final MessagingException e) {
 
-                    LOGGER.error(e.getMessage(), e);
+            LOGGER.error(e.getMessage(), e);
 
-                    AdminPublisher.instance().publish(PubTopicEnum.SMTP,
-                            PubLevelEnum.ERROR, e.getMessage());
+            AdminPublisher.instance().publish(PubTopicEnum.SMTP,
+                    PubLevelEnum.ERROR, e.getMessage());
+        }
+    }
 
-                } catch (InterruptedException e) {
-                    break;
-                }
+    /**
+     * Offers all MIME files in the email outbox to the dispatcher.
+     *
+     * @param dispatcher
+     *            The {@link EmailOutboxDispatcher}.
+     * @param outbox
+     *            The email outbox directory.
+     * @param glob
+     *            The GLOB of the MIME files.
+     * @throws IOException
+     *             When IO errors occur.
+     */
+    private static void scanEmailOutbox(final EmailOutboxDispatcher dispatcher,
+            final Path outbox, final String glob) throws IOException {
 
-                Files.delete(p);
-            }
+        try (DirectoryStream<Path> dirStream =
+                Files.newDirectoryStream(outbox, glob);) {
 
-        } finally {
-
-            if (transport != null) {
-                try {
-                    transport.close();
-                } catch (final MessagingException e) {
-                    // ignore
+            for (final Path p : dirStream) {
+                if (Files.isRegularFile(p)) {
+                    dispatcher.offer(p);
                 }
             }
         }
     }
 
     /**
-     * Polls the email outbox for messages to send in batch.
+     * Watches the email outbox for messages, and sends them with an
+     * {@link EmailOutboxDispatcher}.
      * <p>
-     * Note: traditional polling is chosen above {@link WatchService} because
-     * sending mails is less time critical and is simpler to implement.
+     * Messages are picked up as soon as the {@link WatchService} notifies
+     * their creation. The outbox is also rescanned every heartbeat, as
+     * fallback for missed or overflowed notifications.
      * </p>
      *
      * @throws IOException
@@ -323,53 +314,114 @@ public final class EmailOutboxMonitor extends AbstractJob {
         final EmailService emailService =
                 ServiceContext.getServiceFactory().getEmailService();
 
+        final Path outbox = emailService.getOutboxMimeFilesPath();
+        final String glob = emailService.getOutboxMimeFileGlob();
+
+        final PathMatcher matcher =
+                outbox.getFileSystem().getPathMatcher("glob:" + glob);
+
+        final EmailOutboxDispatcher dispatcher = new EmailOutboxDispatcher(
+                () -> emailService.connectTransport(
+                        emailService.createSendMailSession()),
+                new OutboxListener(),
+                cm.getConfigInt(Key.MAIL_OUTBOX_SEND_CONNECTIONS),
+                cm.getConfigInt(Key.MAIL_OUTBOX_SEND_DOMAIN_CONNECTIONS));
+
+        dispatcher.setSendIntervalMsec(
+                cm.getConfigLong(Key.MAIL_OUTBOX_SEND_INTERVAL_MSEC));
+        dispatcher.setBackoffMaxMsec(
+                cm.getConfigLong(Key.MAIL_OUTBOX_SEND_BACKOFF_MAX_MSEC));
+        dispatcher.setRetryPeriodMsec(
+                cm.getConfigLong(Key.MAIL_OUTBOX_SEND_RETRY_PERIOD_MSEC));
+
         final long msecStart = System.currentTimeMillis();
 
         int i = 0;
 
-        while (!this.isInterrupted()) {
+        try (WatchService watcher =
+                outbox.getFileSystem().newWatchService();) {
 
-            final long msecHeartbeat =
-                    cm.getConfigLong(Key.MAIL_OUTBOX_POLL_HEARTBEAT_MSEC);
+            outbox.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
 
-            try {
-                Thread.sleep(msecHeartbeat);
-            } catch (InterruptedException e) {
-                break;
-            }
+            dispatcher.start();
+            scanEmailOutbox(dispatcher, outbox, glob);
 
-            if (this.isInterrupted()) {
-                break;
-            }
+            long msecNextScan = System.currentTimeMillis()
+                    + cm.getConfigLong(Key.MAIL_OUTBOX_POLL_HEARTBEAT_MSEC);
 
-            i++;
+            while (!this.isInterrupted()) {
 
-            if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace(String.format("Email Watch [%d]", i));
-            }
+                final WatchKey key;
+                try {
+                    key = watcher.poll(WATCH_POLL_MSEC, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
 
-            try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(
-                    emailService.getOutboxMimeFilesPath(),
-                    emailService.getOutboxMimeFileGlob());) {
+                if (dispatcher.getBreakerException() != null) {
+                    throw dispatcher.getBreakerException();
+                }
 
-                this.sendMimeFileBatch(emailService, dirStream);
-            }
+                if (this.isInterrupted()) {
+                    break;
+                }
 
-            /*
-             * STOP if the max monitor time has elapsed.
-             */
-            final long timeElapsed =
-                    System.currentTimeMillis() + msecHeartbeat - msecStart;
+                boolean rescan = false;
+
+                if (key != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescan = true;
+                            continue;
+                        }
+                        final Path name = (Path) event.context();
+                        if (matcher.matches(name)) {
+                            dispatcher.offer(outbox.resolve(name));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException(String.format(
+                                "Email outbox [%s] is no longer accessible.",
+                                outbox));
+                    }
+                }
+
+                final long now = System.currentTimeMillis();
+
+                if (rescan || now >= msecNextScan) {
 
-            if (timeElapsed >= MAX_MONITOR_MSEC) {
+                    i++;
 
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.trace("Email Watch: time elapsed.");
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.trace(String.format("Email Watch [%d]", i));
+                    }
+
+                    scanEmailOutbox(dispatcher, outbox, glob);
+
+                    msecNextScan = now + cm
+                            .getConfigLong(Key.MAIL_OUTBOX_POLL_HEARTBEAT_MSEC);
                 }
-                break;
-            }
 
-        } // end-while
+                /*
+                 * STOP if the max monitor time has elapsed.
+                 */
+                if (now - msecStart >= MAX_MONITOR_MSEC) {
+
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.trace("Email Watch: time elapsed.");
+                    }
+                    break;
+                }
+
+            } // end-while
+
+        } finally {
+            try {
+                dispatcher.shutdown(SHUTDOWN_WAIT_MSEC);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
 }
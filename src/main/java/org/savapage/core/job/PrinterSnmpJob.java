@@ -27,6 +27,8 @@ package org.savapage.core.job;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,10 +51,9 @@ import org.savapage.core.services.PrinterService;
 import org.savapage.core.services.ProxyPrintService;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.SnmpRetrieveService;
-import org.savapage.core.services.helpers.PrinterSnmpReader;
+import org.savapage.core.services.helpers.PrinterSnmpSweeper;
 import org.savapage.core.services.helpers.SnmpPrinterQueryDto;
 import org.savapage.core.snmp.SnmpClientSession;
-import org.savapage.core.snmp.SnmpConnectException;
 import org.savapage.core.util.AppLogHelper;
 import org.savapage.core.util.JsonHelper;
 import org.slf4j.Logger;
@@ -184,6 +185,16 @@ public final class PrinterSnmpJob extends AbstractJob {
 
         final List<SnmpPrinterQueryDto> queriesAll =
                 PROXY_PRINT_SERVICE.getSnmpQueries();
+
+        /*
+         * Forget statistics of hosts that are no longer polled.
+         */
+        final Set<String> hostsAll = new HashSet<>();
+
+        for (final SnmpPrinterQueryDto queryWlk : queriesAll) {
+            hostsAll.add(queryWlk.getUriHost());
+        }
+        PrinterSnmpSweeper.retainHosts(hostsAll);
         final List<SnmpPrinterQueryDto> queries;
 
         final Long printerID = getPrinterID(ctx);
@@ -247,9 +258,10 @@ public final class PrinterSnmpJob extends AbstractJob {
         }
         publisher.publish(PubTopicEnum.SNMP, level, msgStart);
 
-        final PrinterSnmpReader snmpReader = new PrinterSnmpReader(
+        final PrinterSnmpSweeper snmpSweeper = new PrinterSnmpSweeper(
                 cm.getConfigInt(Key.PRINTER_SNMP_READ_RETRIES),
-                cm.getConfigInt(Key.PRINTER_SNMP_READ_TIMEOUT_MSECS));
+                cm.getConfigInt(Key.PRINTER_SNMP_READ_TIMEOUT_MSECS),
+                cm.getConfigInt(Key.PRINTER_SNMP_READ_PARALLEL));
 
         /*
          * Since there might be multiple queues for a single host, we cache
@@ -261,46 +273,61 @@ public final class PrinterSnmpJob extends AbstractJob {
 
         try {
 
+            /*
+             * Claim and lock unique hosts, and read them concurrently.
+             */
+            final Set<String> hostsToRead = new LinkedHashSet<>();
+
             for (final SnmpPrinterQueryDto query : queries) {
 
                 final String host = query.getUriHost();
-                hostWlk = host;
-
-                PrinterSnmpDto dto = null;
 
                 if (hostCache.containsKey(host)) {
+                    continue;
+                }
 
-                    dto = hostCache.get(host);
+                if (printerID == null) {
+                    SNMP_RETRIEVE_SERVICE.claimSnmpRetrieve(host);
+                }
 
-                } else {
+                if (SNMP_RETRIEVE_SERVICE.lockSnmpRetrieve(host)) {
+                    hostCache.put(host, null);
+                    hostsToRead.add(host);
+                }
+            }
 
-                    if (printerID == null) {
-                        SNMP_RETRIEVE_SERVICE.claimSnmpRetrieve(host);
-                    }
+            final Map<String, PrinterSnmpSweeper.Result> sweepResults =
+                    snmpSweeper.sweep(hostsToRead,
+                            SnmpClientSession.DEFAULT_PORT_READ,
+                            SnmpClientSession.DEFAULT_COMMUNITY, null);
 
-                    if (SNMP_RETRIEVE_SERVICE.lockSnmpRetrieve(host)) {
+            final Set<String> hostsFailed = new HashSet<>();
 
-                        try {
-                            dto = snmpReader.read(host,
-                                    SnmpClientSession.DEFAULT_PORT_READ,
-                                    SnmpClientSession.DEFAULT_COMMUNITY);
+            for (final String host : sweepResults.keySet()) {
+                final PrinterSnmpSweeper.Result result = sweepResults.get(host);
+                hostCache.put(host, result.getDto());
+                if (result.getError() != null) {
+                    hostsFailed.add(host);
+                }
+            }
 
-                        } catch (SnmpConnectException e) {
+            for (final SnmpPrinterQueryDto query : queries) {
 
-                            dto = null;
+                final String host = query.getUriHost();
+                hostWlk = host;
 
-                            msg = AppLogHelper.logWarning(getClass(),
-                                    "PrinterSnmp.retrieve.failure",
-                                    query.getPrinter().getPrinterName(),
-                                    query.getUriHost(), e.getMessage());
+                final PrinterSnmpDto dto = hostCache.get(host);
 
-                            publisher.publish(PubTopicEnum.SNMP,
-                                    PubLevelEnum.WARN, msg);
+                if (hostsFailed.remove(host)) {
 
-                        }
+                    msg = AppLogHelper.logWarning(getClass(),
+                            "PrinterSnmp.retrieve.failure",
+                            query.getPrinter().getPrinterName(),
+                            query.getUriHost(),
+                            sweepResults.get(host).getError().getMessage());
 
-                        hostCache.put(host, dto);
-                    }
+                    publisher.publish(PubTopicEnum.SNMP, PubLevelEnum.WARN,
+                            msg);
                 }
 
                 ServiceContext.resetTransactionDate();
@@ -338,6 +365,18 @@ public final class PrinterSnmpJob extends AbstractJob {
                 level = PubLevelEnum.WARN;
             }
 
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            daoContext.rollback();
+
+            level = PubLevelEnum.WARN;
+
+            msg = AppLogHelper.logWarning(getClass(), "PrinterSnmp.error",
+                    String.format("Printer [%s] interrupted",
+                            StringUtils.defaultString(hostWlk, "?")));
+
         } catch (Exception e) {
 
             daoContext.rollback();
@@ -39,6 +39,7 @@ import org.savapage.core.cometd.PubTopicEnum;
 import org.savapage.core.config.ConfigManager;
 import org.savapage.core.config.IConfigProp.Key;
 import org.savapage.core.dao.enums.AppLogLevelEnum;
+import org.savapage.core.doc.DeleteRateLimiter;
 import org.savapage.core.inbox.UserHomeVisitor;
 import org.savapage.core.util.AppLogHelper;
 import org.slf4j.Logger;
@@ -161,7 +162,10 @@ public final class UserHomeClean extends AbstractJob {
         try {
             cleaner = new UserHomeVisitor(
                     Paths.get(ConfigManager.getSafePagesHomeDir()),
-                    printInCleanDate, holdJobCleanDate, runMode);
+                    printInCleanDate, holdJobCleanDate, runMode,
+                    ConfigManager.getDeleteFilesParallelism(),
+                    new DeleteRateLimiter(
+                            ConfigManager.getDeleteFilesMaxPerSec()));
 
             final UserHomeVisitor.ExecStats stats = cleaner.execute();
 
@@ -0,0 +1,88 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter. Increments are striped over cells, so concurrent
+ * updates do not contend.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class Counter extends Metric {
+
+    /** */
+    private final LongAdder adder = new LongAdder();
+
+    /**
+     * @param name
+     *            Prometheus metric name.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     */
+    Counter(final String name, final String help, final String labelName,
+            final String labelValue) {
+        super(name, help, labelName, labelValue);
+    }
+
+    /**
+     * Increments by one.
+     */
+    public void inc() {
+        this.adder.increment();
+    }
+
+    /**
+     * @param delta
+     *            Value to add (must not be negative).
+     */
+    public void add(final long delta) {
+        this.adder.add(delta);
+    }
+
+    /**
+     * @return The current value.
+     */
+    public long get() {
+        return this.adder.sum();
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+
+    @Override
+    void writeSamples(final StringBuilder out) {
+        this.appendSampleName(out, "", null);
+        out.append(' ').append(this.get()).append('\n');
+    }
+}
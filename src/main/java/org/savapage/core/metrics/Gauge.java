@@ -0,0 +1,75 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge that samples its value when read.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class Gauge extends Metric {
+
+    /** */
+    private final LongSupplier supplier;
+
+    /**
+     * @param name
+     *            Prometheus metric name.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     * @param supplier
+     *            The value supplier.
+     */
+    Gauge(final String name, final String help, final String labelName,
+            final String labelValue, final LongSupplier supplier) {
+        super(name, help, labelName, labelValue);
+        this.supplier = supplier;
+    }
+
+    /**
+     * @return The current value.
+     */
+    public long get() {
+        return this.supplier.getAsLong();
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    void writeSamples(final StringBuilder out) {
+        this.appendSampleName(out, "", null);
+        out.append(' ').append(this.get()).append('\n');
+    }
+}
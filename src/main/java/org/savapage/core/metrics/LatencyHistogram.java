@@ -0,0 +1,286 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Each power of two of nanoseconds is split in {@link #SUB_BUCKETS} linear
+ * sub-buckets, so any recorded value is known with a relative error of at
+ * most 1/{@link #SUB_BUCKETS}. Values above 2<sup>{@link #MAX_EXPONENT}</sup>
+ * ns (about 18 minutes) are counted in the highest bucket. Recording is
+ * lock-free and allocation-free.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class LatencyHistogram extends Metric {
+
+    /**
+     * Number of bits for the linear sub-buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of linear sub-buckets per power of two.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two of nanoseconds with a bucket of its own.
+     */
+    public static final int MAX_EXPONENT = 40;
+
+    /**
+     * Total number of buckets.
+     */
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+            * SUB_BUCKETS;
+
+    /**
+     * Quantiles written to the Prometheus summary.
+     */
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /** */
+    private static final double NANOS_PER_SECOND =
+            TimeUnit.SECONDS.toNanos(1);
+
+    /** */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /** */
+    private final LongAdder count = new LongAdder();
+
+    /** */
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * @param name
+     *            Prometheus metric name.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     */
+    LatencyHistogram(final String name, final String help,
+            final String labelName, final String labelValue) {
+        super(name, help, labelName, labelValue);
+    }
+
+    /**
+     * @param nanos
+     *            Value in nanoseconds.
+     * @return The bucket index.
+     */
+    static int bucketIndex(final long nanos) {
+
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0L, nanos);
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int sub = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param index
+     *            The bucket index.
+     * @return The lowest value (inclusive) in nanoseconds of the bucket.
+     */
+    static long bucketLowerBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+
+    /**
+     * @param index
+     *            The bucket index.
+     * @return The highest value (inclusive) in nanoseconds of the bucket.
+     */
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        return bucketLowerBound(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param nanos
+     *            Value in nanoseconds.
+     */
+    public void record(final long nanos) {
+        this.buckets.incrementAndGet(bucketIndex(nanos));
+        this.count.increment();
+        this.sumNanos.add(Math.max(0L, nanos));
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startNanos
+     *            The start time as obtained from {@link System#nanoTime()}.
+     */
+    public void recordSince(final long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return Number of recorded values.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return Sum of recorded values in nanoseconds.
+     */
+    public long getSumNanos() {
+        return this.sumNanos.sum();
+    }
+
+    /**
+     * @return The mean value in nanoseconds, or {@code 0} when empty.
+     */
+    public double getMeanNanos() {
+        final long n = this.getCount();
+        if (n == 0) {
+            return 0;
+        }
+        return (double) this.getSumNanos() / n;
+    }
+
+    /**
+     * Gets the value at a quantile: the highest value of the bucket that
+     * contains the quantile.
+     *
+     * @param quantile
+     *            The quantile between {@code 0.0} and {@code 1.0}.
+     * @return The value in nanoseconds, or {@code 0} when empty.
+     */
+    public long getValueAtQuantile(final double quantile) {
+
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.buckets.get(i);
+            total += snapshot[i];
+        }
+        return valueAtQuantile(snapshot, total, quantile);
+    }
+
+    /**
+     * @param snapshot
+     *            Bucket counts.
+     * @param total
+     *            Sum of bucket counts.
+     * @param quantile
+     *            The quantile between {@code 0.0} and {@code 1.0}.
+     * @return The value in nanoseconds, or {@code 0} when empty.
+     */
+    private static long valueAtQuantile(final long[] snapshot,
+            final long total, final double quantile) {
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(snapshot.length - 1);
+    }
+
+    @Override
+    public String getType() {
+        return "summary";
+    }
+
+    @Override
+    void writeSamples(final StringBuilder out) {
+
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.buckets.get(i);
+            total += snapshot[i];
+        }
+
+        for (final double quantile : QUANTILES) {
+            this.appendSampleName(out, "",
+                    "quantile=\"" + quantile + "\"");
+            out.append(' ')
+                    .append(toSeconds(
+                            valueAtQuantile(snapshot, total, quantile)))
+                    .append('\n');
+        }
+
+        this.appendSampleName(out, "_sum", null);
+        out.append(' ').append(toSeconds(this.getSumNanos())).append('\n');
+
+        this.appendSampleName(out, "_count", null);
+        out.append(' ').append(total).append('\n');
+    }
+
+    /**
+     * @param nanos
+     *            Nanoseconds.
+     * @return Seconds formatted for Prometheus.
+     */
+    private static String toSeconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+}
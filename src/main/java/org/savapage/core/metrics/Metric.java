@@ -0,0 +1,196 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+/**
+ * Common part of a metric: name, help text and an optional label.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public abstract class Metric {
+
+    /**
+     * Prometheus metric name.
+     */
+    private final String name;
+
+    /**
+     * Help text.
+     */
+    private final String help;
+
+    /**
+     * Label name, or {@code null} when no label.
+     */
+    private final String labelName;
+
+    /**
+     * Label value, or {@code null} when no label.
+     */
+    private final String labelValue;
+
+    /**
+     * @param name
+     *            Prometheus metric name.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     */
+    protected Metric(final String name, final String help,
+            final String labelName, final String labelValue) {
+        this.name = name;
+        this.help = help;
+        this.labelName = labelName;
+        this.labelValue = labelValue;
+    }
+
+    /**
+     * @return Prometheus metric name.
+     */
+    public final String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return Help text.
+     */
+    public final String getHelp() {
+        return this.help;
+    }
+
+    /**
+     * @return Label name, or {@code null} when no label.
+     */
+    public final String getLabelName() {
+        return this.labelName;
+    }
+
+    /**
+     * @return Label value, or {@code null} when no label.
+     */
+    public final String getLabelValue() {
+        return this.labelValue;
+    }
+
+    /**
+     * @return Prometheus metric type.
+     */
+    public abstract String getType();
+
+    /**
+     * Creates the unique key of a metric.
+     *
+     * @param name
+     *            Metric name.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     * @return The key.
+     */
+    static String createKey(final String name, final String labelName,
+            final String labelValue) {
+        if (labelName == null) {
+            return name;
+        }
+        return name + "." + labelName + "." + labelValue;
+    }
+
+    /**
+     * @return The unique key of this metric.
+     */
+    public final String getKey() {
+        return createKey(this.name, this.labelName, this.labelValue);
+    }
+
+    /**
+     * Appends the Prometheus sample name with labels.
+     *
+     * @param out
+     *            The output.
+     * @param suffix
+     *            Name suffix (can be empty).
+     * @param extraLabel
+     *            Extra label, like {@code quantile="0.5"}, or {@code null}.
+     */
+    protected final void appendSampleName(final StringBuilder out,
+            final String suffix, final String extraLabel) {
+
+        out.append(this.name).append(suffix);
+
+        if (this.labelName == null && extraLabel == null) {
+            return;
+        }
+
+        out.append('{');
+        if (this.labelName != null) {
+            out.append(this.labelName).append("=\"");
+            appendEscaped(out, this.labelValue);
+            out.append('"');
+            if (extraLabel != null) {
+                out.append(',');
+            }
+        }
+        if (extraLabel != null) {
+            out.append(extraLabel);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Appends a label value with Prometheus escaping.
+     *
+     * @param out
+     *            The output.
+     * @param value
+     *            The label value.
+     */
+    private static void appendEscaped(final StringBuilder out,
+            final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            if (ch == '\\' || ch == '"') {
+                out.append('\\').append(ch);
+            } else if (ch == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Writes the Prometheus samples of this metric, without HELP and TYPE
+     * lines.
+     *
+     * @param out
+     *            The output.
+     */
+    abstract void writeSamples(StringBuilder out);
+}
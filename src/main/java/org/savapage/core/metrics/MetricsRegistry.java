@@ -0,0 +1,233 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.savapage.core.SpException;
+
+/**
+ * Registry of all core metrics.
+ * <p>
+ * Metrics are created once, typically in a static field of the instrumented
+ * class, and updated without any lookup. The registry is read by the JMX
+ * layer and as a Prometheus text snapshot.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Prefix of all metric names.
+     */
+    public static final String NAME_PREFIX = "savapage_";
+
+    /** */
+    private static class SingletonHolder {
+        /** */
+        public static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    /**
+     * Metrics by key.
+     */
+    private final ConcurrentMap<String, Metric> metrics =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Package-private for testing.
+     */
+    MetricsRegistry() {
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static MetricsRegistry instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Gets or creates a metric.
+     *
+     * @param <T>
+     *            Metric type.
+     * @param key
+     *            The metric key.
+     * @param factory
+     *            Creates the metric when absent.
+     * @param clazz
+     *            The metric class.
+     * @return The registered metric.
+     */
+    private <T extends Metric> T register(final String key,
+            final Function<String, T> factory, final Class<T> clazz) {
+
+        final Metric current = this.metrics.computeIfAbsent(key, factory);
+
+        if (!clazz.isInstance(current)) {
+            throw new SpException("Metric [" + key
+                    + "] is already registered as " + current.getType());
+        }
+        return clazz.cast(current);
+    }
+
+    /**
+     * @param name
+     *            Metric name without {@link #NAME_PREFIX}.
+     * @param help
+     *            Help text.
+     * @return The counter.
+     */
+    public Counter counter(final String name, final String help) {
+        return this.counter(name, help, null, null);
+    }
+
+    /**
+     * @param name
+     *            Metric name without {@link #NAME_PREFIX}.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     * @return The counter.
+     */
+    public Counter counter(final String name, final String help,
+            final String labelName, final String labelValue) {
+        return this.register(
+                Metric.createKey(NAME_PREFIX + name, labelName, labelValue),
+                k -> new Counter(NAME_PREFIX + name, help, labelName,
+                        labelValue),
+                Counter.class);
+    }
+
+    /**
+     * @param name
+     *            Metric name without {@link #NAME_PREFIX}, by convention
+     *            ending with {@code _seconds}.
+     * @param help
+     *            Help text.
+     * @return The histogram.
+     */
+    public LatencyHistogram histogram(final String name, final String help) {
+        return this.histogram(name, help, null, null);
+    }
+
+    /**
+     * @param name
+     *            Metric name without {@link #NAME_PREFIX}, by convention
+     *            ending with {@code _seconds}.
+     * @param help
+     *            Help text.
+     * @param labelName
+     *            Label name, or {@code null} when no label.
+     * @param labelValue
+     *            Label value, or {@code null} when no label.
+     * @return The histogram.
+     */
+    public LatencyHistogram histogram(final String name, final String help,
+            final String labelName, final String labelValue) {
+        return this.register(
+                Metric.createKey(NAME_PREFIX + name, labelName, labelValue),
+                k -> new LatencyHistogram(NAME_PREFIX + name, help,
+                        labelName, labelValue),
+                LatencyHistogram.class);
+    }
+
+    /**
+     * Registers a gauge. An existing gauge with the same key is kept.
+     *
+     * @param name
+     *            Metric name without {@link #NAME_PREFIX}.
+     * @param help
+     *            Help text.
+     * @param supplier
+     *            The value supplier.
+     * @return The gauge.
+     */
+    public Gauge gauge(final String name, final String help,
+            final LongSupplier supplier) {
+        return this.register(NAME_PREFIX + name,
+                k -> new Gauge(NAME_PREFIX + name, help, null, null,
+                        supplier),
+                Gauge.class);
+    }
+
+    /**
+     * @return All metrics sorted by name and key.
+     */
+    public List<Metric> getMetrics() {
+        final List<Metric> list = new ArrayList<>(this.metrics.values());
+        Collections.sort(list, Comparator.comparing(Metric::getName)
+                .thenComparing(Metric::getKey));
+        return list;
+    }
+
+    /**
+     * @param key
+     *            The metric key.
+     * @return The metric, or {@code null} when not found.
+     */
+    public Metric getMetric(final String key) {
+        return this.metrics.get(key);
+    }
+
+    /**
+     * Creates a snapshot in the Prometheus text exposition format (version
+     * 0.0.4).
+     *
+     * @return The snapshot.
+     */
+    public String toPrometheusText() {
+
+        final StringBuilder out = new StringBuilder(4096);
+
+        String lastName = null;
+
+        for (final Metric metric : this.getMetrics()) {
+
+            if (!metric.getName().equals(lastName)) {
+                lastName = metric.getName();
+                out.append("# HELP ").append(lastName).append(' ')
+                        .append(metric.getHelp()).append('\n');
+                out.append("# TYPE ").append(lastName).append(' ')
+                        .append(metric.getType()).append('\n');
+            }
+            metric.writeSamples(out);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.msg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory bus of {@link UserMsgIndicator} events, one channel per user.
+ * <p>
+ * Each published event gets a sequence number that increases monotonically
+ * per channel, starting at 1. A channel keeps the most recent
+ * {@link #RING_SIZE} events. Readers ask for the events after the last
+ * (epoch, sequence) cursor they have seen, and can block until there is news.
+ * This is meant for long-poll or CometD handlers.
+ * </p>
+ * <p>
+ * A channel is created by the first publish for a user: readers never create
+ * one. Channels without waiting readers and without publish for
+ * {@link #CHANNEL_IDLE_EVICT_MSEC} are evicted. A new channel of a user
+ * restarts the sequence with a new epoch. A reader with a cursor of another
+ * epoch, e.g. after eviction or a server restart, gets all events in the
+ * ring, so it can resynchronize.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UserMsgBus {
+
+    /**
+     * Max number of recent events kept per user.
+     */
+    public static final int RING_SIZE = 16;
+
+    /**
+     * Idle time (milliseconds) after which a channel without waiting readers
+     * is evicted.
+     */
+    public static final long CHANNEL_IDLE_EVICT_MSEC =
+            TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Interval (milliseconds) of checking idle channels.
+     */
+    private static final long CHANNEL_IDLE_CHECK_MSEC =
+            TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The events of a user. Access is synchronized on the instance, which is
+     * also the monitor for waiting readers.
+     */
+    private static final class Channel {
+
+        /** Epoch of the channel, unique per bus. */
+        private final long epoch;
+
+        /** Ring of recent events. */
+        private final UserMsgIndicator[] ring =
+                new UserMsgIndicator[RING_SIZE];
+
+        /** Sequence of the last published event. */
+        private long lastSequence;
+
+        /** Time (milliseconds) of the last publish, or of creation. */
+        private long lastPublishTime = System.currentTimeMillis();
+
+        /** Number of readers waiting for events. */
+        private int waiters;
+
+        /** {@code true} when removed from the bus. */
+        private boolean removed;
+
+        /**
+         * @param epoch
+         *            Epoch of the channel.
+         */
+        private Channel(final long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * Collects the events after a cursor. The caller holds the monitor.
+         *
+         * @param afterEpoch
+         *            The epoch of the last event seen by the reader.
+         * @param afterSequence
+         *            The sequence of the last event seen by the reader.
+         * @return The events, oldest first.
+         */
+        private List<UserMsgIndicator> collect(final long afterEpoch,
+                final long afterSequence) {
+
+            final long after;
+            if (afterEpoch != this.epoch
+                    || afterSequence > this.lastSequence) {
+                after = 0;
+            } else {
+                after = afterSequence;
+            }
+
+            final long first =
+                    Math.max(after + 1, this.lastSequence - RING_SIZE + 1);
+
+            if (first > this.lastSequence) {
+                return Collections.emptyList();
+            }
+
+            final List<UserMsgIndicator> events =
+                    new ArrayList<>((int) (this.lastSequence - first + 1));
+
+            for (long seq = first; seq <= this.lastSequence; seq++) {
+                events.add(this.ring[ringIndex(seq)]);
+            }
+            return events;
+        }
+    }
+
+    /**
+     * Monitor of the readers waiting for the channel of a user to be created.
+     */
+    private static final class CreationMonitor {
+
+        /**
+         * Number of waiting readers. Updated in
+         * {@link ConcurrentMap#compute(Object,
+         * java.util.function.BiFunction)} only.
+         */
+        private int waiters;
+    }
+
+    /** */
+    private static class SingletonHolder {
+        /** */
+        public static final UserMsgBus INSTANCE = new UserMsgBus();
+    }
+
+    /**
+     * Channels by user id.
+     */
+    private final ConcurrentMap<String, Channel> channels =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Monitors of readers waiting for the channel of a user to be created, by
+     * user id.
+     */
+    private final ConcurrentMap<String, CreationMonitor> creationMonitors =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Last channel epoch. Starts at the creation time, so epochs differ
+     * after a restart.
+     */
+    private final AtomicLong lastEpoch =
+            new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Time (milliseconds) of the next check for idle channels.
+     */
+    private final AtomicLong nextIdleCheckTime = new AtomicLong(
+            System.currentTimeMillis() + CHANNEL_IDLE_CHECK_MSEC);
+
+    /** */
+    UserMsgBus() {
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static UserMsgBus instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @param sequence
+     *            Event sequence.
+     * @return Index in ring.
+     */
+    private static int ringIndex(final long sequence) {
+        return (int) (sequence % RING_SIZE);
+    }
+
+    /**
+     * Gets the channel of a user, and creates it when absent. Readers of the
+     * user waiting for the channel to be created are woken up.
+     *
+     * @param userId
+     *            The user id.
+     * @return The channel of the user.
+     */
+    private Channel channelForPublish(final String userId) {
+
+        final Channel channel = this.channels.get(userId);
+
+        if (channel != null) {
+            return channel;
+        }
+
+        final Channel created = new Channel(this.lastEpoch.incrementAndGet());
+        final Channel present = this.channels.putIfAbsent(userId, created);
+
+        if (present != null) {
+            return present;
+        }
+
+        final CreationMonitor monitor = this.creationMonitors.get(userId);
+
+        if (monitor != null) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Waits until the channel of a user is present, or the deadline passes.
+     *
+     * @param userId
+     *            The user id.
+     * @param deadline
+     *            The deadline ({@link System#nanoTime()}).
+     * @return The channel, or {@code null} when the deadline passed.
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    private Channel awaitChannel(final String userId, final long deadline)
+            throws InterruptedException {
+
+        Channel channel = this.channels.get(userId);
+
+        if (channel != null) {
+            return channel;
+        }
+
+        final CreationMonitor monitor =
+                this.creationMonitors.compute(userId, (k, m) -> {
+                    final CreationMonitor present;
+                    if (m == null) {
+                        present = new CreationMonitor();
+                    } else {
+                        present = m;
+                    }
+                    present.waiters++;
+                    return present;
+                });
+
+        try {
+            synchronized (monitor) {
+
+                channel = this.channels.get(userId);
+
+                while (channel == null) {
+
+                    final long nanosLeft = deadline - System.nanoTime();
+
+                    if (nanosLeft <= 0) {
+                        return null;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(monitor, nanosLeft);
+                    channel = this.channels.get(userId);
+                }
+                return channel;
+            }
+        } finally {
+            this.creationMonitors.computeIfPresent(userId, (k, m) -> {
+                m.waiters--;
+                if (m.waiters == 0) {
+                    return null;
+                }
+                return m;
+            });
+        }
+    }
+
+    /**
+     * Publishes an event and wakes up all readers of the user.
+     *
+     * @param userId
+     *            The user id.
+     * @param time
+     *            The date-time of the user message.
+     * @param msg
+     *            The message type.
+     * @param senderId
+     *            Any ID the sender wants to add (can be {@code null}).
+     * @return The published event.
+     */
+    public UserMsgIndicator publish(final String userId, final long time,
+            final UserMsgIndicator.Msg msg, final String senderId) {
+
+        final long now = System.currentTimeMillis();
+        final long nextCheck = this.nextIdleCheckTime.get();
+
+        if (now >= nextCheck && this.nextIdleCheckTime
+                .compareAndSet(nextCheck, now + CHANNEL_IDLE_CHECK_MSEC)) {
+            this.evictIdle(now);
+        }
+
+        while (true) {
+
+            final Channel channel = this.channelForPublish(userId);
+
+            synchronized (channel) {
+
+                if (channel.removed) {
+                    continue;
+                }
+
+                final long sequence = channel.lastSequence + 1;
+
+                final UserMsgIndicator event =
+                        new UserMsgIndicator(userId, channel.epoch, sequence,
+                                new Date(time), msg, senderId);
+
+                channel.ring[ringIndex(sequence)] = event;
+                channel.lastSequence = sequence;
+                channel.lastPublishTime = now;
+                channel.notifyAll();
+
+                return event;
+            }
+        }
+    }
+
+    /**
+     * @param userId
+     *            The user id.
+     * @return The sequence of the last published event, or zero when no
+     *         event was published.
+     */
+    public long getLastSequence(final String userId) {
+
+        final Channel channel = this.channels.get(userId);
+
+        if (channel == null) {
+            return 0;
+        }
+        synchronized (channel) {
+            return channel.lastSequence;
+        }
+    }
+
+    /**
+     * @param userId
+     *            The user id.
+     * @return The last published event, or {@code null} when no event was
+     *         published.
+     */
+    public UserMsgIndicator getLast(final String userId) {
+
+        final Channel channel = this.channels.get(userId);
+
+        if (channel == null) {
+            return null;
+        }
+        synchronized (channel) {
+            if (channel.lastSequence == 0) {
+                return null;
+            }
+            return channel.ring[ringIndex(channel.lastSequence)];
+        }
+    }
+
+    /**
+     * Gets the recent events after a cursor, without waiting.
+     *
+     * @param userId
+     *            The user id.
+     * @param afterEpoch
+     *            The epoch of the last event seen by the reader. Use zero for
+     *            all recent events.
+     * @param afterSequence
+     *            The sequence of the last event seen by the reader.
+     * @return The events, oldest first. Events older than the last
+     *         {@link #RING_SIZE} are not present.
+     */
+    public List<UserMsgIndicator> getSince(final String userId,
+            final long afterEpoch, final long afterSequence) {
+
+        final Channel channel = this.channels.get(userId);
+
+        if (channel == null) {
+            return Collections.emptyList();
+        }
+        synchronized (channel) {
+            return channel.collect(afterEpoch, afterSequence);
+        }
+    }
+
+    /**
+     * Waits until there are events after a cursor, or the timeout expires.
+     *
+     * @param userId
+     *            The user id.
+     * @param afterEpoch
+     *            The epoch of the last event seen by the reader.
+     * @param afterSequence
+     *            The sequence of the last event seen by the reader.
+     * @param timeout
+     *            The max time to wait.
+     * @param unit
+     *            The time unit of the timeout.
+     * @return The events, oldest first, or an empty list when the timeout
+     *         expired.
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    public List<UserMsgIndicator> waitForChange(final String userId,
+            final long afterEpoch, final long afterSequence,
+            final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (true) {
+
+            final Channel channel = this.awaitChannel(userId, deadline);
+
+            if (channel == null) {
+                return Collections.emptyList();
+            }
+
+            synchronized (channel) {
+
+                if (channel.removed) {
+                    continue;
+                }
+
+                channel.waiters++;
+
+                try {
+                    List<UserMsgIndicator> events =
+                            channel.collect(afterEpoch, afterSequence);
+
+                    while (events.isEmpty() && !channel.removed) {
+
+                        final long nanosLeft = deadline - System.nanoTime();
+
+                        if (nanosLeft <= 0) {
+                            return events;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(channel, nanosLeft);
+                        events = channel.collect(afterEpoch, afterSequence);
+                    }
+
+                    if (!events.isEmpty()) {
+                        return events;
+                    }
+                } finally {
+                    channel.waiters--;
+                }
+            }
+            // Channel was removed: wait for a new one.
+        }
+    }
+
+    /**
+     * Evicts channels without waiting readers, that had no publish for
+     * {@link #CHANNEL_IDLE_EVICT_MSEC}.
+     *
+     * @param now
+     *            The current time (milliseconds).
+     * @return The number of evicted channels.
+     */
+    int evictIdle(final long now) {
+
+        final long idleLimit = now - CHANNEL_IDLE_EVICT_MSEC;
+        int evicted = 0;
+
+        for (final Map.Entry<String, Channel> entry : this.channels
+                .entrySet()) {
+
+            final Channel channel = entry.getValue();
+
+            synchronized (channel) {
+                if (channel.waiters == 0
+                        && channel.lastPublishTime < idleLimit
+                        && this.channels.remove(entry.getKey(), channel)) {
+                    channel.removed = true;
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes the channel of a user, e.g. when the user is deleted. Waiting
+     * readers are woken up, and wait for a new channel until their timeout.
+     *
+     * @param userId
+     *            The user id.
+     */
+    public void remove(final String userId) {
+
+        final Channel channel = this.channels.remove(userId);
+
+        if (channel != null) {
+            synchronized (channel) {
+                channel.removed = true;
+                channel.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return The number of user channels.
+     */
+    public int size() {
+        return this.channels.size();
+    }
+}
@@ -42,6 +42,7 @@ import javax.persistence.Query;
 
 import org.savapage.core.community.CommunityDictEnum;
 import org.savapage.core.config.ConfigManager;
+import org.savapage.core.config.IConfigProp.Key;
 import org.savapage.core.dao.PrintOutDao;
 import org.savapage.core.dao.helpers.IppQueueHelper;
 import org.savapage.core.i18n.AdjectiveEnum;
@@ -64,8 +65,9 @@ import org.slf4j.LoggerFactory;
  * This class manages the date-time of the most recent message to be delivered
  * to User Web App.
  * <p>
- * A file is used in the SafePages directory of the user to read/write the
- * message.
+ * Messages are published on the in-memory {@link UserMsgBus}. When
+ * {@link Key#USER_MSG_INDICATOR_FILE_ENABLE} is set, a file is also used in
+ * the SafePages directory of the user to read/write the message.
  * </p>
  *
  * @author Rijk Ravestein
@@ -200,12 +202,49 @@ public final class UserMsgIndicator {
      */
     private String senderId = null;
 
+    /**
+     * Channel epoch on the {@link UserMsgBus}, or zero when read from file.
+     */
+    private long epoch = 0;
+
+    /**
+     * Sequence on the {@link UserMsgBus}, or zero when read from file.
+     */
+    private long sequence = 0;
+
     /**
      *
      */
     private UserMsgIndicator() {
     }
 
+    /**
+     * Creates a message published on the {@link UserMsgBus}.
+     *
+     * @param userId
+     *            The user id.
+     * @param epoch
+     *            The channel epoch on the bus.
+     * @param sequence
+     *            The sequence on the bus.
+     * @param date
+     *            Date of the message.
+     * @param msg
+     *            The message.
+     * @param senderId
+     *            Any ID the sender wants to add (can be {@code null}).
+     */
+    UserMsgIndicator(final String userId, final long epoch,
+            final long sequence, final Date date, final Msg msg,
+            final String senderId) {
+        this.userId = userId;
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.messageDate = date;
+        this.message = msg;
+        this.senderId = senderId;
+    }
+
     /**
      * Reads the message indicator property file for a user.
      *
@@ -296,6 +335,30 @@ public final class UserMsgIndicator {
         this.senderId = senderId;
     }
 
+    /**
+     * @return Channel epoch on the {@link UserMsgBus}, or zero when read from
+     *         file.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return Sequence on the {@link UserMsgBus}, or zero when read from
+     *         file.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return {@code true} when messages are also written to file.
+     */
+    private static boolean isFileEnabled() {
+        return ConfigManager.instance()
+                .isConfigValue(Key.USER_MSG_INDICATOR_FILE_ENABLE);
+    }
+
     /**
      * Checks whether a file is the indicator file for a user.
      *
@@ -354,6 +417,10 @@ public final class UserMsgIndicator {
 
     /**
      * Reads the message indicator for a user.
+     * <p>
+     * When the file is disabled, the last message on the {@link UserMsgBus}
+     * is returned without filesystem access.
+     * </p>
      *
      * @param userId
      *            The user id.
@@ -363,6 +430,16 @@ public final class UserMsgIndicator {
      */
     public static UserMsgIndicator read(final String userId)
             throws IOException {
+
+        if (!isFileEnabled()) {
+            final UserMsgIndicator last = UserMsgBus.instance().getLast(userId);
+            if (last != null) {
+                return last;
+            }
+            final UserMsgIndicator none = new UserMsgIndicator();
+            none.userId = userId;
+            return none;
+        }
         return new UserMsgIndicator(userId);
     }
 
@@ -386,11 +463,13 @@ public final class UserMsgIndicator {
      */
     private static void notifyEvent(final UserMsgIndicator.Msg msg,
             final String userId) {
+        final long time = System.currentTimeMillis();
+
+        UserMsgBus.instance().publish(userId, time, msg, null);
 
-        if (UserMsgIndicator.isSafePagesDirPresent(userId)) {
+        if (isFileEnabled() && isSafePagesDirPresent(userId)) {
             try {
-                UserMsgIndicator.writeMsg(userId, System.currentTimeMillis(),
-                        msg, null);
+                writeMsgFile(userId, time, msg, null);
             } catch (IOException e) {
                 LOGGER.error(e.getMessage(), e);
             }
@@ -419,7 +498,8 @@ public final class UserMsgIndicator {
     }
 
     /**
-     * Saves (writes) the date-time and type of the last user message.
+     * Publishes the date-time and type of the last user message on the
+     * {@link UserMsgBus}, and writes it to file when enabled.
      *
      * @param userId
      *            The user_name.
@@ -436,6 +516,30 @@ public final class UserMsgIndicator {
     private static void writeMsg(final String userId, final long time,
             final Msg msg, final String senderId) throws IOException {
 
+        UserMsgBus.instance().publish(userId, time, msg, senderId);
+
+        if (isFileEnabled()) {
+            writeMsgFile(userId, time, msg, senderId);
+        }
+    }
+
+    /**
+     * Saves (writes) the date-time and type of the last user message to file.
+     *
+     * @param userId
+     *            The user_name.
+     * @param time
+     *            The date-time of the user message.
+     * @param msg
+     *            The {@link UserMsgIndicator.Msg} type.
+     * @param senderId
+     *            Any ID the sender wants to add (can be {@code null}).
+     * @throws IOException
+     *             When message could not be written.
+     */
+    private static void writeMsgFile(final String userId, final long time,
+            final Msg msg, final String senderId) throws IOException {
+
         FileOutputStream fos = null;
         File fileTemp = null;
 
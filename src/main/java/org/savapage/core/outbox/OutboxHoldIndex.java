@@ -0,0 +1,695 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.outbox;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
+import org.savapage.core.util.HashedTimerWheel;
+
+/**
+ * Server-wide in-memory index of the jobs held in user outboxes, backed by
+ * the outbox JSON files.
+ * <p>
+ * Jobs are indexed by user and printer, so the jobs of a user at a printer
+ * are found with an O(1) lookup. Page counts and costs of non-expired jobs
+ * are aggregated incrementally. Job expiry is tracked by a
+ * {@link HashedTimerWheel}, which is advanced on each access.
+ * </p>
+ * <p>
+ * An index entry holds the last-modified time and length of the JSON file it
+ * was built from: the owner checks both to detect stale entries, and
+ * serializes file IO and index updates of a user on
+ * {@link #getUserLock(String)}.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class OutboxHoldIndex {
+
+    /**
+     * Aggregated figures of the non-expired jobs of a user.
+     */
+    public static final class HoldSummary {
+
+        /** */
+        public static final HoldSummary EMPTY =
+                new HoldSummary(0, 0, 0, 0, BigDecimal.ZERO, Long.MAX_VALUE);
+
+        /** */
+        private final int jobCount;
+        /** */
+        private final long pages;
+        /** */
+        private final long sheets;
+        /** */
+        private final long copies;
+        /** */
+        private final BigDecimal cost;
+        /** */
+        private final long firstExpiryTime;
+
+        /**
+         * @param jobs
+         *            Number of jobs.
+         * @param nPages
+         *            Number of pages.
+         * @param nSheets
+         *            Number of sheets.
+         * @param nCopies
+         *            Number of copies.
+         * @param costTotal
+         *            Total cost.
+         * @param firstExpiry
+         *            First expiry time.
+         */
+        private HoldSummary(final int jobs, final long nPages,
+                final long nSheets, final long nCopies,
+                final BigDecimal costTotal, final long firstExpiry) {
+            this.jobCount = jobs;
+            this.pages = nPages;
+            this.sheets = nSheets;
+            this.copies = nCopies;
+            this.cost = costTotal;
+            this.firstExpiryTime = firstExpiry;
+        }
+
+        /**
+         * @return Number of jobs.
+         */
+        public int getJobCount() {
+            return this.jobCount;
+        }
+
+        /**
+         * @return Number of pages.
+         */
+        public long getPages() {
+            return this.pages;
+        }
+
+        /**
+         * @return Number of sheets.
+         */
+        public long getSheets() {
+            return this.sheets;
+        }
+
+        /**
+         * @return Number of copies.
+         */
+        public long getCopies() {
+            return this.copies;
+        }
+
+        /**
+         * @return Total cost.
+         */
+        public BigDecimal getCost() {
+            return this.cost;
+        }
+
+        /**
+         * @return Time (as in {@link java.util.Date#getTime()}) the first job
+         *         expires, or {@link Long#MAX_VALUE} when no jobs.
+         */
+        public long getFirstExpiryTime() {
+            return this.firstExpiryTime;
+        }
+    }
+
+    /**
+     * An indexed job.
+     */
+    private static final class HoldJob {
+
+        /** */
+        private final String userId;
+        /** */
+        private final String file;
+        /** */
+        private final String printer;
+        /** */
+        private final long expiryTime;
+        /** */
+        private final int pages;
+        /** */
+        private final int sheets;
+        /** */
+        private final int copies;
+        /** */
+        private final BigDecimal cost;
+
+        /** */
+        private boolean expired;
+
+        /** */
+        private HashedTimerWheel.Timeout<HoldJob> timeout;
+
+        /**
+         * @param user
+         *            User id.
+         * @param dto
+         *            The job.
+         */
+        private HoldJob(final String user, final OutboxJobDto dto) {
+            this.userId = user;
+            this.file = dto.getFile();
+            this.printer = dto.getPrinter();
+            this.expiryTime = dto.getExpiryTime();
+            this.pages = dto.getPages();
+            this.sheets = dto.getSheets();
+            this.copies = dto.getCopies();
+            if (dto.getCostResult() == null) {
+                this.cost = BigDecimal.ZERO;
+            } else {
+                this.cost = dto.getCostTotal();
+            }
+        }
+
+        /**
+         * @param dto
+         *            The job.
+         * @return {@code true} when indexed figures are equal.
+         */
+        private boolean isSame(final OutboxJobDto dto) {
+            final BigDecimal dtoCost;
+            if (dto.getCostResult() == null) {
+                dtoCost = BigDecimal.ZERO;
+            } else {
+                dtoCost = dto.getCostTotal();
+            }
+            return this.expiryTime == dto.getExpiryTime()
+                    && this.pages == dto.getPages()
+                    && this.sheets == dto.getSheets()
+                    && this.copies == dto.getCopies()
+                    && Objects.equals(this.printer, dto.getPrinter())
+                    && Objects.equals(this.file, dto.getFile())
+                    && this.cost.compareTo(dtoCost) == 0;
+        }
+    }
+
+    /**
+     * Index entry of a user. Guarded by its own monitor.
+     */
+    private static final class UserHold {
+
+        /** Last-modified time of the JSON file. */
+        private long fileModified;
+
+        /** Length of the JSON file. */
+        private long fileLength;
+
+        /**
+         * All jobs (expired or not) by file name.
+         */
+        private final Map<String, HoldJob> jobs = new LinkedHashMap<>();
+
+        /**
+         * All jobs (expired or not) by printer name and file name.
+         */
+        private final Map<String, Map<String, HoldJob>> byPrinter =
+                new HashMap<>();
+
+        /** */
+        private int activeJobs;
+        /** */
+        private long activePages;
+        /** */
+        private long activeSheets;
+        /** */
+        private long activeCopies;
+        /** */
+        private BigDecimal activeCost = BigDecimal.ZERO;
+
+        /**
+         * @param job
+         *            Job to add to the active totals.
+         * @param sign
+         *            {@code 1} to add, {@code -1} to subtract.
+         */
+        private void aggregate(final HoldJob job, final int sign) {
+            this.activeJobs += sign;
+            this.activePages += sign * job.pages;
+            this.activeSheets += sign * job.sheets;
+            this.activeCopies += sign * job.copies;
+            if (sign > 0) {
+                this.activeCost = this.activeCost.add(job.cost);
+            } else {
+                this.activeCost = this.activeCost.subtract(job.cost);
+            }
+        }
+    }
+
+    /** */
+    private static final int WHEEL_SLOTS = 512;
+
+    /** */
+    private static final long WHEEL_TICK_MSEC = 1000L;
+
+    /** */
+    private static final int USER_LOCK_STRIPES = 64;
+
+    /** */
+    private final Map<String, UserHold> users = new ConcurrentHashMap<>();
+
+    /** */
+    private final HashedTimerWheel<HoldJob> wheel;
+
+    /** */
+    private final Object[] userLocks;
+
+    /** */
+    private static final class SingletonHolder {
+        /** */
+        public static final OutboxHoldIndex INSTANCE = new OutboxHoldIndex(
+                WHEEL_SLOTS, WHEEL_TICK_MSEC, System.currentTimeMillis());
+    }
+
+    /**
+     * @param nSlots
+     *            Number of timer wheel slots (power of two).
+     * @param tickMsec
+     *            Timer wheel tick duration in milliseconds.
+     * @param startTime
+     *            Timer wheel start time in milliseconds.
+     */
+    OutboxHoldIndex(final int nSlots, final long tickMsec,
+            final long startTime) {
+        this.wheel = new HashedTimerWheel<>(nSlots, tickMsec, startTime);
+        this.userLocks = new Object[USER_LOCK_STRIPES];
+        for (int i = 0; i < this.userLocks.length; i++) {
+            this.userLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static OutboxHoldIndex instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the lock to serialize outbox file IO and index updates of a user.
+     *
+     * @param userId
+     *            The unique user id.
+     * @return The lock.
+     */
+    public Object getUserLock(final String userId) {
+        return this.userLocks[(userId.hashCode() & Integer.MAX_VALUE)
+                % this.userLocks.length];
+    }
+
+    /**
+     * Checks if the index entry of a user is built from a JSON file version.
+     *
+     * @param userId
+     *            The unique user id.
+     * @param fileModified
+     *            The last-modified time of the file.
+     * @param fileLength
+     *            The length of the file.
+     * @return {@code true} when index entry is current.
+     */
+    public boolean isCurrent(final String userId, final long fileModified,
+            final long fileLength) {
+        final UserHold hold = this.users.get(userId);
+        if (hold == null) {
+            return false;
+        }
+        synchronized (hold) {
+            return hold.fileModified == fileModified
+                    && hold.fileLength == fileLength;
+        }
+    }
+
+    /**
+     * Updates the index entry of a user: only changed jobs are re-indexed.
+     *
+     * @param userId
+     *            The unique user id.
+     * @param fileModified
+     *            The last-modified time of the JSON file the info is read from
+     *            or written to.
+     * @param fileLength
+     *            The length of the JSON file.
+     * @param outboxInfo
+     *            The outbox info.
+     */
+    public void update(final String userId, final long fileModified,
+            final long fileLength, final OutboxInfoDto outboxInfo) {
+        this.update(userId, fileModified, fileLength, outboxInfo,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @param fileModified
+     *            The last-modified time of the JSON file.
+     * @param fileLength
+     *            The length of the JSON file.
+     * @param outboxInfo
+     *            The outbox info.
+     * @param now
+     *            Current time in milliseconds.
+     */
+    void update(final String userId, final long fileModified,
+            final long fileLength, final OutboxInfoDto outboxInfo,
+            final long now) {
+
+        this.expire(now);
+
+        final Map<String, OutboxJobDto> dtoJobs = outboxInfo.getJobs();
+        final UserHold hold =
+                this.users.computeIfAbsent(userId, k -> new UserHold());
+
+        synchronized (hold) {
+
+            hold.fileModified = fileModified;
+            hold.fileLength = fileLength;
+
+            final List<HoldJob> removed = new ArrayList<>();
+
+            for (final HoldJob job : hold.jobs.values()) {
+                final OutboxJobDto dto = dtoJobs.get(job.file);
+                if (dto == null || !job.isSame(dto)) {
+                    removed.add(job);
+                }
+            }
+            for (final HoldJob job : removed) {
+                this.removeJob(hold, job);
+            }
+
+            for (final Entry<String, OutboxJobDto> entry : dtoJobs
+                    .entrySet()) {
+                if (!hold.jobs.containsKey(entry.getKey())) {
+                    this.addJob(hold,
+                            new HoldJob(userId, entry.getValue()), now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the index entry of a user.
+     *
+     * @param userId
+     *            The unique user id.
+     */
+    public void remove(final String userId) {
+        final UserHold hold = this.users.remove(userId);
+        if (hold == null) {
+            return;
+        }
+        synchronized (hold) {
+            for (final HoldJob job : hold.jobs.values()) {
+                if (job.timeout != null) {
+                    this.wheel.cancel(job.timeout);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @return Number of jobs (expired or not) in the indexed JSON file.
+     */
+    public int getJobCount(final String userId) {
+        final UserHold hold = this.users.get(userId);
+        if (hold == null) {
+            return 0;
+        }
+        synchronized (hold) {
+            return hold.jobs.size();
+        }
+    }
+
+    /**
+     * Gets the non-expired jobs of a user at a printer.
+     *
+     * @param userId
+     *            The unique user id.
+     * @param printerName
+     *            The printer name.
+     * @return The job file names in insertion order.
+     */
+    public Set<String> getJobFiles(final String userId,
+            final String printerName) {
+        return this.getJobFiles(userId, printerName,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @param printerName
+     *            The printer name.
+     * @param now
+     *            Current time in milliseconds.
+     * @return The job file names in insertion order.
+     */
+    Set<String> getJobFiles(final String userId, final String printerName,
+            final long now) {
+
+        this.expire(now);
+
+        final UserHold hold = this.users.get(userId);
+        if (hold == null) {
+            return Collections.emptySet();
+        }
+
+        synchronized (hold) {
+            final Map<String, HoldJob> jobs = hold.byPrinter.get(printerName);
+            if (jobs == null) {
+                return Collections.emptySet();
+            }
+            final Set<String> files = new LinkedHashSet<>();
+            for (final HoldJob job : jobs.values()) {
+                if (!job.expired) {
+                    files.add(job.file);
+                }
+            }
+            return files;
+        }
+    }
+
+    /**
+     * Checks if a user has jobs at one of the printers, which expire after a
+     * reference time.
+     *
+     * @param userId
+     *            The unique user id.
+     * @param printerNames
+     *            The printer names.
+     * @param expiryRef
+     *            The reference time in milliseconds.
+     * @return {@code true} when jobs are present.
+     */
+    public boolean hasJobs(final String userId, final Set<String> printerNames,
+            final long expiryRef) {
+
+        final UserHold hold = this.users.get(userId);
+        if (hold == null) {
+            return false;
+        }
+
+        synchronized (hold) {
+            for (final String printerName : printerNames) {
+                final Map<String, HoldJob> jobs =
+                        hold.byPrinter.get(printerName);
+                if (jobs == null) {
+                    continue;
+                }
+                for (final HoldJob job : jobs.values()) {
+                    if (job.expiryTime - expiryRef > 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @return The first expiry time of all (expired or not) jobs, or
+     *         {@link Long#MAX_VALUE} when no jobs.
+     */
+    public long getFirstExpiryTime(final String userId) {
+
+        final UserHold hold = this.users.get(userId);
+        long first = Long.MAX_VALUE;
+
+        if (hold != null) {
+            synchronized (hold) {
+                for (final HoldJob job : hold.jobs.values()) {
+                    first = Math.min(first, job.expiryTime);
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @return The aggregated figures of the non-expired jobs.
+     */
+    public HoldSummary getSummary(final String userId) {
+        return this.getSummary(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * @param userId
+     *            The unique user id.
+     * @param now
+     *            Current time in milliseconds.
+     * @return The aggregated figures of the non-expired jobs.
+     */
+    HoldSummary getSummary(final String userId, final long now) {
+
+        this.expire(now);
+
+        final UserHold hold = this.users.get(userId);
+        if (hold == null) {
+            return HoldSummary.EMPTY;
+        }
+
+        synchronized (hold) {
+            if (hold.activeJobs == 0) {
+                return HoldSummary.EMPTY;
+            }
+            long firstExpiry = Long.MAX_VALUE;
+            for (final HoldJob job : hold.jobs.values()) {
+                if (!job.expired) {
+                    firstExpiry = Math.min(firstExpiry, job.expiryTime);
+                }
+            }
+            return new HoldSummary(hold.activeJobs, hold.activePages,
+                    hold.activeSheets, hold.activeCopies, hold.activeCost,
+                    firstExpiry);
+        }
+    }
+
+    /**
+     * Advances the timer wheel and marks the due jobs as expired.
+     *
+     * @param now
+     *            Current time in milliseconds.
+     */
+    void expire(final long now) {
+
+        final List<HoldJob> expired = new ArrayList<>();
+
+        if (this.wheel.advance(now, expired) == 0) {
+            return;
+        }
+
+        for (final HoldJob job : expired) {
+
+            final UserHold hold = this.users.get(job.userId);
+            if (hold == null) {
+                continue;
+            }
+            synchronized (hold) {
+                // Job might be replaced or removed in the meantime.
+                if (hold.jobs.get(job.file) == job && !job.expired) {
+                    job.expired = true;
+                    job.timeout = null;
+                    hold.aggregate(job, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param hold
+     *            The locked user entry.
+     * @param job
+     *            Job to add.
+     * @param now
+     *            Current time in milliseconds.
+     */
+    private void addJob(final UserHold hold, final HoldJob job,
+            final long now) {
+
+        hold.jobs.put(job.file, job);
+        hold.byPrinter.computeIfAbsent(job.printer, k -> new LinkedHashMap<>())
+                .put(job.file, job);
+
+        if (job.expiryTime > now) {
+            hold.aggregate(job, 1);
+            job.timeout = this.wheel.schedule(job, job.expiryTime);
+        } else {
+            job.expired = true;
+        }
+    }
+
+    /**
+     * @param hold
+     *            The locked user entry.
+     * @param job
+     *            Job to remove.
+     */
+    private void removeJob(final UserHold hold, final HoldJob job) {
+
+        hold.jobs.remove(job.file);
+
+        final Map<String, HoldJob> printerJobs =
+                hold.byPrinter.get(job.printer);
+        if (printerJobs != null) {
+            printerJobs.remove(job.file);
+            if (printerJobs.isEmpty()) {
+                hold.byPrinter.remove(job.printer);
+            }
+        }
+
+        if (!job.expired) {
+            hold.aggregate(job, -1);
+            if (job.timeout != null) {
+                this.wheel.cancel(job.timeout);
+                job.timeout = null;
+            }
+            job.expired = true;
+        }
+    }
+}
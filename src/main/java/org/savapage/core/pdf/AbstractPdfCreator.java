@@ -63,6 +63,8 @@ import org.savapage.core.jpa.User;
 import org.savapage.core.json.PdfProperties;
 import org.savapage.core.json.PdfProperties.PdfAllow;
 import org.savapage.core.json.PdfProperties.PdfPasswords;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.savapage.core.print.proxy.BasePrintSheetCalcParms;
 import org.savapage.core.services.AccessControlService;
 import org.savapage.core.services.InboxService;
@@ -101,6 +103,13 @@ public abstract class AbstractPdfCreator {
     private static final UserService USER_SERVICE =
             ServiceContext.getServiceFactory().getUserService();
 
+    /**
+     * Duration of PDF generation.
+     */
+    private static final LatencyHistogram METRIC_GENERATE =
+            MetricsRegistry.instance().histogram("pdf_generate_seconds",
+                    "Duration of PDF generation from the inbox.");
+
     /**
      * .
      */
@@ -441,6 +450,40 @@ public abstract class AbstractPdfCreator {
             final LinkedHashMap<String, Integer> uuidPageCount,
             final DocLog docLog) throws LetterheadNotFoundException,
             PostScriptDrmException, EcoPrintPdfTaskPendingException {
+
+        final long startNanos = System.nanoTime();
+
+        try {
+            return this.generatePdf(createReq, uuidPageCount, docLog);
+        } finally {
+            METRIC_GENERATE.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Generates PDF file from the edited jobs for a user.
+     *
+     * @see #generate(PdfCreateRequest, LinkedHashMap, DocLog)
+     *
+     * @param createReq
+     *            The {@link PdfCreateRequest}.
+     * @param uuidPageCount
+     *            Number of selected pages per input file UUID (can be
+     *            {@code null}).
+     * @param docLog
+     *            The DocLog object to collect data on (can be {@code null}).
+     * @return {@link PdfCreateInfo}.
+     * @throws LetterheadNotFoundException
+     *             When an attached letterhead cannot be found.
+     * @throws PostScriptDrmException
+     *             When one of the SafePages is DRM-restricted.
+     * @throws EcoPrintPdfTaskPendingException
+     *             When {@link EcoPrintPdfTask} objects are pending.
+     */
+    private PdfCreateInfo generatePdf(final PdfCreateRequest createReq,
+            final LinkedHashMap<String, Integer> uuidPageCount,
+            final DocLog docLog) throws LetterheadNotFoundException,
+            PostScriptDrmException, EcoPrintPdfTaskPendingException {
         //
         final boolean isUserInboxEditor =
                 ACCESS_CONTROL_SERVICE.hasPermission(createReq.getUserObj(),
@@ -29,7 +29,6 @@ import java.awt.print.Paper;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -79,6 +78,8 @@ import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.Rectangle;
 import com.itextpdf.text.exceptions.InvalidPdfException;
+import com.itextpdf.text.io.RandomAccessSource;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
 import com.itextpdf.text.pdf.BaseFont;
 import com.itextpdf.text.pdf.PdfContentByte;
 import com.itextpdf.text.pdf.PdfCopy;
@@ -90,6 +91,7 @@ import com.itextpdf.text.pdf.PdfNumber;
 import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfStamper;
 import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
 import com.itextpdf.text.pdf.XfaForm;
 
 /**
@@ -331,16 +333,11 @@ public final class ITextPdfCreator extends AbstractPdfCreator {
     @Override
     public int getNumberOfPagesInPdfFile(final String filePathPdf) {
 
-        PdfReader reader = null;
         try {
-            reader = createPdfReader(filePathPdf);
-            return reader.getNumberOfPages();
+            return PdfPageMetaCache.instance().get(new File(filePathPdf))
+                    .getNumberOfPages();
         } catch (IOException e) {
             throw new SpException(e);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
         }
     }
 
@@ -409,9 +406,17 @@ public final class ITextPdfCreator extends AbstractPdfCreator {
     }
 
     /**
-     * Wraps creation of {@link PdfReader} to force using
-     * {@link FileInputStream} in order to prevent Java 11 stderr message
-     * "<i>WARNING: An illegal reflective access operation has occurred".</i>
+     * Creates a {@link PdfReader} in partial mode: only the cross-reference
+     * table is read up front, objects are read on demand from the file.
+     * <p>
+     * Positioned reads on a plain {@link java.io.RandomAccessFile} are used
+     * instead of a memory mapped file, in order to prevent Java 11 stderr
+     * message "<i>WARNING: An illegal reflective access operation has
+     * occurred".</i>
+     * </p>
+     * <p>
+     * The file is kept open until {@link PdfReader#close()}.
+     * </p>
      *
      * @param filePathPdf
      *            PDF file path.
@@ -421,7 +426,16 @@ public final class ITextPdfCreator extends AbstractPdfCreator {
      */
     public static PdfReader createPdfReader(final String filePathPdf)
             throws IOException {
-        return new PdfReader(new FileInputStream(filePathPdf));
+
+        final RandomAccessSource source = new RandomAccessSourceFactory()
+                .setUsePlainRandomAccess(true).createBestSource(filePathPdf);
+        try {
+            return new PdfReader(new RandomAccessFileOrArray(source),
+                    (byte[]) null);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
     }
 
     @Override
@@ -471,7 +485,8 @@ public final class ITextPdfCreator extends AbstractPdfCreator {
 
             pageProps = this.createPageProps(reader.getPageSize(firstPage));
 
-            pageProps.setNumberOfPages(reader.getNumberOfPages());
+            pageProps.setNumberOfPages(PdfPageMetaCache.instance()
+                    .get(new File(filePathPdf), reader).getNumberOfPages());
             pageProps.setRotationFirstPage(reader.getPageRotation(firstPage));
 
             final AffineTransform ctm =
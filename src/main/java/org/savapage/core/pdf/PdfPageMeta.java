@@ -0,0 +1,131 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.pdf;
+
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * Immutable page metadata of a PDF file: number of pages, media box and
+ * rotation of each page, and (lazily) the font summary.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PdfPageMeta {
+
+    /** Number of media box coordinates per page. */
+    private static final int BOX_COORDINATES = 4;
+
+    /** */
+    private final int numberOfPages;
+
+    /**
+     * Media box (llx, lly, urx, ury) of each page.
+     */
+    private final float[] mediaBoxes;
+
+    /**
+     * Rotation of each page.
+     */
+    private final int[] rotations;
+
+    /**
+     * Font summary, {@code null} when not collected yet.
+     */
+    private volatile PdfDocumentFonts fonts;
+
+    /**
+     * Reads the metadata of all pages.
+     *
+     * @param reader
+     *            The PDF reader.
+     */
+    PdfPageMeta(final PdfReader reader) {
+
+        this.numberOfPages = reader.getNumberOfPages();
+        this.mediaBoxes = new float[BOX_COORDINATES * this.numberOfPages];
+        this.rotations = new int[this.numberOfPages];
+
+        for (int i = 0; i < this.numberOfPages; i++) {
+
+            final Rectangle box = reader.getPageSize(i + 1);
+            final int j = BOX_COORDINATES * i;
+
+            this.mediaBoxes[j] = box.getLeft();
+            this.mediaBoxes[j + 1] = box.getBottom();
+            this.mediaBoxes[j + 2] = box.getRight();
+            this.mediaBoxes[j + 3] = box.getTop();
+
+            this.rotations[i] = reader.getPageRotation(i + 1);
+        }
+    }
+
+    /**
+     * @return The number of pages.
+     */
+    public int getNumberOfPages() {
+        return this.numberOfPages;
+    }
+
+    /**
+     * Gets the media box of a page, like {@link PdfReader#getPageSize(int)}.
+     *
+     * @param nPage
+     *            The 1-based page number.
+     * @return A new {@link Rectangle}.
+     */
+    public Rectangle getPageSize(final int nPage) {
+        final int j = BOX_COORDINATES * (nPage - 1);
+        return new Rectangle(this.mediaBoxes[j], this.mediaBoxes[j + 1],
+                this.mediaBoxes[j + 2], this.mediaBoxes[j + 3]);
+    }
+
+    /**
+     * Gets the page rotation, like {@link PdfReader#getPageRotation(int)}.
+     *
+     * @param nPage
+     *            The 1-based page number.
+     * @return The rotation.
+     */
+    public int getPageRotation(final int nPage) {
+        return this.rotations[nPage - 1];
+    }
+
+    /**
+     * @return The font summary, or {@code null} when not collected.
+     */
+    public PdfDocumentFonts getFonts() {
+        return this.fonts;
+    }
+
+    /**
+     * @param docFonts
+     *            The font summary.
+     */
+    void setFonts(final PdfDocumentFonts docFonts) {
+        this.fonts = docFonts;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.MetricsRegistry;
+
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * Least-recently-used cache of {@link PdfPageMeta}, keyed by file identity,
+ * last modification time and size. A PDF file is parsed once for all
+ * pipeline stages that only need page count, page sizes, rotation or fonts.
+ * A file that is replaced or changed gets a new key, so stale entries are
+ * never served and just age out.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PdfPageMetaCache {
+
+    /**
+     * Max number of cached files.
+     */
+    private static final int MAX_ENTRIES = 128;
+
+    /** */
+    private static final Counter METRIC_HITS = MetricsRegistry.instance()
+            .counter("pdf_meta_cache_hits_total",
+                    "Number of PDF page metadata cache hits.");
+
+    /** */
+    private static final Counter METRIC_MISSES = MetricsRegistry.instance()
+            .counter("pdf_meta_cache_misses_total",
+                    "Number of PDF page metadata cache misses.");
+
+    /**
+     * File identity and version.
+     */
+    private static final class Key {
+
+        /** File key (inode) or absolute path. */
+        private final Object fileId;
+
+        /** */
+        private final FileTime lastModified;
+
+        /** */
+        private final long size;
+
+        /**
+         * @param file
+         *            The file.
+         * @throws IOException
+         *             When file attributes can not be read.
+         */
+        Key(final File file) throws IOException {
+
+            final BasicFileAttributes attrs = Files
+                    .readAttributes(file.toPath(), BasicFileAttributes.class);
+
+            if (attrs.fileKey() == null) {
+                this.fileId = file.getAbsolutePath();
+            } else {
+                this.fileId = attrs.fileKey();
+            }
+            this.lastModified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.size == other.size && this.fileId.equals(other.fileId)
+                    && this.lastModified.equals(other.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.fileId, this.lastModified, this.size);
+        }
+    }
+
+    /**
+     * Access ordered map.
+     */
+    private final Map<Key, PdfPageMeta> cache =
+            new LinkedHashMap<Key, PdfPageMeta>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<Key, PdfPageMeta> eldest) {
+                    return this.size() > MAX_ENTRIES;
+                }
+            };
+
+    /** */
+    private static final class SingletonHolder {
+        /** */
+        public static final PdfPageMetaCache INSTANCE = new PdfPageMetaCache();
+    }
+
+    /** */
+    private PdfPageMetaCache() {
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static PdfPageMetaCache instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @return The cached metadata or {@code null}.
+     */
+    private synchronized PdfPageMeta lookup(final Key key) {
+        return this.cache.get(key);
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @param meta
+     *            The metadata.
+     */
+    private synchronized void store(final Key key, final PdfPageMeta meta) {
+        this.cache.put(key, meta);
+    }
+
+    /**
+     * Gets the page metadata of a PDF file, parsing the file when not cached.
+     *
+     * @param file
+     *            The PDF file.
+     * @return The metadata.
+     * @throws IOException
+     *             When file can not be read or is not a valid PDF.
+     */
+    public PdfPageMeta get(final File file) throws IOException {
+
+        final Key key = new Key(file);
+        PdfPageMeta meta = this.lookup(key);
+
+        if (meta != null) {
+            METRIC_HITS.inc();
+            return meta;
+        }
+        METRIC_MISSES.inc();
+
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(file.getAbsolutePath());
+        try {
+            meta = new PdfPageMeta(reader);
+        } finally {
+            reader.close();
+        }
+        this.store(key, meta);
+        return meta;
+    }
+
+    /**
+     * Gets the page metadata of a PDF file, using an open reader of the file
+     * when not cached.
+     *
+     * @param file
+     *            The PDF file.
+     * @param reader
+     *            Open reader of the file (not closed by this method).
+     * @return The metadata.
+     * @throws IOException
+     *             When file attributes can not be read.
+     */
+    public PdfPageMeta get(final File file, final PdfReader reader)
+            throws IOException {
+
+        final Key key = new Key(file);
+        PdfPageMeta meta = this.lookup(key);
+
+        if (meta != null) {
+            METRIC_HITS.inc();
+            return meta;
+        }
+        METRIC_MISSES.inc();
+
+        meta = new PdfPageMeta(reader);
+        this.store(key, meta);
+        return meta;
+    }
+
+    /**
+     * Gets the font summary of a PDF file, parsing the file when not cached.
+     *
+     * @param file
+     *            The PDF file.
+     * @return The font summary.
+     * @throws IOException
+     *             When file can not be read or is not a valid PDF.
+     */
+    public PdfDocumentFonts getFonts(final File file) throws IOException {
+
+        final Key key = new Key(file);
+        PdfPageMeta meta = this.lookup(key);
+
+        if (meta != null && meta.getFonts() != null) {
+            METRIC_HITS.inc();
+            return meta.getFonts();
+        }
+        METRIC_MISSES.inc();
+
+        final PdfReader reader =
+                ITextPdfCreator.createPdfReader(file.getAbsolutePath());
+        final PdfDocumentFonts fonts;
+        try {
+            if (meta == null) {
+                meta = new PdfPageMeta(reader);
+            }
+            fonts = PdfDocumentFonts.create(reader);
+        } finally {
+            reader.close();
+        }
+        meta.setFonts(fonts);
+        this.store(key, meta);
+        return fonts;
+    }
+
+    /**
+     * @return The number of cached files.
+     */
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        this.cache.clear();
+    }
+}
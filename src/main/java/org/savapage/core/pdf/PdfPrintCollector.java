@@ -25,7 +25,6 @@
 package org.savapage.core.pdf;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
@@ -277,6 +276,7 @@ public final class PdfPrintCollector {
         final Document targetDocument = new Document();
 
         final PdfPrintCollector pdfCollector = new PdfPrintCollector();
+        PdfReader pdfReader = null;
 
         try {
 
@@ -285,8 +285,8 @@ public final class PdfPrintCollector {
 
             targetDocument.open();
 
-            final PdfReader pdfReader =
-                    new PdfReader(new FileInputStream(fileIn));
+            pdfReader =
+                    ITextPdfCreator.createPdfReader(fileIn.getAbsolutePath());
 
             final int nBlankPagesToAppend =
                     calcBlankAppendPagesOfCopy(calcParms);
@@ -306,6 +306,9 @@ public final class PdfPrintCollector {
             throw new IOException(e.getMessage(), e);
         } finally {
             pdfCollector.close();
+            if (pdfReader != null) {
+                pdfReader.close();
+            }
         }
 
         return nTotalOutPages;
@@ -929,9 +929,14 @@ public final class MailPrintListener extends MessageCountAdapter {
                 LOGGER.warn("No user found for [{}]", from);
             }
 
+            /*
+             * Bulk: a wave of mail from unknown senders must not hold up
+             * replies to users.
+             */
             this.sendEmail(from, localize("user-msg-subject-denied",
                     CommunityDictEnum.SAVAPAGE.getWord(), mailPrintWord),
-                    localize("user-msg-header-not-authorized"), userMsg);
+                    localize("user-msg-header-not-authorized"), userMsg,
+                    true);
 
             AdminPublisher.instance().publish(PubTopicEnum.MAILPRINT,
                     PubLevelEnum.WARN, pubMsg);
@@ -1438,10 +1443,32 @@ public final class MailPrintListener extends MessageCountAdapter {
      */
     private void sendEmail(final String toAddress, final String subject,
             final String headerText, final String content) {
+        this.sendEmail(toAddress, subject, headerText, content, false);
+    }
+
+    /**
+     * Sends an email.
+     *
+     * @param toAddress
+     *            The email address.
+     * @param subject
+     *            The subject of the message.
+     * @param headerText
+     *            The content header text.
+     * @param content
+     *            The body text with optional newline {@code \n} characters.
+     * @param bulk
+     *            {@code true} when bulk mail, sent from the outbox after
+     *            interactive mail.
+     */
+    private void sendEmail(final String toAddress, final String subject,
+            final String headerText, final String content,
+            final boolean bulk) {
 
         try {
             final EmailMsgParms emailParms = new EmailMsgParms();
 
+            emailParms.setBulk(bulk);
             emailParms.setToAddress(toAddress);
             emailParms.setSubject(subject);
             emailParms.setBodyInStationary(headerText, content,
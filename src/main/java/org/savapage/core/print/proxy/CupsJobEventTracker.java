@@ -0,0 +1,302 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.proxy;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppDictEventNotificationAttr;
+import org.savapage.core.ipp.attribute.IppDictSubscriptionAttr;
+import org.savapage.core.ipp.client.IppConnectException;
+import org.savapage.core.ipp.client.IppReqCreatePullSubscription;
+import org.savapage.core.ipp.client.IppReqGetNotifications;
+import org.savapage.core.ipp.client.IppTransport;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.operation.IppOperationId;
+import org.savapage.core.ipp.operation.IppStatusCode;
+import org.savapage.core.util.NumberUtil;
+
+/**
+ * Tracks CUPS job events with a pull subscription (Create-Printer-Subscriptions
+ * and Get-Notifications), to find the printers with job state changes since
+ * the previous poll.
+ * <p>
+ * A poll returns {@code null} when the set of changed printers is not known
+ * and all printers must be synchronized: on the first poll, when the
+ * subscription is lost (lease expired, CUPS restarted), when events were
+ * dropped by CUPS (a gap in sequence numbers), or on server and printer
+ * life-cycle events.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CupsJobEventTracker {
+
+    /**
+     * Job events that change job state.
+     */
+    private static final String[] JOB_EVENTS =
+            { "job-state-changed", "job-completed", "job-stopped" };
+
+    /**
+     * Events after which all printers must be synchronized.
+     */
+    private static final String[] FULL_SYNC_EVENTS = { "printer-added",
+            "printer-deleted", "server-restarted", "server-started" };
+
+    /** */
+    private final IppTransport transport;
+
+    /** */
+    private final String printerUri;
+
+    /** */
+    private final String requestingUser;
+
+    /** */
+    private final int leaseSeconds;
+
+    /** Subscription id, or zero when no subscription. */
+    private int subscriptionId;
+
+    /** The sequence number of the next event. */
+    private int sequenceNext;
+
+    /** {@code true} when next poll must request a full sync. */
+    private boolean resync;
+
+    /**
+     *
+     * @param transport
+     *            The transport to the CUPS server.
+     * @param printerUri
+     *            The URI of the server, e.g. {@code ipp://localhost/}.
+     * @param requestingUser
+     *            The requesting user.
+     * @param leaseSeconds
+     *            The lease seconds of the subscription.
+     */
+    public CupsJobEventTracker(final IppTransport transport,
+            final String printerUri, final String requestingUser,
+            final int leaseSeconds) {
+        this.transport = transport;
+        this.printerUri = printerUri;
+        this.requestingUser = requestingUser;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /**
+     * @return The subscription id, or zero when no subscription.
+     */
+    public int getSubscriptionId() {
+        return this.subscriptionId;
+    }
+
+    /**
+     * Makes the next poll request a full sync, e.g. because the
+     * synchronization after the previous poll failed.
+     */
+    public void reset() {
+        this.resync = true;
+    }
+
+    /**
+     * Polls the job events since previous poll.
+     *
+     * @return The names of the printers with job events, or {@code null} when
+     *         all printers must be synchronized.
+     * @throws IppConnectException
+     *             When connection error.
+     */
+    public Set<String> poll() throws IppConnectException {
+
+        if (this.subscriptionId == 0) {
+            this.resync = false;
+            this.subscribe();
+            return null;
+        }
+
+        final List<IppAttrGroup> response = new ArrayList<>();
+
+        final IppStatusCode statusCode = this.transport.send(
+                IppOperationId.GET_NOTIFICATIONS,
+                new IppReqGetNotifications(this.printerUri, this.requestingUser,
+                        this.subscriptionId, this.sequenceNext).build(),
+                response);
+
+        if (statusCode != IppStatusCode.OK) {
+            // Subscription is lost.
+            this.subscriptionId = 0;
+            this.resync = false;
+            this.subscribe();
+            return null;
+        }
+
+        final Set<String> printers = new HashSet<>();
+        boolean fullSync = false;
+        boolean first = true;
+
+        final String subscription = String.valueOf(this.subscriptionId);
+
+        for (final IppAttrGroup group : response) {
+
+            final IppDelimiterTag tag = group.getDelimiterTag();
+
+            if (tag != IppDelimiterTag.EVENT_NOTIFICATION_ATTR) {
+                continue;
+            }
+
+            final String id = group.getAttrSingleValue(
+                    IppDictEventNotificationAttr.ATTR_NOTIFY_SUBSCRIPTION_ID);
+
+            if (!subscription.equals(id)) {
+                continue;
+            }
+
+            final int sequence = Integer.parseInt(group.getAttrSingleValue(
+                    IppDictEventNotificationAttr.ATTR_NOTIFY_SEQUENCE_NUMBER,
+                    "0"), NumberUtil.RADIX_10);
+
+            if (sequence < this.sequenceNext) {
+                continue;
+            }
+            if (first && sequence > this.sequenceNext) {
+                // Events were dropped.
+                fullSync = true;
+            }
+            first = false;
+            this.sequenceNext = sequence + 1;
+
+            final String event = group.getAttrSingleValue(
+                    IppDictEventNotificationAttr.ATTR_NOTIFY_SUBSCRIBED_EVENT);
+
+            if (StringUtils.equalsAny(event, FULL_SYNC_EVENTS)) {
+                fullSync = true;
+            } else if (StringUtils.equalsAny(event, JOB_EVENTS)) {
+                final String printer = getPrinterName(group);
+                if (printer == null) {
+                    fullSync = true;
+                } else {
+                    printers.add(printer);
+                }
+            }
+        }
+
+        if (fullSync || this.resync) {
+            this.resync = false;
+            return null;
+        }
+        return printers;
+    }
+
+    /**
+     * Creates the subscription.
+     *
+     * @throws IppConnectException
+     *             When connection error.
+     */
+    private void subscribe() throws IppConnectException {
+
+        final String[] events =
+                new String[JOB_EVENTS.length + FULL_SYNC_EVENTS.length];
+
+        System.arraycopy(JOB_EVENTS, 0, events, 0, JOB_EVENTS.length);
+        System.arraycopy(FULL_SYNC_EVENTS, 0, events, JOB_EVENTS.length,
+                FULL_SYNC_EVENTS.length);
+
+        final List<IppAttrGroup> response = new ArrayList<>();
+
+        final IppStatusCode statusCode = this.transport.send(
+                IppOperationId.CREATE_PRINTER_SUBSCRIPTIONS,
+                new IppReqCreatePullSubscription(this.printerUri,
+                        this.requestingUser, events, this.leaseSeconds)
+                                .build(),
+                response);
+
+        if (statusCode != IppStatusCode.OK) {
+            return;
+        }
+
+        for (final IppAttrGroup group : response) {
+            if (group.getDelimiterTag() == IppDelimiterTag.SUBSCRIPTION_ATTR) {
+                final String id = group.getAttrSingleValue(
+                        IppDictSubscriptionAttr.ATTR_NOTIFY_SUBSCRIPTION_ID);
+                if (StringUtils.isNumeric(id)) {
+                    this.subscriptionId =
+                            Integer.parseInt(id, NumberUtil.RADIX_10);
+                    this.sequenceNext = 1;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the printer name of an event: either from "printer-name" or from
+     * the last path segment of "notify-printer-uri".
+     *
+     * @param group
+     *            The event notification group.
+     * @return {@code null} when not found.
+     */
+    private static String getPrinterName(final IppAttrGroup group) {
+
+        final String name = group.getAttrSingleValue(
+                IppDictEventNotificationAttr.ATTR_PRINTER_NAME);
+
+        if (StringUtils.isNotBlank(name)) {
+            return name;
+        }
+
+        final String uri = group.getAttrSingleValue(
+                IppDictEventNotificationAttr.ATTR_NOTIFY_PRINTER_URI);
+
+        if (StringUtils.isBlank(uri)) {
+            return null;
+        }
+
+        try {
+            final String path = new URI(uri).getPath();
+            if (StringUtils.isBlank(path)) {
+                return null;
+            }
+            return StringUtils.defaultIfBlank(
+                    StringUtils.substringAfterLast(path, "/"), null);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.proxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictJobDescAttr;
+import org.savapage.core.ipp.client.IppConnectException;
+import org.savapage.core.ipp.client.IppReqGetJobs;
+import org.savapage.core.ipp.client.IppTransport;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.operation.IppOperationId;
+import org.savapage.core.ipp.operation.IppStatusCode;
+import org.savapage.core.util.NumberUtil;
+
+/**
+ * Reads the CUPS state of a set of print jobs of one printer with Get-Jobs
+ * requests ({@code which-jobs=all}) over windows of job ids, instead of a
+ * Get-Job-Attributes request per job.
+ * <p>
+ * A window starts at {@code first-job-id} and holds at most
+ * {@code limit} jobs. The next window starts after the highest job id
+ * returned, or at the next requested job id when that is higher. A window
+ * with less than {@code limit} jobs is the end of the job table. Requested
+ * jobs that are not listed in an ascending window are absent from CUPS.
+ * </p>
+ * <p>
+ * When a full window is not in ascending job id order from
+ * {@code first-job-id} onward (a server that ignores {@code first-job-id}),
+ * reading stops and the remaining job ids are returned as unresolved, so the
+ * caller can fall back to Get-Job-Attributes.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CupsJobStateReader {
+
+    /**
+     * The result of a read.
+     */
+    public static final class Result {
+
+        /** Present jobs by job id. */
+        private final Map<Integer, JsonProxyPrintJob> found = new HashMap<>();
+
+        /** Job ids absent from CUPS. */
+        private final SortedSet<Integer> absent = new TreeSet<>();
+
+        /** Job ids not resolved. */
+        private final SortedSet<Integer> unresolved = new TreeSet<>();
+
+        /** Number of Get-Jobs requests. */
+        private int requests;
+
+        /**
+         * @return The present jobs by job id.
+         */
+        public Map<Integer, JsonProxyPrintJob> getFound() {
+            return found;
+        }
+
+        /**
+         * @return The job ids absent from CUPS.
+         */
+        public SortedSet<Integer> getAbsent() {
+            return absent;
+        }
+
+        /**
+         * @return The job ids that could not be resolved with Get-Jobs.
+         */
+        public SortedSet<Integer> getUnresolved() {
+            return unresolved;
+        }
+
+        /**
+         * @return The number of Get-Jobs requests.
+         */
+        public int getRequests() {
+            return requests;
+        }
+    }
+
+    /** */
+    private final IppTransport transport;
+
+    /** */
+    private final int windowSize;
+
+    /**
+     *
+     * @param transport
+     *            The transport to the CUPS server of the printer.
+     * @param windowSize
+     *            The max number of jobs per Get-Jobs request.
+     */
+    public CupsJobStateReader(final IppTransport transport,
+            final int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive.");
+        }
+        this.transport = transport;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Reads the state of print jobs.
+     *
+     * @param printerUri
+     *            The printer URI.
+     * @param jobIds
+     *            The job ids.
+     * @return The {@link Result}.
+     * @throws IppConnectException
+     *             When connection error.
+     */
+    public Result read(final String printerUri,
+            final SortedSet<Integer> jobIds) throws IppConnectException {
+
+        final Result result = new Result();
+        final SortedSet<Integer> remaining = new TreeSet<>(jobIds);
+
+        final List<IppAttrGroup> response = new ArrayList<>();
+
+        while (!remaining.isEmpty()) {
+
+            final int firstJobId = remaining.first().intValue();
+
+            response.clear();
+            result.requests++;
+
+            final IppStatusCode statusCode = this.transport.send(
+                    IppOperationId.GET_JOBS, new IppReqGetJobs(printerUri,
+                            firstJobId, this.windowSize).build(),
+                    response);
+
+            if (statusCode != IppStatusCode.OK) {
+                break;
+            }
+
+            int nJobs = 0;
+            int jobIdPrv = firstJobId - 1;
+            boolean ascending = true;
+
+            for (final IppAttrGroup group : response) {
+
+                if (group.getDelimiterTag() != IppDelimiterTag.JOB_ATTR) {
+                    continue;
+                }
+
+                final JsonProxyPrintJob job = createJob(group);
+
+                if (job == null) {
+                    continue;
+                }
+
+                nJobs++;
+
+                final int jobId = job.getJobId().intValue();
+
+                if (jobId <= jobIdPrv) {
+                    ascending = false;
+                }
+                jobIdPrv = Math.max(jobIdPrv, jobId);
+
+                if (remaining.remove(job.getJobId())) {
+                    result.found.put(job.getJobId(), job);
+                }
+            }
+
+            if (nJobs < this.windowSize) {
+                // End of job table: the rest is absent.
+                result.absent.addAll(remaining);
+                remaining.clear();
+                break;
+            }
+
+            if (!ascending) {
+                break;
+            }
+
+            // All job ids up to the last one in the window are absent.
+            final SortedSet<Integer> passed =
+                    remaining.headSet(Integer.valueOf(jobIdPrv + 1));
+            result.absent.addAll(passed);
+            passed.clear();
+        }
+
+        result.unresolved.addAll(remaining);
+        return result;
+    }
+
+    /**
+     * Creates a job from a job attributes group.
+     *
+     * @param group
+     *            The job attributes group.
+     * @return {@code null} when job id or state is missing.
+     */
+    private static JsonProxyPrintJob createJob(final IppAttrGroup group) {
+
+        final IppAttrValue attrId =
+                group.getAttrValue(IppDictJobDescAttr.ATTR_JOB_ID);
+        final IppAttrValue attrState =
+                group.getAttrValue(IppDictJobDescAttr.ATTR_JOB_STATE);
+
+        if (attrId == null || attrId.size() != 1 || attrState == null
+                || attrState.size() != 1) {
+            return null;
+        }
+
+        final JsonProxyPrintJob job = new JsonProxyPrintJob();
+
+        job.setJobId(Integer.valueOf(attrId.getIntValue(0)));
+        job.setJobState(Integer.valueOf(attrState.getIntValue(0)));
+
+        final String completed = group.getAttrSingleValue(
+                IppDictJobDescAttr.ATTR_TIME_AT_COMPLETED, "");
+
+        if (StringUtils.isNotBlank(completed)) {
+            job.setCompletedTime(
+                    Integer.valueOf(completed, NumberUtil.RADIX_10));
+        }
+        return job;
+    }
+
+}
@@ -24,15 +24,11 @@
  */
 package org.savapage.core.print.server;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -40,6 +36,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.savapage.core.PostScriptDrmException;
@@ -81,9 +78,13 @@ import org.savapage.core.jpa.IppQueue;
 import org.savapage.core.jpa.PrintIn;
 import org.savapage.core.jpa.Printer;
 import org.savapage.core.jpa.User;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.savapage.core.pdf.IPdfPageProps;
 import org.savapage.core.pdf.PdfAbstractException;
 import org.savapage.core.pdf.PdfDocumentFonts;
+import org.savapage.core.pdf.PdfPageMetaCache;
 import org.savapage.core.pdf.PdfPasswordException;
 import org.savapage.core.pdf.PdfSecurityException;
 import org.savapage.core.pdf.PdfUnsupportedException;
@@ -153,6 +154,27 @@ public final class DocContentPrintProcessor {
     /** */
     private static final int BUFFER_SIZE = 4096;
 
+    /**
+     * Duration of print-in processing.
+     */
+    private static final LatencyHistogram METRIC_PROCESS =
+            MetricsRegistry.instance().histogram("print_in_seconds",
+                    "Duration of print-in document processing.");
+
+    /**
+     * Print-in bytes received.
+     */
+    private static final Counter METRIC_BYTES =
+            MetricsRegistry.instance().counter("print_in_bytes_total",
+                    "Number of print-in content bytes received.");
+
+    /**
+     * Print-in failures.
+     */
+    private static final Counter METRIC_FAILURES =
+            MetricsRegistry.instance().counter("print_in_failures_total",
+                    "Number of print-in documents that failed.");
+
     /** */
     private java.util.UUID uuidJob = java.util.UUID.randomUUID();
 
@@ -161,6 +183,12 @@ public final class DocContentPrintProcessor {
      */
     private long inputByteCount = 0;
 
+    /**
+     * The hex SHA-256 hash of the spooled content, or {@code null} when not
+     * (yet) spooled.
+     */
+    private String contentHash;
+
     /** */
     private byte[] readAheadInputBytes = null;
 
@@ -559,7 +587,26 @@ public final class DocContentPrintProcessor {
     }
 
     /**
-     * Streams all PostScript input to the PostScript output stream. An
+     * Spools the (rest of the) content.
+     * <p>
+     * Note: {@link #inputByteCount} is incremented while reading.
+     * </p>
+     *
+     * @param istr
+     *            The content input.
+     * @param spooler
+     *            The content spooler.
+     * @throws IOException
+     *             When reading or writing goes wrong, or when content exceeds
+     *             the maximum size.
+     */
+    private void spoolBinary(final InputStream istr,
+            final DocContentSpooler spooler) throws IOException {
+        this.inputByteCount += spooler.transferFrom(istr);
+    }
+
+    /**
+     * Streams all PostScript input bytes to the PostScript output stream. An
      * exception is throw when PostScript has copyright restrictions.
      *
      * @param istr
@@ -581,11 +628,7 @@ public final class DocContentPrintProcessor {
         final boolean respectDRM = !ConfigManager.instance()
                 .isConfigValue(IConfigProp.Key.PRINT_IN_PDF_ENCRYPTED_ALLOW);
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(istr));
-        BufferedWriter writer =
-                new BufferedWriter(new OutputStreamWriter(ostr));
-
-        switch (PostScriptFilter.process(reader, writer, respectDRM)) {
+        switch (PostScriptFilter.process(istr, ostr, respectDRM)) {
         case DRM_NEGLECTED:
             setDrmRestricted(true);
             if (LOGGER.isDebugEnabled()) {
@@ -836,6 +879,52 @@ public final class DocContentPrintProcessor {
             final InternalFontFamilyEnum preferredOutputFont)
             throws IOException {
 
+        final long startNanos = System.nanoTime();
+        boolean processed = false;
+
+        try {
+            this.processContent(istrContent, supplierInfo, protocol,
+                    originatorEmailAddr, contentTypeProvided,
+                    preferredOutputFont);
+            processed = true;
+        } finally {
+            METRIC_PROCESS.recordSince(startNanos);
+            METRIC_BYTES.add(this.inputByteCount);
+            if (!processed || this.getDeferredException() != null) {
+                METRIC_FAILURES.inc();
+            }
+        }
+    }
+
+    /**
+     * Processes content to be printed.
+     *
+     * @see #process(InputStream, ExternalSupplierInfo, DocLogProtocolEnum,
+     *      String, DocContentTypeEnum, InternalFontFamilyEnum)
+     *
+     * @param istrContent
+     *            The input stream containing the content to be printed.
+     * @param supplierInfo
+     *            {@link ExternalSupplierInfo} (can be {@code null}).
+     * @param protocol
+     *            The originating printing protocol.
+     * @param originatorEmailAddr
+     *            Originator email address (can be {@code null}).
+     * @param contentTypeProvided
+     *            The content type as claimed by the provider (can be
+     *            {@code null}).
+     * @param preferredOutputFont
+     *            The preferred font for the PDF output (can be {@code null}).
+     * @throws IOException
+     *             If IO errors.
+     */
+    private void processContent(final InputStream istrContent,
+            final ExternalSupplierInfo supplierInfo,
+            final DocLogProtocolEnum protocol, final String originatorEmailAddr,
+            final DocContentTypeEnum contentTypeProvided,
+            final InternalFontFamilyEnum preferredOutputFont)
+            throws IOException {
+
         if (!isTrustedUser()) {
             return;
         }
@@ -860,9 +949,10 @@ public final class DocContentPrintProcessor {
         //
         USER_SERVICE.lazyUserHomeDir(userDb);
 
-        FileOutputStream fostrContent = null;
+        DocContentSpooler contentSpooler = null;
 
         this.inputByteCount = 0;
+        this.contentHash = null;
 
         final List<File> filesCreated = new ArrayList<>();
         final List<File> files2Delete = new ArrayList<>();
@@ -898,9 +988,11 @@ public final class DocContentPrintProcessor {
                     DocContent.getFileExtension(inputType)));
 
             /*
-             * Create the file.
+             * Create the file: oversized content is rejected while spooling.
              */
-            fostrContent = new FileOutputStream(contentFile);
+            contentSpooler = new DocContentSpooler(contentFile,
+                    cm.getConfigLong(Key.PRINT_IN_JOB_MAX_MB)
+                            * FileUtils.ONE_MB);
 
             final OnOffEnum detainPostScript;
 
@@ -930,7 +1022,7 @@ public final class DocContentPrintProcessor {
              */
             if (this.readAheadInputBytes != null) {
                 this.inputByteCount += this.readAheadInputBytes.length;
-                fostrContent.write(this.readAheadInputBytes);
+                contentSpooler.write(this.readAheadInputBytes);
             }
 
             /*
@@ -956,13 +1048,13 @@ public final class DocContentPrintProcessor {
             if (inputType == DocContentTypeEnum.PDF) {
 
                 this.pdfRepair = PdfRepairEnum.NONE;
-                saveBinary(istrContent, fostrContent);
+                spoolBinary(istrContent, contentSpooler);
 
             } else if (inputType == DocContentTypeEnum.PS) {
                 /*
                  * An exception is throw upon a DRM violation.
                  */
-                savePostScript(istrContent, fostrContent);
+                savePostScript(istrContent, contentSpooler);
 
                 if (protocol.isDriverPrint()) {
                     if (OnOffEnum.ON == cm.getConfigEnum(OnOffEnum.class,
@@ -1002,7 +1094,7 @@ public final class DocContentPrintProcessor {
                     streamConverter = DocContent.createPdfStreamConverter(
                             inputType, preferredOutputFont);
                 } else {
-                    saveBinary(istrContent, fostrContent);
+                    spoolBinary(istrContent, contentSpooler);
                 }
 
             } else {
@@ -1018,7 +1110,7 @@ public final class DocContentPrintProcessor {
                             DocContent.createPdfFileConverter(inputType);
 
                     if (fileConverter != null) {
-                        saveBinary(istrContent, fostrContent);
+                        spoolBinary(istrContent, contentSpooler);
                     }
                 }
             }
@@ -1032,7 +1124,7 @@ public final class DocContentPrintProcessor {
                  */
                 final DocInputStream istrDoc = new DocInputStream(istrContent);
                 this.inputByteCount = streamConverter.convert(inputType,
-                        istrDoc, fostrContent);
+                        istrDoc, contentSpooler);
             }
 
             /*
@@ -1045,14 +1137,23 @@ public final class DocContentPrintProcessor {
              * We're done with capturing the content input stream, so close the
              * file output stream.
              */
-            fostrContent.close();
-            fostrContent = null;
+            contentSpooler.close();
+
+            final long spooledBytes = contentSpooler.getByteCount();
+            this.contentHash = contentSpooler.getContentHash();
+
+            contentSpooler = null;
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[{}] spooled {} bytes, sha256 [{}]",
+                        this.uuidJob, spooledBytes, this.contentHash);
+            }
 
             /*
              * Convert to PDF with a FILE converter?
              */
             if (fileConverter != null) {
-                this.inputByteCount = contentFile.length();
+                this.inputByteCount = spooledBytes;
 
                 final File pdfOutputFile =
                         fileConverter.convert(inputType, contentFile);
@@ -1260,8 +1361,8 @@ public final class DocContentPrintProcessor {
 
         } finally {
 
-            if (fostrContent != null) {
-                fostrContent.close();
+            if (contentSpooler != null) {
+                contentSpooler.close();
             }
 
             for (final File file : files2Delete) {
@@ -1323,7 +1424,7 @@ public final class DocContentPrintProcessor {
         final PdfDocumentFonts fonts;
 
         try {
-            fonts = PdfDocumentFonts.create(pdf);
+            fonts = PdfPageMetaCache.instance().getFonts(pdf);
         } catch (IOException e) {
             throw new IllegalStateException(e.getMessage());
         }
@@ -1501,6 +1602,7 @@ public final class DocContentPrintProcessor {
         printInInfo.setDrmRestricted(this.isDrmRestricted());
         printInInfo.setPdfRepair(this.pdfRepair);
         printInInfo.setJobBytes(this.getJobBytes());
+        printInInfo.setContentHash(this.getContentHash());
         printInInfo.setJobName(this.getJobName());
         printInInfo.setMimetype(this.getMimetype());
         printInInfo.setOriginatorEmail(this.getOriginatorEmail());
@@ -1666,6 +1768,14 @@ public final class DocContentPrintProcessor {
         return inputByteCount;
     }
 
+    /**
+     * @return The hex SHA-256 hash of the spooled content, or {@code null}
+     *         when not spooled.
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
     public IPdfPageProps getPageProps() {
         return pageProps;
     }
@@ -1853,7 +1963,8 @@ public final class DocContentPrintProcessor {
                 }
                 setDeferredException(null);
 
-            } else if (exception instanceof UnsupportedPrintJobContent) {
+            } else if (exception instanceof UnsupportedPrintJobContent
+                    || exception instanceof DocContentSizeException) {
 
                 pubMessage = exception.getMessage();
 
@@ -0,0 +1,243 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+import org.savapage.core.SpException;
+
+/**
+ * Spools print-in content to a file, while counting the bytes and computing
+ * the SHA-256 hash of the spooled content.
+ * <p>
+ * Content is written through a {@link FileChannel} with a direct buffer. When
+ * a maximum size is set, spooling stops with a {@link DocContentSizeException}
+ * as soon as the maximum is exceeded, so an oversized job is rejected before
+ * it is received completely.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class DocContentSpooler extends OutputStream {
+
+    /**
+     * Size of the direct buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** */
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /** */
+    private final FileChannel channel;
+
+    /** */
+    private final ByteBuffer buffer;
+
+    /** */
+    private final MessageDigest digest;
+
+    /**
+     * Max number of bytes. Zero (0) when unlimited.
+     */
+    private final long maxBytes;
+
+    /** */
+    private long byteCount;
+
+    /**
+     * Hex hash of the content, set on {@link #close()}.
+     */
+    private String contentHash;
+
+    /**
+     * Creates (or truncates) the spool file.
+     *
+     * @param file
+     *            The spool file.
+     * @param maxSize
+     *            Max number of bytes. Zero (0) when unlimited.
+     * @throws IOException
+     *             When file cannot be opened.
+     */
+    public DocContentSpooler(final File file, final long maxSize)
+            throws IOException {
+
+        try {
+            this.digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SpException(e.getMessage(), e);
+        }
+
+        this.maxBytes = maxSize;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Spools all (remaining) bytes of an input stream.
+     *
+     * @param istr
+     *            The input stream.
+     * @return The number of bytes read from the input stream.
+     * @throws IOException
+     *             When reading or writing goes wrong, or when the maximum
+     *             size is exceeded ({@link DocContentSizeException}).
+     */
+    public long transferFrom(final InputStream istr) throws IOException {
+
+        this.drain();
+
+        final ReadableByteChannel source = Channels.newChannel(istr);
+
+        long nBytes = 0;
+        int nRead;
+
+        while ((nRead = source.read(this.buffer)) != -1) {
+            nBytes += nRead;
+            if (!this.buffer.hasRemaining()) {
+                this.drain();
+            }
+        }
+
+        this.drain();
+        return nBytes;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            this.drain();
+        }
+        this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+            throws IOException {
+
+        if (len > this.buffer.remaining()) {
+            this.drain();
+        }
+
+        if (len > this.buffer.capacity()) {
+            this.spool(ByteBuffer.wrap(b, off, len));
+        } else {
+            this.buffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Spools the content of the direct buffer.
+     *
+     * @throws IOException
+     *             When writing goes wrong.
+     */
+    private void drain() throws IOException {
+        this.buffer.flip();
+        try {
+            this.spool(this.buffer);
+        } finally {
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Counts, hashes and writes the remaining bytes of a buffer.
+     *
+     * @param src
+     *            The buffer.
+     * @throws IOException
+     *             When writing goes wrong, or when the maximum size is
+     *             exceeded.
+     */
+    private void spool(final ByteBuffer src) throws IOException {
+
+        if (!src.hasRemaining()) {
+            return;
+        }
+
+        this.byteCount += src.remaining();
+
+        if (this.maxBytes > 0 && this.byteCount > this.maxBytes) {
+            throw new DocContentSizeException(this.maxBytes);
+        }
+
+        this.digest.update(src.duplicate());
+
+        while (src.hasRemaining()) {
+            this.channel.write(src);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes and closes the spool file. After closing, the
+     * content hash is available.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (!this.channel.isOpen()) {
+            return;
+        }
+
+        try {
+            this.drain();
+            this.contentHash = Hex.encodeHexString(this.digest.digest());
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * @return Number of bytes spooled.
+     */
+    public long getByteCount() {
+        return this.byteCount;
+    }
+
+    /**
+     * @return The hex SHA-256 hash of the spooled content, or {@code null}
+     *         when spooler is not closed (or failed).
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+}
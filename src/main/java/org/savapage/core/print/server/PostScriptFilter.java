@@ -27,6 +27,9 @@ package org.savapage.core.print.server;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  *
@@ -69,6 +72,43 @@ public class PostScriptFilter {
             //
     };
 
+    /**
+     * {@link #DRM_SIGNATURE} as US-ASCII bytes.
+     */
+    private static final byte[][] DRM_SIGNATURE_BYTES =
+            new byte[DRM_SIGNATURE.length][];
+
+    static {
+        for (int i = 0; i < DRM_SIGNATURE.length; i++) {
+            DRM_SIGNATURE_BYTES[i] =
+                    DRM_SIGNATURE[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Byte mode read buffer size.
+     */
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of bytes of a line kept for DRM signature comparison.
+     */
+    private static final int LINE_BUFFER_MAX = 1024;
+
+    /** */
+    private static final byte LF = '\n';
+
+    /** */
+    private static final byte CR = '\r';
+
+    /**
+     * Bytes written instead of the DRM signature, to make any PostScript
+     * processor fail.
+     */
+    private static final byte[] DRM_ERROR_ENFORCED =
+            "\n[Error enforced BY SavaPage}\n"
+                    .getBytes(StandardCharsets.US_ASCII);
+
     /**
      * Streams the lines from the PostScript reader to the writer.
      *
@@ -181,4 +221,389 @@ public class PostScriptFilter {
         return ret;
     }
 
+    /**
+     * Streams the PostScript bytes from input to output, without character
+     * decoding. Like {@link BufferedReader#readLine()}, a line ends at LF, CR
+     * or CRLF. Line endings are preserved, and only lines with the length of
+     * a DRM signature line are compared.
+     *
+     * @param istr
+     *            The PostScript input.
+     * @param ostr
+     *            The PostScript output.
+     * @param fRespectDRM
+     *            If {@code false}, any DRM signature is omitted from the
+     *            stream. If {@code true}, the function immediately returns
+     *            {@link Result#DRM_YES} when a DRM signature is encountered.
+     * @return The {@link Result}.
+     * @throws IOException
+     *             When read/write error.
+     */
+    public static Result process(final InputStream istr,
+            final OutputStream ostr, final boolean fRespectDRM)
+            throws IOException {
+
+        final ByteLineFilter filter = new ByteLineFilter(ostr, fRespectDRM);
+        final LineScanner scanner = new LineScanner(filter, ostr);
+
+        final byte[] buf = new byte[BYTE_BUFFER_SIZE];
+
+        int nRead;
+
+        while ((nRead = istr.read(buf)) != -1) {
+            if (!scanner.scan(buf, nRead)) {
+                return Result.DRM_YES;
+            }
+        }
+
+        if (!scanner.finish()) {
+            return Result.DRM_YES;
+        }
+
+        ostr.flush();
+
+        return filter.result;
+    }
+
+    /**
+     * Splits read buffers into lines for a {@link ByteLineFilter}. Bytes of
+     * a line that continues beyond the read buffer are kept up to
+     * {@link #LINE_BUFFER_MAX}: a longer line can not be a DRM signature
+     * line, and is written through.
+     */
+    private static final class LineScanner {
+
+        /** */
+        private final ByteLineFilter filter;
+
+        /** */
+        private final OutputStream ostr;
+
+        /**
+         * Bytes of a line that continues beyond the read buffer.
+         */
+        private byte[] line = new byte[256];
+
+        /** */
+        private int lineLen = 0;
+
+        /**
+         * {@code true} when the current line exceeded
+         * {@link #LINE_BUFFER_MAX} and is written through.
+         */
+        private boolean lineOverflow = false;
+
+        /**
+         * {@code true} when the kept line ends with a CR at the end of the
+         * previous read buffer, so an LF may still follow.
+         */
+        private boolean crPending = false;
+
+        /**
+         * @param lineFilter
+         *            The line filter.
+         * @param out
+         *            The PostScript output.
+         */
+        LineScanner(final ByteLineFilter lineFilter, final OutputStream out) {
+            this.filter = lineFilter;
+            this.ostr = out;
+        }
+
+        /**
+         * @param buf
+         *            Read buffer.
+         * @param nRead
+         *            Number of bytes in read buffer.
+         * @return {@code false} when a line is rejected due to DRM.
+         * @throws IOException
+         *             When write error.
+         */
+        boolean scan(final byte[] buf, final int nRead) throws IOException {
+
+            int lineStart = 0;
+            int i = 0;
+
+            if (this.crPending) {
+                this.crPending = false;
+                if (nRead > 0 && buf[0] == LF) {
+                    i = 1;
+                }
+                if (!this.endLine(buf, 0, i)) {
+                    return false;
+                }
+                lineStart = i;
+            }
+
+            for (; i < nRead; i++) {
+
+                final byte b = buf[i];
+
+                if (b != LF && b != CR) {
+                    continue;
+                }
+
+                int end = i + 1;
+
+                if (b == CR) {
+                    if (end == nRead) {
+                        // An LF may follow in the next read buffer.
+                        this.keep(buf, lineStart, end - lineStart);
+                        this.crPending = true;
+                        return true;
+                    }
+                    if (buf[end] == LF) {
+                        end++;
+                    }
+                }
+
+                if (!this.endLine(buf, lineStart, end - lineStart)) {
+                    return false;
+                }
+                lineStart = end;
+                i = end - 1;
+            }
+
+            if (lineStart < nRead) {
+                this.keep(buf, lineStart, nRead - lineStart);
+            }
+            return true;
+        }
+
+        /**
+         * Handles the last line, which may have no line ending.
+         *
+         * @return {@code false} when the line is rejected due to DRM.
+         * @throws IOException
+         *             When write error.
+         */
+        boolean finish() throws IOException {
+            this.crPending = false;
+            if (this.lineOverflow) {
+                this.lineOverflow = false;
+                return true;
+            }
+            if (this.lineLen == 0) {
+                return true;
+            }
+            final int len = this.lineLen;
+            this.lineLen = 0;
+            return this.filter.onLine(this.line, 0, len);
+        }
+
+        /**
+         * Keeps bytes of an unfinished line.
+         *
+         * @param buf
+         *            Source bytes.
+         * @param off
+         *            Source offset.
+         * @param len
+         *            Number of bytes.
+         * @throws IOException
+         *             When write error.
+         */
+        private void keep(final byte[] buf, final int off, final int len)
+                throws IOException {
+
+            if (this.lineOverflow) {
+                this.ostr.write(buf, off, len);
+            } else if (this.lineLen + len > LINE_BUFFER_MAX) {
+                this.writeThrough(buf, off, len);
+                this.lineOverflow = true;
+            } else {
+                this.line = append(this.line, this.lineLen, buf, off, len);
+                this.lineLen += len;
+            }
+        }
+
+        /**
+         * Ends the current line.
+         *
+         * @param buf
+         *            Source bytes with the rest of the line, including the
+         *            line ending.
+         * @param off
+         *            Source offset.
+         * @param len
+         *            Number of bytes.
+         * @return {@code false} when the line is rejected due to DRM.
+         * @throws IOException
+         *             When write error.
+         */
+        private boolean endLine(final byte[] buf, final int off,
+                final int len) throws IOException {
+
+            if (this.lineOverflow) {
+                this.ostr.write(buf, off, len);
+                this.lineOverflow = false;
+                return true;
+            }
+            if (this.lineLen == 0) {
+                return this.filter.onLine(buf, off, len);
+            }
+            if (this.lineLen + len > LINE_BUFFER_MAX) {
+                this.writeThrough(buf, off, len);
+                return true;
+            }
+            this.line = append(this.line, this.lineLen, buf, off, len);
+            final int total = this.lineLen + len;
+            this.lineLen = 0;
+            return this.filter.onLine(this.line, 0, total);
+        }
+
+        /**
+         * Writes the kept line bytes and source bytes, and empties the line
+         * buffer.
+         *
+         * @param buf
+         *            Source bytes.
+         * @param off
+         *            Source offset.
+         * @param len
+         *            Number of bytes.
+         * @throws IOException
+         *             When write error.
+         */
+        private void writeThrough(final byte[] buf, final int off,
+                final int len) throws IOException {
+            this.ostr.write(this.line, 0, this.lineLen);
+            this.ostr.write(buf, off, len);
+            this.lineLen = 0;
+        }
+    }
+
+    /**
+     * Writes PostScript lines, and handles DRM signature lines.
+     */
+    private static final class ByteLineFilter {
+
+        /** */
+        private final OutputStream ostr;
+
+        /** */
+        private final boolean respectDRM;
+
+        /**
+         * Index of the next DRM signature line to match.
+         */
+        private int iSigLine = 0;
+
+        /** */
+        private Result result = Result.DRM_NO;
+
+        /**
+         * @param out
+         *            The PostScript output.
+         * @param fRespectDRM
+         *            If {@code true}, a DRM signature is rejected.
+         */
+        ByteLineFilter(final OutputStream out, final boolean fRespectDRM) {
+            this.ostr = out;
+            this.respectDRM = fRespectDRM;
+        }
+
+        /**
+         * @param bytes
+         *            Line bytes.
+         * @param off
+         *            Offset of the line.
+         * @param len
+         *            Length of the line, including any line ending.
+         * @return {@code false} when line is rejected due to DRM.
+         * @throws IOException
+         *             When write error.
+         */
+        boolean onLine(final byte[] bytes, final int off, final int len)
+                throws IOException {
+
+            if (this.iSigLine < DRM_SIGNATURE_BYTES.length
+                    && isSignatureLine(bytes, off, len,
+                            DRM_SIGNATURE_BYTES[this.iSigLine])) {
+
+                if (this.respectDRM) {
+                    this.ostr.write(DRM_ERROR_ENFORCED);
+                    this.ostr.flush();
+                    return false;
+                }
+
+                this.result = Result.DRM_NEGLECTED;
+
+                if (this.iSigLine < 2 || this.iSigLine > 12) {
+                    this.ostr.write(bytes, off, len);
+                }
+                this.iSigLine++;
+
+            } else {
+                this.ostr.write(bytes, off, len);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Appends bytes to a line buffer, growing it when needed.
+     *
+     * @param line
+     *            The line buffer.
+     * @param lineLen
+     *            Number of bytes in the line buffer.
+     * @param src
+     *            The source bytes.
+     * @param off
+     *            Source offset.
+     * @param len
+     *            Number of source bytes.
+     * @return The (new) line buffer.
+     */
+    private static byte[] append(final byte[] line, final int lineLen,
+            final byte[] src, final int off, final int len) {
+
+        byte[] target = line;
+
+        if (lineLen + len > target.length) {
+            target = new byte[Math.max(2 * target.length, lineLen + len)];
+            System.arraycopy(line, 0, target, 0, lineLen);
+        }
+        System.arraycopy(src, off, target, lineLen, len);
+        return target;
+    }
+
+    /**
+     * Checks if a line (including any line ending) equals a signature line.
+     *
+     * @param bytes
+     *            The line bytes.
+     * @param off
+     *            Offset of the line.
+     * @param len
+     *            Length of the line, including any line ending.
+     * @param signature
+     *            The signature line.
+     * @return {@code true} when line is a signature line.
+     */
+    private static boolean isSignatureLine(final byte[] bytes, final int off,
+            final int len, final byte[] signature) {
+
+        int end = off + len;
+
+        if (end > off && bytes[end - 1] == LF) {
+            end--;
+        }
+        if (end > off && bytes[end - 1] == CR) {
+            end--;
+        }
+
+        if (end - off != signature.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[off + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
@@ -25,8 +25,12 @@
 package org.savapage.core.reports;
 
 import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.savapage.core.config.ConfigManager;
+import org.savapage.core.dao.DaoContext;
+import org.savapage.core.services.ServiceContext;
 import org.savapage.core.util.Messages;
 
 /**
@@ -63,6 +67,45 @@ public abstract class AbstractJrDataSource {
         return Messages.getMessage(this.getClass(), this.locale, key, objects);
     }
 
+    /**
+     * Opens a row stream in a read-only transaction of a new
+     * {@link ServiceContext}. Closing the stream rolls back the transaction
+     * and closes the context.
+     * <p>
+     * Use this as row source of a {@link JrRowPrefetcher}: the stream is
+     * opened and closed by the same background thread.
+     * </p>
+     *
+     * @param <T>
+     *            The row type.
+     * @param source
+     *            Opens the row stream.
+     * @return The row stream.
+     */
+    protected static <T> Stream<T>
+            openInServiceContext(final Supplier<Stream<T>> source) {
+
+        ServiceContext.open();
+
+        final DaoContext daoContext = ServiceContext.getDaoContext();
+
+        final Runnable closer = () -> {
+            try {
+                daoContext.rollback();
+            } finally {
+                ServiceContext.close();
+            }
+        };
+
+        try {
+            daoContext.beginTransaction();
+            return source.get().onClose(closer);
+        } catch (RuntimeException e) {
+            closer.run();
+            throw e;
+        }
+    }
+
     public Locale getLocale() {
         return locale;
     }
@@ -0,0 +1,263 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.reports;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.savapage.core.SpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates report rows that are read in chunks by a background thread, so the
+ * next chunk is fetched while the report engine renders the current one.
+ * <p>
+ * At most one chunk is queued ahead of the chunk being consumed, so memory use
+ * is bounded by the chunk size and not by the total number of rows.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ * @param <T>
+ *            The row type.
+ */
+public final class JrRowPrefetcher<T> implements Iterator<T>, Closeable {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(JrRowPrefetcher.class);
+
+    /**
+     * Chunk that marks the end of the rows.
+     */
+    private static final List<Object> END_OF_ROWS = Collections.emptyList();
+
+    /**
+     * Poll interval (milliseconds) of the background thread when the queue is
+     * full.
+     */
+    private static final long OFFER_POLL_MSEC = 1000L;
+
+    /**
+     * Max time (milliseconds) the background thread waits for the consumer to
+     * take a chunk, before it gives up.
+     */
+    private static final long CONSUMER_STALL_MSEC =
+            TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Opens the row stream (called from the background thread).
+     */
+    private final Supplier<Stream<T>> rowSource;
+
+    /** */
+    private final int chunkSize;
+
+    /** */
+    private final String threadName;
+
+    /** */
+    private final BlockingQueue<List<T>> queue =
+            new ArrayBlockingQueue<>(1);
+
+    /**
+     * Error of the background thread, or {@code null}.
+     */
+    private volatile RuntimeException producerError;
+
+    /** */
+    private volatile boolean closed;
+
+    /** */
+    private Thread producer;
+
+    /** */
+    private Iterator<T> chunkIterator = Collections.emptyIterator();
+
+    /** */
+    private boolean endOfRows;
+
+    /**
+     * @param name
+     *            Name of the background thread.
+     * @param source
+     *            Opens the row stream. This is called from the background
+     *            thread, which closes the stream after the last row.
+     * @param chunk
+     *            Number of rows in a chunk.
+     */
+    public JrRowPrefetcher(final String name, final Supplier<Stream<T>> source,
+            final int chunk) {
+        this.threadName = name;
+        this.rowSource = source;
+        this.chunkSize = chunk;
+    }
+
+    /**
+     * Reads the row stream and queues the chunks.
+     */
+    private void produce() {
+
+        try (Stream<T> rows = this.rowSource.get()) {
+
+            final Iterator<T> iter = rows.iterator();
+
+            List<T> chunk = new ArrayList<>(this.chunkSize);
+
+            while (iter.hasNext() && !this.closed) {
+                chunk.add(iter.next());
+                if (chunk.size() == this.chunkSize) {
+                    if (!this.offer(chunk)) {
+                        return;
+                    }
+                    chunk = new ArrayList<>(this.chunkSize);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                this.offer(chunk);
+            }
+
+        } catch (RuntimeException e) {
+            LOGGER.error("{}: {}", this.threadName, e.getMessage());
+            this.producerError = e;
+        } finally {
+            if (!this.closed) {
+                this.offerEndOfRows();
+            }
+        }
+    }
+
+    /**
+     * Queues a chunk.
+     *
+     * @param chunk
+     *            The chunk.
+     * @return {@code false} when closed or when the consumer stalled.
+     */
+    private boolean offer(final List<T> chunk) {
+
+        final long expiry = System.currentTimeMillis() + CONSUMER_STALL_MSEC;
+
+        try {
+            while (!this.closed) {
+                if (this.queue.offer(chunk, OFFER_POLL_MSEC,
+                        TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                if (System.currentTimeMillis() > expiry) {
+                    LOGGER.warn("{}: consumer stalled, rows abandoned.",
+                            this.threadName);
+                    this.closed = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Queues the end-of-rows marker.
+     */
+    @SuppressWarnings("unchecked")
+    private void offerEndOfRows() {
+        this.offer((List<T>) END_OF_ROWS);
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if (this.chunkIterator.hasNext()) {
+            return true;
+        }
+
+        if (this.endOfRows) {
+            return false;
+        }
+
+        if (this.closed) {
+            throw new IllegalStateException(
+                    this.threadName + ": prefetcher is closed.");
+        }
+
+        if (this.producer == null) {
+            this.producer = new Thread(this::produce, this.threadName);
+            this.producer.setDaemon(true);
+            this.producer.start();
+        }
+
+        final List<T> chunk;
+
+        try {
+            chunk = this.queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpException(this.threadName + ": interrupted.");
+        }
+
+        if (chunk == END_OF_ROWS) {
+            this.endOfRows = true;
+            if (this.producerError != null) {
+                throw new SpException(this.producerError.getMessage(),
+                        this.producerError);
+            }
+            return false;
+        }
+
+        this.chunkIterator = chunk.iterator();
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.chunkIterator.next();
+    }
+
+    /**
+     * Stops the background thread, if it is still reading rows.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.queue.clear();
+        this.chunkIterator = Collections.emptyIterator();
+        this.endOfRows = true;
+    }
+
+}
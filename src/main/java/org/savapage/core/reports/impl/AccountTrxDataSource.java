@@ -24,18 +24,19 @@
  */
 package org.savapage.core.reports.impl;
 
+import java.io.Closeable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.savapage.core.SpException;
@@ -45,9 +46,9 @@ import org.savapage.core.dao.AccountDao;
 import org.savapage.core.dao.AccountTrxDao;
 import org.savapage.core.dao.UserDao;
 import org.savapage.core.dao.enums.AccountTrxTypeEnum;
-import org.savapage.core.dao.enums.DaoEnumHelper;
 import org.savapage.core.dao.enums.PrintModeEnum;
 import org.savapage.core.dao.helpers.AccountTrxPagerReq;
+import org.savapage.core.dto.AccountTrxReportDto;
 import org.savapage.core.i18n.JobTicketNounEnum;
 import org.savapage.core.i18n.PrintOutNounEnum;
 import org.savapage.core.i18n.PrintOutVerbEnum;
@@ -55,12 +56,9 @@ import org.savapage.core.ipp.attribute.IppDictJobTemplateAttr;
 import org.savapage.core.ipp.helpers.IppOptionMap;
 import org.savapage.core.jpa.Account;
 import org.savapage.core.jpa.Account.AccountTypeEnum;
-import org.savapage.core.jpa.AccountTrx;
-import org.savapage.core.jpa.DocLog;
-import org.savapage.core.jpa.PosPurchase;
-import org.savapage.core.jpa.PrintOut;
 import org.savapage.core.jpa.User;
 import org.savapage.core.reports.AbstractJrDataSource;
+import org.savapage.core.reports.JrRowPrefetcher;
 import org.savapage.core.services.AccountingService;
 import org.savapage.core.services.ProxyPrintService;
 import org.savapage.core.services.ServiceContext;
@@ -75,16 +73,22 @@ import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRField;
 
 /**
+ * Account transactions data source.
+ * <p>
+ * Report rows are read with one projection query from a database cursor, and
+ * the next chunk is fetched in the background while the current one is
+ * rendered.
+ * </p>
  *
  * @author Rijk Ravestein
  *
  */
 public final class AccountTrxDataSource extends AbstractJrDataSource
-        implements JRDataSource {
+        implements JRDataSource, Closeable {
 
     private static final String BULL_SEP = " • ";
 
-    private static final int CHUNK_SIZE = 100;
+    private static final int CHUNK_SIZE = 500;
 
     /** */
     private static final ProxyPrintService PROXYPRINT_SERVICE =
@@ -95,13 +99,10 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
             ServiceContext.getServiceFactory().getAccountingService();
 
     /** */
-    private List<AccountTrx> entryList = null;
-    private Iterator<AccountTrx> iterator;
+    private final JrRowPrefetcher<AccountTrxReportDto> rows;
 
-    private AccountTrx accountTrxWlk = null;
-
-    private int counter = 1;
-    private int chunkCounter = CHUNK_SIZE;
+    /** */
+    private AccountTrxReportDto rowWlk = null;
 
     private final AccountTrxDao.Field sortField;
     private final Boolean sortAscending;
@@ -157,10 +158,6 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
         this.filter
                 .setContainingCommentText(req.getSelect().getContainingText());
 
-        //
-        this.counter = 0;
-        this.chunkCounter = CHUNK_SIZE;
-
         //
         this.showDocLogTitle = ConfigManager.instance()
                 .isConfigValue(Key.WEBAPP_DOCLOG_SHOW_DOC_TITLE);
@@ -182,6 +179,21 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
             this.account = null;
         }
 
+        this.rows = new JrRowPrefetcher<>("AccountTrxDataSource",
+                () -> openInServiceContext(() -> ServiceContext
+                        .getDaoContext().getAccountTrxDao()
+                        .streamReportRows(this.filter, this.sortField,
+                                this.sortAscending, CHUNK_SIZE)),
+                CHUNK_SIZE);
+    }
+
+    /**
+     * Stops fetching rows. Call this when the report is not filled till the
+     * last row.
+     */
+    @Override
+    public void close() {
+        this.rows.close();
     }
 
     /**
@@ -275,23 +287,6 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
         return where.toString();
     }
 
-    /**
-     *
-     * @param startPosition
-     * @param maxResults
-     */
-    private void getNextChunk(final Integer startPosition,
-            final Integer maxResults) {
-
-        this.entryList = ServiceContext.getDaoContext().getAccountTrxDao()
-                .getListChunk(this.filter, startPosition, maxResults,
-                        this.sortField, this.sortAscending);
-
-        this.chunkCounter = 0;
-        this.iterator = this.entryList.iterator();
-
-    }
-
     /**
      *
      * @param decimal
@@ -310,89 +305,78 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
     @Override
     public Object getFieldValue(final JRField jrField) throws JRException {
 
-        final DocLog docLog = this.accountTrxWlk.getDocLog();
-        final PosPurchase posPurchase = this.accountTrxWlk.getPosPurchase();
+        final AccountTrxReportDto row = this.rowWlk;
+
+        final boolean hasDocLog = row.getDocLogId() != null;
 
         final AccountTrxTypeEnum trxType =
-                AccountTrxTypeEnum.valueOf(this.accountTrxWlk.getTrxType());
+                AccountTrxTypeEnum.valueOf(row.getTrxType());
 
         final StringBuilder value = new StringBuilder(256);
 
         switch (jrField.getName()) {
 
         case "TRX_DATE":
-            value.append(this.dfMediumDatetime
-                    .format(this.accountTrxWlk.getTransactionDate()));
+            value.append(
+                    this.dfMediumDatetime.format(row.getTransactionDate()));
             break;
 
         case "TRX_TYPE":
-            value.append(this.accountTrxWlk.getTrxType());
+            value.append(row.getTrxType());
             break;
 
         case "CURRENCY":
-            value.append(
-                    StringUtils.defaultString(accountTrxWlk.getCurrencyCode()));
+            value.append(StringUtils.defaultString(row.getCurrencyCode()));
             break;
 
         case "AMOUNT":
-            value.append(this.formattedCurrency(accountTrxWlk.getAmount()));
+            value.append(this.formattedCurrency(row.getAmount()));
             break;
 
         case "BALANCE":
-            value.append(this.formattedCurrency(accountTrxWlk.getBalance()));
+            value.append(this.formattedCurrency(row.getBalance()));
             break;
 
         case "PAGE_TOTAL":
-            if (docLog != null) {
-                value.append(docLog.getNumberOfPages().toString());
+            if (hasDocLog) {
+                value.append(row.getDocNumberOfPages().toString());
             }
             break;
 
         case "RECEIPT":
-            if (posPurchase != null) {
-                value.append(posPurchase.getReceiptNumber());
+            if (row.getPosReceiptNumber() != null) {
+                value.append(row.getPosReceiptNumber());
             }
             if (trxType == AccountTrxTypeEnum.GATEWAY) {
-                value.append(this.accountTrxWlk.getExtMethod());
+                value.append(row.getExtMethod());
             }
 
             break;
 
         case "DESCRIPTION":
 
-            if (docLog == null) {
-                value.append(
-                        StringUtils.defaultString(accountTrxWlk.getComment()));
+            if (!hasDocLog) {
+                value.append(StringUtils.defaultString(row.getComment()));
             } else if (this.showDocLogTitle) {
-                value.append(StringUtils.defaultString(docLog.getTitle()));
+                value.append(StringUtils.defaultString(row.getDocTitle()));
             }
 
-            final PrintOut printOut;
-
-            if (docLog == null || docLog.getDocOut() == null) {
-                printOut = null;
-            } else {
-                printOut = docLog.getDocOut().getPrintOut();
+            if (row.getPrintOutId() != null) {
+                this.appendDescription(value, row);
             }
 
-            if (printOut != null) {
-                this.appendDescription(value, docLog, printOut,
-                        this.accountTrxWlk);
-            }
-
-            if (posPurchase != null) {
+            if (row.getPosReceiptNumber() != null) {
                 value.append(" (")
                         .append(StringUtils
-                                .defaultString(posPurchase.getPaymentType()))
+                                .defaultString(row.getPosPaymentType()))
                         .append(')');
             }
 
             if (trxType == AccountTrxTypeEnum.GATEWAY
-                    && this.accountTrxWlk.getExtAmount() != null) {
+                    && row.getExtAmount() != null) {
 
-                final boolean isExtBitcoin =
-                        this.accountTrxWlk.getExtCurrencyCode()
-                                .equals(CurrencyUtil.CURRENCY_CODE_BITCOIN);
+                final boolean isExtBitcoin = row.getExtCurrencyCode()
+                        .equals(CurrencyUtil.CURRENCY_CODE_BITCOIN);
 
                 final int decimalsWrk;
 
@@ -406,39 +390,31 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
                     value.append(BULL_SEP);
                 }
 
-                value.append(this.accountTrxWlk.getExtCurrencyCode())
-                        .append(" ");
+                value.append(row.getExtCurrencyCode()).append(" ");
 
                 try {
-                    value.append(BigDecimalUtil.localize(
-                            this.accountTrxWlk.getExtAmount(), decimalsWrk,
-                            this.getLocale(), "", true));
+                    value.append(BigDecimalUtil.localize(row.getExtAmount(),
+                            decimalsWrk, this.getLocale(), "", true));
 
-                    if (this.accountTrxWlk.getExtFee() != null
-                            && this.accountTrxWlk.getExtFee()
-                                    .compareTo(BigDecimal.ZERO) != 0) {
+                    if (row.getExtFee() != null && row.getExtFee()
+                            .compareTo(BigDecimal.ZERO) != 0) {
 
                         value.append("-/-");
 
-                        value.append(BigDecimalUtil.localize(
-                                this.accountTrxWlk.getExtFee(), decimalsWrk,
-                                this.getLocale(), "", true));
+                        value.append(BigDecimalUtil.localize(row.getExtFee(),
+                                decimalsWrk, this.getLocale(), "", true));
                     }
 
                 } catch (ParseException e) {
                     throw new SpException(e);
                 }
 
-                if (StringUtils
-                        .isNotBlank(this.accountTrxWlk.getExtMethodAddress())) {
-                    value.append(BULL_SEP)
-                            .append(this.accountTrxWlk.getExtMethodAddress());
+                if (StringUtils.isNotBlank(row.getExtMethodAddress())) {
+                    value.append(BULL_SEP).append(row.getExtMethodAddress());
                 }
 
-                if (StringUtils
-                        .isNotBlank(this.accountTrxWlk.getExtDetails())) {
-                    value.append(BULL_SEP)
-                            .append(this.accountTrxWlk.getExtDetails());
+                if (StringUtils.isNotBlank(row.getExtDetails())) {
+                    value.append(BULL_SEP).append(row.getExtDetails());
                 }
             }
             break;
@@ -454,19 +430,15 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
     @Override
     public boolean next() throws JRException {
 
-        if (this.chunkCounter == CHUNK_SIZE) {
-            getNextChunk(this.counter, CHUNK_SIZE);
-        }
-
-        if (!this.iterator.hasNext()) {
-            return false;
+        try {
+            if (!this.rows.hasNext()) {
+                return false;
+            }
+        } catch (SpException e) {
+            throw new JRException(e.getMessage(), e);
         }
 
-        this.accountTrxWlk = this.iterator.next();
-
-        this.counter++;
-        this.chunkCounter++;
-
+        this.rowWlk = this.rows.next();
         return true;
     }
 
@@ -475,23 +447,19 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
      *
      * @param desc
      *            The {@link StringBuilder} to append to.
-     * @param docLog
-     *            The {@link DocLog} container.
-     * @param printOut
-     *            The {@link PrintOut}.
-     * @param trx
-     *            The {@link AccountTrx}.
+     * @param row
+     *            The report row with PrintOut.
      */
     private void appendDescription(final StringBuilder desc,
-            final DocLog docLog, final PrintOut printOut,
-            final AccountTrx trx) {
+            final AccountTrxReportDto row) {
 
         final Locale locale = getLocale();
 
         //
         final BigDecimal costPerCopy =
                 ACCOUNTING_SERVICE.calcCostPerPrintedCopy(
-                        docLog.getCostOriginal(), printOut.getNumberOfCopies());
+                        row.getDocCostOriginal(),
+                        row.getPrintNumberOfCopies());
 
         final BigDecimal printedCopies;
 
@@ -499,7 +467,7 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
             printedCopies = BigDecimal.ZERO;
         } else {
             printedCopies = ACCOUNTING_SERVICE
-                    .calcPrintedCopies(trx.getAmount(), costPerCopy, 2).abs();
+                    .calcPrintedCopies(row.getAmount(), costPerCopy, 2).abs();
         }
 
         final int nCopies =
@@ -511,16 +479,17 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
                 .append(PrintOutNounEnum.COPY.uiText(locale, nCopies > 1));
 
         //
-        final int nSheets = nCopies * printOut.getNumberOfSheets().intValue()
-                / printOut.getNumberOfCopies().intValue();
+        final int nSheets =
+                nCopies * row.getPrintNumberOfSheets().intValue()
+                        / row.getPrintNumberOfCopies().intValue();
 
         desc.append(BULL_SEP).append(nSheets).append(" ")
                 .append(PrintOutNounEnum.SHEET.uiText(locale, nSheets > 1));
 
         //
-        desc.append(BULL_SEP).append(printOut.getPaperSize().toUpperCase());
+        desc.append(BULL_SEP).append(row.getPrintPaperSize().toUpperCase());
 
-        if (BooleanUtils.isTrue(printOut.getDuplex())) {
+        if (BooleanUtils.isTrue(row.getPrintDuplex())) {
             desc.append(BULL_SEP)
                     .append(PrintOutNounEnum.DUPLEX.uiText(locale));
         } else {
@@ -528,7 +497,7 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
                     .append(PrintOutNounEnum.SIMPLEX.uiText(locale));
         }
 
-        if (BooleanUtils.isTrue(printOut.getGrayscale())) {
+        if (BooleanUtils.isTrue(row.getPrintGrayscale())) {
             desc.append(BULL_SEP)
                     .append(PrintOutNounEnum.GRAYSCALE.uiText(locale));
         } else {
@@ -537,7 +506,7 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
 
         //
         final Map<String, String> ippOptions =
-                JsonHelper.createStringMapOrNull(printOut.getIppOptions());
+                JsonHelper.createStringMapOrNull(row.getPrintIppOptions());
 
         if (ippOptions == null) {
             return;
@@ -586,12 +555,12 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
         }
 
         //
-        if (StringUtils.isNotBlank(docLog.getExternalId())) {
+        if (StringUtils.isNotBlank(row.getDocExternalId())) {
 
             desc.append(BULL_SEP);
 
             final PrintModeEnum printOutMode =
-                    DaoEnumHelper.getPrintMode(printOut);
+                    EnumUtils.getEnum(PrintModeEnum.class, row.getPrintMode());
 
             if (printOutMode == PrintModeEnum.TICKET
                     || printOutMode == PrintModeEnum.TICKET_C
@@ -601,7 +570,7 @@ public final class AccountTrxDataSource extends AbstractJrDataSource
                 desc.append(JobTicketNounEnum.TAG.uiText(locale));
             }
             desc.append(" ")
-                    .append(StringUtils.defaultString(docLog.getExternalId()));
+                    .append(StringUtils.defaultString(row.getDocExternalId()));
         }
 
     }
@@ -24,6 +24,7 @@
  */
 package org.savapage.core.reports.impl;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -40,6 +41,7 @@ import org.savapage.core.jpa.User;
 import org.savapage.core.reports.AbstractJrDesign;
 import org.savapage.core.reports.JrExportFileExtEnum;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.util.IOHelper;
 import org.savapage.core.util.MessagesBundleProp;
 
 import net.sf.jasperreports.engine.JRDataSource;
@@ -226,8 +228,20 @@ public abstract class ReportCreator {
         final JRDataSource dataSource = this.onCreateDataSource(this.inputData,
                 this.locale, reportParameters);
 
-        final JasperPrint jasperPrint = JasperFillManager
-                .fillReport(jasperReport, reportParameters, dataSource);
+        final JasperPrint jasperPrint;
+
+        /*
+         * A data source that prefetches rows holds a database connection
+         * till it is closed.
+         */
+        try {
+            jasperPrint = JasperFillManager.fillReport(jasperReport,
+                    reportParameters, dataSource);
+        } finally {
+            if (dataSource instanceof Closeable) {
+                IOHelper.closeQuietly((Closeable) dataSource);
+            }
+        }
 
         if (fileExt == JrExportFileExtEnum.CSV) {
 
@@ -24,21 +24,22 @@
  */
 package org.savapage.core.reports.impl;
 
+import java.io.Closeable;
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.savapage.core.SpException;
 import org.savapage.core.config.ConfigManager;
 import org.savapage.core.dao.helpers.UserPrintOutTotalsReq;
 import org.savapage.core.dto.UserPrintOutTotalDto;
 import org.savapage.core.i18n.NounEnum;
 import org.savapage.core.i18n.PrepositionEnum;
 import org.savapage.core.reports.AbstractJrDataSource;
+import org.savapage.core.reports.JrRowPrefetcher;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.util.BigDecimalUtil;
 
@@ -52,17 +53,15 @@ import net.sf.jasperreports.engine.JRField;
  *
  */
 public final class UserPrintOutTotalsDataSource extends AbstractJrDataSource
-        implements JRDataSource {
+        implements JRDataSource, Closeable {
 
     private static final int CHUNK_SIZE = 200;
 
-    private Iterator<UserPrintOutTotalDto> iterator;
+    /** */
+    private final JrRowPrefetcher<UserPrintOutTotalDto> rows;
 
     private UserPrintOutTotalDto chunkDtoWlk = null;
 
-    private int counter = 1;
-    private int chunkCounter = CHUNK_SIZE;
-
     private final int balanceDecimals = ConfigManager.getUserBalanceDecimals();
 
     private final SimpleDateFormat dfMediumDatetime;
@@ -85,8 +84,11 @@ public final class UserPrintOutTotalsDataSource extends AbstractJrDataSource
         this.dfMediumDatetime =
                 new SimpleDateFormat("yyyy.MM.dd HH:mm:ss z", locale);
 
-        this.counter = 0;
-        this.chunkCounter = CHUNK_SIZE;
+        this.rows = new JrRowPrefetcher<>("UserPrintOutTotalsDataSource",
+                () -> openInServiceContext(() -> ServiceContext
+                        .getDaoContext().getAccountTrxDao()
+                        .streamUserPrintOutTotals(this.request, CHUNK_SIZE)),
+                CHUNK_SIZE);
 
         switch (request.getGroupBy()) {
         case PRINTER_USER:
@@ -181,23 +183,12 @@ public final class UserPrintOutTotalsDataSource extends AbstractJrDataSource
     }
 
     /**
-     * @param startPosition
-     *            The zero-based start position of the chunk related to the
-     *            total number of rows. If {@code null} the chunk starts with
-     *            the first row.
-     * @param maxResults
-     *            The maximum number of rows in the chunk. If {@code null}, then
-     *            ALL (remaining rows) are returned.
+     * Stops fetching rows. Call this when the report is not filled till the
+     * last row.
      */
-    private void getNextChunk(final Integer startPosition,
-            final Integer maxResults) {
-
-        final List<UserPrintOutTotalDto> entryList = ServiceContext
-                .getDaoContext().getAccountTrxDao().getUserPrintOutTotalsChunk(
-                        this.request, startPosition, maxResults);
-
-        this.chunkCounter = 0;
-        this.iterator = entryList.iterator();
+    @Override
+    public void close() {
+        this.rows.close();
     }
 
     /**
@@ -334,19 +325,15 @@ public final class UserPrintOutTotalsDataSource extends AbstractJrDataSource
     @Override
     public boolean next() throws JRException {
 
-        if (this.chunkCounter == CHUNK_SIZE) {
-            getNextChunk(this.counter, CHUNK_SIZE);
-        }
-
-        if (!this.iterator.hasNext()) {
-            return false;
+        try {
+            if (!this.rows.hasNext()) {
+                return false;
+            }
+        } catch (SpException e) {
+            throw new JRException(e.getMessage(), e);
         }
 
-        this.chunkDtoWlk = this.iterator.next();
-
-        this.counter++;
-        this.chunkCounter++;
-
+        this.chunkDtoWlk = this.rows.next();
         return true;
     }
 
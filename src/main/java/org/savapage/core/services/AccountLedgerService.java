@@ -0,0 +1,144 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services;
+
+import java.math.BigDecimal;
+
+import org.savapage.core.jpa.Account;
+import org.savapage.core.jpa.AccountTrx;
+import org.savapage.core.services.helpers.AccountLedger;
+
+/**
+ * Deferred balance updates of shared and group {@link Account} objects, and
+ * escrow reservations for credit-limit checks.
+ * <p>
+ * Transaction amounts are posted to an in-memory ledger, journaled to disk,
+ * and periodically rolled up into the account balance in one transaction.
+ * See {@link AccountLedger}.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public interface AccountLedgerService extends StatefulService {
+
+    /**
+     * Checks if balance updates of an account are deferred.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @return {@code true} when deferred.
+     */
+    boolean isDeferred(Account account);
+
+    /**
+     * Posts the amount of a created {@link AccountTrx} to the ledger, instead
+     * of updating the {@link Account} balance.
+     *
+     * @param trx
+     *            The persisted {@link AccountTrx}.
+     * @return {@code false} when deferral is not active, or the amount could
+     *         not be journaled: the caller must update the balance itself.
+     */
+    boolean post(AccountTrx trx);
+
+    /**
+     * Gets the amount that is posted to an account, but not rolled up into
+     * its balance yet.
+     * <p>
+     * Note: only add it to a balance of an account that is locked with
+     * {@link #lockAccount(Long)}. Use {@link #getBalanceWithPending(Account)}
+     * otherwise.
+     * </p>
+     *
+     * @param account
+     *            The {@link Account}.
+     * @return The pending amount.
+     */
+    BigDecimal getPending(Account account);
+
+    /**
+     * Gets the balance of an account, including the pending amount. For a
+     * deferred account the balance is read from the database while no
+     * roll-up is committing, so rolled up amounts count once.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @return The balance.
+     */
+    BigDecimal getBalanceWithPending(Account account);
+
+    /**
+     * Locks an account row for a balance change that takes the pending amount
+     * into account, and refreshes the account from the database. A roll-up
+     * of the account can not commit until the transaction ends, so
+     * {@link #getPending(Account)} stays consistent with the locked balance.
+     * <p>
+     * Note: call this before the account is changed in the transaction.
+     * </p>
+     *
+     * @param accountId
+     *            The primary key of the {@link Account}.
+     * @return The locked account, or {@code null} when not found.
+     */
+    Account lockAccount(Long accountId);
+
+    /**
+     * Reserves an amount in escrow, when the available balance is sufficient.
+     * The available balance is the balance, plus pending amounts, minus
+     * amounts in escrow.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @param floor
+     *            The lowest allowed available balance after reservation, or
+     *            {@code null} when unlimited.
+     * @param amount
+     *            The amount to reserve (a positive value).
+     * @return The escrow, or {@code null} when balance is insufficient.
+     */
+    AccountLedger.Escrow reserve(Account account, BigDecimal floor,
+            BigDecimal amount);
+
+    /**
+     * Releases an escrow.
+     *
+     * @param escrow
+     *            The escrow.
+     */
+    void release(AccountLedger.Escrow escrow);
+
+    /**
+     * @return {@code true} when no amounts are pending.
+     */
+    boolean isIdle();
+
+    /**
+     * Rolls up pending amounts into account balances, in a transaction of its
+     * own.
+     */
+    void flush();
+
+}
@@ -68,6 +68,7 @@ import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
 import org.savapage.core.print.proxy.ProxyPrintException;
 import org.savapage.core.print.proxy.ProxyPrintJobChunk;
 import org.savapage.core.print.proxy.ProxyPrintJobChunkInfo;
+import org.savapage.core.services.helpers.AccountLedger;
 import org.savapage.core.services.helpers.AccountTrxInfoSet;
 import org.savapage.core.services.helpers.AccountingException;
 import org.savapage.core.services.helpers.ProxyPrintCostDto;
@@ -669,6 +670,30 @@ public interface AccountingService extends StatefulService {
      */
     boolean isBalanceSufficient(Account account, BigDecimal cost);
 
+    /**
+     * Reserves cost on an account, when it can be charged according to
+     * account balance and credit policy. Concurrent reservations on the same
+     * account are checked against each other.
+     *
+     * @param account
+     *            The persisted {@link Account} to charge to.
+     * @param cost
+     *            The cost to charge.
+     * @return The escrow, or {@code null} if cost cannot be charged. Release
+     *         it with {@link #releaseBalance(AccountLedger.Escrow)} when cost
+     *         is charged or cancelled.
+     */
+    AccountLedger.Escrow reserveBalance(Account account, BigDecimal cost);
+
+    /**
+     * Releases a reservation of
+     * {@link #reserveBalance(Account, BigDecimal)}.
+     *
+     * @param escrow
+     *            The escrow.
+     */
+    void releaseBalance(AccountLedger.Escrow escrow);
+
     /**
      * Changes the base application currency. This action creates financial
      * transactions to align each account to the new currency.
@@ -95,6 +95,21 @@ public interface DocStoreService extends StatefulService {
     boolean isDocPresent(DocStoreTypeEnum store, DocStoreBranchEnum branch,
             DocLog docLog);
 
+    /**
+     * Removes a document from a store branch.
+     *
+     * @param store
+     *            Type of store.
+     * @param branch
+     *            Branch in store.
+     * @param docLog
+     *            The document log.
+     * @throws DocStoreException
+     *             When IO errors.
+     */
+    void remove(DocStoreTypeEnum store, DocStoreBranchEnum branch,
+            DocLog docLog) throws DocStoreException;
+
     /**
      * Stores a proxy printed document.
      *
@@ -80,6 +80,27 @@ public interface EmailService extends StatefulService {
      */
     javax.mail.Session createSendMailSession();
 
+    /**
+     * Connects a {@link Transport} of a session for <i>sending</i> mail, using
+     * the {@link CircuitBreakerEnum#SMTP_CONNECTION}. The connection can be
+     * kept open for sending mail batches.
+     *
+     * @param session
+     *            The {@link javax.mail.Session}, as created by
+     *            {@link #createSendMailSession()}.
+     * @return The connected {@link Transport}.
+     * @throws MessagingException
+     *             When no transport for the session.
+     * @throws InterruptedException
+     *             When the thread is interrupted.
+     * @throws CircuitBreakerException
+     *             When {@link CircuitBreakerEnum#SMTP_CONNECTION} is not
+     *             closed.
+     */
+    Transport connectTransport(javax.mail.Session session)
+            throws MessagingException, InterruptedException,
+            CircuitBreakerException;
+
     /**
      * Sends an email.
      *
@@ -38,6 +38,7 @@ import org.savapage.core.imaging.EcoPrintPdfTaskPendingException;
 import org.savapage.core.job.RunModeSwitch;
 import org.savapage.core.jpa.DocLog;
 import org.savapage.core.jpa.User;
+import org.savapage.core.outbox.OutboxHoldIndex;
 import org.savapage.core.outbox.OutboxInfoDto;
 import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
 import org.savapage.core.pdf.PdfCreateInfo;
@@ -251,6 +252,28 @@ public interface OutboxService {
      */
     int getOutboxJobCount(String userId);
 
+    /**
+     * Gets the non-expired outbox jobs of a user at a printer from the
+     * in-memory {@link OutboxHoldIndex}.
+     *
+     * @param userId
+     *            The unique user id.
+     * @param printerName
+     *            The unique printer name.
+     * @return The PDF base filenames of the jobs.
+     */
+    Set<String> getOutboxJobFiles(String userId, String printerName);
+
+    /**
+     * Gets the aggregated page counts and costs of the non-expired outbox jobs
+     * of a user from the in-memory {@link OutboxHoldIndex}.
+     *
+     * @param userId
+     *            The unique user id.
+     * @return The {@link OutboxHoldIndex.HoldSummary}.
+     */
+    OutboxHoldIndex.HoldSummary getOutboxHoldSummary(String userId);
+
     /**
      * Gets the {@link OutboxJobDto} candidate objects for proxy printing.
      * <p>
@@ -51,6 +51,7 @@ import org.savapage.core.json.rpc.JsonRpcMethodResult;
 import org.savapage.core.print.proxy.JsonProxyPrinterOpt;
 import org.savapage.core.print.proxy.JsonProxyPrinterOptChoice;
 import org.savapage.core.services.helpers.PrinterAttrLookup;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
 
 /**
  *
@@ -406,6 +407,17 @@ public interface PrinterService {
     void logPrintOut(Printer printer, Date jobTime, Integer jobPages,
             Integer jobSheets, Long jobEsu);
 
+    /**
+     * Adds aggregated PrintOut usage to the totals and the time series of a
+     * locked {@link Printer} (database IS updated).
+     *
+     * @param printer
+     *            The locked {@link Printer}.
+     * @param delta
+     *            The aggregated usage.
+     */
+    void addUsage(Printer printer, UsageCounterAggregator.Delta delta);
+
     /**
      * Adds access control for a {@link UserGroup} to a {@link Printer}.
      *
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 
 import javax.print.attribute.standard.MediaSizeName;
 
@@ -77,6 +78,8 @@ import org.savapage.core.json.rpc.impl.ParamsPrinterSnmp;
 import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
 import org.savapage.core.pdf.PdfCreateInfo;
 import org.savapage.core.print.proxy.AbstractProxyPrintReq;
+import org.savapage.core.print.proxy.CupsJobEventTracker;
+import org.savapage.core.print.proxy.CupsJobStateReader;
 import org.savapage.core.print.proxy.JsonProxyPrintJob;
 import org.savapage.core.print.proxy.JsonProxyPrinter;
 import org.savapage.core.print.proxy.JsonProxyPrinterOpt;
@@ -265,6 +268,38 @@ public interface ProxyPrintService {
     JsonProxyPrintJob retrievePrintJob(String printerName, Integer jobId)
             throws IppConnectException;
 
+    /**
+     * Retrieves the CUPS state of print jobs of a printer with Get-Jobs
+     * requests over windows of job ids. See {@link CupsJobStateReader}.
+     *
+     * @param printerName
+     *            The identifying name of the printer.
+     * @param jobIds
+     *            Job id set.
+     * @return {@code null} when printer is not found in the cache, or when
+     *         reading with Get-Jobs is disabled.
+     * @throws IppConnectException
+     *             When a connection error occurs.
+     */
+    CupsJobStateReader.Result retrievePrintJobStates(String printerName,
+            SortedSet<Integer> jobIds) throws IppConnectException;
+
+    /**
+     * Polls the CUPS job events since the previous poll. See
+     * {@link CupsJobEventTracker}.
+     *
+     * @return The names of the printers with job events, or {@code null} when
+     *         job state of all printers must be synchronized.
+     */
+    Set<String> pollPrintJobEvents();
+
+    /**
+     * Drops the CUPS job events tracked so far, so the next poll requires a
+     * synchronization of all printers. Use this when a synchronization
+     * failed.
+     */
+    void resetPrintJobEvents();
+
     /**
      * Gets the JsonCupsPrinter from the printer cache.
      * <p>
@@ -41,6 +41,7 @@ import org.savapage.core.jpa.User;
 import org.savapage.core.print.server.DocContentPrintException;
 import org.savapage.core.print.server.DocContentPrintReq;
 import org.savapage.core.print.server.DocContentPrintRsp;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
 
 /**
  *
@@ -391,6 +392,17 @@ public interface QueueService {
      */
     void logPrintIn(IppQueue queue, Date observationTime, Integer jobPages);
 
+    /**
+     * Adds aggregated PrintIn usage to the totals and the time series of a
+     * locked {@link IppQueue} (database IS updated).
+     *
+     * @param queue
+     *            The locked {@link IppQueue}.
+     * @param delta
+     *            The aggregated usage.
+     */
+    void addUsage(IppQueue queue, UsageCounterAggregator.Delta delta);
+
     /**
      * Prints a document {@link InputStream} originating from a {@link User} to
      * a reserved Queue.
@@ -27,6 +27,7 @@ package org.savapage.core.services;
 import org.savapage.core.doc.soffice.SOfficeBusyException;
 import org.savapage.core.doc.soffice.SOfficeConfig;
 import org.savapage.core.doc.soffice.SOfficeException;
+import org.savapage.core.doc.soffice.SOfficeStats;
 import org.savapage.core.doc.soffice.SOfficeTask;
 import org.savapage.core.doc.soffice.SOfficeTaskTimeoutException;
 
@@ -80,4 +81,9 @@ public interface SOfficeService extends StatefulService {
      */
     boolean isRunning();
 
+    /**
+     * @return The statistics of the conversion pool and result cache.
+     */
+    SOfficeStats getStats();
+
 }
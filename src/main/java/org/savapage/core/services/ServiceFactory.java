@@ -51,6 +51,13 @@ public interface ServiceFactory {
      */
     AccessControlService getAccessControlService();
 
+    /**
+     * Gets the {@link AccountLedgerService} singleton.
+     *
+     * @return The singleton.
+     */
+    AccountLedgerService getAccountLedgerService();
+
     /**
      * Gets the {@link AccountingService} singleton.
      *
@@ -226,6 +233,13 @@ public interface ServiceFactory {
      */
     SOfficeService getSOfficeService();
 
+    /**
+     * Gets the {@link UsageCounterService} singleton.
+     *
+     * @return The singleton.
+     */
+    UsageCounterService getUsageCounterService();
+
     /**
      * Gets the {@link UserGroupService} singleton.
      *
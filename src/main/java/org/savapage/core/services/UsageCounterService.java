@@ -0,0 +1,136 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services;
+
+import java.util.Date;
+
+import org.savapage.core.jpa.IppQueue;
+import org.savapage.core.jpa.Printer;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Counter;
+
+/**
+ * Write-behind of {@link IppQueue} and {@link Printer} usage counters.
+ * <p>
+ * Usage is aggregated in memory, journaled to disk, and periodically flushed
+ * to the database in one transaction. See {@link UsageCounterAggregator}.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public interface UsageCounterService extends StatefulService {
+
+    /**
+     * Adds a PrintIn job to the usage of a queue.
+     *
+     * @param queue
+     *            The {@link IppQueue}.
+     * @param jobDate
+     *            The date of the job.
+     * @param observationTime
+     *            The time series observation time.
+     * @param jobPages
+     *            The number of pages.
+     * @param jobBytes
+     *            The number of bytes.
+     * @return {@code false} when write-behind is not active, or the job could
+     *         not be journaled: the caller must update the database itself.
+     */
+    boolean addPrintIn(IppQueue queue, Date jobDate, Date observationTime,
+            int jobPages, long jobBytes);
+
+    /**
+     * Adds a PrintOut job to the usage of a printer.
+     *
+     * @param printer
+     *            The {@link Printer}.
+     * @param jobDate
+     *            The date of the job.
+     * @param jobPages
+     *            The number of pages.
+     * @param jobSheets
+     *            The number of sheets.
+     * @param jobEsu
+     *            The number of ESU.
+     * @param jobBytes
+     *            The number of bytes.
+     * @return {@code false} when write-behind is not active, or the job could
+     *         not be journaled: the caller must update the database itself.
+     */
+    boolean addPrintOut(Printer printer, Date jobDate, int jobPages,
+            int jobSheets, long jobEsu, long jobBytes);
+
+    /**
+     * Gets a PrintIn usage total of a queue, including usage that is not
+     * flushed to the database yet.
+     *
+     * @param queue
+     *            The {@link IppQueue}.
+     * @param counter
+     *            The counter: {@link Counter#JOBS}, {@link Counter#PAGES} or
+     *            {@link Counter#BYTES}.
+     * @return The total.
+     */
+    long getPrintInTotal(IppQueue queue, Counter counter);
+
+    /**
+     * Gets the last PrintIn usage date of a queue, including usage that is
+     * not flushed to the database yet.
+     *
+     * @param queue
+     *            The {@link IppQueue}.
+     * @return The date, or {@code null} when never used.
+     */
+    Date getPrintInLastUsage(IppQueue queue);
+
+    /**
+     * Gets a PrintOut usage total of a printer, including usage that is not
+     * flushed to the database yet.
+     *
+     * @param printer
+     *            The {@link Printer}.
+     * @param counter
+     *            The counter.
+     * @return The total.
+     */
+    long getPrintOutTotal(Printer printer, Counter counter);
+
+    /**
+     * Gets the last PrintOut usage date of a printer, including usage that
+     * is not flushed to the database yet.
+     *
+     * @param printer
+     *            The {@link Printer}.
+     * @return The date, or {@code null} when never used.
+     */
+    Date getPrintOutLastUsage(Printer printer);
+
+    /**
+     * Flushes pending usage to the database, in a transaction of its own.
+     */
+    void flush();
+
+}
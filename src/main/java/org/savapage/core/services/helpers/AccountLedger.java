@@ -0,0 +1,872 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import org.savapage.core.SpException;
+
+/**
+ * In-memory ledger of account balance changes that are not rolled up into
+ * the account balance yet, with an append-only journal for crash recovery,
+ * and escrow reservations for credit-limit checks.
+ * <p>
+ * Each {@link #post(Long, Long, BigDecimal, long)} of a transaction amount is
+ * appended to the current journal segment, and added to the pending
+ * sub-balance of the account. Sub-balances are striped ({@link LongAdder}), so
+ * concurrent postings on the same account do not block each other.
+ * </p>
+ * <p>
+ * A roll-up {@link #drain()}s the postings into a {@link Batch}, and the
+ * journal is rotated to a new segment. Postings that cannot be applied yet are
+ * journaled again with {@link #carry(Collection)}, before the batch is
+ * committed to the database together with its journal sequence number.
+ * {@link #commit(Batch, Collection)} then removes the applied postings, and
+ * deletes the journal segments the batch covers. On start, {@link #open(long)}
+ * replays the segments after the committed sequence number. Postings are
+ * identified by their transaction: a posting that is replayed twice counts
+ * once.
+ * </p>
+ * <p>
+ * A posting is discarded only when its database transaction is known to have
+ * ended without commit: it is {@link #abort(Long)}ed on rollback, or it is
+ * replayed from the journal of a previous run.
+ * </p>
+ * <p>
+ * The database commit of a roll-up and the removal of its postings happen
+ * between {@link #beginRollUp()} and {@link #endRollUp()}. Readers that add
+ * pending postings to a database balance do so in
+ * {@link #consistentRead(Supplier)}, so a rolled up posting is never counted
+ * twice, or not at all.
+ * </p>
+ * <p>
+ * A credit-limit check {@link #reserve(Long, BigDecimal, BigDecimal,
+ * BigDecimal)}s the amount in escrow, so concurrent checks on the same account
+ * cannot both pass on the same available balance.
+ * </p>
+ * <p>
+ * Amounts are kept as unscaled values with a fixed scale.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class AccountLedger {
+
+    /**
+     * A balance change of an account.
+     */
+    public static final class Posting {
+
+        /** */
+        private final long accountId;
+
+        /** */
+        private final long trxId;
+
+        /**
+         * Unscaled amount.
+         */
+        private final long amount;
+
+        /** */
+        private final long time;
+
+        /**
+         * {@code true} when replayed from the journal of a previous run.
+         */
+        private final boolean replayed;
+
+        /**
+         * {@code true} when the database transaction was rolled back.
+         */
+        private volatile boolean aborted;
+
+        /**
+         * @param accountId
+         *            Primary database key of the account.
+         * @param trxId
+         *            Primary database key of the transaction.
+         * @param amount
+         *            Unscaled amount.
+         * @param time
+         *            Posting time.
+         * @param replayed
+         *            {@code true} when replayed from the journal of a
+         *            previous run.
+         */
+        private Posting(final long accountId, final long trxId,
+                final long amount, final long time, final boolean replayed) {
+            this.accountId = accountId;
+            this.trxId = trxId;
+            this.amount = amount;
+            this.time = time;
+            this.replayed = replayed;
+        }
+
+        /**
+         * @return Primary database key of the account.
+         */
+        public Long getAccountId() {
+            return Long.valueOf(this.accountId);
+        }
+
+        /**
+         * @return Primary database key of the transaction.
+         */
+        public Long getTrxId() {
+            return Long.valueOf(this.trxId);
+        }
+
+        /**
+         * @return Posting time.
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * A posting of a previous run is finished: its database transaction
+         * either committed before the restart, or never will.
+         *
+         * @return {@code true} when the database transaction of this posting
+         *         is known to have ended. When the transaction is not found in
+         *         the database, the posting can be discarded.
+         */
+        public boolean isFinished() {
+            return this.replayed || this.aborted;
+        }
+    }
+
+    /**
+     * An amount reserved on an account.
+     */
+    public static final class Escrow {
+
+        /** */
+        private final long accountId;
+
+        /**
+         * Unscaled amount.
+         */
+        private final long amount;
+
+        /**
+         * Guarded by the cell of the account.
+         */
+        private boolean released;
+
+        /**
+         * @param accountId
+         *            Primary database key of the account.
+         * @param amount
+         *            Unscaled amount.
+         */
+        private Escrow(final long accountId, final long amount) {
+            this.accountId = accountId;
+            this.amount = amount;
+        }
+
+        /**
+         * @return Primary database key of the account.
+         */
+        public Long getAccountId() {
+            return Long.valueOf(this.accountId);
+        }
+    }
+
+    /**
+     * Drained postings.
+     */
+    public static final class Batch {
+
+        /** */
+        private final List<Posting> postings;
+
+        /** */
+        private final long journalSeq;
+
+        /**
+         * @param postings
+         *            Postings in (account, transaction) order.
+         * @param journalSeq
+         *            Last journal segment sequence number covered.
+         */
+        private Batch(final List<Posting> postings, final long journalSeq) {
+            this.postings = Collections.unmodifiableList(postings);
+            this.journalSeq = journalSeq;
+        }
+
+        /**
+         * @return Postings in (account, transaction) order.
+         */
+        public List<Posting> getPostings() {
+            return this.postings;
+        }
+
+        /**
+         * @return Last journal segment sequence number covered.
+         */
+        public long getJournalSeq() {
+            return this.journalSeq;
+        }
+    }
+
+    /**
+     * Balance state of an account.
+     */
+    private static final class Cell {
+
+        /**
+         * Striped sum of pending postings.
+         */
+        private final LongAdder pending = new LongAdder();
+
+        /**
+         * Reserved escrow. Guarded by this cell.
+         */
+        private long reserved;
+    }
+
+    /**
+     * Default max milliseconds {@link #consistentRead(Supplier)} waits.
+     */
+    public static final long READ_WAIT_MSEC_DEFAULT =
+            TimeUnit.SECONDS.toMillis(10);
+
+    /** */
+    private static final String SEGMENT_PREFIX = "ledger-";
+
+    /** */
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /**
+     * Account id, transaction id, amount, time and CRC.
+     */
+    private static final int RECORD_SIZE = 4 * Long.BYTES + Integer.BYTES;
+
+    /** */
+    private static final Comparator<Posting> POSTING_ORDER =
+            Comparator.comparingLong((Posting p) -> p.accountId)
+                    .thenComparingLong(p -> p.trxId);
+
+    /**
+     * Journal directory, or {@code null} when not journaled.
+     */
+    private final File journalDir;
+
+    /**
+     * Scale of amounts.
+     */
+    private final int scale;
+
+    /**
+     * Shared by writers, exclusive for {@link #drain()}.
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * Exclusive while a roll-up is committed and settled, shared by
+     * {@link #consistentRead(Supplier)}.
+     */
+    private final ReadWriteLock rollUpLock = new ReentrantReadWriteLock();
+
+    /**
+     * Max milliseconds {@link #consistentRead(Supplier)} waits for a roll-up.
+     */
+    private final long readWaitMsec;
+
+    /** */
+    private final Object journalMutex = new Object();
+
+    /**
+     * Cells by account id.
+     */
+    private final ConcurrentHashMap<Long, Cell> cells =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Pending postings by transaction id.
+     */
+    private final ConcurrentHashMap<Long, Posting> postings =
+            new ConcurrentHashMap<>();
+
+    /** */
+    private FileChannel journal;
+
+    /** */
+    private long journalSeq;
+
+    /**
+     * @param journalDir
+     *            Journal directory, or {@code null} when not journaled.
+     * @param scale
+     *            Scale of amounts.
+     */
+    public AccountLedger(final File journalDir, final int scale) {
+        this(journalDir, scale, READ_WAIT_MSEC_DEFAULT);
+    }
+
+    /**
+     * @param journalDir
+     *            Journal directory, or {@code null} when not journaled.
+     * @param scale
+     *            Scale of amounts.
+     * @param readWaitMsec
+     *            Max milliseconds {@link #consistentRead(Supplier)} waits for
+     *            a roll-up to finish.
+     */
+    public AccountLedger(final File journalDir, final int scale,
+            final long readWaitMsec) {
+        this.journalDir = journalDir;
+        this.scale = scale;
+        this.readWaitMsec = readWaitMsec;
+    }
+
+    /**
+     * Starts the database commit of a roll-up: waits for running
+     * {@link #consistentRead(Supplier)} actions, and blocks new ones until
+     * {@link #endRollUp()}.
+     */
+    public void beginRollUp() {
+        this.rollUpLock.writeLock().lock();
+    }
+
+    /**
+     * Ends a roll-up started with {@link #beginRollUp()}. Must be called
+     * after the database commit (or rollback), and after
+     * {@link #commit(Batch, Collection)}.
+     */
+    public void endRollUp() {
+        this.rollUpLock.writeLock().unlock();
+    }
+
+    /**
+     * Performs an action while no roll-up is between its database commit and
+     * the removal of its postings from this ledger. An account balance read
+     * from the database by the action, and the pending amount of that account
+     * read by the action, are consistent.
+     * <p>
+     * A roll-up that waits for a row locked by the caller's transaction would
+     * wait for the action forever. Therefore the read fails when a roll-up
+     * does not finish in time: the caller's transaction is rolled back, which
+     * releases its locks.
+     * </p>
+     *
+     * @param <T>
+     *            Result type.
+     * @param action
+     *            The action.
+     * @return The result of the action.
+     * @throws SpException
+     *             When a roll-up did not finish in time, or when interrupted.
+     */
+    public <T> T consistentRead(final Supplier<T> action) {
+
+        final Lock lock = this.rollUpLock.readLock();
+
+        try {
+            if (!lock.tryLock(this.readWaitMsec, TimeUnit.MILLISECONDS)) {
+                throw new SpException(String.format(
+                        "Account ledger roll-up did not finish in [%d] msec.",
+                        this.readWaitMsec));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpException("Account ledger read interrupted.");
+        }
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the journal: segments up to the committed sequence number are
+     * deleted, later segments are replayed.
+     *
+     * @param committedSeq
+     *            The sequence number of the last committed segment.
+     * @return The number of replayed postings.
+     * @throws IOException
+     *             When journal cannot be read or created.
+     */
+    public int open(final long committedSeq) throws IOException {
+
+        if (this.journalDir == null) {
+            return 0;
+        }
+
+        Files.createDirectories(this.journalDir.toPath());
+
+        long maxSeq = committedSeq;
+
+        for (final Map.Entry<Long, File> entry : this.listSegments()
+                .entrySet()) {
+            final long seq = entry.getKey().longValue();
+            if (seq <= committedSeq) {
+                Files.deleteIfExists(entry.getValue().toPath());
+            } else {
+                this.replay(entry.getValue());
+                maxSeq = Math.max(maxSeq, seq);
+            }
+        }
+
+        synchronized (this.journalMutex) {
+            this.journalSeq = maxSeq + 1;
+            this.journal = this.openSegment(this.journalSeq);
+        }
+        return this.postings.size();
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException
+     *             When close fails.
+     */
+    public void close() throws IOException {
+        synchronized (this.journalMutex) {
+            if (this.journal != null) {
+                this.journal.force(false);
+                this.journal.close();
+                this.journal = null;
+            }
+        }
+    }
+
+    /**
+     * Posts a transaction amount. The posting is journaled before it is added
+     * to the pending balance: when the journal write fails nothing is added.
+     *
+     * @param accountId
+     *            Primary database key of the account.
+     * @param trxId
+     *            Primary database key of the transaction.
+     * @param amount
+     *            The transaction amount.
+     * @param time
+     *            Posting time.
+     * @throws IOException
+     *             When journal write fails.
+     * @throws ArithmeticException
+     *             When amount has more decimals than the ledger scale.
+     */
+    public void post(final Long accountId, final Long trxId,
+            final BigDecimal amount, final long time) throws IOException {
+
+        final Posting posting = new Posting(accountId.longValue(),
+                trxId.longValue(), this.unscaled(amount), time, false);
+
+        this.swapLock.readLock().lock();
+        try {
+            this.write(Collections.singletonList(posting));
+            this.accumulate(posting);
+        } finally {
+            this.swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the posting of a transaction as aborted, because its database
+     * transaction was rolled back. The posting is discarded by the next
+     * roll-up.
+     *
+     * @param trxId
+     *            Primary database key of the transaction.
+     */
+    public void abort(final Long trxId) {
+        final Posting posting = this.postings.get(trxId);
+        if (posting != null) {
+            posting.aborted = true;
+        }
+    }
+
+    /**
+     * Gets the sum of pending postings of an account.
+     *
+     * @param accountId
+     *            Primary database key of the account.
+     * @return The pending amount.
+     */
+    public BigDecimal getPending(final Long accountId) {
+        final Cell cell = this.cells.get(accountId);
+        if (cell == null) {
+            return BigDecimal.ZERO.setScale(this.scale);
+        }
+        return BigDecimal.valueOf(cell.pending.sum(), this.scale);
+    }
+
+    /**
+     * Gets the amount in escrow of an account.
+     *
+     * @param accountId
+     *            Primary database key of the account.
+     * @return The reserved amount.
+     */
+    public BigDecimal getReserved(final Long accountId) {
+        final Cell cell = this.cells.get(accountId);
+        if (cell == null) {
+            return BigDecimal.ZERO.setScale(this.scale);
+        }
+        synchronized (cell) {
+            return BigDecimal.valueOf(cell.reserved, this.scale);
+        }
+    }
+
+    /**
+     * Reserves an amount in escrow, when the available balance is sufficient.
+     * The available balance is the account balance, plus pending postings,
+     * minus amounts in escrow.
+     *
+     * @param accountId
+     *            Primary database key of the account.
+     * @param balance
+     *            The account balance in the database.
+     * @param floor
+     *            The lowest allowed available balance after reservation, or
+     *            {@code null} when unlimited.
+     * @param amount
+     *            The amount to reserve (a positive value).
+     * @return The escrow, or {@code null} when balance is insufficient.
+     */
+    public Escrow reserve(final Long accountId, final BigDecimal balance,
+            final BigDecimal floor, final BigDecimal amount) {
+
+        final Cell cell =
+                this.cells.computeIfAbsent(accountId, k -> new Cell());
+
+        final long unscaledAmount = this.unscaled(amount);
+
+        synchronized (cell) {
+            if (floor != null) {
+                final BigDecimal available = balance
+                        .add(BigDecimal.valueOf(cell.pending.sum(),
+                                this.scale))
+                        .subtract(BigDecimal.valueOf(
+                                cell.reserved + unscaledAmount, this.scale));
+                if (available.compareTo(floor) < 0) {
+                    return null;
+                }
+            }
+            cell.reserved += unscaledAmount;
+        }
+        return new Escrow(accountId.longValue(), unscaledAmount);
+    }
+
+    /**
+     * Releases an escrow. Releasing twice has no effect.
+     *
+     * @param escrow
+     *            The escrow.
+     */
+    public void release(final Escrow escrow) {
+
+        final Cell cell = this.cells.get(Long.valueOf(escrow.accountId));
+
+        if (cell == null) {
+            return;
+        }
+        synchronized (cell) {
+            if (!escrow.released) {
+                cell.reserved -= escrow.amount;
+                escrow.released = true;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} when there are no pending postings.
+     */
+    public boolean isEmpty() {
+        return this.postings.isEmpty();
+    }
+
+    /**
+     * Takes a snapshot of the pending postings, and rotates the journal. The
+     * postings stay pending until they are committed.
+     *
+     * @return The batch, or {@code null} when there are no pending postings.
+     * @throws IOException
+     *             When journal rotation fails.
+     */
+    public Batch drain() throws IOException {
+
+        this.swapLock.writeLock().lock();
+        try {
+            if (this.postings.isEmpty()) {
+                return null;
+            }
+
+            final List<Posting> list = new ArrayList<>(this.postings.values());
+            list.sort(POSTING_ORDER);
+
+            long seq = 0L;
+
+            if (this.journalDir != null) {
+                synchronized (this.journalMutex) {
+                    seq = this.journalSeq;
+                    final FileChannel next = this.openSegment(seq + 1);
+                    this.journal.force(false);
+                    this.journal.close();
+                    this.journal = next;
+                    this.journalSeq = seq + 1;
+                }
+            }
+            return new Batch(list, seq);
+
+        } finally {
+            this.swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Journals postings of a drained batch again, because they are not
+     * committed with the batch. Must be called before the batch is committed
+     * to the database.
+     *
+     * @param carried
+     *            The postings.
+     * @throws IOException
+     *             When journal write fails.
+     */
+    public void carry(final Collection<Posting> carried) throws IOException {
+        if (!carried.isEmpty()) {
+            this.write(carried);
+        }
+    }
+
+    /**
+     * Removes postings that are committed to the database, or discarded, and
+     * deletes the journal segments covered by the batch.
+     *
+     * @param batch
+     *            The batch from {@link #drain()}.
+     * @param settled
+     *            The postings of the batch that are settled.
+     * @throws IOException
+     *             When segments cannot be deleted.
+     */
+    public void commit(final Batch batch, final Collection<Posting> settled)
+            throws IOException {
+
+        for (final Posting posting : settled) {
+            if (this.postings.remove(Long.valueOf(posting.trxId),
+                    posting)) {
+                this.cells.get(Long.valueOf(posting.accountId)).pending
+                        .add(-posting.amount);
+            }
+        }
+
+        if (this.journalDir == null) {
+            return;
+        }
+        for (final Map.Entry<Long, File> entry : this.listSegments()
+                .entrySet()) {
+            if (entry.getKey().longValue() <= batch.journalSeq) {
+                Files.deleteIfExists(entry.getValue().toPath());
+            }
+        }
+    }
+
+    /**
+     * Sums the amounts of postings.
+     *
+     * @param list
+     *            The postings.
+     * @return The sum.
+     */
+    public BigDecimal sum(final Collection<Posting> list) {
+        long sum = 0;
+        for (final Posting posting : list) {
+            sum = Math.addExact(sum, posting.amount);
+        }
+        return BigDecimal.valueOf(sum, this.scale);
+    }
+
+    /**
+     * @param amount
+     *            The amount.
+     * @return The unscaled amount.
+     */
+    private long unscaled(final BigDecimal amount) {
+        return amount.setScale(this.scale, RoundingMode.UNNECESSARY)
+                .unscaledValue().longValueExact();
+    }
+
+    /**
+     * Adds a posting, unless its transaction is posted already.
+     *
+     * @param posting
+     *            The posting.
+     */
+    private void accumulate(final Posting posting) {
+        if (this.postings.putIfAbsent(Long.valueOf(posting.trxId),
+                posting) == null) {
+            this.cells.computeIfAbsent(Long.valueOf(posting.accountId),
+                    k -> new Cell()).pending.add(posting.amount);
+        }
+    }
+
+    /**
+     * Appends postings to the current journal segment.
+     *
+     * @param list
+     *            The postings.
+     * @throws IOException
+     *             When write fails.
+     */
+    private void write(final Collection<Posting> list) throws IOException {
+
+        if (this.journalDir == null) {
+            return;
+        }
+
+        final ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * list.size());
+        final CRC32 crc = new CRC32();
+
+        for (final Posting posting : list) {
+            final int start = buf.position();
+            buf.putLong(posting.accountId);
+            buf.putLong(posting.trxId);
+            buf.putLong(posting.amount);
+            buf.putLong(posting.time);
+            crc.reset();
+            crc.update(buf.array(), start, buf.position() - start);
+            buf.putInt((int) crc.getValue());
+        }
+        buf.flip();
+
+        synchronized (this.journalMutex) {
+            if (this.journal == null) {
+                throw new IOException("journal is not open");
+            }
+            while (buf.hasRemaining()) {
+                this.journal.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Replays the records of a journal segment. A torn or corrupt record ends
+     * the replay of the segment.
+     *
+     * @param segment
+     *            The segment file.
+     * @throws IOException
+     *             When read error.
+     */
+    private void replay(final File segment) throws IOException {
+
+        final ByteBuffer buf =
+                ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+
+        final CRC32 crc = new CRC32();
+
+        while (buf.remaining() >= RECORD_SIZE) {
+
+            crc.reset();
+            crc.update(buf.array(), buf.position(),
+                    RECORD_SIZE - Integer.BYTES);
+
+            final Posting posting = new Posting(buf.getLong(), buf.getLong(),
+                    buf.getLong(), buf.getLong(), true);
+
+            if (buf.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            this.accumulate(posting);
+        }
+    }
+
+    /**
+     * @param seq
+     *            The sequence number.
+     * @return The new segment channel.
+     * @throws IOException
+     *             When file cannot be created.
+     */
+    private FileChannel openSegment(final long seq) throws IOException {
+        return FileChannel.open(
+                new File(this.journalDir,
+                        SEGMENT_PREFIX + seq + SEGMENT_SUFFIX).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return The journal segments by sequence number.
+     */
+    private SortedMap<Long, File> listSegments() {
+
+        final SortedMap<Long, File> segments = new TreeMap<>();
+
+        final File[] files = this.journalDir.listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX)
+                    || !name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            try {
+                segments.put(Long.valueOf(name.substring(
+                        SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())), file);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return segments;
+    }
+
+}
@@ -90,6 +90,12 @@ public final class DocContentPrintInInfo {
      */
     private long jobBytes;
 
+    /**
+     * Hex SHA-256 hash of the spooled content. It is not persisted in the
+     * DocLog: that column ships with a schema version and upgrade script.
+     */
+    private String contentHash;
+
     /**
      * .
      */
@@ -195,6 +201,22 @@ public final class DocContentPrintInInfo {
         this.jobBytes = jobBytes;
     }
 
+    /**
+     * @return Hex SHA-256 hash of the spooled content, or {@code null} when
+     *         not available.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @param hash
+     *            Hex SHA-256 hash of the spooled content.
+     */
+    public void setContentHash(final String hash) {
+        this.contentHash = hash;
+    }
+
     public java.util.UUID getUuidJob() {
         return uuidJob;
     }
@@ -0,0 +1,688 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.savapage.core.dao.enums.ACLOidEnum;
+import org.savapage.core.dao.enums.ACLRoleEnum;
+import org.savapage.core.dao.enums.UserAttrEnum;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ * Cache of compiled effective ACLs.
+ * <p>
+ * The ACL of a user is resolved once from the user attributes, the explicit
+ * group memberships (in group name order), the internal or external user
+ * group and the "All Users" group, and compiled into a role bitset and an OID
+ * privilege array. Group ACLs are compiled once and shared by all members.
+ * </p>
+ * <p>
+ * Entries are validated with version stamps: a global stamp that is bumped
+ * when group ACLs or groups change, and per-user stamps (striped) that are
+ * bumped when user ACLs or memberships change. Stamps are bumped when the
+ * change is written, and once more when the writing transaction ends, so an
+ * entry compiled from data that was not yet committed is never kept. A time
+ * to live is the safety net for changes made outside this JVM.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class EffectiveAclCache {
+
+    /**
+     * Privileges value of an undetermined OID.
+     */
+    public static final int UNDETERMINED = Integer.MIN_VALUE;
+
+    /**
+     * Number of per-user version stripes (power of two).
+     */
+    private static final int USER_STRIPES = 1024;
+
+    /**
+     * Max number of cached users: the cache is cleared when exceeded.
+     */
+    private static final int MAX_USERS = 100_000;
+
+    /** */
+    private static final ACLRoleEnum[] ROLES = ACLRoleEnum.values();
+
+    /** */
+    private static final ACLOidEnum[] OIDS = ACLOidEnum.values();
+
+    /** */
+    private static final long ALL_ROLES_MASK;
+
+    static {
+        if (ROLES.length > Long.SIZE) {
+            throw new IllegalStateException(
+                    ACLRoleEnum.class.getSimpleName() + " exceeds "
+                            + Long.SIZE + " values.");
+        }
+        long mask = 0L;
+        for (final ACLRoleEnum role : ROLES) {
+            mask |= roleBit(role);
+        }
+        ALL_ROLES_MASK = mask;
+    }
+
+    /** */
+    private static final Counter METRIC_HITS = MetricsRegistry.instance()
+            .counter("acl_cache_hits_total",
+                    "Number of effective ACL cache hits.");
+
+    /** */
+    private static final Counter METRIC_MISSES = MetricsRegistry.instance()
+            .counter("acl_cache_misses_total",
+                    "Number of effective ACL cache misses.");
+
+    /**
+     * A compiled (immutable) ACL.
+     */
+    public static final class Acl {
+
+        /**
+         * ACL with nothing determined.
+         */
+        public static final Acl EMPTY =
+                new Acl(0L, 0L, undeterminedPrivileges());
+
+        /** Bits of determined roles. */
+        private final long determined;
+
+        /** Bits of granted roles. */
+        private final long granted;
+
+        /** Privileges by OID ordinal. */
+        private final int[] privileges;
+
+        /** Number of undetermined OIDs. */
+        private final int undeterminedOids;
+
+        /**
+         * @param determined
+         *            Bits of determined roles.
+         * @param granted
+         *            Bits of granted roles.
+         * @param privileges
+         *            Privileges by OID ordinal.
+         */
+        private Acl(final long determined, final long granted,
+                final int[] privileges) {
+            this.determined = determined;
+            this.granted = granted & determined;
+            this.privileges = privileges;
+
+            int count = 0;
+            for (final int value : privileges) {
+                if (value == UNDETERMINED) {
+                    count++;
+                }
+            }
+            this.undeterminedOids = count;
+        }
+
+        /**
+         * @return Array with all OIDs undetermined.
+         */
+        private static int[] undeterminedPrivileges() {
+            final int[] privileges = new int[OIDS.length];
+            Arrays.fill(privileges, UNDETERMINED);
+            return privileges;
+        }
+
+        /**
+         * Compiles an ACL from de-serialized JSON attribute values.
+         *
+         * @param roles
+         *            The roles, or {@code null} when not present.
+         * @param userOids
+         *            The {@link UserAttrEnum#ACL_OIDS_USER} privileges, or
+         *            {@code null} when not present.
+         * @param adminOids
+         *            The {@link UserAttrEnum#ACL_OIDS_ADMIN} privileges, or
+         *            {@code null} when not present.
+         * @return The compiled ACL.
+         */
+        public static Acl create(final Map<ACLRoleEnum, Boolean> roles,
+                final Map<ACLOidEnum, Integer> userOids,
+                final Map<ACLOidEnum, Integer> adminOids) {
+
+            if (roles == null && userOids == null && adminOids == null) {
+                return EMPTY;
+            }
+
+            long determined = 0L;
+            long granted = 0L;
+
+            if (roles != null) {
+                for (final Map.Entry<ACLRoleEnum, Boolean> entry : roles
+                        .entrySet()) {
+                    final Boolean value = entry.getValue();
+                    if (value != null) {
+                        determined |= roleBit(entry.getKey());
+                        if (value.booleanValue()) {
+                            granted |= roleBit(entry.getKey());
+                        }
+                    }
+                }
+            }
+
+            final int[] privileges = undeterminedPrivileges();
+
+            for (final ACLOidEnum oid : OIDS) {
+                final Map<ACLOidEnum, Integer> map;
+                if (oid.isUserRole()) {
+                    map = userOids;
+                } else if (oid.isAdminRole()) {
+                    map = adminOids;
+                } else {
+                    map = null;
+                }
+                if (map != null) {
+                    final Integer value = map.get(oid);
+                    if (value != null) {
+                        privileges[oid.ordinal()] = value.intValue();
+                    }
+                }
+            }
+            return new Acl(determined, granted, privileges);
+        }
+
+        /**
+         * @param role
+         *            The role.
+         * @return {@code true} when authorized, {@code false} when not,
+         *         {@code null} when undetermined.
+         */
+        public Boolean isAuthorized(final ACLRoleEnum role) {
+            final long bit = roleBit(role);
+            if ((this.determined & bit) == 0) {
+                return null;
+            }
+            return Boolean.valueOf((this.granted & bit) != 0);
+        }
+
+        /**
+         * @param oid
+         *            The OID.
+         * @return The privileges, or {@code null} when undetermined.
+         */
+        public Integer getPrivileges(final ACLOidEnum oid) {
+            final int value = this.privileges[oid.ordinal()];
+            if (value == UNDETERMINED) {
+                return null;
+            }
+            return Integer.valueOf(value);
+        }
+
+        /**
+         * @return {@code true} when all roles and OIDs are determined.
+         */
+        public boolean isComplete() {
+            return this.determined == ALL_ROLES_MASK
+                    && this.undeterminedOids == 0;
+        }
+
+        /**
+         * Fills what is undetermined in this ACL from a lower level ACL.
+         *
+         * @param lower
+         *            The lower level ACL.
+         * @return The combined ACL.
+         */
+        public Acl fill(final Acl lower) {
+
+            if (lower == EMPTY || this.isComplete()) {
+                return this;
+            }
+            if (this == EMPTY) {
+                return lower;
+            }
+
+            final int[] combined = this.privileges.clone();
+
+            if (this.undeterminedOids > 0) {
+                for (int i = 0; i < combined.length; i++) {
+                    if (combined[i] == UNDETERMINED) {
+                        combined[i] = lower.privileges[i];
+                    }
+                }
+            }
+            return new Acl(this.determined | lower.determined,
+                    this.granted | (lower.granted & ~this.determined),
+                    combined);
+        }
+
+        /**
+         * Grants roles that are undetermined.
+         *
+         * @param roles
+         *            The roles.
+         * @return The resulting ACL.
+         */
+        public Acl grantUndetermined(final EnumSet<ACLRoleEnum> roles) {
+
+            long bits = 0L;
+            for (final ACLRoleEnum role : roles) {
+                bits |= roleBit(role);
+            }
+            bits &= ~this.determined;
+
+            if (bits == 0) {
+                return this;
+            }
+            return new Acl(this.determined | bits, this.granted | bits,
+                    this.privileges);
+        }
+    }
+
+    /**
+     * Loads the ACL levels from their source.
+     */
+    public interface Loader {
+
+        /**
+         * @param userDbKey
+         *            Primary database key of the user.
+         * @return The ACL of the user attributes.
+         */
+        Acl loadUserAcl(Long userDbKey);
+
+        /**
+         * @param userDbKey
+         *            Primary database key of the user.
+         * @return Primary database keys of the explicit groups of the user,
+         *         in group name order.
+         */
+        List<Long> loadGroupKeys(Long userDbKey);
+
+        /**
+         * @param groupDbKey
+         *            Primary database key of the group.
+         * @return The ACL of the group attributes.
+         */
+        Acl loadGroupAcl(Long groupDbKey);
+
+        /**
+         * @param internalUser
+         *            {@code true} for the internal user group.
+         * @return Primary database key of the internal or external user
+         *         group, or {@code null} when not present.
+         */
+        Long getImplicitGroupKey(boolean internalUser);
+
+        /**
+         * @return Primary database key of the "All Users" group, or
+         *         {@code null} when not present.
+         */
+        Long getAllUserGroupKey();
+
+        /**
+         * @return The roles that are granted when undetermined at "All Users"
+         *         level.
+         */
+        EnumSet<ACLRoleEnum> getTopIndeterminateGranted();
+    }
+
+    /**
+     * A cached user ACL.
+     */
+    private static final class UserEntry {
+
+        /** */
+        private final Acl acl;
+        /** */
+        private final boolean internalUser;
+        /** */
+        private final long globalVersion;
+        /** */
+        private final long userVersion;
+        /** */
+        private final long expiryTime;
+
+        /**
+         * @param acl
+         *            The effective ACL.
+         * @param internalUser
+         *            {@code true} when internal user.
+         * @param globalVersion
+         *            Global version at start of compilation.
+         * @param userVersion
+         *            User version at start of compilation.
+         * @param expiryTime
+         *            Expiry time (millis).
+         */
+        UserEntry(final Acl acl, final boolean internalUser,
+                final long globalVersion, final long userVersion,
+                final long expiryTime) {
+            this.acl = acl;
+            this.internalUser = internalUser;
+            this.globalVersion = globalVersion;
+            this.userVersion = userVersion;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    /**
+     * A cached group ACL.
+     */
+    private static final class GroupEntry {
+
+        /** */
+        private final Acl acl;
+        /** */
+        private final long globalVersion;
+        /** */
+        private final long expiryTime;
+
+        /**
+         * @param acl
+         *            The group ACL.
+         * @param globalVersion
+         *            Global version at start of compilation.
+         * @param expiryTime
+         *            Expiry time (millis).
+         */
+        GroupEntry(final Acl acl, final long globalVersion,
+                final long expiryTime) {
+            this.acl = acl;
+            this.globalVersion = globalVersion;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    /**
+     * Invalidations of the current thread, to be repeated when its
+     * transaction ends.
+     */
+    private static final class Pending {
+        /** */
+        private boolean all;
+        /** */
+        private final Set<Long> users = new HashSet<>();
+    }
+
+    /** */
+    private static final ThreadLocal<Pending> PENDING = new ThreadLocal<>();
+
+    /** */
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    /** */
+    private final AtomicLong[] userVersions = new AtomicLong[USER_STRIPES];
+
+    /** */
+    private final Map<Long, UserEntry> users = new ConcurrentHashMap<>();
+
+    /** */
+    private final Map<Long, GroupEntry> groups = new ConcurrentHashMap<>();
+
+    /** */
+    private static final class SingletonHolder {
+        /** */
+        public static final EffectiveAclCache INSTANCE =
+                new EffectiveAclCache();
+    }
+
+    /** */
+    private EffectiveAclCache() {
+        for (int i = 0; i < USER_STRIPES; i++) {
+            this.userVersions[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static EffectiveAclCache instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @param role
+     *            The role.
+     * @return The role bit.
+     */
+    private static long roleBit(final ACLRoleEnum role) {
+        return 1L << role.ordinal();
+    }
+
+    /**
+     * @param name
+     *            Name of a user or group attribute.
+     * @return {@code true} when attribute is part of an ACL.
+     */
+    public static boolean isAclAttr(final String name) {
+        return UserAttrEnum.ACL_ROLES.getName().equals(name)
+                || UserAttrEnum.ACL_OIDS_USER.getName().equals(name)
+                || UserAttrEnum.ACL_OIDS_ADMIN.getName().equals(name);
+    }
+
+    /**
+     * @param userDbKey
+     *            Primary database key of the user.
+     * @return The version stripe of the user.
+     */
+    private AtomicLong userVersion(final Long userDbKey) {
+        final int hash = userDbKey.hashCode();
+        return this.userVersions[(hash ^ (hash >>> 16)) & (USER_STRIPES - 1)];
+    }
+
+    /**
+     * Gets the effective ACL of a user, compiling it when not cached or
+     * stale.
+     *
+     * @param loader
+     *            The ACL loader.
+     * @param userDbKey
+     *            Primary database key of the user.
+     * @param internalUser
+     *            {@code true} when internal user.
+     * @param ttlMillis
+     *            Time to live of a compiled entry.
+     * @return The effective ACL.
+     */
+    public Acl getUserAcl(final Loader loader, final Long userDbKey,
+            final boolean internalUser, final long ttlMillis) {
+
+        final long global = this.globalVersion.get();
+        final long user = this.userVersion(userDbKey).get();
+        final long now = System.currentTimeMillis();
+
+        final UserEntry entry = this.users.get(userDbKey);
+
+        if (entry != null && entry.globalVersion == global
+                && entry.userVersion == user && entry.expiryTime > now
+                && entry.internalUser == internalUser) {
+            METRIC_HITS.inc();
+            return entry.acl;
+        }
+        METRIC_MISSES.inc();
+
+        final Acl acl = this.compileUser(loader, userDbKey, internalUser,
+                ttlMillis);
+
+        if (this.users.size() >= MAX_USERS) {
+            this.users.clear();
+        }
+        this.users.put(userDbKey, new UserEntry(acl, internalUser, global,
+                user, now + ttlMillis));
+        return acl;
+    }
+
+    /**
+     * Gets the ACL of a group, compiling it when not cached or stale.
+     *
+     * @param loader
+     *            The ACL loader.
+     * @param groupDbKey
+     *            Primary database key of the group.
+     * @param ttlMillis
+     *            Time to live of a compiled entry.
+     * @return The group ACL.
+     */
+    public Acl getGroupAcl(final Loader loader, final Long groupDbKey,
+            final long ttlMillis) {
+
+        final long global = this.globalVersion.get();
+        final long now = System.currentTimeMillis();
+
+        final GroupEntry entry = this.groups.get(groupDbKey);
+
+        if (entry != null && entry.globalVersion == global
+                && entry.expiryTime > now) {
+            return entry.acl;
+        }
+
+        final Acl acl = loader.loadGroupAcl(groupDbKey);
+
+        if (this.groups.size() >= MAX_USERS) {
+            this.groups.clear();
+        }
+        this.groups.put(groupDbKey,
+                new GroupEntry(acl, global, now + ttlMillis));
+        return acl;
+    }
+
+    /**
+     * Compiles the effective ACL of a user.
+     *
+     * @param loader
+     *            The ACL loader.
+     * @param userDbKey
+     *            Primary database key of the user.
+     * @param internalUser
+     *            {@code true} when internal user.
+     * @param ttlMillis
+     *            Time to live of compiled group entries.
+     * @return The effective ACL.
+     */
+    private Acl compileUser(final Loader loader, final Long userDbKey,
+            final boolean internalUser, final long ttlMillis) {
+
+        Acl acl = loader.loadUserAcl(userDbKey);
+
+        if (!acl.isComplete()) {
+            for (final Long groupKey : loader.loadGroupKeys(userDbKey)) {
+                acl = acl.fill(this.getGroupAcl(loader, groupKey, ttlMillis));
+                if (acl.isComplete()) {
+                    break;
+                }
+            }
+        }
+
+        final Long implicitKey = loader.getImplicitGroupKey(internalUser);
+        if (!acl.isComplete() && implicitKey != null) {
+            acl = acl.fill(this.getGroupAcl(loader, implicitKey, ttlMillis));
+        }
+
+        final Long allUsersKey = loader.getAllUserGroupKey();
+        if (!acl.isComplete() && allUsersKey != null) {
+            acl = acl.fill(this.getGroupAcl(loader, allUsersKey, ttlMillis));
+        }
+
+        return acl.grantUndetermined(loader.getTopIndeterminateGranted());
+    }
+
+    /**
+     * @return The pending invalidations of the current thread.
+     */
+    private static Pending pending() {
+        Pending pending = PENDING.get();
+        if (pending == null) {
+            pending = new Pending();
+            PENDING.set(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Invalidates the ACL of a user, after a change in its ACL attributes or
+     * group memberships.
+     *
+     * @param userDbKey
+     *            Primary database key of the user.
+     */
+    public void invalidateUser(final Long userDbKey) {
+        this.userVersion(userDbKey).incrementAndGet();
+        pending().users.add(userDbKey);
+    }
+
+    /**
+     * Invalidates all ACLs, after a change in group ACL attributes, groups or
+     * memberships of many users.
+     */
+    public void invalidateAll() {
+        this.globalVersion.incrementAndGet();
+        pending().all = true;
+    }
+
+    /**
+     * Repeats the invalidations of the current thread. Called when its
+     * transaction is committed or rolled back.
+     */
+    public void onTransactionEnd() {
+
+        final Pending pending = PENDING.get();
+
+        if (pending == null) {
+            return;
+        }
+        PENDING.remove();
+
+        if (pending.all) {
+            this.globalVersion.incrementAndGet();
+        }
+        for (final Long userDbKey : pending.users) {
+            this.userVersion(userDbKey).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of cached users.
+     */
+    public int size() {
+        return this.users.size();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        this.users.clear();
+        this.groups.clear();
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.savapage.core.jpa.DocLog;
+import org.savapage.core.metrics.Counter;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ * Cache of the most recent completed IPP print-in jobs per (user, queue), to
+ * answer IPP Get-Jobs requests for 'completed' jobs without database access.
+ * <p>
+ * A ring of jobs is warmed from the database on first access, and jobs are
+ * added when they are printed in. A ring is kept only when no job was added
+ * or invalidated while it was being loaded, so a print-in committed during
+ * the load is never missed. A time to live is the safety net for changes
+ * that are not notified, like document log cleaning.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppJobHistoryCache {
+
+    /**
+     * Max number of jobs per ring.
+     */
+    public static final int RING_SIZE = 10;
+
+    /**
+     * Max number of rings: least recently used rings are evicted.
+     */
+    private static final int MAX_RINGS = 10_000;
+
+    /** */
+    private static final Counter METRIC_HITS = MetricsRegistry.instance()
+            .counter("ipp_job_history_hits_total",
+                    "Number of IPP completed job history cache hits.");
+
+    /** */
+    private static final Counter METRIC_MISSES = MetricsRegistry.instance()
+            .counter("ipp_job_history_misses_total",
+                    "Number of IPP completed job history cache misses.");
+
+    /**
+     * A completed job (immutable).
+     */
+    public static final class Job {
+
+        /** */
+        private final String externalId;
+
+        /** */
+        private final String title;
+
+        /** */
+        private final String mimetype;
+
+        /** */
+        private final String uuid;
+
+        /** */
+        private final Date createdDate;
+
+        /**
+         * @param externalId
+         *            The IPP job id.
+         * @param title
+         *            The job name.
+         * @param mimetype
+         *            The document format.
+         * @param uuid
+         *            The job UUID.
+         * @param createdDate
+         *            The creation date.
+         */
+        public Job(final String externalId, final String title,
+                final String mimetype, final String uuid,
+                final Date createdDate) {
+            this.externalId = externalId;
+            this.title = title;
+            this.mimetype = mimetype;
+            this.uuid = uuid;
+            this.createdDate = createdDate;
+        }
+
+        /**
+         * @param docLog
+         *            The document log of the job.
+         * @return The job.
+         */
+        public static Job create(final DocLog docLog) {
+            return new Job(docLog.getExternalId(), docLog.getTitle(),
+                    docLog.getMimetype(), docLog.getUuid(),
+                    docLog.getCreatedDate());
+        }
+
+        /**
+         * @return The IPP job id.
+         */
+        public String getExternalId() {
+            return externalId;
+        }
+
+        /**
+         * @return The job name.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return The document format.
+         */
+        public String getMimetype() {
+            return mimetype;
+        }
+
+        /**
+         * @return The job UUID.
+         */
+        public String getUuid() {
+            return uuid;
+        }
+
+        /**
+         * @return The creation date.
+         */
+        public Date getCreatedDate() {
+            return createdDate;
+        }
+    }
+
+    /**
+     * Ring key.
+     */
+    private static final class Key {
+
+        /** */
+        private final String userName;
+
+        /** */
+        private final Long queueId;
+
+        /**
+         * @param userName
+         *            The user name.
+         * @param queueId
+         *            The queue primary key.
+         */
+        Key(final String userName, final Long queueId) {
+            this.userName = userName;
+            this.queueId = queueId;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.userName.equals(other.userName)
+                    && this.queueId.equals(other.queueId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.userName, this.queueId);
+        }
+    }
+
+    /**
+     * Ring of jobs, newest first.
+     */
+    private static final class Ring {
+
+        /** */
+        private final Deque<Job> jobs = new ArrayDeque<>(RING_SIZE);
+
+        /** */
+        private final long expiry;
+
+        /**
+         * @param expiry
+         *            Expiry time (milliseconds).
+         */
+        Ring(final long expiry) {
+            this.expiry = expiry;
+        }
+
+        /**
+         * @param job
+         *            Job to add as newest.
+         */
+        void addFirst(final Job job) {
+            this.jobs.addFirst(job);
+            while (this.jobs.size() > RING_SIZE) {
+                this.jobs.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Rings in access order. Guarded by this.
+     */
+    private final LinkedHashMap<Key, Ring> rings =
+            new LinkedHashMap<Key, Ring>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean
+                        removeEldestEntry(final Map.Entry<Key, Ring> eldest) {
+                    return this.size() > MAX_RINGS;
+                }
+            };
+
+    /**
+     * Bumped when a job is added or rings are invalidated. Guarded by this.
+     */
+    private long version;
+
+    /** */
+    private static final class SingletonHolder {
+        /** */
+        public static final IppJobHistoryCache INSTANCE =
+                new IppJobHistoryCache();
+    }
+
+    /** */
+    private IppJobHistoryCache() {
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static IppJobHistoryCache instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the most recent completed jobs of a user on a queue.
+     *
+     * @param userName
+     *            The user name.
+     * @param queueId
+     *            The queue primary key.
+     * @param ttlMillis
+     *            Time to live (milliseconds) of a ring warmed by this call.
+     * @param loader
+     *            Loads at most {@link #RING_SIZE} jobs from the database,
+     *            newest first, when the ring is not cached.
+     * @return The jobs, newest first.
+     */
+    public List<Job> get(final String userName, final Long queueId,
+            final long ttlMillis, final Supplier<List<Job>> loader) {
+
+        final Key key = new Key(userName, queueId);
+        final long versionLoad;
+
+        synchronized (this) {
+            final Ring ring = this.rings.get(key);
+            if (ring != null) {
+                if (ring.expiry > System.currentTimeMillis()) {
+                    METRIC_HITS.inc();
+                    return new ArrayList<>(ring.jobs);
+                }
+                this.rings.remove(key);
+            }
+            versionLoad = this.version;
+        }
+
+        METRIC_MISSES.inc();
+
+        final List<Job> jobs = loader.get();
+
+        synchronized (this) {
+            if (this.version == versionLoad) {
+                final Ring ring =
+                        new Ring(System.currentTimeMillis() + ttlMillis);
+                for (int i = Math.min(jobs.size(), RING_SIZE) - 1; i >= 0;
+                        i--) {
+                    ring.addFirst(jobs.get(i));
+                }
+                this.rings.put(key, ring);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Adds a completed job to the ring of a user on a queue, when cached.
+     *
+     * @param userName
+     *            The user name.
+     * @param queueId
+     *            The queue primary key.
+     * @param job
+     *            The job.
+     */
+    public synchronized void add(final String userName, final Long queueId,
+            final Job job) {
+        this.version++;
+        final Ring ring = this.rings.get(new Key(userName, queueId));
+        if (ring != null) {
+            ring.addFirst(job);
+        }
+    }
+
+    /**
+     * Invalidates the rings of a user.
+     *
+     * @param userName
+     *            The user name.
+     */
+    public synchronized void invalidateUser(final String userName) {
+        this.version++;
+        final Iterator<Key> iter = this.rings.keySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().userName.equals(userName)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Invalidates all rings.
+     */
+    public synchronized void invalidateAll() {
+        this.version++;
+        this.rings.clear();
+    }
+
+    /**
+     * @return The number of cached rings.
+     */
+    public synchronized int size() {
+        return this.rings.size();
+    }
+}
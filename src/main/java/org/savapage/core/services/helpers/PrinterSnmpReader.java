@@ -26,6 +26,7 @@ package org.savapage.core.services.helpers;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -44,6 +45,7 @@ import org.savapage.core.util.DateUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
 
 /**
  *
@@ -58,6 +60,21 @@ public final class PrinterSnmpReader {
     private static final Logger LOGGER =
             LoggerFactory.getLogger(PrinterSnmpReader.class);
 
+    /**
+     * The scalar OIDs retrieved in a single GET request.
+     */
+    private static final OID[] SCALAR_OIDS = { //
+            SnmpMibDict.OID_SYSTEM_OID, //
+            SnmpMibDict.OID_PRINTER_STATUS, //
+            SnmpMibDict.OID_SYSTEM_UPTIME, //
+            SnmpMibDict.OID_PRT_MARKER_COUNTER_UNIT, //
+            SnmpMibDict.OID_PRT_MARKER_LIFE_COUNT, //
+            SnmpMibDict.OID_SYSTEM_DESCR_RFC2790, //
+            SnmpMibDict.OID_SYSTEM_DESCR_RFC1213, //
+            SnmpMibDict.OID_PRT_SERIAL_NR, //
+            SnmpPrinterErrorStateEnum.getOID() //
+    };
+
     /**
      * Number of retries.
      */
@@ -68,6 +85,12 @@ public final class PrinterSnmpReader {
      */
     private final int timeout;
 
+    /**
+     * Response time (milliseconds) of the scalar request of the last read, or
+     * zero when unknown.
+     */
+    private long lastResponseMsec;
+
     /**
      * @param retries
      *            Number of retries.
@@ -79,6 +102,46 @@ public final class PrinterSnmpReader {
         this.timeout = timeout;
     }
 
+    /**
+     * @param scalars
+     *            The retrieved scalar values.
+     * @param oid
+     *            The OID.
+     * @return The value as integer, or {@code null} when not found.
+     */
+    private static Integer getInt(final Map<OID, Variable> scalars,
+            final OID oid) {
+        final Variable variable = scalars.get(oid);
+        if (variable == null) {
+            return null;
+        }
+        return Integer.valueOf(variable.toInt());
+    }
+
+    /**
+     * @param scalars
+     *            The retrieved scalar values.
+     * @param oid
+     *            The OID.
+     * @return The value as string, or {@code null} when not found.
+     */
+    private static String getString(final Map<OID, Variable> scalars,
+            final OID oid) {
+        final Variable variable = scalars.get(oid);
+        if (variable == null) {
+            return null;
+        }
+        return variable.toString();
+    }
+
+    /**
+     * @return Response time (milliseconds) of the scalar request of the last
+     *         read, or zero when unknown.
+     */
+    public long getLastResponseMsec() {
+        return lastResponseMsec;
+    }
+
     /**
      * Retrieves SNMP printer info using default port and community.
      *
@@ -142,21 +205,31 @@ public final class PrinterSnmpReader {
             throw new SnmpConnectException(e.getMessage(), e);
         }
 
-        // ----- Printer Status
-        OID oidWlk = SnmpMibDict.OID_PRINTER_STATUS;
+        OID oidWlk = null;
+        this.lastResponseMsec = 0;
 
         try {
+            // ----- Scalars in one (1) request
+            final long requestStart = System.currentTimeMillis();
+
+            final Map<OID, Variable> scalars =
+                    client.getAsVariables(SCALAR_OIDS);
+
+            this.lastResponseMsec = System.currentTimeMillis() - requestStart;
+
             Integer intValue;
             String strValue;
 
             // ----- Enterprise and vendor
-            final Integer enterprise = client.getEnterprise();
+            oidWlk = SnmpMibDict.OID_SYSTEM_OID;
+            final Integer enterprise = SnmpClientSession
+                    .parseEnterprise(getString(scalars, oidWlk));
             info.setEnterprise(enterprise);
             info.setVendor(SnmpPrinterVendorEnum.fromEnterprise(enterprise));
 
             // ----- Printer Status
             oidWlk = SnmpMibDict.OID_PRINTER_STATUS;
-            intValue = client.getAsInt(oidWlk);
+            intValue = getInt(scalars, oidWlk);
 
             if (intValue != null) {
                 info.setPrinterStatus(SnmpPrinterStatusEnum.asEnum(intValue));
@@ -164,7 +237,7 @@ public final class PrinterSnmpReader {
 
             //
             oidWlk = SnmpMibDict.OID_SYSTEM_UPTIME;
-            intValue = client.getAsInt(oidWlk);
+            intValue = getInt(scalars, oidWlk);
 
             if (intValue != null) {
                 // Note: the uptime evaluates to a negative value.
@@ -175,7 +248,7 @@ public final class PrinterSnmpReader {
 
             // ----- Marker life count
             oidWlk = SnmpMibDict.OID_PRT_MARKER_COUNTER_UNIT;
-            intValue = client.getAsInt(oidWlk);
+            intValue = getInt(scalars, oidWlk);
 
             if (intValue != null) {
                 info.setMarkerCounterUnit(
@@ -183,42 +256,42 @@ public final class PrinterSnmpReader {
             }
 
             oidWlk = SnmpMibDict.OID_PRT_MARKER_LIFE_COUNT;
-            info.setMarkerLifeCount(client.getAsInt(oidWlk));
-
-            // -----
-            oidWlk = null;
-            info.setMarkerColorants(
-                    SnmpPrtMarkerColorantEntry.retrieve(client));
-
-            //
-            oidWlk = null;
-            info.setSuppliesEntries(SnmpPrtMarkerSuppliesEntry.retrieve(client,
-                    info.getMarkerColorants()));
+            info.setMarkerLifeCount(getInt(scalars, oidWlk));
 
             // -----
             oidWlk = SnmpMibDict.OID_SYSTEM_DESCR_RFC2790;
-            strValue = client.getAsString(oidWlk);
+            strValue = getString(scalars, oidWlk);
 
             if (StringUtils.isBlank(strValue)) {
                 oidWlk = SnmpMibDict.OID_SYSTEM_DESCR_RFC1213;
-                strValue = client.getAsString(oidWlk);
+                strValue = getString(scalars, oidWlk);
             }
 
             info.setSystemDescription(strValue);
 
             // -----
             oidWlk = SnmpMibDict.OID_PRT_SERIAL_NR;
-            info.setSerialNumber(client.getAsString(oidWlk));
+            info.setSerialNumber(getString(scalars, oidWlk));
 
             // -----
             oidWlk = SnmpPrinterErrorStateEnum.getOID();
-            strValue = client.getAsString(oidWlk);
+            strValue = getString(scalars, oidWlk);
 
             if (strValue != null) {
                 info.setErrorStates(
                         SnmpPrinterErrorStateEnum.fromOctetString(strValue));
             }
 
+            // ----- Tables
+            oidWlk = null;
+            info.setMarkerColorants(
+                    SnmpPrtMarkerColorantEntry.retrieve(client));
+
+            //
+            oidWlk = null;
+            info.setSuppliesEntries(SnmpPrtMarkerSuppliesEntry.retrieve(client,
+                    info.getMarkerColorants()));
+
         } catch (SnmpConnectException e) {
 
             throw e;
@@ -0,0 +1,400 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.savapage.core.dto.PrinterSnmpDto;
+import org.savapage.core.snmp.SnmpConnectException;
+import org.savapage.core.snmp.SnmpVersionEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads SNMP info of a fleet of printer hosts concurrently, with a bounded
+ * number of hosts in flight.
+ * <p>
+ * Timeouts are adapted per host: a host that responded in a previous sweep
+ * gets a timeout derived from its smoothed response time (bounded by the
+ * configured timeout), and a host that failed in the previous sweep is tried
+ * once, without retries, so unreachable printers do not stall a sweep.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PrinterSnmpSweeper {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PrinterSnmpSweeper.class);
+
+    /**
+     * Lower bound of an adapted timeout (milliseconds).
+     */
+    private static final int MIN_ADAPTED_TIMEOUT_MSEC = 250;
+
+    /**
+     * Factor applied to the smoothed response time to get the timeout.
+     */
+    private static final int RESPONSE_TIME_TIMEOUT_FACTOR = 4;
+
+    /**
+     * Weight (power of 2) of the previous smoothed response time.
+     */
+    private static final int RESPONSE_TIME_SMOOTHING_SHIFT = 3;
+
+    /**
+     * Response statistics of a host, kept across sweeps.
+     */
+    private static final class HostStats {
+
+        /**
+         * Smoothed response time (milliseconds), or zero when unknown.
+         */
+        private long smoothedResponseMsec;
+
+        /**
+         * {@code true} when the last read failed.
+         */
+        private boolean lastFailed;
+    }
+
+    /**
+     * Host statistics by host name, kept across sweeps.
+     */
+    private static final Map<String, HostStats> HOST_STATS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Result of reading a single host.
+     */
+    public static final class Result {
+
+        /** */
+        private final PrinterSnmpDto dto;
+
+        /** */
+        private final SnmpConnectException error;
+
+        /**
+         * @param info
+         *            The SNMP info, or {@code null} when read failed.
+         * @param exception
+         *            The connect exception, or {@code null} when read
+         *            succeeded.
+         */
+        private Result(final PrinterSnmpDto info,
+                final SnmpConnectException exception) {
+            this.dto = info;
+            this.error = exception;
+        }
+
+        /**
+         * @return The SNMP info, or {@code null} when read failed.
+         */
+        public PrinterSnmpDto getDto() {
+            return dto;
+        }
+
+        /**
+         * @return The connect exception, or {@code null} when read succeeded.
+         */
+        public SnmpConnectException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Summary of a sweep.
+     */
+    public static final class Summary {
+
+        /** */
+        private final int hosts;
+
+        /** */
+        private final int failures;
+
+        /** */
+        private final long durationMsec;
+
+        /**
+         * @param nHosts
+         *            Number of hosts read.
+         * @param nFailures
+         *            Number of failed reads.
+         * @param duration
+         *            Sweep duration (milliseconds).
+         */
+        private Summary(final int nHosts, final int nFailures,
+                final long duration) {
+            this.hosts = nHosts;
+            this.failures = nFailures;
+            this.durationMsec = duration;
+        }
+
+        /**
+         * @return Number of hosts read.
+         */
+        public int getHosts() {
+            return hosts;
+        }
+
+        /**
+         * @return Number of failed reads.
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return Sweep duration (milliseconds).
+         */
+        public long getDurationMsec() {
+            return durationMsec;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SNMP sweep of [%d] host(s): [%d] failed,"
+                    + " [%d] msec.", hosts, failures, durationMsec);
+        }
+    }
+
+    /**
+     * Configured number of retries.
+     */
+    private final int retries;
+
+    /**
+     * Configured time-out in milliseconds.
+     */
+    private final int timeout;
+
+    /**
+     * Max number of hosts read concurrently.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Summary of last sweep, or {@code null} when not swept.
+     */
+    private Summary summary;
+
+    /**
+     * @param retries
+     *            Number of retries.
+     * @param timeout
+     *            Time-out in milliseconds.
+     * @param maxInFlight
+     *            Max number of hosts read concurrently.
+     */
+    public PrinterSnmpSweeper(final int retries, final int timeout,
+            final int maxInFlight) {
+        this.retries = retries;
+        this.timeout = timeout;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * @return Summary of last sweep, or {@code null} when not swept.
+     */
+    public Summary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Removes the statistics of hosts that are no longer polled.
+     *
+     * @param hosts
+     *            The printer host names or IP addresses that are polled.
+     */
+    public static void retainHosts(final Set<String> hosts) {
+        HOST_STATS.keySet().retainAll(hosts);
+    }
+
+    /**
+     * @param host
+     *            The printer host name or IP address.
+     * @return {@code true} when statistics of the host are present.
+     */
+    static boolean isHostStatsPresent(final String host) {
+        return HOST_STATS.containsKey(host);
+    }
+
+    /**
+     * Reads SNMP info of hosts concurrently.
+     *
+     * @param hosts
+     *            The unique printer host names or IP addresses.
+     * @param port
+     *            The SNMP port.
+     * @param community
+     *            The SNMP community.
+     * @param version
+     *            The {@link SnmpVersionEnum} ({@code null} when undetermined).
+     * @return Results by host, in order of input.
+     * @throws InterruptedException
+     *             When sweep is interrupted.
+     */
+    public Map<String, Result> sweep(final Collection<String> hosts,
+            final int port, final String community,
+            final SnmpVersionEnum version) throws InterruptedException {
+
+        final long start = System.currentTimeMillis();
+        final Map<String, Result> results = new LinkedHashMap<>();
+
+        if (hosts.isEmpty()) {
+            this.summary = new Summary(0, 0, 0L);
+            return results;
+        }
+
+        final ExecutorService executor = Executors
+                .newFixedThreadPool(Math.min(this.maxInFlight, hosts.size()));
+
+        final Map<String, Future<Result>> futures = new LinkedHashMap<>();
+
+        try {
+            for (final String host : hosts) {
+                futures.put(host, executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return readHost(host, port, community, version);
+                    }
+                }));
+            }
+
+            int failures = 0;
+
+            for (final Map.Entry<String, Future<Result>> entry : futures
+                    .entrySet()) {
+
+                Result result;
+                try {
+                    result = entry.getValue().get();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Printer [{}] : {}", entry.getKey(),
+                            e.getCause().getMessage(), e.getCause());
+                    result = new Result(null, new SnmpConnectException(
+                            e.getCause().getMessage(), e.getCause()));
+                }
+                if (result.getError() != null) {
+                    failures++;
+                }
+                results.put(entry.getKey(), result);
+            }
+
+            this.summary = new Summary(hosts.size(), failures,
+                    System.currentTimeMillis() - start);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(this.summary.toString());
+        }
+        return results;
+    }
+
+    /**
+     * Reads a single host with adapted timeout and retries.
+     *
+     * @param host
+     *            The printer host name or IP address.
+     * @param port
+     *            The SNMP port.
+     * @param community
+     *            The SNMP community.
+     * @param version
+     *            The {@link SnmpVersionEnum} ({@code null} when undetermined).
+     * @return The result.
+     */
+    private Result readHost(final String host, final int port,
+            final String community, final SnmpVersionEnum version) {
+
+        final HostStats stats =
+                HOST_STATS.computeIfAbsent(host, k -> new HostStats());
+
+        final int hostRetries;
+        final int hostTimeout;
+
+        synchronized (stats) {
+            if (stats.lastFailed) {
+                hostRetries = 0;
+                hostTimeout = this.timeout;
+            } else if (stats.smoothedResponseMsec > 0) {
+                hostRetries = this.retries;
+                hostTimeout = (int) Math.min(this.timeout,
+                        Math.max(MIN_ADAPTED_TIMEOUT_MSEC,
+                                RESPONSE_TIME_TIMEOUT_FACTOR
+                                        * stats.smoothedResponseMsec));
+            } else {
+                hostRetries = this.retries;
+                hostTimeout = this.timeout;
+            }
+        }
+
+        final PrinterSnmpReader reader =
+                new PrinterSnmpReader(hostRetries, hostTimeout);
+
+        try {
+            final PrinterSnmpDto dto =
+                    reader.read(host, port, community, version);
+
+            final long responseMsec = reader.getLastResponseMsec();
+
+            synchronized (stats) {
+                stats.lastFailed = false;
+                if (responseMsec > 0) {
+                    if (stats.smoothedResponseMsec == 0) {
+                        stats.smoothedResponseMsec = responseMsec;
+                    } else {
+                        stats.smoothedResponseMsec +=
+                                (responseMsec - stats.smoothedResponseMsec)
+                                        >> RESPONSE_TIME_SMOOTHING_SHIFT;
+                    }
+                }
+            }
+            return new Result(dto, null);
+
+        } catch (SnmpConnectException e) {
+            synchronized (stats) {
+                stats.lastFailed = true;
+            }
+            return new Result(null, e);
+        }
+    }
+}
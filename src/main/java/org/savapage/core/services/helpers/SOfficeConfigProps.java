@@ -27,6 +27,7 @@ package org.savapage.core.services.helpers;
 import java.io.File;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.savapage.core.config.ConfigManager;
 import org.savapage.core.config.IConfigProp.Key;
@@ -78,6 +79,11 @@ public final class SOfficeConfigProps extends SOfficeConfig {
 
         this.setPortNumbers(ports);
 
+        this.setMinWorkers(cm.getConfigInt(Key.SOFFICE_CONNECTION_MIN));
+
+        this.setResultCacheMaxBytes(cm.getConfigLong(Key.SOFFICE_CACHE_MAX_MB)
+                * FileUtils.ONE_MB);
+
         // Optional
         String dir = cm.getConfigValue(Key.SOFFICE_HOME);
 
@@ -0,0 +1,450 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.savapage.core.doc.soffice.SOfficeException;
+import org.savapage.core.doc.soffice.SOfficeStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Elastic pool of SOffice workers.
+ * <p>
+ * Each slot can hold one running worker. At least the minimum number of
+ * workers is running, and the spare number of idle workers is kept ready when
+ * slots are available: when tasks queue up, workers are started
+ * asynchronously until all slots are used. Idle workers beyond the minimum and
+ * spare are stopped again by {@link #stopIdleWorkers(long)}.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ * @param <S>
+ *            The slot settings type.
+ * @param <W>
+ *            The worker type.
+ */
+public final class SOfficeWorkerPool<S, W> {
+
+    /**
+     * Starts and stops workers.
+     *
+     * @param <S>
+     *            The slot settings type.
+     * @param <W>
+     *            The worker type.
+     */
+    public interface Launcher<S, W> {
+
+        /**
+         * Creates and starts a worker.
+         *
+         * @param settings
+         *            The slot settings.
+         * @return The started worker.
+         */
+        W start(S settings);
+
+        /**
+         * Stops a worker.
+         *
+         * @param worker
+         *            The worker.
+         */
+        void stop(W worker);
+    }
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SOfficeWorkerPool.class);
+
+    /** */
+    private final Launcher<S, W> launcher;
+
+    /**
+     * Executes asynchronous worker starts.
+     */
+    private final Executor scaler;
+
+    /** */
+    private final SOfficeStats stats;
+
+    /**
+     * Number of slots.
+     */
+    private final int slots;
+
+    /**
+     * Minimum number of running workers.
+     */
+    private final int minWorkers;
+
+    /**
+     * Number of idle workers kept ready for incoming tasks.
+     */
+    private final int spareWorkers;
+
+    /**
+     * Idle time (milliseconds) after which a worker beyond the minimum and
+     * spare is stopped.
+     */
+    private final long idleStopMsec;
+
+    /**
+     * Idle workers.
+     */
+    private final BlockingQueue<W> idleWorkers;
+
+    /**
+     * Settings of running workers. Guarded by {@link #poolLock}.
+     */
+    private final Map<W, S> runningWorkers = new HashMap<>();
+
+    /**
+     * Release time of idle workers. Guarded by {@link #poolLock}.
+     */
+    private final Map<W, Long> workerIdleSince = new HashMap<>();
+
+    /**
+     * Settings of slots without a running worker. Guarded by
+     * {@link #poolLock}.
+     */
+    private final Deque<S> stoppedSlots = new ArrayDeque<>();
+
+    /**
+     * Number of workers being started. Guarded by {@link #poolLock}.
+     */
+    private int startingWorkers;
+
+    /** */
+    private final Object poolLock = new Object();
+
+    /**
+     * {@code true} when pool is running.
+     */
+    private volatile boolean running = false;
+
+    /**
+     * @param workerLauncher
+     *            Starts and stops workers.
+     * @param slotSettings
+     *            The settings of each slot.
+     * @param min
+     *            Minimum number of running workers: it is kept between 1 and
+     *            the number of slots.
+     * @param spare
+     *            Number of idle workers kept ready for incoming tasks.
+     * @param idleStop
+     *            Idle time (milliseconds) after which a worker beyond the
+     *            minimum and spare is stopped.
+     * @param executor
+     *            Executes asynchronous worker starts.
+     * @param poolStats
+     *            The statistics to update.
+     */
+    public SOfficeWorkerPool(final Launcher<S, W> workerLauncher,
+            final Collection<S> slotSettings, final int min, final int spare,
+            final long idleStop, final Executor executor,
+            final SOfficeStats poolStats) {
+
+        this.launcher = workerLauncher;
+        this.slots = slotSettings.size();
+        this.minWorkers = Math.max(1, Math.min(min, this.slots));
+        this.spareWorkers = spare;
+        this.idleStopMsec = idleStop;
+        this.scaler = executor;
+        this.stats = poolStats;
+        this.idleWorkers = new LinkedBlockingQueue<W>(this.slots);
+        this.stoppedSlots.addAll(slotSettings);
+    }
+
+    /**
+     * Starts the minimum number of workers, and a spare one.
+     */
+    public void start() {
+
+        for (int i = 0; i < this.minWorkers; i++) {
+            final S settings;
+            synchronized (this.poolLock) {
+                settings = this.stoppedSlots.poll();
+            }
+            this.startWorker(settings);
+        }
+
+        this.running = true;
+
+        this.ensureSpareWorker(0);
+    }
+
+    /**
+     * Stops all workers.
+     */
+    public void shutdown() {
+
+        this.running = false;
+
+        this.idleWorkers.clear();
+
+        final Collection<W> workers;
+
+        synchronized (this.poolLock) {
+            workers = new ArrayList<>(this.runningWorkers.keySet());
+            for (final W worker : workers) {
+                this.stoppedSlots.add(this.runningWorkers.remove(worker));
+            }
+            this.workerIdleSince.clear();
+        }
+
+        for (final W worker : workers) {
+            this.launcher.stop(worker);
+            this.stats.getWorkersRunningCounter().decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a worker in a slot, and puts it in the pool.
+     *
+     * @param settings
+     *            The slot settings.
+     */
+    private void startWorker(final S settings) {
+
+        final W worker = this.launcher.start(settings);
+
+        synchronized (this.poolLock) {
+            this.runningWorkers.put(worker, settings);
+        }
+        this.stats.getWorkersRunningCounter().incrementAndGet();
+        this.release(worker);
+    }
+
+    /**
+     * Starts a worker asynchronously when the idle workers (including the ones
+     * being started) can not serve the waiting tasks plus the spare.
+     *
+     * @param waitingTasks
+     *            Number of tasks waiting for a worker.
+     */
+    private void ensureSpareWorker(final int waitingTasks) {
+
+        final S settings;
+
+        synchronized (this.poolLock) {
+
+            final int available =
+                    this.idleWorkers.size() + this.startingWorkers;
+
+            if (!this.running || this.stoppedSlots.isEmpty()
+                    || available >= waitingTasks + this.spareWorkers) {
+                return;
+            }
+            settings = this.stoppedSlots.poll();
+            this.startingWorkers++;
+        }
+
+        final Runnable starter = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    startWorker(settings);
+                } catch (Exception e) {
+                    LOGGER.error("Worker start failed: {}", e.getMessage());
+                    synchronized (poolLock) {
+                        stoppedSlots.add(settings);
+                    }
+                } finally {
+                    synchronized (poolLock) {
+                        startingWorkers--;
+                    }
+                }
+            }
+        };
+
+        try {
+            this.scaler.execute(starter);
+        } catch (RejectedExecutionException e) {
+            // Shutting down.
+            synchronized (this.poolLock) {
+                this.stoppedSlots.add(settings);
+                this.startingWorkers--;
+            }
+        }
+    }
+
+    /**
+     * Stops idle workers beyond the minimum and spare.
+     *
+     * @param now
+     *            The current time (milliseconds).
+     */
+    public void stopIdleWorkers(final long now) {
+
+        final long idleLimit = now - this.idleStopMsec;
+
+        while (this.running) {
+
+            W workerToStop = null;
+
+            synchronized (this.poolLock) {
+
+                if (this.runningWorkers.size() <= this.minWorkers
+                        || this.idleWorkers.size() <= this.spareWorkers
+                        || this.stats.getQueueDepth() > 0) {
+                    break;
+                }
+
+                final Iterator<W> iter = this.idleWorkers.iterator();
+
+                while (iter.hasNext()) {
+                    final W worker = iter.next();
+                    final Long idleSince = this.workerIdleSince.get(worker);
+                    if (idleSince != null && idleSince.longValue() < idleLimit
+                            && this.idleWorkers.remove(worker)) {
+                        workerToStop = worker;
+                        break;
+                    }
+                }
+
+                if (workerToStop == null) {
+                    break;
+                }
+
+                this.workerIdleSince.remove(workerToStop);
+                this.stoppedSlots
+                        .add(this.runningWorkers.remove(workerToStop));
+            }
+
+            this.stats.getWorkersRunningCounter().decrementAndGet();
+
+            try {
+                this.launcher.stop(workerToStop);
+            } catch (Exception e) {
+                LOGGER.warn("Worker stop failed: {}", e.getMessage());
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Idle worker stopped: {}", this.stats);
+            }
+        }
+    }
+
+    /**
+     * Retrieves an idle worker, waiting up to the specified wait time if
+     * necessary for one to become available. Workers are started when tasks
+     * queue up, and a spare is kept ready while the acquired worker is busy.
+     *
+     * @param timeoutMsec
+     *            Max wait time (milliseconds).
+     * @return The worker, or {@code null} if the wait time elapsed before a
+     *         worker became available.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public W acquire(final long timeoutMsec) throws InterruptedException {
+
+        final W worker;
+
+        final int waiting = this.stats.getQueueDepthCounter().incrementAndGet();
+
+        try {
+            this.ensureSpareWorker(waiting);
+            worker = this.idleWorkers.poll(timeoutMsec, TimeUnit.MILLISECONDS);
+        } finally {
+            this.stats.getQueueDepthCounter().decrementAndGet();
+        }
+
+        if (worker != null) {
+            this.ensureSpareWorker(this.stats.getQueueDepth());
+        }
+        return worker;
+    }
+
+    /**
+     * Releases a worker by putting it in the pool again.
+     *
+     * @param worker
+     *            The worker.
+     */
+    public void release(final W worker) {
+
+        synchronized (this.poolLock) {
+            if (!this.runningWorkers.containsKey(worker)) {
+                // Stopped meanwhile.
+                return;
+            }
+            this.workerIdleSince.put(worker,
+                    Long.valueOf(System.currentTimeMillis()));
+        }
+
+        try {
+            this.idleWorkers.put(worker);
+        } catch (InterruptedException interruptedException) {
+            throw new SOfficeException("interrupted", interruptedException);
+        }
+    }
+
+    /**
+     * @return Number of slots.
+     */
+    public int getSlots() {
+        return this.slots;
+    }
+
+    /**
+     * @return Minimum number of running workers.
+     */
+    public int getMinWorkers() {
+        return this.minWorkers;
+    }
+
+    /**
+     * @return Number of running workers.
+     */
+    public int getRunningWorkers() {
+        synchronized (this.poolLock) {
+            return this.runningWorkers.size();
+        }
+    }
+
+    /**
+     * @return Number of idle workers.
+     */
+    public int getIdleWorkers() {
+        return this.idleWorkers.size();
+    }
+}
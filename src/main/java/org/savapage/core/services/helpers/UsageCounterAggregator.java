@@ -0,0 +1,848 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * In-memory aggregator of usage counter deltas of queues and printers, with
+ * an append-only journal for crash recovery.
+ * <p>
+ * Each {@link #add(Target, Long, Date, Date, long, long, long, long, long)}
+ * is appended to the current journal segment and accumulated, without
+ * blocking other writers, in a cell per (target, id). Besides totals, a cell
+ * holds the counters per day, the time bucket of the rolling day series.
+ * </p>
+ * <p>
+ * A flush {@link #drain()}s the cells into a {@link Batch}, and the journal
+ * is rotated to a new segment. After the batch is committed to the database,
+ * together with its journal sequence number, {@link #commit(Batch)} deletes
+ * the journal segments it covers. When the flush fails the batch is kept and
+ * merged into the next drain. On start, {@link #open(long)} replays the
+ * segments after the committed sequence number.
+ * </p>
+ * <p>
+ * Deltas that are not committed yet can be merged into database values with
+ * {@link #getPending(Target, Long)}, so readers see their own writes.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UsageCounterAggregator {
+
+    /**
+     * The counted entity.
+     */
+    public enum Target {
+        /** An {@code IppQueue}. */
+        QUEUE,
+        /** A {@code Printer}. */
+        PRINTER
+    }
+
+    /**
+     * The counted metric.
+     */
+    public enum Counter {
+        /** */
+        JOBS,
+        /** */
+        PAGES,
+        /** */
+        SHEETS,
+        /** */
+        ESU,
+        /** */
+        BYTES
+    }
+
+    /** */
+    private static final Target[] TARGETS = Target.values();
+
+    /** */
+    private static final int COUNTERS = Counter.values().length;
+
+    /** */
+    private static final String SEGMENT_PREFIX = "usage-";
+
+    /** */
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /**
+     * Record: target, id, usage time, series time, counters, CRC32.
+     */
+    private static final int RECORD_SIZE = 1 + 3 * Long.BYTES
+            + COUNTERS * Long.BYTES + Integer.BYTES;
+
+    /**
+     * Key of a cell.
+     */
+    private static final class CellKey {
+
+        /** */
+        private final Target target;
+
+        /** */
+        private final long id;
+
+        /**
+         * @param target
+         *            The target.
+         * @param id
+         *            The primary database key.
+         */
+        CellKey(final Target target, final long id) {
+            this.target = target;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.target.hashCode() + Long.hashCode(this.id);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof CellKey)) {
+                return false;
+            }
+            final CellKey other = (CellKey) obj;
+            return this.target == other.target && this.id == other.id;
+        }
+    }
+
+    /**
+     * Concurrent accumulator of one (target, id).
+     */
+    private static final class Cell {
+
+        /** */
+        private final LongAdder[] totals = newAdders();
+
+        /** */
+        private final AtomicLong lastUsage = new AtomicLong();
+
+        /**
+         * Counters per day start (epoch millis).
+         */
+        private final ConcurrentHashMap<Long, LongAdder[]> days =
+                new ConcurrentHashMap<>();
+
+        /**
+         * @param usageTime
+         *            Usage time (epoch millis).
+         * @param day
+         *            Day start (epoch millis).
+         * @param values
+         *            Counter values.
+         */
+        void add(final long usageTime, final long day, final long[] values) {
+
+            final LongAdder[] dayAdders =
+                    this.days.computeIfAbsent(day, k -> newAdders());
+
+            for (int i = 0; i < COUNTERS; i++) {
+                if (values[i] != 0) {
+                    this.totals[i].add(values[i]);
+                    dayAdders[i].add(values[i]);
+                }
+            }
+            this.lastUsage.accumulateAndGet(usageTime, Math::max);
+        }
+
+        /**
+         * @param key
+         *            The cell key.
+         * @return Snapshot of the cell.
+         */
+        Delta snapshot(final CellKey key) {
+
+            final long[] sums = new long[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                sums[i] = this.totals[i].sum();
+            }
+
+            final SortedMap<Long, long[]> daySums = new TreeMap<>();
+
+            for (final Map.Entry<Long, LongAdder[]> entry : this.days
+                    .entrySet()) {
+                final long[] values = new long[COUNTERS];
+                for (int i = 0; i < COUNTERS; i++) {
+                    values[i] = entry.getValue()[i].sum();
+                }
+                daySums.put(entry.getKey(), values);
+            }
+            return new Delta(key.target, key.id, sums, this.lastUsage.get(),
+                    daySums);
+        }
+
+        /**
+         * @return New adders.
+         */
+        private static LongAdder[] newAdders() {
+            final LongAdder[] adders = new LongAdder[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+
+    /**
+     * Immutable counter deltas of one (target, id).
+     */
+    public static final class Delta {
+
+        /** */
+        private final Target target;
+
+        /** */
+        private final long id;
+
+        /** */
+        private final long[] totals;
+
+        /** */
+        private final long lastUsage;
+
+        /** */
+        private final SortedMap<Long, long[]> days;
+
+        /**
+         * @param target
+         *            The target.
+         * @param id
+         *            The primary database key.
+         * @param totals
+         *            Total per counter.
+         * @param lastUsage
+         *            Last usage time (epoch millis).
+         * @param days
+         *            Counters per day start.
+         */
+        private Delta(final Target target, final long id, final long[] totals,
+                final long lastUsage, final SortedMap<Long, long[]> days) {
+            this.target = target;
+            this.id = id;
+            this.totals = totals;
+            this.lastUsage = lastUsage;
+            this.days = Collections.unmodifiableSortedMap(days);
+        }
+
+        /**
+         * @return The target.
+         */
+        public Target getTarget() {
+            return this.target;
+        }
+
+        /**
+         * @return The primary database key.
+         */
+        public Long getId() {
+            return Long.valueOf(this.id);
+        }
+
+        /**
+         * @param counter
+         *            The counter.
+         * @return The total delta.
+         */
+        public long get(final Counter counter) {
+            return this.totals[counter.ordinal()];
+        }
+
+        /**
+         * @return The last usage date.
+         */
+        public Date getLastUsage() {
+            return new Date(this.lastUsage);
+        }
+
+        /**
+         * @return The day start dates (ascending).
+         */
+        public List<Date> getDays() {
+            final List<Date> list = new ArrayList<>(this.days.size());
+            for (final Long day : this.days.keySet()) {
+                list.add(new Date(day.longValue()));
+            }
+            return list;
+        }
+
+        /**
+         * @param day
+         *            The day start date, as in {@link #getDays()}.
+         * @param counter
+         *            The counter.
+         * @return The delta of the day.
+         */
+        public long get(final Date day, final Counter counter) {
+            final long[] values = this.days.get(Long.valueOf(day.getTime()));
+            if (values == null) {
+                return 0L;
+            }
+            return values[counter.ordinal()];
+        }
+
+        /**
+         * @param other
+         *            Delta of the same (target, id).
+         * @return The merged delta.
+         */
+        private Delta merge(final Delta other) {
+
+            final long[] sums = new long[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                sums[i] = this.totals[i] + other.totals[i];
+            }
+
+            final SortedMap<Long, long[]> daySums = new TreeMap<>(this.days);
+
+            for (final Map.Entry<Long, long[]> entry : other.days.entrySet()) {
+                final long[] values = entry.getValue().clone();
+                final long[] current = daySums.get(entry.getKey());
+                if (current != null) {
+                    for (int i = 0; i < COUNTERS; i++) {
+                        values[i] += current[i];
+                    }
+                }
+                daySums.put(entry.getKey(), values);
+            }
+            return new Delta(this.target, this.id, sums,
+                    Math.max(this.lastUsage, other.lastUsage), daySums);
+        }
+    }
+
+    /**
+     * Deltas drained for a flush.
+     */
+    public static final class Batch {
+
+        /** */
+        private final List<Delta> deltas;
+
+        /** */
+        private final Map<CellKey, Delta> index;
+
+        /** */
+        private final long journalSeq;
+
+        /**
+         * @param index
+         *            Deltas by cell key.
+         * @param journalSeq
+         *            Highest journal segment covered.
+         */
+        private Batch(final Map<CellKey, Delta> index,
+                final long journalSeq) {
+            final List<Delta> list = new ArrayList<>(index.values());
+            list.sort(DELTA_ORDER);
+            this.deltas = Collections.unmodifiableList(list);
+            this.index = index;
+            this.journalSeq = journalSeq;
+        }
+
+        /**
+         * @return Deltas in (target, id) order, which is the order in which
+         *         entities must be locked.
+         */
+        public List<Delta> getDeltas() {
+            return this.deltas;
+        }
+
+        /**
+         * @return The sequence number of the highest journal segment that is
+         *         covered by this batch.
+         */
+        public long getJournalSeq() {
+            return this.journalSeq;
+        }
+    }
+
+    /** */
+    private static final Comparator<Delta> DELTA_ORDER =
+            Comparator.comparing(Delta::getTarget)
+                    .thenComparingLong(d -> d.id);
+
+    /**
+     * Journal directory, or {@code null} when not journaled.
+     */
+    private final File journalDir;
+
+    /**
+     * Shared by writers, exclusive for {@link #drain()}.
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /** */
+    private final Object journalMutex = new Object();
+
+    /** */
+    private volatile ConcurrentHashMap<CellKey, Cell> cells =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The drained batch that is not committed yet.
+     */
+    private volatile Batch unflushed;
+
+    /** */
+    private FileChannel journal;
+
+    /** */
+    private long journalSeq;
+
+    /**
+     * @param journalDir
+     *            Journal directory, or {@code null} when not journaled.
+     */
+    public UsageCounterAggregator(final File journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    /**
+     * Opens the journal: segments up to the committed sequence number are
+     * deleted, later segments are replayed.
+     *
+     * @param committedSeq
+     *            The sequence number of the last committed segment.
+     * @return The number of replayed records.
+     * @throws IOException
+     *             When journal cannot be read or created.
+     */
+    public int open(final long committedSeq) throws IOException {
+
+        if (this.journalDir == null) {
+            return 0;
+        }
+
+        Files.createDirectories(this.journalDir.toPath());
+
+        final SortedMap<Long, File> segments = this.listSegments();
+
+        long maxSeq = committedSeq;
+        int records = 0;
+
+        for (final Map.Entry<Long, File> entry : segments.entrySet()) {
+            final long seq = entry.getKey().longValue();
+            if (seq <= committedSeq) {
+                Files.deleteIfExists(entry.getValue().toPath());
+            } else {
+                records += this.replay(entry.getValue());
+                maxSeq = Math.max(maxSeq, seq);
+            }
+        }
+
+        synchronized (this.journalMutex) {
+            this.journalSeq = maxSeq + 1;
+            this.journal = this.openSegment(this.journalSeq);
+        }
+        return records;
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException
+     *             When close fails.
+     */
+    public void close() throws IOException {
+        synchronized (this.journalMutex) {
+            if (this.journal != null) {
+                this.journal.force(false);
+                this.journal.close();
+                this.journal = null;
+            }
+        }
+    }
+
+    /**
+     * Adds usage. The addition is journaled before it is accumulated: when
+     * the journal write fails nothing is accumulated.
+     *
+     * @param target
+     *            The target.
+     * @param id
+     *            The primary database key of the target.
+     * @param usageDate
+     *            The usage date.
+     * @param seriesDate
+     *            The time series observation date.
+     * @param jobs
+     *            Number of jobs.
+     * @param pages
+     *            Number of pages.
+     * @param sheets
+     *            Number of sheets.
+     * @param esu
+     *            Number of ESU.
+     * @param bytes
+     *            Number of bytes.
+     * @throws IOException
+     *             When journal write fails.
+     */
+    public void add(final Target target, final Long id, final Date usageDate,
+            final Date seriesDate, final long jobs, final long pages,
+            final long sheets, final long esu, final long bytes)
+            throws IOException {
+
+        final long[] values = new long[COUNTERS];
+        values[Counter.JOBS.ordinal()] = jobs;
+        values[Counter.PAGES.ordinal()] = pages;
+        values[Counter.SHEETS.ordinal()] = sheets;
+        values[Counter.ESU.ordinal()] = esu;
+        values[Counter.BYTES.ordinal()] = bytes;
+
+        final long usageTime = usageDate.getTime();
+        final long seriesTime = seriesDate.getTime();
+
+        this.swapLock.readLock().lock();
+        try {
+            if (this.journalDir != null) {
+                final ByteBuffer buf = encode(target, id.longValue(),
+                        usageTime, seriesTime, values);
+                synchronized (this.journalMutex) {
+                    if (this.journal == null) {
+                        throw new IOException("journal is not open");
+                    }
+                    while (buf.hasRemaining()) {
+                        this.journal.write(buf);
+                    }
+                }
+            }
+            this.accumulate(this.cells, target, id.longValue(), usageTime,
+                    seriesTime, values);
+        } finally {
+            this.swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drains the accumulated deltas, merged with a previous batch that failed
+     * to flush, and rotates the journal.
+     *
+     * @return The batch, or {@code null} when there is nothing to flush.
+     * @throws IOException
+     *             When journal rotation fails.
+     */
+    public Batch drain() throws IOException {
+
+        this.swapLock.writeLock().lock();
+        try {
+            final Batch previous = this.unflushed;
+
+            if (this.cells.isEmpty()) {
+                return previous;
+            }
+
+            final Map<CellKey, Delta> merged = new HashMap<>();
+
+            if (previous != null) {
+                merged.putAll(previous.index);
+            }
+            for (final Map.Entry<CellKey, Cell> entry : this.cells
+                    .entrySet()) {
+                final Delta delta = entry.getValue().snapshot(entry.getKey());
+                merged.merge(entry.getKey(), delta, Delta::merge);
+            }
+
+            long seq = 0L;
+
+            if (this.journalDir != null) {
+                synchronized (this.journalMutex) {
+                    seq = this.journalSeq;
+                    final FileChannel next = this.openSegment(seq + 1);
+                    this.journal.force(false);
+                    this.journal.close();
+                    this.journal = next;
+                    this.journalSeq = seq + 1;
+                }
+            }
+
+            this.unflushed = new Batch(merged, seq);
+            this.cells = new ConcurrentHashMap<>();
+
+            return this.unflushed;
+
+        } finally {
+            this.swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a batch as committed to the database, and deletes the journal
+     * segments it covers.
+     *
+     * @param batch
+     *            The batch from {@link #drain()}.
+     * @throws IOException
+     *             When segments cannot be deleted.
+     */
+    public void commit(final Batch batch) throws IOException {
+
+        this.swapLock.writeLock().lock();
+        try {
+            if (this.unflushed == batch) {
+                this.unflushed = null;
+            }
+        } finally {
+            this.swapLock.writeLock().unlock();
+        }
+
+        if (this.journalDir == null) {
+            return;
+        }
+        for (final Map.Entry<Long, File> entry : this.listSegments()
+                .entrySet()) {
+            if (entry.getKey().longValue() <= batch.journalSeq) {
+                Files.deleteIfExists(entry.getValue().toPath());
+            }
+        }
+    }
+
+    /**
+     * Gets the deltas of a target that are not committed to the database.
+     *
+     * @param target
+     *            The target.
+     * @param id
+     *            The primary database key.
+     * @return The pending delta, or {@code null} when none.
+     */
+    public Delta getPending(final Target target, final Long id) {
+
+        final CellKey key = new CellKey(target, id.longValue());
+
+        Delta pending = null;
+
+        this.swapLock.readLock().lock();
+        try {
+            final Batch batch = this.unflushed;
+            if (batch != null) {
+                pending = batch.index.get(key);
+            }
+            final Cell cell = this.cells.get(key);
+            if (cell != null) {
+                final Delta delta = cell.snapshot(key);
+                if (pending == null) {
+                    pending = delta;
+                } else {
+                    pending = pending.merge(delta);
+                }
+            }
+        } finally {
+            this.swapLock.readLock().unlock();
+        }
+        return pending;
+    }
+
+    /**
+     * @return {@code true} when nothing is pending.
+     */
+    public boolean isEmpty() {
+        return this.unflushed == null && this.cells.isEmpty();
+    }
+
+    /**
+     * Gets the start of the day (time series bucket) of a date.
+     *
+     * @param date
+     *            The date.
+     * @return The day start (epoch millis).
+     */
+    private static long dayStart(final long date) {
+        return DateUtils.truncate(new Date(date), Calendar.DAY_OF_MONTH)
+                .getTime();
+    }
+
+    /**
+     * @param map
+     *            The cells.
+     * @param target
+     *            The target.
+     * @param id
+     *            The primary database key.
+     * @param usageTime
+     *            Usage time.
+     * @param seriesTime
+     *            Time series observation time.
+     * @param values
+     *            Counter values.
+     */
+    private void accumulate(final ConcurrentHashMap<CellKey, Cell> map,
+            final Target target, final long id, final long usageTime,
+            final long seriesTime, final long[] values) {
+        map.computeIfAbsent(new CellKey(target, id), k -> new Cell())
+                .add(usageTime, dayStart(seriesTime), values);
+    }
+
+    /**
+     * @param target
+     *            The target.
+     * @param id
+     *            The primary database key.
+     * @param usageTime
+     *            Usage time.
+     * @param seriesTime
+     *            Time series observation time.
+     * @param values
+     *            Counter values.
+     * @return The encoded record, ready to write.
+     */
+    private static ByteBuffer encode(final Target target, final long id,
+            final long usageTime, final long seriesTime,
+            final long[] values) {
+
+        final ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+
+        buf.put((byte) target.ordinal());
+        buf.putLong(id);
+        buf.putLong(usageTime);
+        buf.putLong(seriesTime);
+        for (final long value : values) {
+            buf.putLong(value);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Replays the records of a journal segment. A torn or corrupt record ends
+     * the replay of the segment.
+     *
+     * @param segment
+     *            The segment file.
+     * @return The number of replayed records.
+     * @throws IOException
+     *             When read error.
+     */
+    private int replay(final File segment) throws IOException {
+
+        final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(segment
+                .toPath()));
+
+        final CRC32 crc = new CRC32();
+        int records = 0;
+
+        while (buf.remaining() >= RECORD_SIZE) {
+
+            final int start = buf.position();
+
+            crc.reset();
+            crc.update(buf.array(), start, RECORD_SIZE - Integer.BYTES);
+
+            final int ordinal = buf.get();
+            final long id = buf.getLong();
+            final long usageTime = buf.getLong();
+            final long seriesTime = buf.getLong();
+            final long[] values = new long[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                values[i] = buf.getLong();
+            }
+            if (buf.getInt() != (int) crc.getValue() || ordinal < 0
+                    || ordinal >= TARGETS.length) {
+                break;
+            }
+            this.accumulate(this.cells, TARGETS[ordinal], id, usageTime,
+                    seriesTime, values);
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * @param seq
+     *            The sequence number.
+     * @return The new segment channel.
+     * @throws IOException
+     *             When file cannot be created.
+     */
+    private FileChannel openSegment(final long seq) throws IOException {
+        return FileChannel.open(
+                new File(this.journalDir,
+                        SEGMENT_PREFIX + seq + SEGMENT_SUFFIX).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return The journal segments by sequence number.
+     */
+    private SortedMap<Long, File> listSegments() {
+
+        final SortedMap<Long, File> segments = new TreeMap<>();
+
+        final File[] files = this.journalDir.listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX)
+                    || !name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            try {
+                segments.put(Long.valueOf(name.substring(
+                        SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())), file);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return segments;
+    }
+
+}
@@ -98,6 +98,11 @@ public final class EmailMsgParms {
      */
     private List<PGPPublicKeyInfo> publicKeyList;
 
+    /**
+     * {@code true} when the message is bulk mail.
+     */
+    private boolean bulk;
+
     /**
      *
      * @return
@@ -265,4 +270,22 @@ public final class EmailMsgParms {
         this.publicKeyList = keyList;
     }
 
+    /**
+     * @return {@code true} when the message is bulk mail, which is sent from
+     *         the outbox after interactive mail.
+     */
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    /**
+     * @param bulk
+     *            {@code true} when the message is bulk mail, which is sent
+     *            from the outbox after interactive mail. Note: PGP encrypted
+     *            mail is always sent as interactive mail.
+     */
+    public void setBulk(final boolean bulk) {
+        this.bulk = bulk;
+    }
+
 }
@@ -0,0 +1,924 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers.email;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeMessage;
+
+import org.savapage.core.circuitbreaker.CircuitBreakerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPSenderFailedException;
+
+/**
+ * Sends the MIME files of the email outbox in parallel, over a bounded pool
+ * of persistent SMTP connections.
+ * <p>
+ * Each sender thread owns one {@link Transport}, which is connected on first
+ * use, kept open between messages, and closed when idle or broken. Messages
+ * are queued in two lanes: interactive messages are always picked before
+ * {@link #BULK_FILE_MARKER bulk} messages.
+ * </p>
+ * <p>
+ * Messages are grouped by the domain of their first recipient. The number of
+ * concurrent sends per domain is bounded, and sends to a domain are paced by
+ * an adaptive interval: a transient (4xx) SMTP reply doubles the interval and
+ * defers the message, a successful send halves it down to its floor.
+ * Permanently failed messages are removed from the outbox, just like sent
+ * ones.
+ * </p>
+ * <p>
+ * A deferred message is retried after at least {@link #RETRY_DELAY_MIN_MSEC},
+ * doubled on each next deferral, so retries span the 5 to 15 minute window of
+ * a greylisting server. A message is given up when it is still deferred after
+ * the retry period, counted from its first deferral.
+ * </p>
+ * <p>
+ * When the {@link Connector} reports a broken circuit, the dispatcher stops
+ * and the remaining files are left in the outbox.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class EmailOutboxDispatcher {
+
+    /**
+     * Connects a new SMTP transport.
+     */
+    public interface Connector {
+
+        /**
+         * @return The connected {@link Transport}.
+         * @throws MessagingException
+         *             When connection failed.
+         * @throws CircuitBreakerException
+         *             When SMTP circuit is broken.
+         * @throws InterruptedException
+         *             When the thread is interrupted.
+         */
+        Transport connect() throws MessagingException,
+                CircuitBreakerException, InterruptedException;
+    }
+
+    /**
+     * Receives the outcome of each message.
+     */
+    public interface Listener {
+
+        /**
+         * @param file
+         *            The MIME file (deleted).
+         * @param msg
+         *            The message sent.
+         */
+        void onSent(Path file, MimeMessage msg);
+
+        /**
+         * @param file
+         *            The MIME file (kept in the outbox).
+         * @param e
+         *            The transient failure.
+         * @param delayMsec
+         *            Milliseconds until retry.
+         */
+        void onDeferred(Path file, MessagingException e, long delayMsec);
+
+        /**
+         * @param file
+         *            The MIME file (deleted).
+         * @param e
+         *            The permanent failure.
+         */
+        void onFailed(Path file, MessagingException e);
+    }
+
+    /**
+     * The file name marker of bulk messages, placed before the file
+     * extension.
+     */
+    public static final String BULK_FILE_MARKER = ".bulk";
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    /**
+     * Domain key used when no recipient domain is found.
+     */
+    private static final String DOMAIN_UNKNOWN = "";
+
+    /**
+     * The minimum interval (milliseconds) after a transient failure.
+     */
+    private static final long BACKOFF_MIN_MSEC = 1000L;
+
+    /**
+     * The minimum delay (milliseconds) before a deferred message is retried:
+     * a greylisting server rejects retries that come too soon.
+     */
+    private static final long RETRY_DELAY_MIN_MSEC = 60000L;
+
+    /**
+     * Max number of times the retry delay of a message is doubled.
+     */
+    private static final int RETRY_DELAY_DOUBLINGS_MAX = 8;
+
+    /**
+     * Milliseconds after which an idle connection is closed.
+     */
+    private static final long IDLE_CLOSE_MSEC = 30000L;
+
+    /**
+     * Lower bound of SMTP transient negative completion replies.
+     */
+    private static final int SMTP_TRANSIENT_MIN = 400;
+
+    /**
+     * Upper bound of SMTP transient negative completion replies.
+     */
+    private static final int SMTP_TRANSIENT_MAX = 499;
+
+    /**
+     * SMTP reply: service not available, closing transmission channel.
+     */
+    private static final int SMTP_SERVICE_CLOSING = 421;
+
+    /**
+     * A queued MIME file.
+     */
+    private static final class Entry {
+
+        /** */
+        private final Path file;
+
+        /** */
+        private final boolean bulk;
+
+        /** */
+        private final String domain;
+
+        /** */
+        private int attempts;
+
+        /**
+         * Time of first deferral, or {@code 0} when not deferred.
+         */
+        private long firstDeferred;
+
+        /** */
+        private long notBefore;
+
+        /**
+         * @param file
+         *            The MIME file.
+         * @param bulk
+         *            {@code true} if bulk message.
+         * @param domain
+         *            The recipient domain.
+         */
+        Entry(final Path file, final boolean bulk, final String domain) {
+            this.file = file;
+            this.bulk = bulk;
+            this.domain = domain;
+        }
+    }
+
+    /**
+     * Concurrency and pacing of a recipient domain.
+     */
+    private static final class Domain {
+
+        /** */
+        private int active;
+
+        /** */
+        private long intervalMsec;
+
+        /** */
+        private long notBefore;
+
+        /**
+         * @param intervalMsec
+         *            The initial send interval.
+         */
+        Domain(final long intervalMsec) {
+            this.intervalMsec = intervalMsec;
+        }
+    }
+
+    /** */
+    private final Connector connector;
+
+    /** */
+    private final Listener listener;
+
+    /** */
+    private final int connections;
+
+    /** */
+    private final int domainConnections;
+
+    /**
+     * The floor of the adaptive send interval per domain.
+     */
+    private long sendIntervalMsec;
+
+    /**
+     * The ceiling of the adaptive send interval per domain.
+     */
+    private long backoffMaxMsec = 300000L;
+
+    /**
+     * Milliseconds after the first deferral of a message when it is given
+     * up.
+     */
+    private long retryPeriodMsec = 3600000L;
+
+    /**
+     * Session for reading MIME files.
+     */
+    private final javax.mail.Session mimeSession =
+            javax.mail.Session.getInstance(new Properties());
+
+    /**
+     * Guards the lanes and domains.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** */
+    private final Condition changed = this.lock.newCondition();
+
+    /** */
+    private final Deque<Entry> interactiveLane = new ArrayDeque<>();
+
+    /** */
+    private final Deque<Entry> bulkLane = new ArrayDeque<>();
+
+    /**
+     * The lanes in order of priority.
+     */
+    private final List<Deque<Entry>> lanes = new ArrayList<>();
+
+    /** */
+    private final Map<String, Domain> domains = new HashMap<>();
+
+    /**
+     * Files that are queued or being sent.
+     */
+    private final Set<Path> known = ConcurrentHashMap.newKeySet();
+
+    /** */
+    private final List<Thread> senders = new ArrayList<>();
+
+    /** */
+    private final AtomicInteger connectCount = new AtomicInteger();
+
+    /** */
+    private int inFlight;
+
+    /** */
+    private volatile boolean stopped;
+
+    /** */
+    private volatile CircuitBreakerException breakerException;
+
+    /**
+     * @param connector
+     *            The {@link Connector}.
+     * @param listener
+     *            The {@link Listener}.
+     * @param connections
+     *            Max number of SMTP connections.
+     * @param domainConnections
+     *            Max number of concurrent sends per recipient domain.
+     */
+    public EmailOutboxDispatcher(final Connector connector,
+            final Listener listener, final int connections,
+            final int domainConnections) {
+        this.connector = connector;
+        this.listener = listener;
+        this.connections = Math.max(1, connections);
+        this.domainConnections = Math.max(1, domainConnections);
+        this.lanes.add(this.interactiveLane);
+        this.lanes.add(this.bulkLane);
+    }
+
+    /**
+     * @param msec
+     *            The floor (milliseconds) of the adaptive send interval per
+     *            domain.
+     */
+    public void setSendIntervalMsec(final long msec) {
+        this.sendIntervalMsec = Math.max(0L, msec);
+    }
+
+    /**
+     * @param msec
+     *            The ceiling (milliseconds) of the adaptive send interval per
+     *            domain.
+     */
+    public void setBackoffMaxMsec(final long msec) {
+        this.backoffMaxMsec = Math.max(BACKOFF_MIN_MSEC, msec);
+    }
+
+    /**
+     * @param msec
+     *            Milliseconds after the first deferral of a message when it is
+     *            given up.
+     */
+    public void setRetryPeriodMsec(final long msec) {
+        this.retryPeriodMsec = Math.max(0L, msec);
+    }
+
+    /**
+     * Starts the sender threads.
+     */
+    public void start() {
+        for (int i = 0; i < this.connections; i++) {
+            final Thread thread = new Thread(this::runSender,
+                    String.format("EmailOutboxSender-%d", i + 1));
+            thread.setDaemon(true);
+            this.senders.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the sender threads, waiting for messages being sent.
+     *
+     * @param waitMsec
+     *            Max milliseconds to wait for each sender.
+     * @throws InterruptedException
+     *             When the thread is interrupted.
+     */
+    public void shutdown(final long waitMsec) throws InterruptedException {
+        this.stop();
+        for (final Thread thread : this.senders) {
+            thread.join(waitMsec);
+        }
+        this.senders.clear();
+    }
+
+    /**
+     * Stops picking messages and wakes up waiting senders.
+     */
+    private void stop() {
+        this.lock.lock();
+        try {
+            this.stopped = true;
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a MIME file, unless it is queued or being sent already.
+     *
+     * @param file
+     *            The MIME file.
+     * @return {@code true} when queued.
+     */
+    public boolean offer(final Path file) {
+
+        if (this.stopped || !this.known.add(file)) {
+            return false;
+        }
+
+        final String domain;
+        try {
+            domain = readDomain(file);
+        } catch (IOException | MessagingException e) {
+            // Vanished or not (yet) readable: a later scan offers it again.
+            this.known.remove(file);
+            return false;
+        }
+
+        final Entry entry = new Entry(file, isBulk(file), domain);
+
+        this.lock.lock();
+        try {
+            this.lane(entry).addLast(entry);
+            this.changed.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * @return The {@link CircuitBreakerException} that stopped this
+     *         dispatcher, or {@code null} when none.
+     */
+    public CircuitBreakerException getBreakerException() {
+        return this.breakerException;
+    }
+
+    /**
+     * @return {@code true} when no messages are queued or being sent.
+     */
+    public boolean isIdle() {
+        this.lock.lock();
+        try {
+            return this.inFlight == 0 && this.interactiveLane.isEmpty()
+                    && this.bulkLane.isEmpty();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of SMTP connections made.
+     */
+    public int getConnectCount() {
+        return this.connectCount.get();
+    }
+
+    /**
+     * @param domain
+     *            The recipient domain.
+     * @return The current send interval (milliseconds) of the domain.
+     */
+    public long getSendIntervalMsec(final String domain) {
+        this.lock.lock();
+        try {
+            final Domain state =
+                    this.domains.get(domain.toLowerCase(Locale.ROOT));
+            if (state == null) {
+                return this.sendIntervalMsec;
+            }
+            return state.intervalMsec;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param file
+     *            The MIME file.
+     * @return {@code true} if file holds a bulk message.
+     */
+    public static boolean isBulk(final Path file) {
+        return file.getFileName().toString()
+                .contains(BULK_FILE_MARKER + ".");
+    }
+
+    /**
+     * Reads the domain of the first recipient from the MIME file headers.
+     *
+     * @param file
+     *            The MIME file.
+     * @return The lower case domain.
+     * @throws IOException
+     *             When file cannot be read.
+     * @throws MessagingException
+     *             When headers cannot be parsed.
+     */
+    private static String readDomain(final Path file)
+            throws IOException, MessagingException {
+
+        final InternetHeaders headers;
+
+        try (InputStream istr = Files.newInputStream(file)) {
+            headers = new InternetHeaders(istr);
+        }
+
+        for (final String name : new String[] { "To", "Cc", "Bcc" }) {
+
+            final String value = headers.getHeader(name, ",");
+
+            if (value == null) {
+                continue;
+            }
+            try {
+                for (final InternetAddress address : InternetAddress
+                        .parseHeader(value, false)) {
+                    final String addr = address.getAddress();
+                    final int i = addr == null ? -1 : addr.lastIndexOf('@');
+                    if (i >= 0) {
+                        return addr.substring(i + 1).toLowerCase(Locale.ROOT);
+                    }
+                }
+            } catch (AddressException e) {
+                LOGGER.warn("{}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+        return DOMAIN_UNKNOWN;
+    }
+
+    /**
+     * @param entry
+     *            The entry.
+     * @return The lane of the entry.
+     */
+    private Deque<Entry> lane(final Entry entry) {
+        if (entry.bulk) {
+            return this.bulkLane;
+        }
+        return this.interactiveLane;
+    }
+
+    /**
+     * Takes the next message that may be sent now: interactive before bulk,
+     * and within the concurrency and pacing of its domain.
+     *
+     * @param maxWaitMsec
+     *            Max milliseconds to wait.
+     * @return The entry, or {@code null} when stopped or wait time elapsed.
+     * @throws InterruptedException
+     *             When the thread is interrupted.
+     */
+    private Entry take(final long maxWaitMsec) throws InterruptedException {
+
+        final long deadline = System.currentTimeMillis() + maxWaitMsec;
+
+        this.lock.lock();
+        try {
+            while (!this.stopped) {
+
+                final long now = System.currentTimeMillis();
+                long wakeUp = deadline;
+
+                for (final Deque<Entry> lane : this.lanes) {
+
+                    final Iterator<Entry> iter = lane.iterator();
+
+                    while (iter.hasNext()) {
+
+                        final Entry entry = iter.next();
+                        final Domain domain = this.domain(entry.domain);
+
+                        if (domain.active >= this.domainConnections) {
+                            continue;
+                        }
+
+                        final long notBefore =
+                                Math.max(entry.notBefore, domain.notBefore);
+
+                        if (notBefore > now) {
+                            wakeUp = Math.min(wakeUp, notBefore);
+                            continue;
+                        }
+
+                        iter.remove();
+                        domain.active++;
+                        domain.notBefore = now + domain.intervalMsec;
+                        this.inFlight++;
+                        return entry;
+                    }
+                }
+
+                if (now >= deadline) {
+                    return null;
+                }
+                this.changed.await(wakeUp - now, TimeUnit.MILLISECONDS);
+            }
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param name
+     *            The domain name.
+     * @return The domain state (created when not present).
+     */
+    private Domain domain(final String name) {
+        return this.domains.computeIfAbsent(name,
+                k -> new Domain(this.sendIntervalMsec));
+    }
+
+    /**
+     * Gets the retry delay of a deferred entry: {@link #RETRY_DELAY_MIN_MSEC}
+     * doubled for each earlier deferral, at least the send interval of its
+     * domain, and at most the backoff ceiling.
+     *
+     * @param entry
+     *            The deferred entry.
+     * @param domain
+     *            The domain of the entry.
+     * @return The delay in milliseconds.
+     */
+    private long getRetryDelay(final Entry entry, final Domain domain) {
+
+        final int doublings =
+                Math.min(entry.attempts - 1, RETRY_DELAY_DOUBLINGS_MAX);
+
+        return Math.min(this.backoffMaxMsec, Math.max(domain.intervalMsec,
+                RETRY_DELAY_MIN_MSEC << doublings));
+    }
+
+    /**
+     * Finishes an entry taken by {@link #take(long)}.
+     *
+     * @param entry
+     *            The entry.
+     * @param transientFailure
+     *            {@code true} when a transient failure occurred: the pace of
+     *            the domain is decreased, and the entry is queued again after
+     *            its retry delay. If {@code false}, the pace of the domain is
+     *            increased.
+     * @return The milliseconds until retry when queued again, or {@code -1}
+     *         when not.
+     */
+    private long finish(final Entry entry, final boolean transientFailure) {
+
+        this.lock.lock();
+        try {
+            final Domain domain = this.domain(entry.domain);
+
+            domain.active--;
+            this.inFlight--;
+
+            long delay = -1;
+
+            if (transientFailure) {
+                domain.intervalMsec = Math.min(this.backoffMaxMsec,
+                        Math.max(BACKOFF_MIN_MSEC, 2 * domain.intervalMsec));
+
+                delay = this.getRetryDelay(entry, domain);
+
+                final long now = System.currentTimeMillis();
+                domain.notBefore = now + domain.intervalMsec;
+
+                if (!this.stopped) {
+                    entry.notBefore = now + delay;
+                    this.lane(entry).addLast(entry);
+                }
+            } else {
+                domain.intervalMsec = Math.max(this.sendIntervalMsec,
+                        domain.intervalMsec / 2);
+            }
+
+            if (delay < 0 || this.stopped) {
+                this.known.remove(entry.file);
+            }
+            this.changed.signalAll();
+            return delay;
+
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * The sender loop, each sender owning one connection.
+     */
+    private void runSender() {
+
+        Transport transport = null;
+
+        try {
+            while (!this.stopped) {
+
+                final Entry entry = this.take(IDLE_CLOSE_MSEC);
+
+                if (entry == null) {
+                    transport = closeQuietly(transport);
+                    continue;
+                }
+
+                try {
+                    if (transport == null) {
+                        transport = this.connector.connect();
+                        this.connectCount.incrementAndGet();
+                    }
+                    transport = this.send(transport, entry);
+
+                } catch (CircuitBreakerException e) {
+                    this.breakerException = e;
+                    this.stop();
+                    this.finish(entry, false);
+                } catch (MessagingException e) {
+                    transport = closeQuietly(transport);
+                    this.defer(entry, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    /**
+     * Sends an entry.
+     *
+     * @param transport
+     *            The connected transport.
+     * @param entry
+     *            The entry.
+     * @return The transport, or {@code null} when it was closed.
+     */
+    private Transport send(final Transport transport, final Entry entry) {
+
+        final MimeMessage msg;
+
+        try (InputStream istr = Files.newInputStream(entry.file)) {
+            msg = new MimeMessage(this.mimeSession, istr);
+        } catch (NoSuchFileException e) {
+            // Vanished: nothing to send.
+            this.finish(entry, false);
+            return transport;
+        } catch (IOException | MessagingException e) {
+            /*
+             * Unreadable or malformed: remove, so the file is not offered
+             * again by every scan.
+             */
+            LOGGER.warn("{}: {}", entry.file.getFileName(), e.getMessage());
+            this.complete(entry);
+            if (e instanceof MessagingException) {
+                this.listener.onFailed(entry.file, (MessagingException) e);
+            } else {
+                this.listener.onFailed(entry.file,
+                        new MessagingException(e.getMessage(), e));
+            }
+            return transport;
+        }
+
+        try {
+            transport.sendMessage(msg, msg.getAllRecipients());
+            this.complete(entry);
+            this.listener.onSent(entry.file, msg);
+            return transport;
+
+        } catch (SendFailedException e) {
+
+            final int code = getReturnCode(e);
+            final Address[] sent = e.getValidSentAddresses();
+
+            if (sent != null && sent.length > 0) {
+                // Partly delivered: a retry would duplicate.
+                this.complete(entry);
+                this.listener.onFailed(entry.file, e);
+                return transport;
+            }
+
+            if (code == SMTP_SERVICE_CLOSING) {
+                this.defer(entry, e);
+                return closeQuietly(transport);
+            }
+
+            if (code >= SMTP_TRANSIENT_MIN && code <= SMTP_TRANSIENT_MAX) {
+                this.defer(entry, e);
+            } else {
+                this.complete(entry);
+                this.listener.onFailed(entry.file, e);
+            }
+            return transport;
+
+        } catch (MessagingException e) {
+            // Connection level failure: reconnect for the next message.
+            this.defer(entry, e);
+            return closeQuietly(transport);
+        }
+    }
+
+    /**
+     * Removes the file of a sent or permanently failed entry.
+     *
+     * @param entry
+     *            The entry.
+     */
+    private void complete(final Entry entry) {
+        try {
+            Files.deleteIfExists(entry.file);
+        } catch (IOException e) {
+            LOGGER.error("{}: {}", entry.file.getFileName(), e.getMessage());
+        }
+        this.finish(entry, false);
+    }
+
+    /**
+     * Defers an entry after a transient failure, or gives it up when the
+     * retry period since its first deferral has passed.
+     *
+     * @param entry
+     *            The entry.
+     * @param e
+     *            The failure.
+     */
+    private void defer(final Entry entry, final MessagingException e) {
+
+        final long now = System.currentTimeMillis();
+
+        if (entry.firstDeferred == 0) {
+            entry.firstDeferred = now;
+        }
+        entry.attempts++;
+
+        if (now - entry.firstDeferred >= this.retryPeriodMsec) {
+            this.complete(entry);
+            this.listener.onFailed(entry.file, e);
+            return;
+        }
+
+        final long delay = this.finish(entry, true);
+
+        if (delay >= 0) {
+            this.listener.onDeferred(entry.file, e, delay);
+        }
+    }
+
+    /**
+     * Gets the SMTP reply code of a send failure.
+     *
+     * @param e
+     *            The exception.
+     * @return The reply code, or {@code -1} when unknown.
+     */
+    private static int getReturnCode(final MessagingException e) {
+
+        Exception ex = e;
+
+        while (ex != null) {
+            if (ex instanceof SMTPSendFailedException) {
+                return ((SMTPSendFailedException) ex).getReturnCode();
+            }
+            if (ex instanceof SMTPAddressFailedException) {
+                return ((SMTPAddressFailedException) ex).getReturnCode();
+            }
+            if (ex instanceof SMTPSenderFailedException) {
+                return ((SMTPSenderFailedException) ex).getReturnCode();
+            }
+            if (ex instanceof MessagingException) {
+                ex = ((MessagingException) ex).getNextException();
+            } else {
+                ex = null;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param transport
+     *            The transport (can be {@code null}).
+     * @return {@code null}.
+     */
+    private static Transport closeQuietly(final Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // no code intended
+            }
+        }
+        return null;
+    }
+}
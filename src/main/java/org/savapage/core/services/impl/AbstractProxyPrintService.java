@@ -136,6 +136,8 @@ import org.savapage.core.json.rpc.JsonRpcMethodResult;
 import org.savapage.core.json.rpc.impl.ParamsPrinterSnmp;
 import org.savapage.core.json.rpc.impl.ResultAttribute;
 import org.savapage.core.json.rpc.impl.ResultPrinterSnmp;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
 import org.savapage.core.msg.UserMsgIndicator;
 import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
 import org.savapage.core.pdf.PdfCreateInfo;
@@ -155,6 +157,7 @@ import org.savapage.core.print.proxy.ProxyPrinterOptGroupEnum;
 import org.savapage.core.print.proxy.TicketJobSheetDto;
 import org.savapage.core.services.ProxyPrintService;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.AccountLedger;
 import org.savapage.core.services.helpers.AccountTrxInfoSet;
 import org.savapage.core.services.helpers.DocContentPrintInInfo;
 import org.savapage.core.services.helpers.ExternalSupplierInfo;
@@ -204,6 +207,24 @@ public abstract class AbstractProxyPrintService extends AbstractService
     private static final Logger LOGGER =
             LoggerFactory.getLogger(AbstractProxyPrintService.class);
 
+    /**
+     * Wait time for the user row lock when committing a routed print.
+     */
+    private static final LatencyHistogram METRIC_USER_LOCK_WAIT =
+            MetricsRegistry.instance().histogram(
+                    "proxy_print_user_lock_wait_seconds",
+                    "Wait time for the user row lock when committing a "
+                            + "proxy print.");
+
+    /**
+     * Hold time of the user row lock when committing a routed print.
+     */
+    private static final LatencyHistogram METRIC_USER_LOCK_HOLD =
+            MetricsRegistry.instance().histogram(
+                    "proxy_print_user_lock_hold_seconds",
+                    "Hold time of the user row lock when committing a "
+                            + "proxy print.");
+
     /**
      *
      * @author Rijk Ravestein
@@ -2803,7 +2824,7 @@ public abstract class AbstractProxyPrintService extends AbstractService
     public final ProxyPrintOutboxResult proxyPrintOutbox(final Device reader,
             final String cardNumber) throws ProxyPrintException {
 
-        final Date perfStartTime = PerformanceLogger.startTime();
+        final long perfStartTime = PerformanceLogger.startTime();
 
         /*
          * Make sure the CUPS printer is cached.
@@ -2910,7 +2931,7 @@ public abstract class AbstractProxyPrintService extends AbstractService
     public final int proxyPrintInboxFast(final Device reader,
             final String cardNumber) throws ProxyPrintException {
 
-        final Date perfStartTime = PerformanceLogger.startTime();
+        final long perfStartTime = PerformanceLogger.startTime();
 
         final User cardUser = getValidateUserOfCard(cardNumber);
 
@@ -3118,11 +3139,44 @@ public abstract class AbstractProxyPrintService extends AbstractService
         final Account account = accountingService()
                 .lazyGetUserAccount(user, AccountTypeEnum.USER).getAccount();
 
-        if (!accountingService().isBalanceSufficient(account, totalCost)) {
+        final AccountLedger.Escrow escrow =
+                accountingService().reserveBalance(account, totalCost);
+
+        if (escrow == null) {
             throw new ProxyPrintException("User [" + user.getUserId()
                     + "] has insufficient balance for proxy printing.");
         }
 
+        try {
+            this.proxyPrintInboxFastReqs(user, printer, printReqList);
+        } finally {
+            accountingService().releaseBalance(escrow);
+        }
+
+        PerformanceLogger.log(this.getClass(), "proxyPrintInboxFast",
+                perfStartTime, user.getUserId());
+
+        return nPagesTot;
+    }
+
+    /**
+     * Proxy prints Fast Print requests, while the total cost is reserved on
+     * the user account.
+     *
+     * @param user
+     *            The user.
+     * @param printer
+     *            The printer.
+     * @param printReqList
+     *            The requests.
+     * @throws ProxyPrintException
+     *             When printing fails.
+     */
+    private void proxyPrintInboxFastReqs(final User user,
+            final Printer printer,
+            final List<ProxyPrintInboxReq> printReqList)
+            throws ProxyPrintException {
+
         /*
          * PaperCut print status monitoring?
          */
@@ -3174,11 +3228,6 @@ public abstract class AbstractProxyPrintService extends AbstractService
                                 + user.getUserId() + "].");
             }
         }
-
-        PerformanceLogger.log(this.getClass(), "proxyPrintInboxFast",
-                perfStartTime, user.getUserId());
-
-        return nPagesTot;
     }
 
     @Override
@@ -3313,9 +3362,47 @@ public abstract class AbstractProxyPrintService extends AbstractService
             }
         }
 
-        /*
-         * Proxy Print Transaction.
-         */
+        try {
+            if (printReq.getPrintMode() == PrintModeEnum.HOLD) {
+                this.proxyPrintHold(user, printer, isJobTicketPrinter,
+                        printReq, printInInfo, fileToPrint);
+            } else {
+                this.proxyPrintPdfPhased(user, printReq,
+                        new PdfCreateInfo(fileToPrint));
+            }
+        } catch (DocStoreException | IppConnectException | IOException e) {
+            throw new ProxyPrintException(e.getMessage(), e);
+        } finally {
+            if (downloadedFileConverted != null) {
+                downloadedFileConverted.delete();
+            }
+        }
+    }
+
+    /**
+     * Puts a routed print-in document on hold, in the outbox or as Job
+     * Ticket, in a transaction with the user locked.
+     *
+     * @param user
+     *            The requesting {@link User}.
+     * @param printer
+     *            The target printer.
+     * @param isJobTicketPrinter
+     *            {@code true} when target is a Job Ticket printer.
+     * @param printReq
+     *            The {@link ProxyPrintDocReq}.
+     * @param printInInfo
+     *            The print-in information.
+     * @param fileToPrint
+     *            The PDF file to print.
+     * @throws IOException
+     *             When IO error.
+     */
+    private void proxyPrintHold(final User user, final Printer printer,
+            final boolean isJobTicketPrinter, final ProxyPrintDocReq printReq,
+            final DocContentPrintInInfo printInInfo, final File fileToPrint)
+            throws IOException {
+
         ReadWriteLockEnum.DATABASE_READONLY.setReadLock(true);
 
         final DaoContext daoContext = ServiceContext.getDaoContext();
@@ -3325,49 +3412,180 @@ public abstract class AbstractProxyPrintService extends AbstractService
 
             final User lockedUser = userService().lockUser(user.getId());
 
-            if (printReq.getPrintMode() == PrintModeEnum.HOLD) {
+            final ProxyPrintCostDto costResult = accountingService()
+                    .calcProxyPrintCost(ServiceContext.getLocale(),
+                            ServiceContext.getAppCurrencySymbol(), lockedUser,
+                            printer, printReq.createProxyPrintCostParms(null),
+                            printReq.getJobChunkInfo());
 
-                final ProxyPrintCostDto costResult = accountingService()
-                        .calcProxyPrintCost(ServiceContext.getLocale(),
-                                ServiceContext.getAppCurrencySymbol(),
-                                lockedUser, printer,
-                                printReq.createProxyPrintCostParms(null),
-                                printReq.getJobChunkInfo());
+            printReq.setCostResult(costResult);
 
-                printReq.setCostResult(costResult);
-
-                final PdfCreateInfo createInfo = new PdfCreateInfo(fileToPrint);
-
-                if (isJobTicketPrinter) {
-                    final int hours = 4; // TODO
-                    jobTicketService().proxyPrintPdf(lockedUser, printReq,
-                            createInfo, printInInfo,
-                            DateUtils.addHours(
-                                    ServiceContext.getTransactionDate(), hours),
-                            null);
-                } else {
-                    outboxService().proxyPrintPdf(lockedUser, printReq,
-                            createInfo, printInInfo);
-                }
-                // Refresh User Web App with new status information.
-                UserMsgIndicator.write(lockedUser.getUserId(), new Date(),
-                        UserMsgIndicator.Msg.PRINT_OUT_HOLD, null);
+            final PdfCreateInfo createInfo = new PdfCreateInfo(fileToPrint);
 
+            if (isJobTicketPrinter) {
+                final int hours = 4; // TODO
+                jobTicketService().proxyPrintPdf(lockedUser, printReq,
+                        createInfo, printInInfo,
+                        DateUtils.addHours(ServiceContext.getTransactionDate(),
+                                hours),
+                        null);
             } else {
-                this.proxyPrintPdf(lockedUser, printReq,
-                        new PdfCreateInfo(fileToPrint));
+                outboxService().proxyPrintPdf(lockedUser, printReq,
+                        createInfo, printInInfo);
             }
+            // Refresh User Web App with new status information.
+            UserMsgIndicator.write(lockedUser.getUserId(), new Date(),
+                    UserMsgIndicator.Msg.PRINT_OUT_HOLD, null);
 
             daoContext.commit();
 
-        } catch (DocStoreException | IppConnectException | IOException e) {
-            throw new ProxyPrintException(e.getMessage(), e);
         } finally {
             daoContext.rollback();
             ReadWriteLockEnum.DATABASE_READONLY.setReadLock(false);
+        }
+    }
 
-            if (downloadedFileConverted != null) {
-                downloadedFileConverted.delete();
+    /**
+     * Proxy prints a single PDF file in three phases, so the {@link User} row
+     * lock and the database transaction do not cover network and file I/O.
+     * <ol>
+     * <li>Prepare: validate printer access, calculate cost and create the
+     * {@link DocLog}. No database changes are made.</li>
+     * <li>Side effects: send the PDF to CUPS and copy it to the document
+     * store, outside any transaction.</li>
+     * <li>Commit: lock the {@link User} and persist the {@link DocLog} with
+     * its accounting in a short transaction.</li>
+     * </ol>
+     * When the side effects or the commit fail, compensating actions undo the
+     * side effects: the CUPS job is cancelled and the document is removed from
+     * the document store.
+     *
+     * @param user
+     *            The requesting {@link User}.
+     * @param request
+     *            The {@link ProxyPrintDocReq}.
+     * @param createInfo
+     *            The {@link PdfCreateInfo} with the PDF file to print.
+     * @throws IppConnectException
+     *             When CUPS connection is broken.
+     * @throws ProxyPrintException
+     *             When printer access is denied.
+     * @throws DocStoreException
+     *             When print archiving errors.
+     */
+    private void proxyPrintPdfPhased(final User user,
+            final ProxyPrintDocReq request, final PdfCreateInfo createInfo)
+            throws IppConnectException, ProxyPrintException, DocStoreException {
+
+        final DocLog docLog =
+                this.prepareProxyPrintPdf(user, request, createInfo);
+
+        boolean isCommitted = false;
+
+        try {
+            if (!this.print(request, user.getUserId(), createInfo, docLog)) {
+                this.setProxyPrinterNotFound(request);
+                return;
+            }
+
+            ReadWriteLockEnum.DATABASE_READONLY.setReadLock(true);
+
+            final DaoContext daoContext = ServiceContext.getDaoContext();
+
+            long lockHoldStart = 0L;
+            boolean isLocked = false;
+
+            try {
+                daoContext.beginTransaction();
+
+                final long lockWaitStart = System.nanoTime();
+
+                final User lockedUser = userService().lockUser(user.getId());
+
+                lockHoldStart = System.nanoTime();
+                isLocked = true;
+                METRIC_USER_LOCK_WAIT.record(lockHoldStart - lockWaitStart);
+
+                this.commitProxyPrint(lockedUser, request, docLog);
+
+                daoContext.commit();
+                isCommitted = true;
+            } finally {
+                daoContext.rollback();
+                if (isLocked) {
+                    METRIC_USER_LOCK_HOLD.recordSince(lockHoldStart);
+                }
+                ReadWriteLockEnum.DATABASE_READONLY.setReadLock(false);
+            }
+
+        } finally {
+            if (!isCommitted && docLog.getDocOut().getPrintOut() != null
+                    && !this.isDocLogPersisted(user, docLog)) {
+                this.compensateProxyPrint(docLog);
+            }
+        }
+    }
+
+    /**
+     * Checks if a {@link DocLog} is persisted in the database.
+     *
+     * @param user
+     *            The {@link User} of the {@link DocLog}.
+     * @param docLog
+     *            The {@link DocLog}.
+     * @return {@code true} when persisted, {@code false} when not persisted
+     *         or when the lookup failed.
+     */
+    private boolean isDocLogPersisted(final User user, final DocLog docLog) {
+        try {
+            return docLogDAO().findByUuid(user.getId(),
+                    docLog.getUuid()) != null;
+        } catch (RuntimeException e) {
+            LOGGER.error("DocLog [{}] lookup failed: {}", docLog.getUuid(),
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Undoes the side effects of a proxy print that could not be committed:
+     * cancels the CUPS job, and removes the document from the document
+     * stores. Errors are logged, not thrown.
+     *
+     * @param docLog
+     *            The {@link DocLog} that was not persisted.
+     */
+    private void compensateProxyPrint(final DocLog docLog) {
+
+        final PrintOut printOut = docLog.getDocOut().getPrintOut();
+
+        if (printOut.getCupsJobId() != null) {
+            try {
+                if (this.cancelPrintJob(printOut)) {
+                    LOGGER.warn("CUPS job [{}] on [{}] cancelled.",
+                            printOut.getCupsJobId(),
+                            printOut.getPrinter().getPrinterName());
+                } else {
+                    LOGGER.error("CUPS job [{}] on [{}] NOT cancelled.",
+                            printOut.getCupsJobId(),
+                            printOut.getPrinter().getPrinterName());
+                }
+            } catch (IppConnectException | RuntimeException e) {
+                LOGGER.error("CUPS job [{}] cancel failed: {}",
+                        printOut.getCupsJobId(), e.getMessage());
+            }
+        }
+
+        for (final DocStoreTypeEnum store : DocStoreTypeEnum.values()) {
+            try {
+                if (docStoreService().isDocPresent(store,
+                        DocStoreBranchEnum.OUT_PRINT, docLog)) {
+                    docStoreService().remove(store,
+                            DocStoreBranchEnum.OUT_PRINT, docLog);
+                }
+            } catch (DocStoreException | RuntimeException e) {
+                LOGGER.error("{} [{}] removal failed: {}", store,
+                        docLog.getUuid(), e.getMessage());
             }
         }
     }
@@ -3582,33 +3800,58 @@ public abstract class AbstractProxyPrintService extends AbstractService
          * Print the PDF file.
          */
         if (this.print(request, userid, createInfo, docLog)) {
+            this.commitProxyPrint(lockedUser, request, docLog);
+        } else {
+            this.setProxyPrinterNotFound(request);
+        }
+    }
 
-            if (request instanceof ProxyPrintInboxReq) {
-                request.setClearedObjects(this.clearInbox(lockedUser,
-                        (ProxyPrintInboxReq) request));
-            } else {
-                request.setClearedObjects(0);
-            }
+    /**
+     * Logs a printed {@link DocLog}: clears the inbox when needed, persists
+     * the {@link DocLog} with its accounting, and publishes the event.
+     *
+     * @param lockedUser
+     *            The requesting {@link User}, which should be locked.
+     * @param request
+     *            The {@link AbstractProxyPrintReq}.
+     * @param docLog
+     *            The {@link DocLog} of the printed document.
+     */
+    private void commitProxyPrint(final User lockedUser,
+            final AbstractProxyPrintReq request, final DocLog docLog) {
 
-            docLogService().logDocOut(lockedUser, docLog.getDocOut(),
-                    request.getAccountTrxInfoSet());
+        if (request instanceof ProxyPrintInboxReq) {
+            request.setClearedObjects(
+                    this.clearInbox(lockedUser, (ProxyPrintInboxReq) request));
+        } else {
+            request.setClearedObjects(0);
+        }
 
-            request.setStatus(ProxyPrintInboxReq.Status.PRINTED);
+        docLogService().logDocOut(lockedUser, docLog.getDocOut(),
+                request.getAccountTrxInfoSet());
 
-            publishProxyPrintEvent(lockedUser, request, docLog);
+        request.setStatus(ProxyPrintInboxReq.Status.PRINTED);
 
-        } else {
-            final String userMsgKey = "msg-printer-not-found";
-            final String userMsg = localize(request.getLocale(), userMsgKey,
-                    request.getPrinterName());
+        publishProxyPrintEvent(lockedUser, request, docLog);
+    }
 
-            request.setStatus(
-                    ProxyPrintInboxReq.Status.ERROR_PRINTER_NOT_FOUND);
-            request.setUserMsgKey(userMsgKey);
-            request.setUserMsg(userMsg);
+    /**
+     * Sets the printer-not-found status and message on the request.
+     *
+     * @param request
+     *            The {@link AbstractProxyPrintReq}.
+     */
+    private void setProxyPrinterNotFound(final AbstractProxyPrintReq request) {
 
-            LOGGER.error(userMsg);
-        }
+        final String userMsgKey = "msg-printer-not-found";
+        final String userMsg = localize(request.getLocale(), userMsgKey,
+                request.getPrinterName());
+
+        request.setStatus(ProxyPrintInboxReq.Status.ERROR_PRINTER_NOT_FOUND);
+        request.setUserMsgKey(userMsgKey);
+        request.setUserMsg(userMsg);
+
+        LOGGER.error(userMsg);
     }
 
     @Override
@@ -3616,12 +3859,38 @@ public abstract class AbstractProxyPrintService extends AbstractService
             final ProxyPrintDocReq request, final PdfCreateInfo createInfo)
             throws IppConnectException, ProxyPrintException, DocStoreException {
 
+        final DocLog docLog =
+                this.prepareProxyPrintPdf(lockedUser, request, createInfo);
+        /*
+         * Finally, proxy print.
+         */
+        proxyPrint(lockedUser, request, docLog, createInfo);
+    }
+
+    /**
+     * Validates printer access, calculates the cost and creates the
+     * {@link DocLog} of a single PDF proxy print. No database changes are
+     * made.
+     *
+     * @param user
+     *            The requesting {@link User}.
+     * @param request
+     *            The {@link ProxyPrintDocReq}.
+     * @param createInfo
+     *            The {@link PdfCreateInfo} with the PDF file to print.
+     * @return The {@link DocLog} to persist after printing.
+     * @throws ProxyPrintException
+     *             When printer access is denied.
+     */
+    private DocLog prepareProxyPrintPdf(final User user,
+            final ProxyPrintDocReq request, final PdfCreateInfo createInfo)
+            throws ProxyPrintException {
         /*
          * Get access to the printer.
          */
         final String printerName = request.getPrinterName();
 
-        final Printer printer = this.getValidateProxyPrinterAccess(lockedUser,
+        final Printer printer = this.getValidateProxyPrinterAccess(user,
                 printerName, ServiceContext.getTransactionDate());
         /*
          * Calculate and validate cost.
@@ -3648,8 +3917,8 @@ public abstract class AbstractProxyPrintService extends AbstractService
 
         final ProxyPrintCostDto costResult = accountingService()
                 .calcProxyPrintCost(ServiceContext.getLocale(),
-                        ServiceContext.getAppCurrencySymbol(), lockedUser,
-                        printer, costParms, request.getJobChunkInfo());
+                        ServiceContext.getAppCurrencySymbol(), user, printer,
+                        costParms, request.getJobChunkInfo());
 
         request.setCostResult(costResult);
 
@@ -3676,16 +3945,13 @@ public abstract class AbstractProxyPrintService extends AbstractService
         createInfo.setUuidPageCount(uuidPageCount);
 
         try {
-            docLogService().collectData4DocOut(lockedUser, docLog, createInfo,
+            docLogService().collectData4DocOut(user, docLog, createInfo,
                     uuidPageCount);
         } catch (IOException e) {
             throw new SpException(e.getMessage());
         }
 
-        /*
-         * Finally, proxy print.
-         */
-        proxyPrint(lockedUser, request, docLog, createInfo);
+        return docLog;
     }
 
     @Override
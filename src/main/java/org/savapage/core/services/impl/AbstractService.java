@@ -62,6 +62,7 @@ import org.savapage.core.json.rpc.JsonRpcMethodError;
 import org.savapage.core.json.rpc.JsonRpcMethodResult;
 import org.savapage.core.services.AccessControlService;
 import org.savapage.core.services.AccountVoucherService;
+import org.savapage.core.services.AccountLedgerService;
 import org.savapage.core.services.AccountingService;
 import org.savapage.core.services.AppLogService;
 import org.savapage.core.services.DeviceService;
@@ -77,6 +78,7 @@ import org.savapage.core.services.ProxyPrintService;
 import org.savapage.core.services.QueueService;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.SnmpRetrieveService;
+import org.savapage.core.services.UsageCounterService;
 import org.savapage.core.services.UserGroupService;
 import org.savapage.core.services.UserService;
 import org.savapage.core.util.Messages;
@@ -93,6 +95,10 @@ public abstract class AbstractService {
         return ServiceContext.getServiceFactory().getAccessControlService();
     }
 
+    protected static AccountLedgerService accountLedgerService() {
+        return ServiceContext.getServiceFactory().getAccountLedgerService();
+    }
+
     protected static AccountingService accountingService() {
         return ServiceContext.getServiceFactory().getAccountingService();
     }
@@ -161,6 +167,10 @@ public abstract class AbstractService {
         return ServiceContext.getServiceFactory().getQueueService();
     }
 
+    protected static UsageCounterService usageCounterService() {
+        return ServiceContext.getServiceFactory().getUsageCounterService();
+    }
+
     protected static UserService userService() {
         return ServiceContext.getServiceFactory().getUserService();
     }
@@ -25,6 +25,7 @@
 package org.savapage.core.services.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,8 @@ import org.savapage.core.jpa.UserGroup;
 import org.savapage.core.jpa.UserGroupAttr;
 import org.savapage.core.services.AccessControlService;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.EffectiveAclCache;
+import org.savapage.core.util.DateUtil;
 import org.savapage.core.util.JsonHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +74,250 @@ public final class AccessControlServiceImpl extends AbstractService
     private static final EnumSet<ACLRoleEnum> TOP_INDETERMINATE_GRANTED =
             EnumSet.of(ACLRoleEnum.PRINT_CREATOR);
 
+    /**
+     * The effective ACL cache.
+     */
+    private static final EffectiveAclCache ACL_CACHE =
+            EffectiveAclCache.instance();
+
+    /**
+     * Loads ACL levels from the database.
+     */
+    private final class DbAclLoader implements EffectiveAclCache.Loader {
+
+        @Override
+        public EffectiveAclCache.Acl loadUserAcl(final Long userDbKey) {
+            return EffectiveAclCache.Acl.create(getUserRoles(userDbKey),
+                    getUserOids(userDbKey, UserAttrEnum.ACL_OIDS_USER),
+                    getUserOids(userDbKey, UserAttrEnum.ACL_OIDS_ADMIN));
+        }
+
+        @Override
+        public List<Long> loadGroupKeys(final Long userDbKey) {
+
+            final UserGroupMemberDao.UserFilter filter =
+                    new UserGroupMemberDao.UserFilter();
+
+            filter.setUserId(userDbKey);
+
+            final List<UserGroup> groupList =
+                    userGroupMemberDAO().getGroupChunk(filter, null, null,
+                            UserGroupMemberDao.GroupField.GROUP_NAME, true);
+
+            final List<Long> keys = new ArrayList<>(groupList.size());
+            for (final UserGroup group : groupList) {
+                keys.add(group.getId());
+            }
+            return keys;
+        }
+
+        @Override
+        public EffectiveAclCache.Acl loadGroupAcl(final Long groupDbKey) {
+
+            final UserGroup group = userGroupDAO().findById(groupDbKey);
+
+            if (group == null) {
+                return EffectiveAclCache.Acl.EMPTY;
+            }
+            return EffectiveAclCache.Acl.create(getGroupRoles(group),
+                    getGroupOids(group, UserGroupAttrEnum.ACL_OIDS_USER),
+                    getGroupOids(group, UserGroupAttrEnum.ACL_OIDS_ADMIN));
+        }
+
+        @Override
+        public Long getImplicitGroupKey(final boolean internalUser) {
+            final UserGroup group;
+            if (internalUser) {
+                group = userGroupService().getInternalUserGroup();
+            } else {
+                group = userGroupService().getExternalUserGroup();
+            }
+            if (group == null) {
+                return null;
+            }
+            return group.getId();
+        }
+
+        @Override
+        public Long getAllUserGroupKey() {
+            final UserGroup group = userGroupService().getAllUserGroup();
+            if (group == null) {
+                return null;
+            }
+            return group.getId();
+        }
+
+        @Override
+        public EnumSet<ACLRoleEnum> getTopIndeterminateGranted() {
+            return AccessControlServiceImpl.this.getTopIndeterminateGranted();
+        }
+    }
+
+    /**
+     * The ACL loader.
+     */
+    private final DbAclLoader aclLoader = new DbAclLoader();
+
+    /**
+     * @return Time to live (msec) of cached ACLs, {@code 0} when cache is
+     *         disabled.
+     */
+    private static long getAclCacheTtlMillis() {
+        return ConfigManager.instance().getConfigLong(Key.ACL_CACHE_TTL_SECS)
+                * DateUtil.DURATION_MSEC_SECOND;
+    }
+
+    /**
+     * Gets the cached effective ACL of a user.
+     *
+     * @param dto
+     *            The user.
+     * @return {@code null} when cache is disabled or not applicable.
+     */
+    private EffectiveAclCache.Acl getEffectiveAcl(final UserIdDto dto) {
+
+        if (dto.getDbKey() == null) {
+            return null;
+        }
+
+        final long ttlMillis = getAclCacheTtlMillis();
+
+        if (ttlMillis <= 0) {
+            return null;
+        }
+        return ACL_CACHE.getUserAcl(this.aclLoader, dto.getDbKey(),
+                dto.isInternalUser(), ttlMillis);
+    }
+
+    /**
+     * Deletes an invalid {@link UserAttr} when a transaction is active.
+     *
+     * @param userAttr
+     *            The attribute.
+     */
+    private static void onInvalidAttr(final UserAttr userAttr) {
+        // Try to remove the culprit.
+        if (ServiceContext.getDaoContext().isTransactionActive()) {
+            userAttrDAO().delete(userAttr);
+            LOGGER.warn(String.format(
+                    "%s [%s] has invalid value: %s (the object "
+                            + "is deleted from the database)",
+                    UserAttr.class.getSimpleName(), userAttr.getName(),
+                    userAttr.getValue()));
+        }
+    }
+
+    /**
+     * Deletes an invalid {@link UserGroupAttr} when a transaction is active.
+     *
+     * @param groupAttr
+     *            The attribute.
+     */
+    private static void onInvalidAttr(final UserGroupAttr groupAttr) {
+        // Try to remove the culprit.
+        if (ServiceContext.getDaoContext().isTransactionActive()) {
+            userGroupAttrDAO().delete(groupAttr);
+            LOGGER.warn(String.format(
+                    "%s [%s] has invalid value: %s (the object "
+                            + "is deleted from the database)",
+                    UserGroupAttr.class.getSimpleName(), groupAttr.getName(),
+                    groupAttr.getValue()));
+        }
+    }
+
+    /**
+     * @param userDbKey
+     *            Primary database key of {@link User}.
+     * @return The roles of the user, or {@code null} when not present.
+     */
+    private static Map<ACLRoleEnum, Boolean>
+            getUserRoles(final Long userDbKey) {
+
+        final UserAttr userAttr =
+                userAttrDAO().findByName(userDbKey, UserAttrEnum.ACL_ROLES);
+
+        if (userAttr != null) {
+            try {
+                return JsonHelper.createEnumBooleanMap(ACLRoleEnum.class,
+                        userAttr.getValue());
+            } catch (IOException e) {
+                onInvalidAttr(userAttr);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param userDbKey
+     *            Primary database key of {@link User}.
+     * @param attrEnum
+     *            The attribute to read.
+     * @return The OID privileges of the user, or {@code null} when not
+     *         present.
+     */
+    private static Map<ACLOidEnum, Integer> getUserOids(final Long userDbKey,
+            final UserAttrEnum attrEnum) {
+
+        final UserAttr userAttr = userAttrDAO().findByName(userDbKey, attrEnum);
+
+        if (userAttr != null) {
+            try {
+                return JsonHelper.createEnumIntegerMap(ACLOidEnum.class,
+                        userAttr.getValue());
+            } catch (IOException e) {
+                onInvalidAttr(userAttr);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param group
+     *            The {@link UserGroup}.
+     * @return The roles of the group, or {@code null} when not present.
+     */
+    private static Map<ACLRoleEnum, Boolean>
+            getGroupRoles(final UserGroup group) {
+
+        final UserGroupAttr groupAttr = userGroupAttrDAO().findByName(group,
+                UserGroupAttrEnum.ACL_ROLES);
+
+        if (groupAttr != null) {
+            try {
+                return JsonHelper.createEnumBooleanMap(ACLRoleEnum.class,
+                        groupAttr.getValue());
+            } catch (IOException e) {
+                onInvalidAttr(groupAttr);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param group
+     *            The {@link UserGroup}.
+     * @param attrEnum
+     *            The attribute to read.
+     * @return The OID privileges of the group, or {@code null} when not
+     *         present.
+     */
+    private static Map<ACLOidEnum, Integer> getGroupOids(
+            final UserGroup group, final UserGroupAttrEnum attrEnum) {
+
+        final UserGroupAttr groupAttr =
+                userGroupAttrDAO().findByName(group, attrEnum);
+
+        if (groupAttr != null) {
+            try {
+                return JsonHelper.createEnumIntegerMap(ACLOidEnum.class,
+                        groupAttr.getValue());
+            } catch (IOException e) {
+                onInvalidAttr(groupAttr);
+            }
+        }
+        return null;
+    }
+
     /**
      * Checks if role is enabled in JSON String.
      *
@@ -119,15 +366,7 @@ public final class AccessControlServiceImpl extends AbstractService
             try {
                 return isRoleEnabledInJson(userAttr.getValue(), role);
             } catch (IOException e) {
-                // Try to remove the culprit.
-                if (ServiceContext.getDaoContext().isTransactionActive()) {
-                    userAttrDAO().delete(userAttr);
-                    LOGGER.warn(String.format(
-                            "%s [%s] has invalid value: %s (the object "
-                                    + "is deleted from the database)",
-                            UserAttr.class.getSimpleName(), userAttr.getName(),
-                            userAttr.getValue()));
-                }
+                onInvalidAttr(userAttr);
             }
         }
         return null;
@@ -147,6 +386,13 @@ public final class AccessControlServiceImpl extends AbstractService
     public Boolean isGroupAuthorized(final UserGroup group,
             final ACLRoleEnum role) {
 
+        final long ttlMillis = getAclCacheTtlMillis();
+
+        if (ttlMillis > 0 && group.getId() != null) {
+            return ACL_CACHE.getGroupAcl(this.aclLoader, group.getId(),
+                    ttlMillis).isAuthorized(role);
+        }
+
         final UserGroupAttr groupAttr = userGroupAttrDAO().findByName(group,
                 UserGroupAttrEnum.ACL_ROLES);
 
@@ -154,15 +400,7 @@ public final class AccessControlServiceImpl extends AbstractService
             try {
                 return isRoleEnabledInJson(groupAttr.getValue(), role);
             } catch (IOException e) {
-                // Try to remove the culprit.
-                if (ServiceContext.getDaoContext().isTransactionActive()) {
-                    userGroupAttrDAO().delete(groupAttr);
-                    LOGGER.warn(String.format(
-                            "%s [%s] has invalid value: %s (the object "
-                                    + "is deleted from the database)",
-                            UserGroupAttr.class.getSimpleName(),
-                            groupAttr.getName(), groupAttr.getValue()));
-                }
+                onInvalidAttr(groupAttr);
             }
         }
         return null;
@@ -176,6 +414,12 @@ public final class AccessControlServiceImpl extends AbstractService
     @Override
     public boolean isAuthorized(final UserIdDto dto, final ACLRoleEnum role) {
 
+        final EffectiveAclCache.Acl acl = this.getEffectiveAcl(dto);
+
+        if (acl != null) {
+            return BooleanUtils.isTrue(acl.isAuthorized(role));
+        }
+
         final Boolean isUserAuth = isUserAuthorized(dto.getDbKey(), role);
 
         if (isUserAuth != null) {
@@ -305,15 +549,7 @@ public final class AccessControlServiceImpl extends AbstractService
             try {
                 return getOidPrivilegesFromJson(userAttr.getValue(), oid);
             } catch (IOException e) {
-                // Try to remove the culprit.
-                if (ServiceContext.getDaoContext().isTransactionActive()) {
-                    userAttrDAO().delete(userAttr);
-                    LOGGER.warn(String.format(
-                            "%s [%s] has invalid value: %s (the object "
-                                    + "is deleted from the database)",
-                            UserAttr.class.getSimpleName(), userAttr.getName(),
-                            userAttr.getValue()));
-                }
+                onInvalidAttr(userAttr);
             }
         }
         return null;
@@ -340,15 +576,7 @@ public final class AccessControlServiceImpl extends AbstractService
             try {
                 return getOidPrivilegesFromJson(groupAttr.getValue(), oid);
             } catch (IOException e) {
-                // Try to remove the culprit.
-                if (ServiceContext.getDaoContext().isTransactionActive()) {
-                    userGroupAttrDAO().delete(groupAttr);
-                    LOGGER.warn(String.format(
-                            "%s [%s] has invalid value: %s (the object "
-                                    + "is deleted from the database)",
-                            UserGroupAttr.class.getSimpleName(),
-                            groupAttr.getName(), groupAttr.getValue()));
-                }
+                onInvalidAttr(groupAttr);
             }
         }
         return null;
@@ -426,6 +654,13 @@ public final class AccessControlServiceImpl extends AbstractService
             return null;
         }
 
+        if (oid.isUserRole() || oid.isAdminRole()) {
+            final EffectiveAclCache.Acl acl = this.getEffectiveAcl(dto);
+            if (acl != null) {
+                return acl.getPrivileges(oid);
+            }
+        }
+
         Integer userPrivileges = getUserPrivileges(dto.getDbKey(),
                 UserAttrEnum.valueOf(oid), oid);
 
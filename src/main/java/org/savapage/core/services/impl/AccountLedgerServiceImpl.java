@@ -0,0 +1,490 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.savapage.core.SpInfo;
+import org.savapage.core.config.ConfigManager;
+import org.savapage.core.config.IConfigProp.Key;
+import org.savapage.core.config.ServerPathEnum;
+import org.savapage.core.dao.DaoContext;
+import org.savapage.core.jpa.Account;
+import org.savapage.core.jpa.Account.AccountTypeEnum;
+import org.savapage.core.jpa.AccountTrx;
+import org.savapage.core.jpa.Entity;
+import org.savapage.core.services.AccountLedgerService;
+import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.AccountLedger;
+import org.savapage.core.services.helpers.AccountLedger.Batch;
+import org.savapage.core.services.helpers.AccountLedger.Escrow;
+import org.savapage.core.services.helpers.AccountLedger.Posting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class AccountLedgerServiceImpl extends AbstractService
+        implements AccountLedgerService {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(AccountLedgerServiceImpl.class);
+
+    /**
+     * Max seconds to wait for a running roll-up at shutdown.
+     */
+    private static final long SHUTDOWN_WAIT_SECS = 30;
+
+    /**
+     * Max number of ids in one existence query.
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    /**
+     * The ledger. Without journal, and for escrow only, when deferral is not
+     * active.
+     */
+    private volatile AccountLedger ledger = new AccountLedger(null,
+            ConfigManager.getFinancialDecimalsInDatabase());
+
+    /** */
+    private volatile boolean deferred;
+
+    /** */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Serializes roll-ups.
+     */
+    private final Object flushMutex = new Object();
+
+    @Override
+    public void start() {
+
+        final ConfigManager cm = ConfigManager.instance();
+
+        if (!cm.isConfigValue(Key.FINANCIAL_LEDGER_DEFERRED_ENABLE)) {
+            return;
+        }
+
+        final AccountLedger journaled = new AccountLedger(
+                ServerPathEnum.LEDGER_JOURNAL.getPathAbsolute(),
+                ConfigManager.getFinancialDecimalsInDatabase());
+        try {
+            final int postings = journaled.open(this.readCommittedSeq());
+            if (postings > 0) {
+                SpInfo.instance().log(String.format(
+                        "Replayed [%d] account ledger journal postings.",
+                        postings));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Deferred account balance updates disabled: {}",
+                    e.getMessage());
+            return;
+        }
+
+        this.ledger = journaled;
+        this.deferred = true;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "AccountLedgerFlusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long msec = cm.getConfigLong(Key.FINANCIAL_LEDGER_ROLLUP_MSEC);
+
+        this.flusher.scheduleWithFixedDelay(this::flushSafe, 0L, msec,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+
+        if (!this.deferred) {
+            return;
+        }
+
+        this.deferred = false;
+
+        /*
+         * Final roll-up on the flusher thread, since it opens and closes a
+         * service context of its own.
+         */
+        this.flusher.execute(this::flushSafe);
+        this.flusher.shutdown();
+
+        try {
+            if (!this.flusher.awaitTermination(SHUTDOWN_WAIT_SECS,
+                    TimeUnit.SECONDS)) {
+                LOGGER.warn("Account ledger final roll-up timed out: "
+                        + "pending postings are replayed from journal.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            this.ledger.close();
+        } catch (IOException e) {
+            LOGGER.warn("Account ledger journal close: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The sequence number of the last committed journal segment.
+     */
+    private long readCommittedSeq() {
+
+        final String value = ConfigManager.instance()
+                .readDbConfigKey(Key.FINANCIAL_LEDGER_JOURNAL_SEQ);
+
+        if (StringUtils.isBlank(value)) {
+            return 0L;
+        }
+        return Long.parseLong(value);
+    }
+
+    @Override
+    public boolean isDeferred(final Account account) {
+
+        if (!this.deferred || account.getId() == null) {
+            return false;
+        }
+
+        final AccountTypeEnum accountType =
+                AccountTypeEnum.valueOf(account.getAccountType());
+
+        return accountType == AccountTypeEnum.SHARED
+                || accountType == AccountTypeEnum.GROUP;
+    }
+
+    @Override
+    public boolean post(final AccountTrx trx) {
+
+        if (!this.deferred || trx.getId() == null) {
+            return false;
+        }
+
+        final AccountLedger agg = this.ledger;
+        final Long trxId = trx.getId();
+
+        try {
+            agg.post(trx.getAccount().getId(), trxId, trx.getAmount(),
+                    System.currentTimeMillis());
+            /*
+             * The posting is discarded only when its transaction is known to
+             * be rolled back: a long transaction may commit much later.
+             */
+            ServiceContext.getDaoContext().onRollback(() -> agg.abort(trxId));
+            return true;
+        } catch (IOException | ArithmeticException e) {
+            LOGGER.warn("Account ledger journal write: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public BigDecimal getPending(final Account account) {
+        if (account.getId() == null) {
+            return BigDecimal.ZERO;
+        }
+        return this.ledger.getPending(account.getId());
+    }
+
+    @Override
+    public BigDecimal getBalanceWithPending(final Account account) {
+
+        final AccountLedger agg = this.ledger;
+        final Long id = account.getId();
+
+        if (!this.deferred || id == null) {
+            return account.getBalance().add(this.getPending(account));
+        }
+
+        return agg.consistentRead(() -> {
+            final BigDecimal balance = accountDAO().findBalance(id);
+            if (balance == null) {
+                return account.getBalance().add(agg.getPending(id));
+            }
+            return balance.add(agg.getPending(id));
+        });
+    }
+
+    @Override
+    public Account lockAccount(final Long accountId) {
+
+        return this.ledger.consistentRead(() -> {
+            final Account account = accountDAO().lock(accountId);
+            if (account != null) {
+                accountDAO().refresh(account);
+            }
+            return account;
+        });
+    }
+
+    @Override
+    public Escrow reserve(final Account account, final BigDecimal floor,
+            final BigDecimal amount) {
+
+        final AccountLedger agg = this.ledger;
+        final Long id = account.getId();
+
+        if (!this.deferred || id == null) {
+            return agg.reserve(id, account.getBalance(), floor, amount);
+        }
+
+        return agg.consistentRead(() -> {
+            BigDecimal balance = accountDAO().findBalance(id);
+            if (balance == null) {
+                balance = account.getBalance();
+            }
+            return agg.reserve(id, balance, floor, amount);
+        });
+    }
+
+    @Override
+    public void release(final Escrow escrow) {
+        this.ledger.release(escrow);
+    }
+
+    @Override
+    public boolean isIdle() {
+        return this.ledger.isEmpty();
+    }
+
+    /**
+     * Rolls up, and logs any exception.
+     */
+    private void flushSafe() {
+        try {
+            this.flush();
+        } catch (Exception e) {
+            LOGGER.error("Account ledger roll-up: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+
+        final AccountLedger agg = this.ledger;
+
+        synchronized (this.flushMutex) {
+
+            final Batch batch;
+
+            try {
+                batch = agg.drain();
+            } catch (IOException e) {
+                LOGGER.error("Account ledger journal rotate: {}",
+                        e.getMessage());
+                return;
+            }
+
+            if (batch == null) {
+                return;
+            }
+
+            ServiceContext.open();
+            ServiceContext.setActor(Entity.ACTOR_SYSTEM);
+
+            final DaoContext daoContext = ServiceContext.getDaoContext();
+
+            final List<Posting> applied = new ArrayList<>();
+            final List<Posting> orphans = new ArrayList<>();
+
+            boolean committed = false;
+
+            /*
+             * Balance readers must not see the rolled up balance while the
+             * postings are still pending.
+             */
+            agg.beginRollUp();
+
+            try {
+                daoContext.beginTransaction();
+
+                /*
+                 * Postings are made before their database transaction
+                 * commits: only apply postings of committed AccountTrx.
+                 */
+                final Set<Long> existing = this.findExisting(batch);
+                final List<Posting> found = new ArrayList<>();
+                final List<Posting> carried = new ArrayList<>();
+
+                for (final Posting posting : batch.getPostings()) {
+                    if (existing.contains(posting.getTrxId())) {
+                        found.add(posting);
+                    } else if (posting.isFinished()) {
+                        orphans.add(posting);
+                    } else {
+                        carried.add(posting);
+                    }
+                }
+
+                applied.addAll(this.rollUp(agg, found, carried));
+
+                agg.carry(carried);
+
+                ConfigManager.instance().saveDbConfigKey(
+                        Key.FINANCIAL_LEDGER_JOURNAL_SEQ,
+                        String.valueOf(batch.getJournalSeq()),
+                        Entity.ACTOR_SYSTEM);
+
+                daoContext.commit();
+                committed = true;
+
+            } catch (Exception e) {
+                /*
+                 * Postings stay pending, and are part of the next roll-up.
+                 */
+                LOGGER.warn("Account ledger roll-up of [{}] postings failed:"
+                        + " {}", batch.getPostings().size(), e.getMessage());
+            } finally {
+                try {
+                    if (!committed) {
+                        daoContext.rollback();
+                    }
+                    ServiceContext.close();
+                } finally {
+                    if (!committed) {
+                        agg.endRollUp();
+                    }
+                }
+            }
+
+            if (!committed) {
+                return;
+            }
+
+            final List<Posting> settled = new ArrayList<>(applied);
+            settled.addAll(orphans);
+
+            try {
+                agg.commit(batch, settled);
+            } catch (IOException e) {
+                LOGGER.warn("Account ledger journal cleanup: {}",
+                        e.getMessage());
+            } finally {
+                agg.endRollUp();
+            }
+
+            for (final Posting posting : orphans) {
+                LOGGER.warn("Account ledger: discarded posting of "
+                        + "rolled back transaction [{}] on account [{}].",
+                        posting.getTrxId(), posting.getAccountId());
+            }
+        }
+    }
+
+    /**
+     * @param batch
+     *            The batch.
+     * @return The ids of the {@link AccountTrx} objects of the batch that
+     *         exist in the database.
+     */
+    private Set<Long> findExisting(final Batch batch) {
+
+        final Set<Long> existing = new HashSet<>();
+        final List<Long> ids = new ArrayList<>(MAX_IDS_PER_QUERY);
+
+        for (final Posting posting : batch.getPostings()) {
+            ids.add(posting.getTrxId());
+            if (ids.size() == MAX_IDS_PER_QUERY) {
+                existing.addAll(accountTrxDAO().findExistingIds(ids));
+                ids.clear();
+            }
+        }
+        if (!ids.isEmpty()) {
+            existing.addAll(accountTrxDAO().findExistingIds(ids));
+        }
+        return existing;
+    }
+
+    /**
+     * Adds postings to the balance of their locked accounts. Postings are in
+     * account order: accounts are always locked in the same order.
+     *
+     * @param agg
+     *            The ledger.
+     * @param postings
+     *            The postings, in account order.
+     * @param carried
+     *            Collects the postings of accounts that are not found: they
+     *            are kept, and not settled.
+     * @return The applied postings.
+     */
+    private List<Posting> rollUp(final AccountLedger agg,
+            final List<Posting> postings, final List<Posting> carried) {
+
+        final List<Posting> applied = new ArrayList<>();
+
+        int i = 0;
+
+        while (i < postings.size()) {
+
+            final Long accountId = postings.get(i).getAccountId();
+            final List<Posting> group = new ArrayList<>();
+
+            while (i < postings.size()
+                    && postings.get(i).getAccountId().equals(accountId)) {
+                group.add(postings.get(i));
+                i++;
+            }
+
+            final Account account = accountDAO().lock(accountId);
+
+            if (account == null) {
+                LOGGER.warn("Account ledger: account [{}] not found, "
+                        + "[{}] postings are kept.", accountId, group.size());
+                carried.addAll(group);
+                continue;
+            }
+
+            account.setBalance(account.getBalance().add(agg.sum(group)));
+            account.setModifiedBy(ServiceContext.getActor());
+            account.setModifiedDate(ServiceContext.getTransactionDate());
+
+            accountDAO().update(account);
+
+            applied.addAll(group);
+        }
+        return applied;
+    }
+
+}
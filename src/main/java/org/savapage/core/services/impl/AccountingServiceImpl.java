@@ -106,6 +106,7 @@ import org.savapage.core.print.proxy.ProxyPrintJobChunk;
 import org.savapage.core.print.proxy.ProxyPrintJobChunkInfo;
 import org.savapage.core.services.AccountingService;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.AccountLedger;
 import org.savapage.core.services.helpers.AccountTrxInfo;
 import org.savapage.core.services.helpers.AccountTrxInfoSet;
 import org.savapage.core.services.helpers.AccountingException;
@@ -498,8 +499,15 @@ public final class AccountingServiceImpl extends AbstractService
         final int userBalanceDecimals = ConfigManager.instance()
                 .getConfigInt(Key.FINANCIAL_USER_BALANCE_DECIMALS);
 
-        final BigDecimal balanceDiff = balanceNew.subtract(account.getBalance())
-                .setScale(userBalanceDecimals, RoundingMode.DOWN);
+        /*
+         * The new balance includes amounts that are pending in the account
+         * ledger: they are added when rolled up.
+         */
+        final BigDecimal pending = accountLedgerService().getPending(account);
+
+        final BigDecimal balanceDiff =
+                balanceNew.subtract(account.getBalance().add(pending))
+                        .setScale(userBalanceDecimals, RoundingMode.DOWN);
 
         if (balanceDiff.compareTo(BigDecimal.ZERO) != 0) {
 
@@ -509,7 +517,7 @@ public final class AccountingServiceImpl extends AbstractService
 
             accountTrxDAO().create(trx);
 
-            account.setBalance(balanceNew);
+            account.setBalance(balanceNew.subtract(pending));
         }
     }
 
@@ -913,6 +921,41 @@ public final class AccountingServiceImpl extends AbstractService
         return cost.divide(costPerCopy, scale, RoundingMode.HALF_UP);
     }
 
+    /**
+     * Adds an amount to the balance of an {@link Account}, and updates it.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @param amount
+     *            The amount.
+     * @param actor
+     *            The actor.
+     * @param trxDate
+     *            The transaction date.
+     */
+    private static void updateBalance(final Account account,
+            final BigDecimal amount, final String actor, final Date trxDate) {
+
+        account.setBalance(account.getBalance().add(amount));
+
+        account.setModifiedBy(actor);
+        account.setModifiedDate(trxDate);
+
+        accountDAO().update(account);
+    }
+
+    /**
+     * Gets the balance of an {@link Account}, including amounts posted to the
+     * account ledger that are not rolled up yet.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @return The balance.
+     */
+    private static BigDecimal getBalanceWithPending(final Account account) {
+        return accountLedgerService().getBalanceWithPending(account);
+    }
+
     /**
      * Creates an {@link AccountTrx} of {@link AccountTrx.AccountTrxTypeEnum},
      * updates the {@link Account} and adds the {@link AccountTrx} to the
@@ -959,17 +1002,28 @@ public final class AccountingServiceImpl extends AbstractService
          */
         final boolean isZeroAmount = trxAmount.equals(BigDecimal.ZERO);
 
-        if (!isZeroAmount) {
+        /*
+         * Balance updates of shared and group accounts are posted to the
+         * account ledger, so the account row is not locked by every charge.
+         */
+        final boolean isDeferred =
+                !isZeroAmount && accountLedgerService().isDeferred(account);
 
-            trxAmount = calcWeightedAmount(trxAmount, weightTotal, weight,
-                    weightUnit, ConfigManager.getFinancialDecimalsInDatabase());
+        final BigDecimal balanceAfter;
 
-            account.setBalance(account.getBalance().add(trxAmount));
+        if (isZeroAmount) {
+            balanceAfter = account.getBalance();
+        } else {
 
-            account.setModifiedBy(actor);
-            account.setModifiedDate(trxDate);
+            trxAmount = calcWeightedAmount(trxAmount, weightTotal, weight,
+                    weightUnit, ConfigManager.getFinancialDecimalsInDatabase());
 
-            accountDAO().update(account);
+            if (isDeferred) {
+                balanceAfter = getBalanceWithPending(account).add(trxAmount);
+            } else {
+                updateBalance(account, trxAmount, actor, trxDate);
+                balanceAfter = account.getBalance();
+            }
         }
 
         /*
@@ -982,7 +1036,7 @@ public final class AccountingServiceImpl extends AbstractService
 
         trx.setCurrencyCode(ConfigManager.getAppCurrency().getCurrencyCode());
         trx.setAmount(trxAmount);
-        trx.setBalance(account.getBalance());
+        trx.setBalance(balanceAfter);
         trx.setComment("");
         trx.setIsCredit(false);
 
@@ -998,6 +1052,10 @@ public final class AccountingServiceImpl extends AbstractService
 
         accountTrxDAO().create(trx);
 
+        if (isDeferred && !accountLedgerService().post(trx)) {
+            updateBalance(account, trxAmount, actor, trxDate);
+        }
+
         /*
          * Add transaction to the DocLog transaction list.
          */
@@ -1087,28 +1145,67 @@ public final class AccountingServiceImpl extends AbstractService
         return new BigDecimal(strCost);
     }
 
+    /**
+     * Gets the lowest balance an {@link Account} is allowed to have.
+     *
+     * @param account
+     *            The {@link Account}.
+     * @return The balance floor, or {@code null} when unrestricted.
+     */
+    private static BigDecimal getBalanceFloor(final Account account) {
+
+        if (!account.getRestricted()) {
+            return null;
+        }
+
+        final BigDecimal creditLimit;
+
+        if (account.getUseGlobalOverdraft()) {
+            creditLimit = ConfigManager.instance()
+                    .getConfigBigDecimal(Key.FINANCIAL_GLOBAL_CREDIT_LIMIT);
+        } else {
+            creditLimit = account.getOverdraft();
+        }
+        return creditLimit.negate();
+    }
+
     @Override
     public boolean isBalanceSufficient(final Account account,
             final BigDecimal cost) {
 
-        boolean isChargeable = true;
+        final BigDecimal floor = getBalanceFloor(account);
 
-        if (account.getRestricted()) {
-
-            final BigDecimal creditLimit;
+        if (floor == null) {
+            return true;
+        }
 
-            if (account.getUseGlobalOverdraft()) {
-                creditLimit = ConfigManager.instance()
-                        .getConfigBigDecimal(Key.FINANCIAL_GLOBAL_CREDIT_LIMIT);
-            } else {
-                creditLimit = account.getOverdraft();
-            }
+        if (account.getId() == null) {
+            return account.getBalance().subtract(cost).compareTo(floor) >= 0;
+        }
 
-            final BigDecimal balanceAfter = account.getBalance().subtract(cost);
+        /*
+         * Check against pending postings and amounts reserved by others.
+         */
+        final AccountLedger.Escrow escrow =
+                accountLedgerService().reserve(account, floor, cost);
 
-            isChargeable = balanceAfter.compareTo(creditLimit.negate()) >= 0;
+        if (escrow == null) {
+            return false;
         }
-        return isChargeable;
+        accountLedgerService().release(escrow);
+        return true;
+    }
+
+    @Override
+    public AccountLedger.Escrow reserveBalance(final Account account,
+            final BigDecimal cost) {
+        return accountLedgerService().reserve(account, getBalanceFloor(account),
+                cost);
+    }
+
+    @Override
+    public void releaseBalance(final AccountLedger.Escrow escrow) {
+        accountLedgerService().release(escrow);
     }
 
     @Override
@@ -1749,7 +1846,11 @@ public final class AccountingServiceImpl extends AbstractService
             prevAccountName = dto.getName();
             account = this.createSharedAccountTemplate(dto.getName(), parent);
         } else {
-            account = accountDAO().findById(dto.getId());
+            /*
+             * Lock, so the balance change and the pending amount in the
+             * account ledger are consistent.
+             */
+            account = accountLedgerService().lockAccount(dto.getId());
             prevAccountName = account.getName();
         }
 
@@ -2125,6 +2226,8 @@ public final class AccountingServiceImpl extends AbstractService
 
         final int balanceDecimals = ConfigManager.getUserBalanceDecimals();
 
+        final BigDecimal balance = getBalanceWithPending(account);
+
         final String formattedCreditLimit;
         final AccountDisplayInfoDto.Status status;
 
@@ -2146,9 +2249,9 @@ public final class AccountingServiceImpl extends AbstractService
                 throw new SpException(e);
             }
 
-            if (account.getBalance().compareTo(creditLimit.negate()) < 0) {
+            if (balance.compareTo(creditLimit.negate()) < 0) {
                 status = AccountDisplayInfoDto.Status.OVERDRAFT;
-            } else if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+            } else if (balance.compareTo(BigDecimal.ZERO) > 0) {
                 status = AccountDisplayInfoDto.Status.DEBIT;
             } else {
                 status = AccountDisplayInfoDto.Status.CREDIT;
@@ -2158,7 +2261,7 @@ public final class AccountingServiceImpl extends AbstractService
 
             formattedCreditLimit = null;
 
-            if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+            if (balance.compareTo(BigDecimal.ZERO) > 0) {
                 status = AccountDisplayInfoDto.Status.DEBIT;
             } else {
                 status = AccountDisplayInfoDto.Status.CREDIT;
@@ -2166,8 +2269,8 @@ public final class AccountingServiceImpl extends AbstractService
         }
 
         try {
-            dto.setBalance(this.localize(account.getBalance(), balanceDecimals,
-                    locale, currencySymbolWrk));
+            dto.setBalance(this.localize(balance, balanceDecimals, locale,
+                    currencySymbolWrk));
         } catch (ParseException e) {
             throw new SpException(e);
         }
@@ -2809,6 +2912,15 @@ public final class AccountingServiceImpl extends AbstractService
                     "Exchange rate must be greater than zero.", null);
         }
 
+        /*
+         * INVARIANT: account ledger must be rolled up.
+         */
+        if (!accountLedgerService().isIdle()) {
+            return JsonRpcMethodError.createBasicError(Code.INVALID_REQUEST,
+                    "Account balances are being updated: try again later.",
+                    null);
+        }
+
         /*
          * Batch process.
          */
@@ -2971,6 +3083,44 @@ public final class AccountingServiceImpl extends AbstractService
         return balanceAfter.compareTo(balanceMin) >= 0;
     }
 
+    /**
+     * Locks two users in order of their primary key, so concurrent locking of
+     * the same users, in any argument order, cannot deadlock.
+     *
+     * @param userIdA
+     *            The first user id.
+     * @param userIdB
+     *            The second user id.
+     * @return The locked users, in argument order. An element is {@code null}
+     *         when the user is not found.
+     */
+    private User[] lockUsersInIdOrder(final String userIdA,
+            final String userIdB) {
+
+        final User userA = userDAO().findActiveUserByUserId(userIdA);
+        final User userB = userDAO().findActiveUserByUserId(userIdB);
+
+        final User[] locked = new User[2];
+
+        if (userA == null || userB == null) {
+            if (userA != null) {
+                locked[0] = userService().lockUser(userA.getId());
+            } else if (userB != null) {
+                locked[1] = userService().lockUser(userB.getId());
+            }
+            return locked;
+        }
+
+        if (userA.getId().compareTo(userB.getId()) <= 0) {
+            locked[0] = userService().lockUser(userA.getId());
+            locked[1] = userService().lockUser(userB.getId());
+        } else {
+            locked[1] = userService().lockUser(userB.getId());
+            locked[0] = userService().lockUser(userA.getId());
+        }
+        return locked;
+    }
+
     @Override
     public AbstractJsonRpcMethodResponse
             transferUserCredit(final UserCreditTransferDto dto) {
@@ -3008,9 +3158,11 @@ public final class AccountingServiceImpl extends AbstractService
         /*
          * INVARIANT: Source and target user MUST exist.
          */
-        final User lockedUserTo = userService().lockByUserId(dto.getUserIdTo());
-        final User lockedUserFrom =
-                userService().lockByUserId(dto.getUserIdFrom());
+        final User[] lockedUsers =
+                this.lockUsersInIdOrder(dto.getUserIdFrom(), dto.getUserIdTo());
+
+        final User lockedUserFrom = lockedUsers[0];
+        final User lockedUserTo = lockedUsers[1];
 
         if (lockedUserFrom == null || lockedUserTo == null) {
 
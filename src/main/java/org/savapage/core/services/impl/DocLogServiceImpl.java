@@ -85,9 +85,11 @@ import org.savapage.core.print.proxy.JsonProxyPrintJob;
 import org.savapage.core.print.proxy.ProxyPrintJobStatusMonitor;
 import org.savapage.core.services.DocLogService;
 import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.UsageCounterService;
 import org.savapage.core.services.helpers.AccountTrxInfoSet;
 import org.savapage.core.services.helpers.DocContentPrintInInfo;
 import org.savapage.core.services.helpers.ExternalSupplierInfo;
+import org.savapage.core.services.helpers.IppJobHistoryCache;
 import org.savapage.core.services.helpers.PdfRepairEnum;
 import org.savapage.core.util.DateUtil;
 
@@ -232,7 +234,7 @@ public final class DocLogServiceImpl extends AbstractService
     public void logDocOut(final User user, final DocOut docOut,
             final AccountTrxInfoSet accountTrxInfoSet) {
 
-        final Date perfStartTime = PerformanceLogger.startTime();
+        final long perfStartTime = PerformanceLogger.startTime();
 
         //
         final PrintOut printOut = docOut.getPrintOut();
@@ -336,7 +338,7 @@ public final class DocLogServiceImpl extends AbstractService
             final AccountTrxInfoSet accountTrxInfoSet,
             final int printOutPages) {
 
-        final Date perfStartTime = PerformanceLogger.startTime();
+        final long perfStartTime = PerformanceLogger.startTime();
 
         final DocLog docLog = docOut.getDocLog();
 
@@ -974,6 +976,10 @@ public final class DocLogServiceImpl extends AbstractService
      * Note: This method has its own database transaction with locked
      * {@link Printer}. See Mantis #430.
      * </p>
+     * <p>
+     * When usage counter write-behind is active, the statistics are handed
+     * to the {@link UsageCounterService} instead.
+     * </p>
      *
      * @param docOut
      *            The {@link DocOut} container.
@@ -986,6 +992,13 @@ public final class DocLogServiceImpl extends AbstractService
         final DocLog docLog = docOut.getDocLog();
         final PrintOut printOut = docOut.getPrintOut();
 
+        if (usageCounterService().addPrintOut(printOut.getPrinter(),
+                docLog.getCreatedDate(), printOutPages,
+                printOut.getNumberOfSheets(), printOut.getNumberOfEsu(),
+                docLog.getNumberOfBytes())) {
+            return;
+        }
+
         final String actor = Entity.ACTOR_SYSTEM;
         final Date now = docLog.getCreatedDate();
 
@@ -1037,6 +1050,10 @@ public final class DocLogServiceImpl extends AbstractService
      * Note: This method has its own database transaction with locked
      * {@link IppQueue}. See Mantis #483.
      * </p>
+     * <p>
+     * When usage counter write-behind is active, the statistics are handed
+     * to the {@link UsageCounterService} instead.
+     * </p>
      *
      * @param queue
      *            The {@link IppQueue}.
@@ -1046,6 +1063,13 @@ public final class DocLogServiceImpl extends AbstractService
     private void commitPrintInStatsQueue(final IppQueue queue,
             final DocLog docLog) {
 
+        if (usageCounterService().addPrintIn(queue, docLog.getCreatedDate(),
+                ServiceContext.getTransactionDate(),
+                docLog.getNumberOfPages().intValue(),
+                docLog.getNumberOfBytes().longValue())) {
+            return;
+        }
+
         final DaoContext daoContext = ServiceContext.getDaoContext();
 
         boolean rollbackTrx = false;
@@ -1147,7 +1171,7 @@ public final class DocLogServiceImpl extends AbstractService
             final IppQueue queue, final DocLogProtocolEnum protocol,
             final DocContentPrintInInfo printInInfo) {
 
-        final Date perfStartTime = PerformanceLogger.startTime();
+        final long perfStartTime = PerformanceLogger.startTime();
 
         final IPdfPageProps pageProps = printInInfo.getPageProps();
         final boolean isPrinted = pageProps != null;
@@ -1300,6 +1324,18 @@ public final class DocLogServiceImpl extends AbstractService
             }
         }
 
+        /*
+         * Completed IPP job history (committed).
+         */
+        if (queue != null && supplierInfo != null
+                && protocol == DocLogProtocolEnum.IPP
+                && supplierInfo.getSupplier() == ExternalSupplierEnum.IPP_CLIENT
+                && ExternalSupplierStatusEnum.COMPLETED.toString()
+                        .equals(supplierInfo.getStatus())) {
+            IppJobHistoryCache.instance().add(userDb.getUserId(),
+                    queue.getId(), IppJobHistoryCache.Job.create(docLog));
+        }
+
         /*
          * Transaction with IppQueue lock (Mantis #483).
          */
@@ -1690,6 +1726,11 @@ public final class DocLogServiceImpl extends AbstractService
                 daoCtx.rollback();
                 ReadWriteLockEnum.DATABASE_READONLY.setReadLock(false);
             }
+            if (ExternalSupplierEnum.IPP_CLIENT.toString()
+                    .equals(docLog.getExternalSupplier())) {
+                IppJobHistoryCache.instance()
+                        .invalidateUser(docLog.getUser().getUserId());
+            }
         }
 
     }
@@ -40,6 +40,7 @@ import org.apache.commons.lang3.time.DateUtils;
 import org.savapage.core.config.ConfigManager;
 import org.savapage.core.config.IConfigProp.Key;
 import org.savapage.core.doc.DocContent;
+import org.savapage.core.doc.DeleteRateLimiter;
 import org.savapage.core.doc.store.DocStoreBranchEnum;
 import org.savapage.core.doc.store.DocStoreCleaner;
 import org.savapage.core.doc.store.DocStoreConfig;
@@ -272,6 +273,18 @@ public final class DocStoreServiceImpl extends AbstractService
         return this.getStorePath(store, branch, docLog).toFile().exists();
     }
 
+    @Override
+    public void remove(final DocStoreTypeEnum store,
+            final DocStoreBranchEnum branch, final DocLog docLog)
+            throws DocStoreException {
+        try {
+            FileUtils.deleteDirectory(
+                    this.getStorePath(store, branch, docLog).toFile());
+        } catch (IOException e) {
+            throw new DocStoreException(e.getMessage());
+        }
+    }
+
     private DocStoreBranchEnum getStoreBranch(final DocLog docLog)
             throws DocStoreException {
         final DocStoreBranchEnum branch;
@@ -519,7 +532,10 @@ public final class DocStoreServiceImpl extends AbstractService
         final Date referenceDate = DateUtils.addDays(cleaningDate, -keepDays);
 
         return new DocStoreCleaner(this.getStoreBranch(store, branch),
-                createCalendarTime(referenceDate), runMode).clean();
+                createCalendarTime(referenceDate), runMode,
+                ConfigManager.getDeleteFilesParallelism(),
+                new DeleteRateLimiter(ConfigManager.getDeleteFilesMaxPerSec()))
+                        .clean();
     }
 
 }
@@ -68,6 +68,7 @@ import org.savapage.core.services.EmailService;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.helpers.email.EMailConstants;
 import org.savapage.core.services.helpers.email.EmailMsgParms;
+import org.savapage.core.services.helpers.email.EmailOutboxDispatcher;
 import org.savapage.core.util.FileSystemHelper;
 import org.savapage.core.util.InetUtils;
 import org.savapage.lib.pgp.PGPBaseException;
@@ -433,15 +434,52 @@ public final class EmailServiceImpl extends AbstractService
         breaker.execute(operation);
     }
 
+    @Override
+    public Transport connectTransport(final javax.mail.Session session)
+            throws MessagingException, InterruptedException,
+            CircuitBreakerException {
+
+        final Transport transport = session.getTransport();
+
+        final CircuitBreakerOperation operation =
+                new CircuitBreakerOperation() {
+
+                    @Override
+                    public Object execute(final CircuitBreaker circuitBreaker) {
+
+                        if (!ConfigManager.isConnectedToInternet()) {
+                            throw new CircuitTrippingException(
+                                    "Not connected to the Internet.");
+                        }
+                        try {
+                            transport.connect();
+                        } catch (MessagingException e) {
+                            throw new CircuitTrippingException(e);
+                        }
+                        return null;
+                    }
+                };
+
+        ConfigManager.getCircuitBreaker(CircuitBreakerEnum.SMTP_CONNECTION)
+                .execute(operation);
+
+        return transport;
+    }
+
     @Override
     public void writeEmail(final EmailMsgParms parms)
             throws MessagingException, IOException, PGPBaseException {
 
         this.setPublicKeyList(parms);
 
-        final String fileBaseName =
-                String.format("%d-%s.%s", System.currentTimeMillis(),
-                        UUID.randomUUID().toString(), MIME_FILE_SUFFIX);
+        final boolean isBulk = parms.isBulk()
+                && (parms.getPublicKeyList() == null
+                        || parms.getPublicKeyList().isEmpty());
+
+        final String fileBaseName = String.format("%d-%s%s.%s",
+                System.currentTimeMillis(), UUID.randomUUID().toString(),
+                isBulk ? EmailOutboxDispatcher.BULK_FILE_MARKER : "",
+                MIME_FILE_SUFFIX);
 
         final Path filePathTemp =
                 Paths.get(ConfigManager.getAppTmpDir(), fileBaseName);
@@ -83,6 +83,7 @@ import org.savapage.core.msg.UserMsgIndicator;
 import org.savapage.core.pdf.AbstractPdfCreator;
 import org.savapage.core.pdf.IPdfPageProps;
 import org.savapage.core.pdf.PdfDocumentFonts;
+import org.savapage.core.pdf.PdfPageMetaCache;
 import org.savapage.core.pdf.PdfPageRotateHelper;
 import org.savapage.core.pdf.PdfPasswordException;
 import org.savapage.core.pdf.PdfSecurityException;
@@ -1685,7 +1686,7 @@ public final class InboxServiceImpl implements InboxService {
         final InboxJob job = jobs.getJobs().get(iJob);
 
         try {
-            return PdfDocumentFonts.create(
+            return PdfPageMetaCache.instance().getFonts(
                     Paths.get(ConfigManager.getUserHomeDir(user), job.getFile())
                             .toFile());
         } catch (IOException e) {
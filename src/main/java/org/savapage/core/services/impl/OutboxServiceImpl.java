@@ -60,6 +60,7 @@ import org.savapage.core.job.RunModeSwitch;
 import org.savapage.core.jpa.Account;
 import org.savapage.core.jpa.DocLog;
 import org.savapage.core.jpa.User;
+import org.savapage.core.outbox.OutboxHoldIndex;
 import org.savapage.core.outbox.OutboxInfoDto;
 import org.savapage.core.outbox.OutboxInfoDto.LocaleInfo;
 import org.savapage.core.outbox.OutboxInfoDto.OutboxAccountTrxInfo;
@@ -88,7 +89,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  *
@@ -109,6 +109,12 @@ public final class OutboxServiceImpl extends AbstractService
     */
     private static final String OUTBOX_DESCRIPT_FILE_NAME = "outbox.json";
 
+    /**
+     * Index of the held jobs in all user outboxes.
+     */
+    private static final OutboxHoldIndex HOLD_INDEX =
+            OutboxHoldIndex.instance();
+
     /**
      * Implementation of execution pattern for proxy printing from the user
      * inbox to user outbox.
@@ -217,7 +223,24 @@ public final class OutboxServiceImpl extends AbstractService
     }
 
     /**
-     * Stores {@link OutboxInfoDto} as JSON file in user inbox directory.
+     * Checks if the {@link OutboxHoldIndex} entry of a user is in sync with
+     * the JSON file in the user's outbox directory.
+     *
+     * @param userId
+     *            The unique user id.
+     * @return {@code true} when in sync, {@code false} when not, or when JSON
+     *         file does not exist (the user home might be removed).
+     */
+    private static boolean isHoldIndexCurrent(final String userId) {
+        final File file = getOutboxInfoFilePath(userId);
+        final long lastModified = file.lastModified();
+        return lastModified != 0L
+                && HOLD_INDEX.isCurrent(userId, lastModified, file.length());
+    }
+
+    /**
+     * Stores {@link OutboxInfoDto} as JSON file in user inbox directory, and
+     * updates the {@link OutboxHoldIndex}.
      *
      * @param userId
      *            The unique user id.
@@ -229,11 +252,17 @@ public final class OutboxServiceImpl extends AbstractService
 
         final File jsonFile = getOutboxInfoFilePath(userId);
 
-        try (Writer writer = new FileWriter(jsonFile);) {
-            JsonHelper.write(outboxInfo, writer);
-        } catch (IOException e) {
-            throw new SpException(String.format("Error writing file [%s]",
-                    jsonFile.getAbsolutePath()), e);
+        synchronized (HOLD_INDEX.getUserLock(userId)) {
+
+            try (Writer writer = new FileWriter(jsonFile);) {
+                JsonHelper.write(outboxInfo, writer);
+            } catch (IOException e) {
+                throw new SpException(String.format("Error writing file [%s]",
+                        jsonFile.getAbsolutePath()), e);
+            }
+
+            HOLD_INDEX.update(userId, jsonFile.lastModified(),
+                    jsonFile.length(), outboxInfo);
         }
     }
 
@@ -242,28 +271,50 @@ public final class OutboxServiceImpl extends AbstractService
      * <p>
      * <i>An empty object is returned when JSON file does not exist.</i>
      * </p>
+     * <p>
+     * The {@link OutboxHoldIndex} is updated when out of sync.
+     * </p>
      *
      * @param userId
      *            The unique user id.
      * @return {@link OutboxInfoDto} object.
      */
     private OutboxInfoDto readOutboxInfo(final String userId) {
+        synchronized (HOLD_INDEX.getUserLock(userId)) {
+            return this.readOutboxInfoLocked(userId);
+        }
+    }
 
-        final ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Reads {@link OutboxInfoDto} JSON file from user's outbox directory,
+     * while holding the {@link OutboxHoldIndex#getUserLock(String)}.
+     *
+     * @param userId
+     *            The unique user id.
+     * @return {@link OutboxInfoDto} object.
+     */
+    private OutboxInfoDto readOutboxInfoLocked(final String userId) {
 
         OutboxInfoDto outboxInfo = null;
         final File file = getOutboxInfoFilePath(userId);
+        final long lastModified = file.lastModified();
+        final long length = file.length();
 
         try {
             /*
              * First check if file exists, if not (first time use, or reset)
              * return an empty job info object.
              */
-            if (file.exists()) {
+            if (lastModified != 0L) {
 
                 try {
 
-                    outboxInfo = mapper.readValue(file, OutboxInfoDto.class);
+                    outboxInfo = JsonHelper.read(OutboxInfoDto.class, file);
+
+                    if (!HOLD_INDEX.isCurrent(userId, lastModified, length)) {
+                        HOLD_INDEX.update(userId, lastModified, length,
+                                outboxInfo);
+                    }
 
                 } catch (JsonMappingException e) {
 
@@ -282,6 +333,7 @@ public final class OutboxServiceImpl extends AbstractService
             }
             if (outboxInfo == null) {
                 outboxInfo = new OutboxInfoDto();
+                HOLD_INDEX.remove(userId);
             }
         } catch (IOException e) {
             throw new SpException(
@@ -486,13 +538,43 @@ public final class OutboxServiceImpl extends AbstractService
 
     @Override
     public int getOutboxJobCount(final String userId) {
+        if (isHoldIndexCurrent(userId)) {
+            return HOLD_INDEX.getJobCount(userId);
+        }
         return this.readOutboxInfo(userId).getJobCount();
     }
 
+    @Override
+    public Set<String> getOutboxJobFiles(final String userId,
+            final String printerName) {
+        if (!isHoldIndexCurrent(userId)) {
+            this.readOutboxInfo(userId);
+        }
+        return HOLD_INDEX.getJobFiles(userId, printerName);
+    }
+
+    @Override
+    public OutboxHoldIndex.HoldSummary
+            getOutboxHoldSummary(final String userId) {
+        if (!isHoldIndexCurrent(userId)) {
+            this.readOutboxInfo(userId);
+        }
+        return HOLD_INDEX.getSummary(userId);
+    }
+
     @Override
     public List<OutboxJobDto> getOutboxJobs(final String userId,
             final Set<String> printerNames, final Date expiryRef) {
 
+        /*
+         * Skip reading (and pruning) the JSON file when the index has no
+         * candidates: pruning is done by the next write or user home clean.
+         */
+        if (isHoldIndexCurrent(userId) && !HOLD_INDEX.hasJobs(userId,
+                printerNames, expiryRef.getTime())) {
+            return new ArrayList<>();
+        }
+
         final OutboxInfoDto outboxInfo = pruneOutboxInfo(userId,
                 readOutboxInfo(userId), expiryRef, RunModeSwitch.REAL);
 
@@ -824,6 +906,11 @@ public final class OutboxServiceImpl extends AbstractService
         final long extendedTime =
                 DateUtils.addMinutes(new Date(), minutes).getTime();
 
+        if (isHoldIndexCurrent(userId)
+                && HOLD_INDEX.getFirstExpiryTime(userId) >= extendedTime) {
+            return 0;
+        }
+
         final OutboxInfoDto outboxInfo = readOutboxInfo(userId);
 
         int nExtended = 0;
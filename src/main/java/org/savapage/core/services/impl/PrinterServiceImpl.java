@@ -74,6 +74,7 @@ import org.savapage.core.print.proxy.JsonProxyPrinterOptChoice;
 import org.savapage.core.services.PrinterService;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.helpers.PrinterAttrLookup;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
 import org.savapage.core.snmp.SnmpPrtMarkerColorantEntry;
 import org.savapage.core.snmp.SnmpPrtMarkerColorantValueEnum;
 import org.savapage.core.snmp.SnmpPrtMarkerSuppliesClassEnum;
@@ -646,6 +647,81 @@ public final class PrinterServiceImpl extends AbstractService
         snmpRetrieveService().probeSnmpRetrieveTrigger(printer);
     }
 
+    @Override
+    public void addUsage(final Printer printer,
+            final UsageCounterAggregator.Delta delta) {
+
+        printer.setTotalJobs(printer.getTotalJobs().intValue()
+                + (int) delta.get(UsageCounterAggregator.Counter.JOBS));
+        printer.setTotalPages(printer.getTotalPages().intValue()
+                + (int) delta.get(UsageCounterAggregator.Counter.PAGES));
+        printer.setTotalSheets(printer.getTotalSheets().intValue()
+                + (int) delta.get(UsageCounterAggregator.Counter.SHEETS));
+        printer.setTotalEsu(printer.getTotalEsu().longValue()
+                + delta.get(UsageCounterAggregator.Counter.ESU));
+        printer.setTotalBytes(printer.getTotalBytes().longValue()
+                + delta.get(UsageCounterAggregator.Counter.BYTES));
+
+        if (printer.getLastUsageDate() == null
+                || printer.getLastUsageDate().before(delta.getLastUsage())) {
+            printer.setLastUsageDate(delta.getLastUsage());
+        }
+
+        printerDAO().update(printer);
+
+        addTimeSeriesDataPoints(printer,
+                PrinterAttrEnum.PRINT_OUT_ROLLING_DAY_PAGES, delta,
+                UsageCounterAggregator.Counter.PAGES);
+        addTimeSeriesDataPoints(printer,
+                PrinterAttrEnum.PRINT_OUT_ROLLING_DAY_SHEETS, delta,
+                UsageCounterAggregator.Counter.SHEETS);
+        // Same observation as logPrintOut().
+        addTimeSeriesDataPoints(printer,
+                PrinterAttrEnum.PRINT_OUT_ROLLING_DAY_ESU, delta,
+                UsageCounterAggregator.Counter.SHEETS);
+        snmpRetrieveService().probeSnmpRetrieveTrigger(printer);
+    }
+
+    /**
+     * Creates or updates a {@link PrinterAttr} time series with the day
+     * observations of aggregated usage.
+     *
+     * @param printer
+     *            The {@link Printer}.
+     * @param name
+     *            The {@link PrinterAttrEnum}.
+     * @param delta
+     *            The aggregated usage.
+     * @param counter
+     *            The counter to observe.
+     */
+    private void addTimeSeriesDataPoints(final Printer printer,
+            final PrinterAttrEnum name,
+            final UsageCounterAggregator.Delta delta,
+            final UsageCounterAggregator.Counter counter) {
+
+        final JsonRollingTimeSeries<Integer> series =
+                new JsonRollingTimeSeries<>(TimeSeriesInterval.DAY,
+                        MAX_TIME_SERIES_INTERVALS_DAYS, 0);
+
+        final PrinterAttr attr =
+                printerAttrDAO().findByName(printer.getId(), name);
+
+        try {
+            if (attr != null && StringUtils.isNotBlank(attr.getValue())) {
+                series.init(attr.getValue());
+            }
+        } catch (IOException e) {
+            throw new SpException(e.getMessage(), e);
+        }
+
+        for (final Date day : delta.getDays()) {
+            series.addDataPoint(day,
+                    Integer.valueOf((int) delta.get(day, counter)));
+        }
+        setPrinterAttrValue(attr, printer, name, series.stringify());
+    }
+
     @Override
     public AbstractJsonRpcMethodResponse addAccessControl(
             final AccessControlScopeEnum scope, final String printerName,
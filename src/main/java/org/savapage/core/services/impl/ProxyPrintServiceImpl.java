@@ -42,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.SortedSet;
 
 import javax.print.attribute.standard.MediaSizeName;
 
@@ -89,6 +90,7 @@ import org.savapage.core.ipp.client.IppClient;
 import org.savapage.core.ipp.client.IppConnectException;
 import org.savapage.core.ipp.client.IppReqCupsGetPpd;
 import org.savapage.core.ipp.client.IppReqPrintJob;
+import org.savapage.core.ipp.client.IppTransport;
 import org.savapage.core.ipp.encoding.IppDelimiterTag;
 import org.savapage.core.ipp.helpers.IppOptionMap;
 import org.savapage.core.ipp.operation.IppGetPrinterAttrOperation;
@@ -109,6 +111,8 @@ import org.savapage.core.json.rpc.JsonRpcMethodResult;
 import org.savapage.core.pdf.PdfCreateInfo;
 import org.savapage.core.pdf.PdfPrintCollector;
 import org.savapage.core.print.proxy.AbstractProxyPrintReq;
+import org.savapage.core.print.proxy.CupsJobEventTracker;
+import org.savapage.core.print.proxy.CupsJobStateReader;
 import org.savapage.core.print.proxy.JsonProxyPrintJob;
 import org.savapage.core.print.proxy.JsonProxyPrinter;
 import org.savapage.core.print.proxy.JsonProxyPrinterOpt;
@@ -174,6 +178,15 @@ public final class ProxyPrintServiceImpl extends AbstractProxyPrintService {
     /** */
     private final IppClient ippClient = IppClient.instance();
 
+    /**
+     * Tracker of CUPS job events for print job state synchronization, or
+     * {@code null} when not created (yet). Guarded by {@link #jobEventLock}.
+     */
+    private CupsJobEventTracker jobEventTracker;
+
+    /** */
+    private final Object jobEventLock = new Object();
+
     /**
      * {@code true} when custom IPP i18n files are present.
      */
@@ -1676,6 +1689,90 @@ public final class ProxyPrintServiceImpl extends AbstractProxyPrintService {
         return statusCode == IppStatusCode.OK;
     }
 
+    /**
+     * Creates an {@link IppTransport} to a CUPS server.
+     *
+     * @param urlCupsServer
+     *            The {@link URL} of the CUPS server.
+     * @return The transport.
+     */
+    private IppTransport createIppTransport(final URL urlCupsServer) {
+        return (operationId, request, response) -> ippClient
+                .send(urlCupsServer, operationId, request, response);
+    }
+
+    @Override
+    public CupsJobStateReader.Result retrievePrintJobStates(
+            final String printerName, final SortedSet<Integer> jobIds)
+            throws IppConnectException {
+
+        final int windowSize = ConfigManager.instance()
+                .getConfigInt(Key.CUPS_IPP_JOB_SYNC_WINDOW);
+
+        if (windowSize < 1) {
+            return null;
+        }
+
+        final JsonProxyPrinter proxyPrinter =
+                this.getCachedPrinter(printerName);
+
+        if (proxyPrinter == null) {
+            return null;
+        }
+
+        final URL urlCupsServer;
+
+        try {
+            urlCupsServer = this.getCupsServerUrl(proxyPrinter.getPrinterUri());
+        } catch (MalformedURLException e) {
+            throw new IppConnectException(e);
+        }
+
+        return new CupsJobStateReader(createIppTransport(urlCupsServer),
+                windowSize).read(proxyPrinter.getPrinterUri().toString(),
+                        jobIds);
+    }
+
+    @Override
+    public Set<String> pollPrintJobEvents() {
+
+        final ConfigManager cm = ConfigManager.instance();
+
+        synchronized (this.jobEventLock) {
+
+            if (!cm.isConfigValue(Key.CUPS_IPP_JOB_SYNC_NOTIFICATION_ENABLE)) {
+                this.jobEventTracker = null;
+                return null;
+            }
+
+            if (this.jobEventTracker == null) {
+                this.jobEventTracker = new CupsJobEventTracker(
+                        createIppTransport(this.getUrlDefaultServer()),
+                        SUBSCRIPTION_PRINTER_URI,
+                        getCUPSEventSubscrRequestingUserName(),
+                        cm.getConfigInt(
+                                Key.CUPS_IPP_JOB_SYNC_NOTIFICATION_LEASE_SECS));
+            }
+
+            try {
+                return this.jobEventTracker.poll();
+            } catch (IppConnectException e) {
+                LOGGER.warn("CUPS job events: {}", e.getMessage());
+                this.jobEventTracker.reset();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void resetPrintJobEvents() {
+        synchronized (this.jobEventLock) {
+            if (this.jobEventTracker != null) {
+                this.jobEventTracker.reset();
+            }
+        }
+    }
+
     /**
      * Retrieves the print job data using the URI of the printer or the job.
      *
@@ -53,6 +53,7 @@ import org.savapage.core.doc.DocContent;
 import org.savapage.core.doc.DocContentTypeEnum;
 import org.savapage.core.fonts.InternalFontFamilyEnum;
 import org.savapage.core.i18n.PhraseEnum;
+import org.savapage.core.ipp.operation.IppGetPrinterAttrRspCache;
 import org.savapage.core.jpa.IppQueue;
 import org.savapage.core.jpa.IppQueueAttr;
 import org.savapage.core.json.JsonRollingTimeSeries;
@@ -67,6 +68,7 @@ import org.savapage.core.services.QueueService;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.helpers.ExternalSupplierInfo;
 import org.savapage.core.services.helpers.MailPrintData;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
 import org.savapage.core.util.InetUtils;
 import org.savapage.core.util.JsonHelper;
 import org.slf4j.Logger;
@@ -186,6 +188,7 @@ public final class QueueServiceImpl extends AbstractService
 
         this.setAttrValue(ippQueueAttrDAO().findByName(queue.getId(), attrEnum),
                 queue, attrEnum, attrValue);
+        IppGetPrinterAttrRspCache.instance().invalidate(queue);
     }
 
     @Override
@@ -198,6 +201,7 @@ public final class QueueServiceImpl extends AbstractService
         if (attr == null) {
             return false;
         }
+        IppGetPrinterAttrRspCache.instance().invalidate(queue);
         return ippQueueAttrDAO().delete(attr);
     }
 
@@ -208,12 +212,14 @@ public final class QueueServiceImpl extends AbstractService
         queue.setDeletedDate(deletedDate);
         queue.setModifiedBy(deletedBy);
         queue.setModifiedDate(deletedDate);
+        IppGetPrinterAttrRspCache.instance().invalidate(queue);
     }
 
     @Override
     public void undoLogicalDeleted(final IppQueue queue) {
         queue.setDeleted(false);
         queue.setDeletedDate(null);
+        IppGetPrinterAttrRspCache.instance().invalidate(queue);
     }
 
     @Override
@@ -242,6 +248,50 @@ public final class QueueServiceImpl extends AbstractService
 
     }
 
+    @Override
+    public void addUsage(final IppQueue queue,
+            final UsageCounterAggregator.Delta delta) {
+
+        queue.setTotalJobs(queue.getTotalJobs().intValue()
+                + (int) delta.get(UsageCounterAggregator.Counter.JOBS));
+        queue.setTotalPages(queue.getTotalPages().intValue()
+                + (int) delta.get(UsageCounterAggregator.Counter.PAGES));
+        queue.setTotalBytes(queue.getTotalBytes().longValue()
+                + delta.get(UsageCounterAggregator.Counter.BYTES));
+
+        if (queue.getLastUsageDate() == null
+                || queue.getLastUsageDate().before(delta.getLastUsage())) {
+            queue.setLastUsageDate(delta.getLastUsage());
+        }
+
+        ippQueueDAO().update(queue);
+
+        final JsonRollingTimeSeries<Integer> statsPages =
+                new JsonRollingTimeSeries<>(TimeSeriesInterval.DAY,
+                        MAX_TIME_SERIES_INTERVALS_DAYS, 0);
+
+        final IppQueueAttrEnum attrEnum =
+                IppQueueAttrEnum.PRINT_IN_ROLLING_DAY_PAGES;
+
+        final IppQueueAttr attr =
+                ippQueueAttrDAO().findByName(queue.getId(), attrEnum);
+
+        try {
+            if (attr != null && StringUtils.isNotBlank(attr.getValue())) {
+                statsPages.init(attr.getValue());
+            }
+        } catch (IOException e) {
+            throw new SpException("addUsage failed", e);
+        }
+
+        for (final Date day : delta.getDays()) {
+            statsPages.addDataPoint(day, Integer.valueOf((int) delta.get(day,
+                    UsageCounterAggregator.Counter.PAGES)));
+        }
+
+        setAttrValue(attr, queue, attrEnum, statsPages.stringify());
+    }
+
     /**
      * Adds an observation to a time series.
      *
@@ -357,6 +407,7 @@ public final class QueueServiceImpl extends AbstractService
                 }
             }
         }
+        IppGetPrinterAttrRspCache.instance().invalidate(queue);
     }
 
     @Override
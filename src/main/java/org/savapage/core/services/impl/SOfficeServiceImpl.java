@@ -24,8 +24,12 @@
  */
 package org.savapage.core.services.impl;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.savapage.core.SpInfo;
@@ -35,18 +39,32 @@ import org.savapage.core.cometd.PubTopicEnum;
 import org.savapage.core.config.ConfigManager;
 import org.savapage.core.dao.enums.AppLogLevelEnum;
 import org.savapage.core.doc.soffice.SOfficeBusyException;
+import org.savapage.core.doc.soffice.SOfficeCommonConvertTask;
 import org.savapage.core.doc.soffice.SOfficeConfig;
 import org.savapage.core.doc.soffice.SOfficeException;
+import org.savapage.core.doc.soffice.SOfficeResultCache;
+import org.savapage.core.doc.soffice.SOfficeStats;
 import org.savapage.core.doc.soffice.SOfficeTask;
 import org.savapage.core.doc.soffice.SOfficeTaskTimeoutException;
+import org.savapage.core.doc.soffice.SOfficeThreadFactory;
 import org.savapage.core.doc.soffice.SOfficeUnoUrl;
 import org.savapage.core.doc.soffice.SOfficeWorker;
 import org.savapage.core.doc.soffice.SOfficeWorkerSettings;
 import org.savapage.core.services.SOfficeService;
+import org.savapage.core.services.helpers.SOfficeWorkerPool;
 import org.savapage.core.util.AppLogHelper;
 import org.savapage.core.util.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * SOffice conversion service with an elastic pool of workers.
+ * <p>
+ * Each configured port is a worker slot. At least the minimum number of
+ * workers is running, and one idle (spare) worker is kept ready when slots
+ * are available: when tasks queue up, workers are started until all slots are
+ * used. Workers that stay idle beyond the spare are stopped again.
+ * </p>
  *
  * @author Rijk Ravestein
  *
@@ -54,15 +72,69 @@ import org.savapage.core.util.Messages;
 public final class SOfficeServiceImpl extends AbstractService
         implements SOfficeService {
 
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SOfficeServiceImpl.class);
+
     /**
-     * The {@link BlockingQueue} with workers.
+     * Number of idle workers kept ready for incoming tasks.
      */
-    private BlockingQueue<SOfficeWorker> workerPool;
+    private static final int SPARE_WORKERS = 1;
 
     /**
-     *
+     * Idle time (milliseconds) after which a worker beyond the minimum and
+     * spare is stopped.
+     */
+    private static final long WORKER_IDLE_STOP_MSEC =
+            TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Interval (milliseconds) of checking idle workers.
+     */
+    private static final long WORKER_IDLE_CHECK_MSEC =
+            TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Name of the result cache directory in the work directory.
+     */
+    private static final String RESULT_CACHE_DIR_NAME = "soffice-cache";
+
+    /**
+     * Starts and stops {@link SOfficeWorker} instances.
+     */
+    private static final class WorkerLauncher implements
+            SOfficeWorkerPool.Launcher<SOfficeWorkerSettings, SOfficeWorker> {
+
+        @Override
+        public SOfficeWorker start(final SOfficeWorkerSettings settings) {
+            final SOfficeWorker worker = new SOfficeWorker(settings);
+            worker.start();
+            return worker;
+        }
+
+        @Override
+        public void stop(final SOfficeWorker worker) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * The elastic pool of workers.
+     */
+    private SOfficeWorkerPool<SOfficeWorkerSettings, SOfficeWorker> workerPool;
+
+    /**
+     * Starts and stops workers.
+     */
+    private ScheduledExecutorService poolScaler;
+
+    /**
+     * Conversion result cache, or {@code null} when not used.
      */
-    private SOfficeWorker[] pooledWorkers;
+    private SOfficeResultCache resultCache;
+
+    /** */
+    private final SOfficeStats stats = new SOfficeStats();
 
     /**
      * Wait time (milliseconds) for an {@link SOfficeWorker} to become available
@@ -87,36 +159,45 @@ public final class SOfficeServiceImpl extends AbstractService
 
     @Override
     public synchronized void start(final SOfficeConfig config) {
-        this.init(config);
 
-        if (this.running || !this.enabled) {
+        if (this.running) {
             return;
         }
 
-        for (final SOfficeWorker worker : this.pooledWorkers) {
-            worker.start();
-            releaseWorker(worker);
+        this.init(config);
+
+        if (!this.enabled) {
+            return;
         }
 
+        final int nSlots = this.workerPool.getSlots();
+
+        this.workerPool.start();
+
         this.running = true;
 
-        final int nWorkers = this.pooledWorkers.length;
+        this.poolScaler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                workerPool.stopIdleWorkers(System.currentTimeMillis());
+            }
+        }, WORKER_IDLE_CHECK_MSEC, WORKER_IDLE_CHECK_MSEC,
+                TimeUnit.MILLISECONDS);
 
         final String plural;
-        if (nWorkers == 1) {
+        if (nSlots == 1) {
             plural = "";
         } else {
             plural = "s";
         }
 
-        SpInfo.instance()
-                .log(String.format(
-                        "SOffice converter started with %d worker%s.", nWorkers,
-                        plural));
+        SpInfo.instance().log(String.format(
+                "SOffice converter started with %d-%d worker%s.",
+                this.workerPool.getMinWorkers(), nSlots, plural));
 
         final String msg = Messages.getMessage(this.getClass(),
                 ConfigManager.getDefaultLocale(), "msg-soffice-started",
-                String.valueOf(nWorkers));
+                String.valueOf(nSlots));
 
         if (this.restarting) {
             AppLogHelper.log(AppLogLevelEnum.INFO, msg);
@@ -147,18 +228,33 @@ public final class SOfficeServiceImpl extends AbstractService
 
         this.taskQueueTimeout = config.getTaskQueueTimeout();
 
-        this.workerPool = new ArrayBlockingQueue<SOfficeWorker>(unoUrls.length);
-
-        this.pooledWorkers = new SOfficeWorker[unoUrls.length];
+        final List<SOfficeWorkerSettings> slots = new ArrayList<>();
 
         for (int i = 0; i < unoUrls.length; i++) {
+            slots.add(new SOfficeWorkerSettings(unoUrls[i], config));
+        }
 
-            final SOfficeWorkerSettings settings =
-                    new SOfficeWorkerSettings(unoUrls[i], config);
+        this.poolScaler = new ScheduledThreadPoolExecutor(1,
+                new SOfficeThreadFactory("SOfficePoolScaler"));
 
-            this.pooledWorkers[i] = new SOfficeWorker(settings);
-        }
+        this.workerPool = new SOfficeWorkerPool<>(new WorkerLauncher(), slots,
+                config.getMinWorkers(), SPARE_WORKERS, WORKER_IDLE_STOP_MSEC,
+                this.poolScaler, this.stats);
+
+        this.resultCache = null;
 
+        if (config.getResultCacheMaxBytes() > 0) {
+            try {
+                this.resultCache = new SOfficeResultCache(
+                        Paths.get(config.getWorkDir().getAbsolutePath(),
+                                RESULT_CACHE_DIR_NAME),
+                        config.getResultCacheMaxBytes());
+            } catch (IOException e) {
+                LOGGER.warn("Conversion cache disabled: {}", e.getMessage());
+            }
+        }
+        this.stats.setResultCache(this.resultCache);
+        this.stats.registerMetrics();
     }
 
     @Override
@@ -198,12 +294,16 @@ public final class SOfficeServiceImpl extends AbstractService
 
         this.running = false;
 
-        this.workerPool.clear();
-
-        for (final SOfficeWorker worker : this.pooledWorkers) {
-            worker.shutdown();
+        this.poolScaler.shutdownNow();
+        try {
+            this.poolScaler.awaitTermination(
+                    WORKER_IDLE_CHECK_MSEC, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
+        this.workerPool.shutdown();
+
         SpInfo.instance().log("... SOffice converter shutdown completed.");
     }
 
@@ -221,56 +321,79 @@ public final class SOfficeServiceImpl extends AbstractService
                     "Cannot execute: service is stopped.");
         }
 
-        SOfficeWorker worker = null;
+        final SOfficeResultCache cache = this.resultCache;
 
-        try {
+        if (cache == null || !(task instanceof SOfficeCommonConvertTask)
+                || !((SOfficeCommonConvertTask) task).isResultCacheable()) {
+            this.executeOnWorker(task);
+            return;
+        }
 
-            worker = acquireWorker();
+        final SOfficeCommonConvertTask convertTask =
+                (SOfficeCommonConvertTask) task;
 
-            if (worker == null) {
-                throw new SOfficeBusyException("No worker available.");
+        String cacheKey = null;
+
+        try {
+            cacheKey = cache.createKey(convertTask);
+            if (cache.retrieve(cacheKey, convertTask.getOutputFile())) {
+                return;
             }
+        } catch (IOException e) {
+            LOGGER.warn("Conversion cache: {}", e.getMessage());
+        }
 
-            worker.execute(task);
+        this.executeOnWorker(task);
 
-        } catch (InterruptedException e) {
-            throw new SOfficeException(e.getMessage());
-        } finally {
-            if (worker != null) {
-                releaseWorker(worker);
+        if (cacheKey != null) {
+            try {
+                cache.store(cacheKey, convertTask.getOutputFile());
+            } catch (IOException e) {
+                LOGGER.warn("Conversion cache: {}", e.getMessage());
             }
         }
     }
 
     /**
-     * Retrieves a worker from the pool, waiting up to the specified wait time
-     * if necessary for one to become available.
+     * Executes a task on a pooled worker.
      *
-     * @return The {@link SOfficeWorker}, or {@code null} if the specified
-     *         waiting time elapses before an element is available.
-     *
-     * @throws InterruptedException
-     *             if interrupted while waiting.
+     * @param task
+     *            The task.
+     * @throws SOfficeBusyException
+     *             When no worker became available within time.
+     * @throws SOfficeTaskTimeoutException
+     *             When task did not complete within time.
      */
-    private SOfficeWorker acquireWorker() throws InterruptedException {
-        /*
-         * Retrieves and removes the head of the pool queue, waiting up to the
-         * specified wait time if necessary for an element to become available.
-         */
-        return this.workerPool.poll(taskQueueTimeout, TimeUnit.MILLISECONDS);
-    }
+    private void executeOnWorker(final SOfficeTask task)
+            throws SOfficeBusyException, SOfficeTaskTimeoutException {
+
+        SOfficeWorker worker = null;
 
-    /**
-     * Releases the {@link SOfficeWorker} by putting it in the pool again.
-     *
-     * @param worker
-     *            The {@link SOfficeWorker}.
-     */
-    private void releaseWorker(final SOfficeWorker worker) {
         try {
-            this.workerPool.put(worker);
-        } catch (InterruptedException interruptedException) {
-            throw new SOfficeException("interrupted", interruptedException);
+
+            final long waitStart = System.currentTimeMillis();
+
+            worker = this.workerPool.acquire(this.taskQueueTimeout);
+
+            if (worker == null) {
+                throw new SOfficeBusyException("No worker available.");
+            }
+
+            final long execStart = System.currentTimeMillis();
+            this.stats.onQueueWait(execStart - waitStart);
+
+            try {
+                worker.execute(task);
+            } finally {
+                this.stats.onConversion(System.currentTimeMillis() - execStart);
+            }
+
+        } catch (InterruptedException e) {
+            throw new SOfficeException(e.getMessage());
+        } finally {
+            if (worker != null) {
+                this.workerPool.release(worker);
+            }
         }
     }
 
@@ -279,4 +402,9 @@ public final class SOfficeServiceImpl extends AbstractService
         return this.running;
     }
 
+    @Override
+    public SOfficeStats getStats() {
+        return this.stats;
+    }
+
 }
@@ -26,6 +26,7 @@ package org.savapage.core.services.impl;
 
 import org.savapage.core.services.AccessControlService;
 import org.savapage.core.services.AccountVoucherService;
+import org.savapage.core.services.AccountLedgerService;
 import org.savapage.core.services.AccountingService;
 import org.savapage.core.services.AppLogService;
 import org.savapage.core.services.AtomFeedService;
@@ -51,6 +52,7 @@ import org.savapage.core.services.SOfficeService;
 import org.savapage.core.services.ServiceFactory;
 import org.savapage.core.services.SnmpRetrieveService;
 import org.savapage.core.services.StatefulService;
+import org.savapage.core.services.UsageCounterService;
 import org.savapage.core.services.UserGroupService;
 import org.savapage.core.services.UserService;
 import org.savapage.ext.papercut.services.PaperCutService;
@@ -79,6 +81,11 @@ public final class ServiceFactoryImpl implements ServiceFactory {
                 new AccessControlServiceImpl();
     }
 
+    private static class AccountLedgerServiceHolder {
+        public static final AccountLedgerService SERVICE =
+                new AccountLedgerServiceImpl();
+    }
+
     private static class AccountingServiceHolder {
         public static final AccountingService SERVICE =
                 new AccountingServiceImpl();
@@ -201,6 +208,11 @@ public final class ServiceFactoryImpl implements ServiceFactory {
                 new SnmpRetrieveServiceImpl();
     }
 
+    private static class UsageCounterServiceHolder {
+        public static final UsageCounterService SERVICE =
+                new UsageCounterServiceImpl();
+    }
+
     private final static StatefulService statefullServices[] =
             new StatefulService[] { //
                     AtomFeedServiceHolder.SERVICE, //
@@ -213,7 +225,9 @@ public final class ServiceFactoryImpl implements ServiceFactory {
                     EmailServiceHolder.SERVICE, //
                     PaperCutServiceHolder.SERVICE, //
                     RestClientServiceHolder.SERVICE, //
-                    SnmpRetrieveServiceHolder.SERVICE //
+                    SnmpRetrieveServiceHolder.SERVICE, //
+                    UsageCounterServiceHolder.SERVICE, //
+                    AccountLedgerServiceHolder.SERVICE //
             };
 
     @Override
@@ -221,6 +235,11 @@ public final class ServiceFactoryImpl implements ServiceFactory {
         return AccessControlServiceHolder.SERVICE;
     }
 
+    @Override
+    public AccountLedgerService getAccountLedgerService() {
+        return AccountLedgerServiceHolder.SERVICE;
+    }
+
     @Override
     public AccountingService getAccountingService() {
         return AccountingServiceHolder.SERVICE;
@@ -356,6 +375,11 @@ public final class ServiceFactoryImpl implements ServiceFactory {
         return SOfficeServiceHolder.SERVICE;
     }
 
+    @Override
+    public UsageCounterService getUsageCounterService() {
+        return UsageCounterServiceHolder.SERVICE;
+    }
+
     @Override
     public void start() {
         for (final StatefulService service : statefullServices) {
@@ -167,7 +167,7 @@ public final class SnmpRetrieveServiceImpl extends AbstractService
         final Date lastDate = printerAttrDAO().getSnmpDate(printer.getId());
 
         if (lastDate != null && triggerMins > DateUtil.minutesBetween(lastDate,
-                printer.getLastUsageDate())) {
+                usageCounterService().getPrintOutLastUsage(printer))) {
             return;
         }
 
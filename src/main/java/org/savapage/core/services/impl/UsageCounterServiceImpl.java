@@ -0,0 +1,479 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.impl;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.savapage.core.SpInfo;
+import org.savapage.core.config.ConfigManager;
+import org.savapage.core.config.IConfigProp.Key;
+import org.savapage.core.config.ServerPathEnum;
+import org.savapage.core.dao.DaoContext;
+import org.savapage.core.jpa.Entity;
+import org.savapage.core.jpa.IppQueue;
+import org.savapage.core.jpa.Printer;
+import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.UsageCounterService;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Batch;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Counter;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Delta;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Target;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UsageCounterServiceImpl extends AbstractService
+        implements UsageCounterService {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(UsageCounterServiceImpl.class);
+
+    /**
+     * Max seconds to wait for a running flush at shutdown.
+     */
+    private static final long SHUTDOWN_WAIT_SECS = 30;
+
+    /**
+     * The aggregator, or {@code null} when write-behind is not active.
+     */
+    private volatile UsageCounterAggregator aggregator;
+
+    /** */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Serializes flushes.
+     */
+    private final Object flushMutex = new Object();
+
+    @Override
+    public void start() {
+
+        final ConfigManager cm = ConfigManager.instance();
+
+        if (!cm.isConfigValue(Key.STATS_WRITE_BEHIND_ENABLE)) {
+            return;
+        }
+
+        final UsageCounterAggregator agg = new UsageCounterAggregator(
+                ServerPathEnum.USAGE_JOURNAL.getPathAbsolute());
+
+        try {
+            final int records = agg.open(this.readCommittedSeq());
+            if (records > 0) {
+                SpInfo.instance().log(String.format(
+                        "Replayed [%d] usage counter journal records.",
+                        records));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Usage counter write-behind disabled: {}",
+                    e.getMessage());
+            return;
+        }
+
+        this.aggregator = agg;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "UsageCounterFlusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long msec = cm.getConfigLong(Key.STATS_WRITE_BEHIND_FLUSH_MSEC);
+
+        this.flusher.scheduleWithFixedDelay(this::flushSafe, 0L, msec,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+
+        if (this.aggregator == null) {
+            return;
+        }
+
+        /*
+         * Final flush on the flusher thread, since it opens and closes a
+         * service context of its own.
+         */
+        this.flusher.execute(this::flushSafe);
+        this.flusher.shutdown();
+
+        try {
+            if (!this.flusher.awaitTermination(SHUTDOWN_WAIT_SECS,
+                    TimeUnit.SECONDS)) {
+                LOGGER.warn("Usage counter final flush timed out: "
+                        + "pending usage is replayed from journal.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            this.aggregator.close();
+        } catch (IOException e) {
+            LOGGER.warn("Usage counter journal close: {}", e.getMessage());
+        }
+        this.aggregator = null;
+    }
+
+    /**
+     * @return The sequence number of the last committed journal segment.
+     */
+    private long readCommittedSeq() {
+
+        final String value = ConfigManager.instance()
+                .readDbConfigKey(Key.STATS_WRITE_BEHIND_JOURNAL_SEQ);
+
+        if (StringUtils.isBlank(value)) {
+            return 0L;
+        }
+        return Long.parseLong(value);
+    }
+
+    @Override
+    public boolean addPrintIn(final IppQueue queue, final Date jobDate,
+            final Date observationTime, final int jobPages,
+            final long jobBytes) {
+
+        return this.add(Target.QUEUE, queue.getId(), jobDate, observationTime,
+                1, jobPages, 0, 0L, jobBytes);
+    }
+
+    @Override
+    public boolean addPrintOut(final Printer printer, final Date jobDate,
+            final int jobPages, final int jobSheets, final long jobEsu,
+            final long jobBytes) {
+
+        // Same as PrinterService#addJobTotals().
+        final int jobs;
+        if (jobPages < 0) {
+            jobs = -1;
+        } else {
+            jobs = 1;
+        }
+        return this.add(Target.PRINTER, printer.getId(), jobDate, jobDate,
+                jobs, jobPages, jobSheets, jobEsu, jobBytes);
+    }
+
+    /**
+     * Adds usage to the aggregator.
+     *
+     * @param target
+     *            The target.
+     * @param id
+     *            Primary database key of target.
+     * @param jobDate
+     *            Job date.
+     * @param observationTime
+     *            Time series observation time.
+     * @param jobs
+     *            Number of jobs.
+     * @param pages
+     *            Number of pages.
+     * @param sheets
+     *            Number of sheets.
+     * @param esu
+     *            Number of ESU.
+     * @param bytes
+     *            Number of bytes.
+     * @return {@code true} when added.
+     */
+    private boolean add(final Target target, final Long id,
+            final Date jobDate, final Date observationTime, final int jobs,
+            final int pages, final int sheets, final long esu,
+            final long bytes) {
+
+        final UsageCounterAggregator agg = this.aggregator;
+
+        if (agg == null) {
+            return false;
+        }
+        try {
+            agg.add(target, id, jobDate, observationTime, jobs, pages, sheets,
+                    esu, bytes);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Usage counter journal write: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gets the usage of a target that is not flushed to the database yet.
+     *
+     * @param target
+     *            The target.
+     * @param id
+     *            Primary database key of target.
+     * @return The pending usage, or {@code null} when none.
+     */
+    private Delta getPending(final Target target, final Long id) {
+        final UsageCounterAggregator agg = this.aggregator;
+        if (agg == null || id == null) {
+            return null;
+        }
+        return agg.getPending(target, id);
+    }
+
+    /**
+     * Adds pending usage to a database total.
+     *
+     * @param total
+     *            The database total (can be {@code null}).
+     * @param pending
+     *            The pending usage (can be {@code null}).
+     * @param counter
+     *            The counter.
+     * @return The total.
+     */
+    private static long addPending(final Number total, final Delta pending,
+            final Counter counter) {
+
+        long value = 0L;
+
+        if (total != null) {
+            value = total.longValue();
+        }
+        if (pending != null) {
+            value += pending.get(counter);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the latest of a database last usage date and a pending one.
+     *
+     * @param lastUsage
+     *            The database last usage date (can be {@code null}).
+     * @param pending
+     *            The pending usage (can be {@code null}).
+     * @return The date, or {@code null} when never used.
+     */
+    private static Date addPending(final Date lastUsage, final Delta pending) {
+
+        if (pending == null) {
+            return lastUsage;
+        }
+
+        final Date pendingUsage = pending.getLastUsage();
+
+        if (lastUsage == null || lastUsage.before(pendingUsage)) {
+            return pendingUsage;
+        }
+        return lastUsage;
+    }
+
+    @Override
+    public long getPrintInTotal(final IppQueue queue, final Counter counter) {
+
+        final Number total;
+
+        switch (counter) {
+        case JOBS:
+            total = queue.getTotalJobs();
+            break;
+        case PAGES:
+            total = queue.getTotalPages();
+            break;
+        case BYTES:
+            total = queue.getTotalBytes();
+            break;
+        default:
+            throw new IllegalArgumentException(counter.toString());
+        }
+        return addPending(total, this.getPending(Target.QUEUE, queue.getId()),
+                counter);
+    }
+
+    @Override
+    public Date getPrintInLastUsage(final IppQueue queue) {
+        return addPending(queue.getLastUsageDate(),
+                this.getPending(Target.QUEUE, queue.getId()));
+    }
+
+    @Override
+    public long getPrintOutTotal(final Printer printer,
+            final Counter counter) {
+
+        final Number total;
+
+        switch (counter) {
+        case JOBS:
+            total = printer.getTotalJobs();
+            break;
+        case PAGES:
+            total = printer.getTotalPages();
+            break;
+        case SHEETS:
+            total = printer.getTotalSheets();
+            break;
+        case ESU:
+            total = printer.getTotalEsu();
+            break;
+        case BYTES:
+            total = printer.getTotalBytes();
+            break;
+        default:
+            throw new IllegalArgumentException(counter.toString());
+        }
+        return addPending(total,
+                this.getPending(Target.PRINTER, printer.getId()), counter);
+    }
+
+    @Override
+    public Date getPrintOutLastUsage(final Printer printer) {
+        return addPending(printer.getLastUsageDate(),
+                this.getPending(Target.PRINTER, printer.getId()));
+    }
+
+    /**
+     * Flushes, and logs any exception.
+     */
+    private void flushSafe() {
+        try {
+            this.flush();
+        } catch (Exception e) {
+            LOGGER.error("Usage counter flush: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+
+        final UsageCounterAggregator agg = this.aggregator;
+
+        if (agg == null) {
+            return;
+        }
+
+        synchronized (this.flushMutex) {
+
+            final Batch batch;
+
+            try {
+                batch = agg.drain();
+            } catch (IOException e) {
+                LOGGER.error("Usage counter journal rotate: {}",
+                        e.getMessage());
+                return;
+            }
+
+            if (batch == null) {
+                return;
+            }
+
+            ServiceContext.open();
+            ServiceContext.setActor(Entity.ACTOR_SYSTEM);
+
+            final DaoContext daoContext = ServiceContext.getDaoContext();
+
+            boolean committed = false;
+
+            try {
+                daoContext.beginTransaction();
+
+                /*
+                 * Deltas are in (target, id) order: entity locks are always
+                 * acquired in the same order.
+                 */
+                for (final Delta delta : batch.getDeltas()) {
+                    this.flush(delta);
+                }
+
+                ConfigManager.instance().saveDbConfigKey(
+                        Key.STATS_WRITE_BEHIND_JOURNAL_SEQ,
+                        String.valueOf(batch.getJournalSeq()),
+                        Entity.ACTOR_SYSTEM);
+
+                daoContext.commit();
+                committed = true;
+
+            } catch (Exception e) {
+                /*
+                 * The batch is kept, and merged into the next flush.
+                 */
+                LOGGER.warn("Usage counter flush of [{}] entities failed: {}",
+                        batch.getDeltas().size(), e.getMessage());
+            } finally {
+                if (!committed) {
+                    daoContext.rollback();
+                }
+                ServiceContext.close();
+            }
+
+            if (committed) {
+                try {
+                    agg.commit(batch);
+                } catch (IOException e) {
+                    LOGGER.warn("Usage counter journal cleanup: {}",
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a delta to its locked entity. A delta of a deleted entity is
+     * dropped.
+     *
+     * @param delta
+     *            The delta.
+     */
+    private void flush(final Delta delta) {
+
+        switch (delta.getTarget()) {
+        case QUEUE:
+            final IppQueue queue = queueService().lockQueue(delta.getId());
+            if (queue != null) {
+                queueService().addUsage(queue, delta);
+            }
+            break;
+
+        case PRINTER:
+            final Printer printer =
+                    printerService().lockPrinter(delta.getId());
+            if (printer != null) {
+                printerService().addUsage(printer, delta);
+            }
+            break;
+
+        default:
+            throw new IllegalStateException(delta.getTarget().toString());
+        }
+    }
+
+}
@@ -99,6 +99,7 @@ import org.savapage.core.json.rpc.AbstractJsonRpcMethodResponse;
 import org.savapage.core.json.rpc.JsonRpcMethodError;
 import org.savapage.core.json.rpc.JsonRpcMethodResult;
 import org.savapage.core.json.rpc.impl.ResultListUsers;
+import org.savapage.core.msg.UserMsgBus;
 import org.savapage.core.rfid.RfidNumberFormat;
 import org.savapage.core.services.ServiceContext;
 import org.savapage.core.services.UserService;
@@ -2673,6 +2674,8 @@ public final class UserServiceImpl extends AbstractService
         user.setModifiedBy(ServiceContext.getActor());
         user.setModifiedDate(trxDate);
 
+        UserMsgBus.instance().remove(user.getUserId());
+
         removeAllCards(user);
         removeAllIdNumbers(user);
         removeAllEmails(user);
@@ -3188,7 +3191,7 @@ public final class UserServiceImpl extends AbstractService
 
         if (!fileHomeDir.exists()) {
 
-            final Date perfStartTime = PerformanceLogger.startTime();
+            final long perfStartTime = PerformanceLogger.startTime();
 
             final DaoContext daoContext = ServiceContext.getDaoContext();
 
@@ -26,7 +26,10 @@ package org.savapage.core.snmp;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.snmp4j.CommunityTarget;
@@ -245,8 +248,18 @@ public final class SnmpClientSession {
      *             When SNMP connection fails.
      */
     public Integer getEnterprise() throws SnmpConnectException {
+        return parseEnterprise(this.getAsString(SnmpMibDict.OID_SYSTEM_OID));
+    }
 
-        final String systemOID = this.getAsString(SnmpMibDict.OID_SYSTEM_OID);
+    /**
+     * Gets the IANA enterprise number from a system object ID.
+     *
+     * @param systemOID
+     *            The value of {@link SnmpMibDict#OID_SYSTEM_OID} (can be
+     *            {@code null}).
+     * @return The IANA enterprise number, or {@code null} when not found.
+     */
+    public static Integer parseEnterprise(final String systemOID) {
 
         if (systemOID == null
                 || !systemOID.startsWith(SnmpMibDict.PFX_ENTERPRISES)) {
@@ -264,6 +277,73 @@ public final class SnmpClientSession {
         return Integer.valueOf(tokens[0]);
     }
 
+    /**
+     * Gets the values of multiple scalar OIDs with a single GET request.
+     * <p>
+     * An SNMPv1 agent fails the whole request with {@code noSuchName} when
+     * one of the OIDs is not found: in that case the offending OID (as
+     * indicated by the error index) is removed, and the request is repeated
+     * with the remaining OIDs. On any other error, e.g. {@code tooBig} or
+     * {@code genErr}, the remaining OIDs are requested one by one.
+     * </p>
+     *
+     * @param oids
+     *            The scalar OIDs.
+     * @return Map with values of found OIDs: OIDs that are not found are
+     *         absent.
+     * @throws SnmpConnectException
+     *             When SNMP connection fails.
+     */
+    public Map<OID, Variable> getAsVariables(final OID[] oids)
+            throws SnmpConnectException {
+
+        final Map<OID, Variable> map = new HashMap<>();
+        final List<OID> oidList = new ArrayList<>(Arrays.asList(oids));
+
+        while (!oidList.isEmpty()) {
+
+            final PDU response =
+                    this.getResponse(oidList.toArray(new OID[oidList.size()]));
+
+            final int errorStatus = response.getErrorStatus();
+
+            if (errorStatus == SnmpConstants.SNMP_ERROR_SUCCESS) {
+
+                for (final VariableBinding vb : response
+                        .getVariableBindings()) {
+
+                    final Variable variable = vb.getVariable();
+
+                    if (variable != null && !variable.isException()
+                            && oidList.contains(vb.getOid())) {
+                        map.put(vb.getOid(), variable);
+                    }
+                }
+                break;
+            }
+
+            final int errorIndex = response.getErrorIndex();
+
+            if (errorStatus != SnmpConstants.SNMP_ERROR_NO_SUCH_NAME
+                    || errorIndex < 1 || errorIndex > oidList.size()) {
+
+                if (oidList.size() > 1) {
+                    // E.g. tooBig or genErr: get the OIDs one by one.
+                    for (final OID oid : oidList) {
+                        final VariableBinding vb = this.getResponse(oid);
+                        if (vb != null && vb.getVariable() != null
+                                && !vb.getVariable().isException()) {
+                            map.put(oid, vb.getVariable());
+                        }
+                    }
+                }
+                break;
+            }
+            oidList.remove(errorIndex - 1);
+        }
+        return map;
+    }
+
     /**
      * This method is capable of handling multiple OIDs.
      *
@@ -0,0 +1,374 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled matcher of an IPv4 or IPv6 address against a collection of CIDRs.
+ * <p>
+ * The CIDRs are compiled into a binary prefix trie per address family, so a
+ * match takes at most one step per address bit, whatever the number of CIDRs.
+ * Matching semantics are those of {@link CidrChecker}: an address matches
+ * when it is in range of at least one (1) CIDR of its own address family.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CidrMatcher {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CidrMatcher.class);
+
+    /**
+     * Number of bits in byte.
+     */
+    private static final int BITS_IN_BYTE = 8;
+
+    /** */
+    private static final String CIDR_SPLIT_STRING = "/";
+
+    /**
+     * CIDR separators in a collection of CIDRs.
+     */
+    private static final String CIDR_SEPARATORS = " ,;";
+
+    /** */
+    private static final int IPV4_BYTES = 4;
+
+    /** */
+    private static final int IPV6_BYTES = 16;
+
+    /**
+     * Binary prefix trie with nodes in parallel arrays. Node 0 is the root,
+     * child index 0 means "no child".
+     */
+    private static final class Trie {
+
+        /** */
+        private static final int INITIAL_NODES = 16;
+
+        /** */
+        private int[] zero = new int[INITIAL_NODES];
+
+        /** */
+        private int[] one = new int[INITIAL_NODES];
+
+        /**
+         * {@code true} when a prefix ends at the node.
+         */
+        private boolean[] terminal = new boolean[INITIAL_NODES];
+
+        /** */
+        private int size = 1;
+
+        /**
+         * @param address
+         *            Address bytes.
+         * @param bit
+         *            Bit index.
+         * @return {@code true} when bit is set.
+         */
+        private static boolean isSet(final byte[] address, final int bit) {
+            return (address[bit / BITS_IN_BYTE]
+                    & (0x80 >>> (bit % BITS_IN_BYTE))) != 0;
+        }
+
+        /**
+         * Inserts a prefix.
+         *
+         * @param prefix
+         *            Prefix address bytes.
+         * @param bits
+         *            Number of prefix bits.
+         */
+        void insert(final byte[] prefix, final int bits) {
+
+            int node = 0;
+
+            for (int bit = 0; bit < bits && !this.terminal[node]; bit++) {
+
+                final int[] children;
+                if (isSet(prefix, bit)) {
+                    children = this.one;
+                } else {
+                    children = this.zero;
+                }
+
+                if (children[node] == 0) {
+                    final int child = this.newNode();
+                    // Arrays might have grown.
+                    if (isSet(prefix, bit)) {
+                        this.one[node] = child;
+                    } else {
+                        this.zero[node] = child;
+                    }
+                    node = child;
+                } else {
+                    node = children[node];
+                }
+            }
+            // A shorter prefix already covers this one.
+            this.terminal[node] = true;
+        }
+
+        /**
+         * @return Index of new node.
+         */
+        private int newNode() {
+            if (this.size == this.terminal.length) {
+                final int length = 2 * this.size;
+                this.zero = Arrays.copyOf(this.zero, length);
+                this.one = Arrays.copyOf(this.one, length);
+                this.terminal = Arrays.copyOf(this.terminal, length);
+            }
+            return this.size++;
+        }
+
+        /**
+         * @param address
+         *            Address bytes.
+         * @return {@code true} when a prefix matches the address.
+         */
+        boolean matches(final byte[] address) {
+
+            final int bits = address.length * BITS_IN_BYTE;
+
+            int node = 0;
+
+            for (int bit = 0; bit < bits; bit++) {
+                if (this.terminal[node]) {
+                    return true;
+                }
+                if (isSet(address, bit)) {
+                    node = this.one[node];
+                } else {
+                    node = this.zero[node];
+                }
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return this.terminal[node];
+        }
+    }
+
+    /** */
+    private final Trie ipv4 = new Trie();
+
+    /** */
+    private final Trie ipv6 = new Trie();
+
+    /** */
+    private int cidrCount;
+
+    /**
+     * Use {@link #compile(String)}.
+     */
+    private CidrMatcher() {
+    }
+
+    /**
+     * @param ipAddress
+     *            IP address or host name.
+     * @return {@link InetAddress}
+     * @throws IllegalArgumentException
+     *             If IP address is invalid.
+     */
+    private static InetAddress createInetAddress(final String ipAddress) {
+        try {
+            return InetAddress.getByName(ipAddress);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    String.format("IP %s is invalid.", ipAddress));
+        }
+    }
+
+    /**
+     * Compiles a collection of CIDRs.
+     *
+     * @param cidrRanges
+     *            CIDRs separated by any of the characters ' ' (space), ','
+     *            (comma) or ';' (semicolon).
+     * @return The matcher.
+     * @throws IllegalArgumentException
+     *             If a CIDR is invalid.
+     */
+    public static CidrMatcher compile(final String cidrRanges) {
+        return compile(cidrRanges, false);
+    }
+
+    /**
+     * Compiles a collection of CIDRs, skipping CIDRs with a host name that
+     * can not be resolved. Skipped CIDRs are logged as warning, so one
+     * unresolvable host name does not disable the other CIDRs.
+     *
+     * @param cidrRanges
+     *            CIDRs separated by any of the characters ' ' (space), ','
+     *            (comma) or ';' (semicolon).
+     * @return The matcher.
+     * @throws IllegalArgumentException
+     *             If a CIDR is syntactically invalid.
+     */
+    public static CidrMatcher compileResolvable(final String cidrRanges) {
+        return compile(cidrRanges, true);
+    }
+
+    /**
+     * @param cidrRanges
+     *            CIDRs separated by any of the characters ' ' (space), ','
+     *            (comma) or ';' (semicolon).
+     * @param skipUnresolved
+     *            If {@code true}, CIDRs with an unresolvable host name are
+     *            skipped.
+     * @return The matcher.
+     * @throws IllegalArgumentException
+     *             If a CIDR is invalid.
+     */
+    private static CidrMatcher compile(final String cidrRanges,
+            final boolean skipUnresolved) {
+
+        final CidrMatcher matcher = new CidrMatcher();
+
+        if (cidrRanges == null) {
+            return matcher;
+        }
+
+        for (final String cidr : StringUtils.split(cidrRanges,
+                CIDR_SEPARATORS)) {
+            matcher.add(cidr.trim(), skipUnresolved);
+        }
+        return matcher;
+    }
+
+    /**
+     * Adds a CIDR.
+     *
+     * @param cidr
+     *            The CIDR.
+     * @param skipUnresolved
+     *            If {@code true}, a CIDR with an unresolvable host name is
+     *            logged and skipped.
+     * @throws IllegalArgumentException
+     *             If CIDR is invalid.
+     */
+    private void add(final String cidr, final boolean skipUnresolved) {
+
+        if (cidr.indexOf(CIDR_SPLIT_STRING.charAt(0)) == 0) {
+            throw new IllegalArgumentException(
+                    String.format("CIDR %s is invalid.", cidr));
+        }
+
+        final String[] addressAndMask = cidr.split(CIDR_SPLIT_STRING);
+
+        if (addressAndMask.length != 2) {
+            throw new IllegalArgumentException(
+                    String.format("CIDR %s is invalid.", cidr));
+        }
+
+        final int maskBits = Integer.parseInt(addressAndMask[1]);
+        final byte[] prefix;
+
+        if (skipUnresolved) {
+            try {
+                prefix = InetAddress.getByName(addressAndMask[0]).getAddress();
+            } catch (UnknownHostException e) {
+                LOGGER.warn("CIDR {} skipped: host {} is unknown.", cidr,
+                        addressAndMask[0]);
+                return;
+            }
+        } else {
+            prefix = createInetAddress(addressAndMask[0]).getAddress();
+        }
+
+        if (maskBits < 0 || maskBits > prefix.length * BITS_IN_BYTE) {
+            throw new IllegalArgumentException(
+                    String.format("CIDR %s is invalid.", cidr));
+        }
+
+        this.getTrie(prefix).insert(prefix, maskBits);
+        this.cidrCount++;
+    }
+
+    /**
+     * @param address
+     *            Address bytes.
+     * @return The trie of the address family.
+     */
+    private Trie getTrie(final byte[] address) {
+        if (address.length == IPV4_BYTES) {
+            return this.ipv4;
+        }
+        if (address.length == IPV6_BYTES) {
+            return this.ipv6;
+        }
+        throw new IllegalArgumentException(
+                String.format("Address length %d is invalid.", address.length));
+    }
+
+    /**
+     * @return {@code true} when no CIDR is compiled.
+     */
+    public boolean isEmpty() {
+        return this.cidrCount == 0;
+    }
+
+    /**
+     * Checks if an IP address is in range of at least one (1) CIDR.
+     *
+     * @param ipAddress
+     *            The IPv4 or IPv6 address.
+     * @return {@code true} if in range.
+     * @throws IllegalArgumentException
+     *             If IP address is invalid.
+     */
+    public boolean matches(final String ipAddress) {
+        return this.matches(createInetAddress(ipAddress));
+    }
+
+    /**
+     * Checks if an IP address is in range of at least one (1) CIDR.
+     *
+     * @param inetAddress
+     *            The IPv4 or IPv6 address.
+     * @return {@code true} if in range.
+     */
+    public boolean matches(final InetAddress inetAddress) {
+        final byte[] address = inetAddress.getAddress();
+        return this.getTrie(address).matches(address);
+    }
+
+}
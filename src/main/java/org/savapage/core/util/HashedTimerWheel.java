@@ -0,0 +1,285 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import java.util.List;
+
+/**
+ * A hashed timer wheel for expiring many items with O(1) schedule and cancel.
+ * <p>
+ * Time is divided into ticks of fixed duration. An item is put in the slot of
+ * its deadline tick (modulo the number of slots), so a slot can hold items of
+ * several wheel revolutions: only items with a due deadline tick are expired
+ * when a slot is processed.
+ * </p>
+ * <p>
+ * The wheel has no thread of its own: expiry is driven by the owner calling
+ * {@link #advance(long, List)}, e.g. on each access. Items expire at most one
+ * tick after their deadline. This class is thread-safe.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ * @param <T>
+ *            Item type.
+ */
+public final class HashedTimerWheel<T> {
+
+    /**
+     * A scheduled item.
+     *
+     * @param <T>
+     *            Item type.
+     */
+    public static final class Timeout<T> {
+
+        /** */
+        private final T item;
+
+        /** */
+        private final long deadlineTick;
+
+        /** */
+        private Timeout<T> prev;
+
+        /** */
+        private Timeout<T> next;
+
+        /**
+         * Slot index, or {@code -1} when not (or no longer) in the wheel.
+         */
+        private int slot;
+
+        /**
+         * @param item
+         *            The item.
+         * @param tick
+         *            The deadline tick.
+         */
+        private Timeout(final T item, final long tick) {
+            this.item = item;
+            this.deadlineTick = tick;
+        }
+
+        /**
+         * @return The item.
+         */
+        public T getItem() {
+            return this.item;
+        }
+    }
+
+    /** */
+    private final long tickMsec;
+
+    /** */
+    private final int mask;
+
+    /**
+     * Heads of the doubly linked slot lists.
+     */
+    private final Timeout<T>[] slots;
+
+    /**
+     * The last processed tick.
+     */
+    private long currentTick;
+
+    /** */
+    private int size;
+
+    /**
+     * @param nSlots
+     *            Number of slots: a power of two.
+     * @param tickDuration
+     *            Tick duration in milliseconds.
+     * @param startTime
+     *            Start time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(final int nSlots, final long tickDuration,
+            final long startTime) {
+
+        if (nSlots <= 0 || Integer.bitCount(nSlots) != 1) {
+            throw new IllegalArgumentException(
+                    "Number of slots must be a power of two.");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException(
+                    "Tick duration must be positive.");
+        }
+        this.tickMsec = tickDuration;
+        this.mask = nSlots - 1;
+        this.slots = new Timeout[nSlots];
+        this.currentTick = startTime / tickDuration;
+    }
+
+    /**
+     * Schedules an item.
+     *
+     * @param item
+     *            The item.
+     * @param deadline
+     *            The time in milliseconds the item expires. When in the past,
+     *            the item expires at the next tick.
+     * @return The {@link Timeout} to cancel the schedule.
+     */
+    public synchronized Timeout<T> schedule(final T item,
+            final long deadline) {
+
+        // Round up, so an item never expires before its deadline.
+        final long tick = Math.max((deadline + this.tickMsec - 1)
+                / this.tickMsec, this.currentTick + 1);
+
+        final Timeout<T> timeout = new Timeout<>(item, tick);
+        this.link(timeout, (int) (tick & this.mask));
+        this.size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a scheduled item.
+     *
+     * @param timeout
+     *            The {@link Timeout}.
+     * @return {@code true} when cancelled, {@code false} when expired or
+     *         cancelled before.
+     */
+    public synchronized boolean cancel(final Timeout<T> timeout) {
+        if (timeout.slot < 0) {
+            return false;
+        }
+        this.unlink(timeout);
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel to a point in time and collects the expired items.
+     *
+     * @param now
+     *            The current time in milliseconds.
+     * @param expired
+     *            The list to add the expired items to.
+     * @return The number of expired items.
+     */
+    public synchronized int advance(final long now, final List<T> expired) {
+
+        final long targetTick = now / this.tickMsec;
+
+        if (targetTick <= this.currentTick) {
+            return 0;
+        }
+
+        int count = 0;
+
+        if (targetTick - this.currentTick > this.mask) {
+            // Missed a full revolution or more: process each slot once.
+            for (int i = 0; i < this.slots.length; i++) {
+                count += this.expireSlot(i, targetTick, expired);
+            }
+        } else {
+            for (long tick = this.currentTick + 1; tick <= targetTick;
+                    tick++) {
+                count += this.expireSlot((int) (tick & this.mask), tick,
+                        expired);
+            }
+        }
+        this.currentTick = targetTick;
+        this.size -= count;
+        return count;
+    }
+
+    /**
+     * @return The number of scheduled items.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Expires the items in a slot with a deadline tick at or before a tick.
+     *
+     * @param slot
+     *            The slot index.
+     * @param tick
+     *            The tick.
+     * @param expired
+     *            The list to add the expired items to.
+     * @return The number of expired items.
+     */
+    private int expireSlot(final int slot, final long tick,
+            final List<T> expired) {
+
+        int count = 0;
+        Timeout<T> timeout = this.slots[slot];
+
+        while (timeout != null) {
+            final Timeout<T> next = timeout.next;
+            if (timeout.deadlineTick <= tick) {
+                this.unlink(timeout);
+                expired.add(timeout.item);
+                count++;
+            }
+            timeout = next;
+        }
+        return count;
+    }
+
+    /**
+     * @param timeout
+     *            The timeout to add at head of slot list.
+     * @param slot
+     *            The slot index.
+     */
+    private void link(final Timeout<T> timeout, final int slot) {
+        final Timeout<T> head = this.slots[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        this.slots[slot] = timeout;
+    }
+
+    /**
+     * @param timeout
+     *            The timeout to remove from its slot list.
+     */
+    private void unlink(final Timeout<T> timeout) {
+        if (timeout.prev == null) {
+            this.slots[timeout.slot] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+}
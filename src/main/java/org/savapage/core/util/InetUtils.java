@@ -36,7 +36,10 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -70,6 +73,49 @@ public final class InetUtils {
     /** */
     private static final String IPV4_LOOP_BACK_ADDR = "127.0.0.1";
 
+    /**
+     * Max number of cached {@link CidrMatcher} instances.
+     */
+    private static final int CIDR_MATCHER_CACHE_MAX = 256;
+
+    /**
+     * Milliseconds a cached {@link CidrMatcher} is used: host names in CIDRs
+     * are resolved again after this period.
+     */
+    private static final long CIDR_MATCHER_TTL_MSEC =
+            TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * A cached {@link CidrMatcher}.
+     */
+    private static final class CachedCidrMatcher {
+
+        /** */
+        private final CidrMatcher matcher;
+
+        /** Time (epoch msec) after which the matcher is compiled again. */
+        private final long expiry;
+
+        /**
+         * @param cidrMatcher
+         *            The matcher.
+         * @param expiryTime
+         *            Time (epoch msec) after which the matcher is compiled
+         *            again.
+         */
+        CachedCidrMatcher(final CidrMatcher cidrMatcher,
+                final long expiryTime) {
+            this.matcher = cidrMatcher;
+            this.expiry = expiryTime;
+        }
+    }
+
+    /**
+     * {@link CidrMatcher} by CIDR collection string.
+     */
+    private static final Map<String, CachedCidrMatcher> CIDR_MATCHER_CACHE =
+            new ConcurrentHashMap<>();
+
     /** */
     public static final String LOCAL_HOST = "localhost";
 
@@ -282,16 +328,53 @@ public final class InetUtils {
                 || ipAddrWrk.equals(IPV4_LOOP_BACK_ADDR);
 
         if (!inrange) {
-            for (final String cidr : StringUtils.split(cidrRanges, " ,;")) {
-                inrange = new CidrChecker(cidr.trim()).isInRange(ipAddrWrk);
-                if (inrange) {
-                    break;
-                }
-            }
+            inrange = getCidrMatcher(cidrRanges).matches(ipAddrWrk);
         }
         return inrange;
     }
 
+    /**
+     * Gets the compiled {@link CidrMatcher} of a collection of CIDRs.
+     * <p>
+     * Matchers are cached by CIDR collection string, so a changed queue or
+     * configuration value simply gets a matcher of its own. A matcher is
+     * compiled again when older than {@link #CIDR_MATCHER_TTL_MSEC}, so host
+     * names in CIDRs are resolved again. The cache is cleared when full.
+     * </p>
+     * <p>
+     * CIDRs with a host name that can not be resolved are skipped (and
+     * logged) when compiling, so they are not looked up again until the
+     * matcher expires.
+     * </p>
+     *
+     * @param cidrRanges
+     *            CIDRs separated by any of the characters ' ' (space), ','
+     *            (comma) or ';' (semicolon).
+     * @return The matcher.
+     * @throws IllegalArgumentException
+     *             If a CIDR is syntactically invalid.
+     */
+    public static CidrMatcher getCidrMatcher(final String cidrRanges) {
+
+        final long now = System.currentTimeMillis();
+        final CachedCidrMatcher cached = CIDR_MATCHER_CACHE.get(cidrRanges);
+
+        if (cached != null && now < cached.expiry) {
+            return cached.matcher;
+        }
+
+        final CidrMatcher matcher = CidrMatcher.compileResolvable(cidrRanges);
+
+        if (cached == null
+                && CIDR_MATCHER_CACHE.size() >= CIDR_MATCHER_CACHE_MAX) {
+            CIDR_MATCHER_CACHE.clear();
+        }
+        CIDR_MATCHER_CACHE.put(cidrRanges,
+                new CachedCidrMatcher(matcher, now + CIDR_MATCHER_TTL_MSEC));
+
+        return matcher;
+    }
+
     /**
      * @param cidrSet
      *            Set of CIDR ranges.
@@ -300,9 +383,9 @@ public final class InetUtils {
     public static boolean isCidrSetValid(final String cidrSet) {
         try {
             /*
-             * Probe with a non-localhost address.
+             * Strict compile: unresolvable host names are invalid.
              */
-            isIpAddrInCidrRanges(cidrSet, "10.0.0.1");
+            CidrMatcher.compile(cidrSet);
             return true;
         } catch (final Throwable thr) {
             return false;
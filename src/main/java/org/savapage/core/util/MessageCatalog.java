@@ -0,0 +1,518 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.savapage.core.SpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of XML message bundles and precompiled {@link MessageFormat}
+ * patterns.
+ * <p>
+ * Bundles from the class path are resolved once per (class loader, bundle,
+ * locale). Bundles from the file system (custom i18n) share one
+ * {@link URLClassLoader} per directory and are reloaded when one of their
+ * candidate files is added, changed or removed. Files are checked at most
+ * once every {@link #RELOAD_CHECK_MSEC} milliseconds.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class MessageCatalog extends MessagesBundleMixin {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MessageCatalog.class);
+
+    /**
+     * Minimal milliseconds between two checks for changed custom bundle
+     * files.
+     */
+    public static final long RELOAD_CHECK_MSEC = 5000L;
+
+    /**
+     * Max number of cached {@link MessageFormat} patterns. When exceeded the
+     * pattern cache is cleared.
+     */
+    private static final int MAX_FORMAT_CACHE_SIZE = 2048;
+
+    /** */
+    private static final String XML_FILE_EXT = ".xml";
+
+    /** */
+    private static class SingletonHolder {
+        /** */
+        public static final MessageCatalog INSTANCE = new MessageCatalog();
+    }
+
+    /**
+     * Key of a cached bundle.
+     */
+    private static final class BundleKey {
+
+        /** */
+        private final Object source;
+        /** */
+        private final String bundleName;
+        /** */
+        private final Locale locale;
+
+        /**
+         * @param source
+         *            The class loader or directory.
+         * @param bundleName
+         *            The bundle name.
+         * @param locale
+         *            The resolved locale.
+         */
+        BundleKey(final Object source, final String bundleName,
+                final Locale locale) {
+            this.source = source;
+            this.bundleName = bundleName;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BundleKey)) {
+                return false;
+            }
+            final BundleKey other = (BundleKey) obj;
+            return Objects.equals(this.source, other.source)
+                    && this.bundleName.equals(other.bundleName)
+                    && this.locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.source, this.bundleName, this.locale);
+        }
+    }
+
+    /**
+     * A file system bundle with the stamps of its candidate files.
+     */
+    private static final class CustomBundle {
+
+        /**
+         * {@code null} when bundle is missing.
+         */
+        private final ResourceBundle bundle;
+        /** */
+        private final File[] files;
+        /** */
+        private final long[] stamps;
+        /** */
+        private volatile long nextCheckMillis;
+
+        /**
+         * @param bundle
+         *            The bundle, or {@code null} when missing.
+         * @param files
+         *            The candidate files.
+         * @param stamps
+         *            The stamps of the candidate files.
+         * @param nextCheckMillis
+         *            Time in milliseconds of the next check.
+         */
+        CustomBundle(final ResourceBundle bundle, final File[] files,
+                final long[] stamps, final long nextCheckMillis) {
+            this.bundle = bundle;
+            this.files = files;
+            this.stamps = stamps;
+            this.nextCheckMillis = nextCheckMillis;
+        }
+
+        /**
+         * @param now
+         *            Current time in milliseconds.
+         * @param interval
+         *            Milliseconds till next check.
+         * @return {@code true} when candidate files changed.
+         */
+        boolean isStale(final long now, final long interval) {
+            if (now < this.nextCheckMillis) {
+                return false;
+            }
+            this.nextCheckMillis = now + interval;
+            for (int i = 0; i < this.files.length; i++) {
+                if (createStamp(this.files[i]) != this.stamps[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Milliseconds between two checks for changed custom bundle files.
+     */
+    private final long reloadCheckMsec;
+
+    /** */
+    private final XMLResourceBundleControl control =
+            new XMLResourceBundleControl();
+
+    /**
+     * Class path bundles.
+     */
+    private final ConcurrentMap<BundleKey, ResourceBundle> classBundles =
+            new ConcurrentHashMap<>();
+
+    /**
+     * File system bundles.
+     */
+    private final ConcurrentMap<BundleKey, CustomBundle> customBundles =
+            new ConcurrentHashMap<>();
+
+    /**
+     * One class loader per custom bundle directory.
+     */
+    private final ConcurrentMap<File, URLClassLoader> dirClassLoaders =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Precompiled patterns. Instances are cloned before use, since
+     * {@link MessageFormat} is not thread-safe.
+     */
+    private final ConcurrentMap<String, MessageFormat> formats =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Singleton.
+     */
+    private MessageCatalog() {
+        this(RELOAD_CHECK_MSEC);
+    }
+
+    /**
+     * @param reloadCheckMsec
+     *            Milliseconds between two checks for changed custom bundle
+     *            files.
+     */
+    MessageCatalog(final long reloadCheckMsec) {
+        this.reloadCheckMsec = reloadCheckMsec;
+    }
+
+    /**
+     * @return The singleton instance.
+     */
+    public static MessageCatalog instance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @param file
+     *            The file.
+     * @return The stamp of the file, {@code 0} when file does not exist.
+     */
+    private static long createStamp(final File file) {
+        return 31 * file.lastModified() + file.length();
+    }
+
+    /**
+     * @param files
+     *            The files.
+     * @return The stamps.
+     */
+    private static long[] createStamps(final File[] files) {
+        final long[] stamps = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            stamps[i] = createStamp(files[i]);
+        }
+        return stamps;
+    }
+
+    /**
+     * Gets a bundle from the class path of the requester class.
+     *
+     * @param reqClass
+     *            The requester {@link Class} (used to compose the bunble name).
+     * @param resourceName
+     *            The name of the resource bundle without the locale suffix and
+     *            file extension.
+     * @param candidate
+     *            The {@link Locale} candidate. Use {@code null} for default
+     *            locale.
+     * @return The {@link ResourceBundle}.
+     */
+    public ResourceBundle getBundle(final Class<? extends Object> reqClass,
+            final String resourceName, final Locale candidate) {
+
+        final ClassLoader classLoader = reqClass.getClassLoader();
+        final String bundleName =
+                getResourceBundleBaseName(reqClass.getPackage(), resourceName);
+        final BundleKey key = new BundleKey(classLoader, bundleName,
+                determineLocale(candidate));
+
+        final ResourceBundle cached = this.classBundles.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final ResourceBundle bundle =
+                this.loadBundle(classLoader, bundleName, key.locale);
+        this.classBundles.putIfAbsent(key, bundle);
+        return bundle;
+    }
+
+    /**
+     * Gets a bundle from the file system.
+     *
+     * @param directory
+     *            The directory location of the XML resource.
+     * @param resourceName
+     *            The name of the resource bundle <i>without</i> the locale
+     *            suffix and file extension.
+     * @param candidate
+     *            The {@link Locale}. Use {@code null} for default locale.
+     * @return The {@link ResourceBundle}.
+     * @throws MissingResourceException
+     *             When bundle is not found.
+     */
+    public ResourceBundle getBundle(final File directory,
+            final String resourceName, final Locale candidate) {
+
+        final BundleKey key = new BundleKey(directory, resourceName,
+                determineLocale(candidate));
+
+        final long now = System.currentTimeMillis();
+
+        CustomBundle entry = this.customBundles.get(key);
+
+        if (entry == null || entry.isStale(now, this.reloadCheckMsec)) {
+            entry = this.loadCustomBundle(key, now);
+            this.customBundles.put(key, entry);
+        }
+
+        if (entry.bundle == null) {
+            throw new MissingResourceException(
+                    "Can't find bundle for base name " + resourceName
+                            + ", locale " + key.locale,
+                    resourceName, "");
+        }
+        return entry.bundle;
+    }
+
+    /**
+     * Loads a file system bundle, bypassing the JDK bundle cache.
+     *
+     * @param key
+     *            The key.
+     * @param now
+     *            Current time in milliseconds.
+     * @return The cache entry.
+     */
+    private CustomBundle loadCustomBundle(final BundleKey key,
+            final long now) {
+
+        final File directory = (File) key.source;
+        final URLClassLoader classLoader = this.dirClassLoaders
+                .computeIfAbsent(directory, MessageCatalog::createClassLoader);
+
+        /*
+         * Stamps are taken before loading, so a change while loading is
+         * picked up by the next check.
+         */
+        final File[] files =
+                this.getCandidateFiles(directory, key.bundleName, key.locale);
+        final long[] stamps = createStamps(files);
+
+        ResourceBundle.clearCache(classLoader);
+
+        ResourceBundle bundle;
+        try {
+            bundle = this.loadBundle(classLoader, key.bundleName, key.locale);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Loaded [{}] [{}] from [{}]", key.bundleName,
+                        key.locale, directory);
+            }
+        } catch (MissingResourceException e) {
+            bundle = null;
+        }
+        return new CustomBundle(bundle, files, stamps,
+                now + this.reloadCheckMsec);
+    }
+
+    /**
+     * @param directory
+     *            The directory.
+     * @return The class loader for the directory.
+     */
+    private static URLClassLoader createClassLoader(final File directory) {
+        try {
+            return new URLClassLoader(
+                    new URL[] { directory.toURI().toURL() });
+        } catch (MalformedURLException e) {
+            throw new SpException(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the files that {@link ResourceBundle#getBundle} may load for a
+     * bundle and locale, including the fallback to the default locale.
+     *
+     * @param directory
+     *            The directory.
+     * @param bundleName
+     *            The bundle name.
+     * @param locale
+     *            The resolved locale.
+     * @return The candidate files.
+     */
+    private File[] getCandidateFiles(final File directory,
+            final String bundleName, final Locale locale) {
+
+        final Set<Locale> locales = new LinkedHashSet<>();
+
+        locales.addAll(this.control.getCandidateLocales(bundleName, locale));
+        locales.addAll(this.control.getCandidateLocales(bundleName,
+                Locale.getDefault()));
+
+        final List<File> files = new ArrayList<>(locales.size());
+
+        for (final Locale wlk : locales) {
+            files.add(new File(directory,
+                    this.control.toBundleName(bundleName, wlk)
+                            + XML_FILE_EXT));
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * Loads a {@link ResourceBundle} using the class loader.
+     * <p>
+     * NOTE: When a {@code message_<locale>.properties} files is already loaded
+     * in the cache, the content of this file is used instead of the XML
+     * variant. See
+     * {@link ResourceBundle#getBundle(String, Locale, ClassLoader, java.util.ResourceBundle.Control)}
+     * .
+     * </p>
+     *
+     * @param classLoader
+     *            The class loader.
+     * @param bundleName
+     *            The bundle name.
+     * @param locale
+     *            The resolved {@link Locale}.
+     * @return The {@link ResourceBundle}.
+     */
+    private ResourceBundle loadBundle(final ClassLoader classLoader,
+            final String bundleName, final Locale locale) {
+
+        final ResourceBundle bundle = ResourceBundle.getBundle(bundleName,
+                locale, classLoader, this.control);
+
+        final Locale localeAlt = checkAlternative(locale, bundle);
+
+        if (localeAlt == null) {
+            return bundle;
+        }
+        return ResourceBundle.getBundle(bundleName, localeAlt, classLoader,
+                this.control);
+    }
+
+    /**
+     * Formats arguments with a precompiled pattern.
+     * <p>
+     * An extra apostrophe ' is added to the pattern to ensure the ' character
+     * is displayed.
+     * </p>
+     *
+     * @param pattern
+     *            The pattern.
+     * @param args
+     *            The arguments
+     * @return The formatted string.
+     */
+    public String format(final String pattern, final String... args) {
+
+        MessageFormat format = this.formats.get(pattern);
+
+        if (format == null) {
+            try {
+                format = new MessageFormat(pattern.replace("\'", "\'\'"));
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Error parsing message pattern [" + pattern + "]"
+                        + e.getMessage());
+                return pattern;
+            }
+            if (this.formats.size() >= MAX_FORMAT_CACHE_SIZE) {
+                this.formats.clear();
+            }
+            this.formats.putIfAbsent(pattern, format);
+        }
+
+        try {
+            return ((MessageFormat) format.clone()).format((Object) args);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Error formatting message pattern [" + pattern + "]"
+                    + e.getMessage());
+            return pattern;
+        }
+    }
+
+    /**
+     * Clears all cached bundles and patterns.
+     */
+    public void clear() {
+
+        this.classBundles.clear();
+        this.customBundles.clear();
+        this.formats.clear();
+
+        for (final URLClassLoader loader : this.dirClassLoaders.values()) {
+            ResourceBundle.clearCache(loader);
+            try {
+                loader.close();
+            } catch (IOException e) {
+                LOGGER.warn(e.getMessage());
+            }
+        }
+        this.dirClassLoaders.clear();
+    }
+}
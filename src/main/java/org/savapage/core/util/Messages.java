@@ -25,18 +25,11 @@
 package org.savapage.core.util;
 
 import java.io.File;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.text.MessageFormat;
 import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
-import org.savapage.core.SpException;
 import org.savapage.core.config.ConfigManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Generic XML message loader and parser. This class looks for an
@@ -48,20 +41,9 @@ import org.slf4j.LoggerFactory;
  */
 public final class Messages extends MessagesBundleMixin {
 
-    /** */
-    private static final Logger LOGGER =
-            LoggerFactory.getLogger(Messages.class);
-
     /** */
     private static final String DEFAULT_XML_RESOURCE = "messages";
 
-    /** */
-    private static class XMLResourceBundleControlHolder {
-        /** */
-        public static final XMLResourceBundleControl INSTANCE =
-                new XMLResourceBundleControl();
-    }
-
     /**
      * {@code true} if custom i18n is enabled.
      */
@@ -80,6 +62,9 @@ public final class Messages extends MessagesBundleMixin {
      *            {@code true} if custom i18n is enabled.
      */
     public static void init(final boolean enableCustomI18n) {
+        if (useCustomI18n != enableCustomI18n) {
+            MessageCatalog.instance().clear();
+        }
         useCustomI18n = enableCustomI18n;
     }
 
@@ -105,8 +90,8 @@ public final class Messages extends MessagesBundleMixin {
     public static ResourceBundle loadXmlResource(
             final Class<? extends Object> reqClass, final String resourceName,
             final Locale locale) {
-        return getResourceBundle(reqClass, resourceName, locale,
-                XMLResourceBundleControlHolder.INSTANCE);
+        return MessageCatalog.instance().getBundle(reqClass, resourceName,
+                locale);
     }
 
     /**
@@ -163,86 +148,8 @@ public final class Messages extends MessagesBundleMixin {
     public static ResourceBundle loadXmlResource(final File directory,
             final String resourceName, final Locale candidate) {
 
-        final URL[] urls;
-
-        try {
-            urls = new URL[] { directory.toURI().toURL() };
-        } catch (MalformedURLException e) {
-            throw new SpException(e.getMessage());
-        }
-
-        return getResourceBundle(new URLClassLoader(urls), resourceName,
-                resourceName, candidate,
-                XMLResourceBundleControlHolder.INSTANCE);
-    }
-
-    /**
-     * Loads a {@link ResourceBundle} from a jar file.
-     *
-     * @param reqClass
-     *            The requester {@link Class} (used to compose the bunble name).
-     * @param resourceName
-     *            The name of the resource bundle without the locale suffix and
-     *            file extension.
-     * @param candidate
-     *            The {@link Locale} candidate. Use {@code null} for default
-     *            locale.
-     * @param control
-     *            The {@link XMLResourceBundleControl}.
-     * @return The {@link ResourceBundle}.
-     */
-    private static ResourceBundle getResourceBundle(
-            final Class<? extends Object> reqClass, final String resourceName,
-            final Locale candidate, final XMLResourceBundleControl control) {
-
-        final String bundleName =
-                getResourceBundleBaseName(reqClass.getPackage(), resourceName);
-
-        return getResourceBundle(reqClass.getClassLoader(), bundleName,
-                resourceName, candidate, control);
-    }
-
-    /**
-     * Loads a {@link ResourceBundle} using the class loader.
-     * <p>
-     * NOTE: When a {@code message_<locale>.properties} files is already loaded
-     * in the cache, the content of this file is used instead of the XML
-     * variant. See
-     * {@link ResourceBundle#getBundle(String, Locale, ClassLoader, java.util.ResourceBundle.Control)}
-     * .
-     * </p>
-     *
-     * @param classLoader
-     *            The class loader.
-     * @param bundleName
-     *            The bundle name.
-     * @param resourceName
-     *            The name of the resource bundle without the locale suffix and
-     *            file extension.
-     * @param candidate
-     *            The {@link Locale} candidate. Use {@code null} for default
-     *            locale.
-     * @param control
-     *            The {@link XMLResourceBundleControl}.
-     * @return The {@link ResourceBundle}.
-     */
-    private static ResourceBundle getResourceBundle(
-            final ClassLoader classLoader, final String bundleName,
-            final String resourceName, final Locale candidate,
-            final XMLResourceBundleControl control) {
-
-        final Locale locale = determineLocale(candidate);
-
-        final ResourceBundle bundle = ResourceBundle.getBundle(bundleName,
-                locale, classLoader, control);
-
-        final Locale localeAlt = checkAlternative(locale, bundle);
-
-        if (localeAlt == null) {
-            return bundle;
-        }
-        return ResourceBundle.getBundle(bundleName, localeAlt, classLoader,
-                control);
+        return MessageCatalog.instance().getBundle(directory, resourceName,
+                candidate);
     }
 
     /**
@@ -337,20 +244,7 @@ public final class Messages extends MessagesBundleMixin {
      */
     public static String formatMessage(final String pattern,
             final String... args) {
-        try {
-            /*
-             * Add an extra apostrophe ' to the MessageFormat pattern String to
-             * ensure the ' character is displayed.
-             */
-            return MessageFormat.format(pattern.replace("\'", "\'\'"),
-                    (Object[]) args);
-
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("Error parsing message pattern [" + pattern + "]"
-                    + e.getMessage());
-            return pattern;
-        }
-
+        return MessageCatalog.instance().format(pattern, args);
     }
 
     /**
@@ -158,6 +158,27 @@ public abstract class PaperCutDb {
     /** */
     private static final int SQL_STRINGBUILDER_CAPACITY = 256;
 
+    /**
+     * Number of document names bound in one usage log query.
+     */
+    private static final int USAGE_LOG_DOC_NAME_CHUNK_SIZE = 50;
+
+    /** */
+    private static final String SQL_SELECT_PRINTER_USAGE_LOG =
+            "SELECT printer_usage_log_id, document_name, printed, cancelled,"
+                    + " denied_reason, usage_cost, charged_to_account_id,"
+                    + " assoc_with_account_id FROM tbl_printer_usage_log"
+                    + " WHERE job_type = 'PRINT'";
+
+    /** */
+    private static final String SQL_PRINTER_USAGE_LOG_BY_DOC_NAME =
+            createPrinterUsageLogByDocNameSQL(USAGE_LOG_DOC_NAME_CHUNK_SIZE);
+
+    /** */
+    private static final String SQL_PRINTER_USAGE_LOG_SINCE =
+            SQL_SELECT_PRINTER_USAGE_LOG + " AND printer_usage_log_id > ?"
+                    + " ORDER BY printer_usage_log_id";
+
     /**
      * .
      */
@@ -728,6 +749,28 @@ public abstract class PaperCutDb {
 
     }
 
+    /**
+     * Executes a {@link PaperCutDbExecutor}, using the {@link CircuitBreaker}
+     * when applicable.
+     *
+     * @param exec
+     *            The executor.
+     * @return The result of {@link PaperCutDbExecutor#execute()}.
+     */
+    private Object executeOperation(final PaperCutDbExecutor exec) {
+        try {
+            if (this.useCircuitBreaker) {
+                return CIRCUIT_BREAKER
+                        .execute(new PaperCutCircuitBreakerOperation(exec));
+            }
+            return exec.execute();
+        } catch (PaperCutException e) {
+            throw new PaperCutConnectException(e.getMessage(), e);
+        } catch (InterruptedException | CircuitBreakerException e) {
+            throw new PaperCutConnectException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Gets the {@link PaperCutPrinterUsageLog} for unique document names.
      *
@@ -757,27 +800,143 @@ public abstract class PaperCutDb {
                     }
                 };
 
-        final Object result;
+        return (List<PaperCutPrinterUsageLog>) this.executeOperation(exec);
+    }
 
-        try {
-            if (this.useCircuitBreaker) {
-                result = CIRCUIT_BREAKER
-                        .execute(new PaperCutCircuitBreakerOperation(exec));
-            } else {
-                result = exec.execute();
+    /**
+     * Gets the {@link PaperCutPrinterUsageLog} rows with a primary key greater
+     * than a watermark, in ascending key order.
+     *
+     * @param connection
+     *            The database connection.
+     * @param watermark
+     *            The {@code printer_usage_log_id} watermark (exclusive).
+     * @param maxResults
+     *            The maximum number of rows to return.
+     * @return The list of {@link PaperCutPrinterUsageLog} objects.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PaperCutPrinterUsageLog> getPrinterUsageLogSince(
+            final Connection connection, final long watermark,
+            final int maxResults) {
+
+        final PaperCutDbExecutor exec =
+                new PaperCutDbExecutor(this, connection) {
+
+                    @Override
+                    public Object execute() throws PaperCutException {
+                        try {
+                            return PaperCutDb.getPrinterUsageLogSinceSQL(
+                                    this.getConnection(), watermark,
+                                    maxResults);
+                        } catch (SQLException e) {
+                            throw new PaperCutConnectException(e.getMessage(),
+                                    e);
+                        }
+                    }
+                };
+
+        return (List<PaperCutPrinterUsageLog>) this.executeOperation(exec);
+    }
+
+    /**
+     * Gets the highest {@code printer_usage_log_id}.
+     *
+     * @param connection
+     *            The database connection.
+     * @return The highest primary key, or zero when the table is empty.
+     */
+    public long getPrinterUsageLogMaxId(final Connection connection) {
+
+        final PaperCutDbExecutor exec =
+                new PaperCutDbExecutor(this, connection) {
+
+                    @Override
+                    public Object execute() throws PaperCutException {
+                        try {
+                            return PaperCutDb.getPrinterUsageLogMaxIdSQL(
+                                    this.getConnection());
+                        } catch (SQLException e) {
+                            throw new PaperCutConnectException(e.getMessage(),
+                                    e);
+                        }
+                    }
+                };
+
+        return ((Long) this.executeOperation(exec)).longValue();
+    }
+
+    /**
+     * Creates the SQL to select print usage logs by document name, with a
+     * fixed number of bind parameters.
+     * <p>
+     * The parameter count is constant, so the statement text is the same for
+     * every chunk and can be cached by the JDBC driver and database.
+     * </p>
+     *
+     * @param nParms
+     *            The number of document name parameters.
+     * @return The SQL string.
+     */
+    private static String createPrinterUsageLogByDocNameSQL(final int nParms) {
+
+        final StringBuilder sql = new StringBuilder(SQL_STRINGBUILDER_CAPACITY);
+
+        sql.append(SQL_SELECT_PRINTER_USAGE_LOG)
+                .append(" AND document_name IN(");
+
+        for (int i = 0; i < nParms; i++) {
+            if (i > 0) {
+                sql.append(", ");
             }
-        } catch (PaperCutException e) {
-            throw new PaperCutConnectException(e.getMessage(), e);
-        } catch (InterruptedException | CircuitBreakerException e) {
-            throw new PaperCutConnectException(e.getMessage(), e);
+            sql.append('?');
         }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Creates a {@link PaperCutPrinterUsageLog} from the current result set
+     * row.
+     *
+     * @param resultset
+     *            The result set.
+     * @return The {@link PaperCutPrinterUsageLog}.
+     * @throws SQLException
+     *             When an SQL error occurs.
+     */
+    private static PaperCutPrinterUsageLog
+            createPrinterUsageLog(final ResultSet resultset)
+                    throws SQLException {
 
-        return (List<PaperCutPrinterUsageLog>) result;
+        final PaperCutPrinterUsageLog usageLog = new PaperCutPrinterUsageLog();
+
+        usageLog.setUsageLogId(resultset.getLong("printer_usage_log_id"));
+        usageLog.setDocumentName(resultset.getString("document_name"));
+
+        usageLog.setPrinted(
+                resultset.getString("printed").equalsIgnoreCase("Y"));
+        usageLog.setCancelled(
+                resultset.getString("cancelled").equalsIgnoreCase("Y"));
+
+        usageLog.setDeniedReason(resultset.getString("denied_reason"));
+
+        usageLog.setUsageCost(resultset.getDouble("usage_cost"));
+
+        usageLog.setAccountIdAssoc(resultset.getLong("assoc_with_account_id"));
+        usageLog.setAccountIdCharged(
+                resultset.getLong("charged_to_account_id"));
+
+        return usageLog;
     }
 
     /**
      * Gets the {@link PaperCutPrinterUsageLog} for unique document names using
      * SQL query.
+     * <p>
+     * Document names are bound as parameters in chunks of
+     * {@link #USAGE_LOG_DOC_NAME_CHUNK_SIZE}. The last chunk is padded with
+     * its last document name, so all chunks use the same statement.
+     * </p>
      *
      * @param connection
      *            The database connection.
@@ -792,86 +951,131 @@ public abstract class PaperCutDb {
             final Connection connection, final Set<String> uniqueDocNames)
             throws SQLException {
 
-        final StringBuilder sql = new StringBuilder(256);
-
-        sql.append("SELECT document_name, printed, cancelled, denied_reason, "
-                + "usage_cost, charged_to_account_id, assoc_with_account_id"
-                + " FROM tbl_printer_usage_log WHERE job_type = 'PRINT'"
-                + " AND document_name IN(");
+        final List<PaperCutPrinterUsageLog> usageLogList = new ArrayList<>();
 
-        final Iterator<String> iterUniqueTitle = uniqueDocNames.iterator();
-        int nCounter = 0;
+        if (uniqueDocNames.isEmpty()) {
+            return usageLogList;
+        }
 
-        while (iterUniqueTitle.hasNext()) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace(SQL_PRINTER_USAGE_LOG_BY_DOC_NAME);
+        }
 
-            if (nCounter > 0) {
-                sql.append(", ");
-            }
+        PreparedStatement stm = null;
+        boolean finished = false;
 
-            final String escapedTitle =
-                    SQLHelper.escapeForSql(iterUniqueTitle.next());
+        try {
+            stm = connection
+                    .prepareStatement(SQL_PRINTER_USAGE_LOG_BY_DOC_NAME);
 
-            sql.append('\'').append(escapedTitle).append('\'');
-            nCounter++;
-        }
+            final Iterator<String> iterUniqueTitle = uniqueDocNames.iterator();
 
-        sql.append(")");
+            while (iterUniqueTitle.hasNext()) {
 
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace(sql.toString());
-        }
+                String docName = null;
 
-        final List<PaperCutPrinterUsageLog> usageLogList = new ArrayList<>();
+                for (int i = 1; i <= USAGE_LOG_DOC_NAME_CHUNK_SIZE; i++) {
+                    if (iterUniqueTitle.hasNext()) {
+                        docName = iterUniqueTitle.next();
+                    }
+                    stm.setString(i, docName);
+                }
 
-        Statement statement = null;
-        ResultSet resultset = null;
+                ResultSet resultset = null;
+                try {
+                    resultset = stm.executeQuery();
+                    while (resultset.next()) {
+                        usageLogList.add(createPrinterUsageLog(resultset));
+                    }
+                } finally {
+                    silentClose(resultset, null);
+                }
+            }
 
-        boolean finished = false;
+            finished = true;
 
-        try {
+        } finally {
 
-            statement = connection.createStatement();
-            resultset = statement.executeQuery(sql.toString());
+            silentClose(null, stm);
 
-            while (resultset.next()) {
+            if (!finished) {
+                LOGGER.error(SQL_PRINTER_USAGE_LOG_BY_DOC_NAME);
+            }
+        }
 
-                final PaperCutPrinterUsageLog usageLog =
-                        new PaperCutPrinterUsageLog();
+        return usageLogList;
+    }
 
-                usageLog.setDocumentName(resultset.getString("document_name"));
+    /**
+     * Gets the {@link PaperCutPrinterUsageLog} rows beyond a watermark using
+     * SQL query.
+     *
+     * @param connection
+     *            The database connection.
+     * @param watermark
+     *            The {@code printer_usage_log_id} watermark (exclusive).
+     * @param maxResults
+     *            The maximum number of rows to return.
+     * @return The list of {@link PaperCutPrinterUsageLog} objects.
+     * @throws SQLException
+     *             When an SQL error occurs.
+     */
+    private static List<PaperCutPrinterUsageLog> getPrinterUsageLogSinceSQL(
+            final Connection connection, final long watermark,
+            final int maxResults) throws SQLException {
 
-                usageLog.setPrinted(
-                        resultset.getString("printed").equalsIgnoreCase("Y"));
-                usageLog.setCancelled(
-                        resultset.getString("cancelled").equalsIgnoreCase("Y"));
+        final List<PaperCutPrinterUsageLog> usageLogList = new ArrayList<>();
 
-                usageLog.setDeniedReason(resultset.getString("denied_reason"));
+        PreparedStatement stm = null;
+        ResultSet resultset = null;
+        boolean finished = false;
 
-                usageLog.setUsageCost(resultset.getDouble("usage_cost"));
+        try {
+            stm = connection.prepareStatement(SQL_PRINTER_USAGE_LOG_SINCE);
+            stm.setMaxRows(maxResults);
+            stm.setLong(1, watermark);
 
-                usageLog.setAccountIdAssoc(
-                        resultset.getLong("assoc_with_account_id"));
-                usageLog.setAccountIdCharged(
-                        resultset.getLong("charged_to_account_id"));
+            resultset = stm.executeQuery();
 
-                //
-                usageLogList.add(usageLog);
+            while (resultset.next()) {
+                usageLogList.add(createPrinterUsageLog(resultset));
             }
 
             finished = true;
 
         } finally {
 
-            silentClose(resultset, statement);
+            silentClose(resultset, stm);
 
             if (!finished) {
-                LOGGER.error(sql.toString());
+                LOGGER.error(SQL_PRINTER_USAGE_LOG_SINCE);
             }
         }
 
         return usageLogList;
     }
 
+    /**
+     * Gets the highest {@code printer_usage_log_id} using SQL query.
+     *
+     * @param connection
+     *            The database connection.
+     * @return The highest primary key, or zero when the table is empty.
+     * @throws SQLException
+     *             When an SQL error occurs.
+     */
+    private static Long getPrinterUsageLogMaxIdSQL(final Connection connection)
+            throws SQLException {
+
+        try (PreparedStatement stm = connection.prepareStatement(
+                "SELECT MAX(printer_usage_log_id)"
+                        + " FROM tbl_printer_usage_log");
+                ResultSet result = stm.executeQuery()) {
+            result.next();
+            return Long.valueOf(result.getLong(1));
+        }
+    }
+
     /**
      * Creates a CSV file with Delegator Print costs.
      *
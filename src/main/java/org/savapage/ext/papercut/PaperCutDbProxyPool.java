@@ -45,6 +45,12 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
  */
 public final class PaperCutDbProxyPool extends PaperCutDb {
 
+    /**
+     * Number of cached {@link java.sql.PreparedStatement} objects per pooled
+     * connection.
+     */
+    private static final int MAX_STATEMENTS_PER_CONNECTION = 20;
+
     /**
      * Connection pool.
      */
@@ -92,11 +98,13 @@ public final class PaperCutDbProxyPool extends PaperCutDb {
         ds.setPassword(this.getDbPassword());
 
         /*
-         * Overwrite c3p0 defaults.
+         * Overwrite c3p0 defaults: a cache of prepared statements per
+         * connection.
          */
         // ds.setMinPoolSize(5);
         // ds.setAcquireIncrement(5);
         // ds.setMaxPoolSize(20);
+        ds.setMaxStatementsPerConnection(MAX_STATEMENTS_PER_CONNECTION);
 
         return ds;
     }
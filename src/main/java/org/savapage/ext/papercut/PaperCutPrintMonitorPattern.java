@@ -105,9 +105,9 @@ public abstract class PaperCutPrintMonitorPattern
     private final PaperCutServerProxy papercutServerProxy;
 
     /**
-     * .
+     * Incremental poller of PaperCut usage logs.
      */
-    private final PaperCutDbProxy papercutDbProxy;
+    private final PaperCutPrinterUsageLogPoller usageLogPoller;
 
     /**
      * .
@@ -132,15 +132,15 @@ public abstract class PaperCutPrintMonitorPattern
      *            The {@link ExternalSupplierEnum} the print job is issued from.
      * @param serverProxy
      *            The {@link PaperCutServerProxy}.
-     * @param dbProxy
-     *            The {@link PaperCutDbProxy}.
+     * @param db
+     *            The {@link PaperCutDb}.
      * @param listener
      *            The {@link PaperCutPrintJobListener}.
      */
     protected PaperCutPrintMonitorPattern(
             final ExternalSupplierEnum externalSupplier,
             final PaperCutServerProxy serverProxy,
-            final PaperCutDbProxy dbProxy,
+            final PaperCutDb db,
             final PaperCutPrintJobListener listener) {
 
         this.listFilterPendingExt = new DocLogDao.ListFilter();
@@ -150,7 +150,7 @@ public abstract class PaperCutPrintMonitorPattern
         this.listFilterPendingExt.setProtocol(DocLogProtocolEnum.IPP);
 
         this.papercutServerProxy = serverProxy;
-        this.papercutDbProxy = dbProxy;
+        this.usageLogPoller = new PaperCutPrinterUsageLogPoller(db);
 
         this.statusListener = listener;
     }
@@ -222,11 +222,10 @@ public abstract class PaperCutPrintMonitorPattern
         }
 
         /*
-         * Find PaperCut jobs.
+         * Find PaperCut jobs since previous poll.
          */
         final List<PaperCutPrinterUsageLog> papercutLogList =
-                PAPERCUT_SERVICE.getPrinterUsageLog(papercutDbProxy,
-                        uniquePaperCutDocNames.keySet());
+                this.usageLogPoller.poll(uniquePaperCutDocNames.keySet());
 
         final Set<String> paperCutDocNamesHandled = new HashSet<>();
 
@@ -302,8 +301,14 @@ public abstract class PaperCutPrintMonitorPattern
 
         } // end-for
 
-        this.processPrintJobsNotFound(uniquePaperCutDocNames,
-                paperCutDocNamesHandled);
+        /*
+         * Incremental polls only see recent usage logs: absence of a document
+         * is conclusive after a full lookup only.
+         */
+        if (this.usageLogPoller.isLastPollFullLookup()) {
+            this.processPrintJobsNotFound(uniquePaperCutDocNames,
+                    paperCutDocNamesHandled);
+        }
     }
 
     /**
@@ -31,6 +31,7 @@ package org.savapage.ext.papercut;
  */
 public final class PaperCutPrinterUsageLog {
 
+    private long usageLogId;
     private String documentName;
     private boolean printed;
     private boolean cancelled;
@@ -39,6 +40,17 @@ public final class PaperCutPrinterUsageLog {
     private Long accountIdCharged;
     private Long accountIdAssoc;
 
+    /**
+     * @return The primary key of the {@code tbl_printer_usage_log} row.
+     */
+    public long getUsageLogId() {
+        return usageLogId;
+    }
+
+    public void setUsageLogId(long usageLogId) {
+        this.usageLogId = usageLogId;
+    }
+
     /**
      *
      * @return
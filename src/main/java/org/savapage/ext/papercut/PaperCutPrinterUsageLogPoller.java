@@ -0,0 +1,267 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.ext.papercut;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental poller of the PaperCut {@code tbl_printer_usage_log} table.
+ * <p>
+ * The poller remembers the highest {@code printer_usage_log_id} it has seen
+ * (the watermark) and only pulls newer rows on each poll, in ascending key
+ * order and in pages of limited size. Rows are matched against the pending
+ * document names in memory.
+ * </p>
+ * <p>
+ * Since usage log keys are not guaranteed to be committed in order, each
+ * incremental poll re-reads a small overlap window below the watermark. A
+ * full lookup by (bound) document name is done on the first poll and every
+ * {@link #FULL_LOOKUP_POLL_INTERVAL} polls, to catch rows that were written
+ * before the pending document was known.
+ * </p>
+ * <p>
+ * A connection is opened for each poll, and closed afterwards. With a
+ * {@link PaperCutDbProxyPool} the connection, and its cached prepared
+ * statements, are shared with other PaperCut database users.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PaperCutPrinterUsageLogPoller {
+
+    /** */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PaperCutPrinterUsageLogPoller.class);
+
+    /**
+     * Number of usage log keys below the watermark that are read again.
+     */
+    private static final int WATERMARK_OVERLAP = 100;
+
+    /**
+     * Number of polls after which a full lookup by document name is done.
+     */
+    private static final int FULL_LOOKUP_POLL_INTERVAL = 20;
+
+    /**
+     * Max number of usage log rows read in one query.
+     */
+    private static final int MAX_ROWS_PER_QUERY = 500;
+
+    /** */
+    private final PaperCutDb papercutDb;
+
+    /** */
+    private final int overlap;
+
+    /** */
+    private final int fullLookupInterval;
+
+    /** */
+    private final int maxRowsPerQuery;
+
+    /**
+     * The highest {@code printer_usage_log_id} seen, or {@code null} when
+     * unknown.
+     */
+    private Long watermark;
+
+    /**
+     * Number of polls since the last full lookup.
+     */
+    private int pollsSinceFullLookup;
+
+    /**
+     * {@code true} when the last poll was a full lookup.
+     */
+    private boolean lastPollFullLookup;
+
+    /**
+     * @param db
+     *            The {@link PaperCutDb}.
+     */
+    public PaperCutPrinterUsageLogPoller(final PaperCutDb db) {
+        this(db, WATERMARK_OVERLAP, FULL_LOOKUP_POLL_INTERVAL,
+                MAX_ROWS_PER_QUERY);
+    }
+
+    /**
+     * @param db
+     *            The {@link PaperCutDb}.
+     * @param overlapKeys
+     *            Number of usage log keys below the watermark that are read
+     *            again.
+     * @param fullLookupPolls
+     *            Number of polls after which a full lookup by document name is
+     *            done.
+     * @param maxRows
+     *            Max number of usage log rows read in one query.
+     */
+    PaperCutPrinterUsageLogPoller(final PaperCutDb db,
+            final int overlapKeys, final int fullLookupPolls,
+            final int maxRows) {
+        this.papercutDb = db;
+        this.overlap = overlapKeys;
+        this.fullLookupInterval = fullLookupPolls;
+        this.maxRowsPerQuery = maxRows;
+    }
+
+    /**
+     * @return The highest {@code printer_usage_log_id} seen, or {@code null}
+     *         when unknown.
+     */
+    public Long getWatermark() {
+        return this.watermark;
+    }
+
+    /**
+     * @return {@code true} when the last poll was a full lookup by document
+     *         name, i.e. pending documents not found do not exist in PaperCut.
+     */
+    public boolean isLastPollFullLookup() {
+        return this.lastPollFullLookup;
+    }
+
+    /**
+     * Gets the {@link PaperCutPrinterUsageLog} objects of pending documents.
+     *
+     * @param pendingDocNames
+     *            The names of the pending documents.
+     * @return The usage logs of pending documents found since the previous
+     *         poll.
+     */
+    public List<PaperCutPrinterUsageLog>
+            poll(final Set<String> pendingDocNames) {
+
+        this.lastPollFullLookup = false;
+
+        if (pendingDocNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final Connection connection = this.papercutDb.openConnection();
+
+        try {
+            if (this.watermark == null
+                    || this.pollsSinceFullLookup >= this.fullLookupInterval) {
+                this.lastPollFullLookup = true;
+                return this.pollFullLookup(connection, pendingDocNames);
+            }
+
+            this.pollsSinceFullLookup++;
+            return this.pollIncremental(connection, pendingDocNames);
+
+        } finally {
+            this.papercutDb.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Looks up usage logs by document name, and resets the watermark.
+     *
+     * @param connection
+     *            The database connection.
+     * @param pendingDocNames
+     *            The names of the pending documents.
+     * @return The usage logs found.
+     */
+    private List<PaperCutPrinterUsageLog> pollFullLookup(
+            final Connection connection, final Set<String> pendingDocNames) {
+
+        /*
+         * Read max key before the lookup: rows inserted during the lookup are
+         * picked up by the next incremental poll.
+         */
+        final long maxId = this.papercutDb.getPrinterUsageLogMaxId(connection);
+
+        final List<PaperCutPrinterUsageLog> list = this.papercutDb
+                .getPrinterUsageLog(connection, pendingDocNames);
+
+        this.watermark = Long.valueOf(maxId);
+        this.pollsSinceFullLookup = 0;
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Full lookup of [{}] documents: [{}] found,"
+                    + " watermark [{}]", pendingDocNames.size(), list.size(),
+                    maxId);
+        }
+        return list;
+    }
+
+    /**
+     * Reads usage logs beyond the watermark, and advances the watermark.
+     *
+     * @param connection
+     *            The database connection.
+     * @param pendingDocNames
+     *            The names of the pending documents.
+     * @return The usage logs found.
+     */
+    private List<PaperCutPrinterUsageLog> pollIncremental(
+            final Connection connection, final Set<String> pendingDocNames) {
+
+        final List<PaperCutPrinterUsageLog> list = new ArrayList<>();
+
+        long maxId = this.watermark.longValue();
+        long since = Math.max(0L, maxId - this.overlap);
+        int nRows = 0;
+
+        while (true) {
+
+            final List<PaperCutPrinterUsageLog> chunk =
+                    this.papercutDb.getPrinterUsageLogSince(connection,
+                            since, this.maxRowsPerQuery);
+
+            for (final PaperCutPrinterUsageLog usageLog : chunk) {
+                if (pendingDocNames.contains(usageLog.getDocumentName())) {
+                    list.add(usageLog);
+                }
+                since = usageLog.getUsageLogId();
+                maxId = Math.max(maxId, since);
+            }
+
+            nRows += chunk.size();
+
+            if (chunk.size() < this.maxRowsPerQuery) {
+                break;
+            }
+        }
+
+        this.watermark = Long.valueOf(maxId);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Incremental poll: [{}] rows read, [{}] found,"
+                    + " watermark [{}]", nRows, list.size(), maxId);
+        }
+        return list;
+    }
+}
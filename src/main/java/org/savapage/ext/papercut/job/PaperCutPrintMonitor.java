@@ -30,7 +30,7 @@ import org.savapage.core.dao.enums.ExternalSupplierEnum;
 import org.savapage.core.jpa.Account.AccountTypeEnum;
 import org.savapage.core.jpa.DocLog;
 import org.savapage.ext.papercut.PaperCutAccountResolver;
-import org.savapage.ext.papercut.PaperCutDbProxy;
+import org.savapage.ext.papercut.PaperCutDb;
 import org.savapage.ext.papercut.PaperCutHelper;
 import org.savapage.ext.papercut.PaperCutPrintJobListener;
 import org.savapage.ext.papercut.PaperCutPrintMonitorPattern;
@@ -55,8 +55,8 @@ public final class PaperCutPrintMonitor extends PaperCutPrintMonitorPattern {
      *
      * @param papercutServerProxy
      *            The {@link PaperCutServerProxy}.
-     * @param papercutDbProxy
-     *            The {@link PaperCutDbProxy}.
+     * @param papercutDb
+     *            The {@link PaperCutDb}.
      * @param statusListener
      *            The {@link PaperCutPrintJobListener}.
      * @param loggerListener
@@ -64,12 +64,12 @@ public final class PaperCutPrintMonitor extends PaperCutPrintMonitorPattern {
      */
     protected PaperCutPrintMonitor(
             final PaperCutServerProxy papercutServerProxy,
-            final PaperCutDbProxy papercutDbProxy,
+            final PaperCutDb papercutDb,
             final PaperCutPrintJobListener statusListener,
             final Logger loggerListener) {
 
         super(ExternalSupplierEnum.SAVAPAGE, papercutServerProxy,
-                papercutDbProxy, statusListener);
+                papercutDb, statusListener);
         this.logger = loggerListener;
     }
 
@@ -26,7 +26,6 @@ package org.savapage.ext.papercut.job;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.sql.Connection;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -57,6 +56,7 @@ import org.savapage.core.util.BigDecimalUtil;
 import org.savapage.core.util.DateUtil;
 import org.savapage.ext.ExtSupplierConnectException;
 import org.savapage.ext.ExtSupplierException;
+import org.savapage.ext.papercut.PaperCutDb;
 import org.savapage.ext.papercut.PaperCutDbProxy;
 import org.savapage.ext.papercut.PaperCutException;
 import org.savapage.ext.papercut.PaperCutPrintJobListener;
@@ -137,15 +137,28 @@ public final class PaperCutPrintMonitorJob extends AbstractJob
             throws JobExecutionException {
 
         PaperCutServerProxy papercutServerProxy = null;
-        PaperCutDbProxy papercutDbProxy = null;
-        Connection papercutDbConnection = null;
 
         try {
 
             final ConfigManager cm = ConfigManager.instance();
 
             papercutServerProxy = PaperCutServerProxy.create(cm, true);
-            papercutDbProxy = new PaperCutDbProxy(cm, true);
+
+            /*
+             * Use the pooled database accessor, so connections and their
+             * cached prepared statements are shared with other PaperCut
+             * database users.
+             */
+            final PaperCutDb dbProxyPool = ServiceContext.getServiceFactory()
+                    .getPaperCutService().getDbProxyPool();
+
+            final PaperCutDb papercutDb;
+
+            if (dbProxyPool == null) {
+                papercutDb = new PaperCutDbProxy(cm, true);
+            } else {
+                papercutDb = dbProxyPool;
+            }
 
             /*
              * Connect to PaperCut. Check every 3 seconds, for 2 minutes.
@@ -159,12 +172,12 @@ public final class PaperCutPrintMonitorJob extends AbstractJob
              * We assume database is up-and-running after connected to PaperCut
              * API.
              */
-            papercutDbConnection = papercutDbProxy.openConnection();
+            papercutDb.closeConnection(papercutDb.openConnection());
 
             //
             final PaperCutPrintMonitorPattern monitor =
                     new PaperCutPrintMonitor(papercutServerProxy,
-                            papercutDbProxy, this, LOGGER);
+                            papercutDb, this, LOGGER);
 
             //
             this.monitorPaperCut(monitor, MONITOR_SESSION_DURATION_SECS,
@@ -193,10 +206,6 @@ public final class PaperCutPrintMonitorJob extends AbstractJob
 
         } finally {
 
-            if (papercutDbProxy != null) {
-                papercutDbProxy.closeConnection(papercutDbConnection);
-            }
-
             if (papercutServerProxy != null) {
                 papercutServerProxy.disconnect();
             }
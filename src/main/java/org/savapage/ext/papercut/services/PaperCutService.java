@@ -248,6 +248,14 @@ public interface PaperCutService extends StatefulService {
             String username, String userAccountName, BigDecimal adjustment,
             String comment) throws PaperCutException;
 
+    /**
+     * Gets the pooled PaperCut database accessor.
+     *
+     * @return The {@link PaperCutDb}, or {@code null} when the database
+     *         connection pool is not started.
+     */
+    PaperCutDb getDbProxyPool();
+
     /**
      * Gets the {@link PaperCutPrinterUsageLog} for unique document names.
      *
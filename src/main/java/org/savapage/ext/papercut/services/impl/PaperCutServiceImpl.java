@@ -395,6 +395,11 @@ public final class PaperCutServiceImpl extends AbstractService
                 adjustment.doubleValue(), comment, userAccountName);
     }
 
+    @Override
+    public PaperCutDb getDbProxyPool() {
+        return this.dbProxyPool;
+    }
+
     @Override
     public List<PaperCutPrinterUsageLog> getPrinterUsageLog(
             final PaperCutDbProxy papercut, final Set<String> uniqueDocNames) {
@@ -235,10 +235,9 @@ public final class PdfPgpHelper extends AbstractPdfPgpHelper {
         PdfReader reader = null;
         PdfStamper stamper = null;
 
-        try (InputStream pdfIn = new FileInputStream(fileIn);
-                OutputStream pdfSigned = new FileOutputStream(fileOut);) {
+        try (OutputStream pdfSigned = new FileOutputStream(fileOut);) {
 
-            reader = new PdfReader(pdfIn);
+            reader = ITextPdfCreator.createPdfReader(fileIn.getAbsolutePath());
             stamper = new PdfStamper(reader, pdfSigned);
 
             // Encrypt?
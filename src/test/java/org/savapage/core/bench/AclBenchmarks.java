@@ -0,0 +1,214 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.bench.BenchmarkHarness.Op;
+import org.savapage.core.dao.enums.ACLOidEnum;
+import org.savapage.core.dao.enums.ACLRoleEnum;
+import org.savapage.core.services.helpers.EffectiveAclCache;
+import org.savapage.core.services.helpers.InMemoryAclLoader;
+
+/**
+ * Role and OID privilege checks for 10k users and 200 groups: resolving each
+ * check level by level, parsing the JSON ACL of each level like
+ * {@code AccessControlServiceImpl} did (without the database queries, which
+ * come on top: one per level), versus {@link EffectiveAclCache}.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class AclBenchmarks {
+
+    /** */
+    private static final long SEED = 20201019L;
+
+    /** */
+    private static final int USERS = 10_000;
+
+    /** */
+    private static final int GROUPS = 200;
+
+    /** */
+    private static final int MAX_GROUPS_PER_USER = 8;
+
+    /** */
+    private static final long TTL_MSEC = 300_000L;
+
+    /** */
+    private static final ACLRoleEnum[] ROLES = ACLRoleEnum.values();
+
+    /** */
+    private static final ACLOidEnum[] OIDS = ACLOidEnum.values();
+
+    /** */
+    private AclBenchmarks() {
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @param nRoles
+     *            Number of roles.
+     * @return Roles.
+     */
+    private static Map<ACLRoleEnum, Boolean> roles(final Random random,
+            final int nRoles) {
+        final Map<ACLRoleEnum, Boolean> map = new EnumMap<>(ACLRoleEnum.class);
+        for (int i = 0; i < nRoles; i++) {
+            map.put(ROLES[random.nextInt(ROLES.length)],
+                    Boolean.valueOf(random.nextBoolean()));
+        }
+        return map;
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @param nOids
+     *            Number of OIDs.
+     * @return OID privileges.
+     */
+    private static Map<ACLOidEnum, Integer> oids(final Random random,
+            final int nOids) {
+        final Map<ACLOidEnum, Integer> map = new EnumMap<>(ACLOidEnum.class);
+        for (int i = 0; i < nOids; i++) {
+            map.put(OIDS[random.nextInt(OIDS.length)],
+                    Integer.valueOf(random.nextInt(16)));
+        }
+        return map;
+    }
+
+    /**
+     * @return Loader with users, groups and memberships.
+     * @throws IOException
+     *             When JSON error.
+     */
+    private static InMemoryAclLoader createLoader() throws IOException {
+
+        final Random random = new Random(SEED);
+        final InMemoryAclLoader loader = new InMemoryAclLoader();
+
+        final List<Long> groupKeys = new ArrayList<>();
+        for (int i = 1; i <= GROUPS; i++) {
+            final Long key = Long.valueOf(USERS + i);
+            groupKeys.add(key);
+            // Most groups have a sparse ACL, some have none.
+            if (random.nextInt(4) > 0) {
+                loader.setGroupRoles(key, roles(random, 2));
+                loader.setGroupOids(key, oids(random, 3));
+            }
+        }
+        loader.setGroupRoles(InMemoryAclLoader.INTERNAL_GROUP,
+                roles(random, 2));
+        loader.setGroupRoles(InMemoryAclLoader.ALL_USERS_GROUP,
+                roles(random, 4));
+        loader.setGroupOids(InMemoryAclLoader.ALL_USERS_GROUP,
+                oids(random, OIDS.length / 2));
+
+        for (int i = 1; i <= USERS; i++) {
+            final Long key = Long.valueOf(i);
+            if (random.nextInt(10) == 0) {
+                loader.setUserRoles(key, roles(random, 1));
+                loader.setUserOids(key, oids(random, 2));
+            }
+            Collections.shuffle(groupKeys, random);
+            final List<Long> member = new ArrayList<>(groupKeys
+                    .subList(0, 1 + random.nextInt(MAX_GROUPS_PER_USER)));
+            Collections.sort(member);
+            loader.setMembership(key, member);
+        }
+        return loader;
+    }
+
+    /**
+     * Creates an operation that performs a role and an OID privilege check of
+     * a random user.
+     *
+     * @param cached
+     *            {@code true} when checks use {@link EffectiveAclCache}.
+     * @return The operation.
+     * @throws IOException
+     *             When JSON error.
+     */
+    private static Op createCheck(final boolean cached) throws IOException {
+
+        final InMemoryAclLoader loader = createLoader();
+        final EffectiveAclCache cache = EffectiveAclCache.instance();
+        cache.clear();
+
+        final Random random = new Random(SEED);
+
+        return () -> {
+            final Long user = Long.valueOf(1 + random.nextInt(USERS));
+            final boolean internal = (user.longValue() & 1) == 0;
+            final ACLRoleEnum role = ROLES[random.nextInt(ROLES.length)];
+            final ACLOidEnum oid = OIDS[random.nextInt(OIDS.length)];
+
+            final boolean auth;
+            final Integer privileges;
+
+            if (cached) {
+                final EffectiveAclCache.Acl acl =
+                        cache.getUserAcl(loader, user, internal, TTL_MSEC);
+                auth = Boolean.TRUE.equals(acl.isAuthorized(role));
+                privileges = acl.getPrivileges(oid);
+            } else {
+                auth = loader.resolveAuthorized(user, internal, role);
+                privileges = loader.resolvePrivileges(user, internal, oid);
+            }
+
+            long granted = 0;
+            if (auth) {
+                granted++;
+            }
+            if (privileges == null || privileges.intValue() != 0) {
+                granted++;
+            }
+            return granted;
+        };
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("acl.check.parse", () -> createCheck(false)));
+        list.add(new Benchmark("acl.check.cached", () -> createCheck(true)));
+
+        return list;
+    }
+}
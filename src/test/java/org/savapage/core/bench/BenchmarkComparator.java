@@ -0,0 +1,196 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.savapage.core.bench.BenchmarkHarness.Result;
+
+/**
+ * Compares benchmark results with a baseline, both stored by
+ * {@link CoreBenchmarkSuite}. The process exits with status {@code 1} when a
+ * benchmark is slower, or allocates more, than the baseline plus the
+ * tolerance.
+ * <p>
+ * Usage: {@code BenchmarkComparator baseline results [tolerance-percent]}
+ * </p>
+ * <p>
+ * A baseline only applies to the machine it was recorded on: record a new one
+ * with {@code CoreBenchmarkSuite -o} when hardware or JVM change. Benchmarks
+ * that are missing on either side are reported, but do not fail the
+ * comparison. When the baseline is absent or empty, the comparison is report
+ * only.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class BenchmarkComparator {
+
+    /** */
+    private static final double TOLERANCE_PERC_DEFAULT = 10.0;
+
+    /**
+     * Allocation growth in bytes per operation that is never a regression,
+     * since TLAB and escape analysis make small values jitter.
+     */
+    private static final long BYTES_SLACK = 64;
+
+    /** */
+    private BenchmarkComparator() {
+    }
+
+    /**
+     * @param base
+     *            Baseline value.
+     * @param value
+     *            Current value.
+     * @return Change in percent.
+     */
+    private static double deltaPerc(final double base, final double value) {
+        if (base == 0) {
+            return 0;
+        }
+        return (value - base) * 100.0 / base;
+    }
+
+    /**
+     * Compares results with a baseline.
+     *
+     * @param baseline
+     *            Baseline results.
+     * @param results
+     *            Current results.
+     * @param tolerancePerc
+     *            Tolerance in percent.
+     * @return Number of regressions.
+     */
+    public static int compare(final Map<String, Result> baseline,
+            final Map<String, Result> results, final double tolerancePerc) {
+
+        int regressions = 0;
+
+        System.out.printf("%-28s %12s %12s %8s %10s %10s  %s%n", "benchmark",
+                "base ns/op", "ns/op", "delta", "base B/op", "B/op",
+                "status");
+
+        for (final Result result : results.values()) {
+
+            final Result base = baseline.get(result.getName());
+
+            if (base == null) {
+                System.out.printf("%-28s %12s %12.1f %8s %10s %10d  NEW%n",
+                        result.getName(), "-", result.getNanosPerOp(), "-",
+                        "-", result.getBytesPerOp());
+                continue;
+            }
+
+            final double delta =
+                    deltaPerc(base.getNanosPerOp(), result.getNanosPerOp());
+
+            final boolean slower = delta > tolerancePerc;
+
+            final boolean allocates = base.getBytesPerOp() >= 0
+                    && result.getBytesPerOp() >= 0
+                    && result.getBytesPerOp() > BYTES_SLACK
+                            + base.getBytesPerOp() * (1 + tolerancePerc / 100);
+
+            final String status;
+
+            if (slower || allocates) {
+                regressions++;
+                status = "REGRESSION";
+            } else if (delta < -tolerancePerc) {
+                status = "IMPROVED";
+            } else {
+                status = "OK";
+            }
+
+            System.out.printf("%-28s %12.1f %12.1f %+7.1f%% %10d %10d  %s%n",
+                    result.getName(), base.getNanosPerOp(),
+                    result.getNanosPerOp(), delta, base.getBytesPerOp(),
+                    result.getBytesPerOp(), status);
+        }
+
+        for (final String name : baseline.keySet()) {
+            if (!results.containsKey(name)) {
+                System.out.printf("%-28s MISSING%n", name);
+            }
+        }
+
+        return regressions;
+    }
+
+    /**
+     * @param args
+     *            baseline results [tolerance-percent]
+     * @throws Exception
+     *             If error.
+     */
+    public static void main(final String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparator baseline results"
+                    + " [tolerance-percent]");
+            System.exit(2);
+        }
+
+        final double tolerancePerc;
+
+        if (args.length > 2) {
+            tolerancePerc = Double.parseDouble(args[2]);
+        } else {
+            tolerancePerc = TOLERANCE_PERC_DEFAULT;
+        }
+
+        final File baselineFile = new File(args[0]);
+
+        final Map<String, Result> baseline;
+
+        if (baselineFile.exists()) {
+            baseline = BenchmarkHarness.load(baselineFile);
+        } else {
+            baseline = Collections.emptyMap();
+        }
+
+        final int regressions = compare(baseline,
+                BenchmarkHarness.load(new File(args[1])), tolerancePerc);
+
+        if (baseline.isEmpty()) {
+            System.out.printf("No baseline recorded in %s: report only.%n",
+                    baselineFile);
+            return;
+        }
+
+        System.out.printf("%d regression(s), tolerance %.1f%%%n", regressions,
+                tolerancePerc);
+
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+}
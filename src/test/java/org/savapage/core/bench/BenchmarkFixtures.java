@@ -0,0 +1,539 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.savapage.core.inbox.InboxInfoDto;
+import org.savapage.core.inbox.InboxInfoDto.InboxJob;
+import org.savapage.core.inbox.InboxInfoDto.InboxJobRange;
+import org.savapage.core.inbox.RangeAtom;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictJobTemplateAttr;
+import org.savapage.core.ipp.attribute.IppDictPrinterDescAttr;
+import org.savapage.core.ipp.attribute.syntax.AbstractIppAttrSyntax;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
+import org.savapage.core.ipp.attribute.syntax.IppEnum;
+import org.savapage.core.ipp.attribute.syntax.IppInteger;
+import org.savapage.core.ipp.attribute.syntax.IppKeyword;
+import org.savapage.core.ipp.attribute.syntax.IppName;
+import org.savapage.core.ipp.attribute.syntax.IppRangeOfInteger;
+import org.savapage.core.ipp.attribute.syntax.IppResolution;
+import org.savapage.core.ipp.attribute.syntax.IppText;
+import org.savapage.core.ipp.attribute.syntax.IppUri;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.encoding.IppEncoder;
+import org.savapage.core.ipp.rules.IppRuleConstraint;
+import org.savapage.core.ipp.rules.IppRuleCost;
+import org.savapage.core.outbox.OutboxInfoDto;
+import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Generators of deterministic benchmark fixtures. Random content is seeded,
+ * so each run measures the same work.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class BenchmarkFixtures {
+
+    /** */
+    private static final long SEED = 20201019L;
+
+    /** */
+    private static final String[] MEDIA = { "iso_a4_210x297mm",
+            "iso_a3_297x420mm", "iso_a5_148x210mm", "na_letter_8.5x11in",
+            "na_legal_8.5x14in" };
+
+    /** */
+    private static final String[] MEDIA_SUPPORTED = { "iso_a0_841x1189mm",
+            "iso_a1_594x841mm", "iso_a2_420x594mm", "iso_a3_297x420mm",
+            "iso_a4_210x297mm", "iso_a5_148x210mm", "iso_a6_105x148mm",
+            "iso_b4_250x353mm", "iso_b5_176x250mm", "na_letter_8.5x11in",
+            "na_legal_8.5x14in", "na_ledger_11x17in",
+            "na_executive_7.25x10.5in", "na_number-10_4.125x9.5in",
+            "iso_dl_110x220mm", "iso_c5_162x229mm",
+            "om_small-photo_100x150mm", "na_index-4x6_4x6in" };
+
+    /**
+     * Width and height of the (uncompressible) image on a scanned page.
+     */
+    private static final int SCAN_IMAGE_SIZE = 256;
+
+    /** */
+    private static final String[] MEDIA_TYPE =
+            { "stationery", "stationery-heavyweight", "transparency",
+                    "labels", "envelope" };
+
+    /** */
+    private static final String[] SIDES = { IppKeyword.SIDES_ONE_SIDED,
+            IppKeyword.SIDES_TWO_SIDED_LONG_EDGE };
+
+    /** */
+    private static final String[] COLOR_MODE = {
+            IppKeyword.PRINT_COLOR_MODE_MONOCHROME,
+            IppKeyword.PRINT_COLOR_MODE_COLOR };
+
+    /** */
+    private static final String[] NUMBER_UP = { "1", "2", "4" };
+
+    /** */
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param group
+     *            Attribute group.
+     * @param name
+     *            Attribute name.
+     * @param syntax
+     *            Attribute syntax.
+     * @param values
+     *            Attribute values.
+     */
+    private static void addAttr(final IppAttrGroup group, final String name,
+            final AbstractIppAttrSyntax syntax, final String... values) {
+        final IppAttrValue value = new IppAttrValue(name, syntax);
+        for (final String val : values) {
+            value.addValue(val);
+        }
+        group.addAttribute(value);
+    }
+
+    /**
+     * @param nPrinters
+     *            Number of printers.
+     * @return The printer attribute groups of a CUPS-Get-Printers response,
+     *         with the attributes CUPS reports.
+     */
+    public static List<IppAttrGroup> cupsPrinterGroups(final int nPrinters) {
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+
+        for (int i = 0; i < nPrinters; i++) {
+
+            final String name = "Printer-" + i;
+            final IppAttrGroup group =
+                    new IppAttrGroup(IppDelimiterTag.PRINTER_ATTR);
+
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_NAME,
+                    IppName.instance(), name);
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_URI_SUPPORTED,
+                    IppUri.instance(), "ipp://localhost:631/printers/" + name);
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_TYPE,
+                    IppEnum.instance(), String.valueOf(0x0080_900C + i % 2));
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_STATE,
+                    IppEnum.instance(), "3");
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_STATE_REASONS,
+                    IppKeyword.instance(), "none");
+            addAttr(group,
+                    IppDictPrinterDescAttr.ATTR_PRINTER_IS_ACCEPTING_JOBS,
+                    IppBoolean.instance(), IppBoolean.TRUE);
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_INFO,
+                    IppText.instance(), "Printer " + i + " on floor 2");
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_LOCATION,
+                    IppText.instance(), "Building A, room " + i);
+            addAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_MAKE_MODEL,
+                    IppText.instance(), "HP LaserJet Color M553");
+            addAttr(group, "printer-up-time", IppInteger.instance(), "123456");
+            addAttr(group, "queued-job-count", IppInteger.instance(), "0");
+            addAttr(group, "media-supported", IppKeyword.instance(),
+                    MEDIA_SUPPORTED);
+            addAttr(group, "sides-supported", IppKeyword.instance(),
+                    "one-sided", "two-sided-long-edge",
+                    "two-sided-short-edge");
+            addAttr(group, "copies-supported", IppRangeOfInteger.instance(),
+                    "1:9999");
+            addAttr(group, "number-up-supported", IppInteger.instance(), "1",
+                    "2", "4", "6", "9", "16");
+            addAttr(group, "printer-resolution-supported",
+                    IppResolution.instance(), IppResolution.DPI_600X600,
+                    IppResolution.format(1200, 1200, IppResolution.DPI));
+            addAttr(group, "marker-levels", IppInteger.instance(), "80", "65",
+                    "40", "92");
+
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * @param nPrinters
+     *            Number of printers.
+     * @return A realistic encoded CUPS-Get-Printers response.
+     * @throws IOException
+     *             If error.
+     */
+    public static byte[] cupsPrintersResponse(final int nPrinters)
+            throws IOException {
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        IppEncoder.writeAttributes(cupsPrinterGroups(nPrinters), ostr,
+                StandardCharsets.UTF_8, null);
+        ostr.write(IppDelimiterTag.END_OF_ATTR.asInt());
+        return ostr.toByteArray();
+    }
+
+    /**
+     * @param variant
+     *            Variant index.
+     * @return IPP option values of a print job.
+     */
+    public static Map<String, String> ippOptionValues(final int variant) {
+
+        final Map<String, String> map = new HashMap<>();
+
+        map.put(IppDictJobTemplateAttr.ATTR_MEDIA,
+                MEDIA[variant % MEDIA.length]);
+        map.put(IppDictJobTemplateAttr.ATTR_MEDIA_TYPE,
+                MEDIA_TYPE[variant % MEDIA_TYPE.length]);
+        map.put(IppDictJobTemplateAttr.ATTR_SIDES,
+                SIDES[variant % SIDES.length]);
+        map.put(IppDictJobTemplateAttr.ATTR_PRINT_COLOR_MODE,
+                COLOR_MODE[(variant / 2) % COLOR_MODE.length]);
+        map.put(IppDictJobTemplateAttr.ATTR_NUMBER_UP,
+                NUMBER_UP[variant % NUMBER_UP.length]);
+        map.put(IppDictJobTemplateAttr.ATTR_SHEET_COLLATE,
+                IppKeyword.SHEET_COLLATE_COLLATED);
+        map.put(IppDictJobTemplateAttr.ORG_SAVAPAGE_ATTR_FINISHINGS_STAPLE,
+                IppKeyword.ORG_SAVAPAGE_ATTR_FINISHINGS_STAPLE_NONE);
+        map.put(IppDictJobTemplateAttr.ORG_SAVAPAGE_ATTR_COVER_TYPE,
+                IppKeyword.ORG_SAVAPAGE_ATTR_COVER_TYPE_NO_COVER);
+
+        return map;
+    }
+
+    /**
+     * @return Media cost rules: one for each media, media type and color
+     *         mode, like a printer with a detailed price list has.
+     */
+    public static List<IppRuleCost> mediaCostRules() {
+
+        final List<IppRuleCost> rules = new ArrayList<>();
+
+        int i = 0;
+        for (final String media : MEDIA) {
+            for (final String type : MEDIA_TYPE) {
+                for (final String color : COLOR_MODE) {
+                    final IppRuleCost rule = new IppRuleCost("media-" + i,
+                            BigDecimal.valueOf(5 + i % 20, 2));
+                    rule.addRuleChoice(IppDictJobTemplateAttr.ATTR_MEDIA,
+                            media, true);
+                    rule.addRuleChoice(IppDictJobTemplateAttr.ATTR_MEDIA_TYPE,
+                            type, true);
+                    rule.addRuleChoice(
+                            IppDictJobTemplateAttr.ATTR_PRINT_COLOR_MODE,
+                            color, true);
+                    rules.add(rule);
+                    i++;
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @return Copy cost rules for (no) stapling.
+     */
+    public static List<IppRuleCost> copyCostRules() {
+
+        final List<IppRuleCost> rules = new ArrayList<>();
+
+        final IppRuleCost rule =
+                new IppRuleCost("staple", BigDecimal.valueOf(10, 2));
+        rule.addRuleChoice(
+                IppDictJobTemplateAttr.ORG_SAVAPAGE_ATTR_FINISHINGS_STAPLE,
+                IppKeyword.ORG_SAVAPAGE_ATTR_FINISHINGS_STAPLE_NONE, false);
+        rules.add(rule);
+
+        return rules;
+    }
+
+    /**
+     * @return Constraint rules: media types that are not allowed with
+     *         two-sided printing or number-up.
+     */
+    public static List<IppRuleConstraint> constraintRules() {
+
+        final List<IppRuleConstraint> rules = new ArrayList<>();
+
+        int i = 0;
+        for (final String type : MEDIA_TYPE) {
+            for (final String sides : SIDES) {
+                for (final String nUp : NUMBER_UP) {
+
+                    final List<Pair<String, String>> pairs =
+                            new ArrayList<>();
+
+                    pairs.add(new ImmutablePair<>(
+                            IppDictJobTemplateAttr.ATTR_MEDIA_TYPE, type));
+                    pairs.add(new ImmutablePair<>(
+                            IppDictJobTemplateAttr.ATTR_SIDES, sides));
+                    pairs.add(new ImmutablePair<>(
+                            IppDictJobTemplateAttr.ATTR_NUMBER_UP, nUp));
+
+                    final IppRuleConstraint rule =
+                            new IppRuleConstraint("constraint-" + i++);
+                    rule.setIppContraints(pairs);
+                    rule.setIppNegateSet(new HashSet<>());
+                    rules.add(rule);
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @param nJobs
+     *            Number of jobs.
+     * @return Outbox with print jobs.
+     */
+    public static OutboxInfoDto outboxInfo(final int nJobs) {
+
+        final OutboxInfoDto info = new OutboxInfoDto();
+
+        for (int i = 0; i < nJobs; i++) {
+
+            final String file = String.format("%08d-outbox.pdf", i);
+            final OutboxJobDto job = new OutboxJobDto();
+
+            job.setFile(file);
+            job.setPrinter("Printer-" + i % 7);
+            job.setJobName("Document " + i);
+            job.setCopies(1 + i % 3);
+            job.setPages(10 + i);
+            job.setSheets(5 + i / 2);
+            job.setCollate(true);
+            job.setUserId(Long.valueOf(1000 + i));
+            job.setSubmitTime(1_600_000_000_000L + i * 60_000L);
+            job.setExpiryTime(1_600_000_000_000L + (i + 60) * 60_000L);
+            job.setMedia(MEDIA[i % MEDIA.length]);
+            job.setOptionValues(ippOptionValues(i));
+
+            final LinkedHashMap<String, Integer> uuidPageCount =
+                    new LinkedHashMap<>();
+            uuidPageCount.put(String.format(
+                    "6f1e2b4c-0000-4000-8000-%012d", i), 10 + i);
+            job.setUuidPageCount(uuidPageCount);
+
+            info.addJob(file, job);
+        }
+        return info;
+    }
+
+    /**
+     * @param nJobs
+     *            Number of jobs.
+     * @return Inbox with jobs, each with its full page range.
+     */
+    public static InboxInfoDto inboxInfo(final int nJobs) {
+
+        final InboxInfoDto info = new InboxInfoDto();
+
+        for (int i = 0; i < nJobs; i++) {
+
+            final InboxJob job = new InboxJob();
+
+            job.setFile(String.format("%08d-inbox.pdf", i));
+            job.setTitle("Document " + i);
+            job.setPages(1 + i % 40);
+            job.setCreatedTime(1_600_000_000_000L + i * 60_000L);
+
+            info.getJobs().add(job);
+
+            final InboxJobRange range = new InboxJobRange();
+            range.setJob(i);
+            range.setRange(RangeAtom.FULL_PAGE_RANGE);
+
+            info.getPages().add(range);
+        }
+        return info;
+    }
+
+    /**
+     * Creates a text-only A4 PDF.
+     *
+     * @param file
+     *            The PDF file to create.
+     * @param nPages
+     *            Number of pages.
+     * @throws IOException
+     *             If IO error.
+     */
+    public static void createPdf(final File file, final int nPages)
+            throws IOException {
+
+        final Random random = new Random(SEED + nPages);
+        final Document document = new Document(PageSize.A4);
+
+        try (OutputStream ostr = new FileOutputStream(file)) {
+
+            PdfWriter.getInstance(document, ostr);
+            document.open();
+
+            for (int i = 0; i < nPages; i++) {
+                if (i > 0) {
+                    document.newPage();
+                }
+                final StringBuilder text = new StringBuilder();
+                for (int j = 0; j < 400; j++) {
+                    text.append(Long.toString(random.nextLong(), 36))
+                            .append(' ');
+                }
+                document.add(new Paragraph(text.toString()));
+            }
+            document.close();
+
+        } catch (DocumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a PDF like a scanned document: one uncompressible image per
+     * page.
+     *
+     * @param file
+     *            The PDF file to create.
+     * @param nPages
+     *            Number of pages.
+     * @throws IOException
+     *             If IO error.
+     */
+    public static void createScannedPdf(final File file, final int nPages)
+            throws IOException {
+
+        final Random random = new Random(SEED + nPages);
+        final byte[] pixels = new byte[SCAN_IMAGE_SIZE * SCAN_IMAGE_SIZE];
+        final Document document = new Document(PageSize.A4);
+
+        try (OutputStream ostr = new FileOutputStream(file)) {
+
+            PdfWriter.getInstance(document, ostr);
+            document.open();
+
+            for (int i = 0; i < nPages; i++) {
+                random.nextBytes(pixels);
+                document.newPage();
+                document.add(Image.getInstance(SCAN_IMAGE_SIZE,
+                        SCAN_IMAGE_SIZE, 1, 8, pixels));
+            }
+            document.close();
+
+        } catch (DocumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a PNG image like a rasterized page: lines of text and some
+     * filled squares.
+     *
+     * @param file
+     *            The PNG file to create.
+     * @param width
+     *            Width in pixels.
+     * @param height
+     *            Height in pixels.
+     * @throws IOException
+     *             If IO error.
+     */
+    public static void createPageImage(final File file, final int width,
+            final int height) throws IOException {
+
+        final Random random = new Random(SEED + width + height);
+        final BufferedImage image =
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+
+            g.setColor(Color.BLACK);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+
+            for (int y = 40; y < height - 40; y += 22) {
+                g.drawString(Long.toString(random.nextLong(), 36)
+                        + " " + Long.toString(random.nextLong(), 36), 40, y);
+            }
+
+            for (int i = 0; i < 20; i++) {
+                final int size = 8 + random.nextInt(40);
+                g.fillRect(random.nextInt(width - size),
+                        random.nextInt(height - size), size, size);
+            }
+        } finally {
+            g.dispose();
+        }
+
+        ImageIO.write(image, "png", file);
+    }
+
+    /**
+     * Deletes a directory with its (flat) content.
+     *
+     * @param dir
+     *            The directory.
+     */
+    public static void deleteDir(final File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link Benchmark} on the current thread: a timed warm-up, followed by
+ * a number of timed measurement iterations. Per iteration, the average time
+ * and heap allocation of one operation is measured. The median over the
+ * iterations is reported, since it is insensitive to the odd GC pause or
+ * JIT recompilation.
+ * <p>
+ * Heap allocation is measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, and
+ * reported as {@code -1} when the JVM does not support this.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class BenchmarkHarness {
+
+    /**
+     * An operation under test. When the operation also implements
+     * {@link AutoCloseable}, it is closed after the measurement.
+     */
+    @FunctionalInterface
+    public interface Op {
+
+        /**
+         * Executes the operation once.
+         *
+         * @return A value derived from the work done, to keep the JIT from
+         *         eliminating it.
+         * @throws Exception
+         *             If error.
+         */
+        long invoke() throws Exception;
+    }
+
+    /**
+     * A named benchmark. The operation is created on demand, so fixtures of
+     * benchmarks that are filtered out are never built.
+     */
+    public static final class Benchmark {
+
+        /** */
+        private final String name;
+
+        /** */
+        private final Callable<Op> setUp;
+
+        /**
+         * @param name
+         *            Unique name, like {@code ipp.decode.typed}.
+         * @param setUp
+         *            Creates the fixtures and returns the operation.
+         */
+        public Benchmark(final String name, final Callable<Op> setUp) {
+            this.name = name;
+            this.setUp = setUp;
+        }
+
+        /**
+         * @return Unique name.
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    /**
+     * The measured result of a {@link Benchmark}.
+     */
+    public static final class Result {
+
+        /** */
+        private final String name;
+        /** */
+        private final double nanosPerOp;
+        /** */
+        private final double nanosPerOpMin;
+        /** */
+        private final long bytesPerOp;
+
+        /**
+         * @param name
+         *            Benchmark name.
+         * @param nanosPerOp
+         *            Median nanoseconds per operation.
+         * @param nanosPerOpMin
+         *            Minimum nanoseconds per operation.
+         * @param bytesPerOp
+         *            Median allocated bytes per operation, or {@code -1} when
+         *            unknown.
+         */
+        public Result(final String name, final double nanosPerOp,
+                final double nanosPerOpMin, final long bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.nanosPerOpMin = nanosPerOpMin;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        public double getNanosPerOpMin() {
+            return nanosPerOpMin;
+        }
+
+        public long getBytesPerOp() {
+            return bytesPerOp;
+        }
+    }
+
+    /** */
+    public static final String PROP_SFX_NANOS = ".ns_op";
+
+    /** */
+    public static final String PROP_SFX_BYTES = ".bytes_op";
+
+    /**
+     * Target duration of a batch of operations between two clock reads.
+     */
+    private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Sink for operation results.
+     */
+    private static volatile long sink;
+
+    /** */
+    private final long warmupMsec;
+
+    /** */
+    private final int iterations;
+
+    /** */
+    private final long iterationMsec;
+
+    /** */
+    private final com.sun.management.ThreadMXBean allocBean;
+
+    /**
+     * @param warmupMsec
+     *            Warm-up duration in milliseconds.
+     * @param iterations
+     *            Number of measurement iterations.
+     * @param iterationMsec
+     *            Duration of a measurement iteration in milliseconds.
+     */
+    public BenchmarkHarness(final long warmupMsec, final int iterations,
+            final long iterationMsec) {
+
+        this.warmupMsec = warmupMsec;
+        this.iterations = iterations;
+        this.iterationMsec = iterationMsec;
+
+        final java.lang.management.ThreadMXBean bean =
+                ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean)
+                        .isThreadAllocatedMemorySupported()) {
+            this.allocBean = (com.sun.management.ThreadMXBean) bean;
+            this.allocBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.allocBean = null;
+        }
+    }
+
+    /**
+     * @return Allocated bytes of current thread, or {@code 0} when unknown.
+     */
+    private long allocatedBytes() {
+        if (this.allocBean == null) {
+            return 0;
+        }
+        return this.allocBean
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs a batch of operations.
+     *
+     * @param op
+     *            The operation.
+     * @param batch
+     *            Number of operations.
+     * @throws Exception
+     *             If error.
+     */
+    private static void runBatch(final Op op, final int batch)
+            throws Exception {
+        long checksum = 0;
+        for (int i = 0; i < batch; i++) {
+            checksum += op.invoke();
+        }
+        sink += checksum;
+    }
+
+    /**
+     * Runs batches of operations for a duration.
+     *
+     * @param op
+     *            The operation.
+     * @param batch
+     *            Operations per batch.
+     * @param nanos
+     *            Duration.
+     * @return Number of operations executed.
+     * @throws Exception
+     *             If error.
+     */
+    private static long runFor(final Op op, final int batch, final long nanos)
+            throws Exception {
+
+        final long start = System.nanoTime();
+        long ops = 0;
+
+        do {
+            runBatch(op, batch);
+            ops += batch;
+        } while (System.nanoTime() - start < nanos);
+
+        return ops;
+    }
+
+    /**
+     * Runs a benchmark.
+     *
+     * @param benchmark
+     *            The benchmark.
+     * @return The result.
+     * @throws Exception
+     *             If error.
+     */
+    public Result run(final Benchmark benchmark) throws Exception {
+
+        final Op op = benchmark.setUp.call();
+
+        try {
+            return this.run(benchmark.getName(), op);
+        } finally {
+            if (op instanceof AutoCloseable) {
+                ((AutoCloseable) op).close();
+            }
+        }
+    }
+
+    /**
+     * Runs an operation.
+     *
+     * @param name
+     *            Benchmark name.
+     * @param op
+     *            The operation.
+     * @return The result.
+     * @throws Exception
+     *             If error.
+     */
+    private Result run(final String name, final Op op) throws Exception {
+
+        // Warm up, and find the batch size of about one millisecond.
+        int batch = 1;
+        final long warmupEnd =
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMsec);
+
+        do {
+            final long start = System.nanoTime();
+            runBatch(op, batch);
+            final long elapsed = System.nanoTime() - start;
+
+            if (elapsed < BATCH_NANOS / 2 && batch < (1 << 20)) {
+                batch *= 2;
+            } else if (elapsed > BATCH_NANOS * 2 && batch > 1) {
+                batch /= 2;
+            }
+        } while (System.nanoTime() < warmupEnd);
+
+        final double[] nanosPerOp = new double[this.iterations];
+        final long[] bytesPerOp = new long[this.iterations];
+        final long iterationNanos =
+                TimeUnit.MILLISECONDS.toNanos(this.iterationMsec);
+
+        for (int i = 0; i < this.iterations; i++) {
+
+            final long bytes0 = this.allocatedBytes();
+            final long nanos0 = System.nanoTime();
+
+            final long ops = runFor(op, batch, iterationNanos);
+
+            final long nanos = System.nanoTime() - nanos0;
+            final long bytes = this.allocatedBytes() - bytes0;
+
+            nanosPerOp[i] = (double) nanos / ops;
+            bytesPerOp[i] = bytes / ops;
+        }
+
+        Arrays.sort(nanosPerOp);
+        Arrays.sort(bytesPerOp);
+
+        final long bytesMedian;
+        if (this.allocBean == null) {
+            bytesMedian = -1;
+        } else {
+            bytesMedian = bytesPerOp[this.iterations / 2];
+        }
+
+        return new Result(name, nanosPerOp[this.iterations / 2],
+                nanosPerOp[0], bytesMedian);
+    }
+
+    /**
+     * Stores results as properties, sorted on key: {@code <name>.ns_op} and
+     * {@code <name>.bytes_op}.
+     *
+     * @param results
+     *            The results.
+     * @param file
+     *            The output file.
+     * @param comment
+     *            Header comment.
+     * @throws IOException
+     *             If IO error.
+     */
+    public static void store(final List<Result> results, final File file,
+            final String comment) throws IOException {
+
+        final Map<String, String> props = new TreeMap<>();
+
+        for (final Result result : results) {
+            props.put(result.getName() + PROP_SFX_NANOS,
+                    String.format(Locale.ROOT, "%.1f",
+                            result.getNanosPerOp()));
+            props.put(result.getName() + PROP_SFX_BYTES,
+                    String.valueOf(result.getBytesPerOp()));
+        }
+
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("# " + comment);
+            for (final Map.Entry<String, String> entry : props.entrySet()) {
+                writer.println(entry.getKey() + "=" + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Loads results stored by {@link #store(List, File, String)}.
+     *
+     * @param file
+     *            The file.
+     * @return The results by benchmark name, sorted on name.
+     * @throws IOException
+     *             If IO error.
+     */
+    public static Map<String, Result> load(final File file)
+            throws IOException {
+
+        final Properties props = new Properties();
+
+        try (InputStream istr = new FileInputStream(file)) {
+            props.load(istr);
+        }
+
+        final Map<String, Result> results = new LinkedHashMap<>();
+
+        for (final String key : new TreeSet<>(
+                props.stringPropertyNames())) {
+
+            if (!key.endsWith(PROP_SFX_NANOS)) {
+                continue;
+            }
+
+            final String name = key.substring(0,
+                    key.length() - PROP_SFX_NANOS.length());
+
+            final double nanos = Double.parseDouble(props.getProperty(key));
+            final long bytes = Long.parseLong(
+                    props.getProperty(name + PROP_SFX_BYTES, "-1"));
+
+            results.put(name, new Result(name, nanos, nanos, bytes));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.config.ConfigManager;
+import org.savapage.core.config.IConfigProp.Key;
+
+/**
+ * {@link ConfigManager} lookup benchmarks. Without an initialized
+ * configuration each lookup ends in an empty value, so what is measured is
+ * the per-call overhead of key lookup and encryption check that every cached
+ * lookup pays.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class ConfigBenchmarks {
+
+    /**
+     * Number of keys looked up per operation.
+     */
+    private static final int KEYS = 64;
+
+    /** */
+    private ConfigBenchmarks() {
+    }
+
+    /**
+     * @return The keys to look up.
+     */
+    private static Key[] keys() {
+        final Key[] all = Key.values();
+        final Key[] keys = new Key[Math.min(KEYS, all.length)];
+        final int step = all.length / keys.length;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = all[i * step];
+        }
+        return keys;
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("config.value", () -> {
+            final ConfigManager cm = ConfigManager.instance();
+            final Key[] keys = keys();
+            return () -> {
+                long checksum = 0;
+                for (final Key key : keys) {
+                    final String value = cm.getConfigValue(key);
+                    if (value != null) {
+                        checksum += value.length();
+                    }
+                }
+                return checksum;
+            };
+        }));
+
+        list.add(new Benchmark("config.boolean", () -> {
+            final ConfigManager cm = ConfigManager.instance();
+            final Key[] keys = keys();
+            return () -> {
+                long checksum = 0;
+                for (final Key key : keys) {
+                    if (cm.isConfigValue(key)) {
+                        checksum++;
+                    }
+                }
+                return checksum;
+            };
+        }));
+
+        return list;
+    }
+}
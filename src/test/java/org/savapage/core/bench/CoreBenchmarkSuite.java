@@ -0,0 +1,197 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.bench.BenchmarkHarness.Result;
+
+/**
+ * Runs the benchmarks of core hot paths, one after the other, on the main
+ * thread. Results are printed, and optionally stored for comparison with a
+ * baseline by {@link BenchmarkComparator}.
+ * <p>
+ * Usage: {@code CoreBenchmarkSuite [options]}
+ * </p>
+ * <ul>
+ * <li>{@code -f regex} : Run benchmarks whose name matches.</li>
+ * <li>{@code -o file} : Store results in properties file.</li>
+ * <li>{@code -w msec} : Warm-up time per benchmark (default 2000).</li>
+ * <li>{@code -i count} : Measurement iterations (default 5).</li>
+ * <li>{@code -t msec} : Time per measurement iteration (default 1000).</li>
+ * <li>{@code -q} : Quick run, for smoke testing only.</li>
+ * <li>{@code -l} : List benchmark names.</li>
+ * </ul>
+ * <p>
+ * Run on an otherwise idle machine, with a fixed heap, for example
+ * {@code -Xms1g -Xmx1g}.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CoreBenchmarkSuite {
+
+    /** */
+    private CoreBenchmarkSuite() {
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return All benchmarks.
+     */
+    public static List<Benchmark> createAll(final File workDir) {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.addAll(IppBenchmarks.create());
+        list.addAll(IppClientBenchmarks.create(workDir));
+        list.addAll(CostBenchmarks.create());
+        list.addAll(ConfigBenchmarks.create());
+        list.addAll(JsonBenchmarks.create());
+        list.addAll(PdfBenchmarks.create(workDir));
+        list.addAll(ImageBenchmarks.create(workDir));
+        list.addAll(MetricsBenchmarks.create());
+        list.addAll(AclBenchmarks.create());
+        list.addAll(UsageBenchmarks.create(workDir));
+
+        return list;
+    }
+
+    /**
+     * @return Description of the environment the results apply to.
+     */
+    private static String environment() {
+        return String.format("%s %s, %s %s, %d cpu",
+                System.getProperty("java.vm.name"),
+                System.getProperty("java.version"),
+                System.getProperty("os.name"), System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param args
+     *            The options.
+     * @throws Exception
+     *             If error.
+     */
+    public static void main(final String[] args) throws Exception {
+
+        Pattern filter = null;
+        File output = null;
+        long warmupMsec = 2000;
+        int iterations = 5;
+        long iterationMsec = 1000;
+        boolean listOnly = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "-f":
+                filter = Pattern.compile(args[++i]);
+                break;
+            case "-o":
+                output = new File(args[++i]);
+                break;
+            case "-w":
+                warmupMsec = Long.parseLong(args[++i]);
+                break;
+            case "-i":
+                iterations = Integer.parseInt(args[++i]);
+                break;
+            case "-t":
+                iterationMsec = Long.parseLong(args[++i]);
+                break;
+            case "-q":
+                warmupMsec = 200;
+                iterations = 3;
+                iterationMsec = 200;
+                break;
+            case "-l":
+                listOnly = true;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        final File workDir =
+                Files.createTempDirectory("savapage-bench-").toFile();
+
+        final List<Result> results = new ArrayList<>();
+        int errors = 0;
+
+        try {
+            final BenchmarkHarness harness =
+                    new BenchmarkHarness(warmupMsec, iterations, iterationMsec);
+
+            System.out.println(environment());
+            System.out.printf("%-28s %14s %14s %14s%n", "benchmark", "ns/op",
+                    "min ns/op", "bytes/op");
+
+            for (final Benchmark benchmark : createAll(workDir)) {
+
+                if (filter != null
+                        && !filter.matcher(benchmark.getName()).find()) {
+                    continue;
+                }
+                if (listOnly) {
+                    System.out.println(benchmark.getName());
+                    continue;
+                }
+
+                try {
+                    final Result result = harness.run(benchmark);
+                    results.add(result);
+                    System.out.printf("%-28s %14.1f %14.1f %14d%n",
+                            result.getName(), result.getNanosPerOp(),
+                            result.getNanosPerOpMin(),
+                            result.getBytesPerOp());
+                } catch (Exception | LinkageError e) {
+                    errors++;
+                    System.out.printf("%-28s ERROR %s%n", benchmark.getName(),
+                            e.toString());
+                }
+            }
+        } finally {
+            BenchmarkFixtures.deleteDir(workDir);
+        }
+
+        if (output != null && !results.isEmpty()) {
+            BenchmarkHarness.store(results, output, environment());
+            System.out.println("Results stored in " + output);
+        }
+
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.ipp.attribute.IppDictJobTemplateAttr;
+import org.savapage.core.ipp.attribute.syntax.IppKeyword;
+import org.savapage.core.print.proxy.JsonProxyPrinter;
+import org.savapage.core.services.AccountingService;
+import org.savapage.core.services.ServiceContext;
+import org.savapage.core.services.helpers.ProxyPrintCostDto;
+import org.savapage.core.services.helpers.ProxyPrintCostParms;
+import org.savapage.core.services.impl.AccountingServiceImpl;
+
+/**
+ * Proxy print cost calculation benchmarks.
+ * <p>
+ * Of {@link AccountingService#calcProxyPrintCost}, the custom cost path is
+ * measured, since it is the only one that does not need a database.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CostBenchmarks {
+
+    /**
+     * Number of IPP option variants.
+     */
+    private static final int OPTION_VARIANTS = 30;
+
+    /** */
+    private CostBenchmarks() {
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("cost.media", () -> {
+            final BigDecimal costOneSided = BigDecimal.valueOf(10, 2);
+            final BigDecimal costTwoSided = BigDecimal.valueOf(18, 2);
+            final BigDecimal discount = BigDecimal.valueOf(15, 2);
+            return () -> {
+                long checksum = 0;
+                for (int i = 1; i <= OPTION_VARIANTS; i++) {
+                    checksum += AccountingServiceImpl.calcProxyPrintCostMedia(
+                            i * 7, 1 + i % 4, 1 + i % 3, i % 2 == 0,
+                            costOneSided, costTwoSided, discount).scale();
+                }
+                return checksum;
+            };
+        }));
+
+        list.add(new Benchmark("cost.proxyprint.custom", () -> {
+
+            final AccountingService service =
+                    ServiceContext.getServiceFactory().getAccountingService();
+
+            final JsonProxyPrinter printer = new JsonProxyPrinter();
+            printer.setCustomCostRulesMedia(
+                    BenchmarkFixtures.mediaCostRules());
+            printer.setCustomCostRulesCopy(BenchmarkFixtures.copyCostRules());
+
+            final List<Map<String, String>> options = new ArrayList<>();
+            for (int i = 0; i < OPTION_VARIANTS; i++) {
+                options.add(BenchmarkFixtures.ippOptionValues(i));
+            }
+
+            return () -> {
+                long checksum = 0;
+                for (final Map<String, String> option : options) {
+
+                    final ProxyPrintCostParms parms =
+                            new ProxyPrintCostParms(printer);
+
+                    parms.setNumberOfCopies(2);
+                    parms.setNumberOfPages(25);
+                    parms.setNumberOfSheets(13);
+                    parms.setPagesPerSide(1);
+                    parms.setDuplex(IppKeyword.SIDES_TWO_SIDED_LONG_EDGE
+                            .equals(option.get(
+                                    IppDictJobTemplateAttr.ATTR_SIDES)));
+                    parms.setIppMediaOption(
+                            option.get(IppDictJobTemplateAttr.ATTR_MEDIA));
+                    parms.importIppOptionValues(option);
+                    parms.calcCustomCost();
+
+                    final ProxyPrintCostDto cost =
+                            service.calcProxyPrintCost(null, parms);
+                    checksum += cost.getCostTotal().signum();
+                }
+                return checksum;
+            };
+        }));
+
+        return list;
+    }
+}
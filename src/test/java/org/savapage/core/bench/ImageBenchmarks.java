@@ -0,0 +1,78 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.imaging.EcoImageFilterSquare;
+
+/**
+ * {@link EcoImageFilterSquare} benchmark on a rasterized A4 page of 150 DPI,
+ * including reading the PNG file.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class ImageBenchmarks {
+
+    /** */
+    private static final int WIDTH = 1240;
+
+    /** */
+    private static final int HEIGHT = 1754;
+
+    /** */
+    private ImageBenchmarks() {
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create(final File workDir) {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("image.eco.square", () -> {
+
+            final File file = new File(workDir, "page.png");
+            BenchmarkFixtures.createPageImage(file, WIDTH, HEIGHT);
+
+            return () -> {
+                final BufferedImage image = new EcoImageFilterSquare(
+                        EcoImageFilterSquare.Parms.createDefault())
+                                .filter(file);
+                return image.getWidth();
+            };
+        }));
+
+        return list;
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictPrinterDescAttr;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
+import org.savapage.core.ipp.attribute.syntax.IppDateTime;
+import org.savapage.core.ipp.attribute.syntax.IppInteger;
+import org.savapage.core.ipp.encoding.IppByteArrayInputStream;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.encoding.IppEncoder;
+import org.savapage.core.ipp.operation.IppGetPrinterAttrRspCache;
+import org.savapage.core.ipp.operation.IppStatusCode;
+import org.savapage.core.ipp.rules.IppRuleConstraint;
+import org.savapage.core.ipp.rules.IppRuleCost;
+
+/**
+ * IPP encoding, attribute list, rule and Get-Printer-Attributes response
+ * benchmarks.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppBenchmarks {
+
+    /**
+     * Number of printers in a CUPS-Get-Printers response.
+     */
+    private static final int PRINTERS = 200;
+
+    /**
+     * Number of IPP option variants to apply rules on.
+     */
+    private static final int OPTION_VARIANTS = 30;
+
+    /** */
+    private static final String CACHE_KEY = "benchmark";
+
+    /** */
+    private static final String URI_HOST = "//savapage.example.com:8631";
+
+    /** */
+    private IppBenchmarks() {
+    }
+
+    /**
+     * Decodes a CUPS-Get-Printers response and reads what a CUPS printer sync
+     * reads.
+     *
+     * @param istr
+     *            The response.
+     * @return Checksum to keep the work alive.
+     * @throws IOException
+     *             If error.
+     */
+    private static long decode(final InputStream istr) throws IOException {
+
+        long checksum = 0;
+
+        for (final IppAttrGroup group : IppEncoder.readAttributes(istr,
+                null)) {
+
+            checksum += group.getAttrSingleValue(
+                    IppDictPrinterDescAttr.ATTR_PRINTER_NAME).length();
+
+            checksum += group.getAttrValue(
+                    IppDictPrinterDescAttr.ATTR_PRINTER_TYPE).getIntValue(0);
+
+            checksum += group.getAttrValue("media-supported").size();
+        }
+        return checksum;
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("ipp.decode.legacy", () -> {
+            final byte[] response =
+                    BenchmarkFixtures.cupsPrintersResponse(PRINTERS);
+            return () -> decode(new ByteArrayInputStream(response));
+        }));
+
+        list.add(new Benchmark("ipp.decode.typed", () -> {
+            final byte[] response =
+                    BenchmarkFixtures.cupsPrintersResponse(PRINTERS);
+            return () -> decode(new IppByteArrayInputStream(response));
+        }));
+
+        list.add(new Benchmark("ipp.encode", () -> {
+            final List<IppAttrGroup> groups =
+                    BenchmarkFixtures.cupsPrinterGroups(PRINTERS);
+            return () -> {
+                final ByteArrayOutputStream ostr =
+                        new ByteArrayOutputStream();
+                IppEncoder.writeAttributes(groups, ostr,
+                        StandardCharsets.UTF_8, null);
+                return ostr.size();
+            };
+        }));
+
+        list.add(new Benchmark("ipp.attrlist.build", () -> () -> {
+            long checksum = 0;
+            for (final IppAttrGroup group : BenchmarkFixtures
+                    .cupsPrinterGroups(PRINTERS)) {
+                checksum += group.getAttrSingleValue(
+                        IppDictPrinterDescAttr.ATTR_PRINTER_NAME).length();
+                checksum += group.getAttrValue("media-supported").size();
+            }
+            return checksum;
+        }));
+
+        list.add(new Benchmark("ipp.rule.cost", () -> {
+            final List<IppRuleCost> rules =
+                    BenchmarkFixtures.mediaCostRules();
+            final List<Map<String, String>> options = optionVariants();
+            return () -> {
+                long checksum = 0;
+                for (final Map<String, String> option : options) {
+                    for (final IppRuleCost rule : rules) {
+                        if (rule.calcCost(option) != null) {
+                            checksum++;
+                        }
+                    }
+                }
+                return checksum;
+            };
+        }));
+
+        list.add(new Benchmark("ipp.rule.constraint", () -> {
+            final List<IppRuleConstraint> rules =
+                    BenchmarkFixtures.constraintRules();
+            final List<Map<String, String>> options = optionVariants();
+            return () -> {
+                long checksum = 0;
+                for (final Map<String, String> option : options) {
+                    for (final IppRuleConstraint rule : rules) {
+                        if (rule.doesRuleApply(option)) {
+                            checksum++;
+                        }
+                    }
+                }
+                return checksum;
+            };
+        }));
+
+        list.add(new Benchmark("ipp.printerattr.encode", () -> {
+            final CountingOutputStream ostr = new CountingOutputStream(
+                    NullOutputStream.NULL_OUTPUT_STREAM);
+            return () -> {
+                encodePrinterAttr(1, ostr);
+                return ostr.getByteCount();
+            };
+        }));
+
+        list.add(new Benchmark("ipp.printerattr.cached", () -> {
+            final IppGetPrinterAttrRspCache cache =
+                    IppGetPrinterAttrRspCache.instance();
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            encodePrinterAttr(1, bos);
+            cache.put(CACHE_KEY, null, bos.toByteArray());
+
+            final CountingOutputStream ostr = new CountingOutputStream(
+                    NullOutputStream.NULL_OUTPUT_STREAM);
+            return () -> {
+                cache.write(CACHE_KEY, 1, ostr);
+                return ostr.getByteCount();
+            };
+        }));
+
+        return list;
+    }
+
+    /**
+     * @param group
+     *            Attribute group.
+     * @param name
+     *            Attribute name.
+     * @param values
+     *            Attribute values.
+     */
+    private static void addPrinterAttr(final IppAttrGroup group,
+            final String name, final String... values) {
+        final IppAttrValue value = new IppAttrValue(
+                IppDictPrinterDescAttr.instance().getAttr(name));
+        for (final String val : values) {
+            value.addValue(val);
+        }
+        group.addAttribute(value);
+    }
+
+    /**
+     * Builds and encodes a representative Get-Printer-Attributes response,
+     * like {@code IppGetPrinterAttrRsp} does for every uncached request.
+     *
+     * @param requestId
+     *            Request id.
+     * @param ostr
+     *            Output stream.
+     * @throws IOException
+     *             If error.
+     */
+    private static void encodePrinterAttr(final int requestId,
+            final OutputStream ostr) throws IOException {
+
+        final IppAttrGroup group =
+                new IppAttrGroup(IppDelimiterTag.PRINTER_ATTR);
+
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_PRINTER_URI_SUPPORTED,
+                "ipp:" + URI_HOST + "/printers",
+                "http:" + URI_HOST + "/printers",
+                "https:" + URI_HOST + "/printers",
+                "ipps:" + URI_HOST + "/printers");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_URI_AUTH_SUPPORTED,
+                "requesting-user-name", "requesting-user-name",
+                "requesting-user-name", "requesting-user-name");
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_URI_SECURITY_SUPPORTED, "none",
+                "none", "tls", "tls");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_NAME,
+                "SavaPage");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_STATE,
+                IppDictPrinterDescAttr.PRINTER_STATE_IDLE);
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_PRINTER_STATE_REASONS, "none");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_IPP_VERSIONS_SUPP,
+                "1.0", "1.1", "2.0");
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_OPERATIONS_SUPPORTED, "2", "4",
+                "5", "6", "8", "9", "10", "11", "57", "60");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_CHARSET_CONFIGURED,
+                "utf-8");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_CHARSET_SUPPORTED,
+                "utf-8");
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_NATURAL_LANG_CONFIGURED, "en-us");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_DOC_FORMAT_DEFAULT,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_PDF);
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_DOC_FORMAT_SUPPORTED,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_PDF,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_POSTSCRIPT,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_JPEG,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_PWG_RASTER,
+                IppDictPrinterDescAttr.DOCUMENT_FORMAT_URF);
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_PRINTER_IS_ACCEPTING_JOBS,
+                IppBoolean.TRUE);
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_QUEUES_JOB_COUNT,
+                "0");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME,
+                String.valueOf(IppInteger.getPrinterUpTime()));
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_PRINTER_CONFIG_CHANGE_TIME,
+                String.valueOf(IppInteger.getPrinterConfigChangeTime()));
+        addPrinterAttr(group,
+                IppDictPrinterDescAttr.ATTR_PRINTER_CURRENT_TIME,
+                IppDateTime.formatDate(new Date()));
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_MAKE_MODEL,
+                "SavaPage 1.0.0 (Build 1)");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_INFO,
+                "SavaPage Virtual Printer");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_LOCATION,
+                "SavaPage Print Server");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_PRINTER_MORE_INFO,
+                "https:" + URI_HOST + "/user");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_MEDIA_READY,
+                "iso_a0_841x1189mm", "iso_a1_594x841mm", "iso_a2_420x594mm",
+                "iso_a3_297x420mm", "na_letter_8.5x11in", "iso_a4_210x297mm");
+        addPrinterAttr(group, IppDictPrinterDescAttr.ATTR_COLOR_SUPPORTED,
+                IppBoolean.TRUE);
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        ostr.write(2);
+        ostr.write(0);
+        IppEncoder.writeInt16(ostr, IppStatusCode.OK.asInt());
+        IppEncoder.writeInt32(ostr, requestId);
+        IppEncoder.writeAttributes(groups, ostr, StandardCharsets.UTF_8, null);
+        ostr.write(IppDelimiterTag.END_OF_ATTR.asInt());
+    }
+
+    /**
+     * @return IPP option maps.
+     */
+    private static List<Map<String, String>> optionVariants() {
+        final List<Map<String, String>> list = new ArrayList<>();
+        for (int i = 0; i < OPTION_VARIANTS; i++) {
+            list.add(BenchmarkFixtures.ippOptionValues(i));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.ipp.client.IppRequestEntity;
+
+/**
+ * IPP client benchmarks: writing an IPP request with a document, with
+ * {@link IppRequestEntity} and with the former single-byte read composite
+ * stream. The request is written to a null stream, so the network is left
+ * out.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppClientBenchmarks {
+
+    /**
+     * Size of the document sent with an IPP request.
+     */
+    private static final int DOCUMENT_BYTES = 1024 * 1024;
+
+    /** */
+    private static final ContentType CONTENT_TYPE =
+            ContentType.create("application/ipp");
+
+    /** */
+    private static final byte[] IPP_HEADER = new byte[] { 0x02, 0x00, 0x00,
+            0x02, 0x00, 0x00, 0x00, 0x01, 0x01, 0x03 };
+
+    /**
+     * Composite stream that only implements single-byte read, like the former
+     * IppClient implementation.
+     */
+    private static final class SingleByteStream extends InputStream {
+
+        /** */
+        private final InputStream istr;
+
+        /**
+         * @param document
+         *            The document.
+         * @throws IOException
+         *             If file not found.
+         */
+        SingleByteStream(final File document) throws IOException {
+            this.istr = new SequenceInputStream(
+                    new ByteArrayInputStream(IPP_HEADER),
+                    new FileInputStream(document));
+        }
+
+        @Override
+        public int read() throws IOException {
+            return this.istr.read();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.istr.close();
+        }
+    }
+
+    /** */
+    private IppClientBenchmarks() {
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return The document to send with an IPP request.
+     * @throws IOException
+     *             If IO error.
+     */
+    private static File createDocument(final File workDir)
+            throws IOException {
+        final File document = new File(workDir, "ipp-request.pdf");
+        try (RandomAccessFile raf = new RandomAccessFile(document, "rw")) {
+            raf.setLength(DOCUMENT_BYTES);
+        }
+        return document;
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create(final File workDir) {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("ipp.request.legacy", () -> {
+            final File document = createDocument(workDir);
+            final CountingOutputStream ostr = new CountingOutputStream(
+                    NullOutputStream.NULL_OUTPUT_STREAM);
+            return () -> {
+                new InputStreamEntity(new SingleByteStream(document),
+                        IPP_HEADER.length + document.length(), CONTENT_TYPE)
+                                .writeTo(ostr);
+                return ostr.getByteCount();
+            };
+        }));
+
+        list.add(new Benchmark("ipp.request.entity", () -> {
+            final File document = createDocument(workDir);
+            final CountingOutputStream ostr = new CountingOutputStream(
+                    NullOutputStream.NULL_OUTPUT_STREAM);
+            return () -> {
+                new IppRequestEntity(IPP_HEADER, document, CONTENT_TYPE)
+                        .writeTo(ostr);
+                return ostr.getByteCount();
+            };
+        }));
+
+        return list;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.inbox.InboxInfoDto;
+import org.savapage.core.outbox.OutboxInfoDto;
+import org.savapage.core.util.JsonHelper;
+
+/**
+ * JSON (de)serialization benchmarks of the inbox and outbox DTOs, which are
+ * read and written on every change of a user's SafePages or held jobs.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class JsonBenchmarks {
+
+    /** */
+    private static final int JOBS = 20;
+
+    /** */
+    private JsonBenchmarks() {
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("json.outbox.write", () -> {
+            final OutboxInfoDto dto = BenchmarkFixtures.outboxInfo(JOBS);
+            return () -> JsonHelper.stringifyObject(dto).length();
+        }));
+
+        list.add(new Benchmark("json.outbox.read", () -> {
+            final String json = JsonHelper
+                    .stringifyObject(BenchmarkFixtures.outboxInfo(JOBS));
+            return () -> JsonHelper.createOrNull(OutboxInfoDto.class, json)
+                    .getJobs().size();
+        }));
+
+        list.add(new Benchmark("json.inbox.write", () -> {
+            final InboxInfoDto dto = BenchmarkFixtures.inboxInfo(JOBS);
+            return () -> JsonHelper.stringifyObject(dto).length();
+        }));
+
+        list.add(new Benchmark("json.inbox.read", () -> {
+            final String json = JsonHelper
+                    .stringifyObject(BenchmarkFixtures.inboxInfo(JOBS));
+            return () -> JsonHelper.createOrNull(InboxInfoDto.class, json)
+                    .getJobs().size();
+        }));
+
+        return list;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.metrics.LatencyHistogram;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ * Overhead of timing an operation with a {@link LatencyHistogram}: the
+ * operation itself, versus the operation timed and recorded. The operation
+ * takes about 20 microseconds, which is well below the duration of an IPP
+ * operation or database commit.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class MetricsBenchmarks {
+
+    /**
+     * Iterations of the simulated operation.
+     */
+    private static final int WORK_ITERATIONS = 20_000;
+
+    /** */
+    private MetricsBenchmarks() {
+    }
+
+    /**
+     * @return A value depending on all iterations.
+     */
+    private static long work() {
+        long x = System.nanoTime();
+        for (int i = 0; i < WORK_ITERATIONS; i++) {
+            x ^= (x << 13);
+            x ^= (x >>> 7);
+            x ^= (x << 17);
+        }
+        return x;
+    }
+
+    /**
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create() {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("metrics.op.plain",
+                () -> MetricsBenchmarks::work));
+
+        list.add(new Benchmark("metrics.op.timed", () -> {
+            final LatencyHistogram histogram = MetricsRegistry.instance()
+                    .histogram("benchmark_seconds", "Benchmark.");
+            return () -> {
+                final long start = System.nanoTime();
+                final long value = work();
+                histogram.recordSince(start);
+                return value;
+            };
+        }));
+
+        list.add(new Benchmark("metrics.histogram.record", () -> {
+            final LatencyHistogram histogram = MetricsRegistry.instance()
+                    .histogram("benchmark_seconds", "Benchmark.");
+            return () -> {
+                histogram.recordSince(System.nanoTime());
+                return histogram.getCount();
+            };
+        }));
+
+        return list;
+    }
+}
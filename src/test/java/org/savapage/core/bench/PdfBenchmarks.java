@@ -0,0 +1,218 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.pdf.ITextPdfCreator;
+import org.savapage.core.pdf.PdfDocumentFonts;
+import org.savapage.core.pdf.PdfPageMeta;
+import org.savapage.core.pdf.PdfPageMetaCache;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.pdf.PdfCopy;
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * PDF benchmarks: merging synthetic PDF files page by page, the way
+ * {@link ITextPdfCreator} merges the documents of a print job, and getting
+ * the page count, page sizes and rotation, and fonts of a scanned PDF in
+ * three pipeline stages: each stage loading the whole file, versus
+ * {@link PdfPageMetaCache}. The cache is cleared per operation, so each
+ * operation parses the file once.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PdfBenchmarks {
+
+    /**
+     * Number of documents to merge.
+     */
+    private static final int DOCUMENTS = 5;
+
+    /**
+     * Pages per document.
+     */
+    private static final int PAGES = 10;
+
+    /**
+     * Pages of the scanned document.
+     */
+    private static final int SCANNED_PAGES = 100;
+
+    /** */
+    private PdfBenchmarks() {
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create(final File workDir) {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("pdf.merge", () -> {
+
+            final List<String> files = new ArrayList<>();
+
+            for (int i = 0; i < DOCUMENTS; i++) {
+                final File file = new File(workDir, "merge-" + i + ".pdf");
+                BenchmarkFixtures.createPdf(file, PAGES);
+                files.add(file.getAbsolutePath());
+            }
+
+            return () -> {
+
+                final ByteArrayOutputStream ostr =
+                        new ByteArrayOutputStream();
+                final Document document = new Document();
+                final PdfCopy copy = new PdfCopy(document, ostr);
+
+                document.open();
+
+                for (final String file : files) {
+                    final PdfReader reader =
+                            ITextPdfCreator.createPdfReader(file);
+                    try {
+                        for (int j = 1; j <= reader.getNumberOfPages(); j++) {
+                            copy.addPage(copy.getImportedPage(reader, j));
+                        }
+                        copy.freeReader(reader);
+                    } finally {
+                        reader.close();
+                    }
+                }
+                document.close();
+
+                return ostr.size();
+            };
+        }));
+
+        list.add(new Benchmark("pdf.meta.legacy", () -> {
+            final File file = new File(workDir, "scanned.pdf");
+            BenchmarkFixtures.createScannedPdf(file, SCANNED_PAGES);
+            return () -> pageMetaLegacy(file);
+        }));
+
+        list.add(new Benchmark("pdf.meta.cached", () -> {
+            final File file = new File(workDir, "scanned.pdf");
+            BenchmarkFixtures.createScannedPdf(file, SCANNED_PAGES);
+            return () -> pageMetaCached(file);
+        }));
+
+        return list;
+    }
+
+    /**
+     * Opens a PDF like the pipeline stages did: loading the whole file on the
+     * heap.
+     *
+     * @param file
+     *            The PDF file.
+     * @return The reader.
+     * @throws IOException
+     *             If error.
+     */
+    private static PdfReader openFully(final File file) throws IOException {
+        try (FileInputStream istr = new FileInputStream(file)) {
+            return new PdfReader(istr);
+        }
+    }
+
+    /**
+     * Pipeline stages, each loading the file.
+     *
+     * @param file
+     *            The PDF file.
+     * @return Checksum to keep the work alive.
+     * @throws IOException
+     *             If error.
+     */
+    private static long pageMetaLegacy(final File file) throws IOException {
+
+        long checksum = 0;
+
+        // Stage 1: page count.
+        PdfReader reader = openFully(file);
+        checksum += reader.getNumberOfPages();
+        reader.close();
+
+        // Stage 2: page sizes and rotation.
+        reader = openFully(file);
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            checksum += (long) reader.getPageSize(i).getWidth()
+                    + reader.getPageRotation(i);
+        }
+        reader.close();
+
+        // Stage 3: fonts.
+        reader = openFully(file);
+        checksum += PdfDocumentFonts.create(reader).getFonts().size();
+        reader.close();
+
+        return checksum;
+    }
+
+    /**
+     * Pipeline stages, sharing cached metadata.
+     *
+     * @param file
+     *            The PDF file.
+     * @return Checksum to keep the work alive.
+     * @throws IOException
+     *             If error.
+     */
+    private static long pageMetaCached(final File file) throws IOException {
+
+        final PdfPageMetaCache cache = PdfPageMetaCache.instance();
+        cache.clear();
+
+        long checksum = 0;
+
+        // Stage 1: page count.
+        checksum += cache.get(file).getNumberOfPages();
+
+        // Stage 2: page sizes and rotation.
+        final PdfPageMeta meta = cache.get(file);
+        for (int i = 1; i <= meta.getNumberOfPages(); i++) {
+            checksum += (long) meta.getPageSize(i).getWidth()
+                    + meta.getPageRotation(i);
+        }
+
+        // Stage 3: fonts.
+        checksum += cache.getFonts(file).getFonts().size();
+
+        return checksum;
+    }
+}
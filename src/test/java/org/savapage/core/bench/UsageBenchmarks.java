@@ -0,0 +1,264 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.savapage.core.bench.BenchmarkHarness.Benchmark;
+import org.savapage.core.bench.BenchmarkHarness.Op;
+import org.savapage.core.json.JsonRollingTimeSeries;
+import org.savapage.core.json.TimeSeriesInterval;
+import org.savapage.core.services.helpers.UsageCounterAggregator;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Batch;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Counter;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Delta;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Target;
+
+/**
+ * Print-ins on a few queues: a locked read-modify-write of the queue totals
+ * and the JSON rolling day series per print-in, like
+ * {@code DocLogServiceImpl} does in a transaction of its own (without the
+ * database round trips, which come on top), versus the journaled
+ * {@link UsageCounterAggregator}, flushed with the same read-modify-write
+ * once per queue per {@link #FLUSH_PRINT_INS} print-ins.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UsageBenchmarks {
+
+    /** */
+    private static final long SEED = 20201019L;
+
+    /** */
+    private static final int QUEUES = 4;
+
+    /** */
+    private static final int MAX_DAYS = 40;
+
+    /**
+     * Print-ins between two flushes of the aggregator.
+     */
+    private static final int FLUSH_PRINT_INS = 1000;
+
+    /**
+     * A queue row, standing in for the locked database entity.
+     */
+    private static final class Row {
+
+        /** */
+        private long totalJobs;
+
+        /** */
+        private long totalPages;
+
+        /** */
+        private long totalBytes;
+
+        /** */
+        private Date lastUsage;
+
+        /** */
+        private String series;
+
+        /**
+         * Adds observations to the JSON day series.
+         *
+         * @param days
+         *            Observation dates.
+         * @param pages
+         *            Pages per date.
+         * @throws IOException
+         *             When JSON error.
+         */
+        void addSeries(final List<Date> days, final List<Integer> pages)
+                throws IOException {
+
+            final JsonRollingTimeSeries<Integer> json =
+                    new JsonRollingTimeSeries<>(TimeSeriesInterval.DAY,
+                            MAX_DAYS, 0);
+            if (this.series != null) {
+                json.init(this.series);
+            }
+            for (int i = 0; i < days.size(); i++) {
+                json.addDataPoint(days.get(i), pages.get(i));
+            }
+            this.series = json.stringify();
+        }
+    }
+
+    /**
+     * Journaled print-in, closing the aggregator when done.
+     */
+    private static final class JournaledPrintIn
+            implements Op, AutoCloseable {
+
+        /** */
+        private final Row[] rows = createRows();
+
+        /** */
+        private final Random random = new Random(SEED);
+
+        /** */
+        private final UsageCounterAggregator agg;
+
+        /** */
+        private int pending;
+
+        /**
+         * @param journalDir
+         *            The journal directory.
+         * @throws IOException
+         *             If IO error.
+         */
+        JournaledPrintIn(final File journalDir) throws IOException {
+            this.agg = new UsageCounterAggregator(journalDir);
+            this.agg.open(0L);
+        }
+
+        @Override
+        public long invoke() throws Exception {
+
+            final int queue = this.random.nextInt(QUEUES);
+            final int pages = 1 + this.random.nextInt(20);
+            final Date now = new Date();
+
+            this.agg.add(Target.QUEUE, Long.valueOf(queue), now, now, 1,
+                    pages, 0, 0, 1000L * pages);
+
+            if (++this.pending == FLUSH_PRINT_INS) {
+                this.pending = 0;
+                final Batch batch = this.agg.drain();
+                if (batch != null) {
+                    apply(this.rows, batch);
+                    this.agg.commit(batch);
+                }
+            }
+            return pages;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.agg.close();
+        }
+    }
+
+    /** */
+    private UsageBenchmarks() {
+    }
+
+    /**
+     * @return The queue rows.
+     */
+    private static Row[] createRows() {
+        final Row[] rows = new Row[QUEUES];
+        for (int i = 0; i < QUEUES; i++) {
+            rows[i] = new Row();
+        }
+        return rows;
+    }
+
+    /**
+     * @param rows
+     *            The rows.
+     * @param batch
+     *            The batch to apply.
+     * @throws IOException
+     *             When JSON error.
+     */
+    private static void apply(final Row[] rows, final Batch batch)
+            throws IOException {
+
+        for (final Delta delta : batch.getDeltas()) {
+
+            final Row row = rows[delta.getId().intValue()];
+
+            synchronized (row) {
+                row.totalJobs += delta.get(Counter.JOBS);
+                row.totalPages += delta.get(Counter.PAGES);
+                row.totalBytes += delta.get(Counter.BYTES);
+                row.lastUsage = delta.getLastUsage();
+
+                final List<Date> days = delta.getDays();
+                final List<Integer> pages = new ArrayList<>();
+                for (final Date day : days) {
+                    pages.add(Integer
+                            .valueOf((int) delta.get(day, Counter.PAGES)));
+                }
+                row.addSeries(days, pages);
+            }
+        }
+    }
+
+    /**
+     * @return Locked print-in operation.
+     */
+    private static Op createLockedPrintIn() {
+
+        final Row[] rows = createRows();
+        final Random random = new Random(SEED);
+
+        return () -> {
+            final int queue = random.nextInt(QUEUES);
+            final int pages = 1 + random.nextInt(20);
+            final Date now = new Date();
+
+            final Row row = rows[queue];
+            synchronized (row) {
+                row.totalJobs++;
+                row.totalPages += pages;
+                row.totalBytes += 1000L * pages;
+                row.lastUsage = now;
+                row.addSeries(Collections.singletonList(now),
+                        Collections.singletonList(Integer.valueOf(pages)));
+            }
+            return pages;
+        };
+    }
+
+    /**
+     * @param workDir
+     *            Directory for fixture files.
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> create(final File workDir) {
+
+        final List<Benchmark> list = new ArrayList<>();
+
+        list.add(new Benchmark("usage.printin.locked",
+                UsageBenchmarks::createLockedPrintIn));
+
+        list.add(new Benchmark("usage.printin.journaled",
+                () -> new JournaledPrintIn(new File(workDir, "usage"))));
+
+        return list;
+    }
+}
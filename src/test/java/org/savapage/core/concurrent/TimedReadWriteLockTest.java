@@ -0,0 +1,107 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.savapage.core.metrics.MetricsRegistry;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class TimedReadWriteLockTest {
+
+    @Test
+    public void testHistogram() {
+
+        final TimedReadWriteLock lock =
+                new TimedReadWriteLock("test-histogram", 1000L, false);
+
+        final long reads = lock.getReadHoldHistogram().getCount();
+        final long writes = lock.getWriteHoldHistogram().getCount();
+
+        lock.setReadLock(true, null);
+        lock.setReadLock(true, null);
+        lock.setReadLock(false, null);
+        lock.setReadLock(false, null);
+
+        lock.setWriteLock(true, null);
+        lock.setWriteLock(false, null);
+
+        assertEquals(reads + 2, lock.getReadHoldHistogram().getCount());
+        assertEquals(writes + 1, lock.getWriteHoldHistogram().getCount());
+
+        // Registered by lock name.
+        assertSame(lock.getReadHoldHistogram(),
+                MetricsRegistry.instance().histogram("lock_read_hold_seconds",
+                        "", "lock", "test-histogram"));
+    }
+
+    @Test
+    public void testScanReportsOnce() {
+
+        final TimedReadWriteLock lock =
+                new TimedReadWriteLock("test", 10L, false);
+
+        lock.setWriteLock(true, "ctx");
+
+        final long now = System.nanoTime();
+
+        assertEquals(0, lock.scanHolds(now));
+        assertEquals(1, lock.scanHolds(now + TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(0, lock.scanHolds(now + TimeUnit.SECONDS.toNanos(2)));
+
+        lock.setWriteLock(false, "ctx");
+
+        assertEquals(0, lock.scanHolds(now + TimeUnit.SECONDS.toNanos(3)));
+    }
+
+    @Test
+    public void testNoWriteWhileReading() {
+
+        final TimedReadWriteLock lock =
+                new TimedReadWriteLock("test-no-write", 1000L, false);
+
+        final long reads = lock.getReadHoldHistogram().getCount();
+        final long writes = lock.getWriteHoldHistogram().getCount();
+
+        lock.setReadLock(true, null);
+        // Must return without blocking.
+        lock.setWriteLock(true, null);
+        lock.setReadLock(false, null);
+
+        assertEquals(writes, lock.getWriteHoldHistogram().getCount());
+        assertTrue(lock.tryReadLock(null));
+        lock.setReadLock(false, null);
+        assertEquals(reads + 2, lock.getReadHoldHistogram().getCount());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc.soffice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class SOfficeResultCacheTest {
+
+    /** */
+    private static final int ENTRY_SIZE = 10;
+
+    /** */
+    private static final long MAX_BYTES = 3 * ENTRY_SIZE;
+
+    /** */
+    private File workDir;
+
+    /** */
+    private Path cacheDir;
+
+    @Before
+    public void init() throws IOException {
+        this.workDir = Files.createTempDirectory("soffice-cache").toFile();
+        this.cacheDir = this.workDir.toPath().resolve("cache");
+    }
+
+    @After
+    public void exit() throws IOException {
+        FileUtils.deleteDirectory(this.workDir);
+    }
+
+    /**
+     * Creates a result file.
+     *
+     * @param name
+     *            File name.
+     * @param size
+     *            Number of bytes.
+     * @param fill
+     *            Byte value.
+     * @return The file.
+     * @throws IOException
+     *             When write fails.
+     */
+    private File createResult(final String name, final int size,
+            final byte fill) throws IOException {
+
+        final byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = fill;
+        }
+        final File file = new File(this.workDir, name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    @Test
+    public void testMissAndHit() throws IOException {
+
+        final SOfficeResultCache cache =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        final File out = new File(this.workDir, "out.pdf");
+
+        assertFalse(cache.retrieve("a.pdf", out));
+        assertFalse(out.exists());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        final File result = createResult("a", ENTRY_SIZE, (byte) 'a');
+        cache.store("a.pdf", result);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(ENTRY_SIZE, cache.getTotalBytes());
+
+        assertTrue(cache.retrieve("a.pdf", out));
+        assertArrayEquals(Files.readAllBytes(result.toPath()),
+                Files.readAllBytes(out.toPath()));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLruEviction() throws IOException {
+
+        final SOfficeResultCache cache =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        final File out = new File(this.workDir, "out.pdf");
+
+        cache.store("a", createResult("a", ENTRY_SIZE, (byte) 'a'));
+        cache.store("b", createResult("b", ENTRY_SIZE, (byte) 'b'));
+        cache.store("c", createResult("c", ENTRY_SIZE, (byte) 'c'));
+
+        // Touch "a", so "b" is least recently used.
+        assertTrue(cache.retrieve("a", out));
+
+        cache.store("d", createResult("d", ENTRY_SIZE, (byte) 'd'));
+
+        assertEquals(3, cache.getSize());
+        assertEquals(MAX_BYTES, cache.getTotalBytes());
+        assertFalse(Files.exists(this.cacheDir.resolve("b")));
+
+        assertFalse(cache.retrieve("b", out));
+        assertTrue(cache.retrieve("a", out));
+        assertTrue(cache.retrieve("c", out));
+        assertTrue(cache.retrieve("d", out));
+        assertEquals((byte) 'd', Files.readAllBytes(out.toPath())[0]);
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+
+        final SOfficeResultCache cache =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        cache.store("a", createResult("a1", ENTRY_SIZE, (byte) '1'));
+        cache.store("a", createResult("a2", 2 * ENTRY_SIZE, (byte) '2'));
+
+        assertEquals(1, cache.getSize());
+        assertEquals(2 * ENTRY_SIZE, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testTooLarge() throws IOException {
+
+        final SOfficeResultCache cache =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        cache.store("a", createResult("a", ENTRY_SIZE, (byte) 'a'));
+        cache.store("big",
+                createResult("big", (int) MAX_BYTES + 1, (byte) 'b'));
+
+        assertEquals(1, cache.getSize());
+        assertFalse(cache.retrieve("big", new File(this.workDir, "out")));
+    }
+
+    @Test
+    public void testEmptiedOnCreate() throws IOException {
+
+        final SOfficeResultCache cache =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        cache.store("a", createResult("a", ENTRY_SIZE, (byte) 'a'));
+
+        final SOfficeResultCache cacheNew =
+                new SOfficeResultCache(this.cacheDir, MAX_BYTES);
+
+        assertEquals(0, cacheNew.getSize());
+        assertEquals(0, this.cacheDir.toFile().list().length);
+    }
+}
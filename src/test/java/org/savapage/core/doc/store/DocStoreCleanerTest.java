@@ -0,0 +1,178 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.doc.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Calendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.doc.DeleteRateLimiter;
+import org.savapage.core.job.RunModeSwitch;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class DocStoreCleanerTest {
+
+    private static final String[] DOCS_CLEANED = { "2019/12/31/23/u1",
+            "2020/05/01/00/u2", "2020/06/15/09/u3" };
+
+    private static final String[] DOCS_REMAIN = { "2020/06/15/10/u4",
+            "2020/06/16/00/u5", "2020/07/01/00/u6", "2021/01/01/00/u7" };
+
+    private Path store;
+
+    @Before
+    public void setUp() throws IOException {
+        this.store = Files.createTempDirectory("docstore");
+        for (final String doc : DOCS_CLEANED) {
+            this.createDoc(doc);
+        }
+        for (final String doc : DOCS_REMAIN) {
+            this.createDoc(doc);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree(this.store, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                    final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir,
+                    final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void createDoc(final String doc) throws IOException {
+        final Path dir =
+                this.store.resolve(doc.replace('/', File.separatorChar));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("doc.pdf"), new byte[] { 1 });
+        Files.write(dir.resolve("doc.json"), new byte[] { 2 });
+    }
+
+    private static Calendar reference() {
+        final Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2020, Calendar.JUNE, 15, 10, 0);
+        return cal;
+    }
+
+    private boolean exists(final String path) {
+        return Files.exists(
+                this.store.resolve(path.replace('/', File.separatorChar)));
+    }
+
+    @Test
+    public void testParallelReal() throws IOException {
+
+        final DocStoreCleaner cleaner = new DocStoreCleaner(this.store,
+                reference(), RunModeSwitch.REAL, 4,
+                DeleteRateLimiter.UNLIMITED);
+
+        assertEquals(DOCS_CLEANED.length, cleaner.clean());
+
+        for (final String doc : DOCS_CLEANED) {
+            assertFalse(doc, this.exists(doc));
+        }
+        for (final String doc : DOCS_REMAIN) {
+            assertTrue(doc, this.exists(doc + "/doc.pdf"));
+        }
+
+        assertFalse(this.exists("2019"));
+        assertFalse(this.exists("2020/05"));
+        assertFalse(this.exists("2020/06/15/09"));
+        assertTrue(this.exists("2020/06/15"));
+    }
+
+    @Test
+    public void testParallelDry() throws IOException {
+
+        final DocStoreCleaner cleaner = new DocStoreCleaner(this.store,
+                reference(), RunModeSwitch.DRY, 4,
+                DeleteRateLimiter.UNLIMITED);
+
+        assertEquals(DOCS_CLEANED.length, cleaner.clean());
+
+        for (final String doc : DOCS_CLEANED) {
+            assertTrue(doc, this.exists(doc + "/doc.pdf"));
+        }
+    }
+
+    @Test
+    public void testSequentialEqualsParallel() throws IOException {
+
+        final DocStoreCleaner sequential = new DocStoreCleaner(this.store,
+                reference(), RunModeSwitch.DRY);
+
+        final DocStoreCleaner parallel = new DocStoreCleaner(this.store,
+                reference(), RunModeSwitch.DRY, 4,
+                DeleteRateLimiter.UNLIMITED);
+
+        assertEquals(sequential.clean(), parallel.clean());
+    }
+
+    @Test
+    public void testRateLimit() throws IOException {
+
+        final int maxPerSec = 200;
+
+        final DocStoreCleaner cleaner = new DocStoreCleaner(this.store,
+                reference(), RunModeSwitch.REAL, 4,
+                new DeleteRateLimiter(maxPerSec));
+
+        final long start = System.nanoTime();
+        cleaner.clean();
+        final long msec = (System.nanoTime() - start) / 1_000_000;
+
+        // 6 files; 3 uuid, 3 hour, 2 day, 2 month and 1 year directories.
+        final int deletes = 17;
+        assertTrue(String.valueOf(msec),
+                msec >= (deletes - 1) * 1000L / maxPerSec);
+    }
+}
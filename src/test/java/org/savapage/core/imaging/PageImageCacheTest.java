@@ -0,0 +1,327 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.imaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.imaging.Pdf2ImgCommand.CreateParms;
+
+/**
+ * Tests {@link PageImageCache} with a fake renderer.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PageImageCacheTest {
+
+    /** */
+    private static final int NUMBER_OF_PAGES = 20;
+
+    /** */
+    private static final int IMAGE_BYTES = 100;
+
+    /** */
+    private static final String EXT = "png";
+
+    /** */
+    private File workDir;
+
+    /** */
+    private File pdfFile;
+
+    /** */
+    private final AtomicInteger renders = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger renderedPages = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger imgCounter = new AtomicInteger();
+
+    /**
+     * Renders page images with the page ordinal as content.
+     */
+    private final PageImageCache.Renderer renderer = (parms, imgFiles) -> {
+        renders.incrementAndGet();
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        for (int i = 0; i < imgFiles.length; i++) {
+            final StringBuilder content = new StringBuilder();
+            content.append(parms.getPageOrdinal() + i).append('|');
+            while (content.length() < IMAGE_BYTES) {
+                content.append('x');
+            }
+            Files.write(imgFiles[i].toPath(),
+                    content.toString().getBytes(StandardCharsets.UTF_8));
+            renderedPages.incrementAndGet();
+        }
+    };
+
+    /**
+     * @throws IOException
+     *             When IO error.
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.workDir = Files.createTempDirectory("page-image-cache").toFile();
+        this.pdfFile = new File(this.workDir, "job.pdf");
+        Files.write(this.pdfFile.toPath(), new byte[] { 1, 2, 3 });
+    }
+
+    /**
+     * @throws IOException
+     *             When IO error.
+     */
+    @After
+    public void tearDown() throws IOException {
+        deleteTree(this.workDir);
+    }
+
+    /**
+     * @param file
+     *            File or directory to delete.
+     */
+    private static void deleteTree(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @return A new cache.
+     */
+    private PageImageCache createCache() {
+        return new PageImageCache(new File(this.workDir, "cache"), EXT,
+                this.renderer);
+    }
+
+    /**
+     * @param page
+     *            Zero-based page ordinal.
+     * @return Request parameters with a unique image file.
+     */
+    private CreateParms createParms(final int page) {
+        final CreateParms parms = new CreateParms();
+        parms.setPdfFile(this.pdfFile);
+        parms.setNumberOfPages(NUMBER_OF_PAGES);
+        parms.setPageOrdinal(page);
+        parms.setResolution(Pdf2ImgCairoCmd.RESOLUTION_FOR_THUMNAIL);
+        parms.setImgFile(new File(this.workDir, String.format("img-%d.%s",
+                this.imgCounter.incrementAndGet(), EXT)));
+        return parms;
+    }
+
+    /**
+     * @param imgFile
+     *            Image file.
+     * @return The page ordinal in the image content.
+     * @throws IOException
+     *             When IO error.
+     */
+    private static int readPage(final File imgFile) throws IOException {
+        final String content = new String(Files.readAllBytes(imgFile.toPath()),
+                StandardCharsets.UTF_8);
+        return Integer.parseInt(content.substring(0, content.indexOf('|')));
+    }
+
+    /**
+     * Concurrent requests for the same page share one render.
+     *
+     * @throws Exception
+     *             When test fails.
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+
+        final PageImageCache cache = this.createCache();
+        final int nThreads = 16;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<File>> futures = new ArrayList<>();
+
+        for (int i = 0; i < nThreads; i++) {
+            final CreateParms parms = this.createParms(3);
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.getPageImage(parms, Long.MAX_VALUE, 1);
+            }));
+        }
+        start.countDown();
+
+        for (final Future<File> future : futures) {
+            assertEquals(3, readPage(future.get()));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, this.renders.get());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * A request renders the next pages in the same run.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testPrefetch() throws IOException {
+
+        final PageImageCache cache = this.createCache();
+        final int maxPages = 8;
+
+        for (int page = 0; page < NUMBER_OF_PAGES; page++) {
+            final File imgFile = cache.getPageImage(this.createParms(page),
+                    Long.MAX_VALUE, maxPages);
+            assertEquals(page, readPage(imgFile));
+            // Requester owns (and deletes) the image.
+            assertTrue(imgFile.delete());
+        }
+
+        assertEquals(3, this.renders.get());
+        assertEquals(NUMBER_OF_PAGES, this.renderedPages.get());
+        assertEquals(NUMBER_OF_PAGES - 3, cache.getHits());
+        assertEquals(NUMBER_OF_PAGES, cache.size());
+    }
+
+    /**
+     * A prefetch range stops at a cached page.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testPrefetchStopsAtCached() throws IOException {
+
+        final PageImageCache cache = this.createCache();
+
+        cache.getPageImage(this.createParms(2), Long.MAX_VALUE, 1);
+        cache.getPageImage(this.createParms(0), Long.MAX_VALUE, 8);
+
+        assertEquals(2, this.renders.get());
+        assertEquals(3, this.renderedPages.get());
+    }
+
+    /**
+     * Least recently used images are evicted.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testEviction() throws IOException {
+
+        final PageImageCache cache = this.createCache();
+        final long maxBytes = 3 * IMAGE_BYTES;
+
+        for (int page = 0; page < 3; page++) {
+            cache.getPageImage(this.createParms(page), maxBytes, 1);
+        }
+        // Touch page 0: page 1 is least recently used.
+        cache.getPageImage(this.createParms(0), maxBytes, 1);
+        cache.getPageImage(this.createParms(3), maxBytes, 1);
+
+        assertEquals(3, cache.size());
+        assertEquals(maxBytes, cache.getTotalBytes());
+        assertEquals(4, this.renders.get());
+
+        cache.getPageImage(this.createParms(0), maxBytes, 1);
+        assertEquals(4, this.renders.get());
+
+        cache.getPageImage(this.createParms(1), maxBytes, 1);
+        assertEquals(5, this.renders.get());
+
+        assertEquals(3, new File(this.workDir, "cache").list().length);
+    }
+
+    /**
+     * A changed PDF file is rendered again.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testChangedFile() throws IOException {
+
+        final PageImageCache cache = this.createCache();
+
+        cache.getPageImage(this.createParms(0), Long.MAX_VALUE, 1);
+
+        Files.write(this.pdfFile.toPath(), new byte[] { 1, 2, 3, 4 });
+
+        cache.getPageImage(this.createParms(0), Long.MAX_VALUE, 1);
+        assertEquals(2, this.renders.get());
+    }
+
+    /**
+     * A failed render is reported, and not cached.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testFailure() throws IOException {
+
+        final PageImageCache cache = new PageImageCache(
+                new File(this.workDir, "cache"), EXT, (parms, imgFiles) -> {
+                    throw new IOException("render failed");
+                });
+        try {
+            cache.getPageImage(this.createParms(0), Long.MAX_VALUE, 4);
+            fail();
+        } catch (IOException e) {
+            assertEquals("render failed", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, new File(this.workDir, "cache").list().length);
+    }
+
+}
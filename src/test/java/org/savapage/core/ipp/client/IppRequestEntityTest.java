@@ -0,0 +1,212 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppRequestEntityTest {
+
+    private static final ContentType CONTENT_TYPE =
+            ContentType.create("application/ipp");
+
+    private File document;
+
+    private byte[] header;
+
+    private byte[] documentBytes;
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.header = new byte[] { 0x02, 0x00, 0x00, 0x02, 0x00, 0x00, 0x00,
+                0x01, 0x01, 0x03 };
+
+        this.documentBytes = new byte[200_000];
+        for (int i = 0; i < this.documentBytes.length; i++) {
+            this.documentBytes[i] = (byte) (i % 251);
+        }
+
+        this.document = File.createTempFile("ipp-entity", ".pdf");
+        Files.write(this.document.toPath(), this.documentBytes);
+    }
+
+    @After
+    public void tearDown() {
+        this.document.delete();
+    }
+
+    /**
+     * @return Header followed by document.
+     */
+    private byte[] expectedContent() {
+        final byte[] expected =
+                new byte[this.header.length + this.documentBytes.length];
+        System.arraycopy(this.header, 0, expected, 0, this.header.length);
+        System.arraycopy(this.documentBytes, 0, expected, this.header.length,
+                this.documentBytes.length);
+        return expected;
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+
+        final IppRequestEntity entity =
+                new IppRequestEntity(this.header, this.document, CONTENT_TYPE);
+
+        assertEquals(this.header.length + this.documentBytes.length,
+                entity.getContentLength());
+        assertTrue(entity.isRepeatable());
+
+        // Repeatable: write twice.
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+            entity.writeTo(ostr);
+            assertArrayEquals(expectedContent(), ostr.toByteArray());
+        }
+    }
+
+    @Test
+    public void testWriteToFile() throws IOException {
+
+        final IppRequestEntity entity =
+                new IppRequestEntity(this.header, this.document, CONTENT_TYPE);
+
+        final File target = File.createTempFile("ipp-entity", ".out");
+
+        try {
+            try (OutputStream ostr = new FileOutputStream(target)) {
+                entity.writeTo(ostr);
+            }
+            assertArrayEquals(expectedContent(),
+                    Files.readAllBytes(target.toPath()));
+        } finally {
+            target.delete();
+        }
+    }
+
+    @Test
+    public void testGetContent() throws IOException {
+
+        final IppRequestEntity entity =
+                new IppRequestEntity(this.header, this.document, CONTENT_TYPE);
+
+        try (InputStream istr = entity.getContent()) {
+            final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = istr.read(buf)) != -1) {
+                ostr.write(buf, 0, n);
+            }
+            assertArrayEquals(expectedContent(), ostr.toByteArray());
+        }
+    }
+
+    @Test
+    public void testNoDocument() throws IOException {
+
+        final IppRequestEntity entity =
+                new IppRequestEntity(this.header, null, CONTENT_TYPE);
+
+        assertEquals(this.header.length, entity.getContentLength());
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        entity.writeTo(ostr);
+        assertArrayEquals(this.header, ostr.toByteArray());
+    }
+
+    @Test
+    public void testPost() throws IOException {
+
+        final AtomicLong bytesReceived = new AtomicLong();
+
+        final HttpServer server =
+                HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/printers/test", exchange -> {
+            long count = 0;
+            try (InputStream istr = exchange.getRequestBody()) {
+                final byte[] buf = new byte[8192];
+                int n;
+                while ((n = istr.read(buf)) != -1) {
+                    count += n;
+                }
+            }
+            bytesReceived.set(count);
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+
+            final HttpPost post = new HttpPost(
+                    String.format("http://127.0.0.1:%d/printers/test",
+                            server.getAddress().getPort()));
+
+            post.setEntity(new IppRequestEntity(this.header, this.document,
+                    CONTENT_TYPE));
+
+            try (CloseableHttpResponse rsp = client.execute(post)) {
+                assertEquals(200, rsp.getStatusLine().getStatusCode());
+                EntityUtils.consume(rsp.getEntity());
+            }
+
+            assertEquals(this.header.length + this.documentBytes.length,
+                    bytesReceived.get());
+
+        } finally {
+            server.stop(0);
+        }
+    }
+}
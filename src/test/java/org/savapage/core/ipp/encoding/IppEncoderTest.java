@@ -0,0 +1,281 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.encoding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.savapage.core.ipp.attribute.IppAttrCollection;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrList;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictPrinterDescAttr;
+import org.savapage.core.ipp.attribute.syntax.IppBoolean;
+import org.savapage.core.ipp.attribute.syntax.IppEnum;
+import org.savapage.core.ipp.attribute.syntax.IppInteger;
+import org.savapage.core.ipp.attribute.syntax.IppKeyword;
+import org.savapage.core.ipp.attribute.syntax.IppName;
+import org.savapage.core.ipp.attribute.syntax.IppRangeOfInteger;
+import org.savapage.core.ipp.attribute.syntax.IppResolution;
+import org.savapage.core.ipp.attribute.syntax.IppUri;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppEncoderTest {
+
+    /**
+     * @return An encoded printer attributes group.
+     * @throws IOException
+     *             When encoding fails.
+     */
+    private static byte[] createMessage() throws IOException {
+
+        final IppAttrGroup group =
+                new IppAttrGroup(IppDelimiterTag.PRINTER_ATTR);
+
+        group.add(IppDictPrinterDescAttr.ATTR_PRINTER_NAME,
+                IppName.instance(), "Printer-01");
+        group.add(IppDictPrinterDescAttr.ATTR_PRINTER_TYPE,
+                IppEnum.instance(), "8425484");
+        group.add("printer-is-accepting-jobs", IppBoolean.instance(),
+                IppBoolean.TRUE);
+        group.add("x-test-offset", IppInteger.instance(), "-3");
+        group.add("copies-supported", IppRangeOfInteger.instance(), "1:999");
+        group.add("printer-uri-supported", IppUri.instance(),
+                "ipp://localhost:631/printers/Printer-01");
+
+        final IppAttrValue media =
+                new IppAttrValue("media-supported", IppKeyword.instance());
+        media.addValue("iso_a4_210x297mm");
+        media.addValue("na_letter_8.5x11in");
+        media.addValue("iso_a3_297x420mm");
+        group.addAttribute(media);
+
+        final IppAttrValue resolution = new IppAttrValue(
+                "printer-resolution-supported", IppResolution.instance());
+        resolution.addValue(IppResolution.DPI_600X600);
+        resolution.addValue(IppResolution.format(1200, 600, 3));
+        group.addAttribute(resolution);
+
+        final IppAttrCollection mediaCol =
+                new IppAttrCollection("media-col-default");
+        mediaCol.add("media-type", IppKeyword.instance(), "stationery");
+
+        final IppAttrCollection mediaSize =
+                new IppAttrCollection("media-size");
+        mediaSize.add("x-dimension", IppInteger.instance(), "21000");
+        mediaSize.add("y-dimension", IppInteger.instance(), "29700");
+        mediaCol.addCollection(mediaSize);
+
+        group.addCollection(mediaCol);
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+        groups.add(group);
+        return write(groups);
+    }
+
+    /**
+     * @param groups
+     *            Attribute groups.
+     * @return The encoded groups.
+     * @throws IOException
+     *             When encoding fails.
+     */
+    private static byte[] write(final List<IppAttrGroup> groups)
+            throws IOException {
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        IppEncoder.writeAttributes(groups, ostr, StandardCharsets.UTF_8,
+                null);
+        return ostr.toByteArray();
+    }
+
+    /**
+     * Asserts attributes lists have the same keywords and string values.
+     *
+     * @param expected
+     *            Expected list.
+     * @param actual
+     *            Actual list.
+     */
+    private static void assertSameValues(final IppAttrList expected,
+            final IppAttrList actual) {
+
+        final List<IppAttrValue> attrsExp = expected.getAttributes();
+        final List<IppAttrValue> attrsAct = actual.getAttributes();
+
+        assertEquals(attrsExp.size(), attrsAct.size());
+
+        for (int i = 0; i < attrsExp.size(); i++) {
+            final IppAttrValue exp = attrsExp.get(i);
+            final IppAttrValue act = attrsAct.get(i);
+
+            assertEquals(exp.getAttribute().getKeyword(),
+                    act.getAttribute().getKeyword());
+            assertEquals(exp.size(), act.size());
+
+            for (int j = 0; j < exp.size(); j++) {
+                assertEquals(exp.getValue(j), act.getValue(j));
+            }
+            assertEquals(exp.getValues(), act.getValues());
+        }
+    }
+
+    /**
+     * @param expected
+     *            Expected collections.
+     * @param actual
+     *            Actual collections.
+     */
+    private static void assertSameCollections(
+            final List<IppAttrCollection> expected,
+            final List<IppAttrCollection> actual) {
+
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKeyword(),
+                    actual.get(i).getKeyword());
+            assertSameValues(expected.get(i), actual.get(i));
+            assertSameCollections(expected.get(i).getCollections(),
+                    actual.get(i).getCollections());
+        }
+    }
+
+    @Test
+    public void testTypedReadEqualsLegacyRead() throws IOException {
+
+        final byte[] msg = createMessage();
+
+        final List<IppAttrGroup> legacy = IppEncoder
+                .readAttributes(new ByteArrayInputStream(msg), null);
+        final List<IppAttrGroup> typed = IppEncoder
+                .readAttributes(new IppByteArrayInputStream(msg), null);
+
+        assertEquals(1, legacy.size());
+        assertEquals(1, typed.size());
+
+        assertSameValues(legacy.get(0), typed.get(0));
+        assertSameCollections(legacy.get(0).getCollections(),
+                typed.get(0).getCollections());
+    }
+
+    @Test
+    public void testTypedReadRepeatedNames() throws IOException {
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            groups.addAll(IppEncoder.readAttributes(
+                    new ByteArrayInputStream(createMessage()), null));
+        }
+        final byte[] msg = write(groups);
+
+        final List<IppAttrGroup> legacy = IppEncoder
+                .readAttributes(new ByteArrayInputStream(msg), null);
+        final List<IppAttrGroup> typed = IppEncoder
+                .readAttributes(new IppByteArrayInputStream(msg), null);
+
+        assertEquals(3, typed.size());
+
+        for (int i = 0; i < legacy.size(); i++) {
+            assertSameValues(legacy.get(i), typed.get(i));
+            assertSameCollections(legacy.get(i).getCollections(),
+                    typed.get(i).getCollections());
+        }
+    }
+
+    @Test
+    public void testTypedAccessors() throws IOException {
+
+        final IppAttrGroup group = IppEncoder
+                .readAttributes(new IppByteArrayInputStream(createMessage()),
+                        null)
+                .get(0);
+
+        final IppAttrValue printerType =
+                group.getAttrValue(IppDictPrinterDescAttr.ATTR_PRINTER_TYPE);
+
+        assertTrue(printerType.isTyped());
+        assertEquals(8425484, printerType.getIntValue(0));
+        assertEquals(-3, group.getAttrValue("x-test-offset").getIntValue(0));
+        assertTrue(group.getAttrValue("printer-is-accepting-jobs")
+                .getBooleanValue(0));
+
+        final IppAttrValue media = group.getAttrValue("media-supported");
+        assertEquals(3, media.size());
+        assertEquals("na_letter_8.5x11in", media.getValue(1));
+        assertTrue(media.isTyped());
+
+        // Changing the values materializes them.
+        media.addValue("iso_a5_148x210mm");
+        assertFalse(media.isTyped());
+        assertEquals(4, media.getValues().size());
+        assertEquals("iso_a3_297x420mm", media.getValue(2));
+    }
+
+    @Test
+    public void testTypedWriteEqualsLegacyWrite() throws IOException {
+
+        final byte[] msg = createMessage();
+
+        final byte[] legacy = write(IppEncoder
+                .readAttributes(new ByteArrayInputStream(msg), null));
+        final byte[] typed = write(IppEncoder
+                .readAttributes(new IppByteArrayInputStream(msg), null));
+
+        assertArrayEquals(legacy, typed);
+    }
+
+    @Test
+    public void testReadInt() throws IOException {
+
+        assertEquals(-1, IppEncoder.readInt32((byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF));
+        assertEquals(-3, IppEncoder.readInt32((byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFD));
+        assertEquals(0xFFFE, IppEncoder.readInt16((byte) 0xFF, (byte) 0xFE));
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        IppEncoder.writeInt32(ostr, Integer.MIN_VALUE);
+        IppEncoder.writeInt16(ostr, 0x8001);
+
+        final ByteArrayInputStream istr =
+                new ByteArrayInputStream(ostr.toByteArray());
+        assertEquals(Integer.MIN_VALUE, IppEncoder.readInt32(istr));
+        assertEquals(0x8001, IppEncoder.readInt16(istr));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.ipp.operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppAttrValue;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.IppDictPrinterDescAttr;
+import org.savapage.core.ipp.attribute.syntax.IppDateTime;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.encoding.IppEncoder;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppGetPrinterAttrRspCacheTest {
+
+    private static final int REQUEST_ID_ORG = 1;
+
+    private static final int REQUEST_ID_NEW = 0x01020304;
+
+    private static final int UP_TIME_ORG = 1;
+
+    /**
+     * Offset of the first value byte after request-id.
+     */
+    private static final int OFFSET_BODY = 8;
+
+    /**
+     * Creates an encoded Get-Printer-Attributes response.
+     *
+     * @return The encoded response.
+     * @throws IOException
+     *             If error.
+     */
+    private static byte[] createEncodedResponse() throws IOException {
+
+        final IppAttrGroup group =
+                new IppAttrGroup(IppDelimiterTag.PRINTER_ATTR);
+
+        group.addAttribute(createValue(
+                IppDictPrinterDescAttr.ATTR_PRINTER_NAME, "SavaPage"));
+        group.addAttribute(
+                createValue(IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME,
+                        String.valueOf(UP_TIME_ORG)));
+        group.addAttribute(createValue(
+                IppDictPrinterDescAttr.ATTR_PRINTER_CURRENT_TIME,
+                IppDateTime.formatDate(new Date(0))));
+        group.addAttribute(createValue(
+                IppDictPrinterDescAttr.ATTR_PRINTER_INFO, "printer-up-time"));
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        bos.write(2);
+        bos.write(0);
+        IppEncoder.writeInt16(bos, IppStatusCode.OK.asInt());
+        IppEncoder.writeInt32(bos, REQUEST_ID_ORG);
+        IppEncoder.writeAttributes(groups, bos, StandardCharsets.UTF_8, null);
+        bos.write(IppDelimiterTag.END_OF_ATTR.asInt());
+
+        return bos.toByteArray();
+    }
+
+    private static IppAttrValue createValue(final String name,
+            final String value) {
+        final IppAttrValue attrValue = new IppAttrValue(
+                IppDictPrinterDescAttr.instance().getAttr(name));
+        attrValue.addValue(value);
+        return attrValue;
+    }
+
+    private static int getInt32(final byte[] bytes, final int offset) {
+        return IppEncoder.readInt32(bytes[offset], bytes[offset + 1],
+                bytes[offset + 2], bytes[offset + 3]);
+    }
+
+    @Test
+    public void testFindValueOffset() throws IOException {
+
+        final byte[] encoded = createEncodedResponse();
+
+        final int offset = IppGetPrinterAttrRspCache.findValueOffset(encoded,
+                IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME, 4);
+
+        assertTrue(offset > OFFSET_BODY);
+        assertEquals(UP_TIME_ORG, getInt32(encoded, offset));
+
+        assertEquals(-1,
+                IppGetPrinterAttrRspCache.findValueOffset(encoded,
+                        IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME, 11));
+
+        assertEquals(-1,
+                IppGetPrinterAttrRspCache.findValueOffset(encoded,
+                        IppDictPrinterDescAttr.ATTR_PRINTER_STATE, 4));
+    }
+
+    @Test
+    public void testWritePatched() throws IOException {
+
+        final IppGetPrinterAttrRspCache cache =
+                IppGetPrinterAttrRspCache.instance();
+
+        final String key = "testWritePatched";
+        final byte[] encoded = createEncodedResponse();
+        final byte[] template = encoded.clone();
+
+        final int offsetUpTime =
+                IppGetPrinterAttrRspCache.findValueOffset(encoded,
+                        IppDictPrinterDescAttr.ATTR_PRINTER_UP_TIME, 4);
+        final int offsetTime =
+                IppGetPrinterAttrRspCache.findValueOffset(encoded,
+                        IppDictPrinterDescAttr.ATTR_PRINTER_CURRENT_TIME, 11);
+
+        cache.put(key, null, encoded);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertTrue(cache.write(key, REQUEST_ID_NEW, bos));
+
+        final byte[] patched = bos.toByteArray();
+
+        assertEquals(template.length, patched.length);
+        assertEquals(REQUEST_ID_NEW, getInt32(patched, 4));
+
+        // Date(0) is in 1970.
+        assertTrue(IppEncoder.readInt16(patched[offsetTime],
+                patched[offsetTime + 1]) > 2000);
+
+        for (int i = OFFSET_BODY; i < patched.length; i++) {
+            if (i >= offsetUpTime && i < offsetUpTime + 4) {
+                continue;
+            }
+            if (i >= offsetTime && i < offsetTime + 11) {
+                continue;
+            }
+            assertEquals(template[i], patched[i]);
+        }
+
+        // The template itself is not modified.
+        assertTrue(cache.write(key, REQUEST_ID_ORG,
+                new ByteArrayOutputStream()));
+        assertEquals(REQUEST_ID_ORG, getInt32(encoded, 4));
+    }
+
+    @Test
+    public void testInvalidateAll() throws IOException {
+
+        final IppGetPrinterAttrRspCache cache =
+                IppGetPrinterAttrRspCache.instance();
+
+        final String key = "testInvalidateAll";
+
+        cache.put(key, null, createEncodedResponse());
+        assertTrue(cache.write(key, REQUEST_ID_NEW,
+                new ByteArrayOutputStream()));
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.write(key, REQUEST_ID_NEW,
+                new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Creates a Get-Printer-Attributes request.
+     *
+     * @param charset
+     *            The attributes-charset.
+     * @param language
+     *            The attributes-natural-language.
+     * @return The request.
+     */
+    private static IppGetPrinterAttrReq createRequest(final String charset,
+            final String language) {
+
+        final IppAttrGroup group =
+                new IppAttrGroup(IppDelimiterTag.OPERATION_ATTR);
+
+        final String[][] attrs = {
+                { IppDictOperationAttr.ATTR_ATTRIBUTES_CHARSET, charset },
+                { IppDictOperationAttr.ATTR_ATTRIBUTES_NATURAL_LANG,
+                        language },
+                { IppDictOperationAttr.ATTR_PRINTER_URI,
+                        "ipp://localhost/printers" } };
+
+        for (final String[] attr : attrs) {
+            final IppAttrValue value = new IppAttrValue(
+                    IppDictOperationAttr.instance().getAttr(attr[0]));
+            value.addValue(attr[1]);
+            group.addAttribute(value);
+        }
+
+        final List<IppAttrGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        final IppGetPrinterAttrReq request = new IppGetPrinterAttrReq();
+        request.setAttrGroups(groups);
+        return request;
+    }
+
+    @Test
+    public void testCreateKey() {
+
+        final IppGetPrinterAttrOperation operation =
+                new IppGetPrinterAttrOperation(null);
+
+        final String key = IppGetPrinterAttrRspCache.createKey(null,
+                operation, createRequest("utf-8", "en-us"));
+
+        assertEquals(key, IppGetPrinterAttrRspCache.createKey(null,
+                operation, createRequest("utf-8", "en-us")));
+        assertFalse(key.equals(IppGetPrinterAttrRspCache.createKey(null,
+                operation, createRequest("utf-8", "nl-nl"))));
+        assertFalse(key.equals(IppGetPrinterAttrRspCache.createKey(null,
+                operation, createRequest("us-ascii", "en-us"))));
+    }
+}
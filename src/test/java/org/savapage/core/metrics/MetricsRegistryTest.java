@@ -0,0 +1,131 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.savapage.core.SpException;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class MetricsRegistryTest {
+
+    @Test
+    public void testBucketBounds() {
+
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            final long lower = LatencyHistogram.bucketLowerBound(i);
+            final long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(lower <= upper);
+            assertEquals(i, LatencyHistogram.bucketIndex(lower));
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            if (i > 0) {
+                assertEquals(LatencyHistogram.bucketUpperBound(i - 1) + 1,
+                        lower);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1,
+                LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketIndex(-1L));
+    }
+
+    @Test
+    public void testQuantiles() {
+
+        final LatencyHistogram histogram =
+                new MetricsRegistry().histogram("test_seconds", "Test.");
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000, histogram.getCount());
+
+        final double median = histogram.getValueAtQuantile(0.5);
+        final double expected = TimeUnit.MICROSECONDS.toNanos(500);
+
+        assertTrue(Math.abs(median - expected) / expected
+                <= 1.0 / LatencyHistogram.SUB_BUCKETS);
+
+        final double p99 = histogram.getValueAtQuantile(0.99);
+        final double expected99 = TimeUnit.MICROSECONDS.toNanos(990);
+
+        assertTrue(Math.abs(p99 - expected99) / expected99
+                <= 1.0 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void testRegistry() {
+
+        final MetricsRegistry registry = new MetricsRegistry();
+
+        final Counter counter = registry.counter("jobs_total", "Jobs.");
+        assertSame(counter, registry.counter("jobs_total", "Jobs."));
+
+        counter.inc();
+        counter.add(2);
+        assertEquals(3, counter.get());
+
+        boolean conflict = false;
+        try {
+            registry.histogram("jobs_total", "Jobs.");
+        } catch (SpException e) {
+            conflict = true;
+        }
+        assertTrue(conflict);
+    }
+
+    @Test
+    public void testPrometheusText() {
+
+        final MetricsRegistry registry = new MetricsRegistry();
+
+        registry.counter("jobs_total", "Jobs.", "queue", "a\"b").add(5);
+        registry.counter("jobs_total", "Jobs.", "queue", "c").inc();
+        registry.gauge("open", "Open.", () -> 7L);
+        registry.histogram("send_seconds", "Send.").record(1_500_000_000L);
+
+        final String text = registry.toPrometheusText();
+
+        assertTrue(text.contains("# TYPE savapage_jobs_total counter\n"
+                + "savapage_jobs_total{queue=\"a\\\"b\"} 5\n"
+                + "savapage_jobs_total{queue=\"c\"} 1\n"));
+        assertTrue(text.contains("# TYPE savapage_open gauge\n"
+                + "savapage_open 7\n"));
+        assertTrue(text.contains("# TYPE savapage_send_seconds summary\n"));
+        assertTrue(text.contains("savapage_send_seconds_sum 1.500000000\n"));
+        assertTrue(text.contains("savapage_send_seconds_count 1\n"));
+        assertTrue(text.contains("savapage_send_seconds{quantile=\"0.5\"} "));
+        assertEquals(1, text.split("# TYPE savapage_jobs_total").length - 1);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.msg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UserMsgBusTest {
+
+    private static final String USER = "john";
+
+    private static final UserMsgIndicator.Msg MSG =
+            UserMsgIndicator.Msg.PRINT_OUT_HOLD;
+
+    @Test
+    public void testSequence() {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        assertEquals(0, bus.getLastSequence(USER));
+        assertNull(bus.getLast(USER));
+
+        long epoch = 0;
+
+        for (int i = 1; i <= 3; i++) {
+            final UserMsgIndicator event = bus.publish(USER, i, MSG, null);
+            assertEquals(i, event.getSequence());
+            assertTrue(epoch == 0 || epoch == event.getEpoch());
+            epoch = event.getEpoch();
+        }
+
+        assertEquals(3, bus.getLastSequence(USER));
+        assertEquals(0, bus.getLastSequence("mary"));
+
+        final List<UserMsgIndicator> events = bus.getSince(USER, epoch, 1);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(0).getSequence());
+        assertEquals(3, events.get(1).getSequence());
+        assertEquals(3, bus.getLast(USER).getMessageDate().getTime());
+    }
+
+    @Test
+    public void testRingOverflow() {
+
+        final UserMsgBus bus = new UserMsgBus();
+        final int total = UserMsgBus.RING_SIZE + 5;
+
+        long epoch = 0;
+
+        for (int i = 1; i <= total; i++) {
+            epoch = bus.publish(USER, i, MSG, String.valueOf(i)).getEpoch();
+        }
+
+        final List<UserMsgIndicator> events = bus.getSince(USER, 0, 0);
+
+        assertEquals(UserMsgBus.RING_SIZE, events.size());
+        assertEquals(total - UserMsgBus.RING_SIZE + 1,
+                events.get(0).getSequence());
+        assertEquals(total, events.get(events.size() - 1).getSequence());
+        assertTrue(bus.getSince(USER, epoch, total).isEmpty());
+    }
+
+    @Test
+    public void testStaleReader() {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        final long epoch = bus.publish(USER, 1, MSG, null).getEpoch();
+        bus.publish(USER, 2, MSG, null);
+
+        // Reader has seen a cursor from before a restart.
+        assertEquals(2, bus.getSince(USER, epoch - 1, 1).size());
+        assertEquals(2, bus.getSince(USER, epoch, 100).size());
+        assertEquals(1, bus.getSince(USER, epoch, 1).size());
+    }
+
+    @Test
+    public void testWaitTimeout() throws InterruptedException {
+
+        final UserMsgBus bus = new UserMsgBus();
+        final long epoch = bus.publish(USER, 1, MSG, null).getEpoch();
+
+        final long start = System.nanoTime();
+        assertTrue(bus.waitForChange(USER, epoch, 1, 50,
+                TimeUnit.MILLISECONDS).isEmpty());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS
+                .toNanos(50));
+    }
+
+    @Test
+    public void testWaitForChange() throws Exception {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicReference<List<UserMsgIndicator>> result =
+                new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            waiting.countDown();
+            try {
+                result.set(
+                        bus.waitForChange(USER, 0, 0, 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        reader.start();
+        waiting.await();
+        bus.publish(USER, 1, MSG, "sender");
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(1, result.get().size());
+        assertEquals("sender", result.get().get(0).getSenderId());
+    }
+
+    @Test
+    public void testReadDoesNotCreateChannel() throws InterruptedException {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        assertNull(bus.getLast(USER));
+        assertTrue(bus.getSince(USER, 0, 0).isEmpty());
+        assertTrue(bus.waitForChange(USER, 0, 0, 10, TimeUnit.MILLISECONDS)
+                .isEmpty());
+        assertEquals(0, bus.size());
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        final long epoch = bus.publish(USER, 1, MSG, null).getEpoch();
+        bus.publish("mary", 1, MSG, null);
+
+        final long now = System.currentTimeMillis();
+        assertEquals(0, bus.evictIdle(now));
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+
+        final Thread reader = new Thread(() -> {
+            waiting.countDown();
+            try {
+                bus.waitForChange(USER, epoch, 1, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        reader.start();
+        waiting.await();
+
+        final long idleNow = now + UserMsgBus.CHANNEL_IDLE_EVICT_MSEC + 1;
+
+        // Wait until the reader waits on the channel.
+        while (reader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        // Channel with a waiting reader is kept.
+        assertEquals(1, bus.evictIdle(idleNow));
+        assertEquals(1, bus.size());
+        assertEquals(1, bus.getLastSequence(USER));
+        assertEquals(0, bus.getLastSequence("mary"));
+
+        bus.publish(USER, 2, MSG, null);
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(1, bus.evictIdle(System.currentTimeMillis()
+                + UserMsgBus.CHANNEL_IDLE_EVICT_MSEC + 1));
+        assertEquals(0, bus.size());
+
+        // Sequence restarts after eviction, with a new epoch.
+        final UserMsgIndicator event = bus.publish(USER, 3, MSG, null);
+        assertEquals(1, event.getSequence());
+        assertTrue(event.getEpoch() != epoch);
+
+        // A reader with a cursor of the evicted channel gets the new event.
+        assertEquals(1, bus.getSince(USER, epoch, 1).size());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+
+        final UserMsgBus bus = new UserMsgBus();
+
+        long epoch = 0;
+
+        for (int i = 1; i <= 3; i++) {
+            epoch = bus.publish(USER, i, MSG, null).getEpoch();
+        }
+
+        final long lastEpoch = epoch;
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicReference<List<UserMsgIndicator>> result =
+                new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            waiting.countDown();
+            try {
+                result.set(bus.waitForChange(USER, lastEpoch, 3, 10,
+                        TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        reader.start();
+        waiting.await();
+
+        while (reader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        bus.remove(USER);
+        assertEquals(0, bus.size());
+        assertNull(bus.getLast(USER));
+
+        // The woken reader gets the first event on the new channel: its
+        // cursor has another epoch.
+        bus.publish(USER, 4, MSG, "new");
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(1, result.get().size());
+        assertEquals("new", result.get().get(0).getSenderId());
+    }
+}
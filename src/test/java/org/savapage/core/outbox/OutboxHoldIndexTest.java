@@ -0,0 +1,172 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.outbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.savapage.core.outbox.OutboxInfoDto.OutboxJobDto;
+import org.savapage.core.services.helpers.ProxyPrintCostDto;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class OutboxHoldIndexTest {
+
+    private static final long NOW = 1_000_000_000L;
+
+    private static final long MINUTE = 60_000L;
+
+    private static final String USER = "john";
+
+    private static OutboxJobDto createJob(final String file,
+            final String printer, final long expiry, final int pages,
+            final String cost) {
+
+        final OutboxJobDto job = new OutboxJobDto();
+        job.setFile(file);
+        job.setPrinter(printer);
+        job.setExpiryTime(expiry);
+        job.setPages(pages);
+        job.setSheets(pages);
+        job.setCopies(1);
+
+        final ProxyPrintCostDto costResult = new ProxyPrintCostDto();
+        costResult.setCostMedia(new BigDecimal(cost));
+        job.setCostResult(costResult);
+        return job;
+    }
+
+    private static OutboxInfoDto createInfo(final OutboxJobDto... jobs) {
+        final OutboxInfoDto info = new OutboxInfoDto();
+        for (final OutboxJobDto job : jobs) {
+            info.addJob(job.getFile(), job);
+        }
+        return info;
+    }
+
+    private static OutboxHoldIndex createIndex() {
+        return new OutboxHoldIndex(64, 1000L, NOW);
+    }
+
+    @Test
+    public void testLookupAndSummary() {
+
+        final OutboxHoldIndex index = createIndex();
+
+        index.update(USER, 1L, 0L,
+                createInfo(createJob("a.pdf", "P1", NOW + MINUTE, 2, "0.20"),
+                        createJob("b.pdf", "P2", NOW + 2 * MINUTE, 3, "0.30"),
+                        createJob("c.pdf", "P1", NOW + 3 * MINUTE, 5,
+                                "0.50")),
+                NOW);
+
+        assertTrue(index.isCurrent(USER, 1L, 0L));
+        assertFalse(index.isCurrent(USER, 2L, 0L));
+        // Same time, other length.
+        assertFalse(index.isCurrent(USER, 1L, 31L));
+        assertEquals(3, index.getJobCount(USER));
+
+        final OutboxHoldIndex.HoldSummary summary =
+                index.getSummary(USER, NOW);
+        assertEquals(3, summary.getJobCount());
+        assertEquals(10, summary.getPages());
+        assertEquals(0, new BigDecimal("1.00").compareTo(summary.getCost()));
+        assertEquals(NOW + MINUTE, summary.getFirstExpiryTime());
+
+        assertEquals(new HashSet<>(Arrays.asList("a.pdf", "c.pdf")),
+                index.getJobFiles(USER, "P1", NOW));
+        assertTrue(index.getJobFiles(USER, "P3", NOW).isEmpty());
+
+        assertTrue(index.hasJobs(USER, Collections.singleton("P2"), NOW));
+        assertFalse(index.hasJobs(USER, Collections.singleton("P2"),
+                NOW + 2 * MINUTE));
+    }
+
+    @Test
+    public void testExpiry() {
+
+        final OutboxHoldIndex index = createIndex();
+
+        index.update(USER, 1L, 0L,
+                createInfo(createJob("a.pdf", "P1", NOW + MINUTE, 2, "0.20"),
+                        createJob("b.pdf", "P1", NOW + 2 * MINUTE, 3,
+                                "0.30")),
+                NOW);
+
+        OutboxHoldIndex.HoldSummary summary =
+                index.getSummary(USER, NOW + MINUTE + 1000L);
+
+        assertEquals(1, summary.getJobCount());
+        assertEquals(3, summary.getPages());
+        assertEquals(NOW + 2 * MINUTE, summary.getFirstExpiryTime());
+
+        // Expired jobs remain in the file till pruned.
+        assertEquals(2, index.getJobCount(USER));
+        assertEquals(Collections.singleton("b.pdf"),
+                index.getJobFiles(USER, "P1", NOW + MINUTE + 1000L));
+
+        summary = index.getSummary(USER, NOW + 10 * MINUTE);
+        assertEquals(0, summary.getJobCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(summary.getCost()));
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+
+        final OutboxHoldIndex index = createIndex();
+
+        final OutboxJobDto jobA =
+                createJob("a.pdf", "P1", NOW + MINUTE, 2, "0.20");
+        final OutboxJobDto jobB =
+                createJob("b.pdf", "P1", NOW + 2 * MINUTE, 3, "0.30");
+
+        index.update(USER, 1L, 0L, createInfo(jobA, jobB), NOW);
+
+        // Extend expiry of A, remove B.
+        jobA.setExpiryTime(NOW + 5 * MINUTE);
+        index.update(USER, 2L, 0L, createInfo(jobA), NOW);
+
+        OutboxHoldIndex.HoldSummary summary =
+                index.getSummary(USER, NOW + 3 * MINUTE);
+        assertEquals(1, summary.getJobCount());
+        assertEquals(2, summary.getPages());
+        assertEquals(NOW + 5 * MINUTE, summary.getFirstExpiryTime());
+        assertEquals(NOW + 5 * MINUTE, index.getFirstExpiryTime(USER));
+
+        index.remove(USER);
+        assertEquals(0, index.getJobCount(USER));
+        assertEquals(0, index.getSummary(USER, NOW).getJobCount());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PdfPageMetaCacheTest {
+
+    /** */
+    private static final float DELTA = 0.01f;
+
+    /** */
+    private File pdf;
+
+    /**
+     * Writes a PDF with a page for each page size.
+     *
+     * @param file
+     *            The file.
+     * @param sizes
+     *            The page sizes.
+     * @throws IOException
+     *             If IO error.
+     * @throws DocumentException
+     *             If PDF error.
+     */
+    private static void writePdf(final File file, final Rectangle... sizes)
+            throws IOException, DocumentException {
+
+        try (OutputStream ostr = new FileOutputStream(file)) {
+
+            final Document document = new Document(sizes[0]);
+            PdfWriter.getInstance(document, ostr);
+            document.open();
+
+            for (int i = 0; i < sizes.length; i++) {
+                if (i > 0) {
+                    document.setPageSize(sizes[i]);
+                    document.newPage();
+                }
+                document.add(new Paragraph("Page " + (i + 1)));
+            }
+            document.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.pdf = File.createTempFile("meta-", ".pdf");
+        PdfPageMetaCache.instance().clear();
+    }
+
+    @After
+    public void tearDown() {
+        this.pdf.delete();
+    }
+
+    @Test
+    public void testPageMeta() throws Exception {
+
+        writePdf(this.pdf, PageSize.A4, new Rectangle(842, 595),
+                PageSize.LETTER);
+
+        final PdfPageMeta meta = PdfPageMetaCache.instance().get(this.pdf);
+
+        assertEquals(3, meta.getNumberOfPages());
+        assertEquals(PageSize.A4.getWidth(), meta.getPageSize(1).getWidth(),
+                DELTA);
+        assertEquals(842f, meta.getPageSize(2).getWidth(), DELTA);
+        assertEquals(595f, meta.getPageSize(2).getHeight(), DELTA);
+        assertEquals(PageSize.LETTER.getHeight(),
+                meta.getPageSize(3).getHeight(), DELTA);
+        assertEquals(0, meta.getPageRotation(2));
+
+        assertEquals(3, AbstractPdfCreator
+                .pageCountInPdfFile(this.pdf.getAbsolutePath()));
+    }
+
+    @Test
+    public void testCacheHitAndInvalidation() throws Exception {
+
+        writePdf(this.pdf, PageSize.A4, PageSize.A4);
+
+        final PdfPageMetaCache cache = PdfPageMetaCache.instance();
+        final PdfPageMeta meta = cache.get(this.pdf);
+
+        assertSame(meta, cache.get(this.pdf));
+        assertEquals(1, cache.size());
+
+        // Replace content: new modification time and size.
+        writePdf(this.pdf, PageSize.A4, PageSize.A4, PageSize.A4);
+        this.pdf.setLastModified(this.pdf.lastModified() + 2000L);
+
+        final PdfPageMeta metaNew = cache.get(this.pdf);
+
+        assertNotSame(meta, metaNew);
+        assertEquals(3, metaNew.getNumberOfPages());
+    }
+
+    @Test
+    public void testFonts() throws Exception {
+
+        writePdf(this.pdf, PageSize.A4);
+
+        final PdfPageMetaCache cache = PdfPageMetaCache.instance();
+        final PdfDocumentFonts fonts = cache.getFonts(this.pdf);
+
+        assertSame(fonts, cache.getFonts(this.pdf));
+        assertSame(fonts, cache.get(this.pdf).getFonts());
+        assertEquals(1, cache.size());
+    }
+}
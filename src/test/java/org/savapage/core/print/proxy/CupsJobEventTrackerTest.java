@@ -0,0 +1,136 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.ipp.client.IppConnectException;
+import org.savapage.core.ipp.operation.IppOperationId;
+
+/**
+ * Tests {@link CupsJobEventTracker} against a {@link StubCupsServer}.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public class CupsJobEventTrackerTest {
+
+    /** */
+    private static final int MAX_EVENTS = 10;
+
+    /** */
+    private StubCupsServer server;
+
+    /** */
+    private CupsJobEventTracker tracker;
+
+    @Before
+    public void setUp() throws IppConnectException {
+        this.server = new StubCupsServer(MAX_EVENTS);
+        this.tracker = new CupsJobEventTracker(this.server, "ipp://localhost/",
+                "savapage", 3600);
+
+        // First poll subscribes and requires a full sync.
+        assertNull(this.tracker.poll());
+        assertEquals(1, this.tracker.getSubscriptionId());
+    }
+
+    @Test
+    public void testJobEvents() throws IppConnectException {
+
+        Set<String> printers = this.tracker.poll();
+        assertNotNull(printers);
+        assertTrue(printers.isEmpty());
+
+        this.server.addEvent("job-state-changed", "A", 1);
+        this.server.addEvent("job-completed", "B", 2);
+        this.server.addEvent("job-completed", "A", 1);
+        this.server.addEvent("printer-state-changed", "C", 0);
+
+        printers = this.tracker.poll();
+        assertEquals(2, printers.size());
+        assertTrue(printers.contains("A"));
+        assertTrue(printers.contains("B"));
+
+        // Events are consumed.
+        printers = this.tracker.poll();
+        assertTrue(printers.isEmpty());
+
+        assertEquals(1, this.server
+                .getRequests(IppOperationId.CREATE_PRINTER_SUBSCRIPTIONS));
+    }
+
+    @Test
+    public void testDroppedEvents() throws IppConnectException {
+
+        for (int i = 0; i <= MAX_EVENTS; i++) {
+            this.server.addEvent("job-completed", "A", i + 1);
+        }
+        assertNull(this.tracker.poll());
+
+        this.server.addEvent("job-completed", "B", 100);
+        assertEquals(1, this.tracker.poll().size());
+    }
+
+    @Test
+    public void testServerEvents() throws IppConnectException {
+
+        this.server.addEvent("job-completed", "A", 1);
+        this.server.addEvent("server-restarted", null, 0);
+        assertNull(this.tracker.poll());
+        assertTrue(this.tracker.poll().isEmpty());
+    }
+
+    @Test
+    public void testSubscriptionLost() throws IppConnectException {
+
+        this.server.restart();
+
+        assertNull(this.tracker.poll());
+        assertEquals(2, this.tracker.getSubscriptionId());
+
+        this.server.addEvent("job-completed", "A", 1);
+        assertTrue(this.tracker.poll().contains("A"));
+    }
+
+    @Test
+    public void testReset() throws IppConnectException {
+
+        this.server.addEvent("job-completed", "A", 1);
+        this.tracker.reset();
+
+        assertNull(this.tracker.poll());
+        assertTrue(this.tracker.poll().isEmpty());
+        assertEquals(1, this.tracker.getSubscriptionId());
+    }
+
+}
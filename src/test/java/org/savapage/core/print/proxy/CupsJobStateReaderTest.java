@@ -0,0 +1,232 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.savapage.core.ipp.IppJobStateEnum;
+import org.savapage.core.ipp.client.IppConnectException;
+import org.savapage.core.ipp.operation.IppOperationId;
+
+/**
+ * Tests {@link CupsJobStateReader} against a {@link StubCupsServer} with a
+ * large job table.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public class CupsJobStateReaderTest {
+
+    /** */
+    private static final String PRINTER_URI =
+            "ipp://localhost:631/printers/stub";
+
+    /** */
+    private static final int TABLE_SIZE = 100_000;
+
+    /** */
+    private static final int WINDOW = 500;
+
+    /**
+     * Creates a server with a job table where every seventh job id is missing
+     * (purged), and every third job is completed.
+     *
+     * @return The server.
+     */
+    private static StubCupsServer createServer() {
+        final StubCupsServer server = new StubCupsServer(100);
+        for (int id = 1; id <= TABLE_SIZE; id++) {
+            if (id % 7 == 0) {
+                continue;
+            }
+            if (id % 3 == 0) {
+                server.putJob(id, IppJobStateEnum.IPP_JOB_COMPLETED.asInt(),
+                        1_600_000_000 + id);
+            } else {
+                server.putJob(id, IppJobStateEnum.IPP_JOB_PENDING.asInt(), 0);
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Asserts a read result is what Get-Job-Attributes per job would give.
+     *
+     * @param server
+     *            The server.
+     * @param jobIds
+     *            The requested job ids.
+     * @param result
+     *            The result.
+     */
+    private static void assertSameAsPerJob(final StubCupsServer server,
+            final SortedSet<Integer> jobIds,
+            final CupsJobStateReader.Result result) {
+
+        assertEquals(jobIds.size(), result.getFound().size()
+                + result.getAbsent().size() + result.getUnresolved().size());
+
+        for (final Integer id : jobIds) {
+
+            final int[] job = server.getJob(id.intValue());
+
+            if (result.getUnresolved().contains(id)) {
+                continue;
+            }
+            if (job == null) {
+                assertTrue(result.getAbsent().contains(id));
+                continue;
+            }
+
+            final JsonProxyPrintJob found = result.getFound().get(id);
+
+            assertEquals(id, found.getJobId());
+            assertEquals(job[0], found.getJobState().intValue());
+
+            if (job[1] == 0) {
+                assertNull(found.getCompletedTime());
+            } else {
+                assertEquals(job[1], found.getCompletedTime().intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testContiguousIds() throws IppConnectException {
+
+        final StubCupsServer server = createServer();
+
+        final SortedSet<Integer> jobIds = new TreeSet<>();
+        for (int id = 50_001; id <= 52_000; id++) {
+            jobIds.add(Integer.valueOf(id));
+        }
+
+        final CupsJobStateReader.Result result =
+                new CupsJobStateReader(server, WINDOW).read(PRINTER_URI,
+                        jobIds);
+
+        assertSameAsPerJob(server, jobIds, result);
+        assertTrue(result.getUnresolved().isEmpty());
+
+        // 2000 ids with 1/7 missing need 4 windows of 500 jobs.
+        assertEquals(4, server.getRequests(IppOperationId.GET_JOBS));
+        assertEquals(result.getRequests(),
+                server.getRequests(IppOperationId.GET_JOBS));
+    }
+
+    @Test
+    public void testScatteredIds() throws IppConnectException {
+
+        final StubCupsServer server = createServer();
+        final Random random = new Random(43);
+
+        final SortedSet<Integer> jobIds = new TreeSet<>();
+        while (jobIds.size() < 200) {
+            jobIds.add(Integer.valueOf(1 + random.nextInt(TABLE_SIZE)));
+        }
+
+        final CupsJobStateReader.Result result =
+                new CupsJobStateReader(server, WINDOW).read(PRINTER_URI,
+                        jobIds);
+
+        assertSameAsPerJob(server, jobIds, result);
+        assertTrue(result.getUnresolved().isEmpty());
+        assertTrue(server.getRequests(IppOperationId.GET_JOBS) <= 200);
+    }
+
+    @Test
+    public void testBeyondEndOfTable() throws IppConnectException {
+
+        final StubCupsServer server = createServer();
+
+        final SortedSet<Integer> jobIds = new TreeSet<>();
+        jobIds.add(Integer.valueOf(TABLE_SIZE - 1));
+        jobIds.add(Integer.valueOf(TABLE_SIZE + 1));
+        jobIds.add(Integer.valueOf(TABLE_SIZE + 1000));
+
+        final CupsJobStateReader.Result result =
+                new CupsJobStateReader(server, WINDOW).read(PRINTER_URI,
+                        jobIds);
+
+        assertSameAsPerJob(server, jobIds, result);
+        assertEquals(2, result.getAbsent().size());
+        assertEquals(1, server.getRequests(IppOperationId.GET_JOBS));
+    }
+
+    @Test
+    public void testFirstJobIdIgnored() throws IppConnectException {
+
+        final StubCupsServer server = createServer();
+        server.setFirstJobIdSupported(false);
+
+        final SortedSet<Integer> jobIds = new TreeSet<>();
+        jobIds.add(Integer.valueOf(100));
+        jobIds.add(Integer.valueOf(70_000));
+        jobIds.add(Integer.valueOf(70_007));
+
+        final CupsJobStateReader.Result result =
+                new CupsJobStateReader(server, WINDOW).read(PRINTER_URI,
+                        jobIds);
+
+        assertSameAsPerJob(server, jobIds, result);
+
+        // The first window holds job 100, the rest is unresolved.
+        assertTrue(result.getFound().containsKey(Integer.valueOf(100)));
+        assertEquals(2, result.getUnresolved().size());
+        assertEquals(1, server.getRequests(IppOperationId.GET_JOBS));
+    }
+
+    @Test
+    public void testFirstJobIdIgnoredSmallTable() throws IppConnectException {
+
+        final StubCupsServer server = new StubCupsServer(100);
+        server.setFirstJobIdSupported(false);
+
+        for (int id = 1; id <= 100; id++) {
+            server.putJob(id, IppJobStateEnum.IPP_JOB_PROCESSING.asInt(), 0);
+        }
+
+        final SortedSet<Integer> jobIds = new TreeSet<>();
+        jobIds.add(Integer.valueOf(50));
+        jobIds.add(Integer.valueOf(101));
+
+        final CupsJobStateReader.Result result =
+                new CupsJobStateReader(server, WINDOW).read(PRINTER_URI,
+                        jobIds);
+
+        // A short window is a complete job table.
+        assertSameAsPerJob(server, jobIds, result);
+        assertTrue(result.getUnresolved().isEmpty());
+        assertEquals(1, result.getAbsent().size());
+    }
+
+}
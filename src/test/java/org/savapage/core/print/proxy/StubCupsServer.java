@@ -0,0 +1,402 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.proxy;
+
+import static org.savapage.core.ipp.attribute.IppDictEventNotificationAttr.ATTR_NOTIFY_JOB_ID;
+import static org.savapage.core.ipp.attribute.IppDictEventNotificationAttr.ATTR_NOTIFY_SEQUENCE_NUMBER;
+import static org.savapage.core.ipp.attribute.IppDictEventNotificationAttr.ATTR_NOTIFY_SUBSCRIBED_EVENT;
+import static org.savapage.core.ipp.attribute.IppDictEventNotificationAttr.ATTR_NOTIFY_SUBSCRIPTION_ID;
+import static org.savapage.core.ipp.attribute.IppDictEventNotificationAttr.ATTR_PRINTER_NAME;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.savapage.core.ipp.attribute.AbstractIppDict;
+import org.savapage.core.ipp.attribute.IppAttrGroup;
+import org.savapage.core.ipp.attribute.IppDictEventNotificationAttr;
+import org.savapage.core.ipp.attribute.IppDictJobDescAttr;
+import org.savapage.core.ipp.attribute.IppDictOperationAttr;
+import org.savapage.core.ipp.attribute.IppDictSubscriptionAttr;
+import org.savapage.core.ipp.client.IppConnectException;
+import org.savapage.core.ipp.client.IppReqCommon;
+import org.savapage.core.ipp.client.IppTransport;
+import org.savapage.core.ipp.encoding.IppDelimiterTag;
+import org.savapage.core.ipp.encoding.IppEncoder;
+import org.savapage.core.ipp.operation.IppOperationId;
+import org.savapage.core.ipp.operation.IppStatusCode;
+
+/**
+ * A stub CUPS server with a job table and pull subscriptions. Requests and
+ * responses are encoded to, and decoded from, IPP bytes.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class StubCupsServer implements IppTransport {
+
+    /**
+     * A CUPS event.
+     */
+    private static final class Event {
+        /** */
+        private final int sequence;
+        /** */
+        private final String name;
+        /** */
+        private final String printer;
+        /** */
+        private final int jobId;
+
+        /**
+         * @param sequence
+         *            Sequence number.
+         * @param name
+         *            Event name.
+         * @param printer
+         *            Printer name.
+         * @param jobId
+         *            Job id.
+         */
+        Event(final int sequence, final String name, final String printer,
+                final int jobId) {
+            this.sequence = sequence;
+            this.name = name;
+            this.printer = printer;
+            this.jobId = jobId;
+        }
+    }
+
+    /** Job id to {job-state, time-at-completed}. */
+    private final NavigableMap<Integer, int[]> jobs = new TreeMap<>();
+
+    /** Requests per operation. */
+    private final Map<IppOperationId, Integer> requests =
+            new EnumMap<>(IppOperationId.class);
+
+    /** Retained events of the subscription. */
+    private final List<Event> events = new ArrayList<>();
+
+    /** Max number of retained events. */
+    private final int maxEvents;
+
+    /** {@code true} when "first-job-id" is honoured. */
+    private boolean firstJobIdSupported = true;
+
+    /** Active subscription id, or zero when none. */
+    private int subscriptionId;
+
+    /** Last subscription id handed out. */
+    private int subscriptionIdLast;
+
+    /** Last event sequence number. */
+    private int sequenceLast;
+
+    /**
+     * @param maxEvents
+     *            Max number of retained events per subscription.
+     */
+    public StubCupsServer(final int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Adds or updates a job.
+     *
+     * @param jobId
+     *            Job id.
+     * @param state
+     *            Job state.
+     * @param completed
+     *            Time at completed, or zero when not completed.
+     */
+    public void putJob(final int jobId, final int state, final int completed) {
+        this.jobs.put(Integer.valueOf(jobId), new int[] { state, completed });
+    }
+
+    /**
+     * @param jobId
+     *            Job id.
+     * @return {job-state, time-at-completed} or {@code null}.
+     */
+    public int[] getJob(final int jobId) {
+        return this.jobs.get(Integer.valueOf(jobId));
+    }
+
+    /**
+     * @param supported
+     *            {@code true} when "first-job-id" is honoured.
+     */
+    public void setFirstJobIdSupported(final boolean supported) {
+        this.firstJobIdSupported = supported;
+    }
+
+    /**
+     * @param operationId
+     *            The operation.
+     * @return The number of requests.
+     */
+    public int getRequests(final IppOperationId operationId) {
+        final Integer n = this.requests.get(operationId);
+        if (n == null) {
+            return 0;
+        }
+        return n.intValue();
+    }
+
+    /**
+     * Adds an event to the active subscription, if any.
+     *
+     * @param name
+     *            Event name.
+     * @param printer
+     *            Printer name, or {@code null}.
+     * @param jobId
+     *            Job id, or zero.
+     */
+    public void addEvent(final String name, final String printer,
+            final int jobId) {
+        if (this.subscriptionId == 0) {
+            return;
+        }
+        this.events.add(new Event(++this.sequenceLast, name, printer, jobId));
+        while (this.events.size() > this.maxEvents) {
+            this.events.remove(0);
+        }
+    }
+
+    /**
+     * Simulates a restart: subscriptions are lost.
+     */
+    public void restart() {
+        this.subscriptionId = 0;
+        this.events.clear();
+    }
+
+    @Override
+    public IppStatusCode send(final IppOperationId operationId,
+            final List<IppAttrGroup> request,
+            final List<IppAttrGroup> response) throws IppConnectException {
+
+        final Integer n = this.requests.get(operationId);
+        this.requests.put(operationId,
+                Integer.valueOf(n == null ? 1 : n.intValue() + 1));
+
+        final List<IppAttrGroup> rsp = new ArrayList<>();
+        final IppStatusCode status;
+
+        try {
+            final IppAttrGroup operation = roundTrip(request).get(0);
+
+            switch (operationId) {
+            case GET_JOBS:
+                status = this.getJobs(operation, rsp);
+                break;
+            case CREATE_PRINTER_SUBSCRIPTIONS:
+                status = this.createSubscription(rsp);
+                break;
+            case GET_NOTIFICATIONS:
+                status = this.getNotifications(operation, rsp);
+                break;
+            default:
+                status = IppStatusCode.SRV_NOTSUP;
+                break;
+            }
+            response.addAll(roundTrip(rsp));
+
+        } catch (IOException e) {
+            throw new IppConnectException(e);
+        }
+        return status;
+    }
+
+    /**
+     * Encodes and decodes attribute groups.
+     *
+     * @param groups
+     *            The groups.
+     * @return The decoded groups.
+     * @throws IOException
+     *             When encoding fails.
+     */
+    private static List<IppAttrGroup> roundTrip(final List<IppAttrGroup> groups)
+            throws IOException {
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        IppEncoder.writeAttributes(groups, ostr, StandardCharsets.UTF_8, null);
+        return IppEncoder.readAttributes(
+                new ByteArrayInputStream(ostr.toByteArray()), null);
+    }
+
+    /**
+     * @param operation
+     *            Operation group.
+     * @param rsp
+     *            Response groups.
+     * @return Status.
+     */
+    private IppStatusCode getJobs(final IppAttrGroup operation,
+            final List<IppAttrGroup> rsp) {
+
+        final int limit = Integer.parseInt(
+                operation.getAttrSingleValue(IppDictOperationAttr.ATTR_LIMIT));
+        final int firstJobId = Integer.parseInt(operation
+                .getAttrSingleValue(IppDictOperationAttr.ATTR_FIRST_JOB_ID));
+
+        if (!"all".equals(operation
+                .getAttrSingleValue(IppDictOperationAttr.ATTR_WHICH_JOBS))) {
+            return IppStatusCode.CLI_BADREQ;
+        }
+
+        rsp.add(IppReqCommon.createOperationGroup());
+
+        final NavigableMap<Integer, int[]> window;
+
+        if (this.firstJobIdSupported) {
+            window = this.jobs.tailMap(Integer.valueOf(firstJobId), true);
+        } else {
+            window = this.jobs;
+        }
+
+        final AbstractIppDict dict = IppDictJobDescAttr.instance();
+        int nJobs = 0;
+
+        for (final Map.Entry<Integer, int[]> entry : window.entrySet()) {
+            if (nJobs++ == limit) {
+                break;
+            }
+            final IppAttrGroup group =
+                    new IppAttrGroup(IppDelimiterTag.JOB_ATTR);
+            group.add(dict.getAttr(IppDictJobDescAttr.ATTR_JOB_ID),
+                    entry.getKey().toString());
+            group.add(dict.getAttr(IppDictJobDescAttr.ATTR_JOB_STATE),
+                    String.valueOf(entry.getValue()[0]));
+            if (entry.getValue()[1] > 0) {
+                group.add(
+                        dict.getAttr(IppDictJobDescAttr.ATTR_TIME_AT_COMPLETED),
+                        String.valueOf(entry.getValue()[1]));
+            }
+            rsp.add(group);
+        }
+        return IppStatusCode.OK;
+    }
+
+    /**
+     * @param rsp
+     *            Response groups.
+     * @return Status.
+     */
+    private IppStatusCode createSubscription(final List<IppAttrGroup> rsp) {
+
+        this.subscriptionId = ++this.subscriptionIdLast;
+        this.events.clear();
+        this.sequenceLast = 0;
+
+        rsp.add(IppReqCommon.createOperationGroup());
+
+        final IppAttrGroup group =
+                new IppAttrGroup(IppDelimiterTag.SUBSCRIPTION_ATTR);
+        group.add(
+                IppDictSubscriptionAttr.instance().getAttr(
+                        IppDictSubscriptionAttr.ATTR_NOTIFY_SUBSCRIPTION_ID),
+                String.valueOf(this.subscriptionId));
+        rsp.add(group);
+
+        return IppStatusCode.OK;
+    }
+
+    /**
+     * @param operation
+     *            Operation group.
+     * @param rsp
+     *            Response groups.
+     * @return Status.
+     */
+    private IppStatusCode getNotifications(final IppAttrGroup operation,
+            final List<IppAttrGroup> rsp) {
+
+        final int id = Integer.parseInt(operation.getAttrSingleValue(
+                IppDictOperationAttr.ATTR_NOTIFY_SUBSCRIPTION_IDS));
+        final int sequence = Integer.parseInt(operation.getAttrSingleValue(
+                IppDictOperationAttr.ATTR_NOTIFY_SEQUENCE_NUMBERS));
+
+        if (this.subscriptionId == 0 || id != this.subscriptionId) {
+            return IppStatusCode.CLI_NOTFND;
+        }
+
+        rsp.add(IppReqCommon.createOperationGroup());
+
+        final AbstractIppDict dict = IppDictEventNotificationAttr.instance();
+
+        for (final Event event : this.events) {
+            if (event.sequence < sequence) {
+                continue;
+            }
+            final IppAttrGroup group =
+                    new IppAttrGroup(IppDelimiterTag.EVENT_NOTIFICATION_ATTR);
+
+            add(group, dict, ATTR_NOTIFY_SUBSCRIPTION_ID,
+                    String.valueOf(this.subscriptionId));
+            add(group, dict, ATTR_NOTIFY_SEQUENCE_NUMBER,
+                    String.valueOf(event.sequence));
+            add(group, dict, ATTR_NOTIFY_SUBSCRIBED_EVENT, event.name);
+
+            if (event.printer != null) {
+                add(group, dict, ATTR_PRINTER_NAME, event.printer);
+            }
+            if (event.jobId > 0) {
+                add(group, dict, ATTR_NOTIFY_JOB_ID,
+                        String.valueOf(event.jobId));
+            }
+            rsp.add(group);
+        }
+        return IppStatusCode.OK;
+    }
+
+    /**
+     * Adds an attribute value to a group.
+     *
+     * @param group
+     *            The group.
+     * @param dict
+     *            The dictionary.
+     * @param keyword
+     *            The keyword.
+     * @param value
+     *            The value.
+     */
+    private static void add(final IppAttrGroup group,
+            final AbstractIppDict dict, final String keyword,
+            final String value) {
+        group.add(dict.getAttr(keyword), value);
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.print.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+/**
+ * Tests {@link DocContentSpooler} and byte mode {@link PostScriptFilter}.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public class DocContentSpoolerTest {
+
+    private static final String DRM_START =
+            "%ADOBeginClientInjection: DocumentSetup Start \"No Re-Distill\"";
+
+    /**
+     * @param size
+     *            Number of bytes.
+     * @return Content bytes.
+     */
+    private static byte[] createContent(final int size) {
+        final byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31 + i / 7);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testSpoolHashAndCount() throws IOException {
+
+        final byte[] content = createContent(300_000);
+        final File file = File.createTempFile("spool", ".tmp");
+
+        try {
+            final DocContentSpooler spooler = new DocContentSpooler(file, 0);
+            spooler.write(content, 0, 10);
+            spooler.write(content[10]);
+            spooler.transferFrom(new ByteArrayInputStream(content, 11,
+                    content.length - 11));
+            spooler.close();
+
+            assertEquals(content.length, spooler.getByteCount());
+            assertEquals(DigestUtils.sha256Hex(content),
+                    spooler.getContentHash());
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSpoolMaxSize() throws IOException {
+
+        final File file = File.createTempFile("spool", ".tmp");
+
+        final int[] bytesRead = new int[1];
+
+        final InputStream istr =
+                new ByteArrayInputStream(createContent(1_000_000)) {
+                    @Override
+                    public synchronized int read(final byte[] b,
+                            final int off, final int len) {
+                        final int n = super.read(b, off, len);
+                        if (n > 0) {
+                            bytesRead[0] += n;
+                        }
+                        return n;
+                    }
+                };
+
+        try {
+            final DocContentSpooler spooler =
+                    new DocContentSpooler(file, 100_000);
+            try {
+                spooler.transferFrom(istr);
+                fail("max size not enforced");
+            } catch (DocContentSizeException e) {
+                // Rejected before the input was read completely.
+                assertTrue(bytesRead[0] < 200_000);
+            } finally {
+                spooler.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPostScriptBytesPreserved() throws IOException {
+
+        final byte[] ps = ("%!PS-Adobe-3.0\r\n%%Title: été\r\n"
+                + "binary \u0000ÿ\u0080\nshowpage")
+                        .getBytes(StandardCharsets.ISO_8859_1);
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+
+        assertEquals(PostScriptFilter.Result.DRM_NO, PostScriptFilter
+                .process(new ByteArrayInputStream(ps), ostr, true));
+
+        assertArrayEquals(ps, ostr.toByteArray());
+    }
+
+    @Test
+    public void testPostScriptDrm() throws IOException {
+
+        final String ps = "%!PS\r\n" + DRM_START + "\r\nshowpage\r\n";
+
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+
+        assertEquals(PostScriptFilter.Result.DRM_YES,
+                PostScriptFilter.process(
+                        new ByteArrayInputStream(
+                                ps.getBytes(StandardCharsets.US_ASCII)),
+                        ostr, true));
+
+        ostr = new ByteArrayOutputStream();
+
+        assertEquals(PostScriptFilter.Result.DRM_NEGLECTED,
+                PostScriptFilter.process(
+                        new ByteArrayInputStream(
+                                ps.getBytes(StandardCharsets.US_ASCII)),
+                        ostr, false));
+
+        // The first signature line is kept.
+        assertEquals(ps, new String(ostr.toByteArray(),
+                StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param bytes
+     *            Content.
+     * @param chunk
+     *            Maximum number of bytes per read.
+     * @return Input stream that returns at most chunk bytes per read.
+     */
+    private static InputStream chunked(final byte[] bytes, final int chunk) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(final byte[] b, final int off,
+                    final int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    @Test
+    public void testPostScriptDrmCarriageReturn() throws IOException {
+
+        final String ps = "%!PS\r" + DRM_START + "\rshowpage\r";
+        final byte[] bytes = ps.getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(PostScriptFilter.Result.DRM_YES, PostScriptFilter
+                .process(new ByteArrayInputStream(bytes),
+                        new ByteArrayOutputStream(), true));
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+
+        assertEquals(PostScriptFilter.Result.DRM_NEGLECTED, PostScriptFilter
+                .process(new ByteArrayInputStream(bytes), ostr, false));
+        assertArrayEquals(bytes, ostr.toByteArray());
+    }
+
+    @Test
+    public void testPostScriptLineEndingsSplit() throws IOException {
+
+        final String ps = "%!PS\r\n" + DRM_START + "\r\nshowpage\r\r\n\n";
+        final byte[] bytes = ps.getBytes(StandardCharsets.US_ASCII);
+
+        for (final int chunk : new int[] { 1, 5, 6, 7 }) {
+
+            assertEquals(PostScriptFilter.Result.DRM_YES, PostScriptFilter
+                    .process(chunked(bytes, chunk),
+                            new ByteArrayOutputStream(), true));
+
+            final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+
+            assertEquals(PostScriptFilter.Result.DRM_NEGLECTED,
+                    PostScriptFilter.process(chunked(bytes, chunk), ostr,
+                            false));
+            assertArrayEquals(bytes, ostr.toByteArray());
+        }
+    }
+
+    @Test
+    public void testPostScriptLongLine() throws IOException {
+
+        final StringBuilder ps = new StringBuilder("%!PS\r");
+        for (int i = 0; i < 100_000; i++) {
+            ps.append('x');
+        }
+        ps.append('\r').append(DRM_START).append("\rshowpage");
+
+        final byte[] bytes =
+                ps.toString().getBytes(StandardCharsets.US_ASCII);
+
+        final ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+
+        assertEquals(PostScriptFilter.Result.DRM_NEGLECTED,
+                PostScriptFilter.process(chunked(bytes, 4000), ostr, false));
+        assertArrayEquals(bytes, ostr.toByteArray());
+
+        assertEquals(PostScriptFilter.Result.DRM_YES,
+                PostScriptFilter.process(chunked(bytes, 4000),
+                        new ByteArrayOutputStream(), true));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.reports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.savapage.core.SpException;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class JrRowPrefetcherTest {
+
+    @Test
+    public void testAllRowsInOrder() {
+
+        final AtomicBoolean streamClosed = new AtomicBoolean();
+
+        final JrRowPrefetcher<Integer> rows = new JrRowPrefetcher<>("test",
+                () -> IntStream.range(0, 1050).boxed()
+                        .onClose(() -> streamClosed.set(true)),
+                100);
+
+        final List<Integer> result = new ArrayList<>();
+        while (rows.hasNext()) {
+            result.add(rows.next());
+        }
+
+        assertEquals(1050, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(i, result.get(i).intValue());
+        }
+        assertTrue(streamClosed.get());
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        final JrRowPrefetcher<Integer> rows =
+                new JrRowPrefetcher<>("test", () -> Stream.empty(), 10);
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testReadAheadIsBounded() throws InterruptedException {
+
+        final AtomicInteger rowsRead = new AtomicInteger();
+
+        final JrRowPrefetcher<Integer> rows = new JrRowPrefetcher<>("test",
+                () -> IntStream.range(0, 10_000).boxed()
+                        .peek(i -> rowsRead.incrementAndGet()),
+                10);
+
+        assertTrue(rows.hasNext());
+
+        // Let the background thread fill the queue.
+        Thread.sleep(200);
+
+        // Consumed chunk + queued chunk + chunk being offered.
+        assertTrue(rowsRead.get() <= 30);
+
+        rows.close();
+    }
+
+    @Test
+    public void testSourceError() {
+
+        final JrRowPrefetcher<Integer> rows = new JrRowPrefetcher<>("test",
+                () -> IntStream.range(0, 25).boxed().map(i -> {
+                    if (i == 15) {
+                        throw new IllegalStateException("cursor failure");
+                    }
+                    return i;
+                }), 10);
+
+        int count = 0;
+        try {
+            while (rows.hasNext()) {
+                rows.next();
+                count++;
+            }
+            fail("error not reported");
+        } catch (SpException e) {
+            // The first (complete) chunk was delivered.
+            assertEquals(10, count);
+        }
+    }
+
+    @Test
+    public void testCloseStopsProducer() throws InterruptedException {
+
+        final CountDownLatch streamClosed = new CountDownLatch(1);
+
+        final JrRowPrefetcher<Integer> rows = new JrRowPrefetcher<>("test",
+                () -> IntStream.range(0, 100_000).boxed()
+                        .onClose(streamClosed::countDown),
+                10);
+
+        assertTrue(rows.hasNext());
+        rows.close();
+
+        assertTrue(streamClosed.await(5, TimeUnit.SECONDS));
+        assertFalse(rows.hasNext());
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.SpException;
+import org.savapage.core.services.helpers.AccountLedger.Batch;
+import org.savapage.core.services.helpers.AccountLedger.Escrow;
+import org.savapage.core.services.helpers.AccountLedger.Posting;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class AccountLedgerTest {
+
+    /** */
+    private static final int SCALE = 6;
+
+    /** */
+    private static final Long ACCOUNT_ID = Long.valueOf(11L);
+
+    /** */
+    private File journalDir;
+
+    @Before
+    public void init() throws IOException {
+        this.journalDir = Files.createTempDirectory("ledger-journal").toFile();
+    }
+
+    @After
+    public void exit() throws IOException {
+        FileUtils.deleteDirectory(this.journalDir);
+    }
+
+    /**
+     * @param value
+     *            Amount as string.
+     * @return The amount.
+     */
+    private static BigDecimal amount(final String value) {
+        return new BigDecimal(value).setScale(SCALE);
+    }
+
+    /**
+     * Simulated database: account balances and committed transactions.
+     */
+    private static final class Database {
+
+        /** */
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+
+        /** */
+        private final Set<Long> committed = ConcurrentHashMap.newKeySet();
+
+        /** */
+        private final Set<Long> rolledBack = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Rolls up a ledger, like the account ledger service does.
+         *
+         * @param ledger
+         *            The ledger.
+         * @return {@code true} when a batch was rolled up.
+         * @throws IOException
+         *             When journal error.
+         */
+        boolean rollUp(final AccountLedger ledger) throws IOException {
+
+            final Batch batch = ledger.drain();
+            if (batch == null) {
+                return false;
+            }
+            this.rollUp(ledger, batch);
+            return true;
+        }
+
+        /**
+         * Rolls up a drained batch.
+         *
+         * @param ledger
+         *            The ledger.
+         * @param batch
+         *            The batch.
+         * @throws IOException
+         *             When journal error.
+         */
+        void rollUp(final AccountLedger ledger, final Batch batch)
+                throws IOException {
+
+            final List<Posting> settled = new ArrayList<>();
+            final List<Posting> carried = new ArrayList<>();
+            final List<Posting> applied = new ArrayList<>();
+
+            for (final Posting posting : batch.getPostings()) {
+                if (this.committed.contains(posting.getTrxId())) {
+                    applied.add(posting);
+                } else if (this.rolledBack.contains(posting.getTrxId())) {
+                    settled.add(posting);
+                } else {
+                    carried.add(posting);
+                }
+            }
+            ledger.carry(carried);
+
+            Long previous = null;
+            for (final Posting posting : applied) {
+                // INVARIANT: postings are in account order.
+                assertTrue(previous == null
+                        || previous.compareTo(posting.getAccountId()) <= 0);
+                previous = posting.getAccountId();
+
+                this.balances.merge(posting.getAccountId(),
+                        ledger.sum(Collections.singleton(posting)),
+                        BigDecimal::add);
+            }
+            settled.addAll(applied);
+            ledger.commit(batch, settled);
+        }
+
+        /**
+         * @param accountId
+         *            Account id.
+         * @return The balance.
+         */
+        BigDecimal getBalance(final Long accountId) {
+            return this.balances.getOrDefault(accountId,
+                    BigDecimal.ZERO.setScale(SCALE));
+        }
+    }
+
+    /**
+     * Concurrent postings, some of rolled back transactions, while the ledger
+     * is rolled up: the rolled up balances must equal the sum of committed
+     * postings.
+     *
+     * @throws Exception
+     *             When test fails.
+     */
+    @Test
+    public void testStress() throws Exception {
+
+        final AccountLedger ledger = new AccountLedger(this.journalDir, SCALE);
+        ledger.open(0L);
+
+        final Database db = new Database();
+
+        final int nThreads = 16;
+        final int nPostings = 2000;
+        final int nAccounts = 4;
+
+        final AtomicLong trxIds = new AtomicLong();
+        final Map<Long, AtomicLong> expected = new ConcurrentHashMap<>();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final CountDownLatch done = new CountDownLatch(nThreads);
+
+        for (int t = 0; t < nThreads; t++) {
+            final long seed = t;
+            executor.execute(() -> {
+                final Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < nPostings; i++) {
+                        final Long accountId =
+                                Long.valueOf(1 + random.nextInt(nAccounts));
+                        final Long trxId =
+                                Long.valueOf(trxIds.incrementAndGet());
+                        final long unscaled = random.nextInt(2_000_000)
+                                - 1_500_000;
+
+                        ledger.post(accountId, trxId,
+                                BigDecimal.valueOf(unscaled, SCALE),
+                                System.currentTimeMillis());
+
+                        // Database transaction ends after posting.
+                        if (random.nextInt(10) == 0) {
+                            db.rolledBack.add(trxId);
+                        } else {
+                            db.committed.add(trxId);
+                            expected.computeIfAbsent(accountId,
+                                    k -> new AtomicLong()).addAndGet(unscaled);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        int rollUps = 0;
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            if (db.rollUp(ledger)) {
+                rollUps++;
+            }
+        }
+        while (db.rollUp(ledger)) {
+            rollUps++;
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(rollUps > 1);
+        assertTrue(ledger.isEmpty());
+
+        for (int i = 1; i <= nAccounts; i++) {
+            final Long accountId = Long.valueOf(i);
+            final AtomicLong sum = expected.get(accountId);
+            assertEquals(BigDecimal.valueOf(sum.get(), SCALE),
+                    db.getBalance(accountId));
+            assertEquals(0, ledger.getPending(accountId).signum());
+        }
+
+        ledger.close();
+
+        // All journal segments are committed.
+        final AccountLedger reopened =
+                new AccountLedger(this.journalDir, SCALE);
+        assertEquals(0, reopened.open(0L));
+        reopened.close();
+    }
+
+    /**
+     * Pending postings are replayed after a crash, including postings that
+     * were carried to a later segment, and counted once.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testReplay() throws IOException {
+
+        final AccountLedger ledger = new AccountLedger(this.journalDir, SCALE);
+        ledger.open(0L);
+
+        final Database db = new Database();
+
+        ledger.post(ACCOUNT_ID, 1L, amount("-1.25"), 0L);
+        ledger.post(ACCOUNT_ID, 2L, amount("-2.50"), 0L);
+        ledger.post(ACCOUNT_ID, 2L, amount("-2.50"), 0L);
+
+        assertEquals(amount("-3.75"), ledger.getPending(ACCOUNT_ID));
+
+        // Trx 1 is committed, trx 2 is still open.
+        db.committed.add(1L);
+
+        final Batch batch = ledger.drain();
+        assertNotNull(batch);
+        db.rollUp(ledger, batch);
+
+        final long committedSeq = batch.getJournalSeq();
+
+        ledger.post(ACCOUNT_ID, 3L, amount("-0.10"), 0L);
+
+        assertEquals(amount("-1.25"), db.getBalance(ACCOUNT_ID));
+        assertEquals(amount("-2.60"), ledger.getPending(ACCOUNT_ID));
+
+        // Crash: no close.
+        final AccountLedger recovered =
+                new AccountLedger(this.journalDir, SCALE);
+
+        assertEquals(2, recovered.open(committedSeq));
+        assertEquals(amount("-2.60"), recovered.getPending(ACCOUNT_ID));
+
+        ledger.close();
+        recovered.close();
+    }
+
+    /**
+     * An admin balance edit during a roll-up, between its database commit and
+     * the removal of its postings: the rolled up amount must count once.
+     *
+     * @throws Exception
+     *             When test fails.
+     */
+    @Test
+    public void testEditDuringRollUp() throws Exception {
+
+        final AccountLedger ledger = new AccountLedger(this.journalDir, SCALE);
+        ledger.open(0L);
+
+        final AtomicReference<BigDecimal> balance =
+                new AtomicReference<>(amount("10.00"));
+        final ReentrantLock rowLock = new ReentrantLock();
+
+        ledger.post(ACCOUNT_ID, 1L, amount("-1.00"), 0L);
+
+        final CountDownLatch dbCommitted = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        final Thread rollUp = new Thread(() -> {
+            try {
+                final Batch batch = ledger.drain();
+                ledger.beginRollUp();
+                try {
+                    rowLock.lock();
+                    try {
+                        balance.set(balance.get()
+                                .add(ledger.sum(batch.getPostings())));
+                    } finally {
+                        rowLock.unlock();
+                    }
+                    dbCommitted.countDown();
+                    Thread.sleep(200L);
+                    ledger.commit(batch, batch.getPostings());
+                } finally {
+                    ledger.endRollUp();
+                }
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        rollUp.start();
+
+        assertTrue(dbCommitted.await(10, TimeUnit.SECONDS));
+
+        // Balance display.
+        assertEquals(amount("9.00"), ledger.consistentRead(
+                () -> balance.get().add(ledger.getPending(ACCOUNT_ID))));
+
+        // Admin edit: lock row, then set balance including pending.
+        ledger.consistentRead(() -> {
+            rowLock.lock();
+            return null;
+        });
+        try {
+            balance.set(
+                    amount("20.00").subtract(ledger.getPending(ACCOUNT_ID)));
+        } finally {
+            rowLock.unlock();
+        }
+
+        rollUp.join();
+        assertNull(error.get());
+
+        assertEquals(0, ledger.getPending(ACCOUNT_ID).signum());
+        assertEquals(amount("20.00"), balance.get());
+
+        ledger.close();
+    }
+
+    /**
+     * A posting of a transaction that is not found is finished only when it
+     * is aborted, or replayed from a previous run.
+     *
+     * @throws IOException
+     *             When IO error.
+     */
+    @Test
+    public void testFinished() throws IOException {
+
+        final AccountLedger ledger = new AccountLedger(this.journalDir, SCALE);
+        ledger.open(0L);
+
+        ledger.post(ACCOUNT_ID, 1L, amount("-1.00"), 0L);
+        ledger.post(ACCOUNT_ID, 2L, amount("-2.00"), 0L);
+
+        ledger.abort(1L);
+        ledger.abort(3L);
+
+        final Batch batch = ledger.drain();
+        assertNotNull(batch);
+        assertTrue(batch.getPostings().get(0).isFinished());
+        assertFalse(batch.getPostings().get(1).isFinished());
+
+        // Crash: no close.
+        final AccountLedger recovered =
+                new AccountLedger(this.journalDir, SCALE);
+        assertEquals(2, recovered.open(0L));
+
+        for (final Posting posting : recovered.drain().getPostings()) {
+            assertTrue(posting.isFinished());
+        }
+
+        ledger.close();
+        recovered.close();
+    }
+
+    /**
+     * A read does not wait forever for a roll-up that waits for the reader:
+     * it fails, so the reader's transaction can release its locks.
+     *
+     * @throws Exception
+     *             When test fails.
+     */
+    @Test
+    public void testReadWaitTimeout() throws Exception {
+
+        final AccountLedger ledger = new AccountLedger(null, SCALE, 50L);
+        ledger.open(0L);
+
+        final CountDownLatch begun = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(1);
+
+        final Thread rollUp = new Thread(() -> {
+            ledger.beginRollUp();
+            try {
+                begun.countDown();
+                end.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ledger.endRollUp();
+            }
+        });
+        rollUp.start();
+
+        assertTrue(begun.await(10, TimeUnit.SECONDS));
+
+        final AtomicInteger runs = new AtomicInteger();
+        try {
+            ledger.consistentRead(() -> runs.incrementAndGet());
+            fail("read must fail while roll-up is in progress");
+        } catch (SpException e) {
+            assertEquals(0, runs.get());
+        }
+
+        end.countDown();
+        rollUp.join();
+
+        assertEquals(Integer.valueOf(1),
+                ledger.consistentRead(() -> runs.incrementAndGet()));
+    }
+
+    /**
+     * Concurrent reservations cannot exceed the available balance.
+     *
+     * @throws Exception
+     *             When test fails.
+     */
+    @Test
+    public void testEscrow() throws Exception {
+
+        final AccountLedger ledger = new AccountLedger(null, SCALE);
+        ledger.open(0L);
+
+        // Balance 8.00 in database, 2.00 pending: 10 reservations of 1.00.
+        ledger.post(ACCOUNT_ID, 1L, amount("2.00"), 0L);
+
+        final BigDecimal balance = amount("8.00");
+        final BigDecimal floor = BigDecimal.ZERO;
+
+        final int nThreads = 32;
+        final AtomicInteger reserved = new AtomicInteger();
+        final List<Escrow> escrows =
+                Collections.synchronizedList(new ArrayList<>());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < nThreads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                final Escrow escrow = ledger.reserve(ACCOUNT_ID, balance,
+                        floor, amount("1.00"));
+                if (escrow != null) {
+                    reserved.incrementAndGet();
+                    escrows.add(escrow);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(10, reserved.get());
+        assertEquals(amount("10.00"), ledger.getReserved(ACCOUNT_ID));
+        assertNull(ledger.reserve(ACCOUNT_ID, balance, floor,
+                amount("0.01")));
+
+        // Unlimited account.
+        final Escrow unlimited =
+                ledger.reserve(ACCOUNT_ID, balance, null, amount("5.00"));
+        assertNotNull(unlimited);
+
+        for (final Escrow escrow : escrows) {
+            ledger.release(escrow);
+            ledger.release(escrow);
+        }
+        ledger.release(unlimited);
+
+        assertEquals(0, ledger.getReserved(ACCOUNT_ID).signum());
+        assertNotNull(ledger.reserve(ACCOUNT_ID, balance, floor,
+                amount("10.00")));
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.dao.enums.ACLOidEnum;
+import org.savapage.core.dao.enums.ACLRoleEnum;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class EffectiveAclCacheTest {
+
+    /** */
+    private static final long TTL_MSEC = 60_000L;
+
+    /** */
+    private static final Long USER = Long.valueOf(1L);
+
+    /** */
+    private static final Long GROUP = Long.valueOf(100L);
+
+    /** */
+    private final EffectiveAclCache cache = EffectiveAclCache.instance();
+
+    /** */
+    private InMemoryAclLoader loader;
+
+    @Before
+    public void init() {
+        this.cache.clear();
+        this.loader = new InMemoryAclLoader();
+    }
+
+    @After
+    public void exit() {
+        this.cache.onTransactionEnd();
+        this.cache.clear();
+    }
+
+    /**
+     * @param role
+     *            The role.
+     * @param value
+     *            The value.
+     * @return The role map.
+     */
+    private static Map<ACLRoleEnum, Boolean> roles(final ACLRoleEnum role,
+            final boolean value) {
+        final Map<ACLRoleEnum, Boolean> map = new EnumMap<>(ACLRoleEnum.class);
+        map.put(role, Boolean.valueOf(value));
+        return map;
+    }
+
+    /**
+     * @param userKey
+     *            User key.
+     * @param role
+     *            The role.
+     * @return {@code true} when authorized.
+     */
+    private boolean isAuthorized(final Long userKey, final ACLRoleEnum role) {
+        return Boolean.TRUE.equals(this.cache
+                .getUserAcl(this.loader, userKey, true, TTL_MSEC)
+                .isAuthorized(role));
+    }
+
+    @Test
+    public void testMatchesReference() throws IOException {
+
+        final Random random = new Random(42L);
+        final int nUsers = 500;
+        final int nGroups = 40;
+
+        final List<Long> groupKeys = new ArrayList<>();
+        for (long i = 1; i <= nGroups; i++) {
+            groupKeys.add(Long.valueOf(1000L + i));
+        }
+        final List<Long> levelKeys = new ArrayList<>(groupKeys);
+        levelKeys.add(InMemoryAclLoader.INTERNAL_GROUP);
+        levelKeys.add(InMemoryAclLoader.EXTERNAL_GROUP);
+        levelKeys.add(InMemoryAclLoader.ALL_USERS_GROUP);
+
+        for (final Long group : levelKeys) {
+            this.loader.setGroupRoles(group, randomRoles(random));
+            this.loader.setGroupOids(group, randomOids(random));
+        }
+
+        for (long i = 1; i <= nUsers; i++) {
+            final Long user = Long.valueOf(i);
+            this.loader.setUserRoles(user, randomRoles(random));
+            this.loader.setUserOids(user, randomOids(random));
+            Collections.shuffle(groupKeys, random);
+            this.loader.setMembership(user,
+                    groupKeys.subList(0, random.nextInt(6)));
+        }
+
+        for (long i = 1; i <= nUsers; i++) {
+            final Long user = Long.valueOf(i);
+            final boolean internal = (i % 3) != 0;
+
+            final EffectiveAclCache.Acl acl =
+                    this.cache.getUserAcl(this.loader, user, internal,
+                            TTL_MSEC);
+
+            for (final ACLRoleEnum role : ACLRoleEnum.values()) {
+                assertEquals(role.toString(),
+                        this.loader.resolveAuthorized(user, internal, role),
+                        Boolean.TRUE.equals(acl.isAuthorized(role)));
+            }
+            for (final ACLOidEnum oid : ACLOidEnum.values()) {
+                assertEquals(oid.toString(),
+                        this.loader.resolvePrivileges(user, internal, oid),
+                        acl.getPrivileges(oid));
+            }
+        }
+
+        assertEquals(nUsers, this.loader.getUserLoads());
+        assertTrue(this.loader.getGroupLoads() <= levelKeys.size());
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @return Random roles, or {@code null}.
+     */
+    private static Map<ACLRoleEnum, Boolean>
+            randomRoles(final Random random) {
+        if (random.nextInt(4) == 0) {
+            return null;
+        }
+        final Map<ACLRoleEnum, Boolean> map = new EnumMap<>(ACLRoleEnum.class);
+        for (final ACLRoleEnum role : ACLRoleEnum.values()) {
+            if (random.nextInt(3) == 0) {
+                map.put(role, Boolean.valueOf(random.nextBoolean()));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @return Random OID privileges, or {@code null}.
+     */
+    private static Map<ACLOidEnum, Integer> randomOids(final Random random) {
+        if (random.nextInt(4) == 0) {
+            return null;
+        }
+        final Map<ACLOidEnum, Integer> map = new EnumMap<>(ACLOidEnum.class);
+        for (final ACLOidEnum oid : ACLOidEnum.values()) {
+            if (random.nextInt(3) == 0) {
+                map.put(oid, Integer.valueOf(random.nextInt(16)));
+            }
+        }
+        return map;
+    }
+
+    @Test
+    public void testTopIndeterminateGranted() {
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_CREATOR));
+        assertFalse(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertNull(this.cache.getUserAcl(this.loader, USER, true, TTL_MSEC)
+                .getPrivileges(ACLOidEnum.U_INBOX));
+    }
+
+    @Test
+    public void testUserInvalidation() throws IOException {
+
+        this.loader.setUserRoles(USER,
+                roles(ACLRoleEnum.PRINT_DELEGATE, true));
+
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertEquals(1, this.loader.getUserLoads());
+
+        this.loader.setUserRoles(USER,
+                roles(ACLRoleEnum.PRINT_DELEGATE, false));
+
+        // Not invalidated: the compiled ACL is still used.
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+
+        this.cache.invalidateUser(USER);
+        assertFalse(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertEquals(2, this.loader.getUserLoads());
+    }
+
+    @Test
+    public void testGroupInvalidation() throws IOException {
+
+        final Long otherUser = Long.valueOf(2L);
+
+        this.loader.setGroupRoles(GROUP,
+                roles(ACLRoleEnum.PRINT_DELEGATE, true));
+        this.loader.setMembership(USER, Arrays.asList(GROUP));
+        this.loader.setMembership(otherUser, Arrays.asList(GROUP));
+
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertTrue(this.isAuthorized(otherUser, ACLRoleEnum.PRINT_DELEGATE));
+
+        // Group ACL is compiled once for both members.
+        final int groupLoads = this.loader.getGroupLoads();
+
+        this.loader.setGroupRoles(GROUP,
+                roles(ACLRoleEnum.PRINT_DELEGATE, false));
+        this.cache.invalidateAll();
+
+        assertFalse(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertFalse(this.isAuthorized(otherUser, ACLRoleEnum.PRINT_DELEGATE));
+        assertEquals(2 * groupLoads, this.loader.getGroupLoads());
+    }
+
+    @Test
+    public void testTransactionEnd() throws IOException {
+
+        this.loader.setUserRoles(USER,
+                roles(ACLRoleEnum.PRINT_DELEGATE, true));
+
+        // Compiled after the write, but before the commit.
+        this.cache.invalidateUser(USER);
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertEquals(1, this.loader.getUserLoads());
+
+        this.cache.onTransactionEnd();
+        assertTrue(this.isAuthorized(USER, ACLRoleEnum.PRINT_DELEGATE));
+        assertEquals(2, this.loader.getUserLoads());
+    }
+
+    @Test
+    public void testImplicitGroup() throws IOException {
+
+        this.loader.setGroupRoles(InMemoryAclLoader.INTERNAL_GROUP,
+                roles(ACLRoleEnum.PRINT_DELEGATE, true));
+
+        assertEquals(Boolean.TRUE,
+                this.cache.getUserAcl(this.loader, USER, true, TTL_MSEC)
+                        .isAuthorized(ACLRoleEnum.PRINT_DELEGATE));
+        assertNull(this.cache.getUserAcl(this.loader, USER, false, TTL_MSEC)
+                .isAuthorized(ACLRoleEnum.PRINT_DELEGATE));
+    }
+
+    @Test
+    public void testExpiry() {
+        this.cache.getUserAcl(this.loader, USER, true, 0L);
+        this.cache.getUserAcl(this.loader, USER, true, 0L);
+        assertEquals(2, this.loader.getUserLoads());
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.savapage.core.dao.enums.ACLOidEnum;
+import org.savapage.core.dao.enums.ACLRoleEnum;
+import org.savapage.core.util.JsonHelper;
+
+/**
+ * An {@link EffectiveAclCache.Loader} with ACLs as JSON strings in memory,
+ * including a reference resolver that follows the database path of
+ * {@code AccessControlServiceImpl} check by check.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class InMemoryAclLoader implements EffectiveAclCache.Loader {
+
+    /** */
+    public static final Long INTERNAL_GROUP = Long.valueOf(-1L);
+
+    /** */
+    public static final Long EXTERNAL_GROUP = Long.valueOf(-2L);
+
+    /** */
+    public static final Long ALL_USERS_GROUP = Long.valueOf(-3L);
+
+    /** */
+    private static final EnumSet<ACLRoleEnum> TOP_INDETERMINATE_GRANTED =
+            EnumSet.of(ACLRoleEnum.PRINT_CREATOR);
+
+    /** JSON roles by user key. */
+    private final Map<Long, String> userRoles = new ConcurrentHashMap<>();
+
+    /** JSON OID privileges by user key. */
+    private final Map<Long, String> userOids = new ConcurrentHashMap<>();
+
+    /** JSON roles by group key. */
+    private final Map<Long, String> groupRoles = new ConcurrentHashMap<>();
+
+    /** JSON OID privileges by group key. */
+    private final Map<Long, String> groupOids = new ConcurrentHashMap<>();
+
+    /** Explicit group keys (in name order) by user key. */
+    private final Map<Long, List<Long>> members = new ConcurrentHashMap<>();
+
+    /** */
+    private final AtomicInteger userLoads = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger groupLoads = new AtomicInteger();
+
+    /**
+     * @param key
+     *            User key.
+     * @param roles
+     *            Roles, or {@code null} to remove.
+     * @throws IOException
+     *             When JSON error.
+     */
+    public void setUserRoles(final Long key,
+            final Map<ACLRoleEnum, Boolean> roles) throws IOException {
+        put(this.userRoles, key, roles);
+    }
+
+    /**
+     * @param key
+     *            User key.
+     * @param oids
+     *            OID privileges, or {@code null} to remove.
+     * @throws IOException
+     *             When JSON error.
+     */
+    public void setUserOids(final Long key, final Map<ACLOidEnum, Integer> oids)
+            throws IOException {
+        put(this.userOids, key, oids);
+    }
+
+    /**
+     * @param key
+     *            Group key.
+     * @param roles
+     *            Roles, or {@code null} to remove.
+     * @throws IOException
+     *             When JSON error.
+     */
+    public void setGroupRoles(final Long key,
+            final Map<ACLRoleEnum, Boolean> roles) throws IOException {
+        put(this.groupRoles, key, roles);
+    }
+
+    /**
+     * @param key
+     *            Group key.
+     * @param oids
+     *            OID privileges, or {@code null} to remove.
+     * @throws IOException
+     *             When JSON error.
+     */
+    public void setGroupOids(final Long key,
+            final Map<ACLOidEnum, Integer> oids) throws IOException {
+        put(this.groupOids, key, oids);
+    }
+
+    /**
+     * @param userKey
+     *            User key.
+     * @param groupKeys
+     *            Explicit group keys in name order.
+     */
+    public void setMembership(final Long userKey, final List<Long> groupKeys) {
+        this.members.put(userKey, new ArrayList<>(groupKeys));
+    }
+
+    /**
+     * @param map
+     *            The JSON map.
+     * @param key
+     *            The key.
+     * @param value
+     *            The value to serialize, or {@code null} to remove.
+     * @throws IOException
+     *             When JSON error.
+     */
+    private static void put(final Map<Long, String> map, final Long key,
+            final Object value) throws IOException {
+        if (value == null) {
+            map.remove(key);
+        } else {
+            map.put(key, JsonHelper.stringifyObject(value));
+        }
+    }
+
+    /**
+     * @return Number of user ACL loads.
+     */
+    public int getUserLoads() {
+        return this.userLoads.get();
+    }
+
+    /**
+     * @return Number of group ACL loads.
+     */
+    public int getGroupLoads() {
+        return this.groupLoads.get();
+    }
+
+    /**
+     * @param json
+     *            JSON or {@code null}.
+     * @return The roles or {@code null}.
+     */
+    private static Map<ACLRoleEnum, Boolean> roles(final String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return JsonHelper.createEnumBooleanMap(ACLRoleEnum.class, json);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param json
+     *            JSON or {@code null}.
+     * @return The OID privileges or {@code null}.
+     */
+    private static Map<ACLOidEnum, Integer> oids(final String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return JsonHelper.createEnumIntegerMap(ACLOidEnum.class, json);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public EffectiveAclCache.Acl loadUserAcl(final Long userDbKey) {
+        this.userLoads.incrementAndGet();
+        final Map<ACLOidEnum, Integer> oids =
+                oids(this.userOids.get(userDbKey));
+        return EffectiveAclCache.Acl.create(
+                roles(this.userRoles.get(userDbKey)), oids, oids);
+    }
+
+    @Override
+    public List<Long> loadGroupKeys(final Long userDbKey) {
+        final List<Long> keys = this.members.get(userDbKey);
+        if (keys == null) {
+            return new ArrayList<>();
+        }
+        return keys;
+    }
+
+    @Override
+    public EffectiveAclCache.Acl loadGroupAcl(final Long groupDbKey) {
+        this.groupLoads.incrementAndGet();
+        final Map<ACLOidEnum, Integer> oids =
+                oids(this.groupOids.get(groupDbKey));
+        return EffectiveAclCache.Acl.create(
+                roles(this.groupRoles.get(groupDbKey)), oids, oids);
+    }
+
+    @Override
+    public Long getImplicitGroupKey(final boolean internalUser) {
+        if (internalUser) {
+            return INTERNAL_GROUP;
+        }
+        return EXTERNAL_GROUP;
+    }
+
+    @Override
+    public Long getAllUserGroupKey() {
+        return ALL_USERS_GROUP;
+    }
+
+    @Override
+    public EnumSet<ACLRoleEnum> getTopIndeterminateGranted() {
+        return TOP_INDETERMINATE_GRANTED;
+    }
+
+    /**
+     * @param json
+     *            JSON or {@code null}.
+     * @param role
+     *            The role.
+     * @return {@code null} when undetermined.
+     */
+    private static Boolean roleOf(final String json, final ACLRoleEnum role) {
+        final Map<ACLRoleEnum, Boolean> map = roles(json);
+        if (map == null) {
+            return null;
+        }
+        return map.get(role);
+    }
+
+    /**
+     * @param json
+     *            JSON or {@code null}.
+     * @param oid
+     *            The OID.
+     * @return {@code null} when undetermined.
+     */
+    private static Integer oidOf(final String json, final ACLOidEnum oid) {
+        final Map<ACLOidEnum, Integer> map = oids(json);
+        if (map == null) {
+            return null;
+        }
+        return map.get(oid);
+    }
+
+    /**
+     * @param userDbKey
+     *            User key.
+     * @param internalUser
+     *            {@code true} when internal user.
+     * @return The levels to check, from high to low.
+     */
+    private List<Long> groupLevels(final Long userDbKey,
+            final boolean internalUser) {
+        final List<Long> levels = new ArrayList<>(
+                this.loadGroupKeys(userDbKey));
+        levels.add(this.getImplicitGroupKey(internalUser));
+        levels.add(ALL_USERS_GROUP);
+        return levels;
+    }
+
+    /**
+     * Resolves a role by parsing every level on each call.
+     *
+     * @param userDbKey
+     *            User key.
+     * @param internalUser
+     *            {@code true} when internal user.
+     * @param role
+     *            The role.
+     * @return {@code true} when authorized.
+     */
+    public boolean resolveAuthorized(final Long userDbKey,
+            final boolean internalUser, final ACLRoleEnum role) {
+
+        Boolean auth = roleOf(this.userRoles.get(userDbKey), role);
+
+        if (auth != null) {
+            return auth.booleanValue();
+        }
+        for (final Long group : this.groupLevels(userDbKey, internalUser)) {
+            auth = roleOf(this.groupRoles.get(group), role);
+            if (auth != null) {
+                return auth.booleanValue();
+            }
+        }
+        return TOP_INDETERMINATE_GRANTED.contains(role);
+    }
+
+    /**
+     * Resolves OID privileges by parsing every level on each call.
+     *
+     * @param userDbKey
+     *            User key.
+     * @param internalUser
+     *            {@code true} when internal user.
+     * @param oid
+     *            The OID.
+     * @return {@code null} when undetermined.
+     */
+    public Integer resolvePrivileges(final Long userDbKey,
+            final boolean internalUser, final ACLOidEnum oid) {
+
+        Integer privileges = oidOf(this.userOids.get(userDbKey), oid);
+
+        if (privileges != null) {
+            return privileges;
+        }
+        for (final Long group : this.groupLevels(userDbKey, internalUser)) {
+            privileges = oidOf(this.groupOids.get(group), oid);
+            if (privileges != null) {
+                return privileges;
+            }
+        }
+        return null;
+    }
+}
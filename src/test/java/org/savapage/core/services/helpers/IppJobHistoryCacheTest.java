@@ -0,0 +1,172 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.services.helpers.IppJobHistoryCache.Job;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class IppJobHistoryCacheTest {
+
+    /** */
+    private static final long TTL_MSEC = 60_000L;
+
+    /** */
+    private static final String USER = "alice";
+
+    /** */
+    private static final Long QUEUE = Long.valueOf(1L);
+
+    /** */
+    private final IppJobHistoryCache cache = IppJobHistoryCache.instance();
+
+    /** */
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void init() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * @param id
+     *            The job id.
+     * @return The job.
+     */
+    private static Job job(final int id) {
+        return new Job(String.valueOf(id), "job-" + id, "application/pdf",
+                "uuid-" + id, new Date(id));
+    }
+
+    /**
+     * @param n
+     *            Number of jobs.
+     * @return Jobs n..1, newest first.
+     */
+    private List<Job> load(final int n) {
+        this.loads.incrementAndGet();
+        final List<Job> list = new ArrayList<>();
+        for (int i = n; i > 0; i--) {
+            list.add(job(i));
+        }
+        return list;
+    }
+
+    /**
+     * @param jobs
+     *            The jobs.
+     * @return The job ids.
+     */
+    private static String ids(final List<Job> jobs) {
+        final StringBuilder ids = new StringBuilder();
+        for (final Job job : jobs) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(job.getExternalId());
+        }
+        return ids.toString();
+    }
+
+    @Test
+    public void testWarmOnce() {
+        assertEquals("3,2,1",
+                ids(this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(3))));
+        assertEquals("3,2,1",
+                ids(this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(3))));
+        assertEquals(1, this.loads.get());
+    }
+
+    @Test
+    public void testAddAndTrim() {
+        this.cache.get(USER, QUEUE, TTL_MSEC,
+                () -> load(IppJobHistoryCache.RING_SIZE));
+
+        this.cache.add(USER, QUEUE, job(11));
+        this.cache.add(USER, QUEUE, job(12));
+
+        final List<Job> jobs =
+                this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(0));
+
+        assertEquals(IppJobHistoryCache.RING_SIZE, jobs.size());
+        assertEquals("12", jobs.get(0).getExternalId());
+        assertEquals("3", jobs.get(jobs.size() - 1).getExternalId());
+        assertEquals(1, this.loads.get());
+    }
+
+    @Test
+    public void testAddToOtherQueue() {
+        this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(2));
+        this.cache.add(USER, Long.valueOf(2L), job(3));
+
+        assertEquals("2,1",
+                ids(this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(0))));
+    }
+
+    @Test
+    public void testAddDuringLoad() {
+        // Job added while loading is not in the loaded list: not cached.
+        assertEquals("2,1", ids(this.cache.get(USER, QUEUE, TTL_MSEC, () -> {
+            this.cache.add(USER, QUEUE, job(3));
+            return load(2);
+        })));
+        assertEquals(0, this.cache.size());
+
+        assertEquals("3,2,1",
+                ids(this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(3))));
+        assertEquals(1, this.cache.size());
+    }
+
+    @Test
+    public void testInvalidateUser() {
+        this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(1));
+        this.cache.get("bob", QUEUE, TTL_MSEC, () -> load(1));
+
+        this.cache.invalidateUser(USER);
+        assertEquals(1, this.cache.size());
+
+        this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(1));
+        assertEquals(3, this.loads.get());
+    }
+
+    @Test
+    public void testExpiry() {
+        this.cache.get(USER, QUEUE, 0L, () -> load(1));
+        this.cache.get(USER, QUEUE, TTL_MSEC, () -> load(1));
+        assertEquals(2, this.loads.get());
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.snmp.SnmpMibDict;
+import org.savapage.core.snmp.SnmpPrinterStatusEnum;
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+/**
+ * Tests {@link PrinterSnmpSweeper} against an SNMPv1 agent stand-in on
+ * loopback.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PrinterSnmpSweeperTest {
+
+    private static final String HOST_AGENT = "127.0.0.1";
+
+    /** Nothing listens on this loopback address. */
+    private static final String HOST_SILENT = "127.0.0.3";
+
+    private static final String SERIAL_NR = "SN-0123";
+
+    private Snmp agent;
+
+    private int agentPort;
+
+    private AgentResponder responder;
+
+    /**
+     * Responds to GET requests like an SNMPv1 agent: an unknown OID fails the
+     * request with {@code noSuchName}.
+     */
+    private static final class AgentResponder implements CommandResponder {
+
+        private final Map<OID, Variable> values = new HashMap<>();
+
+        /** When {@code true}, a GET of multiple OIDs fails with tooBig. */
+        private volatile boolean tooBig;
+
+        AgentResponder() {
+            // hrPrinterStatus: idle(3)
+            values.put(SnmpMibDict.OID_PRINTER_STATUS, new Integer32(3));
+            values.put(SnmpMibDict.OID_PRT_SERIAL_NR,
+                    new OctetString(SERIAL_NR));
+            values.put(SnmpMibDict.OID_PRT_MARKER_LIFE_COUNT,
+                    new Integer32(1234));
+        }
+
+        @Override
+        public void processPdu(final CommandResponderEvent event) {
+
+            final PDU response = (PDU) event.getPDU().clone();
+            response.setType(PDU.RESPONSE);
+
+            if (event.getPDU().getType() == PDU.GET && this.tooBig
+                    && response.size() > 1) {
+                response.setErrorStatus(PDU.tooBig);
+                response.setErrorIndex(0);
+            } else if (event.getPDU().getType() == PDU.GET) {
+                int i = 0;
+                for (final VariableBinding vb : response
+                        .getVariableBindings()) {
+                    i++;
+                    final Variable value = values.get(vb.getOid());
+                    if (value == null) {
+                        response.setErrorStatus(PDU.noSuchName);
+                        response.setErrorIndex(i);
+                        break;
+                    }
+                    vb.setVariable(value);
+                }
+            } else {
+                // No tables: end of MIB view.
+                response.setErrorStatus(PDU.noSuchName);
+                response.setErrorIndex(1);
+            }
+
+            try {
+                event.getMessageDispatcher().returnResponsePdu(
+                        event.getMessageProcessingModel(),
+                        event.getSecurityModel(), event.getSecurityName(),
+                        event.getSecurityLevel(), response,
+                        event.getMaxSizeResponsePDU(),
+                        event.getStateReference(), new StatusInformation());
+            } catch (MessageException e) {
+                throw new IllegalStateException(e);
+            }
+            event.setProcessed(true);
+        }
+    }
+
+    @Before
+    public void init() throws IOException {
+        final DefaultUdpTransportMapping transport =
+                new DefaultUdpTransportMapping(
+                        new UdpAddress(HOST_AGENT + "/0"));
+        this.agent = new Snmp(transport);
+        this.responder = new AgentResponder();
+        this.agent.addCommandResponder(this.responder);
+        this.agent.listen();
+        this.agentPort = transport.getListenAddress().getPort();
+    }
+
+    @After
+    public void exit() throws IOException {
+        this.agent.close();
+    }
+
+    @Test
+    public void testSweep() throws InterruptedException {
+
+        final PrinterSnmpSweeper sweeper = new PrinterSnmpSweeper(1, 300, 4);
+
+        final List<String> hosts = new ArrayList<>();
+        hosts.add(HOST_AGENT);
+        hosts.add(HOST_SILENT);
+
+        final Map<String, PrinterSnmpSweeper.Result> results =
+                sweeper.sweep(hosts, this.agentPort, "public", null);
+
+        assertEquals(2, sweeper.getSummary().getHosts());
+        assertEquals(1, sweeper.getSummary().getFailures());
+
+        final PrinterSnmpSweeper.Result resultAgent = results.get(HOST_AGENT);
+
+        assertNull(resultAgent.getError());
+        assertEquals(SnmpPrinterStatusEnum.IDLE,
+                resultAgent.getDto().getPrinterStatus());
+        assertEquals(SERIAL_NR, resultAgent.getDto().getSerialNumber());
+        assertEquals(Integer.valueOf(1234),
+                resultAgent.getDto().getMarkerLifeCount());
+
+        final PrinterSnmpSweeper.Result resultSilent =
+                results.get(HOST_SILENT);
+
+        assertNull(resultSilent.getDto());
+        assertNotNull(resultSilent.getError());
+    }
+
+    @Test
+    public void testSweepTooBig() throws InterruptedException {
+
+        this.responder.tooBig = true;
+
+        final PrinterSnmpSweeper sweeper = new PrinterSnmpSweeper(1, 300, 4);
+
+        final List<String> hosts = new ArrayList<>();
+        hosts.add(HOST_AGENT);
+
+        final PrinterSnmpSweeper.Result result =
+                sweeper.sweep(hosts, this.agentPort, "public", null)
+                        .get(HOST_AGENT);
+
+        // OIDs are read one by one.
+        assertNull(result.getError());
+        assertEquals(SERIAL_NR, result.getDto().getSerialNumber());
+        assertEquals(Integer.valueOf(1234),
+                result.getDto().getMarkerLifeCount());
+    }
+
+    @Test
+    public void testRetainHosts() throws InterruptedException {
+
+        final PrinterSnmpSweeper sweeper = new PrinterSnmpSweeper(1, 300, 4);
+
+        final List<String> hosts = new ArrayList<>();
+        hosts.add(HOST_AGENT);
+
+        sweeper.sweep(hosts, this.agentPort, "public", null);
+        assertTrue(PrinterSnmpSweeper.isHostStatsPresent(HOST_AGENT));
+
+        PrinterSnmpSweeper.retainHosts(Collections.singleton(HOST_SILENT));
+        assertFalse(PrinterSnmpSweeper.isHostStatsPresent(HOST_AGENT));
+    }
+}
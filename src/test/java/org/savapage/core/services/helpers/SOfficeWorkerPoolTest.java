@@ -0,0 +1,286 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.savapage.core.doc.soffice.SOfficeStats;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class SOfficeWorkerPoolTest {
+
+    /** */
+    private static final int SLOTS = 4;
+
+    /** */
+    private static final int SPARE = 1;
+
+    /** */
+    private static final long IDLE_STOP_MSEC = 60_000L;
+
+    /** */
+    private static final long ACQUIRE_TIMEOUT_MSEC = 50L;
+
+    /**
+     * Starts workers synchronously, so scaling is deterministic.
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Worker launcher that records started and stopped workers.
+     */
+    private static final class TestLauncher
+            implements SOfficeWorkerPool.Launcher<Integer, String> {
+
+        /** */
+        private final AtomicInteger started = new AtomicInteger();
+
+        /** */
+        private final Set<String> stopped = new HashSet<>();
+
+        /** */
+        private int failOnStart = -1;
+
+        @Override
+        public String start(final Integer slot) {
+            if (this.started.get() == this.failOnStart) {
+                this.failOnStart = -1;
+                throw new IllegalStateException("start failed");
+            }
+            return String.format("worker-%d-%d", slot,
+                    this.started.incrementAndGet());
+        }
+
+        @Override
+        public void stop(final String worker) {
+            this.stopped.add(worker);
+        }
+    }
+
+    /**
+     * @param launcher
+     *            The launcher.
+     * @param stats
+     *            The statistics.
+     * @return The started pool with one minimum worker.
+     */
+    private static SOfficeWorkerPool<Integer, String>
+            startPool(final TestLauncher launcher, final SOfficeStats stats) {
+
+        final List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(Integer.valueOf(i));
+        }
+
+        final SOfficeWorkerPool<Integer, String> pool =
+                new SOfficeWorkerPool<>(launcher, slots, 1, SPARE,
+                        IDLE_STOP_MSEC, DIRECT_EXECUTOR, stats);
+        pool.start();
+        return pool;
+    }
+
+    /**
+     * @return Time (milliseconds) at which workers released now are idle
+     *         beyond the stop limit.
+     */
+    private static long afterIdleStop() {
+        return System.currentTimeMillis() + IDLE_STOP_MSEC + 1_000L;
+    }
+
+    @Test
+    public void testStart() {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        // The minimum worker is idle, so it is the spare as well.
+        assertEquals(1, pool.getRunningWorkers());
+        assertEquals(1, pool.getIdleWorkers());
+        assertEquals(1, stats.getWorkersRunning());
+    }
+
+    @Test
+    public void testScaleUp() throws InterruptedException {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        final Set<String> busy = new HashSet<>();
+
+        for (int i = 1; i <= SLOTS; i++) {
+            final String worker = pool.acquire(ACQUIRE_TIMEOUT_MSEC);
+            assertNotNull(worker);
+            assertTrue(busy.add(worker));
+            assertEquals(Math.min(i + SPARE, SLOTS), pool.getRunningWorkers());
+        }
+
+        // All slots are busy.
+        assertEquals(SLOTS, stats.getWorkersRunning());
+        assertEquals(0, pool.getIdleWorkers());
+        assertNull(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        assertEquals(0, stats.getQueueDepth());
+
+        // A released worker is available again.
+        final String worker = busy.iterator().next();
+        pool.release(worker);
+        assertEquals(worker, pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+    }
+
+    @Test
+    public void testScaleDown() throws InterruptedException {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        final List<String> busy = new ArrayList<>();
+
+        for (int i = 0; i < SLOTS; i++) {
+            busy.add(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        }
+        for (final String worker : busy) {
+            pool.release(worker);
+        }
+        assertEquals(SLOTS, pool.getIdleWorkers());
+
+        // Not idle long enough.
+        pool.stopIdleWorkers(System.currentTimeMillis());
+        assertEquals(SLOTS, pool.getRunningWorkers());
+        assertTrue(launcher.stopped.isEmpty());
+
+        // Shrinks to the minimum, which is the spare as well.
+        pool.stopIdleWorkers(afterIdleStop());
+        assertEquals(1, pool.getRunningWorkers());
+        assertEquals(1, pool.getIdleWorkers());
+        assertEquals(SLOTS - 1, launcher.stopped.size());
+        assertEquals(1, stats.getWorkersRunning());
+
+        // Stopped slots are used again when tasks queue up.
+        assertNotNull(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        assertEquals(2, pool.getRunningWorkers());
+        assertEquals(SLOTS + 1, launcher.started.get());
+    }
+
+    @Test
+    public void testIdleShrinkKeepsBusyWorkers() throws InterruptedException {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        final String busy1 = pool.acquire(ACQUIRE_TIMEOUT_MSEC);
+        final String busy2 = pool.acquire(ACQUIRE_TIMEOUT_MSEC);
+        final String busy3 = pool.acquire(ACQUIRE_TIMEOUT_MSEC);
+
+        assertEquals(SLOTS, pool.getRunningWorkers());
+        assertEquals(1, pool.getIdleWorkers());
+
+        pool.release(busy3);
+
+        // Two idle workers: one beyond the spare is stopped.
+        pool.stopIdleWorkers(afterIdleStop());
+
+        assertEquals(SLOTS - 1, pool.getRunningWorkers());
+        assertEquals(SPARE, pool.getIdleWorkers());
+        assertEquals(1, launcher.stopped.size());
+        assertFalse(launcher.stopped.contains(busy1));
+        assertFalse(launcher.stopped.contains(busy2));
+
+        // Spare is kept.
+        pool.stopIdleWorkers(afterIdleStop());
+        assertEquals(SLOTS - 1, pool.getRunningWorkers());
+    }
+
+    @Test
+    public void testStartFailure() throws InterruptedException {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        launcher.failOnStart = launcher.started.get();
+
+        // The scale-up fails, but the idle worker serves the task, and a
+        // spare is started in the next slot.
+        assertNotNull(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        assertEquals(2, pool.getRunningWorkers());
+
+        // The slot of the failed start is used again.
+        assertNotNull(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        assertNotNull(pool.acquire(ACQUIRE_TIMEOUT_MSEC));
+        assertEquals(SLOTS, pool.getRunningWorkers());
+        assertEquals(SLOTS, stats.getWorkersRunning());
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+
+        final TestLauncher launcher = new TestLauncher();
+        final SOfficeStats stats = new SOfficeStats();
+        final SOfficeWorkerPool<Integer, String> pool =
+                startPool(launcher, stats);
+
+        final String busy = pool.acquire(ACQUIRE_TIMEOUT_MSEC);
+
+        pool.shutdown();
+
+        assertEquals(0, pool.getRunningWorkers());
+        assertEquals(0, pool.getIdleWorkers());
+        assertEquals(0, stats.getWorkersRunning());
+        assertEquals(launcher.started.get(), launcher.stopped.size());
+
+        // A worker released after shutdown is not pooled again.
+        pool.release(busy);
+        assertEquals(0, pool.getIdleWorkers());
+    }
+}
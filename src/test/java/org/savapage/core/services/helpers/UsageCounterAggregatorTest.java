@@ -0,0 +1,275 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Batch;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Counter;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Delta;
+import org.savapage.core.services.helpers.UsageCounterAggregator.Target;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class UsageCounterAggregatorTest {
+
+    /** */
+    private static final Long QUEUE_ID = Long.valueOf(7L);
+
+    /** */
+    private static final Long PRINTER_ID = Long.valueOf(3L);
+
+    /** */
+    private static final Date DAY_1 = new Date(1_600_000_000_000L);
+
+    /** */
+    private static final Date DAY_2 = DateUtils.addDays(DAY_1, 1);
+
+    /** */
+    private File journalDir;
+
+    @Before
+    public void init() throws IOException {
+        this.journalDir = Files.createTempDirectory("usage-journal").toFile();
+    }
+
+    @After
+    public void exit() throws IOException {
+        FileUtils.deleteDirectory(this.journalDir);
+    }
+
+    /**
+     * @param agg
+     *            The aggregator.
+     * @param date
+     *            The date.
+     * @param pages
+     *            Number of pages.
+     * @throws IOException
+     *             When journal error.
+     */
+    private static void printIn(final UsageCounterAggregator agg,
+            final Date date, final int pages) throws IOException {
+        agg.add(Target.QUEUE, QUEUE_ID, date, date, 1, pages, 0, 0, 100);
+    }
+
+    /**
+     * @return The journal segment files.
+     */
+    private List<File> segments() {
+        final List<File> list = new ArrayList<>();
+        for (final File file : this.journalDir.listFiles()) {
+            list.add(file);
+        }
+        return list;
+    }
+
+    @Test
+    public void testAggregate() throws IOException {
+
+        final UsageCounterAggregator agg = new UsageCounterAggregator(null);
+        agg.open(0L);
+
+        printIn(agg, DAY_1, 2);
+        printIn(agg, DAY_2, 3);
+        printIn(agg, DAY_2, 4);
+        agg.add(Target.PRINTER, PRINTER_ID, DAY_1, DAY_1, 1, 5, 3, 2, 10);
+
+        final Batch batch = agg.drain();
+        assertEquals(2, batch.getDeltas().size());
+
+        // Queues before printers: the lock order.
+        final Delta queue = batch.getDeltas().get(0);
+        assertSame(Target.QUEUE, queue.getTarget());
+        assertEquals(3, queue.get(Counter.JOBS));
+        assertEquals(9, queue.get(Counter.PAGES));
+        assertEquals(300, queue.get(Counter.BYTES));
+        assertEquals(DAY_2, queue.getLastUsage());
+
+        final List<Date> days = queue.getDays();
+        assertEquals(2, days.size());
+        assertEquals(2, queue.get(days.get(0), Counter.PAGES));
+        assertEquals(7, queue.get(days.get(1), Counter.PAGES));
+
+        final Delta printer = batch.getDeltas().get(1);
+        assertSame(Target.PRINTER, printer.getTarget());
+        assertEquals(3, printer.get(Counter.SHEETS));
+        assertEquals(2, printer.get(Counter.ESU));
+
+        agg.commit(batch);
+        assertTrue(agg.isEmpty());
+        assertNull(agg.drain());
+    }
+
+    @Test
+    public void testReadYourWrites() throws IOException {
+
+        final UsageCounterAggregator agg = new UsageCounterAggregator(null);
+        agg.open(0L);
+
+        assertNull(agg.getPending(Target.QUEUE, QUEUE_ID));
+
+        printIn(agg, DAY_1, 2);
+        final Batch batch = agg.drain();
+
+        // Drained, not committed: still pending.
+        printIn(agg, DAY_1, 5);
+        final Delta pending = agg.getPending(Target.QUEUE, QUEUE_ID);
+        assertEquals(2, pending.get(Counter.JOBS));
+        assertEquals(7, pending.get(Counter.PAGES));
+
+        agg.commit(batch);
+        assertEquals(5,
+                agg.getPending(Target.QUEUE, QUEUE_ID).get(Counter.PAGES));
+        assertNull(agg.getPending(Target.PRINTER, QUEUE_ID));
+    }
+
+    @Test
+    public void testFailedFlushIsMerged() throws IOException {
+
+        final UsageCounterAggregator agg =
+                new UsageCounterAggregator(this.journalDir);
+        agg.open(0L);
+
+        printIn(agg, DAY_1, 2);
+        final Batch failed = agg.drain();
+        // No commit: flush failed.
+
+        printIn(agg, DAY_1, 3);
+        final Batch batch = agg.drain();
+
+        assertEquals(1, batch.getDeltas().size());
+        assertEquals(5, batch.getDeltas().get(0).get(Counter.PAGES));
+        assertTrue(batch.getJournalSeq() > failed.getJournalSeq());
+
+        // Nothing new: the failed batch is retried as is.
+        assertSame(batch, agg.drain());
+
+        agg.commit(batch);
+        assertTrue(agg.isEmpty());
+        // Only the current (empty) segment is left.
+        assertEquals(1, this.segments().size());
+        agg.close();
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+
+        UsageCounterAggregator agg =
+                new UsageCounterAggregator(this.journalDir);
+        agg.open(0L);
+
+        printIn(agg, DAY_1, 2);
+        final Batch committed = agg.drain();
+        agg.commit(committed);
+
+        printIn(agg, DAY_1, 3);
+        printIn(agg, DAY_2, 4);
+        agg.add(Target.PRINTER, PRINTER_ID, DAY_2, DAY_2, -1, -5, -3, -2,
+                -10);
+
+        // Crash: drained, but not committed.
+        agg.drain();
+        printIn(agg, DAY_2, 1);
+        agg.close();
+
+        agg = new UsageCounterAggregator(this.journalDir);
+        assertEquals(4, agg.open(committed.getJournalSeq()));
+
+        final Batch batch = agg.drain();
+        assertTrue(batch.getJournalSeq() > committed.getJournalSeq());
+        assertEquals(2, batch.getDeltas().size());
+
+        final Delta queue = batch.getDeltas().get(0);
+        assertEquals(3, queue.get(Counter.JOBS));
+        assertEquals(8, queue.get(Counter.PAGES));
+        assertEquals(5, queue.get(queue.getDays().get(1), Counter.PAGES));
+
+        final Delta printer = batch.getDeltas().get(1);
+        assertEquals(-1, printer.get(Counter.JOBS));
+        assertEquals(-10, printer.get(Counter.BYTES));
+
+        agg.commit(batch);
+        agg.close();
+
+        // Committed segments are not replayed again.
+        agg = new UsageCounterAggregator(this.journalDir);
+        assertEquals(0, agg.open(batch.getJournalSeq()));
+        assertTrue(agg.isEmpty());
+        agg.close();
+    }
+
+    @Test
+    public void testReplayTornRecord() throws IOException {
+
+        UsageCounterAggregator agg =
+                new UsageCounterAggregator(this.journalDir);
+        agg.open(0L);
+
+        printIn(agg, DAY_1, 2);
+        printIn(agg, DAY_1, 3);
+        agg.close();
+
+        final List<File> files = this.segments();
+        assertEquals(1, files.size());
+
+        // Tear the last record.
+        try (RandomAccessFile raf =
+                new RandomAccessFile(files.get(0), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+
+        agg = new UsageCounterAggregator(this.journalDir);
+        assertEquals(1, agg.open(0L));
+
+        final Delta pending = agg.getPending(Target.QUEUE, QUEUE_ID);
+        assertNotNull(pending);
+        assertEquals(2, pending.get(Counter.PAGES));
+        assertFalse(agg.isEmpty());
+        agg.close();
+    }
+
+}
@@ -0,0 +1,418 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers.email;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.savapage.core.circuitbreaker.CircuitBreakerException;
+
+/**
+ * Tests {@link EmailOutboxDispatcher} against an embedded {@link SmtpSink}.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class EmailOutboxDispatcherTest {
+
+    /** */
+    private static final long WAIT_MSEC = 30000L;
+
+    /** */
+    private SmtpSink sink;
+
+    /** */
+    private javax.mail.Session session;
+
+    /** */
+    private File outbox;
+
+    /** */
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger deferred = new AtomicInteger();
+
+    /** */
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /** */
+    private final AtomicLong lastDelayMsec = new AtomicLong(-1L);
+
+    /** */
+    private final EmailOutboxDispatcher.Listener listener =
+            new EmailOutboxDispatcher.Listener() {
+
+                @Override
+                public void onSent(final Path file, final MimeMessage msg) {
+                    sent.incrementAndGet();
+                }
+
+                @Override
+                public void onDeferred(final Path file,
+                        final MessagingException e, final long delayMsec) {
+                    lastDelayMsec.set(delayMsec);
+                    deferred.incrementAndGet();
+                }
+
+                @Override
+                public void onFailed(final Path file,
+                        final MessagingException e) {
+                    failed.incrementAndGet();
+                }
+            };
+
+    @Before
+    public void init() throws IOException {
+        this.sink = new SmtpSink();
+        this.outbox = Files.createTempDirectory("email-outbox").toFile();
+
+        final Properties props = new Properties();
+        props.put("mail.transport.protocol", "smtp");
+        props.put("mail.smtp.host", "127.0.0.1");
+        props.put("mail.smtp.port", String.valueOf(this.sink.getPort()));
+        props.put("mail.smtp.connectiontimeout", "5000");
+        props.put("mail.smtp.timeout", "5000");
+        this.session = javax.mail.Session.getInstance(props);
+    }
+
+    @After
+    public void exit() throws IOException {
+        this.sink.stop();
+        FileUtils.deleteDirectory(this.outbox);
+    }
+
+    /**
+     * @param connections
+     *            Max number of connections.
+     * @param domainConnections
+     *            Max number of concurrent sends per domain.
+     * @return The dispatcher.
+     */
+    private EmailOutboxDispatcher createDispatcher(final int connections,
+            final int domainConnections) {
+        return new EmailOutboxDispatcher(() -> {
+            final Transport transport = this.session.getTransport();
+            transport.connect();
+            return transport;
+        }, this.listener, connections, domainConnections);
+    }
+
+    /**
+     * Writes a MIME file in the outbox.
+     *
+     * @param name
+     *            The file base name.
+     * @param bulk
+     *            {@code true} if bulk message.
+     * @param to
+     *            The recipient address.
+     * @return The file.
+     * @throws IOException
+     *             When IO error.
+     * @throws MessagingException
+     *             When message error.
+     */
+    private Path writeMime(final String name, final boolean bulk,
+            final String to) throws IOException, MessagingException {
+
+        final MimeMessage msg = new MimeMessage(this.session);
+        msg.setFrom(new InternetAddress("sender@savapage.test"));
+        msg.setRecipients(Message.RecipientType.TO, to);
+        msg.setSubject(name);
+        msg.setText("Body of " + name);
+        msg.saveChanges();
+
+        final Path file = this.outbox.toPath()
+                .resolve(String.format("%s%s.mime", name,
+                        bulk ? EmailOutboxDispatcher.BULK_FILE_MARKER : ""));
+
+        try (OutputStream ostr = Files.newOutputStream(file)) {
+            msg.writeTo(ostr);
+        }
+        return file;
+    }
+
+    /**
+     * @param dispatcher
+     *            The dispatcher.
+     * @throws InterruptedException
+     *             When interrupted.
+     */
+    private static void awaitIdle(final EmailOutboxDispatcher dispatcher)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + WAIT_MSEC;
+        while (!dispatcher.isIdle()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20L);
+        }
+    }
+
+    /**
+     * @return The number of files in the outbox.
+     */
+    private int outboxSize() {
+        return this.outbox.list().length;
+    }
+
+    @Test
+    public void testParallelSend() throws Exception {
+
+        final String[] domains = { "a.test", "b.test", "c.test", "d.test" };
+        final int perDomain = 10;
+
+        this.sink.setDataDelayMsec(30L);
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(4, 2);
+
+        for (int i = 0; i < perDomain; i++) {
+            for (final String domain : domains) {
+                dispatcher.offer(this.writeMime(
+                        String.format("%s-%d", domain, i), false,
+                        String.format("user%d@%s", i, domain)));
+            }
+        }
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        final int total = domains.length * perDomain;
+
+        assertEquals(total, this.sink.getReceived().size());
+        assertEquals(total, this.sent.get());
+        assertEquals(0, this.outboxSize());
+
+        // Persistent connections: at most one per sender.
+        assertTrue(this.sink.getConnections() <= 4);
+        assertEquals(this.sink.getConnections(), dispatcher.getConnectCount());
+
+        assertTrue(this.sink.getMaxActive() > 1);
+        assertTrue(this.sink.getMaxDomainActive() <= 2);
+    }
+
+    @Test
+    public void testOfferOnce() throws Exception {
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+        final Path file = this.writeMime("once", false, "user@a.test");
+
+        assertTrue(dispatcher.offer(file));
+        assertFalse(dispatcher.offer(file));
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        assertEquals(1, this.sink.getReceived().size());
+    }
+
+    @Test
+    public void testPriorityLanes() throws Exception {
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.offer(this.writeMime("bulk-" + i, true,
+                    String.format("user%d@a.test", i)));
+        }
+        for (int i = 0; i < 3; i++) {
+            dispatcher.offer(this.writeMime("interactive-" + i, false,
+                    String.format("user%d@b.test", i)));
+        }
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        final List<SmtpSink.Received> received = this.sink.getReceived();
+        assertEquals(8, received.size());
+
+        for (int i = 0; i < received.size(); i++) {
+            final boolean interactive = received.get(i).getData()
+                    .contains("Subject: interactive-");
+            assertEquals(i < 3, interactive);
+        }
+    }
+
+    @Test
+    public void testTransientBackoff() throws Exception {
+
+        this.sink.fail("slow.test", 451, 2);
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(2, 2);
+        dispatcher.setBackoffMaxMsec(2000L);
+
+        dispatcher.offer(this.writeMime("slow", false, "user@slow.test"));
+        dispatcher.offer(this.writeMime("fast", false, "user@fast.test"));
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        assertEquals(2, this.deferred.get());
+        assertEquals(2, this.sent.get());
+        assertEquals(0, this.failed.get());
+        assertEquals(2, this.sink.getReceived().size());
+        assertEquals(0, this.outboxSize());
+
+        // Backed off to 1000 and 2000, halved on success.
+        assertEquals(1000L, dispatcher.getSendIntervalMsec("slow.test"));
+        assertEquals(0L, dispatcher.getSendIntervalMsec("fast.test"));
+    }
+
+    @Test
+    public void testGreylistDelay() throws Exception {
+
+        this.sink.fail("grey.test", 450, 1);
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+
+        dispatcher.offer(this.writeMime("grey", false, "user@grey.test"));
+
+        dispatcher.start();
+
+        final long deadline = System.currentTimeMillis() + WAIT_MSEC;
+        while (this.deferred.get() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20L);
+        }
+        dispatcher.shutdown(WAIT_MSEC);
+
+        // Retried after a minute, not after the domain interval of a second.
+        assertEquals(60000L, this.lastDelayMsec.get());
+        assertEquals(1000L, dispatcher.getSendIntervalMsec("grey.test"));
+        assertEquals(0, this.failed.get());
+    }
+
+    @Test
+    public void testRetryPeriod() throws Exception {
+
+        this.sink.fail("down.test", 450, 10);
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+        dispatcher.setBackoffMaxMsec(1000L);
+        dispatcher.setRetryPeriodMsec(1500L);
+
+        dispatcher.offer(this.writeMime("down", false, "user@down.test"));
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        // Deferred at 0 and 1 second, given up at 2 seconds.
+        assertEquals(2, this.deferred.get());
+        assertEquals(1, this.failed.get());
+        assertEquals(0, this.sink.getReceived().size());
+        assertEquals(0, this.outboxSize());
+    }
+
+    @Test
+    public void testPermanentFailure() throws Exception {
+
+        this.sink.fail("bad.test", 550, 1);
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+
+        dispatcher.offer(this.writeMime("bad", false, "user@bad.test"));
+        dispatcher.offer(this.writeMime("good", false, "user@good.test"));
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        assertEquals(0, this.deferred.get());
+        assertEquals(1, this.failed.get());
+        assertEquals(1, this.sent.get());
+        assertEquals(0, this.outboxSize());
+    }
+
+    @Test
+    public void testUnreadableFile() throws Exception {
+
+        final EmailOutboxDispatcher dispatcher = this.createDispatcher(1, 1);
+
+        final Path file = this.writeMime("unreadable", false, "user@a.test");
+        assertTrue(dispatcher.offer(file));
+
+        // Unreadable after it was queued.
+        Files.delete(file);
+        Files.createDirectory(file);
+
+        dispatcher.start();
+        awaitIdle(dispatcher);
+        dispatcher.shutdown(WAIT_MSEC);
+
+        assertEquals(0, this.sent.get());
+        assertEquals(1, this.failed.get());
+        assertEquals(0, this.outboxSize());
+    }
+
+    @Test
+    public void testBrokenCircuit() throws Exception {
+
+        final EmailOutboxDispatcher dispatcher =
+                new EmailOutboxDispatcher(() -> {
+                    throw new CircuitBreakerException("open");
+                }, this.listener, 2, 1);
+
+        dispatcher.offer(this.writeMime("kept", false, "user@a.test"));
+        dispatcher.start();
+
+        final long deadline = System.currentTimeMillis() + WAIT_MSEC;
+        while (dispatcher.getBreakerException() == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20L);
+        }
+        dispatcher.shutdown(WAIT_MSEC);
+
+        assertNotNull(dispatcher.getBreakerException());
+        assertFalse(dispatcher.offer(this.outbox.toPath().resolve("x.mime")));
+        assertEquals(0, this.sink.getConnections());
+        assertEquals(1, this.outboxSize());
+    }
+}
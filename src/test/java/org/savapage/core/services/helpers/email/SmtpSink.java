@@ -0,0 +1,384 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.services.helpers.email;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded SMTP server that accepts and keeps messages in memory, for
+ * testing mail senders on the loopback interface.
+ * <p>
+ * Replies to recipients of a domain can be set to fail a number of times,
+ * and each message transfer can be delayed to make concurrency observable.
+ * </p>
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class SmtpSink {
+
+    /**
+     * A received message.
+     */
+    public static final class Received {
+
+        /** */
+        private final List<String> recipients;
+
+        /** */
+        private final String data;
+
+        /**
+         * @param recipients
+         *            The envelope recipients.
+         * @param data
+         *            The message data.
+         */
+        Received(final List<String> recipients, final String data) {
+            this.recipients = recipients;
+            this.data = data;
+        }
+
+        /**
+         * @return The envelope recipients.
+         */
+        public List<String> getRecipients() {
+            return recipients;
+        }
+
+        /**
+         * @return The message data.
+         */
+        public String getData() {
+            return data;
+        }
+    }
+
+    /** */
+    private final ServerSocket serverSocket;
+
+    /** */
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    /** */
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+
+    /** */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Reply code and remaining count of failures per domain.
+     */
+    private final Map<String, int[]> failures = new HashMap<>();
+
+    /**
+     * Active transfers per domain.
+     */
+    private final Map<String, Integer> active = new HashMap<>();
+
+    /** */
+    private int maxActive;
+
+    /** */
+    private int maxDomainActive;
+
+    /** */
+    private volatile long dataDelayMsec;
+
+    /**
+     * Starts the sink on a free port of the loopback interface.
+     *
+     * @throws IOException
+     *             When socket error.
+     */
+    public SmtpSink() throws IOException {
+        this.serverSocket =
+                new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread thread = new Thread(this::accept, "SmtpSink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The port.
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param msec
+     *            Milliseconds to delay the reply on each message transfer.
+     */
+    public void setDataDelayMsec(final long msec) {
+        this.dataDelayMsec = msec;
+    }
+
+    /**
+     * Fails recipients of a domain.
+     *
+     * @param domain
+     *            The domain.
+     * @param code
+     *            The SMTP reply code.
+     * @param times
+     *            The number of times to fail.
+     */
+    public synchronized void fail(final String domain, final int code,
+            final int times) {
+        this.failures.put(domain, new int[] { code, times });
+    }
+
+    /**
+     * @return The received messages, in order of receipt.
+     */
+    public List<Received> getReceived() {
+        return new ArrayList<>(this.received);
+    }
+
+    /**
+     * @return The number of accepted connections.
+     */
+    public int getConnections() {
+        return this.connections.get();
+    }
+
+    /**
+     * @return Max number of concurrent message transfers.
+     */
+    public synchronized int getMaxActive() {
+        return this.maxActive;
+    }
+
+    /**
+     * @return Max number of concurrent message transfers to one domain.
+     */
+    public synchronized int getMaxDomainActive() {
+        return this.maxDomainActive;
+    }
+
+    /**
+     * Stops the sink.
+     */
+    public void stop() {
+        try {
+            this.serverSocket.close();
+            for (final Socket socket : this.sockets) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // no code intended
+        }
+    }
+
+    /**
+     * Accepts connections.
+     */
+    private void accept() {
+        try {
+            while (!this.serverSocket.isClosed()) {
+                final Socket socket = this.serverSocket.accept();
+                this.sockets.add(socket);
+                this.connections.incrementAndGet();
+                final Thread thread =
+                        new Thread(() -> this.serve(socket), "SmtpSinkConn");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    /**
+     * @param address
+     *            The mail address.
+     * @return The lower case domain.
+     */
+    private static String domainOf(final String address) {
+        return address.substring(address.lastIndexOf('@') + 1)
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param domain
+     *            The recipient domain.
+     * @return The failure reply code, or {@code 0} when none.
+     */
+    private synchronized int nextFailure(final String domain) {
+        final int[] failure = this.failures.get(domain);
+        if (failure == null || failure[1] == 0) {
+            return 0;
+        }
+        failure[1]--;
+        return failure[0];
+    }
+
+    /**
+     * @param domain
+     *            The domain.
+     * @param delta
+     *            {@code +1} or {@code -1}.
+     */
+    private synchronized void countActive(final String domain,
+            final int delta) {
+        final int count = this.active.getOrDefault(domain, 0) + delta;
+        this.active.put(domain, count);
+        this.maxDomainActive = Math.max(this.maxDomainActive, count);
+
+        int total = 0;
+        for (final Integer n : this.active.values()) {
+            total += n;
+        }
+        this.maxActive = Math.max(this.maxActive, total);
+    }
+
+    /**
+     * Serves an SMTP session.
+     *
+     * @param socket
+     *            The client socket.
+     */
+    private void serve(final Socket socket) {
+
+        try (Socket s = socket;
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(s.getInputStream(),
+                                StandardCharsets.ISO_8859_1));
+                OutputStream ostr = s.getOutputStream()) {
+
+            reply(ostr, "220 localhost SmtpSink");
+
+            List<String> recipients = new ArrayList<>();
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                final String cmd = line.toUpperCase(Locale.ROOT);
+
+                if (cmd.startsWith("EHLO")) {
+                    reply(ostr, "250-localhost\r\n250 8BITMIME");
+                } else if (cmd.startsWith("HELO") || cmd.startsWith("NOOP")) {
+                    reply(ostr, "250 OK");
+                } else if (cmd.startsWith("MAIL")
+                        || cmd.startsWith("RSET")) {
+                    recipients = new ArrayList<>();
+                    reply(ostr, "250 OK");
+                } else if (cmd.startsWith("RCPT")) {
+                    final String address = line.substring(
+                            line.indexOf('<') + 1, line.lastIndexOf('>'));
+                    final int code = this.nextFailure(domainOf(address));
+                    if (code == 0) {
+                        recipients.add(address);
+                        reply(ostr, "250 OK");
+                    } else {
+                        reply(ostr, code + " Recipient rejected");
+                    }
+                } else if (cmd.startsWith("DATA")) {
+                    if (recipients.isEmpty()) {
+                        reply(ostr, "503 No recipients");
+                        continue;
+                    }
+                    reply(ostr, "354 End data with <CR><LF>.<CR><LF>");
+                    this.receive(reader, recipients);
+                    recipients = new ArrayList<>();
+                    reply(ostr, "250 OK");
+                } else if (cmd.startsWith("QUIT")) {
+                    reply(ostr, "221 Bye");
+                    break;
+                } else {
+                    reply(ostr, "500 Unknown command");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // closed
+        } finally {
+            this.sockets.remove(socket);
+        }
+    }
+
+    /**
+     * Receives message data.
+     *
+     * @param reader
+     *            The reader.
+     * @param recipients
+     *            The envelope recipients.
+     * @throws IOException
+     *             When socket error.
+     * @throws InterruptedException
+     *             When interrupted.
+     */
+    private void receive(final BufferedReader reader,
+            final List<String> recipients)
+            throws IOException, InterruptedException {
+
+        final String domain = domainOf(recipients.get(0));
+        final StringBuilder data = new StringBuilder();
+
+        this.countActive(domain, 1);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && !line.equals(".")) {
+                if (line.startsWith("..")) {
+                    line = line.substring(1);
+                }
+                data.append(line).append("\r\n");
+            }
+            Thread.sleep(this.dataDelayMsec);
+        } finally {
+            this.countActive(domain, -1);
+        }
+        this.received.add(new Received(recipients, data.toString()));
+    }
+
+    /**
+     * @param ostr
+     *            The output stream.
+     * @param reply
+     *            The reply lines.
+     * @throws IOException
+     *             When socket error.
+     */
+    private static void reply(final OutputStream ostr, final String reply)
+            throws IOException {
+        ostr.write((reply + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        ostr.flush();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CidrMatcher} against {@link CidrChecker} semantics.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class CidrMatcherTest {
+
+    /** */
+    private static final int FUZZ_RANGE_SETS = 300;
+
+    /** */
+    private static final int FUZZ_ADDRESSES = 200;
+
+    /** */
+    private static final String[] SEPARATORS = { " ", ",", ";", ", ", " ; " };
+
+    /**
+     * @param bytes
+     *            Address bytes.
+     * @return The address string.
+     * @throws UnknownHostException
+     *             When invalid.
+     */
+    private static String toString(final byte[] bytes)
+            throws UnknownHostException {
+        return InetAddress.getByAddress(bytes).getHostAddress();
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @return Random IPv4 or IPv6 address bytes, mostly from a small set of
+     *         networks, so ranges overlap and hit.
+     */
+    private static byte[] randomAddress(final Random random) {
+
+        final byte[] bytes;
+
+        if (random.nextBoolean()) {
+            bytes = new byte[4];
+            bytes[0] = (byte) (10 + random.nextInt(3));
+        } else {
+            bytes = new byte[16];
+            bytes[0] = (byte) 0x20;
+            bytes[1] = (byte) (1 + random.nextInt(2));
+        }
+        for (int i = 1; i < bytes.length; i++) {
+            if (i == 1 && bytes.length == 16) {
+                continue;
+            }
+            // Low entropy in the leading bytes.
+            if (i < bytes.length / 2) {
+                bytes[i] = (byte) random.nextInt(4);
+            } else {
+                bytes[i] = (byte) random.nextInt(256);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param random
+     *            Random generator.
+     * @return A random CIDR.
+     * @throws UnknownHostException
+     *             When invalid.
+     */
+    private static String randomCidr(final Random random)
+            throws UnknownHostException {
+        final byte[] bytes = randomAddress(random);
+        final int maxBits = bytes.length * 8;
+        final int bits;
+        if (random.nextInt(10) == 0) {
+            bits = random.nextInt(maxBits + 1);
+        } else {
+            // Realistic subnets.
+            bits = maxBits / 4 + random.nextInt(maxBits * 3 / 4 + 1);
+        }
+        return toString(bytes) + "/" + bits;
+    }
+
+    /**
+     * Reference: the linear {@link CidrChecker} loop.
+     *
+     * @param cidrs
+     *            The CIDRs.
+     * @param ipAddr
+     *            The address.
+     * @return {@code true} if in range.
+     */
+    private static boolean referenceMatch(final List<String> cidrs,
+            final String ipAddr) {
+        for (final String cidr : cidrs) {
+            if (new CidrChecker(cidr).isInRange(ipAddr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testFuzz() throws UnknownHostException {
+
+        final Random random = new Random(20201027L);
+
+        int hits = 0;
+        int checks = 0;
+
+        for (int set = 0; set < FUZZ_RANGE_SETS; set++) {
+
+            final List<String> cidrs = new ArrayList<>();
+            final StringBuilder ranges = new StringBuilder();
+
+            final int nCidrs = 1 + random.nextInt(set % 10 == 0 ? 200 : 8);
+
+            for (int i = 0; i < nCidrs; i++) {
+                final String cidr = randomCidr(random);
+                cidrs.add(cidr);
+                if (i > 0) {
+                    ranges.append(
+                            SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                }
+                ranges.append(cidr);
+            }
+
+            final CidrMatcher matcher = CidrMatcher.compile(ranges.toString());
+
+            for (int i = 0; i < FUZZ_ADDRESSES; i++) {
+                final String ipAddr = toString(randomAddress(random));
+                final boolean expected = referenceMatch(cidrs, ipAddr);
+                assertEquals(ranges + " " + ipAddr, expected,
+                        matcher.matches(ipAddr));
+                checks++;
+                if (expected) {
+                    hits++;
+                }
+            }
+        }
+        // Both outcomes are well represented.
+        assertTrue(hits > checks / 10);
+        assertTrue(hits < checks * 9 / 10);
+    }
+
+    @Test
+    public void testEdges() {
+
+        final CidrMatcher matcher = CidrMatcher
+                .compile("0.0.0.0/0 2001:db8::/32;fe80::1/128,192.168.1.35/32");
+
+        assertTrue(matcher.matches("8.8.8.8"));
+        assertTrue(matcher.matches("2001:db8:ffff::1"));
+        assertFalse(matcher.matches("2001:db9::1"));
+        assertTrue(matcher.matches("fe80::1"));
+        assertFalse(matcher.matches("fe80::2"));
+
+        // IPv4-mapped IPv6 address is an IPv4 address.
+        assertTrue(matcher.matches("::ffff:10.1.2.3"));
+
+        final CidrMatcher ipv6Only = CidrMatcher.compile("::/0");
+        assertTrue(ipv6Only.matches("::1"));
+        assertFalse(ipv6Only.matches("10.1.2.3"));
+
+        // Longer prefix after shorter, and vice versa.
+        final CidrMatcher nested =
+                CidrMatcher.compile("10.1.2.0/24 10.0.0.0/8 10.1.0.0/16");
+        assertTrue(nested.matches("10.200.0.1"));
+        assertFalse(nested.matches("11.0.0.1"));
+
+        assertTrue(CidrMatcher.compile("").isEmpty());
+        assertFalse(CidrMatcher.compile("").matches("10.0.0.1"));
+    }
+
+    @Test
+    public void testInvalid() {
+
+        final String[] invalid = { "/24", "10.0.0.0", "10.0.0.0/8/8",
+                "10.0.0.0/x", "10.0.0.0/-1", "10.0.0.0/33", "::/129",
+                "10.0.0.0/8 garbage" };
+
+        for (final String ranges : invalid) {
+            try {
+                CidrMatcher.compile(ranges);
+                fail(ranges);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            assertFalse(ranges, InetUtils.isCidrSetValid(ranges));
+        }
+
+        try {
+            CidrMatcher.compile("10.0.0.0/8").matches("1::2::3");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnresolvable() {
+
+        final String ranges = "unknown-host.invalid/24 10.0.0.0/8";
+
+        try {
+            CidrMatcher.compile(ranges);
+            fail(ranges);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(InetUtils.isCidrSetValid(ranges));
+
+        final CidrMatcher matcher = CidrMatcher.compileResolvable(ranges);
+        assertTrue(matcher.matches("10.1.2.3"));
+        assertFalse(matcher.matches("11.1.2.3"));
+
+        assertTrue(InetUtils.isIpAddrInCidrRanges(ranges, "10.1.2.3"));
+        assertTrue(InetUtils.getCidrMatcher(ranges) == InetUtils
+                .getCidrMatcher(ranges));
+
+        try {
+            CidrMatcher.compileResolvable("10.0.0.0/8 garbage");
+            fail("garbage");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class HashedTimerWheelTest {
+
+    private static final long TICK = 100L;
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    public void testExpireInOrder() {
+
+        final HashedTimerWheel<String> wheel =
+                new HashedTimerWheel<>(8, TICK, START);
+
+        wheel.schedule("a", START + 150);
+        wheel.schedule("b", START + 350);
+
+        final List<String> expired = new ArrayList<>();
+
+        assertEquals(0, wheel.advance(START + 149, expired));
+        assertEquals(1, wheel.advance(START + 200, expired));
+        assertEquals("a", expired.get(0));
+        assertEquals(1, wheel.size());
+
+        assertEquals(1, wheel.advance(START + 400, expired));
+        assertEquals("b", expired.get(1));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testMultipleRevolutions() {
+
+        final HashedTimerWheel<String> wheel =
+                new HashedTimerWheel<>(4, TICK, START);
+
+        // Same slot, different revolutions.
+        wheel.schedule("near", START + 100);
+        wheel.schedule("far", START + 900);
+
+        final List<String> expired = new ArrayList<>();
+
+        assertEquals(1, wheel.advance(START + 500, expired));
+        assertEquals("near", expired.get(0));
+
+        assertEquals(1, wheel.advance(START + 900, expired));
+        assertEquals("far", expired.get(1));
+    }
+
+    @Test
+    public void testCatchUp() {
+
+        final HashedTimerWheel<Integer> wheel =
+                new HashedTimerWheel<>(4, TICK, START);
+
+        for (int i = 0; i < 20; i++) {
+            wheel.schedule(Integer.valueOf(i), START + i * TICK);
+        }
+
+        final List<Integer> expired = new ArrayList<>();
+
+        // Far beyond one revolution.
+        assertEquals(11, wheel.advance(START + 10 * TICK, expired));
+        assertEquals(9, wheel.size());
+        assertEquals(9, wheel.advance(START + 100 * TICK, expired));
+    }
+
+    @Test
+    public void testCancel() {
+
+        final HashedTimerWheel<String> wheel =
+                new HashedTimerWheel<>(8, TICK, START);
+
+        final HashedTimerWheel.Timeout<String> timeout =
+                wheel.schedule("a", START + 150);
+        wheel.schedule("b", START + 150);
+
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+
+        final List<String> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(START + 1000, expired));
+        assertEquals("b", expired.get(0));
+    }
+
+    @Test
+    public void testPastDeadline() {
+
+        final HashedTimerWheel<String> wheel =
+                new HashedTimerWheel<>(8, TICK, START);
+
+        wheel.schedule("late", START - 5000);
+
+        final List<String> expired = new ArrayList<>();
+        assertEquals(0, wheel.advance(START, expired));
+        assertEquals(1, wheel.advance(START + TICK, expired));
+    }
+}
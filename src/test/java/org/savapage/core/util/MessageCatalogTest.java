@@ -0,0 +1,140 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class MessageCatalogTest {
+
+    private static final String RESOURCE = "messages";
+
+    private static final long RELOAD_CHECK_MSEC = 50L;
+
+    private File directory;
+
+    private MessageCatalog catalog;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("i18n").toFile();
+        this.catalog = new MessageCatalog(RELOAD_CHECK_MSEC);
+    }
+
+    @After
+    public void tearDown() {
+        for (final File file : this.directory.listFiles()) {
+            file.delete();
+        }
+        this.directory.delete();
+        this.catalog.clear();
+    }
+
+    private void writeBundle(final String key, final String value)
+            throws IOException {
+        final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE properties SYSTEM "
+                + "\"http://java.sun.com/dtd/properties.dtd\">\n"
+                + "<properties><entry key=\"" + key + "\">" + value
+                + "</entry></properties>\n";
+        final File file = new File(this.directory, RESOURCE + ".xml");
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("John's 2 jobs",
+                this.catalog.format("{0}'s {1} jobs", "John", "2"));
+        assertEquals("John's 3 jobs",
+                this.catalog.format("{0}'s {1} jobs", "John", "3"));
+        assertEquals("{0", this.catalog.format("{0", "x"));
+        assertEquals("{0,number} jobs",
+                this.catalog.format("{0,number} jobs", "x"));
+    }
+
+    @Test
+    public void testCustomBundleCached() throws IOException {
+
+        this.writeBundle("greeting", "Hello");
+
+        final ResourceBundle bundle =
+                this.catalog.getBundle(this.directory, RESOURCE, Locale.ROOT);
+        assertEquals("Hello", bundle.getString("greeting"));
+        assertSame(bundle,
+                this.catalog.getBundle(this.directory, RESOURCE, Locale.ROOT));
+    }
+
+    @Test
+    public void testCustomBundleMissing() throws IOException {
+
+        boolean missing = false;
+        try {
+            this.catalog.getBundle(this.directory, RESOURCE, Locale.ROOT);
+        } catch (MissingResourceException e) {
+            missing = true;
+        }
+        assertTrue(missing);
+    }
+
+    @Test
+    public void testCustomBundleReload() throws Exception {
+
+        this.writeBundle("greeting", "Hello");
+
+        final ResourceBundle bundle =
+                this.catalog.getBundle(this.directory, RESOURCE, Locale.ROOT);
+
+        this.writeBundle("greeting", "Good morning");
+        final File file = new File(this.directory, RESOURCE + ".xml");
+        assertTrue(file.setLastModified(file.lastModified() + 10000L));
+
+        Thread.sleep(RELOAD_CHECK_MSEC + 10L);
+
+        final ResourceBundle reloaded =
+                this.catalog.getBundle(this.directory, RESOURCE, Locale.ROOT);
+
+        assertFalse(bundle == reloaded);
+        assertEquals("Good morning", reloaded.getString("greeting"));
+    }
+}
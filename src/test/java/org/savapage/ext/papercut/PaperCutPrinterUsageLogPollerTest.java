@@ -0,0 +1,191 @@
+/*
+ * This file is part of the SavaPage project <https://www.savapage.org>.
+ * Copyright (c) 2020 Datraverse B.V.
+ * Author: Rijk Ravestein.
+ *
+ * SPDX-FileCopyrightText: © 2020 Datraverse B.V. <info@datraverse.com>
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For more information, please contact Datraverse B.V. at this
+ * address: info@datraverse.com
+ */
+package org.savapage.ext.papercut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link PaperCutPrinterUsageLogPoller} against an embedded Derby
+ * stand-in of the PaperCut {@code tbl_printer_usage_log} table.
+ *
+ * @author Rijk Ravestein
+ *
+ */
+public final class PaperCutPrinterUsageLogPollerTest {
+
+    private static final String DB_URL = "jdbc:derby:memory:papercut";
+
+    private PaperCutDbProxy dbProxy;
+
+    private long nextId;
+
+    /**
+     * Number of connections lent, and not returned.
+     */
+    private final AtomicInteger lent = new AtomicInteger();
+
+    @Before
+    public void init() throws SQLException {
+
+        this.dbProxy = new PaperCutDbProxy(
+                "org.apache.derby.jdbc.EmbeddedDriver", DB_URL + ";create=true",
+                "", "", false);
+
+        this.dbProxy.openConnection();
+        this.nextId = 0;
+
+        try (Statement stm = this.dbProxy.getConnection().createStatement()) {
+            stm.executeUpdate("CREATE TABLE tbl_printer_usage_log ("
+                    + "printer_usage_log_id BIGINT PRIMARY KEY,"
+                    + " job_type VARCHAR(20), document_name VARCHAR(255),"
+                    + " printed CHAR(1), cancelled CHAR(1),"
+                    + " denied_reason VARCHAR(255), usage_cost DOUBLE,"
+                    + " charged_to_account_id BIGINT,"
+                    + " assoc_with_account_id BIGINT)");
+        }
+    }
+
+    @After
+    public void exit() throws SQLException {
+        try (Statement stm = this.dbProxy.getConnection().createStatement()) {
+            stm.executeUpdate("DROP TABLE tbl_printer_usage_log");
+        }
+        this.dbProxy.closeConnection(this.dbProxy.getConnection());
+    }
+
+    private void insertUsageLog(final String docName) throws SQLException {
+        try (PreparedStatement stm = this.dbProxy.getConnection()
+                .prepareStatement("INSERT INTO tbl_printer_usage_log"
+                        + " VALUES(?, 'PRINT', ?, 'Y', 'N', '', 0.5, 1, 2)")) {
+            stm.setLong(1, ++this.nextId);
+            stm.setString(2, docName);
+            stm.executeUpdate();
+        }
+    }
+
+    @Test
+    public void testChunkedLookup() throws SQLException {
+
+        final Set<String> docNames = new HashSet<>();
+
+        // More names than fit in one chunk, including quotes.
+        for (int i = 0; i < 123; i++) {
+            final String docName = String.format("doc'%d", i);
+            docNames.add(docName);
+            if (i % 2 == 0) {
+                this.insertUsageLog(docName);
+            }
+        }
+
+        final List<PaperCutPrinterUsageLog> list = this.dbProxy
+                .getPrinterUsageLog(this.dbProxy.getConnection(), docNames);
+
+        assertEquals(62, list.size());
+
+        for (final PaperCutPrinterUsageLog usageLog : list) {
+            assertTrue(docNames.contains(usageLog.getDocumentName()));
+            assertTrue(usageLog.isPrinted());
+        }
+    }
+
+    /**
+     * @return A {@link PaperCutDb} that lends the connection of the test, like
+     *         a connection pool does.
+     */
+    private PaperCutDb createLendingDb() {
+
+        return new PaperCutDb("org.apache.derby.jdbc.EmbeddedDriver", DB_URL,
+                "", "", false) {
+
+            @Override
+            public Connection openConnection() {
+                lent.incrementAndGet();
+                return dbProxy.getConnection();
+            }
+
+            @Override
+            public void closeConnection(final Connection conn) {
+                assertEquals(dbProxy.getConnection(), conn);
+                lent.decrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testIncrementalPoll() throws SQLException {
+
+        final PaperCutPrinterUsageLogPoller poller =
+                new PaperCutPrinterUsageLogPoller(this.createLendingDb(), 2,
+                        100, 3);
+
+        final Set<String> pending = new HashSet<>();
+        pending.add("a");
+        pending.add("b");
+
+        this.insertUsageLog("x");
+        this.insertUsageLog("a");
+
+        // First poll is a full lookup.
+        List<PaperCutPrinterUsageLog> list = poller.poll(pending);
+        assertTrue(poller.isLastPollFullLookup());
+        assertEquals(1, list.size());
+        assertEquals(2L, poller.getWatermark().longValue());
+
+        pending.remove("a");
+
+        for (int i = 0; i < 10; i++) {
+            this.insertUsageLog("y" + i);
+        }
+        this.insertUsageLog("b");
+
+        // Incremental poll pages through new rows.
+        list = poller.poll(pending);
+        assertFalse(poller.isLastPollFullLookup());
+        assertEquals(1, list.size());
+        assertEquals("b", list.get(0).getDocumentName());
+        assertEquals(this.nextId, poller.getWatermark().longValue());
+
+        pending.remove("b");
+        assertTrue(poller.poll(pending).isEmpty());
+
+        // Connections are returned after each poll.
+        assertEquals(0, this.lent.get());
+    }
+}